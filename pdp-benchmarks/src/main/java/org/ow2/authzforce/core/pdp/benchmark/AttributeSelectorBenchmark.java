@@ -0,0 +1,107 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.benchmark;
+
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACCESS_SUBJECT_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.RESOURCE_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.STRING_DATATYPE;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.STRING_EQUAL_FUNCTION;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.SUBJECT_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.XPATH_1_0_VERSION;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+
+/**
+ * AttributeSelector (XPath) evaluation benchmarks: Rule Condition comparing the subject-id with the values selected by an XPath expression in the resource Content, made of {@link #itemCount} items.
+ * The evaluation includes the parsing of the Content by the request filter.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AttributeSelectorBenchmark
+{
+	/**
+	 * Number of items in the resource Content
+	 */
+	@Param({ "10", "100", "1000" })
+	public int itemCount;
+
+	private BasePdpEngine pdp;
+	private Request request;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, URISyntaxException, JAXBException
+	{
+		final String condition = "<Apply FunctionId=\"urn:oasis:names:tc:xacml:3.0:function:any-of-any\"><Function FunctionId=\"" + STRING_EQUAL_FUNCTION + "\"/>"
+				+ BenchmarkCorpus.newAttributeDesignator(ACCESS_SUBJECT_CATEGORY, SUBJECT_ID) + "<AttributeSelector Category=\"" + RESOURCE_CATEGORY
+				+ "\" Path=\"/record/owners/owner/text()\" DataType=\"" + STRING_DATATYPE + "\" MustBePresent=\"false\"/></Apply>";
+		final String policy = BenchmarkCorpus.newPolicy("policy", "urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-unless-permit", "<PolicyDefaults><XPathVersion>"
+				+ XPATH_1_0_VERSION + "</XPathVersion></PolicyDefaults>", null, BenchmarkCorpus.newRule("rule", true, null, condition));
+		pdp = BenchmarkCorpus.newPdp(policy, true, null);
+
+		final StringBuilder content = new StringBuilder("<record xmlns=\"\"><owners>");
+		for (int i = 0; i < itemCount; i++)
+		{
+			content.append("<owner>user-").append(i).append("</owner>");
+		}
+
+		content.append("</owners></record>");
+		request = BenchmarkCorpus.parseRequest(
+				BenchmarkCorpus.newRequest(BenchmarkCorpus.newAttributes(ACCESS_SUBJECT_CATEGORY, null, BenchmarkCorpus.newAttribute(SUBJECT_ID, "user-" + (itemCount - 1))),
+						BenchmarkCorpus.newAttributes(RESOURCE_CATEGORY, content.toString())), true);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		pdp.close();
+	}
+
+	@Benchmark
+	public Response evaluate()
+	{
+		return pdp.evaluate(request);
+	}
+
+}
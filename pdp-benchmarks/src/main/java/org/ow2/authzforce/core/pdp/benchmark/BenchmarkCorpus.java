@@ -0,0 +1,207 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.benchmark;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+
+import org.ow2.authzforce.core.pdp.api.JaxbXACMLUtils;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.testutil.TestUtils;
+
+/**
+ * Helper for generating the XACML policies and requests used by the benchmarks, and creating PDPs from them. Policies and requests are generated (in temporary files) instead of being read from
+ * fixed test files, so that the size of the policies can be set with benchmark parameters.
+ *
+ */
+final class BenchmarkCorpus
+{
+	static final String XACML_NS = "urn:oasis:names:tc:xacml:3.0:core:schema:wd-17";
+
+	static final String ACCESS_SUBJECT_CATEGORY = "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject";
+	static final String RESOURCE_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:resource";
+	static final String ACTION_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:action";
+
+	static final String SUBJECT_ID = "urn:oasis:names:tc:xacml:1.0:subject:subject-id";
+	static final String SUBJECT_ROLE = "urn:oasis:names:tc:xacml:2.0:subject:role";
+	static final String RESOURCE_ID = "urn:oasis:names:tc:xacml:1.0:resource:resource-id";
+	static final String ACTION_ID = "urn:oasis:names:tc:xacml:1.0:action:action-id";
+
+	static final String STRING_DATATYPE = "http://www.w3.org/2001/XMLSchema#string";
+	static final String STRING_EQUAL_FUNCTION = "urn:oasis:names:tc:xacml:1.0:function:string-equal";
+
+	static final String XPATH_1_0_VERSION = "http://www.w3.org/TR/1999/REC-xpath-19991116";
+
+	private BenchmarkCorpus()
+	{
+		// hide constructor
+	}
+
+	static String newAttributeValue(final String value)
+	{
+		return "<AttributeValue DataType=\"" + STRING_DATATYPE + "\">" + value + "</AttributeValue>";
+	}
+
+	static String newAttributeDesignator(final String category, final String attributeId)
+	{
+		return "<AttributeDesignator Category=\"" + category + "\" AttributeId=\"" + attributeId + "\" DataType=\"" + STRING_DATATYPE + "\" MustBePresent=\"false\"/>";
+	}
+
+	/**
+	 * Creates Target with a single string-equal Match
+	 */
+	static String newTarget(final String category, final String attributeId, final String value)
+	{
+		return "<Target><AnyOf><AllOf><Match MatchId=\"" + STRING_EQUAL_FUNCTION + "\">" + newAttributeValue(value) + newAttributeDesignator(category, attributeId)
+				+ "</Match></AllOf></AnyOf></Target>";
+	}
+
+	/**
+	 * Creates Rule
+	 *
+	 * @param target
+	 *            Target element; null means empty Target
+	 * @param condition
+	 *            Condition's Expression; null means no Condition
+	 */
+	static String newRule(final String ruleId, final boolean permit, final String target, final String condition)
+	{
+		return "<Rule RuleId=\"" + ruleId + "\" Effect=\"" + (permit ? "Permit" : "Deny") + "\">" + (target == null ? "<Target/>" : target)
+				+ (condition == null ? "" : "<Condition>" + condition + "</Condition>") + "</Rule>";
+	}
+
+	/**
+	 * Creates Policy
+	 *
+	 * @param policyDefaults
+	 *            PolicyDefaults element; null if none
+	 * @param target
+	 *            Target element; null means empty Target
+	 */
+	static String newPolicy(final String policyId, final String ruleCombiningAlgId, final String policyDefaults, final String target, final CharSequence rules)
+	{
+		return "<Policy xmlns=\"" + XACML_NS + "\" PolicyId=\"" + policyId + "\" Version=\"1.0\" RuleCombiningAlgId=\"" + ruleCombiningAlgId + "\">"
+				+ (policyDefaults == null ? "" : policyDefaults) + (target == null ? "<Target/>" : target) + rules + "</Policy>";
+	}
+
+	/**
+	 * Creates PolicySet
+	 *
+	 * @param target
+	 *            Target element; null means empty Target
+	 */
+	static String newPolicySet(final String policySetId, final String policyCombiningAlgId, final String target, final CharSequence children)
+	{
+		return "<PolicySet xmlns=\"" + XACML_NS + "\" PolicySetId=\"" + policySetId + "\" Version=\"1.0\" PolicyCombiningAlgId=\"" + policyCombiningAlgId + "\">"
+				+ (target == null ? "<Target/>" : target) + children + "</PolicySet>";
+	}
+
+	/**
+	 * Creates Attribute with string values
+	 */
+	static String newAttribute(final String attributeId, final String... values)
+	{
+		final StringBuilder sb = new StringBuilder("<Attribute AttributeId=\"").append(attributeId).append("\" IncludeInResult=\"false\">");
+		for (final String value : values)
+		{
+			sb.append(newAttributeValue(value));
+		}
+
+		return sb.append("</Attribute>").toString();
+	}
+
+	/**
+	 * Creates Attributes element
+	 *
+	 * @param content
+	 *            XML content of the Content element; null if no Content
+	 */
+	static String newAttributes(final String category, final String content, final String... attributes)
+	{
+		final StringBuilder sb = new StringBuilder("<Attributes Category=\"").append(category).append("\">");
+		if (content != null)
+		{
+			sb.append("<Content>").append(content).append("</Content>");
+		}
+
+		for (final String attribute : attributes)
+		{
+			sb.append(attribute);
+		}
+
+		return sb.append("</Attributes>").toString();
+	}
+
+	static String newRequest(final String... attributesElements)
+	{
+		final StringBuilder sb = new StringBuilder("<Request xmlns=\"").append(XACML_NS).append("\" ReturnPolicyIdList=\"false\" CombinedDecision=\"false\">");
+		for (final String attributes : attributesElements)
+		{
+			sb.append(attributes);
+		}
+
+		return sb.append("</Request>").toString();
+	}
+
+	private static Path writeTempFile(final String prefix, final String xml) throws IOException
+	{
+		final Path file = Files.createTempFile(prefix, ".xml");
+		file.toFile().deleteOnExit();
+		Files.write(file, xml.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	/**
+	 * Creates PDP with the given root policy
+	 *
+	 * @param rootPolicy
+	 *            root Policy(Set) XML document
+	 * @param enableXPath
+	 *            enable AttributeSelectors
+	 * @param requestFilterId
+	 *            request filter ID; null for the default
+	 * @return new PDP
+	 */
+	static BasePdpEngine newPdp(final String rootPolicy, final boolean enableXPath, final String requestFilterId) throws IOException, URISyntaxException, JAXBException
+	{
+		final Path rootPolicyFile = writeTempFile("benchmark-policy-", rootPolicy);
+		return TestUtils.getPDPNewInstance(rootPolicyFile.toUri().toString(), null, enableXPath, null, requestFilterId);
+	}
+
+	/**
+	 * Parses XACML Request
+	 *
+	 * @param request
+	 *            XACML Request XML document
+	 * @param enableXPath
+	 *            keep Content elements for AttributeSelectors
+	 * @return JAXB Request
+	 */
+	static Request parseRequest(final String request, final boolean enableXPath) throws IOException, JAXBException
+	{
+		final Path requestFile = writeTempFile("benchmark-request-", request);
+		return (Request) JaxbXACMLUtils.getXACMLParserFactory(enableXPath).getInstance().parse(requestFile.toUri().toURL());
+	}
+}
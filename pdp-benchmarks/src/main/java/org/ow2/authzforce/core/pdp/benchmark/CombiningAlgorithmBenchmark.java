@@ -0,0 +1,111 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.benchmark;
+
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACCESS_SUBJECT_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.RESOURCE_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.RESOURCE_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.SUBJECT_ROLE;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+
+/**
+ * Policy combining algorithm benchmarks: root PolicySet with {@link #childCount} child Policies, each applicable to a specific role (Policy Target) and returning Permit or Deny alternatively. The
+ * request's role matches only the last child, so that algorithms that cannot stop early evaluate all children.
+ * <p>
+ * The same implementations (package {@code org.ow2.authzforce.core.pdp.impl.combining}) are used for rule-combining algorithms.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CombiningAlgorithmBenchmark
+{
+	/**
+	 * Policy combining algorithm ID
+	 */
+	@Param({ "urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-overrides", "urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:ordered-deny-overrides",
+			"urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:permit-overrides", "urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:ordered-permit-overrides",
+			"urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-unless-permit", "urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:permit-unless-deny",
+			"urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:first-applicable", "urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:only-one-applicable" })
+	public String combiningAlgId;
+
+	/**
+	 * Number of child Policies
+	 */
+	@Param({ "10", "100" })
+	public int childCount;
+
+	private BasePdpEngine pdp;
+	private Request request;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, URISyntaxException, JAXBException
+	{
+		final StringBuilder policies = new StringBuilder();
+		for (int i = 0; i < childCount; i++)
+		{
+			final String rule = BenchmarkCorpus.newRule("rule-" + i, i % 2 == 0, null, null);
+			policies.append(BenchmarkCorpus.newPolicy("policy-" + i, "urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:first-applicable", null,
+					BenchmarkCorpus.newTarget(ACCESS_SUBJECT_CATEGORY, SUBJECT_ROLE, "role-" + i), rule));
+		}
+
+		pdp = BenchmarkCorpus.newPdp(BenchmarkCorpus.newPolicySet("root", combiningAlgId, null, policies), false, null);
+		request = BenchmarkCorpus.parseRequest(
+				BenchmarkCorpus.newRequest(BenchmarkCorpus.newAttributes(ACCESS_SUBJECT_CATEGORY, null, BenchmarkCorpus.newAttribute(SUBJECT_ROLE, "role-" + (childCount - 1))),
+						BenchmarkCorpus.newAttributes(RESOURCE_CATEGORY, null, BenchmarkCorpus.newAttribute(RESOURCE_ID, "resource"))), false);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		pdp.close();
+	}
+
+	@Benchmark
+	public Response evaluate()
+	{
+		return pdp.evaluate(request);
+	}
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.benchmark;
+
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACCESS_SUBJECT_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.RESOURCE_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.STRING_EQUAL_FUNCTION;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.SUBJECT_ROLE;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+
+/**
+ * Higher-order bag function benchmarks: Rule Condition applying a higher-order function with string-equal to two bags of size {@link #bagSize} from the request (subject roles and roles allowed on the
+ * resource), with a single common value at the end of the bags.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HigherOrderFunctionBenchmark
+{
+	private static final String RESOURCE_ALLOWED_ROLE = "urn:example:resource:allowed-role";
+
+	/**
+	 * Higher-order function ID
+	 */
+	@Param({ "urn:oasis:names:tc:xacml:3.0:function:any-of-any", "urn:oasis:names:tc:xacml:1.0:function:all-of-any", "urn:oasis:names:tc:xacml:1.0:function:any-of-all",
+			"urn:oasis:names:tc:xacml:1.0:function:all-of-all" })
+	public String functionId;
+
+	/**
+	 * Number of values in each bag
+	 */
+	@Param({ "1", "10", "100" })
+	public int bagSize;
+
+	private BasePdpEngine pdp;
+	private Request request;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, URISyntaxException, JAXBException
+	{
+		final String condition = "<Apply FunctionId=\"" + functionId + "\"><Function FunctionId=\"" + STRING_EQUAL_FUNCTION + "\"/>"
+				+ BenchmarkCorpus.newAttributeDesignator(ACCESS_SUBJECT_CATEGORY, SUBJECT_ROLE) + BenchmarkCorpus.newAttributeDesignator(RESOURCE_CATEGORY, RESOURCE_ALLOWED_ROLE) + "</Apply>";
+		final String policy = BenchmarkCorpus.newPolicy("policy", "urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-unless-permit", null, null,
+				BenchmarkCorpus.newRule("rule", true, null, condition));
+		pdp = BenchmarkCorpus.newPdp(policy, false, null);
+
+		final String[] subjectRoles = new String[bagSize];
+		final String[] allowedRoles = new String[bagSize];
+		for (int i = 0; i < bagSize; i++)
+		{
+			subjectRoles[i] = "subject-role-" + i;
+			allowedRoles[i] = "allowed-role-" + i;
+		}
+
+		// single common value, at the end
+		subjectRoles[bagSize - 1] = allowedRoles[bagSize - 1];
+		request = BenchmarkCorpus.parseRequest(
+				BenchmarkCorpus.newRequest(BenchmarkCorpus.newAttributes(ACCESS_SUBJECT_CATEGORY, null, BenchmarkCorpus.newAttribute(SUBJECT_ROLE, subjectRoles)),
+						BenchmarkCorpus.newAttributes(RESOURCE_CATEGORY, null, BenchmarkCorpus.newAttribute(RESOURCE_ALLOWED_ROLE, allowedRoles))), false);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		pdp.close();
+	}
+
+	@Benchmark
+	public Response evaluate()
+	{
+		return pdp.evaluate(request);
+	}
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.benchmark;
+
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACCESS_SUBJECT_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACTION_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACTION_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.RESOURCE_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.RESOURCE_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.SUBJECT_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.SUBJECT_ROLE;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ow2.authzforce.core.pdp.api.JaxbXACMLUtils;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.MultiDecisionRequestFilter;
+
+/**
+ * Request-to-response benchmarks, from serialized XACML Request to serialized XACML Response: XACML/JSON (JSON Profile) with the streaming parser and writer of the PDP engine (no JAXB object), and
+ * XACML/XML with JAXB (unmarshalling of the Request, evaluation, marshalling of the Response), for the same Request. The JAXB path is the baseline for PEPs speaking JSON through a JSON-to-JAXB
+ * conversion, which costs at least as much. The Request has one subject, {@link #resourceCount} resources (repeated category, i.e. as many Individual Decision Requests) and one action.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonRequestBenchmark
+{
+	/**
+	 * Number of resource categories in the Request
+	 */
+	@Param({ "1", "10" })
+	public int resourceCount;
+
+	private BasePdpEngine pdp;
+	private byte[] jsonRequest;
+	private byte[] xmlRequest;
+	private Unmarshaller unmarshaller;
+	private Marshaller marshaller;
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream(4096);
+
+	private static String newJsonAttribute(final String attributeId, final String value)
+	{
+		return "{\"AttributeId\":\"" + attributeId + "\",\"Value\":\"" + value + "\"}";
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, URISyntaxException, JAXBException
+	{
+		pdp = BenchmarkCorpus.newPdp(PdpEvaluationBenchmark.newWidePolicySet(resourceCount), false, MultiDecisionRequestFilter.LaxFilterFactory.ID);
+
+		final String[] attributesElements = new String[resourceCount + 2];
+		final StringBuilder jsonResources = new StringBuilder();
+		attributesElements[0] = BenchmarkCorpus.newAttributes(ACCESS_SUBJECT_CATEGORY, null, BenchmarkCorpus.newAttribute(SUBJECT_ID, "user"),
+				BenchmarkCorpus.newAttribute(SUBJECT_ROLE, "role-2"));
+		for (int resourceIndex = 0; resourceIndex < resourceCount; resourceIndex++)
+		{
+			attributesElements[resourceIndex + 1] = BenchmarkCorpus.newAttributes(RESOURCE_CATEGORY, null, BenchmarkCorpus.newAttribute(RESOURCE_ID, "resource-" + resourceIndex));
+			jsonResources.append(resourceIndex == 0 ? "" : ",").append("{\"Attribute\":[").append(newJsonAttribute(RESOURCE_ID, "resource-" + resourceIndex)).append("]}");
+		}
+
+		attributesElements[resourceCount + 1] = BenchmarkCorpus.newAttributes(ACTION_CATEGORY, null, BenchmarkCorpus.newAttribute(ACTION_ID, "read"));
+		xmlRequest = BenchmarkCorpus.newRequest(attributesElements).getBytes(StandardCharsets.UTF_8);
+		jsonRequest = ("{\"Request\":{\"ReturnPolicyIdList\":false,\"AccessSubject\":{\"Attribute\":[" + newJsonAttribute(SUBJECT_ID, "user") + "," + newJsonAttribute(SUBJECT_ROLE, "role-2")
+				+ "]},\"Resource\":[" + jsonResources + "],\"Action\":{\"Attribute\":[" + newJsonAttribute(ACTION_ID, "read") + "]}}}").getBytes(StandardCharsets.UTF_8);
+
+		unmarshaller = JaxbXACMLUtils.createXacml3Unmarshaller();
+		marshaller = JaxbXACMLUtils.createXacml3Marshaller();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		pdp.close();
+	}
+
+	/**
+	 * XACML/JSON Request to XACML/JSON Response, without JAXB
+	 */
+	@Benchmark
+	public int evaluateJsonRequest() throws IOException
+	{
+		output.reset();
+		pdp.evaluateJSON(new ByteArrayInputStream(jsonRequest), output);
+		return output.size();
+	}
+
+	/**
+	 * XACML/XML Request to XACML/XML Response, with JAXB
+	 */
+	@Benchmark
+	public int evaluateXmlRequestWithJaxb() throws JAXBException
+	{
+		output.reset();
+		final Request request = (Request) unmarshaller.unmarshal(new ByteArrayInputStream(xmlRequest));
+		final Response response = pdp.evaluate(request);
+		marshaller.marshal(response, output);
+		return output.size();
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.benchmark;
+
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACCESS_SUBJECT_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACTION_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACTION_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.RESOURCE_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.RESOURCE_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.SUBJECT_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.SUBJECT_ROLE;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.IndividualXACMLRequest;
+import org.ow2.authzforce.core.pdp.api.RequestFilter;
+import org.ow2.authzforce.core.pdp.api.XMLUtils;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.MultiDecisionRequestFilter;
+import org.ow2.authzforce.core.pdp.impl.value.StandardDatatypeFactoryRegistry;
+
+/**
+ * Multiple Decision Profile (repeated attribute categories) benchmarks: expansion of the Request into Individual Decision Requests alone, and evaluation of all of them by the PDP.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultiDecisionRequestFilterBenchmark
+{
+	/**
+	 * Number of access-subject Attributes elements in the Request
+	 */
+	@Param({ "1", "10" })
+	public int subjectCount;
+
+	/**
+	 * Number of resource Attributes elements in the Request
+	 */
+	@Param({ "10", "100" })
+	public int resourceCount;
+
+	private RequestFilter requestFilter;
+	private BasePdpEngine pdp;
+	private Request request;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, URISyntaxException, JAXBException
+	{
+		requestFilter = new MultiDecisionRequestFilter.LaxFilterFactory().getInstance(StandardDatatypeFactoryRegistry.getRegistry(false), false, false, XMLUtils.SAXON_PROCESSOR);
+		pdp = BenchmarkCorpus.newPdp(PdpEvaluationBenchmark.newWidePolicySet(resourceCount), false, MultiDecisionRequestFilter.LaxFilterFactory.ID);
+
+		final String[] attributesElements = new String[subjectCount + resourceCount + 1];
+		int i = 0;
+		for (int subjectIndex = 0; subjectIndex < subjectCount; subjectIndex++)
+		{
+			attributesElements[i++] = BenchmarkCorpus.newAttributes(ACCESS_SUBJECT_CATEGORY, null, BenchmarkCorpus.newAttribute(SUBJECT_ID, "user-" + subjectIndex),
+					BenchmarkCorpus.newAttribute(SUBJECT_ROLE, "role-" + subjectIndex % 4));
+		}
+
+		for (int resourceIndex = 0; resourceIndex < resourceCount; resourceIndex++)
+		{
+			attributesElements[i++] = BenchmarkCorpus.newAttributes(RESOURCE_CATEGORY, null, BenchmarkCorpus.newAttribute(RESOURCE_ID, "resource-" + resourceIndex));
+		}
+
+		attributesElements[i] = BenchmarkCorpus.newAttributes(ACTION_CATEGORY, null, BenchmarkCorpus.newAttribute(ACTION_ID, "read"));
+		request = BenchmarkCorpus.parseRequest(BenchmarkCorpus.newRequest(attributesElements), false);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		pdp.close();
+	}
+
+	/**
+	 * Creates all Individual Decision Requests (subjectCount x resourceCount)
+	 */
+	@Benchmark
+	public void filter(final Blackhole blackhole) throws IndeterminateEvaluationException
+	{
+		final List<? extends IndividualXACMLRequest> individualRequests = requestFilter.filter(request, Collections.<String, String> emptyMap());
+		for (final IndividualXACMLRequest individualRequest : individualRequests)
+		{
+			blackhole.consume(individualRequest);
+		}
+	}
+
+	/**
+	 * Expands and evaluates all Individual Decision Requests
+	 */
+	@Benchmark
+	public Response evaluate()
+	{
+		return pdp.evaluate(request);
+	}
+
+}
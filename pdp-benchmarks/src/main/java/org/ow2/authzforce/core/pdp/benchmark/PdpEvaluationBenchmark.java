@@ -0,0 +1,165 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.benchmark;
+
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACCESS_SUBJECT_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACTION_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACTION_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.RESOURCE_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.RESOURCE_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.SUBJECT_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.SUBJECT_ROLE;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.ImmutablePdpDecisionRequest;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionResult;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+
+/**
+ * End-to-end evaluation benchmarks on a wide PolicySet: one child Policy per resource (resource-id Match in the Policy Target), with role-based Rules. The matching Policy is the last one, therefore
+ * all children's Targets are evaluated (target matching cost grows with {@link #policyCount}).
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PdpEvaluationBenchmark
+{
+	private static final int RULE_COUNT_PER_POLICY = 4;
+
+	/**
+	 * Number of child Policies in the root PolicySet
+	 */
+	@Param({ "10", "100", "1000" })
+	public int policyCount;
+
+	private BasePdpEngine pdp;
+	private Request xacmlRequest;
+	private Request notApplicableXacmlRequest;
+	private ImmutablePdpDecisionRequest nativeRequest;
+
+	static String newWidePolicySet(final int policyCount)
+	{
+		final StringBuilder policies = new StringBuilder();
+		for (int i = 0; i < policyCount; i++)
+		{
+			final StringBuilder rules = new StringBuilder();
+			for (int j = 0; j < RULE_COUNT_PER_POLICY; j++)
+			{
+				rules.append(BenchmarkCorpus.newRule("rule-" + i + "-" + j, j % 2 == 0, BenchmarkCorpus.newTarget(ACCESS_SUBJECT_CATEGORY, SUBJECT_ROLE, "role-" + j), null));
+			}
+
+			policies.append(BenchmarkCorpus.newPolicy("policy-" + i, "urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-overrides", null,
+					BenchmarkCorpus.newTarget(RESOURCE_CATEGORY, RESOURCE_ID, "resource-" + i), rules));
+		}
+
+		return BenchmarkCorpus.newPolicySet("root", "urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:first-applicable", null, policies);
+	}
+
+	static String newRequest(final String resourceId)
+	{
+		return BenchmarkCorpus.newRequest(
+				BenchmarkCorpus.newAttributes(ACCESS_SUBJECT_CATEGORY, null, BenchmarkCorpus.newAttribute(SUBJECT_ID, "user"), BenchmarkCorpus.newAttribute(SUBJECT_ROLE, "role-2")),
+				BenchmarkCorpus.newAttributes(RESOURCE_CATEGORY, null, BenchmarkCorpus.newAttribute(RESOURCE_ID, resourceId)),
+				BenchmarkCorpus.newAttributes(ACTION_CATEGORY, null, BenchmarkCorpus.newAttribute(ACTION_ID, "read")));
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, URISyntaxException, JAXBException
+	{
+		pdp = BenchmarkCorpus.newPdp(newWidePolicySet(policyCount), false, null);
+		final String lastResourceId = "resource-" + (policyCount - 1);
+		xacmlRequest = BenchmarkCorpus.parseRequest(newRequest(lastResourceId), false);
+		notApplicableXacmlRequest = BenchmarkCorpus.parseRequest(newRequest("unknown-resource"), false);
+
+		final PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest> requestBuilder = pdp.newRequestBuilder(3, 4);
+		requestBuilder.putNamedAttributeIfAbsent(AttributeFQNs.newInstance(ACCESS_SUBJECT_CATEGORY, Optional.empty(), SUBJECT_ID),
+				Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue("user")));
+		requestBuilder.putNamedAttributeIfAbsent(AttributeFQNs.newInstance(ACCESS_SUBJECT_CATEGORY, Optional.empty(), SUBJECT_ROLE),
+				Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue("role-2")));
+		requestBuilder.putNamedAttributeIfAbsent(AttributeFQNs.newInstance(RESOURCE_CATEGORY, Optional.empty(), RESOURCE_ID),
+				Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue(lastResourceId)));
+		requestBuilder.putNamedAttributeIfAbsent(AttributeFQNs.newInstance(ACTION_CATEGORY, Optional.empty(), ACTION_ID),
+				Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue("read")));
+		nativeRequest = requestBuilder.build(false);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		pdp.close();
+	}
+
+	/**
+	 * XACML/JAXB input and output, including request filtering and result conversion
+	 */
+	@Benchmark
+	public Response evaluateXacmlRequest()
+	{
+		return pdp.evaluate(xacmlRequest);
+	}
+
+	/**
+	 * Native (AuthzForce API) input and output
+	 */
+	@Benchmark
+	public PdpDecisionResult evaluateNativeRequest()
+	{
+		return pdp.evaluate(nativeRequest);
+	}
+
+	/**
+	 * No Policy applicable: measures target matching on all children
+	 */
+	@Benchmark
+	public Response evaluateNotApplicableXacmlRequest()
+	{
+		return pdp.evaluate(notApplicableXacmlRequest);
+	}
+
+}
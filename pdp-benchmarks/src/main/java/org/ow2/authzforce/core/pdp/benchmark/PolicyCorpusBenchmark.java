@@ -0,0 +1,131 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.benchmark;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.testutil.PolicyCorpusGenerator;
+import org.ow2.authzforce.core.pdp.testutil.PolicyCorpusGenerator.Corpus;
+import org.ow2.authzforce.core.pdp.testutil.PolicyCorpusGenerator.GeneratedRequest;
+
+/**
+ * Scaling benchmarks on synthetic policies generated by {@link PolicyCorpusGenerator}: tree of PolicySets of breadth {@link #breadth} and depth {@link #depth} (i.e. breadth^depth leaf Policies of
+ * {@link #RULES_PER_POLICY} Rules each), evaluated on a stream of {@link #REQUEST_COUNT} generated requests with hit ratio {@link #hitRatio} and Zipf distribution (exponent {@link #zipfExponent}) of
+ * the requested resources.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PolicyCorpusBenchmark
+{
+	private static final int RULES_PER_POLICY = 10;
+	private static final int REQUEST_COUNT = 1000;
+
+	/**
+	 * Number of children of each PolicySet
+	 */
+	@Param({ "10" })
+	public int breadth;
+
+	/**
+	 * Number of PolicySet levels
+	 */
+	@Param({ "1", "2", "3" })
+	public int depth;
+
+	/**
+	 * Number of PolicySetIdReferences in each PolicySet
+	 */
+	@Param({ "0" })
+	public int policySetRefFanOut;
+
+	/**
+	 * Ratio of requests matching a Rule
+	 */
+	@Param({ "0.5" })
+	public double hitRatio;
+
+	/**
+	 * Exponent of the Zipf distribution of the requested resources (0: uniform)
+	 */
+	@Param({ "0", "1" })
+	public double zipfExponent;
+
+	private BasePdpEngine pdp;
+	private Request[] requests;
+	private int nextRequestIndex = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, URISyntaxException, JAXBException
+	{
+		final Path directory = Files.createTempDirectory("benchmark-corpus-");
+		directory.toFile().deleteOnExit();
+		final Corpus corpus = new PolicyCorpusGenerator.Builder().breadth(breadth).depth(depth).policySetRefFanOut(policySetRefFanOut).rulesPerPolicy(RULES_PER_POLICY).build()
+				.generate(directory);
+		pdp = corpus.newPdp(null);
+		final List<GeneratedRequest> generatedRequests = corpus.newRequests(REQUEST_COUNT, hitRatio, zipfExponent, 0);
+		requests = new Request[generatedRequests.size()];
+		for (int i = 0; i < requests.length; i++)
+		{
+			requests[i] = generatedRequests.get(i).toXacmlRequest();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		pdp.close();
+	}
+
+	@Benchmark
+	public Response evaluate()
+	{
+		final Request request = requests[nextRequestIndex];
+		nextRequestIndex = (nextRequestIndex + 1) % requests.length;
+		return pdp.evaluate(request);
+	}
+
+}
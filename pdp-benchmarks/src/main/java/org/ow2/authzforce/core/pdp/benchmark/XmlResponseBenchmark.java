@@ -0,0 +1,126 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.benchmark;
+
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACCESS_SUBJECT_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACTION_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.ACTION_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.RESOURCE_CATEGORY;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.RESOURCE_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.SUBJECT_ID;
+import static org.ow2.authzforce.core.pdp.benchmark.BenchmarkCorpus.SUBJECT_ROLE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ow2.authzforce.core.pdp.api.JaxbXACMLUtils;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.MultiDecisionRequestFilter;
+
+/**
+ * Response serialization benchmarks: evaluation of a JAXB Request to a serialized XACML/XML Response, either with JAXB Results marshalled by JAXB, or written directly by the PDP engine (no JAXB
+ * Result). The Request has {@link #resourceCount} resources (repeated category, i.e. as many Results) and ReturnPolicyIdList=true.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XmlResponseBenchmark
+{
+	/**
+	 * Number of resource categories in the Request
+	 */
+	@Param({ "1", "10", "100" })
+	public int resourceCount;
+
+	private BasePdpEngine pdp;
+	private Request xacmlRequest;
+	private Marshaller marshaller;
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream(16384);
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, URISyntaxException, JAXBException
+	{
+		pdp = BenchmarkCorpus.newPdp(PdpEvaluationBenchmark.newWidePolicySet(resourceCount), false, MultiDecisionRequestFilter.LaxFilterFactory.ID);
+
+		final String[] attributesElements = new String[resourceCount + 2];
+		attributesElements[0] = BenchmarkCorpus.newAttributes(ACCESS_SUBJECT_CATEGORY, null, BenchmarkCorpus.newAttribute(SUBJECT_ID, "user"),
+				BenchmarkCorpus.newAttribute(SUBJECT_ROLE, "role-2"));
+		for (int resourceIndex = 0; resourceIndex < resourceCount; resourceIndex++)
+		{
+			attributesElements[resourceIndex + 1] = BenchmarkCorpus.newAttributes(RESOURCE_CATEGORY, null, BenchmarkCorpus.newAttribute(RESOURCE_ID, "resource-" + resourceIndex));
+		}
+
+		attributesElements[resourceCount + 1] = BenchmarkCorpus.newAttributes(ACTION_CATEGORY, null, BenchmarkCorpus.newAttribute(ACTION_ID, "read"));
+		xacmlRequest = BenchmarkCorpus.parseRequest(BenchmarkCorpus.newRequest(attributesElements).replace("ReturnPolicyIdList=\"false\"", "ReturnPolicyIdList=\"true\""), false);
+		marshaller = JaxbXACMLUtils.createXacml3Marshaller();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		pdp.close();
+	}
+
+	/**
+	 * JAXB Response marshalled with JAXB
+	 */
+	@Benchmark
+	public int evaluateAndMarshal() throws JAXBException
+	{
+		output.reset();
+		final Response response = pdp.evaluate(xacmlRequest);
+		marshaller.marshal(response, output);
+		return output.size();
+	}
+
+	/**
+	 * Response written directly by {@link BasePdpEngine#evaluate(Request, java.util.Map, java.io.OutputStream)}
+	 */
+	@Benchmark
+	public int evaluateAndWrite() throws IOException
+	{
+		output.reset();
+		pdp.evaluate(xacmlRequest, null, output);
+		return output.size();
+	}
+}
@@ -43,8 +43,12 @@ public final class AllOfEvaluator
 
 	// Store the list of Matches as evaluatable Match types to avoid casting
 	// from JAXB MatchType
-	// during evaluation
-	private final transient List<MatchEvaluator> evaluatableMatchList;
+	// during evaluation (in document order)
+	private final transient MatchEvaluator[] evaluatableMatches;
+
+	private final transient ShortCircuitEvaluationOrder evaluationOrder;
+
+	private final transient int costEstimate;
 
 	/**
 	 * Instantiates AllOf (evaluator) from XACML-Schema-derived
@@ -70,7 +74,7 @@ public final class AllOfEvaluator
 			throw NO_MATCH_EXCEPTION;
 		}
 
-		evaluatableMatchList = new ArrayList<>(jaxbMatches.size());
+		final List<MatchEvaluator> evaluatableMatchList = new ArrayList<>(jaxbMatches.size());
 		int matchIndex = 0;
 		for (final Match jaxbMatch : jaxbMatches)
 		{
@@ -87,6 +91,28 @@ public final class AllOfEvaluator
 			evaluatableMatchList.add(matchEvaluator);
 			matchIndex++;
 		}
+
+		this.evaluatableMatches = evaluatableMatchList.toArray(new MatchEvaluator[evaluatableMatchList.size()]);
+		final int[] matchCostEstimates = new int[evaluatableMatches.length];
+		int totalCostEstimate = 0;
+		for (int i = 0; i < evaluatableMatches.length; i++)
+		{
+			matchCostEstimates[i] = evaluatableMatches[i].getCostEstimate();
+			totalCostEstimate += matchCostEstimates[i];
+		}
+
+		this.evaluationOrder = new ShortCircuitEvaluationOrder(ShortCircuitEvaluationOrder.getMode(expFactory), matchCostEstimates);
+		this.costEstimate = totalCostEstimate;
+	}
+
+	/**
+	 * Get the estimated cost of this AllOf's evaluation (all Matches evaluated)
+	 *
+	 * @return cost estimate (same unit as {@link MatchEvaluator#getCostEstimate()})
+	 */
+	int getCostEstimate()
+	{
+		return costEstimate;
 	}
 
 	/**
@@ -98,7 +124,7 @@ public final class AllOfEvaluator
 	 * 		No False and at least
 	 * 		one "Indeterminate" 				“Indeterminate�?
 	 * 		At least one False					"No Match"
-	 * </code>
+	 * </code> The Matches are evaluated in the order defined by the PDP's {@code matchEvaluationOrder} (document order by default), which does not change the result.
 	 *
 	 * @param context
 	 *            the representation of the request
@@ -111,17 +137,18 @@ public final class AllOfEvaluator
 		// atLeastOneIndeterminate = true iff lastIndeterminate != null
 		IndeterminateEvaluationException lastIndeterminate = null;
 
-		// index of the current Match in this AllOf
-		int childIndex = 0;
-
-		// index of last Indeterminate for enhanced error message
+		// index (in document order) of last Indeterminate for enhanced error message
 		int lastIndeterminateChildIndex = -1;
 
+		final boolean timed = evaluationOrder.startEvaluation();
+
 		/*
 		 * By construction, there must be at least one Match
 		 */
-		for (final MatchEvaluator matchEvaluator : evaluatableMatchList)
+		for (final int childIndex : evaluationOrder.get())
 		{
+			final MatchEvaluator matchEvaluator = evaluatableMatches[childIndex];
+			final long startTime = timed ? System.nanoTime() : 0;
 			final boolean isMatched;
 			try
 			{
@@ -141,11 +168,21 @@ public final class AllOfEvaluator
 					// Integer.valueOf(...)
 					LOGGER.debug("AllOf/Match#{} -> Indeterminate", childIndex, e);
 				}
-				lastIndeterminate = e;
-				lastIndeterminateChildIndex = childIndex;
+
+				evaluationOrder.childEvaluated(childIndex, false, timed ? System.nanoTime() - startTime : -1);
+				/*
+				 * Report the last Indeterminate in document order, as if the Matches were evaluated in document order
+				 */
+				if (childIndex > lastIndeterminateChildIndex)
+				{
+					lastIndeterminate = e;
+					lastIndeterminateChildIndex = childIndex;
+				}
+
 				continue;
 			}
 
+			evaluationOrder.childEvaluated(childIndex, !isMatched, timed ? System.nanoTime() - startTime : -1);
 			/*
 			 * At least one False -> No match
 			 */
@@ -155,7 +192,6 @@ public final class AllOfEvaluator
 			}
 
 			// True (Match) -> continue, all must be true to match
-			childIndex += 1;
 		}
 
 		// No False (=NO_MATCH) occurred
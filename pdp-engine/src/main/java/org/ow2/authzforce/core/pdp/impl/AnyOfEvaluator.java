@@ -46,8 +46,12 @@ public final class AnyOfEvaluator
 
 	// Store the list of AllOf as evaluatable AllOf types to avoid casting from
 	// JAXB AllOfType
-	// during evaluation
-	private final transient List<AllOfEvaluator> evaluatableAllOfList;
+	// during evaluation (in document order)
+	private final transient AllOfEvaluator[] evaluatableAllOfs;
+
+	private final transient ShortCircuitEvaluationOrder evaluationOrder;
+
+	private final transient int costEstimate;
 
 	/**
 	 * Constructor that creates a new <code>AnyOf</code> evaluator based on the
@@ -73,7 +77,7 @@ public final class AnyOfEvaluator
 			throw NO_ALL_OF_EXCEPTION;
 		}
 
-		this.evaluatableAllOfList = new ArrayList<>(jaxbAllOfList.size());
+		final List<AllOfEvaluator> evaluatableAllOfList = new ArrayList<>(jaxbAllOfList.size());
 		int matchIndex = 0;
 		for (final AllOf jaxbAllOf : jaxbAllOfList)
 		{
@@ -90,6 +94,28 @@ public final class AnyOfEvaluator
 			evaluatableAllOfList.add(allOfEvaluator);
 			matchIndex++;
 		}
+
+		this.evaluatableAllOfs = evaluatableAllOfList.toArray(new AllOfEvaluator[evaluatableAllOfList.size()]);
+		final int[] allOfCostEstimates = new int[evaluatableAllOfs.length];
+		int totalCostEstimate = 0;
+		for (int i = 0; i < evaluatableAllOfs.length; i++)
+		{
+			allOfCostEstimates[i] = evaluatableAllOfs[i].getCostEstimate();
+			totalCostEstimate += allOfCostEstimates[i];
+		}
+
+		this.evaluationOrder = new ShortCircuitEvaluationOrder(ShortCircuitEvaluationOrder.getMode(expFactory), allOfCostEstimates);
+		this.costEstimate = totalCostEstimate;
+	}
+
+	/**
+	 * Get the estimated cost of this AnyOf's evaluation (all AllOfs evaluated)
+	 *
+	 * @return cost estimate (same unit as {@link MatchEvaluator#getCostEstimate()})
+	 */
+	int getCostEstimate()
+	{
+		return costEstimate;
 	}
 
 	/**
@@ -105,6 +131,8 @@ public final class AnyOfEvaluator
 	 * 		at least one Indeterminate 			“Indeterminate�?
 	 * 		All "No Match"						"No Match"
 	 * </pre>
+	 * 
+	 * The AllOfs are evaluated in the order defined by the PDP's {@code matchEvaluationOrder} (document order by default), which does not change the result.
 	 *
 	 * @param context
 	 *            the representation of the request
@@ -117,17 +145,18 @@ public final class AnyOfEvaluator
 		// atLeastOneIndeterminate = true iff lastIndeterminate != null
 		IndeterminateEvaluationException lastIndeterminate = null;
 
-		// index of the current AllOf in this AnyOf
-		int childIndex = 0;
-
-		// index of last Indeterminate for enhanced error message
+		// index (in document order) of last Indeterminate for enhanced error message
 		int lastIndeterminateChildIndex = -1;
 
+		final boolean timed = evaluationOrder.startEvaluation();
+
 		/*
 		 * By construction, there must be at least one AllOf
 		 */
-		for (final AllOfEvaluator allOfEvaluator : evaluatableAllOfList)
+		for (final int childIndex : evaluationOrder.get())
 		{
+			final AllOfEvaluator allOfEvaluator = evaluatableAllOfs[childIndex];
+			final long startTime = timed ? System.nanoTime() : 0;
 			final boolean isMatched;
 			try
 			{
@@ -147,11 +176,21 @@ public final class AnyOfEvaluator
 					// Integer.valueOf(...)
 					LOGGER.debug("AnyOf/AllOf#{} -> Indeterminate", childIndex, e);
 				}
-				lastIndeterminate = e;
-				lastIndeterminateChildIndex = childIndex;
+
+				evaluationOrder.childEvaluated(childIndex, false, timed ? System.nanoTime() - startTime : -1);
+				/*
+				 * Report the last Indeterminate in document order, as if the AllOfs were evaluated in document order
+				 */
+				if (childIndex > lastIndeterminateChildIndex)
+				{
+					lastIndeterminate = e;
+					lastIndeterminateChildIndex = childIndex;
+				}
+
 				continue;
 			}
 
+			evaluationOrder.childEvaluated(childIndex, isMatched, timed ? System.nanoTime() - startTime : -1);
 			/*
 			 * At least one Match -> Match
 			 */
@@ -161,7 +200,6 @@ public final class AnyOfEvaluator
 			}
 
 			// No Match -> continue, all must be true to match
-			childIndex += 1;
 		}
 
 		// No True (Match) occurred
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeProviderModule;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.BagDatatype;
+
+/**
+ * Attribute Provider module able to resolve attributes asynchronously, typically from a remote source (LDAP directory, REST user store...) with non-blocking I/O. When attribute prefetch is enabled in
+ * the PDP configuration, the PDP calls {@link #getAsync(AttributeFQN, BagDatatype, EvaluationContext)} for all the attributes provided by such modules and used in the policies (AttributeDesignators)
+ * - but missing from the request - concurrently before evaluating the policies, and waits for all of them; therefore the time spent waiting for such attributes is the maximum, instead of the sum, of
+ * the modules' response times. Otherwise, the PDP calls the synchronous {@link #get(AttributeFQN, BagDatatype, EvaluationContext)} method as usual, lazily when the attribute is needed.
+ * <p>
+ * See {@link BaseAsyncAttributeProviderModule} for a convenient base class.
+ *
+ * @version $Id: $
+ */
+public interface AsyncAttributeProviderModule extends AttributeProviderModule
+{
+	/**
+	 * Starts resolving an attribute asynchronously. This method should return quickly, without waiting for the remote source.
+	 * <p>
+	 * The evaluation context is not thread-safe: it may be used only in this method, before it returns, e.g. to get the attributes required by this module to resolve the requested one (using the
+	 * "dependency" attribute Provider given to the module factory), but not from the thread completing the returned future.
+	 *
+	 * @param attributeFQN
+	 *            requested attribute name
+	 * @param returnDatatype
+	 *            expected attribute bag datatype
+	 * @param context
+	 *            evaluation context (read-only)
+	 * @return future attribute value(s); completed exceptionally with an {@link IndeterminateEvaluationException} if the attribute could not be resolved. A future completed with null or an empty bag
+	 *         means the attribute has no value.
+	 */
+	<AV extends AttributeValue> CompletableFuture<AttributeBag<AV>> getAsync(AttributeFQN attributeFQN, BagDatatype<AV> returnDatatype, EvaluationContext context);
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeSelectorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.XPathValue;
+
+/**
+ * Attributes resolved by Attribute Provider modules and shared by the Individual Decision Requests of a same Multiple Decision Request, registered as {@link EvaluationContext.Listener} in the
+ * evaluation context of each of these Individual Decision Requests when batch attribute resolution is enabled in the PDP configuration. When an attribute is missing from an evaluation context,
+ * {@link ModularAttributeProvider} looks for it in this batch first, with the values of the providing module's dependencies in the current context as key (see
+ * {@link ModularAttributeProvider#getInstance(java.util.Map, java.util.Map, java.util.Set, boolean)}), before calling the module; so that the module is called only once for all the Individual
+ * Decision Requests with the same dependency values, e.g. the same subject.
+ * <p>
+ * Only successful results are shared, errors are not. Thread-safe, i.e. may be shared by Individual Decision Requests evaluated in parallel (in which case the same attribute may be requested from
+ * the module more than once if requested at the same time).
+ *
+ * @version $Id: $
+ */
+public final class AttributeResolutionBatch implements EvaluationContext.Listener
+{
+	private final ConcurrentMap<DependentAttributeKey, AttributeBag<?>> resolvedAttributes = new ConcurrentHashMap<>();
+
+	AttributeBag<?> get(final DependentAttributeKey key)
+	{
+		return resolvedAttributes.get(key);
+	}
+
+	void put(final DependentAttributeKey key, final AttributeBag<?> attributeValues)
+	{
+		resolvedAttributes.putIfAbsent(key, attributeValues);
+	}
+
+	/**
+	 * Get the number of attributes resolved for this batch so far
+	 *
+	 * @return number of shared attributes
+	 */
+	public int size()
+	{
+		return resolvedAttributes.size();
+	}
+
+	@Override
+	public <AV extends AttributeValue> void namedAttributeValueConsumed(final AttributeFQN attributeFQN, final AttributeBag<AV> value)
+	{
+		// not used
+	}
+
+	@Override
+	public <AV extends AttributeValue> void namedAttributeValueProduced(final AttributeFQN attributeFQN, final AttributeBag<AV> value)
+	{
+		// not used
+	}
+
+	@Override
+	public <AV extends AttributeValue> void attributeSelectorResultConsumed(final AttributeSelectorExpression<AV> attributeSelector, final Bag<AV> value)
+	{
+		// not used
+	}
+
+	@Override
+	public <AV extends AttributeValue> void attributeSelectorResultProduced(final AttributeSelectorExpression<AV> attributeSelector, final Optional<AttributeBag<XPathValue>> contextSelectorValue,
+			final Bag<AV> value)
+	{
+		// not used
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.Set;
+
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+
+/**
+ * Bag membership checks using the hash index of the bag provided by the evaluation context, if any (see {@link SlotIndexedEvaluationContext#getBagIndex(Bag)}), else a linear search of the bag.
+ * <p>
+ * To be used only for datatypes where {@link AttributeValue#equals(Object)} and {@link AttributeValue#hashCode()} are consistent with the XACML equality function, e.g. string, boolean, integer,
+ * anyURI, hexBinary, base64Binary.
+ *
+ * @version $Id: $
+ */
+public final class BagIndexes
+{
+	private BagIndexes()
+	{
+		// utility class
+	}
+
+	/**
+	 * Gets the hash index of a bag in a given context
+	 *
+	 * @param bag
+	 *            bag of values
+	 * @param context
+	 *            evaluation context; may be null (evaluation out of context)
+	 * @return the distinct values of {@code bag}; or null if the context does not index this bag (e.g. too small)
+	 */
+	public static Set<? extends AttributeValue> get(final Bag<?> bag, final EvaluationContext context)
+	{
+		return context instanceof SlotIndexedEvaluationContext ? ((SlotIndexedEvaluationContext) context).getBagIndex(bag) : null;
+	}
+
+	/**
+	 * Checks whether a value is in a bag
+	 *
+	 * @param bag
+	 *            bag of values
+	 * @param value
+	 *            value of the same datatype as the bag elements
+	 * @param context
+	 *            evaluation context; may be null (evaluation out of context)
+	 * @return true iff {@code value} is in {@code bag}
+	 */
+	public static boolean contains(final Bag<?> bag, final AttributeValue value, final EvaluationContext context)
+	{
+		final Set<? extends AttributeValue> index = get(bag, context);
+		if (index != null)
+		{
+			return index.contains(value);
+		}
+
+		return contains(bag, value);
+	}
+
+	/*
+	 * The bag element datatype is assumed to be the value's datatype
+	 */
+	@SuppressWarnings("unchecked")
+	private static boolean contains(final Bag<?> bag, final AttributeValue value)
+	{
+		return ((Bag<AttributeValue>) bag).contains(value);
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.BaseAttributeProviderModule;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.BagDatatype;
+
+/**
+ * Base class for {@link AsyncAttributeProviderModule}s: implements the synchronous {@link #get(AttributeFQN, BagDatatype, EvaluationContext)} by waiting for the result of
+ * {@link #getAsync(AttributeFQN, BagDatatype, EvaluationContext)}, so that subclasses only implement the latter.
+ *
+ * @version $Id: $
+ */
+public abstract class BaseAsyncAttributeProviderModule extends BaseAttributeProviderModule implements AsyncAttributeProviderModule
+{
+
+	/**
+	 * Instantiates the attribute Provider module
+	 *
+	 * @param instanceID
+	 *            module instance ID (to be used as unique identifier for this instance in the logs for example);
+	 * @throws IllegalArgumentException
+	 *             if instanceId null
+	 */
+	protected BaseAsyncAttributeProviderModule(final String instanceID) throws IllegalArgumentException
+	{
+		super(instanceID);
+	}
+
+	/**
+	 * Gets the result of an asynchronous attribute resolution, waiting for it if necessary
+	 *
+	 * @param future
+	 *            future returned by {@link AsyncAttributeProviderModule#getAsync(AttributeFQN, BagDatatype, EvaluationContext)}
+	 * @param attributeFQN
+	 *            requested attribute name (for error messages)
+	 * @return attribute values
+	 * @throws IndeterminateEvaluationException
+	 *             if the future completed exceptionally (the cause if it is an {@link IndeterminateEvaluationException}) or was cancelled
+	 */
+	static <AV extends AttributeValue> AttributeBag<AV> join(final CompletableFuture<AttributeBag<AV>> future, final AttributeFQN attributeFQN) throws IndeterminateEvaluationException
+	{
+		try
+		{
+			return future.join();
+		}
+		catch (final CompletionException e)
+		{
+			final Throwable cause = e.getCause();
+			if (cause instanceof IndeterminateEvaluationException)
+			{
+				throw (IndeterminateEvaluationException) cause;
+			}
+
+			throw new IndeterminateEvaluationException("Error resolving attribute " + attributeFQN + " asynchronously", StatusHelper.STATUS_MISSING_ATTRIBUTE, cause == null ? e : cause);
+		}
+		catch (final RuntimeException e)
+		{
+			// CancellationException in particular
+			throw new IndeterminateEvaluationException("Error resolving attribute " + attributeFQN + " asynchronously", StatusHelper.STATUS_MISSING_ATTRIBUTE, e);
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public final <AV extends AttributeValue> AttributeBag<AV> get(final AttributeFQN attributeFQN, final BagDatatype<AV> returnDatatype, final EvaluationContext context)
+			throws IndeterminateEvaluationException
+	{
+		return join(getAsync(attributeFQN, returnDatatype, context), attributeFQN);
+	}
+
+}
@@ -21,19 +21,33 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.GregorianCalendar;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.transform.stream.StreamSource;
 
 import net.sf.saxon.s9api.XdmNode;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attributes;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
@@ -51,6 +65,7 @@ import org.ow2.authzforce.core.pdp.api.EnvironmentPropertyName;
 import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.HashCollections;
 import org.ow2.authzforce.core.pdp.api.ImmutablePdpDecisionRequest;
+import org.ow2.authzforce.core.pdp.api.ImmutablePdpDecisionResult;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
 import org.ow2.authzforce.core.pdp.api.IndividualXACMLRequest;
 import org.ow2.authzforce.core.pdp.api.PdpDecisionRequest;
@@ -83,6 +98,7 @@ import org.ow2.authzforce.core.pdp.impl.policy.RootPolicyEvaluators;
 import org.ow2.authzforce.core.pdp.impl.policy.StaticApplicablePolicyView;
 import org.ow2.authzforce.core.pdp.impl.value.ImmutableDatatypeFactoryRegistry;
 import org.ow2.authzforce.core.pdp.impl.value.StandardDatatypeFactoryRegistry;
+import org.ow2.authzforce.core.xmlns.pdp.MatchEvaluationOrder;
 import org.ow2.authzforce.core.xmlns.pdp.Pdp;
 import org.ow2.authzforce.core.xmlns.pdp.StandardEnvironmentAttributeSource;
 import org.ow2.authzforce.xacml.identifiers.XACMLDatatypeId;
@@ -93,6 +109,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.ResourceUtils;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * This is the core XACML PDP engine implementation.
  *
@@ -105,6 +123,12 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 
 	private static final IllegalArgumentException NULL_PDP_MODEL_HANDLER_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined PDP configuration model handler");
 	private static final IllegalArgumentException ILLEGAL_ARGUMENT_EXCEPTION = new IllegalArgumentException("No input Individual Decision Request");
+	private static final UnsupportedOperationException UNSUPPORTED_ROOT_POLICY_RELOAD_EXCEPTION = new UnsupportedOperationException(
+			"Root policy reload not supported: root policy is not statically resolved (root policy Provider depends on the evaluation context)");
+	private static final UnsupportedOperationException UNSUPPORTED_ROOT_POLICY_RELOAD_WITH_DECISION_CACHE_EXCEPTION = new UnsupportedOperationException(
+			"Root policy reload not supported when a decision cache is enabled");
+	private static final UnsupportedOperationException UNSUPPORTED_STREAMING_REQUEST_PARSER_EXCEPTION = new UnsupportedOperationException(
+			"Streaming request parsing not supported with a request filter other than the default and multiple-decision ones (lax or strict)");
 
 	/*
 	 * The default behavior for getting the standard environment attributes (current date/time) is the one complying strictly with the XACML spec: if request does not have values for these attributes,
@@ -112,12 +136,27 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 	 */
 	private static final StandardEnvironmentAttributeSource DEFAULT_STD_ENV_ATTRIBUTE_SOURCE = StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP;
 
+	/*
+	 * Default minimum size of the bags indexed for equality lookups (same as the default of the PDP configuration parameter minIndexedBagSize). Below that, searching the bag linearly is about as fast
+	 * as building the index.
+	 */
+	private static final int DEFAULT_MIN_INDEXED_BAG_SIZE = 64;
+
 	/**
 	 * Indeterminate response iff CombinedDecision element not supported because the request parser does not support any scheme from MultipleDecisionProfile section 2.
 	 */
 	private static final Response UNSUPPORTED_COMBINED_DECISION_RESPONSE = new Response(Collections.<Result> singletonList(new Result(DecisionType.INDETERMINATE, new StatusHelper(
 			StatusHelper.STATUS_SYNTAX_ERROR, Optional.of("Unsupported feature: CombinedDecision='true'")), null, null, null, null)));
 
+	/*
+	 * Error creating an Individual Decision Request from a lazy list returned by the request filter (e.g. MultiDecisionRequestFilter): the list creates each request on access, therefore may only
+	 * fail during evaluation.
+	 */
+	private static IndeterminateEvaluationException newIndividualDecisionRequestCreationException(final IllegalArgumentException cause)
+	{
+		return new IndeterminateEvaluationException("Error converting Multiple Decision Request into multiple Individual Decision Requests", StatusHelper.STATUS_PROCESSING_ERROR, cause);
+	}
+
 	private interface StandardEnvironmentAttributeIssuer
 	{
 		Map<AttributeFQN, AttributeBag<?>> get();
@@ -217,15 +256,88 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 		}
 	}
 
+	private interface DecisionCacheKeyFactory
+	{
+		PdpDecisionRequest getKey(PdpDecisionRequest request);
+	}
+
+	/*
+	 * Default: the whole request is the cache key
+	 */
+	private static final DecisionCacheKeyFactory IDENTITY_DECISION_CACHE_KEY_FACTORY = new DecisionCacheKeyFactory()
+	{
+
+		@Override
+		public PdpDecisionRequest getKey(final PdpDecisionRequest request)
+		{
+			return request;
+		}
+	};
+
+	/*
+	 * The cache key is the request without the attributes that cannot have any effect on the decision: attributes not used by the policies (if known), and the standard environment attributes of the
+	 * request if the PDP ignores them (standardEnvAttributeSource = PDP_ONLY). In the latter case, the decision cache sees any standard environment attribute used during evaluation as issued by the
+	 * PDP, since it is not in the key (see CoreInMemoryDecisionCache).
+	 */
+	private static final class RelevantAttributeBasedDecisionCacheKeyFactory implements DecisionCacheKeyFactory
+	{
+		// null if unknown, i.e. any attribute may be used
+		private final Set<AttributeFQN> policyRelevantAttributes;
+		private final boolean isStdEnvAttributeIgnored;
+
+		private RelevantAttributeBasedDecisionCacheKeyFactory(final Set<AttributeFQN> policyRelevantAttributes, final boolean isStdEnvAttributeIgnored)
+		{
+			assert policyRelevantAttributes != null || isStdEnvAttributeIgnored;
+			this.policyRelevantAttributes = policyRelevantAttributes;
+			this.isStdEnvAttributeIgnored = isStdEnvAttributeIgnored;
+		}
+
+		private boolean isRelevant(final AttributeFQN attributeFQN)
+		{
+			if (isStdEnvAttributeIgnored && StandardEnvironmentAttribute.getInstance(attributeFQN) != null)
+			{
+				return false;
+			}
+
+			return policyRelevantAttributes == null || policyRelevantAttributes.contains(attributeFQN);
+		}
+
+		@Override
+		public PdpDecisionRequest getKey(final PdpDecisionRequest request)
+		{
+			final Map<AttributeFQN, AttributeBag<?>> namedAttributes = request.getNamedAttributes();
+			final Map<AttributeFQN, AttributeBag<?>> relevantNamedAttributes;
+			if (namedAttributes == null)
+			{
+				relevantNamedAttributes = Collections.emptyMap();
+			}
+			else
+			{
+				relevantNamedAttributes = HashCollections.newUpdatableMap(policyRelevantAttributes == null ? namedAttributes.size() : Math.min(namedAttributes.size(),
+						policyRelevantAttributes.size()));
+				for (final Entry<AttributeFQN, AttributeBag<?>> namedAttribute : namedAttributes.entrySet())
+				{
+					if (isRelevant(namedAttribute.getKey()))
+					{
+						relevantNamedAttributes.put(namedAttribute.getKey(), namedAttribute.getValue());
+					}
+				}
+			}
+
+			return ImmutablePdpDecisionRequest.getInstance(relevantNamedAttributes, request.getExtraContentsByCategory(), request.isApplicablePolicyIdListReturned());
+		}
+	}
+
 	private static final class NonCachingIndividualDecisionRequestEvaluator extends IndividualDecisionRequestEvaluator
 	{
 		private static final RuntimeException NULL_INDIVIDUAL_DECISION_REQUEST_EXCEPTION = new RuntimeException(
 				"One of the individual decision requests returned by the request filter is invalid (null).");
 
 		private NonCachingIndividualDecisionRequestEvaluator(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource stdEnvAttributeSource,
-				final DecisionResultFilter resultFilter)
+				final DecisionResultFilter resultFilter, final EvaluationTimingRecorder timingRecorder, final boolean enableBatchAttributeResolution,
+				final int minIndexedBagSize, final boolean enableCompactEvaluationContext)
 		{
-			super(rootPolicyEvaluator, stdEnvAttributeSource, resultFilter);
+			super(rootPolicyEvaluator, stdEnvAttributeSource, resultFilter, timingRecorder, enableBatchAttributeResolution, minIndexedBagSize, enableCompactEvaluationContext);
 		}
 
 		@Override
@@ -235,6 +347,7 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 			assert individualDecisionRequests != null;
 
 			final Map<INDIVIDUAL_DECISION_REQ_T, PdpDecisionResult> resultsByRequest = HashCollections.newUpdatableMap(individualDecisionRequests.size());
+			final AttributeResolutionBatch attributeResolutionBatch = newAttributeResolutionBatch(individualDecisionRequests.size());
 			for (final INDIVIDUAL_DECISION_REQ_T individualDecisionRequest : individualDecisionRequests)
 			{
 				if (individualDecisionRequest == null)
@@ -242,7 +355,7 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 					throw NULL_INDIVIDUAL_DECISION_REQUEST_EXCEPTION;
 				}
 
-				final PdpDecisionResult decisionResult = evaluateInNewContext(individualDecisionRequest, pdpIssuedAttributes);
+				final PdpDecisionResult decisionResult = evaluateInNewContext(individualDecisionRequest, pdpIssuedAttributes, attributeResolutionBatch);
 				resultsByRequest.put(individualDecisionRequest, decisionResult);
 			}
 
@@ -255,6 +368,7 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 			assert individualDecisionRequests != null;
 
 			final FilteringResultCollector filteringResultCollector = beginMultipleDecisions(individualDecisionRequests.size());
+			final AttributeResolutionBatch attributeResolutionBatch = newAttributeResolutionBatch(individualDecisionRequests.size());
 			for (final IndividualXACMLRequest individualDecisionRequest : individualDecisionRequests)
 			{
 				if (individualDecisionRequest == null)
@@ -262,7 +376,7 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 					throw NULL_INDIVIDUAL_DECISION_REQUEST_EXCEPTION;
 				}
 
-				final PdpDecisionResult decisionResult = evaluateInNewContext(individualDecisionRequest, pdpIssuedAttributes);
+				final PdpDecisionResult decisionResult = evaluateInNewContext(individualDecisionRequest, pdpIssuedAttributes, attributeResolutionBatch);
 				final List<Result> finalResults = filteringResultCollector.addResult(individualDecisionRequest, decisionResult);
 				if (finalResults != null)
 				{
@@ -274,6 +388,218 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 		}
 	}
 
+	/**
+	 * Non-caching evaluator that evaluates the individual decision requests of a Multiple Decision request concurrently with an {@link ExecutorService}. Results are still collected - and passed to
+	 * the result filter - in the order of the requests, so results are the same as with {@link NonCachingIndividualDecisionRequestEvaluator}. When the result filter returns the final results before
+	 * all results have been added (short-circuit), evaluation of the remaining requests is cancelled.
+	 * <p>
+	 * At most {@code maxPendingEvaluations} requests are submitted to the executor and not yet collected at any given time, so that requests from a lazy list (see
+	 * {@link MultiDecisionRequestFilter}) are created only as fast as they are evaluated.
+	 */
+	private static final class ParallelNonCachingIndividualDecisionRequestEvaluator extends IndividualDecisionRequestEvaluator
+	{
+		private static final RuntimeException NULL_INDIVIDUAL_DECISION_REQUEST_EXCEPTION = new RuntimeException(
+				"One of the individual decision requests returned by the request filter is invalid (null).");
+
+		private static final PdpDecisionResult INTERRUPTED_EVALUATION_RESULT = new ImmutablePdpDecisionResult(new StatusHelper(StatusHelper.STATUS_PROCESSING_ERROR,
+				Optional.of("Evaluation interrupted")));
+
+		private static final class PendingEvaluation<INDIVIDUAL_DECISION_REQ_T extends PdpDecisionRequest>
+		{
+			private final INDIVIDUAL_DECISION_REQ_T request;
+			private final Future<PdpDecisionResult> futureResult;
+
+			private PendingEvaluation(final INDIVIDUAL_DECISION_REQ_T request, final Future<PdpDecisionResult> futureResult)
+			{
+				this.request = request;
+				this.futureResult = futureResult;
+			}
+		}
+
+		private interface OrderedResultHandler<INDIVIDUAL_DECISION_REQ_T extends PdpDecisionRequest>
+		{
+			/**
+			 * Handles the next result, in the order of the requests
+			 * 
+			 * @return true iff no more result is needed (short-circuit)
+			 */
+			boolean handle(INDIVIDUAL_DECISION_REQ_T request, PdpDecisionResult result);
+		}
+
+		private final ExecutorService executor;
+		private final int maxPendingEvaluations;
+
+		private ParallelNonCachingIndividualDecisionRequestEvaluator(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource stdEnvAttributeSource,
+				final DecisionResultFilter resultFilter, final EvaluationTimingRecorder timingRecorder, final boolean enableBatchAttributeResolution, final int minIndexedBagSize,
+				final boolean enableCompactEvaluationContext, final ExecutorService executor, final int maxPendingEvaluations)
+		{
+			super(rootPolicyEvaluator, stdEnvAttributeSource, resultFilter, timingRecorder, enableBatchAttributeResolution, minIndexedBagSize, enableCompactEvaluationContext);
+			assert executor != null && maxPendingEvaluations > 0;
+			this.executor = executor;
+			this.maxPendingEvaluations = maxPendingEvaluations;
+		}
+
+		private <INDIVIDUAL_DECISION_REQ_T extends PdpDecisionRequest> void evaluateInOrder(final Iterator<? extends INDIVIDUAL_DECISION_REQ_T> individualDecisionRequests,
+				final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes, final AttributeResolutionBatch attributeResolutionBatch,
+				final OrderedResultHandler<INDIVIDUAL_DECISION_REQ_T> resultHandler)
+		{
+			/*
+			 * pdpIssuedAttributes is only read (copied into each new evaluation context), therefore may be shared by the concurrent evaluations; and attributeResolutionBatch is thread-safe
+			 */
+			final Deque<PendingEvaluation<INDIVIDUAL_DECISION_REQ_T>> pendingEvaluations = new ArrayDeque<>(maxPendingEvaluations);
+			boolean interrupted = false;
+			try
+			{
+				while (true)
+				{
+					while (!interrupted && pendingEvaluations.size() < maxPendingEvaluations && individualDecisionRequests.hasNext())
+					{
+						final INDIVIDUAL_DECISION_REQ_T individualDecisionRequest = individualDecisionRequests.next();
+						if (individualDecisionRequest == null)
+						{
+							throw NULL_INDIVIDUAL_DECISION_REQUEST_EXCEPTION;
+						}
+
+						pendingEvaluations.add(new PendingEvaluation<>(individualDecisionRequest, executor.submit(new Callable<PdpDecisionResult>()
+						{
+
+							@Override
+							public PdpDecisionResult call()
+							{
+								return evaluateInNewContext(individualDecisionRequest, pdpIssuedAttributes, attributeResolutionBatch);
+							}
+
+						})));
+					}
+
+					final PendingEvaluation<INDIVIDUAL_DECISION_REQ_T> nextEvaluation = pendingEvaluations.poll();
+					final INDIVIDUAL_DECISION_REQ_T request;
+					PdpDecisionResult result;
+					if (nextEvaluation == null)
+					{
+						if (!individualDecisionRequests.hasNext())
+						{
+							return;
+						}
+
+						// interrupted: remaining requests are not evaluated
+						request = individualDecisionRequests.next();
+						result = INTERRUPTED_EVALUATION_RESULT;
+					}
+					else if (interrupted)
+					{
+						nextEvaluation.futureResult.cancel(false);
+						request = nextEvaluation.request;
+						result = INTERRUPTED_EVALUATION_RESULT;
+					}
+					else
+					{
+						request = nextEvaluation.request;
+						try
+						{
+							result = nextEvaluation.futureResult.get();
+						}
+						catch (final InterruptedException e)
+						{
+							LOGGER.warn("Interrupted while waiting for the result of individual decision request: {}", request, e);
+							interrupted = true;
+							nextEvaluation.futureResult.cancel(false);
+							result = INTERRUPTED_EVALUATION_RESULT;
+						}
+						catch (final ExecutionException e)
+						{
+							final Throwable cause = e.getCause();
+							if (cause instanceof RuntimeException)
+							{
+								throw (RuntimeException) cause;
+							}
+
+							if (cause instanceof Error)
+							{
+								throw (Error) cause;
+							}
+
+							throw new RuntimeException("Error evaluating individual decision request: " + request, cause);
+						}
+					}
+
+					if (resultHandler.handle(request, result))
+					{
+						return;
+					}
+				}
+			}
+			finally
+			{
+				// short-circuit or error: remaining results are useless
+				for (final PendingEvaluation<INDIVIDUAL_DECISION_REQ_T> pendingEvaluation : pendingEvaluations)
+				{
+					pendingEvaluation.futureResult.cancel(false);
+				}
+
+				if (interrupted)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		@Override
+		protected <INDIVIDUAL_DECISION_REQ_T extends PdpDecisionRequest> Map<INDIVIDUAL_DECISION_REQ_T, ? extends PdpDecisionResult> evaluate(
+				final List<INDIVIDUAL_DECISION_REQ_T> individualDecisionRequests, final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes) throws IndeterminateEvaluationException
+		{
+			assert individualDecisionRequests != null;
+
+			final Map<INDIVIDUAL_DECISION_REQ_T, PdpDecisionResult> resultsByRequest = HashCollections.newUpdatableMap(individualDecisionRequests.size());
+			final AttributeResolutionBatch attributeResolutionBatch = newAttributeResolutionBatch(individualDecisionRequests.size());
+			evaluateInOrder(individualDecisionRequests.iterator(), pdpIssuedAttributes, attributeResolutionBatch, new OrderedResultHandler<INDIVIDUAL_DECISION_REQ_T>()
+			{
+
+				@Override
+				public boolean handle(final INDIVIDUAL_DECISION_REQ_T request, final PdpDecisionResult result)
+				{
+					resultsByRequest.put(request, result);
+					return false;
+				}
+
+			});
+
+			return resultsByRequest;
+		}
+
+		@Override
+		protected List<Result> evaluateToJAXB(final List<? extends IndividualXACMLRequest> individualDecisionRequests, final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes)
+		{
+			assert individualDecisionRequests != null;
+
+			final FilteringResultCollector filteringResultCollector = beginMultipleDecisions(individualDecisionRequests.size());
+			/*
+			 * Final results returned early by the result filter, if any
+			 */
+			final List<List<Result>> earlyFinalResults = new ArrayList<>(1);
+			final AttributeResolutionBatch attributeResolutionBatch = newAttributeResolutionBatch(individualDecisionRequests.size());
+			evaluateInOrder(individualDecisionRequests.iterator(), pdpIssuedAttributes, attributeResolutionBatch, new OrderedResultHandler<IndividualXACMLRequest>()
+			{
+
+				@Override
+				public boolean handle(final IndividualXACMLRequest request, final PdpDecisionResult result)
+				{
+					final List<Result> finalResults = filteringResultCollector.addResult(request, result);
+					if (finalResults == null)
+					{
+						return false;
+					}
+
+					earlyFinalResults.add(finalResults);
+					return true;
+				}
+
+			});
+
+			return earlyFinalResults.isEmpty() ? filteringResultCollector.getFilteredResults() : earlyFinalResults.get(0);
+		}
+	}
+
 	private static abstract class CachingIndividualRequestEvaluator extends IndividualDecisionRequestEvaluator
 	{
 
@@ -283,14 +609,47 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 		protected static final Result INVALID_DECISION_CACHE_RESULT = new Result(DecisionType.INDETERMINATE, new StatusHelper(StatusHelper.STATUS_PROCESSING_ERROR, Optional.of("Internal error")),
 				null, null, null, null);
 
+		/*
+		 * Maximum number of requests looked up at once in the cache, i.e. of cache keys created before evaluation
+		 */
+		protected static final int MAX_CACHE_LOOKUP_BATCH_SIZE = 64;
+
 		protected final DecisionCache decisionCache;
+		protected final DecisionCacheKeyFactory decisionCacheKeyFactory;
 
 		private CachingIndividualRequestEvaluator(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource stdEnvAttributeSource,
-				final DecisionResultFilter resultFilter, final DecisionCache decisionCache)
+				final DecisionResultFilter resultFilter, final EvaluationTimingRecorder timingRecorder, final boolean enableBatchAttributeResolution, final int minIndexedBagSize,
+				final boolean enableCompactEvaluationContext, final DecisionCache decisionCache, final DecisionCacheKeyFactory decisionCacheKeyFactory)
 		{
-			super(rootPolicyEvaluator, stdEnvAttributeSource, resultFilter);
-			assert decisionCache != null;
+			super(rootPolicyEvaluator, stdEnvAttributeSource, resultFilter, timingRecorder, enableBatchAttributeResolution, minIndexedBagSize, enableCompactEvaluationContext);
+			assert decisionCache != null && decisionCacheKeyFactory != null;
 			this.decisionCache = decisionCache;
+			this.decisionCacheKeyFactory = decisionCacheKeyFactory;
+		}
+
+		/**
+		 * Takes the next requests (at most {@link #MAX_CACHE_LOOKUP_BATCH_SIZE}) from {@code individualDecisionRequests} and computes their cache keys, so that keys are created as requests are
+		 * consumed (requests may come from a lazy list, see {@link MultiDecisionRequestFilter}), not for all requests at once.
+		 * 
+		 * @param requestBatch
+		 *            cleared, then filled with the next requests
+		 * @param cacheKeyBatch
+		 *            cleared, then filled with the cache keys of the next requests, in the same order
+		 * @return false iff there is no more request
+		 */
+		protected final <INDIVIDUAL_DECISION_REQ_T extends PdpDecisionRequest> boolean nextBatch(final Iterator<? extends INDIVIDUAL_DECISION_REQ_T> individualDecisionRequests,
+				final List<INDIVIDUAL_DECISION_REQ_T> requestBatch, final List<PdpDecisionRequest> cacheKeyBatch)
+		{
+			requestBatch.clear();
+			cacheKeyBatch.clear();
+			while (requestBatch.size() < MAX_CACHE_LOOKUP_BATCH_SIZE && individualDecisionRequests.hasNext())
+			{
+				final INDIVIDUAL_DECISION_REQ_T individualDecisionRequest = individualDecisionRequests.next();
+				requestBatch.add(individualDecisionRequest);
+				cacheKeyBatch.add(decisionCacheKeyFactory.getKey(individualDecisionRequest));
+			}
+
+			return !requestBatch.isEmpty();
 		}
 	}
 
@@ -300,110 +659,128 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 		private static final Logger _LOGGER = LoggerFactory.getLogger(IndividualRequestEvaluatorWithCacheIgnoringEvaluationContext.class);
 
 		private IndividualRequestEvaluatorWithCacheIgnoringEvaluationContext(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource stdEnvAttributeSource,
-				final DecisionResultFilter resultFilter, final DecisionCache decisionCache)
+				final DecisionResultFilter resultFilter, final EvaluationTimingRecorder timingRecorder, final boolean enableBatchAttributeResolution, final int minIndexedBagSize,
+				final boolean enableCompactEvaluationContext, final DecisionCache decisionCache, final DecisionCacheKeyFactory decisionCacheKeyFactory)
 		{
-			super(rootPolicyEvaluator, stdEnvAttributeSource, resultFilter, decisionCache);
+			super(rootPolicyEvaluator, stdEnvAttributeSource, resultFilter, timingRecorder, enableBatchAttributeResolution, minIndexedBagSize, enableCompactEvaluationContext, decisionCache,
+					decisionCacheKeyFactory);
 		}
 
 		@Override
 		public <INDIVIDUAL_DECISION_REQ_T extends PdpDecisionRequest> Map<INDIVIDUAL_DECISION_REQ_T, ? extends PdpDecisionResult> evaluate(
 				final List<INDIVIDUAL_DECISION_REQ_T> individualDecisionRequests, final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes) throws IndeterminateEvaluationException
 		{
-			final Map<INDIVIDUAL_DECISION_REQ_T, PdpDecisionResult> cachedResultsByRequest = decisionCache.getAll(individualDecisionRequests);
-			if (cachedResultsByRequest == null)
-			{
-				// error, return indeterminate result as only result
-				_LOGGER.error("Invalid decision cache result: null");
-				throw INDETERMINATE_EVALUATION_EXCEPTION;
-			}
-
+			final Map<INDIVIDUAL_DECISION_REQ_T, PdpDecisionResult> finalResultsByRequest = HashCollections.newUpdatableMap(individualDecisionRequests.size());
+			final AttributeResolutionBatch attributeResolutionBatch = newAttributeResolutionBatch(individualDecisionRequests.size());
+			final int maxBatchSize = Math.min(individualDecisionRequests.size(), MAX_CACHE_LOOKUP_BATCH_SIZE);
+			final List<INDIVIDUAL_DECISION_REQ_T> requestBatch = new ArrayList<>(maxBatchSize);
+			final List<PdpDecisionRequest> cacheKeyBatch = new ArrayList<>(maxBatchSize);
 			/*
-			 * There will be at most as many new results (not in cache) as there are individual decision requests
+			 * There will be at most as many new results (not in cache) as there are individual decision requests in the batch
 			 */
-			final Map<INDIVIDUAL_DECISION_REQ_T, PdpDecisionResult> finalResultsByRequest = HashCollections.newUpdatableMap(individualDecisionRequests.size());
-			final Map<INDIVIDUAL_DECISION_REQ_T, PdpDecisionResult> newResultsByRequest = HashCollections.newUpdatableMap(individualDecisionRequests.size());
-			for (final INDIVIDUAL_DECISION_REQ_T individualDecisionRequest : individualDecisionRequests)
+			final Map<PdpDecisionRequest, PdpDecisionResult> newResultsByKey = HashCollections.newUpdatableMap(maxBatchSize);
+			final Iterator<INDIVIDUAL_DECISION_REQ_T> requestIterator = individualDecisionRequests.iterator();
+			while (nextBatch(requestIterator, requestBatch, cacheKeyBatch))
 			{
-				final PdpDecisionResult finalResult;
-				/*
-				 * Check whether there is any decision result in cache for this request
-				 */
-				final PdpDecisionResult cachedResult = cachedResultsByRequest.get(individualDecisionRequest);
-				if (cachedResult == null)
+				final Map<PdpDecisionRequest, PdpDecisionResult> cachedResultsByKey = decisionCache.getAll(cacheKeyBatch);
+				if (cachedResultsByKey == null)
 				{
-					// result not in cache -> evaluate request
-					finalResult = evaluateInNewContext(individualDecisionRequest, pdpIssuedAttributes);
-					newResultsByRequest.put(individualDecisionRequest, finalResult);
+					// error, return indeterminate result as only result
+					_LOGGER.error("Invalid decision cache result: null");
+					throw INDETERMINATE_EVALUATION_EXCEPTION;
 				}
-				else
+
+				newResultsByKey.clear();
+				for (int i = 0; i < requestBatch.size(); i++)
 				{
-					finalResult = cachedResult;
+					final INDIVIDUAL_DECISION_REQ_T individualDecisionRequest = requestBatch.get(i);
+					final PdpDecisionResult finalResult = getOrEvaluate(individualDecisionRequest, cacheKeyBatch.get(i), cachedResultsByKey, newResultsByKey, pdpIssuedAttributes,
+							attributeResolutionBatch);
+					finalResultsByRequest.put(individualDecisionRequest, finalResult);
 				}
 
-				finalResultsByRequest.put(individualDecisionRequest, finalResult);
+				if (!newResultsByKey.isEmpty())
+				{
+					decisionCache.putAll(newResultsByKey);
+				}
 			}
 
-			if (!newResultsByRequest.isEmpty())
+			return finalResultsByRequest;
+		}
+
+		/*
+		 * Get the result from the cache, or from the new results of previous requests with the same cache key, or else evaluate the request and add the result to the new results
+		 */
+		private PdpDecisionResult getOrEvaluate(final PdpDecisionRequest individualDecisionRequest, final PdpDecisionRequest cacheKey,
+				final Map<PdpDecisionRequest, PdpDecisionResult> cachedResultsByKey, final Map<PdpDecisionRequest, PdpDecisionResult> newResultsByKey,
+				final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes, final AttributeResolutionBatch attributeResolutionBatch)
+		{
+			final PdpDecisionResult cachedResult = cachedResultsByKey.get(cacheKey);
+			if (cachedResult != null)
 			{
-				decisionCache.putAll(newResultsByRequest);
+				return cachedResult;
 			}
 
-			return finalResultsByRequest;
+			final PdpDecisionResult newResult = newResultsByKey.get(cacheKey);
+			if (newResult != null)
+			{
+				return newResult;
+			}
+
+			// result not in cache -> evaluate request
+			final PdpDecisionResult finalResult = evaluateInNewContext(individualDecisionRequest, pdpIssuedAttributes, attributeResolutionBatch);
+			newResultsByKey.put(cacheKey, finalResult);
+			return finalResult;
 		}
 
 		@Override
 		public List<Result> evaluateToJAXB(final List<? extends IndividualXACMLRequest> individualDecisionRequests, final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes)
 		{
-			final Map<? extends IndividualXACMLRequest, PdpDecisionResult> cachedResultsByRequest = decisionCache.getAll(individualDecisionRequests);
-			if (cachedResultsByRequest == null)
-			{
-				// error, return indeterminate result as only result
-				_LOGGER.error("Invalid decision cache result: null");
-				return Collections.singletonList(INVALID_DECISION_CACHE_RESULT);
-			}
-
+			final FilteringResultCollector filteringResultCollector = beginMultipleDecisions(individualDecisionRequests.size());
+			final AttributeResolutionBatch attributeResolutionBatch = newAttributeResolutionBatch(individualDecisionRequests.size());
+			final int maxBatchSize = Math.min(individualDecisionRequests.size(), MAX_CACHE_LOOKUP_BATCH_SIZE);
+			final List<IndividualXACMLRequest> requestBatch = new ArrayList<>(maxBatchSize);
+			final List<PdpDecisionRequest> cacheKeyBatch = new ArrayList<>(maxBatchSize);
 			/*
-			 * There will be at most as many new results (not in cache) as there are individual decision requests
+			 * There will be at most as many new results (not in cache) as there are individual decision requests in the batch
 			 */
-			final FilteringResultCollector filteringResultCollector = beginMultipleDecisions(individualDecisionRequests.size());
-			final Map<IndividualXACMLRequest, PdpDecisionResult> newResultsByRequest = HashCollections.newUpdatableMap(individualDecisionRequests.size());
-
-			try
+			final Map<PdpDecisionRequest, PdpDecisionResult> newResultsByKey = HashCollections.newUpdatableMap(maxBatchSize);
+			final Iterator<? extends IndividualXACMLRequest> requestIterator = individualDecisionRequests.iterator();
+			while (nextBatch(requestIterator, requestBatch, cacheKeyBatch))
 			{
-				for (final IndividualXACMLRequest individualDecisionRequest : individualDecisionRequests)
+				final Map<PdpDecisionRequest, PdpDecisionResult> cachedResultsByKey = decisionCache.getAll(cacheKeyBatch);
+				if (cachedResultsByKey == null)
 				{
-					final PdpDecisionResult finalResult;
-					/*
-					 * Check whether there is any decision result in cache for this request
-					 */
-					final PdpDecisionResult cachedResult = cachedResultsByRequest.get(individualDecisionRequest);
-					if (cachedResult == null)
-					{
-						// result not in cache -> evaluate request
-						finalResult = evaluateInNewContext(individualDecisionRequest, pdpIssuedAttributes);
-						newResultsByRequest.put(individualDecisionRequest, finalResult);
-					}
-					else
-					{
-						finalResult = cachedResult;
-					}
+					// error, return indeterminate result as only result
+					_LOGGER.error("Invalid decision cache result: null");
+					return Collections.singletonList(INVALID_DECISION_CACHE_RESULT);
+				}
 
-					final List<Result> finalResults = filteringResultCollector.addResult(individualDecisionRequest, finalResult);
-					if (finalResults != null)
+				newResultsByKey.clear();
+				try
+				{
+					for (int i = 0; i < requestBatch.size(); i++)
 					{
-						return finalResults;
+						final IndividualXACMLRequest individualDecisionRequest = requestBatch.get(i);
+						final PdpDecisionResult finalResult = getOrEvaluate(individualDecisionRequest, cacheKeyBatch.get(i), cachedResultsByKey, newResultsByKey, pdpIssuedAttributes,
+								attributeResolutionBatch);
+						final List<Result> finalResults = filteringResultCollector.addResult(individualDecisionRequest, finalResult);
+						if (finalResults != null)
+						{
+							return finalResults;
+						}
 					}
 				}
-
-				return filteringResultCollector.getFilteredResults();
-			}
-			finally
-			{
-				if (!newResultsByRequest.isEmpty())
+				finally
 				{
-					decisionCache.putAll(newResultsByRequest);
+					if (!newResultsByKey.isEmpty())
+					{
+						decisionCache.putAll(newResultsByKey);
+					}
 				}
 			}
+
+			return filteringResultCollector.getFilteredResults();
 		}
 
 	}
@@ -412,19 +789,22 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 	{
 
 		public IndividualRequestEvaluatorWithCacheUsingEvaluationContext(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource validStdEnvAttrSrc,
-				final DecisionResultFilter decisionResultFilter, final DecisionCache decisionCache)
+				final DecisionResultFilter decisionResultFilter, final EvaluationTimingRecorder timingRecorder, final boolean enableBatchAttributeResolution, final int minIndexedBagSize,
+				final boolean enableCompactEvaluationContext, final DecisionCache decisionCache, final DecisionCacheKeyFactory decisionCacheKeyFactory)
 		{
-			super(rootPolicyEvaluator, validStdEnvAttrSrc, decisionResultFilter, decisionCache);
+			super(rootPolicyEvaluator, validStdEnvAttrSrc, decisionResultFilter, timingRecorder, enableBatchAttributeResolution, minIndexedBagSize, enableCompactEvaluationContext, decisionCache,
+					decisionCacheKeyFactory);
 		}
 
 		private <INDIVIDUAL_DECISION_REQ_T extends PdpDecisionRequest> PdpDecisionResult evaluate(final INDIVIDUAL_DECISION_REQ_T individualDecisionRequest,
-				final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes)
+				final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes, final AttributeResolutionBatch attributeResolutionBatch)
 		{
 			/*
 			 * Check whether there is any decision result in cache for this request
 			 */
-			final EvaluationContext evalCtx = newEvaluationContext(individualDecisionRequest, pdpIssuedAttributes);
-			final PdpDecisionResult cachedResult = decisionCache.get(individualDecisionRequest, evalCtx);
+			final EvaluationContext evalCtx = newEvaluationContext(individualDecisionRequest, pdpIssuedAttributes, attributeResolutionBatch);
+			final PdpDecisionRequest cacheKey = decisionCacheKeyFactory.getKey(individualDecisionRequest);
+			final PdpDecisionResult cachedResult = decisionCache.get(cacheKey, evalCtx);
 			if (cachedResult != null)
 			{
 				return cachedResult;
@@ -432,7 +812,7 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 
 			// result not in cache -> evaluate request
 			final PdpDecisionResult finalResult = evaluateReusingContext(evalCtx);
-			decisionCache.put(individualDecisionRequest, finalResult, evalCtx);
+			decisionCache.put(cacheKey, finalResult, evalCtx);
 			return finalResult;
 		}
 
@@ -444,9 +824,10 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 			 * There will be at most as many new results (not in cache) as there are individual decision requests
 			 */
 			final Map<INDIVIDUAL_DECISION_REQ_T, PdpDecisionResult> finalResultsByRequest = HashCollections.newUpdatableMap(individualDecisionRequests.size());
+			final AttributeResolutionBatch attributeResolutionBatch = newAttributeResolutionBatch(individualDecisionRequests.size());
 			for (final INDIVIDUAL_DECISION_REQ_T individualDecisionRequest : individualDecisionRequests)
 			{
-				final PdpDecisionResult finalResult = evaluate(individualDecisionRequest, pdpIssuedAttributes);
+				final PdpDecisionResult finalResult = evaluate(individualDecisionRequest, pdpIssuedAttributes, attributeResolutionBatch);
 				finalResultsByRequest.put(individualDecisionRequest, finalResult);
 			}
 
@@ -460,10 +841,10 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 			 * There will be at most as many new results (not in cache) as there are individual decision requests
 			 */
 			final FilteringResultCollector filteringResultCollector = beginMultipleDecisions(individualDecisionRequests.size());
-
+			final AttributeResolutionBatch attributeResolutionBatch = newAttributeResolutionBatch(individualDecisionRequests.size());
 			for (final IndividualXACMLRequest individualDecisionRequest : individualDecisionRequests)
 			{
-				final PdpDecisionResult finalResult = evaluate(individualDecisionRequest, pdpIssuedAttributes);
+				final PdpDecisionResult finalResult = evaluate(individualDecisionRequest, pdpIssuedAttributes, attributeResolutionBatch);
 				final List<Result> finalResults = filteringResultCollector.addResult(individualDecisionRequest, finalResult);
 				if (finalResults != null)
 				{
@@ -478,11 +859,25 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 
 	private final boolean strictAttributeIssuerMatch;
 	private final RequestFilter reqFilter;
+	// null iff the request filter is not one of the default/multiple-decision filters (see constructor)
+	private final StaxXACMLRequestParser xmlRequestStreamParser;
+	// null iff xmlRequestStreamParser is null
+	private final JsonXACMLRequestParser jsonRequestParser;
 	private final IndividualDecisionRequestEvaluator individualReqEvaluator;
 	private final DecisionCache decisionCache;
 	private final RootPolicyEvaluator rootPolicyEvaluator;
+	// not null iff all policies are statically resolved (as of PDP initialization; see getPolicyRelevantAttributes() for the current root policy)
+	private final Set<AttributeFQN> policyRelevantAttributes;
+	// not null iff root policy is statically resolved
+	private final RootPolicyEvaluators.Reloadable reloadableRootPolicyEvaluator;
 	private final StandardEnvironmentAttributeIssuer pdpStdEnvAttributeIssuer;
 	private final int badRequestStatusDetailLevel;
+	// strictly negative means no limit
+	private final int maxIndividualDecisionRequests;
+	// executor created by and for this PDP only, to be shut down when the PDP is closed; null if none
+	private final ExecutorService ownedIndividualDecisionExecutor;
+	// null iff evaluation timings disabled
+	private final EvaluationTimingRecorder evaluationTimingRecorder;
 
 	/**
 	 * Constructs a new <code>PDP</code> object with the given configuration information.
@@ -538,6 +933,100 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 			final AbstractPolicyProvider jaxbRefPolicyProviderConf, final int maxPolicySetRefDepth, final String requestFilterId, final boolean strictAttributeIssuerMatch,
 			final StandardEnvironmentAttributeSource stdEnvAttributeSource, final DecisionResultFilter decisionResultFilter, final AbstractDecisionCache jaxbDecisionCacheConf,
 			final int badRequestStatusDetailLevel, final EnvironmentProperties environmentProperties) throws IllegalArgumentException, IOException
+	{
+		this(attributeFactory, functionRegistry, jaxbAttributeProviderConfs, maxVariableReferenceDepth, enableXPath, combiningAlgRegistry, jaxbRootPolicyProviderConf, jaxbRefPolicyProviderConf,
+				maxPolicySetRefDepth, requestFilterId, strictAttributeIssuerMatch, stdEnvAttributeSource, decisionResultFilter, jaxbDecisionCacheConf, badRequestStatusDetailLevel, -1,
+				-1, false, false, false, MatchEvaluationOrder.DOCUMENT, DEFAULT_MIN_INDEXED_BAG_SIZE, false, false, environmentProperties);
+	}
+
+	/**
+	 * Constructs a new <code>PDP</code> object with the given configuration information, and optional parallel evaluation of the Individual Decision Requests of a Multiple Decision Request.
+	 *
+	 * @param attributeFactory
+	 *            attribute value factory - mandatory
+	 * @param functionRegistry
+	 *            function registry - mandatory
+	 * @param jaxbAttributeProviderConfs
+	 *            XML/JAXB configurations of Attribute Providers for AttributeDesignator/AttributeSelector evaluation; may be null for static expression evaluation (out of context), in which case
+	 *            AttributeSelectors/AttributeDesignators are not supported
+	 * @param maxVariableReferenceDepth
+	 *            max depth of VariableReference chaining: VariableDefinition -> VariableDefinition ->... ('->' represents a VariableReference); strictly negative value means no limit
+	 * 
+	 * @param enableXPath
+	 *            allow XPath evaluation, i.e. AttributeSelectors and xpathExpressions (experimental, not for production, use with caution)
+	 * @param requestFilterId
+	 *            ID of request filter (XACML Request processing prior to policy evaluation) - mandatory
+	 * @param decisionResultFilter
+	 *            decision result filter (XACML Result processing after policy evaluation, before creating/returning final XACML Response)
+	 * @param jaxbDecisionCacheConf
+	 *            decision response cache XML/JAXB configuration
+	 * @param jaxbRootPolicyProviderConf
+	 *            root policy Provider's XML/JAXB configuration - mandatory
+	 * @param combiningAlgRegistry
+	 *            XACML policy/rule combining algorithm registry - mandatory
+	 * @param jaxbRefPolicyProviderConf
+	 *            policy-by-reference Provider's XML/JAXB configuration, for resolving policies referred to by Policy(Set)IdReference in policies found by root policy Provider
+	 * @param maxPolicySetRefDepth
+	 *            max allowed PolicySetIdReference chain: PolicySet1 (PolicySetIdRef1) -> PolicySet2 (PolicySetIdRef2) -> ...; a strictly negative value means no limit
+	 * @param strictAttributeIssuerMatch
+	 *            true iff strict Attribute Issuer matching is enabled (see {@link Pdp#isStrictAttributeIssuerMatch()})
+	 * @param stdEnvAttributeSource
+	 *            source for standard environment current-time/current-date/current-dateTime attribute values (request or PDP, etc.)
+	 * @param badRequestStatusDetailLevel
+	 *            level of detail in the StatusDetail returned in the Indeterminate Result when the Request format/syntax is invalid
+	 * @param multipleDecisionParallelism
+	 *            parallel evaluation of Individual Decision Requests of a same (Multiple Decision) Request: strictly negative value means no parallel evaluation (sequential evaluation on the
+	 *            caller's thread); zero means parallel evaluation with the common {@link ForkJoinPool}; and a strictly positive value N means parallel evaluation with a {@link ForkJoinPool}
+	 *            dedicated to this PDP, with parallelism N. Ignored if a decision cache is enabled.
+	 * @param maxIndividualDecisionRequests
+	 *            maximum number of Individual Decision Requests resulting from a same (Multiple Decision) Request, e.g. the number of combinations of repeated attribute categories; strictly negative
+	 *            value means no limit. If the limit is exceeded, the PDP returns a single Indeterminate Result (processing error) without evaluating any Individual Decision Request.
+	 * @param enableEvaluationTimings
+	 *            true iff the time spent in the main evaluation steps (whole decision, Targets, combining algorithms, Attribute Providers, AttributeSelectors) must be recorded, in which case the
+	 *            timings are available from {@link #getEvaluationTimings()} and registered as MXBean in the platform MBean server (see {@link EvaluationTimingRecorder})
+	 * @param enableAttributePrefetch
+	 *            true iff the attributes referenced by AttributeDesignators in the policies and provided by asynchronous Attribute Provider modules ({@link AsyncAttributeProviderModule}) must be
+	 *            requested concurrently before evaluating each Individual Decision Request - instead of one after the other when needed during evaluation - if missing from the request. No effect if
+	 *            there is no such Attribute Provider module.
+	 * @param enableBatchAttributeResolution
+	 *            true iff an attribute resolved by an Attribute Provider module for an Individual Decision Request of a Multiple Decision Request must be reused for the other Individual Decision
+	 *            Requests with the same values of the module's dependencies (attributes declared as required by the module's factory), e.g. the same subject, instead of calling the module again
+	 *            (see {@link AttributeResolutionBatch}). Enable only if every Attribute Provider module's result depends only on its declared dependencies.
+	 * @param matchEvaluationOrder
+	 *            order of evaluation of the Matches of an AllOf, the AllOfs of an AnyOf and the AnyOfs of a Target: document order, increasing estimated cost, or adaptive (based on statistics
+	 *            collected at runtime); the order does not change the decisions. Null means document order.
+	 * @param minIndexedBagSize
+	 *            minimum number of values in a bag (e.g. multi-valued attribute from the request or an Attribute Provider) to build a hash index of its values, once per Individual Decision Request,
+	 *            used by the Matches and bag/set functions using equality (is-in, at-least-one-member-of, subset...) on the bag instead of searching the bag linearly; 0 or negative value disables
+	 *            bag indexing. Ignored unless {@code enableCompactEvaluationContext}.
+	 * @param enableCompactEvaluationContext
+	 *            true iff each Individual Decision Request must be evaluated in a {@link CompactEvaluationContext} - the attributes from the request and the PDP are looked up in the original maps
+	 *            instead of being copied, variable values and request-scoped memos are stored in arrays indexed by slot, and large bags may be indexed - instead of an
+	 *            {@link IndividualDecisionRequestContext} (see {@link Pdp#isEnableCompactEvaluationContext()})
+	 * @param indexRuleTargets
+	 *            true iff the Targets of the Rules of each Policy with many Rules must be indexed by the values of their equality Matches on AttributeDesignators, in order to skip the Rules that
+	 *            cannot match the request context without evaluating their Targets (see {@link Pdp#isIndexRuleTargets()}); the index does not change the decisions
+	 * @param compileConditions
+	 *            true iff the Rule Conditions must be compiled, i.e. the calls to the logical functions 'and', 'or' and 'not' evaluated on primitive booleans (see {@link Pdp#isCompileConditions()});
+	 *            the compilation does not change the decisions
+	 * @param environmentProperties
+	 *            PDP configuration environment properties
+	 * @throws java.lang.IllegalArgumentException
+	 *             if there is not any extension found for type {@link org.ow2.authzforce.core.pdp.api.RequestFilter.Factory} with ID {@code requestFilterId}; or if one of the mandatory arguments is
+	 *             null; or if any Attribute Provider module created from {@code jaxbAttributeProviderConfs} does not provide any attribute; or it is in conflict with another one already registered to
+	 *             provide the same or part of the same attributes; of if there is no extension supporting {@code jaxbDecisionCacheConf}
+	 * @throws java.io.IOException
+	 *             error closing the root policy Provider when static resolution is to be used; or error closing the attribute Provider modules created from {@code jaxbAttributeProviderConfs}, when
+	 *             and before an {@link IllegalArgumentException} is raised
+	 */
+	public BasePdpEngine(final DatatypeFactoryRegistry attributeFactory, final FunctionRegistry functionRegistry, final List<AbstractAttributeProvider> jaxbAttributeProviderConfs,
+			final int maxVariableReferenceDepth, final boolean enableXPath, final CombiningAlgRegistry combiningAlgRegistry, final AbstractPolicyProvider jaxbRootPolicyProviderConf,
+			final AbstractPolicyProvider jaxbRefPolicyProviderConf, final int maxPolicySetRefDepth, final String requestFilterId, final boolean strictAttributeIssuerMatch,
+			final StandardEnvironmentAttributeSource stdEnvAttributeSource, final DecisionResultFilter decisionResultFilter, final AbstractDecisionCache jaxbDecisionCacheConf,
+			final int badRequestStatusDetailLevel, final int multipleDecisionParallelism, final int maxIndividualDecisionRequests, final boolean enableEvaluationTimings,
+			final boolean enableAttributePrefetch, final boolean enableBatchAttributeResolution, final MatchEvaluationOrder matchEvaluationOrder, final int minIndexedBagSize,
+			final boolean enableCompactEvaluationContext, final boolean indexRuleTargets, final boolean compileConditions, final EnvironmentProperties environmentProperties)
+			throws IllegalArgumentException, IOException
 	{
 		this.strictAttributeIssuerMatch = strictAttributeIssuerMatch;
 
@@ -547,19 +1036,58 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 		final RequestFilter requestFilter = requestFilterFactory.getInstance(attributeFactory, strictAttributeIssuerMatch, enableXPath, XMLUtils.SAXON_PROCESSOR);
 
 		final RootPolicyEvaluators.Base candidateRootPolicyEvaluator = new RootPolicyEvaluators.Base(attributeFactory, functionRegistry, jaxbAttributeProviderConfs, maxVariableReferenceDepth,
-				enableXPath, combiningAlgRegistry, jaxbRootPolicyProviderConf, jaxbRefPolicyProviderConf, maxPolicySetRefDepth, strictAttributeIssuerMatch, environmentProperties);
-		// Use static resolution if possible
-		final RootPolicyEvaluator staticRootPolicyEvaluator = candidateRootPolicyEvaluator.toStatic();
-		if (staticRootPolicyEvaluator == null)
+				enableXPath, combiningAlgRegistry, jaxbRootPolicyProviderConf, jaxbRefPolicyProviderConf, maxPolicySetRefDepth, strictAttributeIssuerMatch, matchEvaluationOrder,
+				indexRuleTargets, compileConditions, environmentProperties);
+		// Use static resolution if possible, in reloadable mode (see reloadRootPolicy(...))
+		this.reloadableRootPolicyEvaluator = candidateRootPolicyEvaluator.toReloadable();
+		if (reloadableRootPolicyEvaluator == null)
 		{
 			this.rootPolicyEvaluator = candidateRootPolicyEvaluator;
 		}
 		else
 		{
-			this.rootPolicyEvaluator = staticRootPolicyEvaluator;
+			this.rootPolicyEvaluator = reloadableRootPolicyEvaluator;
 		}
 
+		/*
+		 * If the root policy and all referenced policies are statically resolved, no other policy may be loaded later (reload is not supported with a decision cache), therefore no other attribute
+		 * may influence the decision
+		 */
+		this.policyRelevantAttributes = rootPolicyEvaluator.getStaticApplicablePolicies() == null ? null : candidateRootPolicyEvaluator.getReferencedAttributes();
+
 		this.reqFilter = requestFilter;
+		/*
+		 * The streaming request parsers do not go through the request filter, so they handle duplicate Attributes (with same metadata) like the configured filter if it is one of the default or
+		 * multiple-decision filters: allowed by the lax ones, rejected by the strict ones. The behavior of any other filter is unknown, so the streaming parsers are disabled in this case.
+		 */
+		final String actualRequestFilterId = requestFilterFactory.getId();
+		final Boolean allowAttributeDuplicatesInStreamedRequests;
+		if (actualRequestFilterId.equals(DefaultRequestFilter.LaxFilterFactory.ID) || actualRequestFilterId.equals(MultiDecisionRequestFilter.LaxFilterFactory.ID))
+		{
+			allowAttributeDuplicatesInStreamedRequests = Boolean.TRUE;
+		}
+		else if (actualRequestFilterId.equals(DefaultRequestFilter.StrictFilterFactory.ID) || actualRequestFilterId.equals(MultiDecisionRequestFilter.StrictFilterFactory.ID))
+		{
+			allowAttributeDuplicatesInStreamedRequests = Boolean.FALSE;
+		}
+		else
+		{
+			allowAttributeDuplicatesInStreamedRequests = null;
+		}
+
+		if (allowAttributeDuplicatesInStreamedRequests == null)
+		{
+			LOGGER.info("Request filter '{}' is not one of the default/multiple-decision filters: streaming request parsing (parseXMLRequest, evaluateXML, evaluateJSON) disabled",
+					actualRequestFilterId);
+			this.xmlRequestStreamParser = null;
+			this.jsonRequestParser = null;
+		}
+		else
+		{
+			this.xmlRequestStreamParser = new StaxXACMLRequestParser(attributeFactory, allowAttributeDuplicatesInStreamedRequests, enableXPath, XMLUtils.SAXON_PROCESSOR);
+			this.jsonRequestParser = new JsonXACMLRequestParser(attributeFactory, allowAttributeDuplicatesInStreamedRequests, enableXPath, XMLUtils.SAXON_PROCESSOR,
+					maxIndividualDecisionRequests);
+		}
 
 		// decision cache
 		if (jaxbDecisionCacheConf == null)
@@ -568,24 +1096,93 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 		}
 		else
 		{
-			final DecisionCache.Factory<AbstractDecisionCache> responseCacheStoreFactory = PdpExtensionLoader.getDecisionCacheFactory(jaxbDecisionCacheConf);
-			this.decisionCache = responseCacheStoreFactory.getInstance(jaxbDecisionCacheConf);
+			final DecisionCache.Factory<AbstractDecisionCache> responseCacheStoreFactory = PdpExtensionLoader.getDecisionCacheFactory(jaxbDecisionCacheConf);
+			this.decisionCache = responseCacheStoreFactory.getInstance(jaxbDecisionCacheConf);
+		}
+
+		if (enableEvaluationTimings)
+		{
+			this.evaluationTimingRecorder = new EvaluationTimingRecorder();
+			this.evaluationTimingRecorder.registerMBean();
+		}
+		else
+		{
+			this.evaluationTimingRecorder = null;
+		}
+
+		/*
+		 * Root policy evaluator used for Individual Decision Requests (possibly prefetching attributes)
+		 */
+		final RootPolicyEvaluator evaluatedRootPolicyEvaluator = enableAttributePrefetch ? candidateRootPolicyEvaluator.toAttributePrefetching(rootPolicyEvaluator) : rootPolicyEvaluator;
+		if (evaluatedRootPolicyEvaluator != rootPolicyEvaluator)
+		{
+			LOGGER.debug("Attribute prefetch enabled");
 		}
 
 		final StandardEnvironmentAttributeSource validStdEnvAttrSrc = stdEnvAttributeSource == null ? DEFAULT_STD_ENV_ATTRIBUTE_SOURCE : stdEnvAttributeSource;
+		final int validMinIndexedBagSize = minIndexedBagSize < 0 ? 0 : minIndexedBagSize;
 		this.pdpStdEnvAttributeIssuer = validStdEnvAttrSrc == StandardEnvironmentAttributeSource.REQUEST_ONLY ? NULL_STD_ENV_ATTRIBUTE_ISSUER : DEFAULT_TZ_BASED_STD_ENV_ATTRIBUTE_ISSUER;
 		if (this.decisionCache == null)
 		{
-			this.individualReqEvaluator = new NonCachingIndividualDecisionRequestEvaluator(rootPolicyEvaluator, validStdEnvAttrSrc, decisionResultFilter);
+			if (multipleDecisionParallelism < 0)
+			{
+				this.ownedIndividualDecisionExecutor = null;
+				this.individualReqEvaluator = new NonCachingIndividualDecisionRequestEvaluator(evaluatedRootPolicyEvaluator, validStdEnvAttrSrc, decisionResultFilter, evaluationTimingRecorder,
+						enableBatchAttributeResolution, validMinIndexedBagSize, enableCompactEvaluationContext);
+			}
+			else
+			{
+				final ForkJoinPool executor;
+				if (multipleDecisionParallelism == 0)
+				{
+					executor = ForkJoinPool.commonPool();
+					this.ownedIndividualDecisionExecutor = null;
+				}
+				else
+				{
+					executor = new ForkJoinPool(multipleDecisionParallelism);
+					this.ownedIndividualDecisionExecutor = executor;
+				}
+
+				/*
+				 * Keep the executor busy while the results are being collected, without creating/submitting all requests at once
+				 */
+				this.individualReqEvaluator = new ParallelNonCachingIndividualDecisionRequestEvaluator(evaluatedRootPolicyEvaluator, validStdEnvAttrSrc, decisionResultFilter,
+						evaluationTimingRecorder, enableBatchAttributeResolution, validMinIndexedBagSize, enableCompactEvaluationContext, executor, 2 * executor.getParallelism());
+			}
 		}
 		else
 		{
-			this.individualReqEvaluator = this.decisionCache.isEvaluationContextRequired() ? new IndividualRequestEvaluatorWithCacheUsingEvaluationContext(rootPolicyEvaluator, validStdEnvAttrSrc,
-					decisionResultFilter, this.decisionCache) : new IndividualRequestEvaluatorWithCacheIgnoringEvaluationContext(rootPolicyEvaluator, validStdEnvAttrSrc, decisionResultFilter,
-					this.decisionCache);
+			if (multipleDecisionParallelism >= 0)
+			{
+				LOGGER.warn("Parallel evaluation of Multiple Decision requests (multipleDecisionParallelism = {}) is not supported with a decision cache: ignored", multipleDecisionParallelism);
+			}
+
+			this.ownedIndividualDecisionExecutor = null;
+			/*
+			 * Use only the attributes that may influence the decision in cache keys, if they are known. Standard environment attributes in the request do not, if the PDP always issues them.
+			 */
+			final boolean isStdEnvAttributeIgnored = validStdEnvAttrSrc == StandardEnvironmentAttributeSource.PDP_ONLY;
+			final DecisionCacheKeyFactory decisionCacheKeyFactory;
+			if (policyRelevantAttributes == null && !isStdEnvAttributeIgnored)
+			{
+				decisionCacheKeyFactory = IDENTITY_DECISION_CACHE_KEY_FACTORY;
+			}
+			else
+			{
+				LOGGER.debug("Decision cache keys limited to policy-relevant attributes: {} (standard environment attributes excluded: {})", policyRelevantAttributes, isStdEnvAttributeIgnored);
+				decisionCacheKeyFactory = new RelevantAttributeBasedDecisionCacheKeyFactory(policyRelevantAttributes, isStdEnvAttributeIgnored);
+			}
+
+			this.individualReqEvaluator = this.decisionCache.isEvaluationContextRequired() ? new IndividualRequestEvaluatorWithCacheUsingEvaluationContext(evaluatedRootPolicyEvaluator,
+					validStdEnvAttrSrc, decisionResultFilter, evaluationTimingRecorder, enableBatchAttributeResolution, validMinIndexedBagSize, enableCompactEvaluationContext, this.decisionCache,
+					decisionCacheKeyFactory)
+					: new IndividualRequestEvaluatorWithCacheIgnoringEvaluationContext(evaluatedRootPolicyEvaluator, validStdEnvAttrSrc, decisionResultFilter, evaluationTimingRecorder,
+							enableBatchAttributeResolution, validMinIndexedBagSize, enableCompactEvaluationContext, this.decisionCache, decisionCacheKeyFactory);
 		}
 
 		this.badRequestStatusDetailLevel = badRequestStatusDetailLevel;
+		this.maxIndividualDecisionRequests = maxIndividualDecisionRequests;
 	}
 
 	private static boolean isXpathBased(final Function<?> function)
@@ -759,9 +1356,45 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 			throw new IllegalArgumentException("Invalid maxPolicyRefDepth: " + bigMaxPolicyRefDepth, e);
 		}
 
+		final BigInteger bigMultipleDecisionParallelism = pdpJaxbConf.getMultipleDecisionParallelism();
+		final int multipleDecisionParallelism;
+		try
+		{
+			multipleDecisionParallelism = bigMultipleDecisionParallelism == null ? -1 : bigMultipleDecisionParallelism.intValueExact();
+		}
+		catch (final ArithmeticException e)
+		{
+			throw new IllegalArgumentException("Invalid multipleDecisionParallelism: " + bigMultipleDecisionParallelism, e);
+		}
+
+		final BigInteger bigMinIndexedBagSize = pdpJaxbConf.getMinIndexedBagSize();
+		final int minIndexedBagSize;
+		try
+		{
+			minIndexedBagSize = bigMinIndexedBagSize.intValueExact();
+		}
+		catch (final ArithmeticException e)
+		{
+			throw new IllegalArgumentException("Invalid minIndexedBagSize: " + bigMinIndexedBagSize, e);
+		}
+
+		final BigInteger bigMaxIndividualDecisionRequests = pdpJaxbConf.getMaxIndividualDecisionRequests();
+		final int maxIndividualDecisionRequests;
+		try
+		{
+			maxIndividualDecisionRequests = bigMaxIndividualDecisionRequests == null ? -1 : bigMaxIndividualDecisionRequests.intValueExact();
+		}
+		catch (final ArithmeticException e)
+		{
+			throw new IllegalArgumentException("Invalid maxIndividualDecisionRequests: " + bigMaxIndividualDecisionRequests, e);
+		}
+
 		return new BasePdpEngine(datatypeFactoryRegistry, functionRegistry, pdpJaxbConf.getAttributeProviders(), maxVarRefDepth, enableXPath, combiningAlgRegistry,
 				pdpJaxbConf.getRootPolicyProvider(), pdpJaxbConf.getRefPolicyProvider(), maxPolicyRefDepth, pdpJaxbConf.getRequestFilter(), pdpJaxbConf.isStrictAttributeIssuerMatch(),
-				pdpJaxbConf.getStandardEnvAttributeSource(), decisionResultFilter, jaxbDecisionCache, pdpJaxbConf.getBadRequestStatusDetailLevel().intValue(), envProps);
+				pdpJaxbConf.getStandardEnvAttributeSource(), decisionResultFilter, jaxbDecisionCache, pdpJaxbConf.getBadRequestStatusDetailLevel().intValue(), multipleDecisionParallelism,
+				maxIndividualDecisionRequests, pdpJaxbConf.isEnableEvaluationTimings(), pdpJaxbConf.isEnableAttributePrefetch(), pdpJaxbConf.isEnableBatchAttributeResolution(),
+				pdpJaxbConf.getMatchEvaluationOrder(), minIndexedBagSize, pdpJaxbConf.isEnableCompactEvaluationContext(), pdpJaxbConf.isIndexRuleTargets(),
+				pdpJaxbConf.isCompileConditions(), envProps);
 	}
 
 	/**
@@ -1049,7 +1682,28 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 			return new Response(Collections.<Result> singletonList(new Result(DecisionType.INDETERMINATE, e.getStatus(badRequestStatusDetailLevel), null, null, null, null)));
 		}
 
-		final List<Result> results = individualReqEvaluator.evaluateToJAXB(individualDecisionRequests, this.pdpStdEnvAttributeIssuer.get());
+		/*
+		 * The request filter may return a lazy list (e.g. MultiDecisionRequestFilter), in which case size() is cheap and no request is created before evaluation
+		 */
+		if (maxIndividualDecisionRequests >= 0 && individualDecisionRequests.size() > maxIndividualDecisionRequests)
+		{
+			LOGGER.info("Too many Individual Decision Requests ({}) in Multiple Decision Request (max = {})", individualDecisionRequests.size(), maxIndividualDecisionRequests);
+			return new Response(Collections.<Result> singletonList(new Result(DecisionType.INDETERMINATE, new StatusHelper(StatusHelper.STATUS_PROCESSING_ERROR, Optional.of("Too many Individual Decision Requests ("
+					+ individualDecisionRequests.size() + " > " + maxIndividualDecisionRequests + ")")), null, null, null, null)));
+		}
+
+		final List<Result> results;
+		try
+		{
+			results = individualReqEvaluator.evaluateToJAXB(individualDecisionRequests, this.pdpStdEnvAttributeIssuer.get());
+		}
+		catch (final IllegalArgumentException e)
+		{
+			final IndeterminateEvaluationException indeterminateException = newIndividualDecisionRequestCreationException(e);
+			LOGGER.info("Invalid or unsupported input XACML Request syntax", indeterminateException);
+			return new Response(Collections.<Result> singletonList(new Result(DecisionType.INDETERMINATE, indeterminateException.getStatus(badRequestStatusDetailLevel), null, null, null, null)));
+		}
+
 		return new Response(results);
 	}
 
@@ -1057,6 +1711,16 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 	@Override
 	public void close() throws IOException
 	{
+		if (ownedIndividualDecisionExecutor != null)
+		{
+			ownedIndividualDecisionExecutor.shutdown();
+		}
+
+		if (evaluationTimingRecorder != null)
+		{
+			evaluationTimingRecorder.unregisterMBean();
+		}
+
 		rootPolicyEvaluator.close();
 		if (decisionCache != null)
 		{
@@ -1071,6 +1735,269 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 		return evaluate(request, null);
 	}
 
+	/*
+	 * Evaluates Individual Decision Requests and writes the Results. The input list may be lazy (request created on each access), so it is copied to look up results by request.
+	 */
+	private void writeXMLResults(final List<? extends IndividualXACMLRequest> individualDecisionRequests, final XmlXACMLResponseWriter responseWriter) throws IOException
+	{
+		final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes = this.pdpStdEnvAttributeIssuer.get();
+		if (!individualReqEvaluator.hasDefaultResultFilter())
+		{
+			/*
+			 * Custom result filter (e.g. combining decisions): it works on JAXB Results
+			 */
+			final List<Result> results;
+			try
+			{
+				results = individualReqEvaluator.evaluateToJAXB(individualDecisionRequests, pdpIssuedAttributes);
+			}
+			catch (final IllegalArgumentException e)
+			{
+				final IndeterminateEvaluationException indeterminateException = newIndividualDecisionRequestCreationException(e);
+				LOGGER.info("Invalid or unsupported input XACML Request syntax", indeterminateException);
+				responseWriter.writeIndeterminate(indeterminateException.getStatus(badRequestStatusDetailLevel));
+				return;
+			}
+
+			for (final Result result : results)
+			{
+				responseWriter.writeResult(result);
+			}
+
+			return;
+		}
+
+		final List<IndividualXACMLRequest> requests;
+		final Map<IndividualXACMLRequest, ? extends PdpDecisionResult> results;
+		try
+		{
+			requests = new ArrayList<>(individualDecisionRequests);
+			results = individualReqEvaluator.evaluate(requests, pdpIssuedAttributes);
+		}
+		catch (final IllegalArgumentException e)
+		{
+			final IndeterminateEvaluationException indeterminateException = newIndividualDecisionRequestCreationException(e);
+			LOGGER.info("Invalid or unsupported input XACML Request syntax", indeterminateException);
+			responseWriter.writeIndeterminate(indeterminateException.getStatus(badRequestStatusDetailLevel));
+			return;
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			LOGGER.info("Error evaluating XACML Request", e);
+			responseWriter.writeIndeterminate(e.getStatus());
+			return;
+		}
+
+		for (final IndividualXACMLRequest individualDecisionRequest : requests)
+		{
+			responseWriter.writeResult(results.get(individualDecisionRequest), individualDecisionRequest.getAttributesToBeReturned());
+		}
+	}
+
+	/**
+	 * Same as {@link #evaluate(Request, Map)} except the XACML Response is written in XML directly to {@code output}, without creating JAXB Results (see {@link XmlXACMLResponseWriter}), unless a
+	 * custom result filter is configured on this PDP.
+	 *
+	 * @param request
+	 *            XACML Request
+	 * @param namespaceURIsByPrefix
+	 *            namespace prefix-URI mappings (e.g. "... xmlns:prefix=uri") in the original XACML Request bound to {@code request}, used as part of the context for XPath evaluation; null or empty
+	 *            if none
+	 * @param output
+	 *            output of the XACML/XML Response in UTF-8 (flushed but not closed by this method)
+	 * @throws IOException
+	 *             error writing the Response to {@code output}
+	 */
+	public void evaluate(final Request request, final Map<String, String> namespaceURIsByPrefix, final OutputStream output) throws IOException
+	{
+		if (request == null || output == null)
+		{
+			throw ILLEGAL_ARGUMENT_EXCEPTION;
+		}
+
+		final XmlXACMLResponseWriter responseWriter = new XmlXACMLResponseWriter(output);
+		if (request.isCombinedDecision() && !this.individualReqEvaluator.supportsMultipleDecisionCombining())
+		{
+			responseWriter.writeIndeterminate(UNSUPPORTED_COMBINED_DECISION_RESPONSE.getResults().get(0).getStatus());
+			responseWriter.writeEnd();
+			return;
+		}
+
+		final List<? extends IndividualXACMLRequest> individualDecisionRequests;
+		try
+		{
+			individualDecisionRequests = reqFilter.filter(request, namespaceURIsByPrefix);
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			LOGGER.info("Invalid or unsupported input XACML Request syntax", e);
+			responseWriter.writeIndeterminate(e.getStatus(badRequestStatusDetailLevel));
+			responseWriter.writeEnd();
+			return;
+		}
+
+		if (maxIndividualDecisionRequests >= 0 && individualDecisionRequests.size() > maxIndividualDecisionRequests)
+		{
+			LOGGER.info("Too many Individual Decision Requests ({}) in Multiple Decision Request (max = {})", individualDecisionRequests.size(), maxIndividualDecisionRequests);
+			responseWriter.writeIndeterminate(new StatusHelper(StatusHelper.STATUS_PROCESSING_ERROR, Optional.of("Too many Individual Decision Requests (" + individualDecisionRequests.size() + " > "
+					+ maxIndividualDecisionRequests + ")")));
+			responseWriter.writeEnd();
+			return;
+		}
+
+		writeXMLResults(individualDecisionRequests, responseWriter);
+		responseWriter.writeEnd();
+	}
+
+	/**
+	 * Parses a XACML Request in XML with a streaming parser, without unmarshalling it to JAXB objects (see {@link StaxXACMLRequestParser}), for evaluation with
+	 * {@link #evaluate(ImmutablePdpDecisionRequest)}. The Multiple Decision Profile is not supported, whatever the request filter configured on this PDP; duplicate Attributes (with same metadata)
+	 * are allowed if the request filter is lax, else rejected. Only the default and multiple-decision request filters (lax or strict) are supported.
+	 *
+	 * @param input
+	 *            XACML/XML Request (not closed by this method)
+	 * @return the decision request and attributes to be included in the Result
+	 * @throws IndeterminateEvaluationException
+	 *             if the input is not a valid XACML Request (status code: syntax-error), or uses an unsupported feature
+	 * @throws UnsupportedOperationException
+	 *             if the request filter configured on this PDP is not one of the default and multiple-decision request filters
+	 */
+	public StaxXACMLRequestParser.ParsedRequest parseXMLRequest(final InputStream input) throws IndeterminateEvaluationException, UnsupportedOperationException
+	{
+		if (input == null)
+		{
+			throw ILLEGAL_ARGUMENT_EXCEPTION;
+		}
+
+		return getXmlRequestStreamParser().parse(input, newRequestBuilder(-1, -1));
+	}
+
+	/**
+	 * Same as {@link #parseXMLRequest(InputStream)} but parsing the remaining bytes of a buffer (the buffer's position is not changed)
+	 *
+	 * @param input
+	 *            XACML/XML Request
+	 * @return the decision request and attributes to be included in the Result
+	 * @throws IndeterminateEvaluationException
+	 *             if the input is not a valid XACML Request (status code: syntax-error), or uses an unsupported feature
+	 * @throws UnsupportedOperationException
+	 *             if the request filter configured on this PDP is not one of the default and multiple-decision request filters
+	 */
+	public StaxXACMLRequestParser.ParsedRequest parseXMLRequest(final ByteBuffer input) throws IndeterminateEvaluationException, UnsupportedOperationException
+	{
+		if (input == null)
+		{
+			throw ILLEGAL_ARGUMENT_EXCEPTION;
+		}
+
+		return getXmlRequestStreamParser().parse(input, newRequestBuilder(-1, -1));
+	}
+
+	/**
+	 * Evaluates a XACML Request in XML and writes the XACML Response in XML, without conversion to/from JAXB objects: the Request is parsed like in {@link #parseXMLRequest(InputStream)}, and the
+	 * decision result is serialized directly to XML (see {@link XmlXACMLResponseWriter}). An invalid or unsupported Request results in a single Indeterminate Result, like
+	 * {@link #evaluate(Request, Map)}.
+	 *
+	 * @param input
+	 *            XACML/XML Request (not closed by this method)
+	 * @param output
+	 *            output of the XACML/XML Response in UTF-8 (flushed but not closed by this method)
+	 * @throws IOException
+	 *             error writing the Response to {@code output}
+	 * @throws UnsupportedOperationException
+	 *             if the request filter configured on this PDP is not one of the default and multiple-decision request filters
+	 */
+	public void evaluateXML(final InputStream input, final OutputStream output) throws IOException, UnsupportedOperationException
+	{
+		if (input == null || output == null)
+		{
+			throw ILLEGAL_ARGUMENT_EXCEPTION;
+		}
+
+		final StaxXACMLRequestParser requestParser = getXmlRequestStreamParser();
+		final XmlXACMLResponseWriter responseWriter = new XmlXACMLResponseWriter(output);
+		final StaxXACMLRequestParser.ParsedRequest parsedRequest;
+		try
+		{
+			parsedRequest = requestParser.parse(input, newRequestBuilder(-1, -1));
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			LOGGER.info("Invalid or unsupported input XACML/XML Request", e);
+			responseWriter.writeIndeterminate(e.getStatus(badRequestStatusDetailLevel));
+			responseWriter.writeEnd();
+			return;
+		}
+
+		final List<Attributes> attributesToIncludeInResult = parsedRequest.getAttributesToIncludeInResult();
+		writeXMLResults(Collections.singletonList(new IndividualXACMLRequest(parsedRequest.getDecisionRequest(), ImmutableList.copyOf(attributesToIncludeInResult))), responseWriter);
+		responseWriter.writeEnd();
+	}
+
+	/**
+	 * Evaluates a XACML Request in JSON (JSON Profile of XACML 3.0) and writes the XACML Response in JSON, without conversion to/from JAXB objects: the Request is parsed with a streaming parser (see
+	 * {@link JsonXACMLRequestParser}) directly into Individual Decision Requests, and the decision results are serialized directly to JSON (see {@link JsonXACMLResponseWriter}). The Multiple
+	 * Decision Profile is supported (repeated categories and MultiRequests, not CombinedDecision), whatever the request filter configured on this PDP; duplicate Attributes (with same metadata) are
+	 * allowed if the request filter is lax, else rejected. Only the default and multiple-decision request filters (lax or strict) are supported.
+	 * <p>
+	 * An invalid or unsupported Request results in a single Indeterminate Result, like {@link #evaluate(Request, Map)}.
+	 *
+	 * @param input
+	 *            XACML/JSON Request in UTF-8 (not closed by this method)
+	 * @param output
+	 *            output of the XACML/JSON Response in UTF-8 (flushed but not closed by this method)
+	 * @throws IOException
+	 *             error writing the Response to {@code output}
+	 * @throws UnsupportedOperationException
+	 *             if the request filter configured on this PDP is not one of the default and multiple-decision request filters
+	 */
+	public void evaluateJSON(final InputStream input, final OutputStream output) throws IOException, UnsupportedOperationException
+	{
+		if (input == null || output == null)
+		{
+			throw ILLEGAL_ARGUMENT_EXCEPTION;
+		}
+
+		if (jsonRequestParser == null)
+		{
+			throw UNSUPPORTED_STREAMING_REQUEST_PARSER_EXCEPTION;
+		}
+
+		final JsonXACMLResponseWriter responseWriter = new JsonXACMLResponseWriter(output);
+		final List<IndividualXACMLRequest> individualDecisionRequests;
+		try
+		{
+			individualDecisionRequests = jsonRequestParser.parse(input, newRequestBuilder(-1, -1));
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			LOGGER.info("Invalid or unsupported input XACML/JSON Request", e);
+			responseWriter.writeIndeterminate(e.getStatus(badRequestStatusDetailLevel));
+			responseWriter.writeEnd();
+			return;
+		}
+
+		final Map<IndividualXACMLRequest, ? extends PdpDecisionResult> results;
+		try
+		{
+			results = individualReqEvaluator.evaluate(individualDecisionRequests, this.pdpStdEnvAttributeIssuer.get());
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			LOGGER.info("Error evaluating XACML/JSON Request", e);
+			responseWriter.writeIndeterminate(e.getStatus());
+			responseWriter.writeEnd();
+			return;
+		}
+
+		for (final IndividualXACMLRequest individualDecisionRequest : individualDecisionRequests)
+		{
+			responseWriter.writeResult(results.get(individualDecisionRequest), individualDecisionRequest.getAttributesToBeReturned());
+		}
+
+		responseWriter.writeEnd();
+	}
+
 	/**
 	 * Get the PDP's root policy and policies referenced - directly or indirectly - from the root policy, if all are statically resolved
 	 *
@@ -1081,4 +2008,119 @@ public final class BasePdpEngine implements CloseablePDP<ImmutablePdpDecisionReq
 		return this.rootPolicyEvaluator.getStaticApplicablePolicies();
 	}
 
+	/**
+	 * Get the attributes that may influence the decision, i.e. referenced by AttributeDesignators (or AttributeSelectors' ContextSelectorId) in the root and referenced policies, or required by
+	 * Attribute Providers to resolve them; if all policies are statically resolved. If a decision cache is enabled, only these attributes (plus the request's Content elements and ReturnPolicyIdList
+	 * flag) are used as cache key.
+	 *
+	 * @return attributes that may influence the decision with the root policy currently in use, i.e. recomputed after each successful {@link #reloadRootPolicy(AbstractPolicyProvider)}; null if any
+	 *         policy is not statically resolved (once and for all), or any Attribute Provider module has unknown dependencies (any attribute may then be used)
+	 */
+	public Set<AttributeFQN> getPolicyRelevantAttributes()
+	{
+		if (reloadableRootPolicyEvaluator == null)
+		{
+			return this.policyRelevantAttributes;
+		}
+
+		return reloadableRootPolicyEvaluator.getStaticApplicablePolicies() == null ? null : reloadableRootPolicyEvaluator.getReferencedAttributes();
+	}
+
+	/**
+	 * Get the evaluation timings (time spent in the main evaluation steps of Individual Decision Requests), if enabled. If a decision cache is enabled, only the decisions actually evaluated (not
+	 * returned from cache) are timed.
+	 *
+	 * @return evaluation timings; null if evaluation timings are disabled (see {@link Pdp#isEnableEvaluationTimings()})
+	 */
+	public EvaluationTimingsMXBean getEvaluationTimings()
+	{
+		return this.evaluationTimingRecorder;
+	}
+
+	/**
+	 * Get the decision cache, if enabled, e.g. to get statistics (see {@link CoreInMemoryDecisionCache#getStats()})
+	 *
+	 * @return decision cache; null if no decision cache is enabled (see {@link Pdp#getDecisionCache()})
+	 */
+	public DecisionCache getDecisionCache()
+	{
+		return this.decisionCache;
+	}
+
+	private StaxXACMLRequestParser getXmlRequestStreamParser() throws UnsupportedOperationException
+	{
+		if (xmlRequestStreamParser == null)
+		{
+			throw UNSUPPORTED_STREAMING_REQUEST_PARSER_EXCEPTION;
+		}
+
+		return xmlRequestStreamParser;
+	}
+
+	private RootPolicyEvaluators.Reloadable getReloadableRootPolicyEvaluator() throws UnsupportedOperationException
+	{
+		if (reloadableRootPolicyEvaluator == null)
+		{
+			throw UNSUPPORTED_ROOT_POLICY_RELOAD_EXCEPTION;
+		}
+
+		if (decisionCache != null)
+		{
+			/*
+			 * Cached decisions computed with the previous root policy would still be returned after reload
+			 */
+			throw UNSUPPORTED_ROOT_POLICY_RELOAD_WITH_DECISION_CACHE_EXCEPTION;
+		}
+
+		return reloadableRootPolicyEvaluator;
+	}
+
+	/**
+	 * Replaces the root policy - and policies referenced from it - with the one(s) loaded from the given root policy Provider configuration, without rebuilding the PDP (Attribute Providers,
+	 * datatypes, functions, etc. are kept as is). The new policies are parsed and initialized on the caller's thread, then published atomically: evaluations in progress finish with the previous
+	 * root policy, and later ones use the new root policy. Evaluations are never blocked by a reload. If loading fails, the previous root policy remains in use.
+	 *
+	 * @param jaxbRootPolicyProviderConf
+	 *            new root policy Provider's XML/JAXB configuration - mandatory. The policy-by-reference Provider's configuration is the same as the one given at PDP creation time.
+	 * @return version number of the new root policy (0 being the version of the initial root policy, incremented by one on each successful reload)
+	 * @throws java.lang.UnsupportedOperationException
+	 *             if the root policy is not statically resolved (depends on the evaluation context), or a decision cache is enabled
+	 * @throws java.lang.IllegalArgumentException
+	 *             invalid {@code jaxbRootPolicyProviderConf} or invalid policies
+	 * @throws java.io.IOException
+	 *             error closing the root policy Provider module created from {@code jaxbRootPolicyProviderConf}
+	 */
+	public long reloadRootPolicy(final AbstractPolicyProvider jaxbRootPolicyProviderConf) throws UnsupportedOperationException, IllegalArgumentException, IOException
+	{
+		return getReloadableRootPolicyEvaluator().reload(jaxbRootPolicyProviderConf);
+	}
+
+	/**
+	 * Reloads the root policy - and policies referenced from it - with the current root policy Provider configuration, e.g. after the policy files have changed. Same as
+	 * {@link #reloadRootPolicy(AbstractPolicyProvider)} with the root policy Provider configuration currently in use.
+	 *
+	 * @return version number of the new root policy
+	 * @throws java.lang.UnsupportedOperationException
+	 *             if the root policy is not statically resolved (depends on the evaluation context), or a decision cache is enabled
+	 * @throws java.lang.IllegalArgumentException
+	 *             invalid policies
+	 * @throws java.io.IOException
+	 *             error closing the root policy Provider module
+	 */
+	public long reloadRootPolicy() throws UnsupportedOperationException, IllegalArgumentException, IOException
+	{
+		return getReloadableRootPolicyEvaluator().reload();
+	}
+
+	/**
+	 * Get the version number of the root policy currently in use
+	 *
+	 * @return 0 for the root policy loaded at PDP creation time, incremented by one on each successful {@link #reloadRootPolicy(AbstractPolicyProvider)}; -1 if the root policy is not statically
+	 *         resolved
+	 */
+	public long getRootPolicyVersion()
+	{
+		return reloadableRootPolicyEvaluator == null ? -1 : reloadableRootPolicyEvaluator.getVersion();
+	}
+
 }
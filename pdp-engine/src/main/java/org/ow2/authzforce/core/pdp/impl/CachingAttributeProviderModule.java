@@ -0,0 +1,280 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeDesignatorType;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.AttributeProvider;
+import org.ow2.authzforce.core.pdp.api.BaseAttributeProviderModule;
+import org.ow2.authzforce.core.pdp.api.CloseableAttributeProviderModule;
+import org.ow2.authzforce.core.pdp.api.EnvironmentProperties;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.BagDatatype;
+import org.ow2.authzforce.core.pdp.api.value.DatatypeFactory;
+import org.ow2.authzforce.core.pdp.api.value.DatatypeFactoryRegistry;
+import org.ow2.authzforce.core.xmlns.pdp.CachingAttributeProvider;
+import org.ow2.authzforce.xmlns.pdp.ext.AbstractAttributeProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Attribute Provider module caching the attributes provided by another module across requests, in memory, bounded by a maximum number of entries (least recently used entries are evicted first) and
+ * a time-to-live.
+ * <p>
+ * The cache key is the requested attribute (and datatype) and the values of the wrapped module's dependencies, i.e. the attributes declared by its factory as required to provide its own (
+ * {@link CloseableAttributeProviderModule.DependencyAwareFactory#getDependencies()}). Therefore the wrapped module must not use any other attribute from the evaluation context. If the dependencies
+ * cannot be resolved, the wrapped module is called directly, without cache.
+ * <p>
+ * Concurrent cache misses for the same key result in a single call to the wrapped module, the other callers waiting for its result (see {@link Cache#get(Object, java.util.concurrent.Callable)}).
+ * Failures (IndeterminateEvaluationException) are not cached.
+ *
+ * @version $Id: $
+ */
+public final class CachingAttributeProviderModule extends BaseAttributeProviderModule
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(CachingAttributeProviderModule.class);
+
+	/**
+	 * Factory of {@link CachingAttributeProviderModule} instances, wrapping the module created from the nested Attribute Provider configuration (with the factory registered for its type)
+	 */
+	public static final class Factory extends CloseableAttributeProviderModule.FactoryBuilder<CachingAttributeProvider>
+	{
+
+		@Override
+		public Class<CachingAttributeProvider> getJaxbClass()
+		{
+			return CachingAttributeProvider.class;
+		}
+
+		@Override
+		public DependencyAwareFactory getInstance(final CachingAttributeProvider conf, final EnvironmentProperties environmentProperties)
+		{
+			final AbstractAttributeProvider jaxbWrappedModuleConf = conf.getAttributeProvider();
+			final CloseableAttributeProviderModule.FactoryBuilder<AbstractAttributeProvider> wrappedModuleFactoryBuilder = PdpExtensionLoader
+					.getAttributeProviderModuleFactoryBuilder(jaxbWrappedModuleConf);
+			final DependencyAwareFactory wrappedModuleFactory = wrappedModuleFactoryBuilder.getInstance(jaxbWrappedModuleConf, environmentProperties);
+			return newFactory(conf.getId(), wrappedModuleFactory, toInt(conf.getMaxEntries(), "maxEntries"), toInt(conf.getTimeToLive(), "timeToLive"));
+		}
+
+		/**
+		 * Creates a factory of {@link CachingAttributeProviderModule} instances wrapping the modules created by another factory, e.g. to cache the attributes of a module created programmatically
+		 * (without XML/JAXB configuration)
+		 * 
+		 * @param instanceId
+		 *            ID of the caching module
+		 * @param wrappedModuleFactory
+		 *            factory of the wrapped module
+		 * @param maxEntries
+		 *            maximum number of entries in the cache
+		 * @param timeToLiveSec
+		 *            time-to-live of cache entries, in seconds; no time-to-live if zero or negative
+		 * @return factory of caching modules
+		 */
+		public static DependencyAwareFactory newFactory(final String instanceId, final DependencyAwareFactory wrappedModuleFactory, final int maxEntries, final int timeToLiveSec)
+		{
+			return new DependencyAwareFactory()
+			{
+
+				@Override
+				public Set<AttributeDesignatorType> getDependencies()
+				{
+					return wrappedModuleFactory.getDependencies();
+				}
+
+				@Override
+				public CloseableAttributeProviderModule getInstance(final DatatypeFactoryRegistry attrDatatypeFactory, final AttributeProvider depAttrProvider)
+				{
+					final Set<AttributeDesignatorType> jaxbDependencies = wrappedModuleFactory.getDependencies();
+					final List<Dependency<?>> dependencies;
+					if (jaxbDependencies == null)
+					{
+						dependencies = ImmutableList.of();
+					}
+					else
+					{
+						dependencies = new ArrayList<>(jaxbDependencies.size());
+						for (final AttributeDesignatorType jaxbDependency : jaxbDependencies)
+						{
+							final DatatypeFactory<?> datatypeFactory = attrDatatypeFactory.getExtension(jaxbDependency.getDataType());
+							if (datatypeFactory == null)
+							{
+								throw new IllegalArgumentException("Unsupported Datatype of dependency of Attribute Provider wrapped by '" + instanceId + "': "
+										+ jaxbDependency.getDataType());
+							}
+
+							dependencies.add(new Dependency<>(AttributeFQNs.newInstance(jaxbDependency), datatypeFactory.getBagDatatype()));
+						}
+					}
+
+					return new CachingAttributeProviderModule(instanceId, wrappedModuleFactory.getInstance(attrDatatypeFactory, depAttrProvider), dependencies, depAttrProvider, maxEntries,
+							timeToLiveSec);
+				}
+			};
+		}
+
+		private static int toInt(final BigInteger value, final String paramName) throws IllegalArgumentException
+		{
+			try
+			{
+				return value.intValueExact();
+			}
+			catch (final ArithmeticException e)
+			{
+				throw new IllegalArgumentException("Invalid " + paramName + ": " + value, e);
+			}
+		}
+	}
+
+	/*
+	 * Attribute required by the wrapped module
+	 */
+	private static final class Dependency<AV extends AttributeValue>
+	{
+		private final AttributeFQN attributeFQN;
+		private final BagDatatype<AV> bagDatatype;
+
+		private Dependency(final AttributeFQN attributeFQN, final BagDatatype<AV> bagDatatype)
+		{
+			this.attributeFQN = attributeFQN;
+			this.bagDatatype = bagDatatype;
+		}
+
+		/*
+		 * Canonical form of the dependency's values, where the order of values does not matter (XACML bags are unordered)
+		 */
+		private ImmutableMultiset<AttributeValue> getValues(final AttributeProvider attributeProvider, final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			return ImmutableMultiset.<AttributeValue> copyOf(attributeProvider.get(attributeFQN, bagDatatype, context));
+		}
+	}
+
+	private final CloseableAttributeProviderModule wrappedModule;
+	private final List<Dependency<?>> dependencies;
+	private final AttributeProvider dependencyAttributeProvider;
+
+	/*
+	 * Values are Optionals since the wrapped module may return null (not allowed as cache value)
+	 */
+	private final Cache<DependentAttributeKey, Optional<AttributeBag<?>>> cache;
+
+	private CachingAttributeProviderModule(final String instanceID, final CloseableAttributeProviderModule wrappedModule, final List<Dependency<?>> dependencies,
+			final AttributeProvider dependencyAttributeProvider, final int maxEntries, final int timeToLiveSec) throws IllegalArgumentException
+	{
+		super(instanceID);
+		assert wrappedModule != null && dependencies != null && dependencyAttributeProvider != null;
+		this.wrappedModule = wrappedModule;
+		this.dependencies = dependencies;
+		this.dependencyAttributeProvider = dependencyAttributeProvider;
+		final CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().maximumSize(maxEntries).recordStats();
+		if (timeToLiveSec > 0)
+		{
+			cacheBuilder.expireAfterWrite(timeToLiveSec, TimeUnit.SECONDS);
+		}
+
+		this.cache = cacheBuilder.build();
+	}
+
+	/**
+	 * Get the cache statistics: hits, misses (calls to the wrapped module), evictions
+	 *
+	 * @return statistics of the cache since its creation
+	 */
+	public CacheStats getStats()
+	{
+		return cache.stats();
+	}
+
+	@Override
+	public Set<AttributeDesignatorType> getProvidedAttributes()
+	{
+		return wrappedModule.getProvidedAttributes();
+	}
+
+	@Override
+	public <AV extends AttributeValue> AttributeBag<AV> get(final AttributeFQN attributeFQN, final BagDatatype<AV> returnDatatype, final EvaluationContext context)
+			throws IndeterminateEvaluationException
+	{
+		final ImmutableList.Builder<ImmutableMultiset<AttributeValue>> dependencyValuesBuilder = ImmutableList.builder();
+		for (final Dependency<?> dependency : dependencies)
+		{
+			try
+			{
+				dependencyValuesBuilder.add(dependency.getValues(dependencyAttributeProvider, context));
+			}
+			catch (final IndeterminateEvaluationException e)
+			{
+				LOGGER.debug("{}: failed to resolve dependency {} of attribute {} -> cache bypassed", this, dependency.attributeFQN, attributeFQN, e);
+				return wrappedModule.get(attributeFQN, returnDatatype, context);
+			}
+		}
+
+		final DependentAttributeKey key = new DependentAttributeKey(attributeFQN, returnDatatype.getElementType(), dependencyValuesBuilder.build());
+		final Optional<AttributeBag<?>> result;
+		try
+		{
+			result = cache.get(key, () -> Optional.ofNullable(wrappedModule.get(attributeFQN, returnDatatype, context)));
+		}
+		catch (final ExecutionException e)
+		{
+			final Throwable cause = e.getCause();
+			if (cause instanceof IndeterminateEvaluationException)
+			{
+				throw (IndeterminateEvaluationException) cause;
+			}
+
+			throw new IndeterminateEvaluationException(this + ": error getting attribute " + attributeFQN, StatusHelper.STATUS_MISSING_ATTRIBUTE, cause);
+		}
+		catch (final UncheckedExecutionException e)
+		{
+			throw new IndeterminateEvaluationException(this + ": error getting attribute " + attributeFQN, StatusHelper.STATUS_MISSING_ATTRIBUTE, e.getCause());
+		}
+
+		return result.isPresent() ? returnDatatype.castAttributeBag(result.get()) : null;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		LOGGER.debug("Closing attribute cache of {}. Stats: {}", this, cache.stats());
+		cache.invalidateAll();
+		wrappedModule.close();
+	}
+
+}
@@ -33,6 +33,8 @@ import org.ow2.authzforce.core.pdp.api.AttributeProviderModule;
 import org.ow2.authzforce.core.pdp.api.CloseableAttributeProviderModule;
 import org.ow2.authzforce.core.pdp.api.EnvironmentProperties;
 import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.value.BagDatatype;
+import org.ow2.authzforce.core.pdp.api.value.DatatypeFactory;
 import org.ow2.authzforce.core.pdp.api.value.DatatypeFactoryRegistry;
 import org.ow2.authzforce.xmlns.pdp.ext.AbstractAttributeProvider;
 
@@ -114,15 +116,21 @@ public final class CloseableAttributeProvider extends ModularAttributeProvider i
 	// not-null
 	private final Set<ModuleAdapter> moduleClosers;
 
-	private CloseableAttributeProvider(final Map<AttributeFQN, AttributeProviderModule> modulesByAttributeId, final Set<ModuleAdapter> moduleClosers, final boolean strictAttributeIssuerMatch)
+	// null iff the dependencies of any module are unknown
+	private final Set<AttributeFQN> dependencies;
+
+	private CloseableAttributeProvider(final Map<AttributeFQN, AttributeProviderModule> modulesByAttributeId,
+			final Map<AttributeFQN, Map<AttributeFQN, BagDatatype<?>>> moduleDependenciesByAttributeId, final Set<ModuleAdapter> moduleClosers, final Set<AttributeFQN> dependencies,
+			final boolean strictAttributeIssuerMatch)
 	{
-		super(modulesByAttributeId, null, strictAttributeIssuerMatch);
+		super(modulesByAttributeId, moduleDependenciesByAttributeId, null, strictAttributeIssuerMatch);
 		assert moduleClosers != null;
 		this.moduleClosers = moduleClosers;
+		this.dependencies = dependencies;
 	}
 
 	private static final CloseableAttributeProvider EVALUATION_CONTEXT_ONLY_SCOPED_CLOSEABLE_ATTRIBUTE_PROVIDER = new CloseableAttributeProvider(
-			Collections.<AttributeFQN, AttributeProviderModule> emptyMap(), Collections.<ModuleAdapter> emptySet(), true);
+			Collections.<AttributeFQN, AttributeProviderModule> emptyMap(), null, Collections.<ModuleAdapter> emptySet(), Collections.<AttributeFQN> emptySet(), true);
 
 	/**
 	 * Instantiates attribute Provider that tries to find attribute values in evaluation context, then, if not there, query the {@code module} providing the requested attribute ID, if any.
@@ -155,8 +163,11 @@ public final class CloseableAttributeProvider extends ModularAttributeProvider i
 		}
 
 		final Map<AttributeFQN, AttributeProviderModule> modulesByAttributeId = HashCollections.newUpdatableMap();
+		final Map<AttributeFQN, Map<AttributeFQN, BagDatatype<?>>> moduleDependenciesByAttributeId = HashCollections.newUpdatableMap();
 		final int moduleCount = jaxbAttributeProviderConfs.size();
 		final Set<ModuleAdapter> mutableModuleCloserSet = HashCollections.newUpdatableSet(moduleCount);
+		final Set<AttributeFQN> mutableDependencySet = HashCollections.newUpdatableSet();
+		boolean hasUnknownDependencies = false;
 		for (final AbstractAttributeProvider jaxbAttributeProviderConf : jaxbAttributeProviderConfs)
 		{
 			try
@@ -171,15 +182,34 @@ public final class CloseableAttributeProvider extends ModularAttributeProvider i
 				 * dependency attribute Provider.
 				 */
 				final AttributeProvider depAttrProvider;
+				/*
+				 * Null iff the module's dependencies are unknown: then the module may use any attribute in the evaluation context, so its results must not be shared between evaluation contexts
+				 */
+				final Map<AttributeFQN, BagDatatype<?>> moduleDependencies;
 				if (requiredAttrs == null)
 				{
 					depAttrProvider = ModularAttributeProvider.EVALUATION_CONTEXT_ONLY_SCOPED_ATTRIBUTE_PROVIDER;
+					moduleDependencies = null;
+					hasUnknownDependencies = true;
 				}
 				else
 				{
 					final Map<AttributeFQN, AttributeProviderModule> immutableCopyOfAttrProviderModsByAttrId = Collections
 							.<AttributeFQN, AttributeProviderModule> unmodifiableMap(modulesByAttributeId);
 					depAttrProvider = new ModularAttributeProvider(immutableCopyOfAttrProviderModsByAttrId, requiredAttrs, strictAttributeIssuerMatch);
+					moduleDependencies = HashCollections.newUpdatableMap(requiredAttrs.size());
+					for (final AttributeDesignatorType requiredAttr : requiredAttrs)
+					{
+						final AttributeFQN requiredAttrGUID = AttributeFQNs.newInstance(requiredAttr);
+						mutableDependencySet.add(requiredAttrGUID);
+						final DatatypeFactory<?> requiredAttrDatatypeFactory = attributeFactory.getExtension(requiredAttr.getDataType());
+						if (requiredAttrDatatypeFactory == null)
+						{
+							throw new IllegalArgumentException("Unsupported Datatype of dependency of Attribute Provider '" + jaxbAttributeProviderConf.getId() + "': " + requiredAttr.getDataType());
+						}
+
+						moduleDependencies.put(requiredAttrGUID, requiredAttrDatatypeFactory.getBagDatatype());
+					}
 				}
 
 				// attrProviderMod closing isn't done in this method but
@@ -197,6 +227,11 @@ public final class CloseableAttributeProvider extends ModularAttributeProvider i
 						throw new IllegalArgumentException("Conflict: " + moduleAdapter + " providing the same AttributeDesignator (" + attrGUID + ") as another already registered.");
 					}
 
+					if (moduleDependencies != null)
+					{
+						moduleDependenciesByAttributeId.put(attrGUID, moduleDependencies);
+					}
+
 				}
 			}
 			catch (final IllegalArgumentException e)
@@ -211,7 +246,19 @@ public final class CloseableAttributeProvider extends ModularAttributeProvider i
 			return EVALUATION_CONTEXT_ONLY_SCOPED_CLOSEABLE_ATTRIBUTE_PROVIDER;
 		}
 
-		return new CloseableAttributeProvider(modulesByAttributeId, HashCollections.newImmutableSet(mutableModuleCloserSet), strictAttributeIssuerMatch);
+		return new CloseableAttributeProvider(modulesByAttributeId, moduleDependenciesByAttributeId, HashCollections.newImmutableSet(mutableModuleCloserSet),
+				hasUnknownDependencies ? null : HashCollections.newImmutableSet(mutableDependencySet), strictAttributeIssuerMatch);
+	}
+
+	/**
+	 * Get the attributes required by the underlying modules to provide their attributes (dependencies, as declared by the modules' factories)
+	 *
+	 * @return the union of all modules' dependencies (immutable); empty if none; null if the dependencies of any module are unknown
+	 *         ({@link CloseableAttributeProviderModule.DependencyAwareFactory#getDependencies()} returned null), i.e. the module may use any attribute in the evaluation context
+	 */
+	public Set<AttributeFQN> getDependencies()
+	{
+		return this.dependencies;
 	}
 
 	/** {@inheritDoc} */
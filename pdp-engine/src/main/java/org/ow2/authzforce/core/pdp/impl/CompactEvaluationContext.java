@@ -0,0 +1,692 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+
+import net.sf.saxon.s9api.XdmNode;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeSelectorId;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeSelectorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.BagDatatype;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.Value;
+import org.ow2.authzforce.core.pdp.api.value.XPathValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evaluation context of an Individual Decision Request optimized for allocation, used by the PDP engine instead of {@link IndividualDecisionRequestContext} if enabled in the PDP configuration
+ * ({@code enableCompactEvaluationContext}):
+ * <ul>
+ * <li>The named attributes from the request and the PDP are not copied but looked up in the original (read-only) maps, in order of priority; only the attributes resolved during evaluation (by
+ * Attribute Providers) are stored in a map of this context, created on first use.</li>
+ * <li>Variable values are stored in arrays indexed by variable slot (see {@link SlotIndexedEvaluationContext}).</li>
+ * <li>{@link RequestScopedMemo} values are stored in a small open-addressing table keyed by memo slot (the slots are unique among all the memos in use, therefore too sparse for direct indexing):
+ * arrays of slots and values with linear probing, sized according to the number of memos used by the request (not the number of policies).</li>
+ * <li>The AttributeSelector results and other properties are stored in maps created on first use, and listeners in a small array.</li>
+ * <li>The hash indexes of large bags (see {@link #getBagIndex(Bag)}) are stored in an identity map created on first use. A bag is indexed only on its second lookup, the bags looked up only once so
+ * far being remembered in a small array (the oldest is forgotten when full): bags created by function calls and looked up once are neither indexed nor kept until the end of the request.</li>
+ * </ul>
+ * Not thread-safe, like {@link IndividualDecisionRequestContext}.
+ *
+ * @version $Id: $
+ */
+final class CompactEvaluationContext implements SlotIndexedEvaluationContext
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(CompactEvaluationContext.class);
+
+	private static final int INITIAL_VARIABLE_SLOT_COUNT = 8;
+
+	/*
+	 * Maximum number of bags looked up only once (not indexed yet) remembered by getBagIndex()
+	 */
+	private static final int MAX_BAGS_SEEN_ONCE = 4;
+
+	private static final int INITIAL_LISTENER_COUNT = 2;
+
+	// power of 2
+	private static final int INITIAL_MEMO_TABLE_SIZE = 16;
+
+	/*
+	 * Read-only named attribute maps in decreasing order of priority (request, PDP-issued attributes...). Not null
+	 */
+	private final List<Map<AttributeFQN, AttributeBag<?>>> attributeLayers;
+
+	/*
+	 * Attributes resolved during evaluation, i.e. not in attributeLayers. Null until first put
+	 */
+	private Map<AttributeFQN, AttributeBag<?>> resolvedAttributes = null;
+
+	// null iff no Content in the request
+	private final Map<String, XdmNode> extraContentsByAttributeCategory;
+
+	// null until first put
+	private Map<AttributeSelectorId, Bag<?>> attributeSelectorResults = null;
+
+	/*
+	 * Variable values and VariableIds by slot. Null until first put
+	 */
+	private Value[] variableValues = null;
+	private String[] variableIds = null;
+
+	/*
+	 * Variables put with the String-keyed methods only (not by slot). Null until first put
+	 */
+	private Map<String, Value> unslottedVariableValues = null;
+
+	// null until first put
+	private Map<String, Object> mutableProperties = null;
+
+	/*
+	 * Memo table: memoSlots[i] is the slot of the memo whose value is memoValues[i], or 0 if the entry is empty. Null until first put
+	 */
+	private int[] memoSlots = null;
+	private Object[] memoValues = null;
+	private int memoCount = 0;
+
+	/*
+	 * Minimum size of the bags to be indexed, or 0 if bag indexing is disabled
+	 */
+	private final int minIndexedBagSize;
+
+	// null until first put
+	private Map<Bag<?>, Set<AttributeValue>> bagIndexes = null;
+
+	// bags looked up once by getBagIndex(), null until first use
+	private Bag<?>[] bagsSeenOnce = null;
+	private int nextBagSeenOnceIndex = 0;
+
+	private final boolean returnApplicablePolicyIdList;
+
+	private Class<?>[] listenerTypes = null;
+	private Listener[] listeners = null;
+	private int listenerCount = 0;
+
+	/**
+	 * Creates evaluation context
+	 *
+	 * @param namedAttributeLayers
+	 *            named attribute maps in decreasing order of priority (if an attribute is in more than one, the first one wins); none of them is modified
+	 * @param extraContentsByCategory
+	 *            extra contents by attribute category (equivalent to XACML Attributes/Content elements); null iff no Content in the attribute category.
+	 * @param returnApplicablePolicyIdList
+	 *            true iff list of IDs of policies matched during evaluation must be returned
+	 * @param minIndexedBagSize
+	 *            minimum size of the bags indexed by {@link #getBagIndex(Bag)}; 0 disables bag indexing
+	 */
+	CompactEvaluationContext(final List<Map<AttributeFQN, AttributeBag<?>>> namedAttributeLayers, final Map<String, XdmNode> extraContentsByCategory, final boolean returnApplicablePolicyIdList,
+			final int minIndexedBagSize)
+	{
+		assert namedAttributeLayers != null && minIndexedBagSize >= 0;
+		this.attributeLayers = namedAttributeLayers;
+		this.extraContentsByAttributeCategory = extraContentsByCategory;
+		this.returnApplicablePolicyIdList = returnApplicablePolicyIdList;
+		this.minIndexedBagSize = minIndexedBagSize;
+	}
+
+	private AttributeBag<?> getNamedAttribute(final AttributeFQN attributeFQN)
+	{
+		for (final Map<AttributeFQN, AttributeBag<?>> layer : attributeLayers)
+		{
+			final AttributeBag<?> bag = layer.get(attributeFQN);
+			if (bag != null)
+			{
+				return bag;
+			}
+		}
+
+		return resolvedAttributes == null ? null : resolvedAttributes.get(attributeFQN);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public <AV extends AttributeValue> AttributeBag<AV> getNamedAttributeValue(final AttributeFQN attributeFQN, final BagDatatype<AV> attributeBagDatatype) throws IndeterminateEvaluationException
+	{
+		final AttributeBag<?> bagResult = getNamedAttribute(attributeFQN);
+		if (bagResult == null)
+		{
+			return null;
+		}
+
+		final Datatype<?> expectedElementDatatype = attributeBagDatatype.getElementType();
+		if (!bagResult.getElementDatatype().equals(expectedElementDatatype))
+		{
+			throw new IndeterminateEvaluationException("Datatype (" + bagResult.getElementDatatype() + ") of AttributeDesignator " + attributeFQN
+					+ " in context is different from expected/requested (" + expectedElementDatatype
+					+ "). May be caused by refering to the same Attribute Category/Id/Issuer with different Datatypes in different policy elements and/or attribute providers, which is not allowed.",
+					StatusHelper.STATUS_SYNTAX_ERROR);
+		}
+
+		final AttributeBag<AV> result = attributeBagDatatype.castAttributeBag(bagResult);
+		for (int i = 0; i < listenerCount; i++)
+		{
+			listeners[i].namedAttributeValueConsumed(attributeFQN, result);
+		}
+
+		return result;
+	}
+
+	@Override
+	public boolean putNamedAttributeValueIfAbsent(final AttributeFQN attributeFQN, final AttributeBag<?> result)
+	{
+		if (getNamedAttribute(attributeFQN) != null)
+		{
+			/*
+			 * Same as IndividualDecisionRequestContext: we do not support setting a different result for the same attribute in the same context
+			 */
+			LOGGER.warn("Attempt to override value of AttributeDesignator {} already set in evaluation context. Overriding value: {}", attributeFQN, result);
+			return false;
+		}
+
+		if (resolvedAttributes == null)
+		{
+			resolvedAttributes = HashCollections.newUpdatableMap();
+		}
+
+		resolvedAttributes.put(attributeFQN, result);
+		for (int i = 0; i < listenerCount; i++)
+		{
+			listeners[i].namedAttributeValueProduced(attributeFQN, result);
+		}
+
+		return true;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public XdmNode getAttributesContent(final String category)
+	{
+		return extraContentsByAttributeCategory == null ? null : extraContentsByAttributeCategory.get(category);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public <AV extends AttributeValue> Bag<AV> getAttributeSelectorResult(final AttributeSelectorExpression<AV> attributeSelector) throws IndeterminateEvaluationException
+	{
+		if (attributeSelectorResults == null)
+		{
+			return null;
+		}
+
+		final Bag<?> bagResult = attributeSelectorResults.get(attributeSelector.getAttributeSelectorId());
+		if (bagResult == null)
+		{
+			return null;
+		}
+
+		final Datatype<Bag<AV>> expectedBagDatatype = attributeSelector.getReturnType();
+		final Datatype<?> expectedElementDatatype = expectedBagDatatype.getTypeParameter().get();
+		if (!bagResult.getElementDatatype().equals(expectedElementDatatype))
+		{
+			throw new IndeterminateEvaluationException("Datatype (" + bagResult.getElementDatatype() + ")of AttributeSelector " + attributeSelector.getAttributeSelectorId()
+					+ " in context is different from actually expected/requested (" + expectedElementDatatype
+					+ "). May be caused by use of same AttributeSelector Category/Path/ContextSelectorId with different Datatypes in different in different policy elements, which is not allowed.",
+					StatusHelper.STATUS_SYNTAX_ERROR);
+		}
+
+		final Bag<AV> result = expectedBagDatatype.cast(bagResult);
+		for (int i = 0; i < listenerCount; i++)
+		{
+			listeners[i].attributeSelectorResultConsumed(attributeSelector, result);
+		}
+
+		return result;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public <AV extends AttributeValue> boolean putAttributeSelectorResultIfAbsent(final AttributeSelectorExpression<AV> attributeSelector, final Bag<AV> result)
+			throws IndeterminateEvaluationException
+	{
+		/*
+		 * AttributeSelectors are evaluated only if there is Content in the request, but the results are cached anyway
+		 */
+		if (attributeSelectorResults == null)
+		{
+			attributeSelectorResults = HashCollections.newMutableMap();
+		}
+
+		final AttributeSelectorId attSelectorId = attributeSelector.getAttributeSelectorId();
+		if (attributeSelectorResults.putIfAbsent(attSelectorId, result) != null)
+		{
+			LOGGER.error("Attempt to override value of AttributeSelector {} already set in evaluation context. Overriding value: {}", attSelectorId, result);
+			return false;
+		}
+
+		for (int i = 0; i < listenerCount; i++)
+		{
+			final Optional<AttributeFQN> optionalContextSelectorFQN = attributeSelector.getContextSelectorFQN();
+			final Optional<AttributeBag<XPathValue>> contextSelectorValue = optionalContextSelectorFQN.isPresent() ? Optional.of(getNamedAttributeValue(optionalContextSelectorFQN.get(),
+					StandardDatatypes.XPATH_FACTORY.getBagDatatype())) : Optional.empty();
+			listeners[i].attributeSelectorResultProduced(attributeSelector, contextSelectorValue, result);
+		}
+
+		return true;
+	}
+
+	private static <V extends Value> V castVariableValue(final String variableId, final Value val, final Datatype<V> expectedDatatype) throws IndeterminateEvaluationException
+	{
+		try
+		{
+			return expectedDatatype.cast(val);
+		}
+		catch (final ClassCastException e)
+		{
+			throw new IndeterminateEvaluationException("Datatype of variable '" + variableId + "' in context does not match expected datatype: " + expectedDatatype,
+					StatusHelper.STATUS_PROCESSING_ERROR, e);
+		}
+	}
+
+	/*
+	 * Slot of the variable in variableIds, or -1 if none
+	 */
+	private int getVariableSlot(final String variableId)
+	{
+		if (variableIds == null)
+		{
+			return -1;
+		}
+
+		for (int i = 0; i < variableIds.length; i++)
+		{
+			if (variableId.equals(variableIds[i]))
+			{
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public <V extends Value> V getVariableValue(final int slot, final String variableId, final Datatype<V> expectedDatatype) throws IndeterminateEvaluationException
+	{
+		assert slot >= 0 && variableId != null;
+		/*
+		 * A different VariableId in the slot means the value was left by another Policy's variable
+		 */
+		if (variableIds == null || slot >= variableIds.length || !variableId.equals(variableIds[slot]))
+		{
+			return null;
+		}
+
+		return castVariableValue(variableId, variableValues[slot], expectedDatatype);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean putVariableIfAbsent(final int slot, final String variableId, final Value value)
+	{
+		assert slot >= 0 && variableId != null;
+		if (variableIds == null)
+		{
+			final int length = Math.max(INITIAL_VARIABLE_SLOT_COUNT, slot + 1);
+			variableIds = new String[length];
+			variableValues = new Value[length];
+		}
+		else if (slot >= variableIds.length)
+		{
+			final int length = Math.max(variableIds.length * 2, slot + 1);
+			variableIds = Arrays.copyOf(variableIds, length);
+			variableValues = Arrays.copyOf(variableValues, length);
+		}
+		else if (variableId.equals(variableIds[slot]))
+		{
+			LOGGER.error("Attempt to override value of Variable '{}' already set in evaluation context. Overriding value: {}", variableId, value);
+			return false;
+		}
+
+		variableIds[slot] = variableId;
+		variableValues[slot] = value;
+		return true;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public <V extends Value> V getVariableValue(final String variableId, final Datatype<V> expectedDatatype) throws IndeterminateEvaluationException
+	{
+		final int slot = getVariableSlot(variableId);
+		if (slot != -1)
+		{
+			return castVariableValue(variableId, variableValues[slot], expectedDatatype);
+		}
+
+		final Value val = unslottedVariableValues == null ? null : unslottedVariableValues.get(variableId);
+		return val == null ? null : castVariableValue(variableId, val, expectedDatatype);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean putVariableIfAbsent(final String variableId, final Value value)
+	{
+		if (getVariableSlot(variableId) != -1)
+		{
+			LOGGER.error("Attempt to override value of Variable '{}' already set in evaluation context. Overriding value: {}", variableId, value);
+			return false;
+		}
+
+		if (unslottedVariableValues == null)
+		{
+			unslottedVariableValues = HashCollections.newMutableMap();
+		}
+
+		if (unslottedVariableValues.putIfAbsent(variableId, value) != null)
+		{
+			LOGGER.error("Attempt to override value of Variable '{}' already set in evaluation context. Overriding value: {}", variableId, value);
+			return false;
+		}
+
+		return true;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Value removeVariable(final String variableId)
+	{
+		final int slot = getVariableSlot(variableId);
+		if (slot != -1)
+		{
+			final Value val = variableValues[slot];
+			variableIds[slot] = null;
+			variableValues[slot] = null;
+			return val;
+		}
+
+		return unslottedVariableValues == null ? null : unslottedVariableValues.remove(variableId);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Object getOther(final String key)
+	{
+		return mutableProperties == null ? null : mutableProperties.get(key);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean containsKey(final String key)
+	{
+		return mutableProperties != null && mutableProperties.containsKey(key);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void putOther(final String key, final Object val)
+	{
+		if (mutableProperties == null)
+		{
+			mutableProperties = HashCollections.newMutableMap();
+		}
+
+		mutableProperties.put(key, val);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Object remove(final String key)
+	{
+		return mutableProperties == null ? null : mutableProperties.remove(key);
+	}
+
+	/*
+	 * Spreads consecutive slots over the table (Fibonacci hashing): the index is made of the top log2(table size) bits of the product, i.e. the product shifted right by 32 - log2(table size) bits,
+	 * whatever the table size
+	 */
+	private static int getMemoTableIndex(final int slot, final int tableMask)
+	{
+		return (slot * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(tableMask);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Object getMemo(final int slot)
+	{
+		assert slot > 0;
+		if (memoSlots == null)
+		{
+			return null;
+		}
+
+		final int tableMask = memoSlots.length - 1;
+		for (int i = getMemoTableIndex(slot, tableMask);; i = (i + 1) & tableMask)
+		{
+			final int entrySlot = memoSlots[i];
+			if (entrySlot == slot)
+			{
+				return memoValues[i];
+			}
+
+			if (entrySlot == 0)
+			{
+				return null;
+			}
+		}
+	}
+
+	/*
+	 * Puts entry in the memo table, assuming there is at least one empty entry
+	 */
+	private static boolean putMemo(final int[] slots, final Object[] values, final int slot, final Object value)
+	{
+		final int tableMask = slots.length - 1;
+		for (int i = getMemoTableIndex(slot, tableMask);; i = (i + 1) & tableMask)
+		{
+			final int entrySlot = slots[i];
+			if (entrySlot == slot)
+			{
+				values[i] = value;
+				return false;
+			}
+
+			if (entrySlot == 0)
+			{
+				slots[i] = slot;
+				values[i] = value;
+				return true;
+			}
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void putMemo(final int slot, final Object value)
+	{
+		assert slot > 0 && value != null;
+		if (memoSlots == null)
+		{
+			memoSlots = new int[INITIAL_MEMO_TABLE_SIZE];
+			memoValues = new Object[INITIAL_MEMO_TABLE_SIZE];
+		}
+		else if (2 * (memoCount + 1) > memoSlots.length)
+		{
+			/*
+			 * Keep the load factor under 1/2 so that probe sequences remain short
+			 */
+			final int[] newSlots = new int[memoSlots.length * 2];
+			final Object[] newValues = new Object[memoSlots.length * 2];
+			for (int i = 0; i < memoSlots.length; i++)
+			{
+				if (memoSlots[i] != 0)
+				{
+					putMemo(newSlots, newValues, memoSlots[i], memoValues[i]);
+				}
+			}
+
+			memoSlots = newSlots;
+			memoValues = newValues;
+		}
+
+		if (putMemo(memoSlots, memoValues, slot, value))
+		{
+			memoCount++;
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Set<? extends AttributeValue> getBagIndex(final Bag<?> bag)
+	{
+		if (minIndexedBagSize == 0 || bag.size() < minIndexedBagSize)
+		{
+			return null;
+		}
+
+		if (bagIndexes != null)
+		{
+			final Set<AttributeValue> cachedIndex = bagIndexes.get(bag);
+			if (cachedIndex != null)
+			{
+				return cachedIndex;
+			}
+		}
+
+		/*
+		 * Index the bag only if already looked up (same instance), i.e. a bag likely to be looked up again such as the bag of a named attribute or variable
+		 */
+		if (bagsSeenOnce == null)
+		{
+			bagsSeenOnce = new Bag<?>[MAX_BAGS_SEEN_ONCE];
+		}
+
+		int seenOnceIndex = -1;
+		for (int i = 0; i < MAX_BAGS_SEEN_ONCE; i++)
+		{
+			if (bagsSeenOnce[i] == bag)
+			{
+				seenOnceIndex = i;
+				break;
+			}
+		}
+
+		if (seenOnceIndex == -1)
+		{
+			bagsSeenOnce[nextBagSeenOnceIndex] = bag;
+			nextBagSeenOnceIndex = (nextBagSeenOnceIndex + 1) % MAX_BAGS_SEEN_ONCE;
+			return null;
+		}
+
+		bagsSeenOnce[seenOnceIndex] = null;
+		if (bagIndexes == null)
+		{
+			bagIndexes = new IdentityHashMap<>();
+		}
+
+		final Set<AttributeValue> newIndex = new HashSet<>(2 * bag.size());
+		for (final AttributeValue value : bag)
+		{
+			newIndex.add(value);
+		}
+
+		bagIndexes.put(bag, newIndex);
+		return newIndex;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The merged view of the named attributes is created on every call, therefore this method should not be called on the evaluation path.
+	 */
+	@Override
+	public Iterator<Entry<AttributeFQN, AttributeBag<?>>> getNamedAttributes()
+	{
+		final Map<AttributeFQN, AttributeBag<?>> mergedAttributes = HashCollections.newUpdatableMap();
+		if (resolvedAttributes != null)
+		{
+			mergedAttributes.putAll(resolvedAttributes);
+		}
+
+		/*
+		 * Layers in increasing order of priority, so that the first layer wins
+		 */
+		for (int i = attributeLayers.size() - 1; i >= 0; i--)
+		{
+			mergedAttributes.putAll(attributeLayers.get(i));
+		}
+
+		return Collections.unmodifiableMap(mergedAttributes).entrySet().iterator();
+	}
+
+	@Override
+	public boolean isApplicablePolicyIdListRequested()
+	{
+		return returnApplicablePolicyIdList;
+	}
+
+	@Override
+	public <L extends Listener> L putListener(final Class<L> listenerType, final L listener)
+	{
+		for (int i = 0; i < listenerCount; i++)
+		{
+			if (listenerTypes[i] == listenerType)
+			{
+				final Listener previousListener = listeners[i];
+				listeners[i] = listener;
+				return listenerType.cast(previousListener);
+			}
+		}
+
+		if (listenerTypes == null)
+		{
+			listenerTypes = new Class<?>[INITIAL_LISTENER_COUNT];
+			listeners = new Listener[INITIAL_LISTENER_COUNT];
+		}
+		else if (listenerCount == listenerTypes.length)
+		{
+			listenerTypes = Arrays.copyOf(listenerTypes, listenerCount * 2);
+			listeners = Arrays.copyOf(listeners, listenerCount * 2);
+		}
+
+		listenerTypes[listenerCount] = listenerType;
+		listeners[listenerCount] = listener;
+		listenerCount++;
+		return null;
+	}
+
+	@Override
+	public <L extends Listener> L getListener(final Class<L> listenerType)
+	{
+		for (int i = 0; i < listenerCount; i++)
+		{
+			if (listenerTypes[i] == listenerType)
+			{
+				return listenerType.cast(listeners[i]);
+			}
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,406 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.DecisionCache;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionRequest;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionResult;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeSelectorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
+import org.ow2.authzforce.core.pdp.api.value.XPathValue;
+import org.ow2.authzforce.core.xmlns.pdp.InMemoryDecisionCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultiset;
+
+/**
+ * In-memory (local) decision cache, bounded by a maximum number of entries (least recently used entries are evicted first) and a time-to-live, and partitioned internally to support concurrent
+ * access (see {@link CacheBuilder#concurrencyLevel(int)}).
+ * <p>
+ * The cache key is a canonical form of the request's named attributes, where the order of attribute values in a bag does not matter (XACML bags are unordered). Requests with extra XML content
+ * (Attributes/Content, used by AttributeSelectors) are never cached, nor Indeterminate results (usually caused by transient errors, e.g. from Attribute Providers).
+ * <p>
+ * Results of evaluations that used a standard environment date/time attribute (current-time, current-date, current-dateTime) supplied by the PDP - i.e. not present in the request used as cache
+ * key - are not cached either, since they depend on the time of evaluation which is not part of the request. This is detected by listening to the {@link EvaluationContext}, therefore this cache
+ * requires the evaluation context (see {@link #isEvaluationContextRequired()}). If the PDP ignores the standard environment attributes of the request (standardEnvAttributeSource = PDP_ONLY), it
+ * removes them from the cache key, so that any use of them makes the result time-dependent.
+ *
+ * @version $Id: $
+ */
+public final class CoreInMemoryDecisionCache implements DecisionCache
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(CoreInMemoryDecisionCache.class);
+
+	/**
+	 * Factory of {@link CoreInMemoryDecisionCache} instances
+	 */
+	public static final class Factory extends DecisionCache.Factory<InMemoryDecisionCache>
+	{
+
+		@Override
+		public Class<InMemoryDecisionCache> getJaxbClass()
+		{
+			return InMemoryDecisionCache.class;
+		}
+
+		@Override
+		public DecisionCache getInstance(final InMemoryDecisionCache conf)
+		{
+			return new CoreInMemoryDecisionCache(toInt(conf.getMaxEntries(), "maxEntries"), toInt(conf.getTimeToLive(), "timeToLive"), toInt(conf.getConcurrencyLevel(), "concurrencyLevel"));
+		}
+
+		private static int toInt(final BigInteger value, final String paramName) throws IllegalArgumentException
+		{
+			try
+			{
+				return value.intValueExact();
+			}
+			catch (final ArithmeticException e)
+			{
+				throw new IllegalArgumentException("Invalid " + paramName + ": " + value, e);
+			}
+		}
+	}
+
+	/*
+	 * Canonical form of a bag: datatype and multiset of values
+	 */
+	private static final class BagKey
+	{
+		private final Datatype<?> elementDatatype;
+		private final ImmutableMultiset<AttributeValue> values;
+
+		private transient volatile int hashCode = 0;
+
+		private BagKey(final Bag<?> bag)
+		{
+			this.elementDatatype = bag.getElementDatatype();
+			this.values = ImmutableMultiset.<AttributeValue> copyOf(bag);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			if (hashCode == 0)
+			{
+				hashCode = 31 * elementDatatype.hashCode() + values.hashCode();
+			}
+
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+
+			if (!(obj instanceof BagKey))
+			{
+				return false;
+			}
+
+			final BagKey other = (BagKey) obj;
+			return elementDatatype.equals(other.elementDatatype) && values.equals(other.values);
+		}
+	}
+
+	/*
+	 * Canonical form of a request (without extra XML content)
+	 */
+	private static final class RequestKey
+	{
+		private final ImmutableMap<AttributeFQN, BagKey> namedAttributes;
+		private final boolean isApplicablePolicyIdListReturned;
+
+		private transient volatile int hashCode = 0;
+
+		private RequestKey(final Map<AttributeFQN, AttributeBag<?>> namedAttributes, final boolean isApplicablePolicyIdListReturned)
+		{
+			final ImmutableMap.Builder<AttributeFQN, BagKey> mapBuilder = ImmutableMap.builder();
+			if (namedAttributes != null)
+			{
+				for (final Entry<AttributeFQN, AttributeBag<?>> attributeEntry : namedAttributes.entrySet())
+				{
+					mapBuilder.put(attributeEntry.getKey(), new BagKey(attributeEntry.getValue()));
+				}
+			}
+
+			this.namedAttributes = mapBuilder.build();
+			this.isApplicablePolicyIdListReturned = isApplicablePolicyIdListReturned;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			if (hashCode == 0)
+			{
+				/*
+				 * ImmutableMap's hashCode does not depend on the order of entries
+				 */
+				hashCode = 31 * namedAttributes.hashCode() + Boolean.hashCode(isApplicablePolicyIdListReturned);
+			}
+
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+
+			if (!(obj instanceof RequestKey))
+			{
+				return false;
+			}
+
+			final RequestKey other = (RequestKey) obj;
+			return isApplicablePolicyIdListReturned == other.isApplicablePolicyIdListReturned && namedAttributes.equals(other.namedAttributes);
+		}
+	}
+
+	/*
+	 * Listener registered on the evaluation context by get(...), and checked by put(...), that detects whether the decision depends on a standard environment date/time attribute issued by the PDP
+	 */
+	private static final class PdpIssuedStdEnvAttributeUsageListener implements EvaluationContext.Listener
+	{
+		private final RequestKey requestKey;
+		private volatile boolean isPdpIssuedStdEnvAttributeUsed = false;
+
+		private PdpIssuedStdEnvAttributeUsageListener(final RequestKey requestKey)
+		{
+			this.requestKey = requestKey;
+		}
+
+		@Override
+		public <AV extends AttributeValue> void namedAttributeValueConsumed(final AttributeFQN attributeFQN, final AttributeBag<AV> value)
+		{
+			if (StandardEnvironmentAttribute.getInstance(attributeFQN) != null && !requestKey.namedAttributes.containsKey(attributeFQN))
+			{
+				isPdpIssuedStdEnvAttributeUsed = true;
+			}
+		}
+
+		@Override
+		public <AV extends AttributeValue> void namedAttributeValueProduced(final AttributeFQN attributeFQN, final AttributeBag<AV> value)
+		{
+			// attribute values from Attribute Providers: handled by the time-to-live
+		}
+
+		@Override
+		public <AV extends AttributeValue> void attributeSelectorResultConsumed(final AttributeSelectorExpression<AV> attributeSelector, final Bag<AV> value)
+		{
+			// requests with extra content (required by AttributeSelectors) are not cached
+		}
+
+		@Override
+		public <AV extends AttributeValue> void attributeSelectorResultProduced(final AttributeSelectorExpression<AV> attributeSelector,
+				final Optional<AttributeBag<XPathValue>> contextSelectorValue, final Bag<AV> value)
+		{
+			// requests with extra content (required by AttributeSelectors) are not cached
+		}
+	}
+
+	private final Cache<RequestKey, PdpDecisionResult> cache;
+
+	/*
+	 * Number of results not cached because they depend on PDP-issued current date/time
+	 */
+	private final LongAdder timeDependentResultCount = new LongAdder();
+
+	/**
+	 * Creates instance
+	 *
+	 * @param maxEntries
+	 *            maximum number of entries
+	 * @param timeToLiveSec
+	 *            time-to-live of an entry after it is put in cache, in seconds; zero means no expiration
+	 * @param concurrencyLevel
+	 *            estimated number of concurrently updating threads
+	 */
+	public CoreInMemoryDecisionCache(final int maxEntries, final int timeToLiveSec, final int concurrencyLevel)
+	{
+		final CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().maximumSize(maxEntries).concurrencyLevel(concurrencyLevel).recordStats();
+		if (timeToLiveSec > 0)
+		{
+			cacheBuilder.expireAfterWrite(timeToLiveSec, TimeUnit.SECONDS);
+		}
+
+		this.cache = cacheBuilder.build();
+	}
+
+	private static boolean isCacheable(final PdpDecisionRequest request)
+	{
+		final Map<String, ?> extraContents = request.getExtraContentsByCategory();
+		return extraContents == null || extraContents.isEmpty();
+	}
+
+	private static boolean isCacheable(final PdpDecisionResult result)
+	{
+		return result.getDecision() != DecisionType.INDETERMINATE;
+	}
+
+	/**
+	 * Get the cache statistics: hits, misses, evictions. NB: requests that are not cacheable (with extra XML content) are not counted.
+	 *
+	 * @return statistics of the cache since its creation
+	 */
+	public CacheStats getStats()
+	{
+		return cache.stats();
+	}
+
+	/**
+	 * Get the number of results that were not cached because they depend on a standard environment date/time attribute supplied by the PDP
+	 *
+	 * @return number of time-dependent results
+	 */
+	public long getTimeDependentResultCount()
+	{
+		return timeDependentResultCount.sum();
+	}
+
+	@Override
+	public boolean isEvaluationContextRequired()
+	{
+		return true;
+	}
+
+	@Override
+	public PdpDecisionResult get(final PdpDecisionRequest request, final EvaluationContext evalContext)
+	{
+		if (!isCacheable(request))
+		{
+			return null;
+		}
+
+		final RequestKey key = new RequestKey(request.getNamedAttributes(), request.isApplicablePolicyIdListReturned());
+		final PdpDecisionResult result = cache.getIfPresent(key);
+		if (result == null)
+		{
+			// the request will be evaluated in this context, then put(...) called
+			evalContext.putListener(PdpIssuedStdEnvAttributeUsageListener.class, new PdpIssuedStdEnvAttributeUsageListener(key));
+		}
+
+		return result;
+	}
+
+	@Override
+	public void put(final PdpDecisionRequest request, final PdpDecisionResult result, final EvaluationContext evalContext)
+	{
+		if (!isCacheable(request) || !isCacheable(result))
+		{
+			return;
+		}
+
+		final PdpIssuedStdEnvAttributeUsageListener listener = evalContext.getListener(PdpIssuedStdEnvAttributeUsageListener.class);
+		if (listener == null)
+		{
+			// get(...) not called before in this context: dependency on PDP-issued attributes unknown
+			return;
+		}
+
+		if (listener.isPdpIssuedStdEnvAttributeUsed)
+		{
+			timeDependentResultCount.increment();
+			return;
+		}
+
+		cache.put(listener.requestKey, result);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * NB: without evaluation context, dependency of results on PDP-issued date/time attributes cannot be detected. This is why the PDP uses {@link #get(PdpDecisionRequest, EvaluationContext)}
+	 * instead (see {@link #isEvaluationContextRequired()}).
+	 */
+	@Override
+	public <REQ extends PdpDecisionRequest> Map<REQ, PdpDecisionResult> getAll(final List<REQ> requests)
+	{
+		final Map<REQ, PdpDecisionResult> resultsByRequest = HashCollections.newUpdatableMap(requests.size());
+		for (final REQ request : requests)
+		{
+			if (isCacheable(request))
+			{
+				final PdpDecisionResult result = cache.getIfPresent(new RequestKey(request.getNamedAttributes(), request.isApplicablePolicyIdListReturned()));
+				if (result != null)
+				{
+					resultsByRequest.put(request, result);
+				}
+			}
+		}
+
+		return resultsByRequest;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * NB: without evaluation context, dependency of results on PDP-issued date/time attributes cannot be detected. This is why the PDP uses
+	 * {@link #put(PdpDecisionRequest, PdpDecisionResult, EvaluationContext)} instead (see {@link #isEvaluationContextRequired()}).
+	 */
+	@Override
+	public <REQ extends PdpDecisionRequest> void putAll(final Map<REQ, PdpDecisionResult> resultsByRequest)
+	{
+		for (final Entry<REQ, PdpDecisionResult> resultEntry : resultsByRequest.entrySet())
+		{
+			final REQ request = resultEntry.getKey();
+			final PdpDecisionResult result = resultEntry.getValue();
+			if (isCacheable(request) && isCacheable(result))
+			{
+				cache.put(new RequestKey(request.getNamedAttributes(), request.isApplicablePolicyIdListReturned()), result);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		LOGGER.debug("Closing decision cache. Stats: {}, time-dependent (not cached) results: {}", cache.stats(), timeDependentResultCount.sum());
+		cache.invalidateAll();
+	}
+
+}
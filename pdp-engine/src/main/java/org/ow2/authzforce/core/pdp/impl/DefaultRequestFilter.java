@@ -103,7 +103,10 @@ public final class DefaultRequestFilter extends BaseRequestFilter
 	 */
 	public static final class StrictFilterFactory implements RequestFilter.Factory
 	{
-		private static final String ID = "urn:ow2:authzforce:feature:pdp:request-filter:default-strict";
+		/**
+		 * Request filter ID, as returned by {@link #getId()}
+		 */
+		public static final String ID = "urn:ow2:authzforce:feature:pdp:request-filter:default-strict";
 
 		@Override
 		public String getId()
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+
+/**
+ * Key of an attribute provided by an Attribute Provider module, in a cache shared by different evaluation contexts: requested attribute (and datatype) and values of the module's dependencies, i.e.
+ * the attributes declared as required by the module to provide its own. Two evaluation contexts with the same dependency values are assumed to get the same values of the provided attribute.
+ *
+ * @version $Id: $
+ */
+final class DependentAttributeKey
+{
+	private final AttributeFQN attributeFQN;
+	private final Datatype<?> datatype;
+	private final ImmutableList<ImmutableMultiset<AttributeValue>> dependencyValues;
+
+	private transient volatile int hashCode = 0;
+
+	/**
+	 * Creates key
+	 *
+	 * @param attributeFQN
+	 *            provided attribute
+	 * @param datatype
+	 *            provided attribute datatype
+	 * @param dependencyValues
+	 *            values of the dependencies, always in the same order of dependencies for a given attribute; each bag of values in canonical form, where the order of values does not matter (XACML
+	 *            bags are unordered)
+	 */
+	DependentAttributeKey(final AttributeFQN attributeFQN, final Datatype<?> datatype, final ImmutableList<ImmutableMultiset<AttributeValue>> dependencyValues)
+	{
+		assert attributeFQN != null && datatype != null && dependencyValues != null;
+		this.attributeFQN = attributeFQN;
+		this.datatype = datatype;
+		this.dependencyValues = dependencyValues;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		if (hashCode == 0)
+		{
+			hashCode = 31 * (31 * attributeFQN.hashCode() + datatype.hashCode()) + dependencyValues.hashCode();
+		}
+
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(final Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+
+		if (!(obj instanceof DependentAttributeKey))
+		{
+			return false;
+		}
+
+		final DependentAttributeKey other = (DependentAttributeKey) obj;
+		return attributeFQN.equals(other.attributeFQN) && datatype.equals(other.datatype) && dependencyValues.equals(other.dependencyValues);
+	}
+
+	@Override
+	public String toString()
+	{
+		return attributeFQN + " [datatype=" + datatype + ", dependencyValues=" + dependencyValues + "]";
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeSelectorId;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+
+/**
+ * {@link EvaluationContext} listener notified of the time spent in the main steps of the evaluation of an Individual Decision Request. The PDP engine looks for a listener of this type in the
+ * evaluation context ({@link EvaluationContext#getListener(Class)} with this interface as listener type) before each of these steps, and measures the time spent in the step only if there is one;
+ * therefore the instrumentation has a negligible cost when no such listener is registered.
+ * <p>
+ * Implementations must be thread-safe if the same instance is registered in multiple evaluation contexts. Implementations should return quickly since they are called on the evaluation thread.
+ *
+ * @version $Id: $
+ */
+public interface EvaluationTimingListener extends EvaluationContext.Listener
+{
+	/**
+	 * Called after the evaluation of a Policy(Set)'s Target
+	 *
+	 * @param policyElement
+	 *            Policy(Set) description, e.g. {@code POLICY[policyId#v1.0]}
+	 * @param durationNanos
+	 *            time spent evaluating the Target, in nanoseconds
+	 */
+	void targetEvaluated(String policyElement, long durationNanos);
+
+	/**
+	 * Called after the evaluation of a Policy(Set)'s combining algorithm
+	 *
+	 * @param policyElement
+	 *            Policy(Set) description, e.g. {@code POLICY[policyId#v1.0]}
+	 * @param combiningAlgId
+	 *            combining algorithm ID
+	 * @param durationNanos
+	 *            time spent evaluating the combining algorithm, including the evaluation of the combined Rules or Policy(Set)s (therefore including the time spent in the child Policy(Set)s' own
+	 *            Targets and combining algorithms), in nanoseconds
+	 */
+	void combiningAlgEvaluated(String policyElement, String combiningAlgId, long durationNanos);
+
+	/**
+	 * Called after an Attribute Provider module has been called to resolve an attribute missing from the evaluation context
+	 *
+	 * @param attributeFQN
+	 *            requested attribute
+	 * @param durationNanos
+	 *            time spent in the Attribute Provider module, in nanoseconds
+	 */
+	void attributeProviderCalled(AttributeFQN attributeFQN, long durationNanos);
+
+	/**
+	 * Called after the evaluation of the XPath expression of an AttributeSelector
+	 *
+	 * @param attributeSelectorId
+	 *            AttributeSelector identifier
+	 * @param durationNanos
+	 *            time spent evaluating the AttributeSelector's Path, in nanoseconds
+	 */
+	void attributeSelectorEvaluated(AttributeSelectorId attributeSelectorId, long durationNanos);
+}
@@ -0,0 +1,340 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeSelectorId;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeSelectorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.XPathValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evaluation timing recorder, registered as {@link EvaluationTimingListener} in the evaluation context of every Individual Decision Request when evaluation timings are enabled in the PDP
+ * configuration. The durations are aggregated in histograms (one per timer, e.g. per Policy(Set) Target), from which the count, total, max and percentiles are computed on demand (
+ * {@link #getTimerStatistics()}). The statistics may be polled by any metrics registry, or read via JMX once {@link #registerMBean()} has been called.
+ *
+ * @version $Id: $
+ */
+public final class EvaluationTimingRecorder implements EvaluationTimingListener, EvaluationTimingsMXBean
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(EvaluationTimingRecorder.class);
+
+	/**
+	 * JMX domain of the MXBeans
+	 */
+	public static final String MBEAN_DOMAIN = "org.ow2.authzforce.core.pdp";
+
+	private static final AtomicInteger MBEAN_COUNTER = new AtomicInteger(0);
+
+	private static final Comparator<TimerStatistics> DECREASING_TOTAL_TIME_COMPARATOR = new Comparator<TimerStatistics>()
+	{
+
+		@Override
+		public int compare(final TimerStatistics stats1, final TimerStatistics stats2)
+		{
+			return Long.compare(stats2.getTotalNanos(), stats1.getTotalNanos());
+		}
+
+	};
+
+	/**
+	 * Histogram of durations with 4 buckets per power of 2 (relative error of 25% at most), thread-safe and lock-free
+	 */
+	private static final class Timer
+	{
+		private static final int SUB_BUCKET_BITS = 2;
+		private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+		private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (Long.SIZE - SUB_BUCKET_BITS);
+
+		private static int getBucketIndex(final long value)
+		{
+			if (value < SUB_BUCKET_COUNT)
+			{
+				return value < 0 ? 0 : (int) value;
+			}
+
+			final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+			final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+			return SUB_BUCKET_COUNT * (exponent - SUB_BUCKET_BITS + 1) + subBucket;
+		}
+
+		/*
+		 * Upper bound (inclusive) of the values in the bucket
+		 */
+		private static long getBucketUpperBound(final int index)
+		{
+			if (index < SUB_BUCKET_COUNT)
+			{
+				return index;
+			}
+
+			final int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+			final int subBucket = index % SUB_BUCKET_COUNT;
+			return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+		}
+
+		private final String name;
+		private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		private Timer(final String name)
+		{
+			this.name = name;
+		}
+
+		private void record(final long durationNanos)
+		{
+			bucketCounts.incrementAndGet(getBucketIndex(durationNanos));
+			count.increment();
+			total.add(durationNanos);
+			max.accumulate(durationNanos);
+		}
+
+		private long getPercentile(final long[] snapshot, final long snapshotCount, final double percentile)
+		{
+			final long rank = (long) Math.ceil(percentile * snapshotCount);
+			long cumulativeCount = 0;
+			for (int i = 0; i < snapshot.length; i++)
+			{
+				cumulativeCount += snapshot[i];
+				if (cumulativeCount >= rank)
+				{
+					return Math.min(getBucketUpperBound(i), max.get());
+				}
+			}
+
+			return max.get();
+		}
+
+		private TimerStatistics getStatistics()
+		{
+			final long[] snapshot = new long[BUCKET_COUNT];
+			long snapshotCount = 0;
+			for (int i = 0; i < BUCKET_COUNT; i++)
+			{
+				snapshot[i] = bucketCounts.get(i);
+				snapshotCount += snapshot[i];
+			}
+
+			if (snapshotCount == 0)
+			{
+				return new TimerStatistics(name, 0, 0, 0, 0, 0, 0);
+			}
+
+			return new TimerStatistics(name, snapshotCount, total.sum(), max.get(), getPercentile(snapshot, snapshotCount, 0.5), getPercentile(snapshot, snapshotCount, 0.9), getPercentile(
+					snapshot, snapshotCount, 0.99));
+		}
+	}
+
+	/*
+	 * Timers by key (Policy(Set) description, combining algorithm ID, attribute, AttributeSelector), by type of evaluation step
+	 */
+	private final Timer decisionTimer = new Timer("decision");
+	private final ConcurrentMap<String, Timer> targetTimers = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Timer> combiningTimers = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Timer> combiningAlgTimers = new ConcurrentHashMap<>();
+	private final ConcurrentMap<AttributeFQN, Timer> attributeProviderTimers = new ConcurrentHashMap<>();
+	private final ConcurrentMap<AttributeSelectorId, Timer> xpathTimers = new ConcurrentHashMap<>();
+
+	private volatile ObjectName mbeanName = null;
+
+	private static <K> void record(final ConcurrentMap<K, Timer> timers, final K key, final String namePrefix, final long durationNanos)
+	{
+		Timer timer = timers.get(key);
+		if (timer == null)
+		{
+			timer = timers.computeIfAbsent(key, k -> new Timer(namePrefix + k));
+		}
+
+		timer.record(durationNanos);
+	}
+
+	/**
+	 * Records the total evaluation time of an Individual Decision Request
+	 *
+	 * @param durationNanos
+	 *            duration in nanoseconds
+	 */
+	void decisionEvaluated(final long durationNanos)
+	{
+		decisionTimer.record(durationNanos);
+	}
+
+	@Override
+	public void targetEvaluated(final String policyElement, final long durationNanos)
+	{
+		record(targetTimers, policyElement, "target:", durationNanos);
+	}
+
+	@Override
+	public void combiningAlgEvaluated(final String policyElement, final String combiningAlgId, final long durationNanos)
+	{
+		record(combiningTimers, policyElement, "combining:", durationNanos);
+		record(combiningAlgTimers, combiningAlgId, "combining-algorithm:", durationNanos);
+	}
+
+	@Override
+	public void attributeProviderCalled(final AttributeFQN attributeFQN, final long durationNanos)
+	{
+		record(attributeProviderTimers, attributeFQN, "attribute-provider:", durationNanos);
+	}
+
+	@Override
+	public void attributeSelectorEvaluated(final AttributeSelectorId attributeSelectorId, final long durationNanos)
+	{
+		record(xpathTimers, attributeSelectorId, "xpath:", durationNanos);
+	}
+
+	@Override
+	public <AV extends AttributeValue> void namedAttributeValueConsumed(final AttributeFQN attributeFQN, final AttributeBag<AV> value)
+	{
+		// not timed
+	}
+
+	@Override
+	public <AV extends AttributeValue> void namedAttributeValueProduced(final AttributeFQN attributeFQN, final AttributeBag<AV> value)
+	{
+		// not timed
+	}
+
+	@Override
+	public <AV extends AttributeValue> void attributeSelectorResultConsumed(final AttributeSelectorExpression<AV> attributeSelector, final Bag<AV> value)
+	{
+		// not timed
+	}
+
+	@Override
+	public <AV extends AttributeValue> void attributeSelectorResultProduced(final AttributeSelectorExpression<AV> attributeSelector, final Optional<AttributeBag<XPathValue>> contextSelectorValue,
+			final Bag<AV> value)
+	{
+		// not timed
+	}
+
+	@Override
+	public long getDecisionCount()
+	{
+		return decisionTimer.count.sum();
+	}
+
+	private static void addStatistics(final Map<?, Timer> timers, final List<TimerStatistics> statistics)
+	{
+		for (final Timer timer : timers.values())
+		{
+			statistics.add(timer.getStatistics());
+		}
+	}
+
+	@Override
+	public List<TimerStatistics> getTimerStatistics()
+	{
+		final List<TimerStatistics> statistics = new ArrayList<>();
+		statistics.add(decisionTimer.getStatistics());
+		addStatistics(targetTimers, statistics);
+		addStatistics(combiningTimers, statistics);
+		addStatistics(combiningAlgTimers, statistics);
+		addStatistics(attributeProviderTimers, statistics);
+		addStatistics(xpathTimers, statistics);
+		statistics.sort(DECREASING_TOTAL_TIME_COMPARATOR);
+		return statistics;
+	}
+
+	@Override
+	public void reset()
+	{
+		/*
+		 * The decision timer cannot be replaced (final field) -> clear its histogram (not atomically, statistics read concurrently may be slightly inconsistent)
+		 */
+		for (int i = 0; i < Timer.BUCKET_COUNT; i++)
+		{
+			decisionTimer.bucketCounts.set(i, 0);
+		}
+
+		decisionTimer.count.reset();
+		decisionTimer.total.reset();
+		decisionTimer.max.reset();
+		targetTimers.clear();
+		combiningTimers.clear();
+		combiningAlgTimers.clear();
+		attributeProviderTimers.clear();
+		xpathTimers.clear();
+	}
+
+	/**
+	 * Registers this recorder as MXBean in the platform MBean server, with object name {@code org.ow2.authzforce.core.pdp:type=EvaluationTimings,pdp=N}, N being a sequence number. Registration
+	 * errors are logged but not thrown, as the statistics remain available from the API.
+	 */
+	void registerMBean()
+	{
+		try
+		{
+			final ObjectName name = new ObjectName(MBEAN_DOMAIN + ":type=EvaluationTimings,pdp=" + MBEAN_COUNTER.incrementAndGet());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			this.mbeanName = name;
+			LOGGER.info("PDP evaluation timings available via JMX: {}", name);
+		}
+		catch (final JMException e)
+		{
+			LOGGER.warn("Failed to register PDP evaluation timings MXBean", e);
+		}
+	}
+
+	/**
+	 * Unregisters this recorder from the platform MBean server, if registered
+	 */
+	void unregisterMBean()
+	{
+		final ObjectName name = this.mbeanName;
+		if (name == null)
+		{
+			return;
+		}
+
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		}
+		catch (final JMException e)
+		{
+			LOGGER.warn("Failed to unregister PDP evaluation timings MXBean {}", name, e);
+		}
+
+		this.mbeanName = null;
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.beans.ConstructorProperties;
+import java.util.List;
+
+/**
+ * JMX management interface of the PDP evaluation timings (see {@link EvaluationTimingRecorder})
+ *
+ * @version $Id: $
+ */
+public interface EvaluationTimingsMXBean
+{
+	/**
+	 * Statistics of a timer, i.e. of the durations of the same evaluation step (e.g. evaluation of a given Policy's Target). Percentiles are estimated from a histogram with a relative error of at
+	 * most 25%.
+	 */
+	final class TimerStatistics
+	{
+		private final String name;
+		private final long count;
+		private final long totalNanos;
+		private final long maxNanos;
+		private final long p50Nanos;
+		private final long p90Nanos;
+		private final long p99Nanos;
+
+		/**
+		 * Creates timer statistics
+		 *
+		 * @param name
+		 *            timer name
+		 * @param count
+		 *            number of recorded durations
+		 * @param totalNanos
+		 *            sum of recorded durations (ns)
+		 * @param maxNanos
+		 *            max recorded duration (ns)
+		 * @param p50Nanos
+		 *            median duration (ns)
+		 * @param p90Nanos
+		 *            90th percentile of durations (ns)
+		 * @param p99Nanos
+		 *            99th percentile of durations (ns)
+		 */
+		@ConstructorProperties({ "name", "count", "totalNanos", "maxNanos", "p50Nanos", "p90Nanos", "p99Nanos" })
+		public TimerStatistics(final String name, final long count, final long totalNanos, final long maxNanos, final long p50Nanos, final long p90Nanos, final long p99Nanos)
+		{
+			this.name = name;
+			this.count = count;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+			this.p50Nanos = p50Nanos;
+			this.p90Nanos = p90Nanos;
+			this.p99Nanos = p99Nanos;
+		}
+
+		/**
+		 * Get timer name: {@code decision} (whole Individual Decision Request evaluation), {@code target:<Policy(Set)>}, {@code combining:<Policy(Set)>}, {@code combining-algorithm:<algorithm ID>},
+		 * {@code attribute-provider:<attribute>} or {@code xpath:<AttributeSelector>}
+		 *
+		 * @return name
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * Get number of recorded durations
+		 *
+		 * @return count
+		 */
+		public long getCount()
+		{
+			return count;
+		}
+
+		/**
+		 * Get sum of recorded durations
+		 *
+		 * @return total duration (ns)
+		 */
+		public long getTotalNanos()
+		{
+			return totalNanos;
+		}
+
+		/**
+		 * Get max recorded duration
+		 *
+		 * @return max duration (ns)
+		 */
+		public long getMaxNanos()
+		{
+			return maxNanos;
+		}
+
+		/**
+		 * Get median duration
+		 *
+		 * @return median duration (ns)
+		 */
+		public long getP50Nanos()
+		{
+			return p50Nanos;
+		}
+
+		/**
+		 * Get 90th percentile of durations
+		 *
+		 * @return 90th percentile (ns)
+		 */
+		public long getP90Nanos()
+		{
+			return p90Nanos;
+		}
+
+		/**
+		 * Get 99th percentile of durations
+		 *
+		 * @return 99th percentile (ns)
+		 */
+		public long getP99Nanos()
+		{
+			return p99Nanos;
+		}
+
+		@Override
+		public String toString()
+		{
+			return name + " [count=" + count + ", totalNanos=" + totalNanos + ", maxNanos=" + maxNanos + ", p50Nanos=" + p50Nanos + ", p90Nanos=" + p90Nanos + ", p99Nanos=" + p99Nanos + "]";
+		}
+	}
+
+	/**
+	 * Get the number of evaluated Individual Decision Requests since the PDP creation or last {@link #reset()}
+	 *
+	 * @return number of decisions
+	 */
+	long getDecisionCount();
+
+	/**
+	 * Get the statistics of all timers, in decreasing order of total time
+	 *
+	 * @return timer statistics
+	 */
+	List<TimerStatistics> getTimerStatistics();
+
+	/**
+	 * Clears all timers
+	 */
+	void reset();
+}
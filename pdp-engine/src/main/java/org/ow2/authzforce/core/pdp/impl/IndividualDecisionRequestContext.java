@@ -323,6 +323,14 @@ public final class IndividualDecisionRequestContext implements EvaluationContext
 	@Override
 	public <L extends Listener> L getListener(final Class<L> listenerType)
 	{
+		/*
+		 * Called several times per Policy evaluation (e.g. to find the EvaluationTimingListener), so make the common case of no listener as fast as possible
+		 */
+		if (this.listeners.isEmpty())
+		{
+			return null;
+		}
+
 		return this.listeners.getInstance(listenerType);
 	}
 }
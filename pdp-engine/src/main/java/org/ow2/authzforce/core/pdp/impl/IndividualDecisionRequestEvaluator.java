@@ -19,7 +19,9 @@ package org.ow2.authzforce.core.pdp.impl;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.Result;
@@ -54,13 +56,14 @@ public abstract class IndividualDecisionRequestEvaluator
 	private interface RequestAndPdpIssuedNamedAttributesMerger
 	{
 		/**
-		 * Return an updatable map after merging {@code pdpIssuedAttributes} and {@code requestAttributes} or one of each into it, depending on the implementation
+		 * Return the maps to be merged among {@code pdpIssuedAttributes} and {@code requestAttributes}, depending on the implementation, in decreasing order of priority. The maps are not modified;
+		 * they are either looked up in this order by the evaluation context ({@link CompactEvaluationContext}) or merged into a new map (see {@link #mergeIntoNewMap(List)}).
 		 * 
 		 * @param pdpIssuedAttributes
 		 * @param requestAttributes
-		 * @return updatable map resulting from merger, or null if nothing merged
+		 * @return maps to be merged, in decreasing order of priority (empty if nothing to merge)
 		 */
-		Map<AttributeFQN, AttributeBag<?>> merge(final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFQN, AttributeBag<?>> requestAttributes);
+		List<Map<AttributeFQN, AttributeBag<?>>> merge(final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFQN, AttributeBag<?>> requestAttributes);
 	}
 
 	private static final IndeterminateEvaluationException newReqMissingStdEnvAttrException(final AttributeFQN attrGUID)
@@ -69,6 +72,34 @@ public abstract class IndividualDecisionRequestEvaluator
 				+ " ) is not present in the REQUEST although at least one of the others is! (PDP standardEnvironmentAttributeSource = REQUEST_ELSE_PDP.)", StatusHelper.STATUS_MISSING_ATTRIBUTE);
 	}
 
+	private static List<Map<AttributeFQN, AttributeBag<?>>> toList(final Map<AttributeFQN, AttributeBag<?>> attributes)
+	{
+		return attributes == null ? Collections.<Map<AttributeFQN, AttributeBag<?>>> emptyList() : Collections.singletonList(attributes);
+	}
+
+	/*
+	 * Merges maps in decreasing order of priority into a map, or returns the only map if there is only one (to be copied by the evaluation context)
+	 */
+	private static Map<AttributeFQN, AttributeBag<?>> mergeIntoNewMap(final List<Map<AttributeFQN, AttributeBag<?>>> attributeLayers)
+	{
+		switch (attributeLayers.size())
+		{
+			case 0:
+				return null;
+			case 1:
+				return attributeLayers.get(0);
+			default:
+				final Map<AttributeFQN, AttributeBag<?>> mergedAttributes = HashCollections.newUpdatableMap();
+				// mappings in order of increasing priority, so that higher-priority mappings override
+				for (final ListIterator<Map<AttributeFQN, AttributeBag<?>>> layerIterator = attributeLayers.listIterator(attributeLayers.size()); layerIterator.hasPrevious();)
+				{
+					mergedAttributes.putAll(layerIterator.previous());
+				}
+
+				return mergedAttributes;
+		}
+	}
+
 	private static final Map<AttributeFQN, AttributeBag<?>> STD_ENV_RESET_MAP = HashCollections.<AttributeFQN, AttributeBag<?>> newImmutableMap(
 			StandardEnvironmentAttribute.CURRENT_DATETIME.getFQN(),
 			Bags.emptyAttributeBag(StandardDatatypes.DATETIME_FACTORY.getDatatype(), newReqMissingStdEnvAttrException(StandardEnvironmentAttribute.CURRENT_DATETIME.getFQN())),
@@ -81,21 +112,21 @@ public abstract class IndividualDecisionRequestEvaluator
 	{
 
 		@Override
-		public Map<AttributeFQN, AttributeBag<?>> merge(final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFQN, AttributeBag<?>> requestAttributes)
+		public List<Map<AttributeFQN, AttributeBag<?>>> merge(final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFQN, AttributeBag<?>> requestAttributes)
 		{
 			/*
-			 * Request attribute values override PDP issued ones. Do not modify pdpIssuedAttributes directly as this may be used for other requests (Multiple Decision Profile) as well. so we must not
-			 * modify it but clone it before individual decision request processing.
+			 * Request attribute values override PDP issued ones. pdpIssuedAttributes may be used for other requests (Multiple Decision Profile) as well, so it is never modified (the evaluation
+			 * context keeps the attributes resolved during evaluation separately).
 			 */
 			if (pdpIssuedAttributes == null)
 			{
-				return requestAttributes == null ? null : HashCollections.newUpdatableMap(requestAttributes);
+				return toList(requestAttributes);
 			}
 
 			// pdpIssuedAttributes != null
 			if (requestAttributes == null)
 			{
-				return HashCollections.newUpdatableMap(pdpIssuedAttributes);
+				return Collections.singletonList(pdpIssuedAttributes);
 			}
 			// requestAttributes != null
 
@@ -116,12 +147,12 @@ public abstract class IndividualDecisionRequestEvaluator
 				 * Request has at least one standard env attribute -> make sure all PDP values are ignored (overridden by STD_ENV_RESET_MAP no matter whether requestAttributes contains all of them or
 				 * not)
 				 */
-				// mappings in order of increasing priority
-				return HashCollections.newUpdatableMap(pdpIssuedAttributes, STD_ENV_RESET_MAP, requestAttributes);
+				// mappings in order of decreasing priority
+				return Arrays.asList(requestAttributes, STD_ENV_RESET_MAP, pdpIssuedAttributes);
 			}
 
-			// mappings in order of increasing priority
-			return HashCollections.newUpdatableMap(pdpIssuedAttributes, requestAttributes);
+			// mappings in order of decreasing priority
+			return Arrays.asList(requestAttributes, pdpIssuedAttributes);
 		}
 
 	};
@@ -130,28 +161,27 @@ public abstract class IndividualDecisionRequestEvaluator
 	{
 
 		@Override
-		public Map<AttributeFQN, AttributeBag<?>> merge(final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFQN, AttributeBag<?>> requestAttributes)
+		public List<Map<AttributeFQN, AttributeBag<?>>> merge(final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFQN, AttributeBag<?>> requestAttributes)
 		{
 
 			// PDP issued attribute values override request attribute values
 			/*
-			 * Do not modify pdpIssuedAttributes directly as this may be used for other requests (Multiple Decision Profile) as well. so we must not modify it but clone it before individual decision
-			 * request processing.
+			 * pdpIssuedAttributes may be used for other requests (Multiple Decision Profile) as well, so it is never modified.
 			 */
 			if (pdpIssuedAttributes == null)
 			{
-				return requestAttributes == null ? null : HashCollections.newUpdatableMap(requestAttributes);
+				return toList(requestAttributes);
 			}
 
 			// pdpIssuedAttributes != null
 			if (requestAttributes == null)
 			{
-				return HashCollections.newUpdatableMap(pdpIssuedAttributes);
+				return Collections.singletonList(pdpIssuedAttributes);
 			}
 			// requestAttributes != null
 
 			// mappings of pdpIssuedAttributes have priority
-			return HashCollections.newUpdatableMap(requestAttributes, pdpIssuedAttributes);
+			return Arrays.asList(pdpIssuedAttributes, requestAttributes);
 
 		}
 
@@ -161,10 +191,10 @@ public abstract class IndividualDecisionRequestEvaluator
 	{
 
 		@Override
-		public Map<AttributeFQN, AttributeBag<?>> merge(final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFQN, AttributeBag<?>> requestAttributes)
+		public List<Map<AttributeFQN, AttributeBag<?>>> merge(final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFQN, AttributeBag<?>> requestAttributes)
 		{
 			// PDP values completely ignored
-			return requestAttributes == null ? null : HashCollections.newUpdatableMap(requestAttributes);
+			return toList(requestAttributes);
 		}
 
 	};
@@ -223,6 +253,15 @@ public abstract class IndividualDecisionRequestEvaluator
 
 	private final DecisionResultFilter decisionResultFilter;
 
+	// null iff evaluation timings disabled
+	private final EvaluationTimingRecorder timingRecorder;
+
+	private final boolean batchAttributeResolutionEnabled;
+
+	private final int minIndexedBagSize;
+
+	private final boolean compactEvaluationContextEnabled;
+
 	/**
 	 * Creates an evaluator
 	 *
@@ -246,13 +285,24 @@ public abstract class IndividualDecisionRequestEvaluator
 	 *            </ul>
 	 * @param resultFilter
 	 *            Decision Result filter
+	 * @param timingRecorder
+	 *            recorder of evaluation timings, registered as {@link EvaluationTimingListener} in each new evaluation context; null iff evaluation timings are disabled
+	 * @param enableBatchAttributeResolution
+	 *            true iff the attributes resolved by Attribute Provider modules for an Individual Decision Request may be reused by the other Individual Decision Requests of the same Multiple Decision
+	 *            Request with the same values of the modules' dependencies (see {@link #newAttributeResolutionBatch(int)})
+	 * @param minIndexedBagSize
+	 *            minimum size of the bags indexed in each new evaluation context (see {@link SlotIndexedEvaluationContext#getBagIndex(org.ow2.authzforce.core.pdp.api.value.Bag)}); 0 disables
+	 *            bag indexing. Ignored unless {@code enableCompactEvaluationContext}.
+	 * @param enableCompactEvaluationContext
+	 *            true iff each Individual Decision Request must be evaluated in a {@link CompactEvaluationContext}, else in an {@link IndividualDecisionRequestContext}
 	 * @throws IllegalArgumentException
 	 *             if {@code stdEnvAttributeSource} is null or not supported
 	 */
-	protected IndividualDecisionRequestEvaluator(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource stdEnvAttributeSource, final DecisionResultFilter resultFilter)
+	protected IndividualDecisionRequestEvaluator(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource stdEnvAttributeSource, final DecisionResultFilter resultFilter,
+			final EvaluationTimingRecorder timingRecorder, final boolean enableBatchAttributeResolution, final int minIndexedBagSize, final boolean enableCompactEvaluationContext)
 			throws IllegalArgumentException
 	{
-		assert rootPolicyEvaluator != null && stdEnvAttributeSource != null;
+		assert rootPolicyEvaluator != null && stdEnvAttributeSource != null && minIndexedBagSize >= 0;
 		this.rootPolicyEvaluator = rootPolicyEvaluator;
 		switch (stdEnvAttributeSource)
 		{
@@ -274,6 +324,29 @@ public abstract class IndividualDecisionRequestEvaluator
 		}
 
 		this.decisionResultFilter = resultFilter == null ? DEFAULT_RESULT_FILTER : resultFilter;
+		this.timingRecorder = timingRecorder;
+		this.batchAttributeResolutionEnabled = enableBatchAttributeResolution;
+		this.minIndexedBagSize = minIndexedBagSize;
+		this.compactEvaluationContextEnabled = enableCompactEvaluationContext;
+	}
+
+	/**
+	 * Creates an evaluator without evaluation timings
+	 *
+	 * @param rootPolicyEvaluator
+	 *            root policy evaluator that this request evaluator uses to evaluate individual decision request
+	 * @param stdEnvAttributeSource
+	 *            (mandatory) Defines the source for the standard environment attributes specified in §10.2.5: current-time, current-date and current-dateTime (see
+	 *            {@link #IndividualDecisionRequestEvaluator(RootPolicyEvaluator, StandardEnvironmentAttributeSource, DecisionResultFilter, EvaluationTimingRecorder, boolean, int, boolean)})
+	 * @param resultFilter
+	 *            Decision Result filter
+	 * @throws IllegalArgumentException
+	 *             if {@code stdEnvAttributeSource} is null or not supported
+	 */
+	protected IndividualDecisionRequestEvaluator(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource stdEnvAttributeSource, final DecisionResultFilter resultFilter)
+			throws IllegalArgumentException
+	{
+		this(rootPolicyEvaluator, stdEnvAttributeSource, resultFilter, null, false, 0, false);
 	}
 
 	final boolean supportsMultipleDecisionCombining()
@@ -281,6 +354,14 @@ public abstract class IndividualDecisionRequestEvaluator
 		return this.decisionResultFilter.supportsMultipleDecisionCombining();
 	}
 
+	/*
+	 * True iff there is one JAXB Result per Individual Decision Request and nothing else, i.e. no custom result filter, therefore results may be serialized directly without evaluateToJAXB(...)
+	 */
+	final boolean hasDefaultResultFilter()
+	{
+		return this.decisionResultFilter == DEFAULT_RESULT_FILTER;
+	}
+
 	protected final FilteringResultCollector beginMultipleDecisions(final int numOfRequests)
 	{
 		/*
@@ -289,10 +370,63 @@ public abstract class IndividualDecisionRequestEvaluator
 		return decisionResultFilter.newResultCollector(numOfRequests);
 	}
 
+	/**
+	 * Creates the batch of attributes shared by the Individual Decision Requests of a Multiple Decision Request, to be passed to {@link #newEvaluationContext(PdpDecisionRequest, Map,
+	 * AttributeResolutionBatch)} or {@link #evaluateInNewContext(PdpDecisionRequest, Map, AttributeResolutionBatch)} for each of them
+	 *
+	 * @param numOfRequests
+	 *            number of Individual Decision Requests
+	 * @return new batch; or null if batch attribute resolution is disabled or there is at most one request (nothing to share)
+	 */
+	protected final AttributeResolutionBatch newAttributeResolutionBatch(final int numOfRequests)
+	{
+		return batchAttributeResolutionEnabled && numOfRequests > 1 ? new AttributeResolutionBatch() : null;
+	}
+
+	protected final EvaluationContext newEvaluationContext(final PdpDecisionRequest request, final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes,
+			final AttributeResolutionBatch attributeResolutionBatch)
+	{
+		final List<Map<AttributeFQN, AttributeBag<?>>> namedAttributeLayers = reqAndPdpIssuedAttributesMerger.merge(pdpIssuedAttributes, request.getNamedAttributes());
+		/*
+		 * In the compact context, the request and PDP-issued attributes are looked up directly in their maps (in order of priority) instead of being copied into a new map for each request
+		 */
+		final EvaluationContext evalCtx = compactEvaluationContextEnabled ? new CompactEvaluationContext(namedAttributeLayers, request.getExtraContentsByCategory(),
+				request.isApplicablePolicyIdListReturned(), minIndexedBagSize) : new IndividualDecisionRequestContext(mergeIntoNewMap(namedAttributeLayers),
+				request.getExtraContentsByCategory(), request.isApplicablePolicyIdListReturned());
+		if (timingRecorder != null)
+		{
+			evalCtx.putListener(EvaluationTimingListener.class, timingRecorder);
+		}
+
+		if (attributeResolutionBatch != null)
+		{
+			evalCtx.putListener(AttributeResolutionBatch.class, attributeResolutionBatch);
+		}
+
+		return evalCtx;
+	}
+
 	protected final EvaluationContext newEvaluationContext(final PdpDecisionRequest request, final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes)
 	{
-		final Map<AttributeFQN, AttributeBag<?>> mergedNamedAttributes = reqAndPdpIssuedAttributesMerger.merge(pdpIssuedAttributes, request.getNamedAttributes());
-		return new IndividualDecisionRequestContext(mergedNamedAttributes, request.getExtraContentsByCategory(), request.isApplicablePolicyIdListReturned());
+		return newEvaluationContext(request, pdpIssuedAttributes, null);
+	}
+
+	private PdpDecisionResult evaluate(final EvaluationContext evalCtx)
+	{
+		if (timingRecorder == null)
+		{
+			return rootPolicyEvaluator.findAndEvaluate(evalCtx);
+		}
+
+		final long startTime = System.nanoTime();
+		try
+		{
+			return rootPolicyEvaluator.findAndEvaluate(evalCtx);
+		}
+		finally
+		{
+			timingRecorder.decisionEvaluated(System.nanoTime() - startTime);
+		}
 	}
 
 	/**
@@ -306,7 +440,7 @@ public abstract class IndividualDecisionRequestEvaluator
 	 */
 	protected final PdpDecisionResult evaluateReusingContext(final EvaluationContext evalCtx)
 	{
-		return rootPolicyEvaluator.findAndEvaluate(evalCtx);
+		return evaluate(evalCtx);
 	}
 
 	/**
@@ -321,11 +455,31 @@ public abstract class IndividualDecisionRequestEvaluator
 	 * @return the evaluation result.
 	 */
 	protected final PdpDecisionResult evaluateInNewContext(final PdpDecisionRequest request, final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes)
+	{
+		return evaluateInNewContext(request, pdpIssuedAttributes, null);
+	}
+
+	/**
+	 * <p>
+	 * Evaluate an Individual Decision Request of a Multiple Decision Request, from which a new request context is created to evaluate the request, sharing the attributes resolved by Attribute
+	 * Provider modules with the other Individual Decision Requests
+	 * </p>
+	 *
+	 * @param request
+	 *            a non-null {@link PdpDecisionRequest} object.
+	 * @param pdpIssuedAttributes
+	 *            a {@link java.util.Map} of PDP-issued attributes including at least the standard environment attributes: current-time, current-date, current-dateTime.
+	 * @param attributeResolutionBatch
+	 *            attributes shared with the other Individual Decision Requests (created by {@link #newAttributeResolutionBatch(int)}); null if none
+	 * @return the evaluation result.
+	 */
+	protected final PdpDecisionResult evaluateInNewContext(final PdpDecisionRequest request, final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes,
+			final AttributeResolutionBatch attributeResolutionBatch)
 	{
 		assert request != null;
 		LOGGER.debug("Evaluating Individual Decision Request: {}", request);
-		final EvaluationContext evalCtx = newEvaluationContext(request, pdpIssuedAttributes);
-		return rootPolicyEvaluator.findAndEvaluate(evalCtx);
+		final EvaluationContext evalCtx = newEvaluationContext(request, pdpIssuedAttributes, attributeResolutionBatch);
+		return evaluate(evalCtx);
 	}
 
 	/**
@@ -0,0 +1,646 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+
+/**
+ * Streaming (pull) tokenizer of JSON text (RFC 7159), reading one token at a time from a character stream, without building any tree of the document. Only the structure of the JSON text is
+ * validated; numbers are returned in their lexical form, for the caller to parse them according to the expected type.
+ * <p>
+ * Not thread-safe.
+ *
+ * @version $Id: $
+ */
+final class JsonStreamReader
+{
+	/**
+	 * JSON token
+	 */
+	enum Token
+	{
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	/*
+	 * Lexical scopes, in the stack of nested objects/arrays
+	 */
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_OBJECT = 2;
+	private static final int DANGLING_NAME = 3;
+	private static final int NONEMPTY_OBJECT = 4;
+	private static final int EMPTY_ARRAY = 5;
+	private static final int NONEMPTY_ARRAY = 6;
+
+	/*
+	 * Maximum nesting depth of objects/arrays, to prevent stack exhaustion by the caller (e.g. when skipping values)
+	 */
+	private static final int MAX_DEPTH = 64;
+
+	private final Reader reader;
+	private final char[] buffer = new char[4096];
+	private int pos = 0;
+	private int limit = 0;
+	private int lineNumber = 1;
+
+	private int[] scopes = new int[16];
+	private int depth = 1;
+
+	private Token peeked = null;
+	/*
+	 * Text of the peeked token if NAME, STRING, NUMBER or BOOLEAN
+	 */
+	private String peekedText = null;
+
+	private final StringBuilder textBuilder = new StringBuilder();
+
+	/**
+	 * Creates tokenizer
+	 *
+	 * @param reader
+	 *            JSON text (not closed by this tokenizer)
+	 */
+	JsonStreamReader(final Reader reader)
+	{
+		assert reader != null;
+		this.reader = reader;
+		this.scopes[0] = EMPTY_DOCUMENT;
+	}
+
+	/**
+	 * Get the current line number, for error messages
+	 *
+	 * @return line number (starting at 1)
+	 */
+	int getLineNumber()
+	{
+		return lineNumber;
+	}
+
+	/**
+	 * Creates syntax error
+	 *
+	 * @param message
+	 *            error message
+	 * @return syntax-error exception with the current line number in the message
+	 */
+	IndeterminateEvaluationException newSyntaxError(final String message)
+	{
+		return new IndeterminateEvaluationException("Invalid JSON (line " + lineNumber + "): " + message, StatusHelper.STATUS_SYNTAX_ERROR);
+	}
+
+	private boolean fillBuffer() throws IOException
+	{
+		final int count = reader.read(buffer, 0, buffer.length);
+		if (count <= 0)
+		{
+			pos = 0;
+			limit = 0;
+			return false;
+		}
+
+		pos = 0;
+		limit = count;
+		return true;
+	}
+
+	/*
+	 * Returns the next non-whitespace character, or -1 if end of input
+	 */
+	private int nextNonWhitespace() throws IOException
+	{
+		while (pos < limit || fillBuffer())
+		{
+			final char c = buffer[pos++];
+			switch (c)
+			{
+				case '\n':
+					lineNumber++;
+					break;
+				case ' ':
+				case '\t':
+				case '\r':
+					break;
+				default:
+					return c;
+			}
+		}
+
+		return -1;
+	}
+
+	private int nextChar() throws IOException, IndeterminateEvaluationException
+	{
+		if (pos == limit && !fillBuffer())
+		{
+			throw newSyntaxError("unexpected end of input");
+		}
+
+		return buffer[pos++];
+	}
+
+	private void push(final int scope) throws IndeterminateEvaluationException
+	{
+		if (depth == MAX_DEPTH)
+		{
+			throw newSyntaxError("too many nested objects/arrays (max: " + MAX_DEPTH + ")");
+		}
+
+		if (depth == scopes.length)
+		{
+			scopes = Arrays.copyOf(scopes, depth * 2);
+		}
+
+		scopes[depth++] = scope;
+	}
+
+	/**
+	 * Get the type of the next token without consuming it
+	 *
+	 * @return next token type
+	 * @throws IOException
+	 *             error reading the input
+	 * @throws IndeterminateEvaluationException
+	 *             invalid JSON (syntax-error)
+	 */
+	Token peek() throws IOException, IndeterminateEvaluationException
+	{
+		if (peeked == null)
+		{
+			peeked = doPeek();
+		}
+
+		return peeked;
+	}
+
+	private Token doPeek() throws IOException, IndeterminateEvaluationException
+	{
+		final int scope = scopes[depth - 1];
+		int c;
+		switch (scope)
+		{
+			case EMPTY_ARRAY:
+				scopes[depth - 1] = NONEMPTY_ARRAY;
+				c = nextNonWhitespace();
+				if (c == ']')
+				{
+					depth--;
+					return Token.END_ARRAY;
+				}
+
+				return readValue(c);
+			case NONEMPTY_ARRAY:
+				c = nextNonWhitespace();
+				if (c == ']')
+				{
+					depth--;
+					return Token.END_ARRAY;
+				}
+
+				if (c != ',')
+				{
+					throw newSyntaxError("expected ',' or ']' in array");
+				}
+
+				return readValue(nextNonWhitespace());
+			case EMPTY_OBJECT:
+			case NONEMPTY_OBJECT:
+				c = nextNonWhitespace();
+				if (c == '}')
+				{
+					depth--;
+					return Token.END_OBJECT;
+				}
+
+				if (scope == NONEMPTY_OBJECT)
+				{
+					if (c != ',')
+					{
+						throw newSyntaxError("expected ',' or '}' in object");
+					}
+
+					c = nextNonWhitespace();
+				}
+
+				if (c != '"')
+				{
+					throw newSyntaxError("expected member name in object");
+				}
+
+				peekedText = readString();
+				scopes[depth - 1] = DANGLING_NAME;
+				return Token.NAME;
+			case DANGLING_NAME:
+				if (nextNonWhitespace() != ':')
+				{
+					throw newSyntaxError("expected ':' after member name");
+				}
+
+				scopes[depth - 1] = NONEMPTY_OBJECT;
+				return readValue(nextNonWhitespace());
+			case EMPTY_DOCUMENT:
+				scopes[depth - 1] = NONEMPTY_DOCUMENT;
+				c = nextNonWhitespace();
+				// byte order mark
+				return readValue(c == '\uFEFF' ? nextNonWhitespace() : c);
+			default:
+				// NONEMPTY_DOCUMENT
+				if (nextNonWhitespace() != -1)
+				{
+					throw newSyntaxError("unexpected content after end of document");
+				}
+
+				return Token.END_DOCUMENT;
+		}
+	}
+
+	private Token readValue(final int c) throws IOException, IndeterminateEvaluationException
+	{
+		switch (c)
+		{
+			case '{':
+				push(EMPTY_OBJECT);
+				return Token.BEGIN_OBJECT;
+			case '[':
+				push(EMPTY_ARRAY);
+				return Token.BEGIN_ARRAY;
+			case '"':
+				peekedText = readString();
+				return Token.STRING;
+			case 't':
+				readLiteral("rue");
+				peekedText = "true";
+				return Token.BOOLEAN;
+			case 'f':
+				readLiteral("alse");
+				peekedText = "false";
+				return Token.BOOLEAN;
+			case 'n':
+				readLiteral("ull");
+				return Token.NULL;
+			case -1:
+				throw newSyntaxError("unexpected end of input");
+			default:
+				if (c == '-' || c >= '0' && c <= '9')
+				{
+					peekedText = readNumber((char) c);
+					return Token.NUMBER;
+				}
+
+				throw newSyntaxError("unexpected character '" + (char) c + "'");
+		}
+	}
+
+	private void readLiteral(final String expectedRemainder) throws IOException, IndeterminateEvaluationException
+	{
+		for (int i = 0; i < expectedRemainder.length(); i++)
+		{
+			if (nextChar() != expectedRemainder.charAt(i))
+			{
+				throw newSyntaxError("invalid literal (expected: true, false or null)");
+			}
+		}
+	}
+
+	/*
+	 * Reads the rest of a string (after the opening quote)
+	 */
+	private String readString() throws IOException, IndeterminateEvaluationException
+	{
+		/*
+		 * Fast path: no escape sequence before the closing quote in the buffer
+		 */
+		for (int i = pos; i < limit; i++)
+		{
+			final char c = buffer[i];
+			if (c == '"')
+			{
+				final String result = new String(buffer, pos, i - pos);
+				pos = i + 1;
+				return result;
+			}
+
+			if (c == '\\' || c < 0x20)
+			{
+				break;
+			}
+		}
+
+		textBuilder.setLength(0);
+		while (true)
+		{
+			final int c = nextChar();
+			if (c == '"')
+			{
+				return textBuilder.toString();
+			}
+
+			if (c < 0x20)
+			{
+				throw newSyntaxError("unescaped control character in string");
+			}
+
+			if (c != '\\')
+			{
+				textBuilder.append((char) c);
+				continue;
+			}
+
+			final int escaped = nextChar();
+			switch (escaped)
+			{
+				case '"':
+				case '\\':
+				case '/':
+					textBuilder.append((char) escaped);
+					break;
+				case 'b':
+					textBuilder.append('\b');
+					break;
+				case 'f':
+					textBuilder.append('\f');
+					break;
+				case 'n':
+					textBuilder.append('\n');
+					break;
+				case 'r':
+					textBuilder.append('\r');
+					break;
+				case 't':
+					textBuilder.append('\t');
+					break;
+				case 'u':
+					final char codeUnit = readEscapedCodeUnit();
+					if (Character.isHighSurrogate(codeUnit))
+					{
+						/*
+						 * Character outside the Basic Multilingual Plane: the high surrogate must be followed by an escaped low surrogate
+						 */
+						if (nextChar() != '\\' || nextChar() != 'u')
+						{
+							throw newSyntaxError("unpaired surrogate in \\u escape sequence in string");
+						}
+
+						final char lowSurrogate = readEscapedCodeUnit();
+						if (!Character.isLowSurrogate(lowSurrogate))
+						{
+							throw newSyntaxError("unpaired surrogate in \\u escape sequence in string");
+						}
+
+						textBuilder.append(codeUnit).append(lowSurrogate);
+					}
+					else if (Character.isLowSurrogate(codeUnit))
+					{
+						throw newSyntaxError("unpaired surrogate in \\u escape sequence in string");
+					}
+					else
+					{
+						textBuilder.append(codeUnit);
+					}
+
+					break;
+				default:
+					throw newSyntaxError("invalid escape sequence in string: \\" + (char) escaped);
+			}
+		}
+	}
+
+	/*
+	 * Reads the 4 hexadecimal digits of a Unicode escape sequence in string (after the backslash and 'u')
+	 */
+	private char readEscapedCodeUnit() throws IOException, IndeterminateEvaluationException
+	{
+		int codeUnit = 0;
+		for (int i = 0; i < 4; i++)
+		{
+			final int digit = Character.digit(nextChar(), 16);
+			if (digit < 0)
+			{
+				throw newSyntaxError("invalid \\u escape sequence in string");
+			}
+
+			codeUnit = (codeUnit << 4) + digit;
+		}
+
+		return (char) codeUnit;
+	}
+
+	private int peekChar() throws IOException
+	{
+		return pos < limit || fillBuffer() ? buffer[pos] : -1;
+	}
+
+	private void readDigits() throws IOException, IndeterminateEvaluationException
+	{
+		int c = peekChar();
+		if (c < '0' || c > '9')
+		{
+			throw newSyntaxError("invalid number");
+		}
+
+		do
+		{
+			textBuilder.append((char) c);
+			pos++;
+			c = peekChar();
+		}
+		while (c >= '0' && c <= '9');
+	}
+
+	/*
+	 * Reads a number according to the JSON grammar: -? (0 | [1-9][0-9]*) (\.[0-9]+)? ([eE][+-]?[0-9]+)?
+	 */
+	private String readNumber(final char firstChar) throws IOException, IndeterminateEvaluationException
+	{
+		textBuilder.setLength(0);
+		if (firstChar == '-')
+		{
+			textBuilder.append('-');
+		}
+		else
+		{
+			// first digit back to the buffer (always possible since just read from it)
+			pos--;
+		}
+
+		if (peekChar() == '0')
+		{
+			textBuilder.append('0');
+			pos++;
+		}
+		else
+		{
+			readDigits();
+		}
+
+		int c = peekChar();
+		if (c == '.')
+		{
+			textBuilder.append('.');
+			pos++;
+			readDigits();
+			c = peekChar();
+		}
+
+		if (c == 'e' || c == 'E')
+		{
+			textBuilder.append((char) c);
+			pos++;
+			c = peekChar();
+			if (c == '+' || c == '-')
+			{
+				textBuilder.append((char) c);
+				pos++;
+			}
+
+			readDigits();
+		}
+
+		return textBuilder.toString();
+	}
+
+	private String consume(final Token expected) throws IOException, IndeterminateEvaluationException
+	{
+		final Token token = peek();
+		if (token != expected)
+		{
+			throw newSyntaxError("unexpected " + token + " (expected: " + expected + ")");
+		}
+
+		final String text = peekedText;
+		peeked = null;
+		peekedText = null;
+		return text;
+	}
+
+	void beginObject() throws IOException, IndeterminateEvaluationException
+	{
+		consume(Token.BEGIN_OBJECT);
+	}
+
+	void endObject() throws IOException, IndeterminateEvaluationException
+	{
+		consume(Token.END_OBJECT);
+	}
+
+	void beginArray() throws IOException, IndeterminateEvaluationException
+	{
+		consume(Token.BEGIN_ARRAY);
+	}
+
+	void endArray() throws IOException, IndeterminateEvaluationException
+	{
+		consume(Token.END_ARRAY);
+	}
+
+	void endDocument() throws IOException, IndeterminateEvaluationException
+	{
+		consume(Token.END_DOCUMENT);
+	}
+
+	/**
+	 * Checks whether the current object/array has more members/elements
+	 *
+	 * @return false iff the next token is the end of the current object/array
+	 * @throws IOException
+	 *             error reading the input
+	 * @throws IndeterminateEvaluationException
+	 *             invalid JSON (syntax-error)
+	 */
+	boolean hasNext() throws IOException, IndeterminateEvaluationException
+	{
+		final Token token = peek();
+		return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+	}
+
+	String nextName() throws IOException, IndeterminateEvaluationException
+	{
+		return consume(Token.NAME);
+	}
+
+	String nextString() throws IOException, IndeterminateEvaluationException
+	{
+		return consume(Token.STRING);
+	}
+
+	boolean nextBoolean() throws IOException, IndeterminateEvaluationException
+	{
+		return consume(Token.BOOLEAN).equals("true");
+	}
+
+	/**
+	 * Consumes a string, number or boolean
+	 *
+	 * @return the string value, or lexical form of the number/boolean
+	 * @throws IOException
+	 *             error reading the input
+	 * @throws IndeterminateEvaluationException
+	 *             invalid JSON or next token is not a string, number or boolean (syntax-error)
+	 */
+	String nextScalar() throws IOException, IndeterminateEvaluationException
+	{
+		final Token token = peek();
+		if (token != Token.STRING && token != Token.NUMBER && token != Token.BOOLEAN)
+		{
+			throw newSyntaxError("unexpected " + token + " (expected: string, number or boolean)");
+		}
+
+		return consume(token);
+	}
+
+	/**
+	 * Skips the next value, including nested objects/arrays
+	 *
+	 * @throws IOException
+	 *             error reading the input
+	 * @throws IndeterminateEvaluationException
+	 *             invalid JSON (syntax-error)
+	 */
+	void skipValue() throws IOException, IndeterminateEvaluationException
+	{
+		int nesting = 0;
+		do
+		{
+			final Token token = peek();
+			switch (token)
+			{
+				case BEGIN_OBJECT:
+				case BEGIN_ARRAY:
+					nesting++;
+					break;
+				case END_OBJECT:
+				case END_ARRAY:
+					nesting--;
+					break;
+				case END_DOCUMENT:
+					throw newSyntaxError("unexpected end of document");
+				default:
+					break;
+			}
+
+			consume(token);
+		}
+		while (nesting > 0);
+	}
+}
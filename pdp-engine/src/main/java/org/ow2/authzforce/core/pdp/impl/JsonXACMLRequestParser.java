@@ -0,0 +1,934 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.dom.DOMSource;
+
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.XdmNode;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attribute;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeValueType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attributes;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.AttributeSources;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.ImmutablePdpDecisionRequest;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.IndividualXACMLRequest;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.DatatypeFactory;
+import org.ow2.authzforce.core.pdp.api.value.DatatypeFactoryRegistry;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Streaming parser of XACML 3.0 Requests in JSON, as defined by the JSON Profile of XACML 3.0, that creates the Individual Decision Requests directly from the JSON input with a streaming tokenizer,
+ * i.e. without converting the Request to a JAXB (XACML/XML) Request or any other object tree first. The attribute values are parsed with the datatype factories once per Category object, therefore
+ * shared by all the Individual Decision Requests that include this Category object.
+ * <p>
+ * Supported features of the JSON Profile:
+ * <ul>
+ * <li>Category objects in the 'Category' member, or in the shorthand members 'AccessSubject', 'Action', 'Resource', 'Environment', 'RecipientSubject', 'IntermediarySubject', 'Codebase' and
+ * 'RequestingMachine' (CategoryId optional); shorthand CategoryIds such as 'access-subject' or 'resource'.</li>
+ * <li>Shorthand DataTypes such as 'string' or 'dayTimeDuration'; DataType inferred from the JSON type of the Value if missing.</li>
+ * <li>Multiple Decision Profile: repeated categories (one Individual Decision Request per combination of Category objects with different CategoryIds) and MultiRequests (one Individual Decision
+ * Request per RequestReference).</li>
+ * <li>Content as a string of XML, parsed only if {@code requireContentForXPath}, else ignored.</li>
+ * </ul>
+ * Not supported: CombinedDecision=true, Values that are JSON objects (XPathExpression), base64-encoded Content.
+ * <p>
+ * Attributes to be included in the Result (IncludeInResult=true) are returned as JAXB {@link Attributes} with each Individual Decision Request, e.g. for {@link JsonXACMLResponseWriter}.
+ * <p>
+ * Thread-safe.
+ *
+ * @version $Id: $
+ */
+public final class JsonXACMLRequestParser
+{
+	private static final IllegalArgumentException NULL_DATATYPE_FACTORY_REGISTRY_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined attribute datatype registry");
+	private static final IllegalArgumentException NULL_XML_PROCESSOR_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined XML processor (required for Content elements)");
+
+	private static final String XSD_STRING = "http://www.w3.org/2001/XMLSchema#string";
+	private static final String XSD_BOOLEAN = "http://www.w3.org/2001/XMLSchema#boolean";
+	private static final String XSD_INTEGER = "http://www.w3.org/2001/XMLSchema#integer";
+	private static final String XSD_DOUBLE = "http://www.w3.org/2001/XMLSchema#double";
+
+	/*
+	 * CategoryIds of the shorthand members of the Request object
+	 */
+	private static final Map<String, String> CATEGORY_IDS_BY_MEMBER_NAME = ImmutableMap.<String, String> builder()
+			.put("AccessSubject", "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject").put("Action", "urn:oasis:names:tc:xacml:3.0:attribute-category:action")
+			.put("Resource", "urn:oasis:names:tc:xacml:3.0:attribute-category:resource").put("Environment", "urn:oasis:names:tc:xacml:3.0:attribute-category:environment")
+			.put("RecipientSubject", "urn:oasis:names:tc:xacml:1.0:subject-category:recipient-subject")
+			.put("IntermediarySubject", "urn:oasis:names:tc:xacml:1.0:subject-category:intermediary-subject").put("Codebase", "urn:oasis:names:tc:xacml:1.0:subject-category:codebase")
+			.put("RequestingMachine", "urn:oasis:names:tc:xacml:1.0:subject-category:requesting-machine").build();
+
+	/*
+	 * Shorthand CategoryIds
+	 */
+	private static final Map<String, String> CATEGORY_IDS_BY_SHORTHAND = ImmutableMap.<String, String> builder()
+			.put("access-subject", "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject").put("action", "urn:oasis:names:tc:xacml:3.0:attribute-category:action")
+			.put("resource", "urn:oasis:names:tc:xacml:3.0:attribute-category:resource").put("environment", "urn:oasis:names:tc:xacml:3.0:attribute-category:environment")
+			.put("recipient-subject", "urn:oasis:names:tc:xacml:1.0:subject-category:recipient-subject")
+			.put("intermediary-subject", "urn:oasis:names:tc:xacml:1.0:subject-category:intermediary-subject").put("codebase", "urn:oasis:names:tc:xacml:1.0:subject-category:codebase")
+			.put("requesting-machine", "urn:oasis:names:tc:xacml:1.0:subject-category:requesting-machine").build();
+
+	/*
+	 * Shorthand DataTypes
+	 */
+	private static final Map<String, String> DATATYPE_IDS_BY_SHORTHAND = ImmutableMap.<String, String> builder().put("string", XSD_STRING).put("boolean", XSD_BOOLEAN)
+			.put("integer", XSD_INTEGER).put("double", XSD_DOUBLE).put("time", "http://www.w3.org/2001/XMLSchema#time").put("date", "http://www.w3.org/2001/XMLSchema#date")
+			.put("dateTime", "http://www.w3.org/2001/XMLSchema#dateTime").put("dayTimeDuration", "http://www.w3.org/2001/XMLSchema#dayTimeDuration")
+			.put("yearMonthDuration", "http://www.w3.org/2001/XMLSchema#yearMonthDuration").put("anyURI", "http://www.w3.org/2001/XMLSchema#anyURI")
+			.put("hexBinary", "http://www.w3.org/2001/XMLSchema#hexBinary").put("base64Binary", "http://www.w3.org/2001/XMLSchema#base64Binary")
+			.put("rfc822Name", "urn:oasis:names:tc:xacml:1.0:data-type:rfc822Name").put("x500Name", "urn:oasis:names:tc:xacml:1.0:data-type:x500Name")
+			.put("ipAddress", "urn:oasis:names:tc:xacml:2.0:data-type:ipAddress").put("dnsName", "urn:oasis:names:tc:xacml:2.0:data-type:dnsName")
+			.put("xpathExpression", "urn:oasis:names:tc:xacml:3.0:data-type:xpathExpression").build();
+
+	private static final DocumentBuilderFactory DOM_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+	static
+	{
+		DOM_BUILDER_FACTORY.setNamespaceAware(true);
+		try
+		{
+			/*
+			 * Prevent XXE attacks
+			 */
+			DOM_BUILDER_FACTORY.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			DOM_BUILDER_FACTORY.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+		}
+		catch (final ParserConfigurationException e)
+		{
+			throw new RuntimeException("Failed to configure XML parser for XACML Request Content", e);
+		}
+	}
+
+	/*
+	 * Attribute object, before the Category is known (CategoryId may come after the Attribute member)
+	 */
+	private static final class JsonAttribute
+	{
+		private final String attributeId;
+		private final String issuer;
+		private final String datatypeId;
+		private final boolean includeInResult;
+		private final List<String> lexicalValues;
+
+		private JsonAttribute(final String attributeId, final String issuer, final String datatypeId, final boolean includeInResult, final List<String> lexicalValues)
+		{
+			this.attributeId = attributeId;
+			this.issuer = issuer;
+			this.datatypeId = datatypeId;
+			this.includeInResult = includeInResult;
+			this.lexicalValues = lexicalValues;
+		}
+	}
+
+	/*
+	 * Values of an attribute in a Category object, as parsed so far
+	 */
+	private static final class AttributeValues<AV extends AttributeValue>
+	{
+		private final DatatypeFactory<AV> datatypeFactory;
+		private final List<AV> values = new ArrayList<>();
+
+		private AttributeValues(final DatatypeFactory<AV> datatypeFactory)
+		{
+			this.datatypeFactory = datatypeFactory;
+		}
+
+		private void add(final String text, final XPathCompiler xPathCompiler) throws IllegalArgumentException
+		{
+			values.add(datatypeFactory.getInstance(Collections.<Serializable> singletonList(text), Collections.<QName, String> emptyMap(), xPathCompiler));
+		}
+
+		private AttributeBag<AV> toBag()
+		{
+			return Bags.newAttributeBag(datatypeFactory.getDatatype(), values, AttributeSources.REQUEST);
+		}
+	}
+
+	private static <AV extends AttributeValue> AttributeValues<AV> newAttributeValues(final DatatypeFactory<AV> datatypeFactory)
+	{
+		return new AttributeValues<>(datatypeFactory);
+	}
+
+	/*
+	 * Category object with parsed attribute values
+	 */
+	private static final class CategoryAttributes
+	{
+		private final String categoryId;
+		private final String id;
+		private final Map<AttributeFQN, AttributeBag<?>> namedAttributes;
+		private final XdmNode content;
+		private final Attributes attributesToIncludeInResult;
+
+		private CategoryAttributes(final String categoryId, final String id, final Map<AttributeFQN, AttributeBag<?>> namedAttributes, final XdmNode content,
+				final Attributes attributesToIncludeInResult)
+		{
+			this.categoryId = categoryId;
+			this.id = id;
+			this.namedAttributes = namedAttributes;
+			this.content = content;
+			this.attributesToIncludeInResult = attributesToIncludeInResult;
+		}
+	}
+
+	private static IndeterminateEvaluationException newSyntaxError(final JsonStreamReader reader, final String message)
+	{
+		return reader.newSyntaxError("Invalid XACML Request: " + message);
+	}
+
+	/*
+	 * DataType inferred from the JSON type of a Value (JSON Profile, section 3.3.1), i.e. string, boolean, integer (number without fractional part or exponent) or double (other numbers)
+	 */
+	private static String inferDatatype(final JsonStreamReader reader, final JsonStreamReader.Token token, final String lexicalValue) throws IndeterminateEvaluationException
+	{
+		switch (token)
+		{
+			case STRING:
+				return XSD_STRING;
+			case BOOLEAN:
+				return XSD_BOOLEAN;
+			case NUMBER:
+				for (int i = 0; i < lexicalValue.length(); i++)
+				{
+					final char c = lexicalValue.charAt(i);
+					if (c == '.' || c == 'e' || c == 'E')
+					{
+						return XSD_DOUBLE;
+					}
+				}
+
+				return XSD_INTEGER;
+			default:
+				throw newSyntaxError(reader, "unsupported attribute Value: " + token + " (only strings, numbers and booleans are supported)");
+		}
+	}
+
+	private static String mergeInferredDatatypes(final JsonStreamReader reader, final String previousDatatype, final String newDatatype) throws IndeterminateEvaluationException
+	{
+		if (previousDatatype == null || previousDatatype.equals(newDatatype))
+		{
+			return newDatatype;
+		}
+
+		/*
+		 * Array of integers and doubles -> doubles
+		 */
+		if ((previousDatatype.equals(XSD_INTEGER) || previousDatatype.equals(XSD_DOUBLE)) && (newDatatype.equals(XSD_INTEGER) || newDatatype.equals(XSD_DOUBLE)))
+		{
+			return XSD_DOUBLE;
+		}
+
+		throw newSyntaxError(reader, "Value array with different JSON types and no DataType");
+	}
+
+	private final DatatypeFactoryRegistry datatypeFactoryRegistry;
+	private final boolean allowAttributeDuplicates;
+	private final boolean requireContentForXPath;
+	private final Processor xmlProcessor;
+	private final int maxIndividualDecisionRequests;
+
+	/**
+	 * Creates parser
+	 *
+	 * @param datatypeFactoryRegistry
+	 *            attribute datatype registry
+	 * @param allowAttributeDuplicates
+	 *            true iff duplicate Attribute objects (with same metadata) in a Category object (for multi-valued attributes) must be allowed
+	 * @param requireContentForXPath
+	 *            true iff Content members must be parsed, else ignored
+	 * @param xmlProcessor
+	 *            XML processor for parsing Content members iff {@code requireContentForXPath}
+	 * @param maxIndividualDecisionRequests
+	 *            maximum number of Individual Decision Requests in a Multiple Decision Request (checked before any of them is created); negative for no limit
+	 * @throws IllegalArgumentException
+	 *             if {@code datatypeFactoryRegistry == null || (requireContentForXPath && xmlProcessor == null)}
+	 */
+	public JsonXACMLRequestParser(final DatatypeFactoryRegistry datatypeFactoryRegistry, final boolean allowAttributeDuplicates, final boolean requireContentForXPath, final Processor xmlProcessor,
+			final int maxIndividualDecisionRequests) throws IllegalArgumentException
+	{
+		if (datatypeFactoryRegistry == null)
+		{
+			throw NULL_DATATYPE_FACTORY_REGISTRY_ARGUMENT_EXCEPTION;
+		}
+
+		if (requireContentForXPath && xmlProcessor == null)
+		{
+			throw NULL_XML_PROCESSOR_ARGUMENT_EXCEPTION;
+		}
+
+		this.datatypeFactoryRegistry = datatypeFactoryRegistry;
+		this.allowAttributeDuplicates = allowAttributeDuplicates;
+		this.requireContentForXPath = requireContentForXPath;
+		this.xmlProcessor = xmlProcessor;
+		this.maxIndividualDecisionRequests = maxIndividualDecisionRequests;
+	}
+
+	/**
+	 * Parses a XACML Request in JSON
+	 *
+	 * @param input
+	 *            XACML/JSON Request in UTF-8 (not closed by this method)
+	 * @param requestBuilder
+	 *            builder of the decision requests, e.g. from {@link BasePdpEngine#newRequestBuilder(int, int)} (reset before each Individual Decision Request)
+	 * @return the Individual Decision Requests, with the attributes to be included in the Result of each
+	 * @throws IndeterminateEvaluationException
+	 *             if the input is not a valid XACML/JSON Request or uses an unsupported feature (status code: syntax-error); or if there are more than {@code maxIndividualDecisionRequests}
+	 *             Individual Decision Requests (status code: processing-error)
+	 */
+	public List<IndividualXACMLRequest> parse(final InputStream input, final PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest> requestBuilder) throws IndeterminateEvaluationException
+	{
+		assert input != null && requestBuilder != null;
+
+		final JsonStreamReader reader = new JsonStreamReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+		try
+		{
+			reader.beginObject();
+			List<IndividualXACMLRequest> individualRequests = null;
+			while (reader.hasNext())
+			{
+				final String memberName = reader.nextName();
+				if (!memberName.equals("Request") || individualRequests != null)
+				{
+					throw newSyntaxError(reader, "unexpected member '" + memberName + "' (expected: single 'Request' member)");
+				}
+
+				individualRequests = parseRequest(reader, requestBuilder);
+			}
+
+			reader.endObject();
+			reader.endDocument();
+			if (individualRequests == null)
+			{
+				throw newSyntaxError(reader, "missing 'Request' member");
+			}
+
+			return individualRequests;
+		}
+		catch (final IOException e)
+		{
+			throw new IndeterminateEvaluationException("Invalid XACML Request: error reading JSON input", StatusHelper.STATUS_SYNTAX_ERROR, e);
+		}
+	}
+
+	/**
+	 * Parses a XACML Request in JSON from the remaining bytes of a buffer (the buffer's position is not changed)
+	 *
+	 * @param input
+	 *            XACML/JSON Request in UTF-8
+	 * @param requestBuilder
+	 *            builder of the decision requests, e.g. from {@link BasePdpEngine#newRequestBuilder(int, int)} (reset before each Individual Decision Request)
+	 * @return the Individual Decision Requests, with the attributes to be included in the Result of each
+	 * @throws IndeterminateEvaluationException
+	 *             if the input is not a valid XACML/JSON Request or uses an unsupported feature (status code: syntax-error); or if there are more than {@code maxIndividualDecisionRequests}
+	 *             Individual Decision Requests (status code: processing-error)
+	 */
+	public List<IndividualXACMLRequest> parse(final ByteBuffer input, final PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest> requestBuilder) throws IndeterminateEvaluationException
+	{
+		assert input != null;
+
+		final InputStream inputStream;
+		if (input.hasArray())
+		{
+			inputStream = new ByteArrayInputStream(input.array(), input.arrayOffset() + input.position(), input.remaining());
+		}
+		else
+		{
+			final byte[] bytes = new byte[input.remaining()];
+			input.duplicate().get(bytes);
+			inputStream = new ByteArrayInputStream(bytes);
+		}
+
+		return parse(inputStream, requestBuilder);
+	}
+
+	private List<IndividualXACMLRequest> parseRequest(final JsonStreamReader reader, final PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest> requestBuilder) throws IOException,
+			IndeterminateEvaluationException
+	{
+		final XPathCompiler xPathCompiler = requireContentForXPath ? xmlProcessor.newXPathCompiler() : null;
+		boolean returnPolicyIdList = false;
+		final List<CategoryAttributes> categories = new ArrayList<>();
+		List<List<String>> requestReferences = null;
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			final String memberName = reader.nextName();
+			switch (memberName)
+			{
+				case "ReturnPolicyIdList":
+					returnPolicyIdList = reader.nextBoolean();
+					break;
+				case "CombinedDecision":
+					if (reader.nextBoolean())
+					{
+						throw newSyntaxError(reader, "unsupported feature: CombinedDecision=true");
+					}
+					break;
+				case "XPathVersion":
+					/*
+					 * The XPath version of the XPath compiler is the one of the XML processor
+					 */
+					reader.nextString();
+					break;
+				case "Category":
+					parseCategories(reader, null, categories, xPathCompiler);
+					break;
+				case "MultiRequests":
+					requestReferences = parseMultiRequests(reader);
+					break;
+				default:
+					final String shorthandCategoryId = CATEGORY_IDS_BY_MEMBER_NAME.get(memberName);
+					if (shorthandCategoryId == null)
+					{
+						throw newSyntaxError(reader, "unexpected member '" + memberName + "' in Request object");
+					}
+
+					parseCategories(reader, shorthandCategoryId, categories, xPathCompiler);
+			}
+		}
+
+		reader.endObject();
+		return requestReferences == null ? newRepeatedCategoriesIndividualRequests(reader, categories, returnPolicyIdList, requestBuilder) : newReferencedIndividualRequests(reader, categories,
+				requestReferences, returnPolicyIdList, requestBuilder);
+	}
+
+	/*
+	 * Parses a Category object or array of Category objects
+	 */
+	private void parseCategories(final JsonStreamReader reader, final String shorthandCategoryId, final List<CategoryAttributes> categories, final XPathCompiler xPathCompiler) throws IOException,
+			IndeterminateEvaluationException
+	{
+		if (reader.peek() != JsonStreamReader.Token.BEGIN_ARRAY)
+		{
+			categories.add(parseCategory(reader, shorthandCategoryId, xPathCompiler));
+			return;
+		}
+
+		reader.beginArray();
+		while (reader.hasNext())
+		{
+			categories.add(parseCategory(reader, shorthandCategoryId, xPathCompiler));
+		}
+
+		reader.endArray();
+	}
+
+	private CategoryAttributes parseCategory(final JsonStreamReader reader, final String shorthandCategoryId, final XPathCompiler xPathCompiler) throws IOException,
+			IndeterminateEvaluationException
+	{
+		String categoryId = shorthandCategoryId;
+		String id = null;
+		XdmNode content = null;
+		final List<JsonAttribute> jsonAttributes = new ArrayList<>();
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			final String memberName = reader.nextName();
+			switch (memberName)
+			{
+				case "CategoryId":
+					final String rawCategoryId = reader.nextString();
+					final String expandedCategoryId = CATEGORY_IDS_BY_SHORTHAND.getOrDefault(rawCategoryId, rawCategoryId);
+					if (shorthandCategoryId != null && !shorthandCategoryId.equals(expandedCategoryId))
+					{
+						throw newSyntaxError(reader, "CategoryId '" + rawCategoryId + "' does not match the enclosing shorthand category (" + shorthandCategoryId + ")");
+					}
+
+					categoryId = expandedCategoryId;
+					break;
+				case "Id":
+					id = reader.nextString();
+					break;
+				case "Content":
+					final String xml = reader.nextString();
+					if (requireContentForXPath)
+					{
+						content = parseContent(reader, xml);
+					}
+					break;
+				case "Attribute":
+					if (reader.peek() == JsonStreamReader.Token.BEGIN_ARRAY)
+					{
+						reader.beginArray();
+						while (reader.hasNext())
+						{
+							jsonAttributes.add(parseAttribute(reader));
+						}
+
+						reader.endArray();
+					}
+					else
+					{
+						jsonAttributes.add(parseAttribute(reader));
+					}
+					break;
+				default:
+					throw newSyntaxError(reader, "unexpected member '" + memberName + "' in Category object");
+			}
+		}
+
+		reader.endObject();
+		if (categoryId == null)
+		{
+			throw newSyntaxError(reader, "missing CategoryId in Category object");
+		}
+
+		/*
+		 * Values by attribute, in order of appearance
+		 */
+		final Map<AttributeFQN, AttributeValues<?>> attributeValuesByFQN = new LinkedHashMap<>();
+		List<Attribute> includedAttributes = null;
+		for (final JsonAttribute jsonAttribute : jsonAttributes)
+		{
+			final AttributeFQN attributeFQN = AttributeFQNs.newInstance(categoryId, Optional.ofNullable(jsonAttribute.issuer), jsonAttribute.attributeId);
+			AttributeValues<?> attributeValues = attributeValuesByFQN.get(attributeFQN);
+			if (attributeValues == null)
+			{
+				final DatatypeFactory<?> datatypeFactory = datatypeFactoryRegistry.getExtension(jsonAttribute.datatypeId);
+				if (datatypeFactory == null)
+				{
+					throw newSyntaxError(reader, "unsupported DataType of Attribute " + attributeFQN + ": " + jsonAttribute.datatypeId);
+				}
+
+				attributeValues = newAttributeValues(datatypeFactory);
+				attributeValuesByFQN.put(attributeFQN, attributeValues);
+			}
+			else if (!allowAttributeDuplicates)
+			{
+				throw newSyntaxError(reader, "duplicate Attribute found: " + attributeFQN + " (duplicate Attributes with same metadata are not allowed)");
+			}
+			else if (!attributeValues.datatypeFactory.getDatatype().getId().equals(jsonAttribute.datatypeId))
+			{
+				throw newSyntaxError(reader, "Values of Attribute " + attributeFQN + " with different DataTypes: " + attributeValues.datatypeFactory.getDatatype().getId() + ", "
+						+ jsonAttribute.datatypeId);
+			}
+
+			for (final String lexicalValue : jsonAttribute.lexicalValues)
+			{
+				try
+				{
+					attributeValues.add(lexicalValue, xPathCompiler);
+				}
+				catch (final IllegalArgumentException e)
+				{
+					throw new IndeterminateEvaluationException("Invalid XACML Request: invalid Value of Attribute " + attributeFQN + " for DataType " + jsonAttribute.datatypeId,
+							StatusHelper.STATUS_SYNTAX_ERROR, e);
+				}
+			}
+
+			if (jsonAttribute.includeInResult)
+			{
+				final List<AttributeValueType> includedValues = new ArrayList<>(jsonAttribute.lexicalValues.size());
+				for (final String lexicalValue : jsonAttribute.lexicalValues)
+				{
+					includedValues.add(new AttributeValueType(Collections.<Serializable> singletonList(lexicalValue), jsonAttribute.datatypeId, Collections.<QName, String> emptyMap()));
+				}
+
+				if (includedAttributes == null)
+				{
+					includedAttributes = new ArrayList<>();
+				}
+
+				includedAttributes.add(new Attribute(includedValues, jsonAttribute.attributeId, jsonAttribute.issuer, true));
+			}
+		}
+
+		final Map<AttributeFQN, AttributeBag<?>> namedAttributes = new LinkedHashMap<>(attributeValuesByFQN.size() * 4 / 3 + 1);
+		for (final Entry<AttributeFQN, AttributeValues<?>> attributeEntry : attributeValuesByFQN.entrySet())
+		{
+			namedAttributes.put(attributeEntry.getKey(), attributeEntry.getValue().toBag());
+		}
+
+		return new CategoryAttributes(categoryId, id, namedAttributes, content, includedAttributes == null ? null : new Attributes(null, includedAttributes, categoryId, null));
+	}
+
+	private static JsonAttribute parseAttribute(final JsonStreamReader reader) throws IOException, IndeterminateEvaluationException
+	{
+		String attributeId = null;
+		String issuer = null;
+		String datatypeId = null;
+		boolean includeInResult = false;
+		List<String> lexicalValues = null;
+		String inferredDatatypeId = null;
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			final String memberName = reader.nextName();
+			switch (memberName)
+			{
+				case "AttributeId":
+					attributeId = reader.nextString();
+					break;
+				case "Issuer":
+					issuer = reader.nextString();
+					break;
+				case "DataType":
+					final String rawDatatypeId = reader.nextString();
+					datatypeId = DATATYPE_IDS_BY_SHORTHAND.getOrDefault(rawDatatypeId, rawDatatypeId);
+					break;
+				case "IncludeInResult":
+					includeInResult = reader.nextBoolean();
+					break;
+				case "Value":
+					if (reader.peek() == JsonStreamReader.Token.BEGIN_ARRAY)
+					{
+						lexicalValues = new ArrayList<>();
+						reader.beginArray();
+						while (reader.hasNext())
+						{
+							final JsonStreamReader.Token token = reader.peek();
+							final String lexicalValue = reader.nextScalar();
+							inferredDatatypeId = mergeInferredDatatypes(reader, inferredDatatypeId, inferDatatype(reader, token, lexicalValue));
+							lexicalValues.add(lexicalValue);
+						}
+
+						reader.endArray();
+					}
+					else
+					{
+						final JsonStreamReader.Token token = reader.peek();
+						if (token != JsonStreamReader.Token.STRING && token != JsonStreamReader.Token.NUMBER && token != JsonStreamReader.Token.BOOLEAN)
+						{
+							throw newSyntaxError(reader, "unsupported attribute Value: " + token + " (only strings, numbers and booleans are supported)");
+						}
+
+						final String lexicalValue = reader.nextScalar();
+						inferredDatatypeId = inferDatatype(reader, token, lexicalValue);
+						lexicalValues = Collections.singletonList(lexicalValue);
+					}
+					break;
+				default:
+					throw newSyntaxError(reader, "unexpected member '" + memberName + "' in Attribute object");
+			}
+		}
+
+		reader.endObject();
+		if (attributeId == null)
+		{
+			throw newSyntaxError(reader, "missing AttributeId in Attribute object");
+		}
+
+		if (lexicalValues == null)
+		{
+			throw newSyntaxError(reader, "missing Value in Attribute object (AttributeId=" + attributeId + ")");
+		}
+
+		if (datatypeId == null)
+		{
+			// empty array -> default DataType
+			datatypeId = inferredDatatypeId == null ? XSD_STRING : inferredDatatypeId;
+		}
+
+		return new JsonAttribute(attributeId, issuer, datatypeId, includeInResult, lexicalValues);
+	}
+
+	/*
+	 * Parses the XML document in a Content member
+	 */
+	private XdmNode parseContent(final JsonStreamReader reader, final String xml) throws IndeterminateEvaluationException
+	{
+		final Document doc;
+		try
+		{
+			doc = DOM_BUILDER_FACTORY.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+		}
+		catch (final ParserConfigurationException e)
+		{
+			throw new RuntimeException("Failed to create XML parser for XACML Request Content", e);
+		}
+		catch (final SAXException | IOException e)
+		{
+			throw new IndeterminateEvaluationException("Invalid XACML Request (line " + reader.getLineNumber() + "): invalid Content (only XML is supported)", StatusHelper.STATUS_SYNTAX_ERROR,
+					e);
+		}
+
+		try
+		{
+			return xmlProcessor.newDocumentBuilder().build(new DOMSource(doc));
+		}
+		catch (final SaxonApiException e)
+		{
+			throw new IndeterminateEvaluationException("Invalid XACML Request (line " + reader.getLineNumber() + "): invalid Content", StatusHelper.STATUS_SYNTAX_ERROR, e);
+		}
+	}
+
+	/*
+	 * Parses MultiRequests object, returns the ReferenceIds of each RequestReference
+	 */
+	private static List<List<String>> parseMultiRequests(final JsonStreamReader reader) throws IOException, IndeterminateEvaluationException
+	{
+		final List<List<String>> requestReferences = new ArrayList<>();
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			final String memberName = reader.nextName();
+			if (!memberName.equals("RequestReference"))
+			{
+				throw newSyntaxError(reader, "unexpected member '" + memberName + "' in MultiRequests object");
+			}
+
+			if (reader.peek() == JsonStreamReader.Token.BEGIN_ARRAY)
+			{
+				reader.beginArray();
+				while (reader.hasNext())
+				{
+					requestReferences.add(parseRequestReference(reader));
+				}
+
+				reader.endArray();
+			}
+			else
+			{
+				requestReferences.add(parseRequestReference(reader));
+			}
+		}
+
+		reader.endObject();
+		if (requestReferences.isEmpty())
+		{
+			throw newSyntaxError(reader, "no RequestReference in MultiRequests object");
+		}
+
+		return requestReferences;
+	}
+
+	private static List<String> parseRequestReference(final JsonStreamReader reader) throws IOException, IndeterminateEvaluationException
+	{
+		final List<String> referenceIds = new ArrayList<>();
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			final String memberName = reader.nextName();
+			if (!memberName.equals("ReferenceId"))
+			{
+				throw newSyntaxError(reader, "unexpected member '" + memberName + "' in RequestReference object");
+			}
+
+			reader.beginArray();
+			while (reader.hasNext())
+			{
+				referenceIds.add(reader.nextString());
+			}
+
+			reader.endArray();
+		}
+
+		reader.endObject();
+		return referenceIds;
+	}
+
+	private void checkIndividualRequestCount(final long count) throws IndeterminateEvaluationException
+	{
+		if (maxIndividualDecisionRequests >= 0 && count > maxIndividualDecisionRequests)
+		{
+			throw new IndeterminateEvaluationException("Too many Individual Decision Requests (" + count + " > " + maxIndividualDecisionRequests + ")", StatusHelper.STATUS_PROCESSING_ERROR);
+		}
+	}
+
+	private static IndividualXACMLRequest newIndividualRequest(final List<CategoryAttributes> categories, final boolean returnPolicyIdList,
+			final PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest> requestBuilder)
+	{
+		requestBuilder.reset();
+		/*
+		 * Attributes without Issuer first, so that they are not hidden by the copies without Issuer of the attributes with Issuer that the request builder may create (if strict Attribute Issuer
+		 * match is disabled)
+		 */
+		for (final CategoryAttributes category : categories)
+		{
+			for (final Entry<AttributeFQN, AttributeBag<?>> attributeEntry : category.namedAttributes.entrySet())
+			{
+				if (!attributeEntry.getKey().getIssuer().isPresent())
+				{
+					requestBuilder.putNamedAttributeIfAbsent(attributeEntry.getKey(), attributeEntry.getValue());
+				}
+			}
+		}
+
+		final List<Attributes> attributesToIncludeInResult = new ArrayList<>(categories.size());
+		for (final CategoryAttributes category : categories)
+		{
+			for (final Entry<AttributeFQN, AttributeBag<?>> attributeEntry : category.namedAttributes.entrySet())
+			{
+				if (attributeEntry.getKey().getIssuer().isPresent())
+				{
+					requestBuilder.putNamedAttributeIfAbsent(attributeEntry.getKey(), attributeEntry.getValue());
+				}
+			}
+
+			if (category.content != null)
+			{
+				requestBuilder.putContentIfAbsent(category.categoryId, category.content);
+			}
+
+			if (category.attributesToIncludeInResult != null)
+			{
+				attributesToIncludeInResult.add(category.attributesToIncludeInResult);
+			}
+		}
+
+		return new IndividualXACMLRequest(requestBuilder.build(returnPolicyIdList), ImmutableList.copyOf(attributesToIncludeInResult));
+	}
+
+	/*
+	 * One Individual Decision Request per RequestReference (Multiple Decision Profile, section 2.4)
+	 */
+	private List<IndividualXACMLRequest> newReferencedIndividualRequests(final JsonStreamReader reader, final List<CategoryAttributes> categories, final List<List<String>> requestReferences,
+			final boolean returnPolicyIdList, final PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest> requestBuilder) throws IndeterminateEvaluationException
+	{
+		checkIndividualRequestCount(requestReferences.size());
+		final Map<String, CategoryAttributes> categoriesById = HashCollections.newUpdatableMap(categories.size());
+		for (final CategoryAttributes category : categories)
+		{
+			if (category.id != null && categoriesById.putIfAbsent(category.id, category) != null)
+			{
+				throw newSyntaxError(reader, "duplicate Category Id: " + category.id);
+			}
+		}
+
+		final List<IndividualXACMLRequest> individualRequests = new ArrayList<>(requestReferences.size());
+		for (final List<String> referenceIds : requestReferences)
+		{
+			final List<CategoryAttributes> referencedCategories = new ArrayList<>(referenceIds.size());
+			final Set<String> referencedCategoryIds = HashCollections.newUpdatableSet(referenceIds.size());
+			for (final String referenceId : referenceIds)
+			{
+				final CategoryAttributes category = categoriesById.get(referenceId);
+				if (category == null)
+				{
+					throw newSyntaxError(reader, "invalid ReferenceId in MultiRequests: '" + referenceId + "' (no Category object with such Id)");
+				}
+
+				if (!referencedCategoryIds.add(category.categoryId))
+				{
+					throw newSyntaxError(reader, "RequestReference in MultiRequests with more than one Category object of CategoryId '" + category.categoryId + "'");
+				}
+
+				referencedCategories.add(category);
+			}
+
+			individualRequests.add(newIndividualRequest(referencedCategories, returnPolicyIdList, requestBuilder));
+		}
+
+		return individualRequests;
+	}
+
+	/*
+	 * One Individual Decision Request per combination of Category objects with different CategoryIds (Multiple Decision Profile, section 2.3)
+	 */
+	private List<IndividualXACMLRequest> newRepeatedCategoriesIndividualRequests(final JsonStreamReader reader, final List<CategoryAttributes> categories, final boolean returnPolicyIdList,
+			final PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest> requestBuilder) throws IndeterminateEvaluationException
+	{
+		final Map<String, List<CategoryAttributes>> categoriesByCategoryId = new LinkedHashMap<>();
+		for (final CategoryAttributes category : categories)
+		{
+			categoriesByCategoryId.computeIfAbsent(category.categoryId, k -> new ArrayList<>(1)).add(category);
+		}
+
+		if (categoriesByCategoryId.size() == categories.size())
+		{
+			// no repeated category
+			return Collections.singletonList(newIndividualRequest(categories, returnPolicyIdList, requestBuilder));
+		}
+
+		@SuppressWarnings("unchecked")
+		final List<CategoryAttributes>[] repeatedCategories = categoriesByCategoryId.values().toArray(new List[categoriesByCategoryId.size()]);
+		long individualRequestCount = 1;
+		for (final List<CategoryAttributes> sameCategories : repeatedCategories)
+		{
+			individualRequestCount *= sameCategories.size();
+			/*
+			 * Stop before overflow
+			 */
+			if (individualRequestCount > Integer.MAX_VALUE)
+			{
+				break;
+			}
+		}
+
+		checkIndividualRequestCount(individualRequestCount);
+		if (individualRequestCount > Integer.MAX_VALUE)
+		{
+			throw new IndeterminateEvaluationException("Too many Individual Decision Requests (> " + Integer.MAX_VALUE + ")", StatusHelper.STATUS_PROCESSING_ERROR);
+		}
+
+		/*
+		 * Cartesian product, iterating over the combinations like an odometer
+		 */
+		final int[] indexes = new int[repeatedCategories.length];
+		final List<IndividualXACMLRequest> individualRequests = new ArrayList<>((int) individualRequestCount);
+		final List<CategoryAttributes> combination = new ArrayList<>(repeatedCategories.length);
+		while (true)
+		{
+			combination.clear();
+			for (int i = 0; i < repeatedCategories.length; i++)
+			{
+				combination.add(repeatedCategories[i].get(indexes[i]));
+			}
+
+			individualRequests.add(newIndividualRequest(combination, returnPolicyIdList, requestBuilder));
+
+			int i = repeatedCategories.length - 1;
+			while (i >= 0 && ++indexes[i] == repeatedCategories[i].size())
+			{
+				indexes[i] = 0;
+				i--;
+			}
+
+			if (i < 0)
+			{
+				return individualRequests;
+			}
+		}
+	}
+}
@@ -0,0 +1,725 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBElement;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Advice;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attribute;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeAssignment;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeValueType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attributes;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.IdReferenceType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Obligation;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Status;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.StatusCode;
+
+import org.ow2.authzforce.core.pdp.api.ImmutablePepActions;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionResult;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+
+/**
+ * Writer of XACML 3.0 Responses in JSON, as defined by the JSON Profile of XACML 3.0, that serializes {@link PdpDecisionResult}s directly to UTF-8 bytes, i.e. without creating JAXB Results first.
+ * Member names and other constant fragments are encoded once for all. The Response is written incrementally: call {@link #writeResult(PdpDecisionResult, List)} (or
+ * {@link #writeIndeterminate(Status)}) for each Result, then {@link #writeEnd()}.
+ * <p>
+ * Values of DataType boolean, integer and double are written as JSON booleans/numbers (if valid as such), the others as JSON strings; the DataType member is omitted for strings (default DataType).
+ * The Status member is omitted if the status code is 'ok' without message; StatusDetail is not written.
+ * <p>
+ * Not thread-safe.
+ *
+ * @version $Id: $
+ */
+public final class JsonXACMLResponseWriter
+{
+	private static final String XSD_STRING = "http://www.w3.org/2001/XMLSchema#string";
+	private static final String XSD_BOOLEAN = "http://www.w3.org/2001/XMLSchema#boolean";
+	private static final String XSD_INTEGER = "http://www.w3.org/2001/XMLSchema#integer";
+	private static final String XSD_DOUBLE = "http://www.w3.org/2001/XMLSchema#double";
+
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+	private static byte[] ascii(final String fragment)
+	{
+		return fragment.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static final byte[] RESPONSE_START = ascii("{\"Response\":[");
+	private static final byte[] RESPONSE_END = ascii("]}");
+	private static final byte[] DECISION_START = ascii("{\"Decision\":");
+	private static final byte[] STATUS_START = ascii(",\"Status\":{\"StatusCode\":");
+	private static final byte[] STATUS_CODE_VALUE_START = ascii("{\"Value\":");
+	private static final byte[] NESTED_STATUS_CODE_START = ascii(",\"StatusCode\":");
+	private static final byte[] STATUS_MESSAGE_START = ascii(",\"StatusMessage\":");
+	private static final byte[] OBLIGATIONS_START = ascii(",\"Obligations\":[");
+	private static final byte[] ASSOCIATED_ADVICE_START = ascii(",\"AssociatedAdvice\":[");
+	private static final byte[] PEP_ACTION_ID_START = ascii("{\"Id\":");
+	private static final byte[] ATTRIBUTE_ASSIGNMENTS_START = ascii(",\"AttributeAssignment\":[");
+	private static final byte[] ATTRIBUTE_ID_START = ascii("{\"AttributeId\":");
+	private static final byte[] VALUE_START = ascii(",\"Value\":");
+	private static final byte[] DATATYPE_START = ascii(",\"DataType\":");
+	private static final byte[] CATEGORY_START = ascii(",\"Category\":");
+	private static final byte[] ISSUER_START = ascii(",\"Issuer\":");
+	private static final byte[] CATEGORIES_START = ascii(",\"Category\":[");
+	private static final byte[] CATEGORY_ID_START = ascii("{\"CategoryId\":");
+	private static final byte[] ATTRIBUTES_START = ascii(",\"Attribute\":[");
+	private static final byte[] INCLUDE_IN_RESULT = ascii(",\"IncludeInResult\":true");
+	private static final byte[] POLICY_ID_LIST_START = ascii(",\"PolicyIdentifierList\":{");
+	private static final byte[] POLICY_ID_REFS_START = ascii("\"PolicyIdReference\":[");
+	private static final byte[] POLICYSET_ID_REFS_START = ascii("\"PolicySetIdReference\":[");
+	private static final byte[] ID_REF_START = ascii("{\"Id\":");
+	private static final byte[] VERSION_START = ascii(",\"Version\":");
+	private static final byte[] TRUE = ascii("true");
+	private static final byte[] FALSE = ascii("false");
+
+	private static final Map<DecisionType, byte[]> ENCODED_DECISIONS = new EnumMap<>(DecisionType.class);
+	static
+	{
+		for (final DecisionType decision : DecisionType.values())
+		{
+			ENCODED_DECISIONS.put(decision, ascii('"' + decision.value() + '"'));
+		}
+	}
+
+	/*
+	 * Checks whether a lexical value is valid as JSON number: -? (0 | [1-9][0-9]*) (\.[0-9]+)? ([eE][+-]?[0-9]+)?
+	 */
+	private static boolean isJsonNumber(final String text)
+	{
+		final int length = text.length();
+		int i = 0;
+		if (i < length && text.charAt(i) == '-')
+		{
+			i++;
+		}
+
+		if (i < length && text.charAt(i) == '0')
+		{
+			i++;
+		}
+		else
+		{
+			final int start = i;
+			while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9')
+			{
+				i++;
+			}
+
+			if (i == start)
+			{
+				return false;
+			}
+		}
+
+		if (i < length && text.charAt(i) == '.')
+		{
+			final int start = ++i;
+			while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9')
+			{
+				i++;
+			}
+
+			if (i == start)
+			{
+				return false;
+			}
+		}
+
+		if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E'))
+		{
+			i++;
+			if (i < length && (text.charAt(i) == '+' || text.charAt(i) == '-'))
+			{
+				i++;
+			}
+
+			final int start = i;
+			while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9')
+			{
+				i++;
+			}
+
+			if (i == start)
+			{
+				return false;
+			}
+		}
+
+		return i == length;
+	}
+
+	/*
+	 * Text content of an AttributeValue (mixed content not supported: child elements ignored)
+	 */
+	private static String getText(final List<Serializable> content)
+	{
+		if (content == null || content.isEmpty())
+		{
+			return "";
+		}
+
+		if (content.size() == 1 && content.get(0) instanceof String)
+		{
+			return (String) content.get(0);
+		}
+
+		final StringBuilder text = new StringBuilder();
+		for (final Serializable contentItem : content)
+		{
+			if (contentItem instanceof String)
+			{
+				text.append((String) contentItem);
+			}
+		}
+
+		return text.toString();
+	}
+
+	private final OutputStream output;
+	private final byte[] buffer = new byte[8192];
+	private int count = 0;
+	private int resultCount = 0;
+
+	/**
+	 * Creates writer
+	 *
+	 * @param output
+	 *            output of the XACML/JSON Response (not closed by this writer)
+	 */
+	public JsonXACMLResponseWriter(final OutputStream output)
+	{
+		assert output != null;
+		this.output = output;
+	}
+
+	private void flushBuffer() throws IOException
+	{
+		if (count > 0)
+		{
+			output.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+
+	private void writeByte(final int b) throws IOException
+	{
+		if (count == buffer.length)
+		{
+			flushBuffer();
+		}
+
+		buffer[count++] = (byte) b;
+	}
+
+	private void writeBytes(final byte[] bytes) throws IOException
+	{
+		if (bytes.length > buffer.length - count)
+		{
+			flushBuffer();
+			if (bytes.length > buffer.length)
+			{
+				output.write(bytes);
+				return;
+			}
+		}
+
+		System.arraycopy(bytes, 0, buffer, count, bytes.length);
+		count += bytes.length;
+	}
+
+	private void writeUnicodeEscape(final char c) throws IOException
+	{
+		writeByte('\\');
+		writeByte('u');
+		writeByte(HEX_DIGITS[c >> 12 & 0xF]);
+		writeByte(HEX_DIGITS[c >> 8 & 0xF]);
+		writeByte(HEX_DIGITS[c >> 4 & 0xF]);
+		writeByte(HEX_DIGITS[c & 0xF]);
+	}
+
+	/*
+	 * Writes JSON string (quoted and escaped) in UTF-8
+	 */
+	private void writeString(final String s) throws IOException
+	{
+		writeByte('"');
+		final int length = s.length();
+		for (int i = 0; i < length; i++)
+		{
+			final char c = s.charAt(i);
+			if (c < 0x80)
+			{
+				switch (c)
+				{
+					case '"':
+					case '\\':
+						writeByte('\\');
+						writeByte(c);
+						break;
+					case '\n':
+						writeByte('\\');
+						writeByte('n');
+						break;
+					case '\r':
+						writeByte('\\');
+						writeByte('r');
+						break;
+					case '\t':
+						writeByte('\\');
+						writeByte('t');
+						break;
+					default:
+						if (c < 0x20)
+						{
+							writeUnicodeEscape(c);
+						}
+						else
+						{
+							writeByte(c);
+						}
+				}
+			}
+			else if (c < 0x800)
+			{
+				writeByte(0xC0 | c >> 6);
+				writeByte(0x80 | c & 0x3F);
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1)))
+			{
+				final int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				writeByte(0xF0 | codePoint >> 18);
+				writeByte(0x80 | codePoint >> 12 & 0x3F);
+				writeByte(0x80 | codePoint >> 6 & 0x3F);
+				writeByte(0x80 | codePoint & 0x3F);
+			}
+			else if (Character.isSurrogate(c))
+			{
+				// unpaired surrogate: not encodable in UTF-8
+				writeUnicodeEscape(c);
+			}
+			else
+			{
+				writeByte(0xE0 | c >> 12);
+				writeByte(0x80 | c >> 6 & 0x3F);
+				writeByte(0x80 | c & 0x3F);
+			}
+		}
+
+		writeByte('"');
+	}
+
+	/*
+	 * Writes Value member and DataType member unless string
+	 */
+	private void writeValueAndDatatype(final String text, final String datatypeId) throws IOException
+	{
+		writeBytes(VALUE_START);
+		writeValue(text, datatypeId);
+		if (datatypeId != null && !XSD_STRING.equals(datatypeId))
+		{
+			writeBytes(DATATYPE_START);
+			writeString(datatypeId);
+		}
+	}
+
+	private void writeValue(final String text, final String datatypeId) throws IOException
+	{
+		switch (datatypeId == null ? XSD_STRING : datatypeId)
+		{
+			case XSD_BOOLEAN:
+				final String trimmedBoolean = text.trim();
+				if (trimmedBoolean.equals("true") || trimmedBoolean.equals("1"))
+				{
+					writeBytes(TRUE);
+					return;
+				}
+
+				if (trimmedBoolean.equals("false") || trimmedBoolean.equals("0"))
+				{
+					writeBytes(FALSE);
+					return;
+				}
+				break;
+			case XSD_INTEGER:
+			case XSD_DOUBLE:
+				final String trimmedNumber = text.trim();
+				if (isJsonNumber(trimmedNumber))
+				{
+					writeBytes(ascii(trimmedNumber));
+					return;
+				}
+				break;
+			default:
+				break;
+		}
+
+		writeString(text);
+	}
+
+	private void writeStatus(final Status status) throws IOException
+	{
+		if (status == null)
+		{
+			return;
+		}
+
+		final StatusCode statusCode = status.getStatusCode();
+		final String statusMessage = status.getStatusMessage();
+		if (statusMessage == null && (statusCode == null || StatusHelper.STATUS_OK.equals(statusCode.getValue()) && statusCode.getStatusCode() == null))
+		{
+			return;
+		}
+
+		writeBytes(STATUS_START);
+		StatusCode nextStatusCode = statusCode;
+		int depth = 0;
+		while (nextStatusCode != null)
+		{
+			if (depth > 0)
+			{
+				writeBytes(NESTED_STATUS_CODE_START);
+			}
+
+			writeBytes(STATUS_CODE_VALUE_START);
+			writeString(nextStatusCode.getValue());
+			nextStatusCode = nextStatusCode.getStatusCode();
+			depth++;
+		}
+
+		if (depth == 0)
+		{
+			// status code is mandatory
+			writeBytes(STATUS_CODE_VALUE_START);
+			writeString(StatusHelper.STATUS_PROCESSING_ERROR);
+			depth = 1;
+		}
+
+		for (int i = 0; i < depth; i++)
+		{
+			writeByte('}');
+		}
+
+		if (statusMessage != null)
+		{
+			writeBytes(STATUS_MESSAGE_START);
+			writeString(statusMessage);
+		}
+
+		writeByte('}');
+	}
+
+	private void writeAttributeAssignments(final List<AttributeAssignment> attributeAssignments) throws IOException
+	{
+		if (attributeAssignments == null || attributeAssignments.isEmpty())
+		{
+			return;
+		}
+
+		writeBytes(ATTRIBUTE_ASSIGNMENTS_START);
+		boolean first = true;
+		for (final AttributeAssignment attributeAssignment : attributeAssignments)
+		{
+			if (!first)
+			{
+				writeByte(',');
+			}
+
+			first = false;
+			writeBytes(ATTRIBUTE_ID_START);
+			writeString(attributeAssignment.getAttributeId());
+			writeValueAndDatatype(getText(attributeAssignment.getContent()), attributeAssignment.getDataType());
+			if (attributeAssignment.getCategory() != null)
+			{
+				writeBytes(CATEGORY_START);
+				writeString(attributeAssignment.getCategory());
+			}
+
+			if (attributeAssignment.getIssuer() != null)
+			{
+				writeBytes(ISSUER_START);
+				writeString(attributeAssignment.getIssuer());
+			}
+
+			writeByte('}');
+		}
+
+		writeByte(']');
+	}
+
+	private void writePepActions(final ImmutablePepActions pepActions) throws IOException
+	{
+		if (pepActions == null)
+		{
+			return;
+		}
+
+		final List<Obligation> obligations = pepActions.getObligatory();
+		if (obligations != null && !obligations.isEmpty())
+		{
+			writeBytes(OBLIGATIONS_START);
+			boolean first = true;
+			for (final Obligation obligation : obligations)
+			{
+				if (!first)
+				{
+					writeByte(',');
+				}
+
+				first = false;
+				writeBytes(PEP_ACTION_ID_START);
+				writeString(obligation.getObligationId());
+				writeAttributeAssignments(obligation.getAttributeAssignments());
+				writeByte('}');
+			}
+
+			writeByte(']');
+		}
+
+		final List<Advice> advices = pepActions.getAdvisory();
+		if (advices != null && !advices.isEmpty())
+		{
+			writeBytes(ASSOCIATED_ADVICE_START);
+			boolean first = true;
+			for (final Advice advice : advices)
+			{
+				if (!first)
+				{
+					writeByte(',');
+				}
+
+				first = false;
+				writeBytes(PEP_ACTION_ID_START);
+				writeString(advice.getAdviceId());
+				writeAttributeAssignments(advice.getAttributeAssignments());
+				writeByte('}');
+			}
+
+			writeByte(']');
+		}
+	}
+
+	private void writeCategories(final List<Attributes> attributesList) throws IOException
+	{
+		if (attributesList == null || attributesList.isEmpty())
+		{
+			return;
+		}
+
+		writeBytes(CATEGORIES_START);
+		boolean firstCategory = true;
+		for (final Attributes attributes : attributesList)
+		{
+			if (!firstCategory)
+			{
+				writeByte(',');
+			}
+
+			firstCategory = false;
+			writeBytes(CATEGORY_ID_START);
+			writeString(attributes.getCategory());
+			writeBytes(ATTRIBUTES_START);
+			boolean firstAttribute = true;
+			for (final Attribute attribute : attributes.getAttributes())
+			{
+				if (!firstAttribute)
+				{
+					writeByte(',');
+				}
+
+				firstAttribute = false;
+				writeBytes(ATTRIBUTE_ID_START);
+				writeString(attribute.getAttributeId());
+				final List<AttributeValueType> attributeValues = attribute.getAttributeValues();
+				final String datatypeId = attributeValues.isEmpty() ? XSD_STRING : attributeValues.get(0).getDataType();
+				writeBytes(VALUE_START);
+				if (attributeValues.size() == 1)
+				{
+					writeValue(getText(attributeValues.get(0).getContent()), datatypeId);
+				}
+				else
+				{
+					writeByte('[');
+					boolean firstValue = true;
+					for (final AttributeValueType attributeValue : attributeValues)
+					{
+						if (!firstValue)
+						{
+							writeByte(',');
+						}
+
+						firstValue = false;
+						writeValue(getText(attributeValue.getContent()), datatypeId);
+					}
+
+					writeByte(']');
+				}
+
+				if (!XSD_STRING.equals(datatypeId))
+				{
+					writeBytes(DATATYPE_START);
+					writeString(datatypeId);
+				}
+
+				if (attribute.getIssuer() != null)
+				{
+					writeBytes(ISSUER_START);
+					writeString(attribute.getIssuer());
+				}
+
+				writeBytes(INCLUDE_IN_RESULT);
+				writeByte('}');
+			}
+
+			writeByte(']');
+			writeByte('}');
+		}
+
+		writeByte(']');
+	}
+
+	private boolean writeIdReferences(final List<JAXBElement<IdReferenceType>> idReferences, final String elementName, final byte[] start, final boolean first) throws IOException
+	{
+		boolean firstReference = true;
+		for (final JAXBElement<IdReferenceType> idReference : idReferences)
+		{
+			if (!idReference.getName().getLocalPart().equals(elementName))
+			{
+				continue;
+			}
+
+			if (firstReference)
+			{
+				if (!first)
+				{
+					writeByte(',');
+				}
+
+				writeBytes(start);
+				firstReference = false;
+			}
+			else
+			{
+				writeByte(',');
+			}
+
+			final IdReferenceType idRef = idReference.getValue();
+			writeBytes(ID_REF_START);
+			writeString(idRef.getValue());
+			if (idRef.getVersion() != null)
+			{
+				writeBytes(VERSION_START);
+				writeString(idRef.getVersion());
+			}
+
+			writeByte('}');
+		}
+
+		if (firstReference)
+		{
+			return first;
+		}
+
+		writeByte(']');
+		return false;
+	}
+
+	private void writeResult(final DecisionType decision, final Status status, final ImmutablePepActions pepActions, final List<JAXBElement<IdReferenceType>> applicablePolicies,
+			final List<Attributes> attributesToIncludeInResult) throws IOException
+	{
+		if (resultCount == 0)
+		{
+			writeBytes(RESPONSE_START);
+		}
+		else
+		{
+			writeByte(',');
+		}
+
+		resultCount++;
+		writeBytes(DECISION_START);
+		writeBytes(ENCODED_DECISIONS.get(decision));
+		writeStatus(status);
+		writePepActions(pepActions);
+		writeCategories(attributesToIncludeInResult);
+		if (applicablePolicies != null && !applicablePolicies.isEmpty())
+		{
+			writeBytes(POLICY_ID_LIST_START);
+			final boolean noPolicyRef = writeIdReferences(applicablePolicies, "PolicyIdReference", POLICY_ID_REFS_START, true);
+			writeIdReferences(applicablePolicies, "PolicySetIdReference", POLICYSET_ID_REFS_START, noPolicyRef);
+			writeByte('}');
+		}
+
+		writeByte('}');
+	}
+
+	/**
+	 * Writes a Result
+	 *
+	 * @param result
+	 *            decision result
+	 * @param attributesToIncludeInResult
+	 *            attributes with IncludeInResult=true in the corresponding Individual Decision Request (null or empty if none)
+	 * @throws IOException
+	 *             error writing to the output
+	 */
+	public void writeResult(final PdpDecisionResult result, final List<Attributes> attributesToIncludeInResult) throws IOException
+	{
+		assert result != null;
+		writeResult(result.getDecision(), result.getStatus(), result.getPepActions(), result.getApplicablePolicies(), attributesToIncludeInResult);
+	}
+
+	/**
+	 * Writes an Indeterminate Result, e.g. for an invalid Request
+	 *
+	 * @param status
+	 *            status of the Indeterminate Result
+	 * @throws IOException
+	 *             error writing to the output
+	 */
+	public void writeIndeterminate(final Status status) throws IOException
+	{
+		writeResult(DecisionType.INDETERMINATE, status, null, null, null);
+	}
+
+	/**
+	 * Writes the end of the Response (after the last Result) and flushes the output
+	 *
+	 * @throws IOException
+	 *             error writing to the output
+	 */
+	public void writeEnd() throws IOException
+	{
+		if (resultCount == 0)
+		{
+			writeBytes(RESPONSE_START);
+		}
+
+		writeBytes(RESPONSE_END);
+		flushBuffer();
+		output.flush();
+	}
+}
@@ -19,6 +19,7 @@ package org.ow2.authzforce.core.pdp.impl;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 
 import net.sf.saxon.s9api.XPathCompiler;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeDesignatorType;
@@ -30,11 +31,15 @@ import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
 import org.ow2.authzforce.core.pdp.api.expression.Expression;
 import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.expression.Expressions;
 import org.ow2.authzforce.core.pdp.api.expression.FunctionExpression;
 import org.ow2.authzforce.core.pdp.api.func.Function;
 import org.ow2.authzforce.core.pdp.api.func.FunctionCall;
 import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.BagDatatype;
 import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
 import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
 
 /**
@@ -48,6 +53,14 @@ public final class MatchEvaluator
 	private static final IllegalArgumentException NULL_XACML_MATCH_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined input XACML Match element");
 	private static final IllegalArgumentException NULL_XACML_EXPRESSION_FACTORY_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined input XACML Expression parser");
 
+	/*
+	 * Cost estimates (arbitrary unit) used to order the evaluation of Matches (see ShortCircuitEvaluationOrder): getting the bag of attribute values, then calling the match function on each value
+	 */
+	private static final int ATTRIBUTE_DESIGNATOR_COST = 2;
+	private static final int ATTRIBUTE_SELECTOR_COST = 20;
+	private static final int DEFAULT_MATCH_FUNCTION_COST = 1;
+	private static final int REGEXP_MATCH_FUNCTION_COST = 5;
+
 	/**
 	 * Any-of function call equivalent to this Match:
 	 * <p>
@@ -55,6 +68,17 @@ public final class MatchEvaluator
 	 */
 	private final transient FunctionCall<BooleanValue> anyOfFuncCall;
 
+	/*
+	 * If the match function is one of StandardFunction#HASH_CONSISTENT_EQUALITY_FUNCTION_IDS, the Match is evaluated as a membership check of the (constant) AttributeValue in the bag returned by
+	 * the AttributeDesignator/AttributeSelector, without calling the equivalent any-of function; else null (anyOfFuncCall is used)
+	 */
+	private final transient AttributeValue bagMembershipMatchValue;
+	private final transient Expression<?> bagExpression;
+	private final transient BagDatatype<?> bagDatatype;
+	private final transient String bagEvalErrorMessage;
+
+	private final transient int costEstimate;
+
 	/**
 	 * Instantiates Match evaluator from XACML-Schema-derived JAXB Match
 	 *
@@ -124,6 +148,40 @@ public final class MatchEvaluator
 		{
 			throw new IllegalArgumentException("Invalid inputs (Expressions) to the Match (validated using the equivalent standard 'any-of' function definition): " + anyOfFuncInputs, e);
 		}
+
+		/*
+		 * At this point, the inputs are valid for the any-of function, i.e. the bag element datatype is the datatype of the AttributeValue expected by the match function
+		 */
+		final Optional<? extends AttributeValue> constantAttrValue = attrValueExpr.getValue();
+		final Datatype<?> bagExpressionType = bagExpression.getReturnType();
+		if (StandardFunction.HASH_CONSISTENT_EQUALITY_FUNCTION_IDS.contains(matchId) && constantAttrValue.isPresent() && bagExpressionType instanceof BagDatatype)
+		{
+			this.bagMembershipMatchValue = constantAttrValue.get();
+			this.bagExpression = bagExpression;
+			this.bagDatatype = (BagDatatype<?>) bagExpressionType;
+			this.bagEvalErrorMessage = "Error evaluating Match's " + (attributeDesignator == null ? "AttributeSelector" : "AttributeDesignator");
+		}
+		else
+		{
+			this.bagMembershipMatchValue = null;
+			this.bagExpression = null;
+			this.bagDatatype = null;
+			this.bagEvalErrorMessage = null;
+		}
+
+		this.costEstimate = (attributeDesignator == null ? ATTRIBUTE_SELECTOR_COST : ATTRIBUTE_DESIGNATOR_COST)
+				+ (matchId.endsWith("-regexp-match") ? REGEXP_MATCH_FUNCTION_COST : DEFAULT_MATCH_FUNCTION_COST);
+	}
+
+	/**
+	 * Get the estimated cost of this Match's evaluation, relative to other Matches: a Match on an AttributeSelector (XPath evaluation) costs more than a Match on an AttributeDesignator, and a regular
+	 * expression match function more than other functions.
+	 *
+	 * @return cost estimate (arbitrary unit)
+	 */
+	int getCostEstimate()
+	{
+		return costEstimate;
 	}
 
 	/**
@@ -137,6 +195,21 @@ public final class MatchEvaluator
 	 */
 	public boolean match(final EvaluationContext context) throws IndeterminateEvaluationException
 	{
+		if (bagMembershipMatchValue != null)
+		{
+			final Bag<?> bag;
+			try
+			{
+				bag = Expressions.eval(bagExpression, context, bagDatatype);
+			}
+			catch (final IndeterminateEvaluationException e)
+			{
+				throw new IndeterminateEvaluationException(bagEvalErrorMessage, e.getStatusCode(), e);
+			}
+
+			return BagIndexes.contains(bag, bagMembershipMatchValue, context);
+		}
+
 		final BooleanValue anyOfFuncCallResult;
 		try
 		{
@@ -17,10 +17,14 @@
  */
 package org.ow2.authzforce.core.pdp.impl;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeDesignatorType;
 
@@ -36,9 +40,13 @@ import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
 import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
 import org.ow2.authzforce.core.pdp.api.value.BagDatatype;
 import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+
 /**
  * AttributeProvider working with sub-modules, each responsible of finding specific attributes in a specific way from a specific source. This attribute Provider tries to resolve attribute values in
  * current evaluation context first, then if not there, query the sub-modules.
@@ -92,14 +100,81 @@ public class ModularAttributeProvider implements AttributeProvider
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(ModularAttributeProvider.class);
 
+	/**
+	 * Attribute being resolved by an {@link AsyncAttributeProviderModule} for prefetch
+	 */
+	private static final class PrefetchedAttribute<AV extends AttributeValue>
+	{
+		private final AttributeFQN attributeFQN;
+		private final CompletableFuture<AttributeBag<AV>> futureResult;
+
+		private PrefetchedAttribute(final AttributeFQN attributeFQN, final CompletableFuture<AttributeBag<AV>> futureResult)
+		{
+			this.attributeFQN = attributeFQN;
+			this.futureResult = futureResult;
+		}
+	}
+
+	/**
+	 * Dependencies of the module providing a given attribute, with their datatypes, in a fixed order
+	 */
+	private static final class ModuleDependencies
+	{
+		private final List<Entry<AttributeFQN, BagDatatype<?>>> dependencies;
+
+		private ModuleDependencies(final Map<AttributeFQN, BagDatatype<?>> dependencies)
+		{
+			this.dependencies = new ArrayList<>(dependencies.entrySet());
+		}
+
+		/*
+		 * Get the key of the attribute in a batch, or null if any dependency is not in the context yet (the module is then called directly, as its dependencies may require calling other modules)
+		 */
+		private DependentAttributeKey getKey(final AttributeFQN attributeFQN, final Datatype<?> datatype, final EvaluationContext context)
+		{
+			final ImmutableList.Builder<ImmutableMultiset<AttributeValue>> dependencyValuesBuilder = ImmutableList.builder();
+			for (final Entry<AttributeFQN, BagDatatype<?>> dependency : dependencies)
+			{
+				final AttributeBag<?> dependencyValues;
+				try
+				{
+					dependencyValues = context.getNamedAttributeValue(dependency.getKey(), dependency.getValue());
+				}
+				catch (final IndeterminateEvaluationException e)
+				{
+					// in context but with a different datatype
+					return null;
+				}
+
+				if (dependencyValues == null)
+				{
+					return null;
+				}
+
+				dependencyValuesBuilder.add(ImmutableMultiset.<AttributeValue> copyOf(dependencyValues));
+			}
+
+			return new DependentAttributeKey(attributeFQN, datatype, dependencyValuesBuilder.build());
+		}
+	}
+
 	/*
 	 * AttributeDesignator Provider modules by supported/provided attribute ID (global ID: category, issuer, AttributeId)
 	 */
 	private final Map<AttributeFQN, AttributeProviderModule> designatorModsByAttrId;
 
+	/*
+	 * Dependencies of the modules by provided attribute ID. Attributes provided by modules with unknown dependencies are not shared in batches (AttributeResolutionBatch).
+	 */
+	private final Map<AttributeFQN, ModuleDependencies> moduleDependenciesByAttrId;
+
 	private final IssuedToNonIssuedAttributeCopyMode issuedToNonIssuedAttributeCopyMode;
 
-	protected ModularAttributeProvider(final Map<AttributeFQN, AttributeProviderModule> attributeProviderModulesByAttributeId, final Set<AttributeDesignatorType> selectedAttributeSupport,
+	// true iff any of the modules is an AsyncAttributeProviderModule
+	private final boolean asyncModulesFound;
+
+	protected ModularAttributeProvider(final Map<AttributeFQN, AttributeProviderModule> attributeProviderModulesByAttributeId,
+			final Map<AttributeFQN, Map<AttributeFQN, BagDatatype<?>>> moduleDependenciesByAttributeId, final Set<AttributeDesignatorType> selectedAttributeSupport,
 			final boolean strictAttributeIssuerMatch)
 	{
 		assert attributeProviderModulesByAttributeId != null;
@@ -128,6 +203,43 @@ public class ModularAttributeProvider implements AttributeProvider
 		}
 
 		this.issuedToNonIssuedAttributeCopyMode = strictAttributeIssuerMatch ? ISSUED_TO_NON_ISSUED_ATTRIBUTE_COPY_DISABLED_MODE : ISSUED_TO_NON_ISSUED_ATTRIBUTE_COPY_ENABLED_MODE;
+
+		boolean asyncModFound = false;
+		for (final AttributeProviderModule mod : designatorModsByAttrId.values())
+		{
+			if (mod instanceof AsyncAttributeProviderModule)
+			{
+				asyncModFound = true;
+				break;
+			}
+		}
+
+		this.asyncModulesFound = asyncModFound;
+
+		if (moduleDependenciesByAttributeId == null)
+		{
+			this.moduleDependenciesByAttrId = Collections.emptyMap();
+		}
+		else
+		{
+			final Map<AttributeFQN, ModuleDependencies> mutableModDepsByAttrIdMap = HashCollections.newUpdatableMap(designatorModsByAttrId.size());
+			for (final AttributeFQN providedAttr : designatorModsByAttrId.keySet())
+			{
+				final Map<AttributeFQN, BagDatatype<?>> moduleDependencies = moduleDependenciesByAttributeId.get(providedAttr);
+				if (moduleDependencies != null)
+				{
+					mutableModDepsByAttrIdMap.put(providedAttr, new ModuleDependencies(moduleDependencies));
+				}
+			}
+
+			this.moduleDependenciesByAttrId = HashCollections.newImmutableMap(mutableModDepsByAttrIdMap);
+		}
+	}
+
+	protected ModularAttributeProvider(final Map<AttributeFQN, AttributeProviderModule> attributeProviderModulesByAttributeId, final Set<AttributeDesignatorType> selectedAttributeSupport,
+			final boolean strictAttributeIssuerMatch)
+	{
+		this(attributeProviderModulesByAttributeId, null, selectedAttributeSupport, strictAttributeIssuerMatch);
 	}
 
 	/**
@@ -157,6 +269,95 @@ public class ModularAttributeProvider implements AttributeProvider
 		return new ModularAttributeProvider(attributeProviderModulesByAttributeId, selectedAttributeSupport, strictAttributeIssuerMatch);
 	}
 
+	/**
+	 * Get instance of modular Attribute Provider that tries to find attribute values in evaluation context, then, if not there, in the {@link AttributeResolutionBatch} registered in the context, if
+	 * any, then query sub-modules providing the requested attribute ID, if any.
+	 *
+	 * @param attributeProviderModulesByAttributeId
+	 *            attribute Provider modules sorted by supported attribute ID; may be null if none
+	 * @param moduleDependenciesByAttributeId
+	 *            dependencies (required attributes and their datatypes) of the module providing a given attribute, by provided attribute ID. Attributes provided by a module are shared by the
+	 *            evaluation contexts of a same {@link AttributeResolutionBatch} only if its dependencies are in this map (empty map if the module has no dependency), and the module uses no other
+	 *            attribute from the evaluation context. May be null if unknown, i.e. no attribute is shared.
+	 * @param selectedAttributeSupport
+	 *            (optional) selection of attributes to be supported (see {@link #getInstance(Map, Set, boolean)})
+	 * @param strictAttributeIssuerMatch
+	 *            true iff it is required that AttributeDesignator without Issuer only match request Attributes without Issuer (see {@link #getInstance(Map, Set, boolean)})
+	 * @return modular attribute provider instance; {@link #EVALUATION_CONTEXT_ONLY_SCOPED_ATTRIBUTE_PROVIDER} iff
+	 *         {@code attributeProviderModulesByAttributeId == null || attributeProviderModulesByAttributeId.isEmpty()},
+	 */
+	public static ModularAttributeProvider getInstance(final Map<AttributeFQN, AttributeProviderModule> attributeProviderModulesByAttributeId,
+			final Map<AttributeFQN, Map<AttributeFQN, BagDatatype<?>>> moduleDependenciesByAttributeId, final Set<AttributeDesignatorType> selectedAttributeSupport,
+			final boolean strictAttributeIssuerMatch)
+	{
+		if (attributeProviderModulesByAttributeId == null || attributeProviderModulesByAttributeId.isEmpty())
+		{
+			return EVALUATION_CONTEXT_ONLY_SCOPED_ATTRIBUTE_PROVIDER;
+		}
+
+		return new ModularAttributeProvider(attributeProviderModulesByAttributeId, moduleDependenciesByAttributeId, selectedAttributeSupport, strictAttributeIssuerMatch);
+	}
+
+	private static <AV extends AttributeValue> AttributeBag<AV> callModule(final AttributeProviderModule attrProviderModule, final AttributeFQN attributeFQN, final BagDatatype<AV> returnDatatype,
+			final EvaluationContext context) throws IndeterminateEvaluationException
+	{
+		final EvaluationTimingListener timingListener = context.getListener(EvaluationTimingListener.class);
+		if (timingListener == null)
+		{
+			return attrProviderModule.get(attributeFQN, returnDatatype, context);
+		}
+
+		final long startTime = System.nanoTime();
+		try
+		{
+			return attrProviderModule.get(attributeFQN, returnDatatype, context);
+		}
+		finally
+		{
+			timingListener.attributeProviderCalled(attributeFQN, System.nanoTime() - startTime);
+		}
+	}
+
+	/*
+	 * Get the attribute from the batch of the context - if any and the module's dependencies are known - else from the module (and add it to the batch)
+	 */
+	private <AV extends AttributeValue> AttributeBag<AV> getFromBatchOrModule(final AttributeProviderModule attrProviderModule, final AttributeFQN attributeFQN,
+			final BagDatatype<AV> returnDatatype, final EvaluationContext context) throws IndeterminateEvaluationException
+	{
+		final AttributeResolutionBatch batch = context.getListener(AttributeResolutionBatch.class);
+		if (batch == null)
+		{
+			return callModule(attrProviderModule, attributeFQN, returnDatatype, context);
+		}
+
+		final ModuleDependencies moduleDependencies = moduleDependenciesByAttrId.get(attributeFQN);
+		if (moduleDependencies == null)
+		{
+			return callModule(attrProviderModule, attributeFQN, returnDatatype, context);
+		}
+
+		final DependentAttributeKey batchKey = moduleDependencies.getKey(attributeFQN, returnDatatype.getElementType(), context);
+		if (batchKey == null)
+		{
+			return callModule(attrProviderModule, attributeFQN, returnDatatype, context);
+		}
+
+		final AttributeBag<?> sharedResult = batch.get(batchKey);
+		if (sharedResult != null)
+		{
+			LOGGER.debug("Values of attribute {}, type={} found in batch: {}", attributeFQN, returnDatatype, sharedResult);
+			return returnDatatype.castAttributeBag(sharedResult);
+		}
+
+		final AttributeBag<AV> result = callModule(attrProviderModule, attributeFQN, returnDatatype, context);
+		if (result != null)
+		{
+			batch.put(batchKey, result);
+		}
+
+		return result;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public final <AV extends AttributeValue> AttributeBag<AV> get(final AttributeFQN attributeFQN, final BagDatatype<AV> returnDatatype, final EvaluationContext context)
@@ -180,7 +381,7 @@ public class ModularAttributeProvider implements AttributeProvider
 				throw new IndeterminateEvaluationException("Not in context and no attribute Provider module supporting attribute: " + attributeFQN, StatusHelper.STATUS_MISSING_ATTRIBUTE);
 			}
 
-			final AttributeBag<AV> result = attrProviderModule.get(attributeFQN, returnDatatype, context);
+			final AttributeBag<AV> result = getFromBatchOrModule(attrProviderModule, attributeFQN, returnDatatype, context);
 
 			/*
 			 * Cache the attribute value(s) in context to avoid waste of time querying the module twice for same attribute
@@ -235,6 +436,109 @@ public class ModularAttributeProvider implements AttributeProvider
 		}
 	}
 
+	/**
+	 * Indicates whether any attribute may be prefetched (see {@link #prefetch(Map, EvaluationContext)})
+	 *
+	 * @return true iff any of the modules is an {@link AsyncAttributeProviderModule}
+	 */
+	public final boolean isPrefetchSupported()
+	{
+		return this.asyncModulesFound;
+	}
+
+	private static <AV extends AttributeValue> PrefetchedAttribute<AV> startPrefetch(final AttributeFQN attributeFQN, final BagDatatype<AV> datatype, final AsyncAttributeProviderModule module,
+			final EvaluationContext context)
+	{
+		try
+		{
+			if (context.getNamedAttributeValue(attributeFQN, datatype) != null)
+			{
+				// already in context (e.g. in the request)
+				return null;
+			}
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			// in context but with a different datatype, nothing to prefetch
+			return null;
+		}
+
+		try
+		{
+			return new PrefetchedAttribute<>(attributeFQN, module.getAsync(attributeFQN, datatype, context));
+		}
+		catch (final RuntimeException e)
+		{
+			LOGGER.debug("Failed to prefetch attribute {} from Provider module {} (will be requested again when needed)", attributeFQN, module, e);
+			return null;
+		}
+	}
+
+	private <AV extends AttributeValue> void completePrefetch(final PrefetchedAttribute<AV> prefetchedAttribute, final EvaluationContext context)
+	{
+		final AttributeBag<AV> result;
+		try
+		{
+			result = BaseAsyncAttributeProviderModule.join(prefetchedAttribute.futureResult, prefetchedAttribute.attributeFQN);
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			/*
+			 * Do not cache the error in context (unlike get(...)) since the prefetched attribute may not be used in the end; if it is, the module will be requested again and the error handled as
+			 * usual.
+			 */
+			LOGGER.debug("Failed to prefetch attribute {} (will be requested again when needed)", prefetchedAttribute.attributeFQN, e);
+			return;
+		}
+
+		if (result == null)
+		{
+			return;
+		}
+
+		context.putNamedAttributeValueIfAbsent(prefetchedAttribute.attributeFQN, result);
+		LOGGER.debug("Values of attribute {} prefetched (cached in context): {}", prefetchedAttribute.attributeFQN, result);
+		issuedToNonIssuedAttributeCopyMode.process(prefetchedAttribute.attributeFQN, result, context);
+	}
+
+	/**
+	 * Prefetches attributes from the {@link AsyncAttributeProviderModule}s, i.e. requests all the given attributes that are provided by such modules and not already in the evaluation context
+	 * concurrently, waits for all the results and caches them in the context, so that the subsequent calls to {@link #get(AttributeFQN, BagDatatype, EvaluationContext)} for these attributes do not
+	 * block. Attributes provided by synchronous modules are not prefetched. Attributes that could not be resolved are not cached in the context (they will be requested again if needed).
+	 *
+	 * @param attributes
+	 *            attributes to prefetch, typically the ones referenced by the policies' AttributeDesignators, with their datatypes
+	 * @param context
+	 *            evaluation context, used only on the current thread
+	 */
+	public final void prefetch(final Map<AttributeFQN, BagDatatype<?>> attributes, final EvaluationContext context)
+	{
+		if (!asyncModulesFound)
+		{
+			return;
+		}
+
+		final List<PrefetchedAttribute<?>> prefetchedAttributes = new ArrayList<>();
+		for (final Entry<AttributeFQN, BagDatatype<?>> attribute : attributes.entrySet())
+		{
+			final AttributeProviderModule attrProviderModule = designatorModsByAttrId.get(attribute.getKey());
+			if (attrProviderModule instanceof AsyncAttributeProviderModule)
+			{
+				final PrefetchedAttribute<?> prefetchedAttribute = startPrefetch(attribute.getKey(), attribute.getValue(), (AsyncAttributeProviderModule) attrProviderModule, context);
+				if (prefetchedAttribute != null)
+				{
+					prefetchedAttributes.add(prefetchedAttribute);
+				}
+			}
+		}
+
+		LOGGER.debug("Prefetching {} attributes", prefetchedAttributes.size());
+		for (final PrefetchedAttribute<?> prefetchedAttribute : prefetchedAttributes)
+		{
+			completePrefetch(prefetchedAttribute, context);
+		}
+	}
+
 	/**
 	 * Attribute Provider based only on the evaluation context, i.e. it does not used any extra attribute provider module to get attribute values if not found in the context
 	 */
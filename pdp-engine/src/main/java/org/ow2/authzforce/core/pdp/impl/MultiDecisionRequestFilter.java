@@ -17,15 +17,13 @@
  */
 package org.ow2.authzforce.core.pdp.impl;
 
-import java.util.ArrayDeque;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Queue;
+import java.util.RandomAccess;
 
 import net.sf.saxon.s9api.Processor;
 import net.sf.saxon.s9api.XPathCompiler;
@@ -101,6 +99,86 @@ public final class MultiDecisionRequestFilter extends BaseRequestFilter
 		}
 	}
 
+	/**
+	 * Lazy (immutable) list of the Individual Decision Requests resulting from all combinations of the attribute category alternatives in a Multiple Decision Request, i.e. the cartesian product of
+	 * the alternatives of each category. The request at a given index is created on each call to {@link #get(int)}, and not retained by this list.
+	 * <p>
+	 * Combinations are ordered like nested loops over the categories in the order of iteration of the input map, the last category varying fastest.
+	 * <p>
+	 * Since requests are created on access, {@link #get(int)} (and iteration) may throw an {@link IllegalArgumentException} if a request cannot be created; the PDP converts it to an Indeterminate
+	 * Result.
+	 */
+	private static final class IndividualXACMLRequestCombinations extends AbstractList<IndividualXACMLRequest> implements RandomAccess
+	{
+		private final boolean isApplicablePolicyIdListReturned;
+		private final String[] categoryNames;
+		private final List<List<SingleCategoryAttributes<?>>> alternativesByCategory;
+		private final int size;
+
+		private IndividualXACMLRequestCombinations(final boolean isApplicablePolicyIdListReturned, final Map<String, List<SingleCategoryAttributes<?>>> multiReqAttrAlternativesByCategory)
+				throws IndeterminateEvaluationException
+		{
+			this.isApplicablePolicyIdListReturned = isApplicablePolicyIdListReturned;
+			this.categoryNames = new String[multiReqAttrAlternativesByCategory.size()];
+			this.alternativesByCategory = new ArrayList<>(multiReqAttrAlternativesByCategory.size());
+			long combinationCount = 1;
+			int i = 0;
+			for (final Entry<String, List<SingleCategoryAttributes<?>>> categoryAlternatives : multiReqAttrAlternativesByCategory.entrySet())
+			{
+				categoryNames[i] = categoryAlternatives.getKey();
+				alternativesByCategory.add(categoryAlternatives.getValue());
+				combinationCount *= categoryAlternatives.getValue().size();
+				if (combinationCount > Integer.MAX_VALUE)
+				{
+					throw new IndeterminateEvaluationException("Too many combinations of repeated attribute categories in Multiple Decision Request (> " + Integer.MAX_VALUE + ")",
+							StatusHelper.STATUS_SYNTAX_ERROR);
+				}
+
+				i++;
+			}
+
+			this.size = (int) combinationCount;
+		}
+
+		@Override
+		public IndividualXACMLRequest get(final int index)
+		{
+			if (index < 0 || index >= size)
+			{
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+
+			/*
+			 * Decode the index as a mixed-radix number where the last category is the least significant digit
+			 */
+			final int[] alternativeIndexes = new int[categoryNames.length];
+			int remainder = index;
+			for (int i = categoryNames.length - 1; i >= 0; i--)
+			{
+				final int alternativeCount = alternativesByCategory.get(i).size();
+				alternativeIndexes[i] = remainder % alternativeCount;
+				remainder /= alternativeCount;
+			}
+
+			final IndividualXACMLRequestBuilder reqBuilder = new IndividualXACMLRequestBuilder(isApplicablePolicyIdListReturned);
+			for (int i = 0; i < categoryNames.length; i++)
+			{
+				/*
+				 * Each category is put only once, so no duplicate category error possible here
+				 */
+				reqBuilder.put(categoryNames[i], alternativesByCategory.get(i).get(alternativeIndexes[i]));
+			}
+
+			return reqBuilder.build();
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+
 	// private static Logger LOGGER = LoggerFactory.getLogger(MultiDecisionRequestFilter.class);
 
 	private MultiDecisionRequestFilter(final DatatypeFactoryRegistry datatypeFactoryRegistry, final boolean strictAttributeIssuerMatch, final boolean allowAttributeDuplicates,
@@ -124,7 +202,7 @@ public final class MultiDecisionRequestFilter extends BaseRequestFilter
 		 * a simpler Map implementation not preserving iteration order. Unfortunately, Koloboke - that we are using as HashMap alternative to JDK - does not support LinkedHashMap equivalent at the
 		 * moment: https://github.com/leventov/Koloboke/issues/47 (we should keep an eye on it). So until this resolved, we use JDK LinkedHashMap.
 		 */
-		final Map<String, Queue<SingleCategoryAttributes<?>>> multiReqAttrAlternativesByCategory = new LinkedHashMap<>();
+		final Map<String, List<SingleCategoryAttributes<?>>> multiReqAttrAlternativesByCategory = new LinkedHashMap<>();
 		for (final Attributes jaxbAttributes : attributesList)
 		{
 			final String categoryName = jaxbAttributes.getCategory();
@@ -135,11 +213,11 @@ public final class MultiDecisionRequestFilter extends BaseRequestFilter
 				continue;
 			}
 
-			final Queue<SingleCategoryAttributes<?>> oldAttrAlternatives = multiReqAttrAlternativesByCategory.get(categoryName);
-			final Queue<SingleCategoryAttributes<?>> newAttrAlternatives;
+			final List<SingleCategoryAttributes<?>> oldAttrAlternatives = multiReqAttrAlternativesByCategory.get(categoryName);
+			final List<SingleCategoryAttributes<?>> newAttrAlternatives;
 			if (oldAttrAlternatives == null)
 			{
-				newAttrAlternatives = new ArrayDeque<>();
+				newAttrAlternatives = new ArrayList<>();
 				multiReqAttrAlternativesByCategory.put(categoryName, newAttrAlternatives);
 			}
 			else
@@ -150,84 +228,16 @@ public final class MultiDecisionRequestFilter extends BaseRequestFilter
 			newAttrAlternatives.add(categoryAttributesAlternative);
 		}
 
-		/*
-		 * Create mutable initial individual request from which all others will be created/cloned
-		 */
-		// returnPolicyIdList not supported so always set to false
-		final IndividualXACMLRequestBuilder initialIndividualReqBuilder;
-		try
-		{
-			initialIndividualReqBuilder = new IndividualXACMLRequestBuilder(isApplicablePolicyIdListReturned);
-		}
-		catch (final IllegalArgumentException e)
-		{
-			throw new IndeterminateEvaluationException("Invalid RequestDefaults/XPathVersion", StatusHelper.STATUS_SYNTAX_ERROR, e);
-		}
-		/*
-		 * Generate the Multiple Individual Decision Requests starting with initialIndividualReq and cloning/adding new attributes/content for each new attribute category's Attributes alternative in
-		 * requestAttrAlternativesByCategory
-		 */
 		/*
 		 * XACML Multiple Decision Profile, § 2.3.3: "For each combination of repeated <Attributes> elements, one Individual Decision Request SHALL be created. This Individual Request SHALL be
 		 * identical to the original request context with one exception: only one <Attributes> element of each repeated category SHALL be present."
 		 */
-		final List<IndividualXACMLRequestBuilder> individualRequestBuilders = new ArrayList<>();
-		individualRequestBuilders.add(initialIndividualReqBuilder);
 		/*
-		 * In order to create the final individual decision requests, for each attribute category, add each alternative to individual request builders
+		 * Instead of materializing the cartesian product of the category alternatives, we return a lazy list that creates the Individual Decision Request at a given index (combination) only when
+		 * requested, so that memory usage depends on the number of requests in use at a given time (e.g. being evaluated), not on the number of combinations. As explained at the beginning of the
+		 * method, we want to make sure that categories are in the same order (of first occurrence) as in the request, so the map must guarantee that the iteration order is the same as insertion
+		 * order used previously (e.g. LinkedHashMap).
 		 */
-		final List<IndividualXACMLRequest> finalIndividualRequests = new ArrayList<>();
-		/*
-		 * As explained at the beginning of the method, at this point, we want to make sure that entries are returned in the same order (of first occurrence in the case of Multiple Decision Request)
-		 * as the categories in the request, where each category matches the key in the entry; because "Clients generally appreciate having things returned in the same order they were presented." So
-		 * the map should guarantee that the iteration order is the same as insertion order used previously (e.g. LinkedHashMap).
-		 */
-		final Iterator<Entry<String, Queue<SingleCategoryAttributes<?>>>> multiReqAttrAlternativesByCategoryIterator = multiReqAttrAlternativesByCategory.entrySet().iterator();
-		boolean isLastCategory = !multiReqAttrAlternativesByCategoryIterator.hasNext();
-		while (!isLastCategory)
-		{
-			final Entry<String, Queue<SingleCategoryAttributes<?>>> multiReqAttrAlternativesByCategoryEntry = multiReqAttrAlternativesByCategoryIterator.next();
-			final String categoryName = multiReqAttrAlternativesByCategoryEntry.getKey();
-			final Queue<SingleCategoryAttributes<?>> categorySpecificAlternatives = multiReqAttrAlternativesByCategoryEntry.getValue();
-			isLastCategory = !multiReqAttrAlternativesByCategoryIterator.hasNext();
-			final ListIterator<IndividualXACMLRequestBuilder> individualRequestsIterator = individualRequestBuilders.listIterator();
-			while (individualRequestsIterator.hasNext())
-			{
-				final IndividualXACMLRequestBuilder oldReqBuilder = individualRequestsIterator.next();
-				/*
-				 * Before we add the first category alternative (categoryAlternative0) to the oldReq already created (the "old" one), we clone it for every other alternative, then add this other
-				 * alternative to the new clone. Note that we called categoryAlternatives.poll() before, removing the first alternative, so categoryAlternatives only contains the other alternatives
-				 * now.
-				 */
-				try
-				{
-					for (final SingleCategoryAttributes<?> otherCategoryAlternative : categorySpecificAlternatives)
-					{
-						// clone the request
-						final IndividualXACMLRequestBuilder newReqBuilder = new IndividualXACMLRequestBuilder(oldReqBuilder);
-						newReqBuilder.put(categoryName, otherCategoryAlternative);
-						if (isLastCategory)
-						{
-							// we can finalize the request build
-							finalIndividualRequests.add(newReqBuilder.build());
-						}
-						else
-						{
-							/*
-							 * add the new request builder to the list of builders for the next round
-							 */
-							individualRequestsIterator.add(newReqBuilder);
-						}
-					}
-				}
-				catch (final IllegalArgumentException e)
-				{
-					throw new IndeterminateEvaluationException("Error converting Multiple Decision Request into multiple Individual Decision Requests", StatusHelper.STATUS_PROCESSING_ERROR, e);
-				}
-			}
-
-		}
-
-		return finalIndividualRequests;
+		return new IndividualXACMLRequestCombinations(isApplicablePolicyIdListReturned, multiReqAttrAlternativesByCategory);
 	}
 }
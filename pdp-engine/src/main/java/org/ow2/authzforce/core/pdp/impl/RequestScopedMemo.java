@@ -0,0 +1,151 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+
+/**
+ * Storage of a value computed at most once per evaluation context, e.g. the result of a Policy(Set) evaluation or the resolution of a policy reference, that may be required several times during
+ * the evaluation of the same Individual Decision Request. Each instance is assigned an integer slot when created (i.e. when parsing the policies), used as key in
+ * {@link SlotIndexedEvaluationContext}s; with other {@link EvaluationContext}s, the value is stored with {@link EvaluationContext#putOther(String, Object)} under a key derived from the slot.
+ * <p>
+ * The slot is unique among the instances not garbage-collected yet: the slot of an instance is reused only after the instance has been garbage-collected, i.e. when no evaluator - of any version
+ * of the policies - can use it anymore, so that root policy reloads do not exhaust the slots.
+ * <p>
+ * Thread-safe (the evaluation context does not need to be).
+ *
+ * @version $Id: $
+ */
+public final class RequestScopedMemo
+{
+	/*
+	 * Last new slot; slots are strictly positive
+	 */
+	private static final AtomicInteger LAST_SLOT = new AtomicInteger(0);
+
+	/*
+	 * References to the memos garbage-collected, whose slots may be reused
+	 */
+	private static final ReferenceQueue<RequestScopedMemo> COLLECTED_MEMOS = new ReferenceQueue<>();
+
+	/*
+	 * References to the memos not collected yet (a reference must be reachable to be enqueued in COLLECTED_MEMOS when its memo is collected)
+	 */
+	private static final Set<SlotReference> SLOT_REFERENCES = ConcurrentHashMap.newKeySet();
+
+	private static final class SlotReference extends PhantomReference<RequestScopedMemo>
+	{
+		private final int slot;
+
+		private SlotReference(final RequestScopedMemo memo, final int slot)
+		{
+			super(memo, COLLECTED_MEMOS);
+			this.slot = slot;
+		}
+	}
+
+	/*
+	 * Slot of a collected memo if any, else a new slot
+	 */
+	private static int newSlot() throws IllegalStateException
+	{
+		final Reference<? extends RequestScopedMemo> collectedMemoRef = COLLECTED_MEMOS.poll();
+		if (collectedMemoRef != null)
+		{
+			SLOT_REFERENCES.remove(collectedMemoRef);
+			return ((SlotReference) collectedMemoRef).slot;
+		}
+
+		return LAST_SLOT.updateAndGet(lastSlot -> {
+			if (lastSlot == Integer.MAX_VALUE)
+			{
+				// wrapping around would assign the slot of a memo still in use
+				throw new IllegalStateException("Too many RequestScopedMemos in use (" + Integer.MAX_VALUE + "): no slot left");
+			}
+
+			return lastSlot + 1;
+		});
+	}
+
+	private final int slot;
+
+	private final String contextKey;
+
+	/**
+	 * Creates a memo with a slot not used by any other memo
+	 * 
+	 * @throws IllegalStateException
+	 *             if {@link Integer#MAX_VALUE} memos are in use (not garbage-collected)
+	 */
+	public RequestScopedMemo() throws IllegalStateException
+	{
+		this.slot = newSlot();
+		SLOT_REFERENCES.add(new SlotReference(this, this.slot));
+		this.contextKey = RequestScopedMemo.class.getName() + '#' + this.slot;
+	}
+
+	/**
+	 * Gets the value stored in a given context
+	 *
+	 * @param context
+	 *            evaluation context
+	 * @return value stored in {@code context} by {@link #put(EvaluationContext, Object)}; or null if none
+	 */
+	public Object get(final EvaluationContext context)
+	{
+		if (context instanceof SlotIndexedEvaluationContext)
+		{
+			return ((SlotIndexedEvaluationContext) context).getMemo(slot);
+		}
+
+		return context.getOther(contextKey);
+	}
+
+	/**
+	 * Stores a value in a given context, replacing the previous one if any
+	 *
+	 * @param context
+	 *            evaluation context
+	 * @param value
+	 *            value (not null)
+	 */
+	public void put(final EvaluationContext context, final Object value)
+	{
+		assert value != null;
+		if (context instanceof SlotIndexedEvaluationContext)
+		{
+			((SlotIndexedEvaluationContext) context).putMemo(slot, value);
+			return;
+		}
+
+		context.putOther(contextKey, value);
+	}
+
+	@Override
+	public String toString()
+	{
+		return contextKey;
+	}
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
+import org.ow2.authzforce.core.xmlns.pdp.MatchEvaluationOrder;
+
+/**
+ * Order of evaluation of the children of a Target element that stops as soon as a child's result is decisive: the Matches of an AllOf and the AnyOfs of a Target (stop on the first No-match), the
+ * AllOfs of an AnyOf (stop on the first Match). The result of such element does not depend on the order of evaluation of the children, as long as the Indeterminate reported when no child is
+ * decisive is the one of the last child in document order (as if evaluated in document order); therefore the children may be evaluated in any order. Depending on the
+ * {@link MatchEvaluationOrder}:
+ * <ul>
+ * <li>DOCUMENT: document order.</li>
+ * <li>COST: increasing order of estimated cost (e.g. a Match on an AttributeSelector costs more than a Match on an AttributeDesignator), fixed when the policy is parsed.</li>
+ * <li>ADAPTIVE: starts as COST, then the order is recomputed periodically from statistics collected on the children: how often each child is decisive, and the average time spent evaluating it
+ * (measured on a sample of the evaluations). The children are evaluated in increasing order of average time divided by the probability of being decisive, which minimizes the expected evaluation
+ * time of independent children. Therefore a costly Match (e.g. on an attribute resolved by an Attribute Provider) that is rarely decisive is moved after a cheap Match on a request attribute that
+ * often is.</li>
+ * </ul>
+ * Thread-safe. The statistics are updated without synchronization: lost updates under contention only make them slightly less accurate.
+ *
+ * @version $Id: $
+ */
+final class ShortCircuitEvaluationOrder
+{
+	/*
+	 * The time spent evaluating the children is measured once every SAMPLING_PERIOD evaluations (power of 2) of the parent element
+	 */
+	private static final int SAMPLING_PERIOD = 16;
+
+	/*
+	 * The order is recomputed every REORDERING_PERIOD evaluations (power of 2) of the parent element
+	 */
+	private static final int REORDERING_PERIOD = 1024;
+
+	/**
+	 * Get the order configured for the policies parsed by a given expression factory
+	 *
+	 * @param expressionFactory
+	 *            expression factory used to parse the policies
+	 * @return the order configured on the PDP if {@code expressionFactory} is a {@link DepthLimitingExpressionFactory}, else DOCUMENT
+	 */
+	static MatchEvaluationOrder getMode(final ExpressionFactory expressionFactory)
+	{
+		return expressionFactory instanceof DepthLimitingExpressionFactory ? ((DepthLimitingExpressionFactory) expressionFactory).getMatchEvaluationOrder() : MatchEvaluationOrder.DOCUMENT;
+	}
+
+	private final int[] costEstimates;
+	private final boolean adaptive;
+
+	private volatile int[] order;
+
+	/*
+	 * Statistics by child (in document order), null unless adaptive
+	 */
+	private final int[] evaluationCounts;
+	private final int[] decisiveCounts;
+	private final int[] sampleCounts;
+	private final long[] sampledNanos;
+
+	private int parentEvaluationCount = 0;
+
+	/**
+	 * Creates evaluation order
+	 *
+	 * @param mode
+	 *            order mode
+	 * @param costEstimates
+	 *            estimated costs of the children in document order (arbitrary unit)
+	 */
+	ShortCircuitEvaluationOrder(final MatchEvaluationOrder mode, final int[] costEstimates)
+	{
+		assert mode != null && costEstimates != null;
+		this.costEstimates = costEstimates;
+		final int childCount = costEstimates.length;
+		final Integer[] sortedChildIndexes = new Integer[childCount];
+		for (int i = 0; i < childCount; i++)
+		{
+			sortedChildIndexes[i] = i;
+		}
+
+		if (mode != MatchEvaluationOrder.DOCUMENT)
+		{
+			// stable sort: document order among children with the same cost
+			Arrays.sort(sortedChildIndexes, Comparator.comparingInt(childIndex -> costEstimates[childIndex]));
+		}
+
+		this.order = toIntArray(sortedChildIndexes);
+		this.adaptive = mode == MatchEvaluationOrder.ADAPTIVE && childCount > 1;
+		if (adaptive)
+		{
+			this.evaluationCounts = new int[childCount];
+			this.decisiveCounts = new int[childCount];
+			this.sampleCounts = new int[childCount];
+			this.sampledNanos = new long[childCount];
+		}
+		else
+		{
+			this.evaluationCounts = null;
+			this.decisiveCounts = null;
+			this.sampleCounts = null;
+			this.sampledNanos = null;
+		}
+	}
+
+	private static int[] toIntArray(final Integer[] integers)
+	{
+		final int[] ints = new int[integers.length];
+		for (int i = 0; i < integers.length; i++)
+		{
+			ints[i] = integers[i];
+		}
+
+		return ints;
+	}
+
+	/**
+	 * Get the indexes (in document order) of the children in the order in which they must be evaluated
+	 *
+	 * @return child indexes in order of evaluation (must not be modified)
+	 */
+	int[] get()
+	{
+		return order;
+	}
+
+	/**
+	 * Notifies the beginning of an evaluation of the parent element, to be called before evaluating any child
+	 *
+	 * @return true iff the time spent evaluating each child must be measured and passed to {@link #childEvaluated(int, boolean, long)} in this evaluation
+	 */
+	boolean startEvaluation()
+	{
+		if (!adaptive)
+		{
+			return false;
+		}
+
+		final int count = ++parentEvaluationCount;
+		if ((count & (REORDERING_PERIOD - 1)) == 0)
+		{
+			reorder();
+		}
+
+		return (count & (SAMPLING_PERIOD - 1)) == 0;
+	}
+
+	/**
+	 * Records the result of a child evaluation (no effect unless the mode is ADAPTIVE)
+	 *
+	 * @param childIndex
+	 *            index of the child in document order
+	 * @param decisive
+	 *            true iff the child's result determines the parent's result (No-match for a Match in an AllOf or an AnyOf in a Target, Match for an AllOf in an AnyOf)
+	 * @param durationNanos
+	 *            time spent evaluating the child if measured (see {@link #startEvaluation()}), else negative
+	 */
+	void childEvaluated(final int childIndex, final boolean decisive, final long durationNanos)
+	{
+		if (!adaptive)
+		{
+			return;
+		}
+
+		evaluationCounts[childIndex]++;
+		if (decisive)
+		{
+			decisiveCounts[childIndex]++;
+		}
+
+		if (durationNanos >= 0)
+		{
+			sampleCounts[childIndex]++;
+			sampledNanos[childIndex] += durationNanos;
+		}
+	}
+
+	private void reorder()
+	{
+		final int childCount = costEstimates.length;
+		/*
+		 * Average time of each child, from a snapshot of the statistics (which may be updated concurrently); NaN if no sample
+		 */
+		final double[] averageNanos = new double[childCount];
+		/*
+		 * Average nanoseconds per unit of estimated cost among the children with samples, to estimate the time of the children without samples (never or rarely reached)
+		 */
+		double totalSampledNanos = 0;
+		long totalSampledCost = 0;
+		for (int i = 0; i < childCount; i++)
+		{
+			final int sampleCount = sampleCounts[i];
+			if (sampleCount > 0)
+			{
+				averageNanos[i] = (double) sampledNanos[i] / sampleCount;
+				totalSampledNanos += averageNanos[i];
+				totalSampledCost += costEstimates[i];
+			}
+			else
+			{
+				averageNanos[i] = Double.NaN;
+			}
+		}
+
+		final double nanosPerCostUnit = totalSampledCost == 0 ? 1 : totalSampledNanos / totalSampledCost;
+		final double[] ranks = new double[childCount];
+		final Integer[] sortedChildIndexes = new Integer[childCount];
+		for (int i = 0; i < childCount; i++)
+		{
+			final double childNanos = Double.isNaN(averageNanos[i]) ? costEstimates[i] * nanosPerCostUnit : averageNanos[i];
+			// Laplace smoothing so that a child never evaluated has probability 1/2
+			final double decisiveProbability = (decisiveCounts[i] + 1.0) / (evaluationCounts[i] + 2.0);
+			ranks[i] = childNanos / decisiveProbability;
+			sortedChildIndexes[i] = i;
+
+			/*
+			 * Halve the statistics so that they follow changes of the request patterns (and never overflow)
+			 */
+			evaluationCounts[i] /= 2;
+			decisiveCounts[i] /= 2;
+			sampleCounts[i] /= 2;
+			sampledNanos[i] /= 2;
+		}
+
+		Arrays.sort(sortedChildIndexes, Comparator.comparingDouble(childIndex -> ranks[childIndex]));
+		this.order = toIntArray(sortedChildIndexes);
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.Set;
+
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
+import org.ow2.authzforce.core.pdp.api.value.Value;
+
+/**
+ * {@link EvaluationContext} where the values of VariableDefinitions and {@link RequestScopedMemo}s may be looked up by integer slot instead of hashing a String key:
+ * <ul>
+ * <li>The slot of a VariableDefinition is a small index assigned when the enclosing Policy is parsed (the index of the VariableDefinition among the ones of the Policy). Since a Policy's variables
+ * are removed from the context at the end of the Policy evaluation, the same slot is reused by the variables of other Policies; therefore the VariableId is passed as well to detect a value left by
+ * another Policy.</li>
+ * <li>The slot of a {@link RequestScopedMemo} is unique among all the memos created in the JVM (from a global counter, wrapping around to 1), therefore may be large and sparse: implementations must
+ * not use it as direct array index.</li>
+ * </ul>
+ * <p>
+ * The PDP engine uses the slot-indexed methods whenever the context implements this interface, else the String-keyed ones from {@link EvaluationContext}.
+ *
+ * @version $Id: $
+ */
+public interface SlotIndexedEvaluationContext extends EvaluationContext
+{
+	/**
+	 * Returns the value of a VariableDefinition's expression evaluated in this context, if any
+	 *
+	 * @param slot
+	 *            variable slot (positive)
+	 * @param variableId
+	 *            VariableId
+	 * @param expectedDatatype
+	 *            expected datatype of the variable value
+	 * @return value of the variable {@code variableId} in this context, or null if not evaluated yet
+	 * @throws IndeterminateEvaluationException
+	 *             if the value in context does not match {@code expectedDatatype}
+	 */
+	<V extends Value> V getVariableValue(int slot, String variableId, Datatype<V> expectedDatatype) throws IndeterminateEvaluationException;
+
+	/**
+	 * Caches the value of a VariableDefinition's expression evaluated in this context
+	 *
+	 * @param slot
+	 *            variable slot (positive)
+	 * @param variableId
+	 *            VariableId
+	 * @param value
+	 *            value of the variable
+	 * @return false iff there is already a value for this variable in the context (the value is not overridden)
+	 */
+	boolean putVariableIfAbsent(int slot, String variableId, Value value);
+
+	/**
+	 * Returns the value of a {@link RequestScopedMemo} in this context
+	 *
+	 * @param slot
+	 *            memo slot (strictly positive, unique for each memo)
+	 * @return value put by {@link #putMemo(int, Object)} with the same slot, or null if none
+	 */
+	Object getMemo(int slot);
+
+	/**
+	 * Sets the value of a {@link RequestScopedMemo} in this context, replacing the previous one if any
+	 *
+	 * @param slot
+	 *            memo slot (strictly positive, unique for each memo)
+	 * @param value
+	 *            memo value (not null)
+	 */
+	void putMemo(int slot, Object value);
+
+	/**
+	 * Returns a hash index of the values of a bag, to check whether a value is in the bag in constant time instead of searching the bag linearly. Implementations may index a bag instance only when
+	 * it is looked up more than once (the bag of a named attribute or variable is the same instance every time it is requested from this context), and return null on the first lookup, so that bags
+	 * looked up only once (e.g. results of function calls) are not indexed or kept in the context. An index is built at most once per bag instance and Individual Decision Request.
+	 * <p>
+	 * The index relies on {@link AttributeValue#equals(Object)} and {@link AttributeValue#hashCode()}, therefore must be used only for datatypes where these are consistent with the XACML equality
+	 * function.
+	 *
+	 * @param bag
+	 *            bag of values
+	 * @return the distinct values of {@code bag}; or null if {@code bag} is not indexed (yet) in this context, in particular if smaller than the minimum size for indexing configured on the PDP
+	 *         (searching the bag linearly is then as efficient)
+	 */
+	Set<? extends AttributeValue> getBagIndex(Bag<?> bag);
+}
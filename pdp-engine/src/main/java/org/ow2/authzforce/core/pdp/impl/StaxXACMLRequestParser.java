@@ -0,0 +1,675 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.dom.DOMSource;
+
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.XdmNode;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attribute;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeValueType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attributes;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.AttributeSources;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.ImmutablePdpDecisionRequest;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.DatatypeFactory;
+import org.ow2.authzforce.core.pdp.api.value.DatatypeFactoryRegistry;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Streaming parser of XACML 3.0 Requests in XML, based on StAX, that creates the Individual Decision Request directly from the XML input, i.e. without unmarshalling the Request to JAXB objects
+ * first. The attribute values are parsed with the datatype factories as they are read, and grouped in bags by attribute name; a Content element is parsed (with the XML processor) only if
+ * {@code requireContentForXPath}, else skipped.
+ * <p>
+ * This parser supports the same Requests as {@link DefaultRequestFilter}, i.e. no Multiple Decision Profile (no repeated attribute categories, no MultiRequests, no CombinedDecision), with the
+ * following restrictions:
+ * <ul>
+ * <li>The input is not validated against the XACML schema, but only checked for the structure and XML attributes used by this parser.</li>
+ * <li>AttributeValues must have text-only content (no child element).</li>
+ * <li>XPath expressions in AttributeValues (xpathExpression datatype) may use only the namespace prefixes declared on the Request element.</li>
+ * </ul>
+ * Attributes to be included in the Result (IncludeInResult="true") are returned as JAXB {@link Attributes} along with the decision request (only these are created as JAXB objects).
+ * <p>
+ * Thread-safe.
+ *
+ * @version $Id: $
+ */
+public final class StaxXACMLRequestParser
+{
+	private static final String XACML_3_0_NAMESPACE_URI = "urn:oasis:names:tc:xacml:3.0:core:schema:wd-17";
+
+	private static final IllegalArgumentException NULL_DATATYPE_FACTORY_REGISTRY_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined attribute datatype registry");
+	private static final IllegalArgumentException NULL_XML_PROCESSOR_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined XML processor (required for Content elements)");
+
+	private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+	static
+	{
+		/*
+		 * Prevent XXE attacks
+		 */
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+	}
+
+	private static final DocumentBuilderFactory DOM_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+	static
+	{
+		DOM_BUILDER_FACTORY.setNamespaceAware(true);
+	}
+
+	/**
+	 * Individual Decision Request parsed from XACML/XML input, with the attributes to be included in the Result
+	 */
+	public static final class ParsedRequest
+	{
+		private final ImmutablePdpDecisionRequest decisionRequest;
+		private final List<Attributes> attributesToIncludeInResult;
+
+		private ParsedRequest(final ImmutablePdpDecisionRequest decisionRequest, final List<Attributes> attributesToIncludeInResult)
+		{
+			this.decisionRequest = decisionRequest;
+			this.attributesToIncludeInResult = attributesToIncludeInResult;
+		}
+
+		/**
+		 * Get the decision request to be evaluated, e.g. by {@link BasePdpEngine#evaluate(ImmutablePdpDecisionRequest)}
+		 *
+		 * @return decision request
+		 */
+		public ImmutablePdpDecisionRequest getDecisionRequest()
+		{
+			return decisionRequest;
+		}
+
+		/**
+		 * Get the attributes with IncludeInResult="true" in the input Request, to be included in the Result, e.g. with {@code PdpDecisionResult#toXACMLResult(List)}
+		 *
+		 * @return attributes to be included in the Result, by category (empty if none)
+		 */
+		public List<Attributes> getAttributesToIncludeInResult()
+		{
+			return attributesToIncludeInResult;
+		}
+	}
+
+	/*
+	 * Values of an attribute in the Request, as parsed so far
+	 */
+	private static final class AttributeValues<AV extends AttributeValue>
+	{
+		private final DatatypeFactory<AV> datatypeFactory;
+		private final List<AV> values = new ArrayList<>();
+
+		private AttributeValues(final DatatypeFactory<AV> datatypeFactory)
+		{
+			this.datatypeFactory = datatypeFactory;
+		}
+
+		private void add(final String text, final Map<QName, String> otherXmlAttributes, final XPathCompiler xPathCompiler) throws IllegalArgumentException
+		{
+			values.add(datatypeFactory.getInstance(Collections.<Serializable> singletonList(text), otherXmlAttributes, xPathCompiler));
+		}
+
+		private AttributeBag<AV> toBag()
+		{
+			return Bags.newAttributeBag(datatypeFactory.getDatatype(), values, AttributeSources.REQUEST);
+		}
+	}
+
+	private static <AV extends AttributeValue> AttributeValues<AV> newAttributeValues(final DatatypeFactory<AV> datatypeFactory)
+	{
+		return new AttributeValues<>(datatypeFactory);
+	}
+
+	private static IndeterminateEvaluationException newSyntaxError(final XMLStreamReader reader, final String message)
+	{
+		return new IndeterminateEvaluationException("Invalid XACML Request (line " + reader.getLocation().getLineNumber() + "): " + message, StatusHelper.STATUS_SYNTAX_ERROR);
+	}
+
+	private static void requireXacmlElement(final XMLStreamReader reader, final String expectedLocalName) throws IndeterminateEvaluationException
+	{
+		if (!XACML_3_0_NAMESPACE_URI.equals(reader.getNamespaceURI()) || !expectedLocalName.equals(reader.getLocalName()))
+		{
+			throw newSyntaxError(reader, "unexpected element " + reader.getName() + " (expected: " + new QName(XACML_3_0_NAMESPACE_URI, expectedLocalName) + ")");
+		}
+	}
+
+	private static String getRequiredAttribute(final XMLStreamReader reader, final String attributeName) throws IndeterminateEvaluationException
+	{
+		final String value = reader.getAttributeValue(null, attributeName);
+		if (value == null)
+		{
+			throw newSyntaxError(reader, "missing attribute '" + attributeName + "' on element " + reader.getLocalName());
+		}
+
+		return value;
+	}
+
+	private static boolean getBooleanAttribute(final XMLStreamReader reader, final String attributeName) throws IndeterminateEvaluationException
+	{
+		final String value = reader.getAttributeValue(null, attributeName);
+		if (value == null)
+		{
+			return false;
+		}
+
+		/*
+		 * xs:boolean lexical space
+		 */
+		switch (value.trim())
+		{
+			case "true":
+			case "1":
+				return true;
+			case "false":
+			case "0":
+				return false;
+			default:
+				throw newSyntaxError(reader, "invalid boolean value of attribute '" + attributeName + "': " + value);
+		}
+	}
+
+	/*
+	 * Skips the current element (reader on START_ELEMENT) and its descendants, leaving the reader on the corresponding END_ELEMENT
+	 */
+	private static void skipElement(final XMLStreamReader reader) throws XMLStreamException
+	{
+		int depth = 1;
+		while (depth > 0)
+		{
+			final int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+			{
+				depth++;
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT)
+			{
+				depth--;
+			}
+		}
+	}
+
+	/*
+	 * Copies the current element (reader on START_ELEMENT) and its descendants to a DOM node, leaving the reader on the corresponding END_ELEMENT
+	 */
+	private static void copyElement(final XMLStreamReader reader, final Document doc, final Node parent) throws XMLStreamException
+	{
+		final String prefix = reader.getPrefix();
+		final Element element = doc.createElementNS(reader.getNamespaceURI(), prefix == null || prefix.isEmpty() ? reader.getLocalName() : prefix + ':' + reader.getLocalName());
+		for (int i = 0; i < reader.getNamespaceCount(); i++)
+		{
+			final String nsPrefix = reader.getNamespacePrefix(i);
+			element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, nsPrefix == null || nsPrefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ':' + nsPrefix,
+					reader.getNamespaceURI(i));
+		}
+
+		for (int i = 0; i < reader.getAttributeCount(); i++)
+		{
+			final String attPrefix = reader.getAttributePrefix(i);
+			final String attNamespaceURI = reader.getAttributeNamespace(i);
+			element.setAttributeNS(attNamespaceURI == null || attNamespaceURI.isEmpty() ? null : attNamespaceURI, attPrefix == null || attPrefix.isEmpty() ? reader.getAttributeLocalName(i)
+					: attPrefix + ':' + reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+		}
+
+		parent.appendChild(element);
+		while (true)
+		{
+			switch (reader.next())
+			{
+				case XMLStreamConstants.START_ELEMENT:
+					copyElement(reader, doc, element);
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					element.appendChild(doc.createTextNode(reader.getText()));
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					return;
+				default:
+					// comments, processing instructions: ignored
+					break;
+			}
+		}
+	}
+
+	private final DatatypeFactoryRegistry datatypeFactoryRegistry;
+	private final boolean allowAttributeDuplicates;
+	private final boolean requireContentForXPath;
+	private final Processor xmlProcessor;
+
+	/**
+	 * Creates parser
+	 *
+	 * @param datatypeFactoryRegistry
+	 *            attribute datatype registry
+	 * @param allowAttributeDuplicates
+	 *            true iff duplicate Attribute (with same metadata) elements in Request (for multi-valued attributes) must be allowed
+	 * @param requireContentForXPath
+	 *            true iff Content elements must be parsed, else ignored
+	 * @param xmlProcessor
+	 *            XML processor for parsing Content elements iff {@code requireContentForXPath}
+	 * @throws IllegalArgumentException
+	 *             if {@code datatypeFactoryRegistry == null || (requireContentForXPath && xmlProcessor == null)}
+	 */
+	public StaxXACMLRequestParser(final DatatypeFactoryRegistry datatypeFactoryRegistry, final boolean allowAttributeDuplicates, final boolean requireContentForXPath, final Processor xmlProcessor)
+			throws IllegalArgumentException
+	{
+		if (datatypeFactoryRegistry == null)
+		{
+			throw NULL_DATATYPE_FACTORY_REGISTRY_ARGUMENT_EXCEPTION;
+		}
+
+		if (requireContentForXPath && xmlProcessor == null)
+		{
+			throw NULL_XML_PROCESSOR_ARGUMENT_EXCEPTION;
+		}
+
+		this.datatypeFactoryRegistry = datatypeFactoryRegistry;
+		this.allowAttributeDuplicates = allowAttributeDuplicates;
+		this.requireContentForXPath = requireContentForXPath;
+		this.xmlProcessor = xmlProcessor;
+	}
+
+	/**
+	 * Parses a XACML Request
+	 *
+	 * @param input
+	 *            XACML/XML Request (not closed by this method)
+	 * @param requestBuilder
+	 *            (empty) builder of the decision request, e.g. from {@link BasePdpEngine#newRequestBuilder(int, int)}
+	 * @return the decision request and attributes to be included in the Result
+	 * @throws IndeterminateEvaluationException
+	 *             if the input is not a valid XACML Request (status code: syntax-error), or uses an unsupported feature such as Multiple Decision Profile
+	 */
+	public ParsedRequest parse(final InputStream input, final PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest> requestBuilder) throws IndeterminateEvaluationException
+	{
+		assert input != null && requestBuilder != null;
+
+		final XMLStreamReader reader;
+		try
+		{
+			reader = XML_INPUT_FACTORY.createXMLStreamReader(input);
+		}
+		catch (final XMLStreamException e)
+		{
+			throw new IndeterminateEvaluationException("Invalid XACML Request: " + e.getMessage(), StatusHelper.STATUS_SYNTAX_ERROR, e);
+		}
+
+		try
+		{
+			return parseRequest(reader, requestBuilder);
+		}
+		catch (final XMLStreamException e)
+		{
+			throw new IndeterminateEvaluationException("Invalid XACML Request: " + e.getMessage(), StatusHelper.STATUS_SYNTAX_ERROR, e);
+		}
+		finally
+		{
+			try
+			{
+				reader.close();
+			}
+			catch (final XMLStreamException e)
+			{
+				// nothing to release that matters, the input stream is closed by the caller
+			}
+		}
+	}
+
+	/**
+	 * Parses a XACML Request from the remaining bytes of a buffer (the buffer's position is not changed)
+	 *
+	 * @param input
+	 *            XACML/XML Request
+	 * @param requestBuilder
+	 *            (empty) builder of the decision request, e.g. from {@link BasePdpEngine#newRequestBuilder(int, int)}
+	 * @return the decision request and attributes to be included in the Result
+	 * @throws IndeterminateEvaluationException
+	 *             if the input is not a valid XACML Request (status code: syntax-error), or uses an unsupported feature such as Multiple Decision Profile
+	 */
+	public ParsedRequest parse(final ByteBuffer input, final PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest> requestBuilder) throws IndeterminateEvaluationException
+	{
+		assert input != null;
+
+		final InputStream inputStream;
+		if (input.hasArray())
+		{
+			inputStream = new ByteArrayInputStream(input.array(), input.arrayOffset() + input.position(), input.remaining());
+		}
+		else
+		{
+			final byte[] bytes = new byte[input.remaining()];
+			input.duplicate().get(bytes);
+			inputStream = new ByteArrayInputStream(bytes);
+		}
+
+		return parse(inputStream, requestBuilder);
+	}
+
+	private ParsedRequest parseRequest(final XMLStreamReader reader, final PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest> requestBuilder) throws XMLStreamException,
+			IndeterminateEvaluationException
+	{
+		reader.nextTag();
+		requireXacmlElement(reader, "Request");
+		final boolean returnPolicyIdList = getBooleanAttribute(reader, "ReturnPolicyIdList");
+		if (getBooleanAttribute(reader, "CombinedDecision"))
+		{
+			throw newSyntaxError(reader, "unsupported feature: CombinedDecision='true'");
+		}
+
+		final XPathCompiler xPathCompiler;
+		if (requireContentForXPath)
+		{
+			xPathCompiler = xmlProcessor.newXPathCompiler();
+			for (int i = 0; i < reader.getNamespaceCount(); i++)
+			{
+				final String prefix = reader.getNamespacePrefix(i);
+				xPathCompiler.declareNamespace(prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix, reader.getNamespaceURI(i));
+			}
+		}
+		else
+		{
+			xPathCompiler = null;
+		}
+
+		final Set<String> categories = HashCollections.newUpdatableSet();
+		/*
+		 * Values by attribute, in order of appearance
+		 */
+		final Map<AttributeFQN, AttributeValues<?>> attributeValuesByFQN = HashCollections.newUpdatableMap();
+		final List<Attributes> attributesToIncludeInResult = new ArrayList<>();
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+		{
+			if (!XACML_3_0_NAMESPACE_URI.equals(reader.getNamespaceURI()))
+			{
+				throw newSyntaxError(reader, "unexpected element " + reader.getName());
+			}
+
+			switch (reader.getLocalName())
+			{
+				case "RequestDefaults":
+					/*
+					 * XPathVersion: the XPath version of the XPath compiler is the one of the XML processor
+					 */
+					skipElement(reader);
+					break;
+				case "Attributes":
+					final String category = getRequiredAttribute(reader, "Category");
+					/*
+					 * No support for Multiple Decision Profile -> no support for repeated categories as specified in Multiple Decision Profile.
+					 */
+					if (!categories.add(category))
+					{
+						throw newSyntaxError(reader, "unsupported repetition of Attributes[@Category='" + category
+								+ "'] (feature 'urn:oasis:names:tc:xacml:3.0:profile:multiple:repeated-attribute-categories' is not supported)");
+					}
+
+					final Attributes includedAttributes = parseAttributes(reader, category, attributeValuesByFQN, requestBuilder, xPathCompiler);
+					if (includedAttributes != null)
+					{
+						attributesToIncludeInResult.add(includedAttributes);
+					}
+					break;
+				case "MultiRequests":
+					throw newSyntaxError(reader, "unsupported feature: MultiRequests (feature 'urn:oasis:names:tc:xacml:3.0:profile:multiple:reference' is not supported)");
+				default:
+					throw newSyntaxError(reader, "unexpected element " + reader.getName());
+			}
+		}
+
+		/*
+		 * Attributes without Issuer first, so that they are not hidden by the copies without Issuer of the attributes with Issuer that the request builder may create (if strict Attribute Issuer
+		 * match is disabled)
+		 */
+		for (final Entry<AttributeFQN, AttributeValues<?>> attributeEntry : attributeValuesByFQN.entrySet())
+		{
+			if (!attributeEntry.getKey().getIssuer().isPresent())
+			{
+				requestBuilder.putNamedAttributeIfAbsent(attributeEntry.getKey(), attributeEntry.getValue().toBag());
+			}
+		}
+
+		for (final Entry<AttributeFQN, AttributeValues<?>> attributeEntry : attributeValuesByFQN.entrySet())
+		{
+			if (attributeEntry.getKey().getIssuer().isPresent())
+			{
+				requestBuilder.putNamedAttributeIfAbsent(attributeEntry.getKey(), attributeEntry.getValue().toBag());
+			}
+		}
+
+		return new ParsedRequest(requestBuilder.build(returnPolicyIdList), ImmutableList.copyOf(attributesToIncludeInResult));
+	}
+
+	/*
+	 * Parses Attributes element (reader on START_ELEMENT), returns the attributes to be included in the Result if any, else null
+	 */
+	private Attributes parseAttributes(final XMLStreamReader reader, final String category, final Map<AttributeFQN, AttributeValues<?>> attributeValuesByFQN,
+			final PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest> requestBuilder, final XPathCompiler xPathCompiler) throws XMLStreamException, IndeterminateEvaluationException
+	{
+		List<Attribute> includedAttributes = null;
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+		{
+			if (XACML_3_0_NAMESPACE_URI.equals(reader.getNamespaceURI()) && "Content".equals(reader.getLocalName()))
+			{
+				if (requireContentForXPath)
+				{
+					requestBuilder.putContentIfAbsent(category, parseContent(reader));
+				}
+				else
+				{
+					skipElement(reader);
+				}
+
+				continue;
+			}
+
+			requireXacmlElement(reader, "Attribute");
+			final Attribute includedAttribute = parseAttribute(reader, category, attributeValuesByFQN, xPathCompiler);
+			if (includedAttribute != null)
+			{
+				if (includedAttributes == null)
+				{
+					includedAttributes = new ArrayList<>();
+				}
+
+				includedAttributes.add(includedAttribute);
+			}
+		}
+
+		return includedAttributes == null ? null : new Attributes(null, includedAttributes, category, null);
+	}
+
+	/*
+	 * Parses Attribute element (reader on START_ELEMENT), returns the JAXB Attribute if it must be included in the Result, else null
+	 */
+	private Attribute parseAttribute(final XMLStreamReader reader, final String category, final Map<AttributeFQN, AttributeValues<?>> attributeValuesByFQN, final XPathCompiler xPathCompiler)
+			throws XMLStreamException, IndeterminateEvaluationException
+	{
+		final String attributeId = getRequiredAttribute(reader, "AttributeId");
+		final String issuer = reader.getAttributeValue(null, "Issuer");
+		final boolean includeInResult = getBooleanAttribute(reader, "IncludeInResult");
+		final AttributeFQN attributeFQN = AttributeFQNs.newInstance(category, Optional.ofNullable(issuer), attributeId);
+		AttributeValues<?> attributeValues = attributeValuesByFQN.get(attributeFQN);
+		if (attributeValues != null && !allowAttributeDuplicates)
+		{
+			throw newSyntaxError(reader, "duplicate Attribute found: " + attributeFQN + " (duplicate Attributes with same metadata are not allowed)");
+		}
+
+		final List<AttributeValueType> includedValues = includeInResult ? new ArrayList<AttributeValueType>() : null;
+		boolean hasAttributeValue = false;
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+		{
+			requireXacmlElement(reader, "AttributeValue");
+			hasAttributeValue = true;
+			final String datatypeId = getRequiredAttribute(reader, "DataType");
+			final Map<QName, String> otherXmlAttributes;
+			if (reader.getAttributeCount() == 1)
+			{
+				otherXmlAttributes = Collections.emptyMap();
+			}
+			else
+			{
+				otherXmlAttributes = HashCollections.newUpdatableMap(reader.getAttributeCount() - 1);
+				for (int i = 0; i < reader.getAttributeCount(); i++)
+				{
+					final QName xmlAttributeName = reader.getAttributeName(i);
+					if (!xmlAttributeName.getNamespaceURI().isEmpty() || !xmlAttributeName.getLocalPart().equals("DataType"))
+					{
+						otherXmlAttributes.put(xmlAttributeName, reader.getAttributeValue(i));
+					}
+				}
+			}
+
+			if (attributeValues == null)
+			{
+				final DatatypeFactory<?> datatypeFactory = datatypeFactoryRegistry.getExtension(datatypeId);
+				if (datatypeFactory == null)
+				{
+					throw newSyntaxError(reader, "unsupported DataType of Attribute " + attributeFQN + ": " + datatypeId);
+				}
+
+				attributeValues = newAttributeValues(datatypeFactory);
+				attributeValuesByFQN.put(attributeFQN, attributeValues);
+			}
+			else if (!attributeValues.datatypeFactory.getDatatype().getId().equals(datatypeId))
+			{
+				throw newSyntaxError(reader, "AttributeValues of Attribute " + attributeFQN + " with different DataTypes: " + attributeValues.datatypeFactory.getDatatype().getId() + ", " + datatypeId);
+			}
+
+			final String text;
+			try
+			{
+				text = reader.getElementText();
+			}
+			catch (final XMLStreamException e)
+			{
+				throw new IndeterminateEvaluationException("Invalid or unsupported XACML Request: AttributeValue of Attribute " + attributeFQN
+						+ " with non-text content (only text content is supported by this parser)", StatusHelper.STATUS_SYNTAX_ERROR, e);
+			}
+
+			try
+			{
+				attributeValues.add(text, otherXmlAttributes, xPathCompiler);
+			}
+			catch (final IllegalArgumentException e)
+			{
+				throw new IndeterminateEvaluationException("Invalid XACML Request: invalid AttributeValue of Attribute " + attributeFQN + " for DataType " + datatypeId, StatusHelper.STATUS_SYNTAX_ERROR,
+						e);
+			}
+
+			if (includedValues != null)
+			{
+				includedValues.add(new AttributeValueType(Collections.<Serializable> singletonList(text), datatypeId, otherXmlAttributes));
+			}
+		}
+
+		// at least one AttributeValue required by the XACML schema
+		if (!hasAttributeValue)
+		{
+			throw newSyntaxError(reader, "no AttributeValue in Attribute " + attributeFQN);
+		}
+
+		return includedValues == null ? null : new Attribute(includedValues, attributeId, issuer, true);
+	}
+
+	/*
+	 * Parses Content element (reader on START_ELEMENT) into a XML document whose root element is the child element of Content
+	 */
+	private XdmNode parseContent(final XMLStreamReader reader) throws XMLStreamException, IndeterminateEvaluationException
+	{
+		final Document doc;
+		try
+		{
+			doc = DOM_BUILDER_FACTORY.newDocumentBuilder().newDocument();
+		}
+		catch (final ParserConfigurationException e)
+		{
+			throw new RuntimeException("Failed to create DOM document for XACML Request Content", e);
+		}
+
+		while (true)
+		{
+			switch (reader.next())
+			{
+				case XMLStreamConstants.START_ELEMENT:
+					if (doc.getDocumentElement() != null)
+					{
+						throw newSyntaxError(reader, "more than one child element in Content");
+					}
+
+					copyElement(reader, doc, doc);
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if (doc.getDocumentElement() == null)
+					{
+						throw newSyntaxError(reader, "no child element in Content");
+					}
+
+					try
+					{
+						return xmlProcessor.newDocumentBuilder().build(new DOMSource(doc));
+					}
+					catch (final SaxonApiException e)
+					{
+						throw new IndeterminateEvaluationException("Invalid XACML Request: invalid Content", StatusHelper.STATUS_SYNTAX_ERROR, e);
+					}
+				default:
+					// whitespace, comments, processing instructions: ignored
+					break;
+			}
+		}
+	}
+}
@@ -61,15 +61,17 @@ public final class TargetEvaluators
 	{
 		// Have a copy of AnyOf evaluators to avoid cast from JAXB AnyOf in
 		// super JAXB type
-		// non-null
-		private final List<AnyOfEvaluator> anyOfEvaluatorList;
+		// non-null (in document order)
+		private final AnyOfEvaluator[] anyOfEvaluators;
+
+		private final ShortCircuitEvaluationOrder evaluationOrder;
 
 		private NonEmptyTargetEvaluator(final List<AnyOf> jaxbAnyOfList, final XPathCompiler xPathCompiler,
 				final ExpressionFactory expFactory) throws IllegalArgumentException
 		{
 			assert jaxbAnyOfList != null && !jaxbAnyOfList.isEmpty();
 
-			anyOfEvaluatorList = new ArrayList<>(jaxbAnyOfList.size());
+			final List<AnyOfEvaluator> anyOfEvaluatorList = new ArrayList<>(jaxbAnyOfList.size());
 			int childIndex = 0;
 			for (final AnyOf jaxbAnyOf : jaxbAnyOfList)
 			{
@@ -86,6 +88,15 @@ public final class TargetEvaluators
 				anyOfEvaluatorList.add(anyOfEvaluator);
 				childIndex++;
 			}
+
+			this.anyOfEvaluators = anyOfEvaluatorList.toArray(new AnyOfEvaluator[anyOfEvaluatorList.size()]);
+			final int[] anyOfCostEstimates = new int[anyOfEvaluators.length];
+			for (int i = 0; i < anyOfEvaluators.length; i++)
+			{
+				anyOfCostEstimates[i] = anyOfEvaluators[i].getCostEstimate();
+			}
+
+			this.evaluationOrder = new ShortCircuitEvaluationOrder(ShortCircuitEvaluationOrder.getMode(expFactory), anyOfCostEstimates);
 		}
 
 		/**
@@ -97,7 +108,8 @@ public final class TargetEvaluators
 		 * 		All Match?					Match?
 		 * 		At Least one "No Match"		No Match?
 		 * 		Otherwise					Indeterminate?
-		 * </code> Also if Target empty (no AnyOf), return "Match"
+		 * </code> Also if Target empty (no AnyOf), return "Match". The AnyOfs are evaluated in the order defined by the PDP's {@code matchEvaluationOrder} (document
+		 * order by default), which does not change the result.
 		 *
 		 * @param context
 		 *            the representation of the request
@@ -114,17 +126,18 @@ public final class TargetEvaluators
 			// occurred
 			IndeterminateEvaluationException lastIndeterminate = null;
 
-			// index of the current AnyOf in this Target
-			int childIndex = 0;
-
-			// index of last Indeterminate for enhanced error message
+			// index (in document order) of last Indeterminate for enhanced error message
 			int lastIndeterminateChildIndex = -1;
 
+			final boolean timed = evaluationOrder.startEvaluation();
+
 			/*
 			 * By construction, there must be at least one Match
 			 */
-			for (final AnyOfEvaluator anyOfEvaluator : anyOfEvaluatorList)
+			for (final int childIndex : evaluationOrder.get())
 			{
+				final AnyOfEvaluator anyOfEvaluator = anyOfEvaluators[childIndex];
+				final long startTime = timed ? System.nanoTime() : 0;
 				final boolean isMatched;
 				try
 				{
@@ -144,11 +157,21 @@ public final class TargetEvaluators
 						// Integer.valueOf(...)
 						LOGGER.debug("Target/AnyOf#{} -> Indeterminate", childIndex, e);
 					}
-					lastIndeterminate = e;
-					lastIndeterminateChildIndex = childIndex;
+
+					evaluationOrder.childEvaluated(childIndex, false, timed ? System.nanoTime() - startTime : -1);
+					/*
+					 * Report the last Indeterminate in document order, as if the AnyOfs were evaluated in document order
+					 */
+					if (childIndex > lastIndeterminateChildIndex)
+					{
+						lastIndeterminate = e;
+						lastIndeterminateChildIndex = childIndex;
+					}
+
 					continue;
 				}
 
+				evaluationOrder.childEvaluated(childIndex, !isMatched, timed ? System.nanoTime() - startTime : -1);
 				/*
 				 * At least one False ("No match") -> No match
 				 */
@@ -158,7 +181,6 @@ public final class TargetEvaluators
 				}
 
 				// True (Match) -> continue, all must be true to match
-				childIndex += 1;
 			}
 
 			// No False (=NO_MATCH) occurred
@@ -0,0 +1,741 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Advice;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attribute;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeAssignment;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeValueType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attributes;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.IdReferenceType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Obligation;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Result;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Status;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.StatusCode;
+
+import org.ow2.authzforce.core.pdp.api.ImmutablePepActions;
+import org.ow2.authzforce.core.pdp.api.JaxbXACMLUtils;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionResult;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Writer of XACML 3.0 Responses in XML that serializes {@link PdpDecisionResult}s directly to UTF-8 bytes, i.e. without creating JAXB Results and marshalling them. Element/attribute names and other
+ * constant fragments are encoded once for all, as well as whole Results made of a Decision only (the most common case). The Response is written incrementally: call
+ * {@link #writeResult(PdpDecisionResult, List)} (or {@link #writeIndeterminate(Status)}) for each Result, then {@link #writeEnd()}.
+ * <p>
+ * What cannot be written from plain strings is delegated to JAXB (StatusDetail, Attributes' Content, JAXB Results from {@link #writeResult(Result)}) or a JAXP identity transformer (DOM nodes in
+ * attribute values' mixed content). Characters not allowed in XML 1.0 are replaced with U+FFFD.
+ * <p>
+ * Not thread-safe.
+ *
+ * @version $Id: $
+ */
+public final class XmlXACMLResponseWriter
+{
+	private static final String XACML_3_0_NAMESPACE_URI = "urn:oasis:names:tc:xacml:3.0:core:schema:wd-17";
+	private static final String POLICY_ID_REFERENCE = "PolicyIdReference";
+
+	private static final byte[] REPLACEMENT_CHARACTER = "\uFFFD".getBytes(StandardCharsets.UTF_8);
+
+	private static byte[] ascii(final String fragment)
+	{
+		return fragment.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static final byte[] RESPONSE_START = ascii("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?><Response xmlns=\"" + XACML_3_0_NAMESPACE_URI + "\">");
+	private static final byte[] RESPONSE_END = ascii("</Response>");
+	private static final byte[] RESULT_END = ascii("</Result>");
+	private static final byte[] STATUS_START = ascii("<Status>");
+	private static final byte[] STATUS_END = ascii("</Status>");
+	private static final byte[] STATUS_CODE_START = ascii("<StatusCode Value=\"");
+	private static final byte[] STATUS_CODE_END = ascii("</StatusCode>");
+	private static final byte[] STATUS_MESSAGE_START = ascii("<StatusMessage>");
+	private static final byte[] STATUS_MESSAGE_END = ascii("</StatusMessage>");
+	private static final byte[] OK_STATUS = ascii("<Status><StatusCode Value=\"" + StatusHelper.STATUS_OK + "\"/></Status>");
+	private static final byte[] OBLIGATIONS_START = ascii("<Obligations>");
+	private static final byte[] OBLIGATIONS_END = ascii("</Obligations>");
+	private static final byte[] OBLIGATION_START = ascii("<Obligation ObligationId=\"");
+	private static final byte[] OBLIGATION_END = ascii("</Obligation>");
+	private static final byte[] ASSOCIATED_ADVICE_START = ascii("<AssociatedAdvice>");
+	private static final byte[] ASSOCIATED_ADVICE_END = ascii("</AssociatedAdvice>");
+	private static final byte[] ADVICE_START = ascii("<Advice AdviceId=\"");
+	private static final byte[] ADVICE_END = ascii("</Advice>");
+	private static final byte[] ATTRIBUTE_ASSIGNMENT_START = ascii("<AttributeAssignment AttributeId=\"");
+	private static final byte[] ATTRIBUTE_ASSIGNMENT_END = ascii("</AttributeAssignment>");
+	private static final byte[] ATTRIBUTES_START = ascii("<Attributes Category=\"");
+	private static final byte[] ATTRIBUTES_END = ascii("</Attributes>");
+	private static final byte[] ATTRIBUTE_START = ascii("<Attribute AttributeId=\"");
+	private static final byte[] ATTRIBUTE_END = ascii("</Attribute>");
+	private static final byte[] ATTRIBUTE_VALUE_START = ascii("<AttributeValue DataType=\"");
+	private static final byte[] ATTRIBUTE_VALUE_END = ascii("</AttributeValue>");
+	private static final byte[] POLICY_ID_LIST_START = ascii("<PolicyIdentifierList>");
+	private static final byte[] POLICY_ID_LIST_END = ascii("</PolicyIdentifierList>");
+	private static final byte[] POLICY_ID_REF_START = ascii("<PolicyIdReference");
+	private static final byte[] POLICY_ID_REF_END = ascii("</PolicyIdReference>");
+	private static final byte[] POLICYSET_ID_REF_START = ascii("<PolicySetIdReference");
+	private static final byte[] POLICYSET_ID_REF_END = ascii("</PolicySetIdReference>");
+	private static final byte[] DATATYPE_ATTRIBUTE = ascii("\" DataType=\"");
+	private static final byte[] CATEGORY_ATTRIBUTE = ascii("\" Category=\"");
+	private static final byte[] ISSUER_ATTRIBUTE = ascii("\" Issuer=\"");
+	private static final byte[] XML_ID_ATTRIBUTE = ascii("\" xml:id=\"");
+	private static final byte[] INCLUDE_IN_RESULT_ATTRIBUTE = ascii("\" IncludeInResult=\"true");
+	private static final byte[] VERSION_ATTRIBUTE = ascii(" Version=\"");
+	private static final byte[] ATTRIBUTE_END_EMPTY_ELEMENT = ascii("\"/>");
+	private static final byte[] ATTRIBUTE_END_START_TAG = ascii("\">");
+	private static final byte[] XMLNS_PREFIX = ascii(" xmlns:ns");
+
+	private static final Map<DecisionType, byte[]> ENCODED_RESULT_STARTS = new EnumMap<>(DecisionType.class);
+	private static final Map<DecisionType, byte[]> ENCODED_DECISION_ONLY_RESULTS = new EnumMap<>(DecisionType.class);
+	static
+	{
+		for (final DecisionType decision : DecisionType.values())
+		{
+			final String resultStart = "<Result><Decision>" + decision.value() + "</Decision>";
+			ENCODED_RESULT_STARTS.put(decision, ascii(resultStart));
+			ENCODED_DECISION_ONLY_RESULTS.put(decision, ascii(resultStart + "</Result>"));
+		}
+	}
+
+	private static boolean isNullOrEmpty(final List<?> list)
+	{
+		return list == null || list.isEmpty();
+	}
+
+	private final OutputStream output;
+	private final byte[] buffer = new byte[8192];
+	private int count = 0;
+	private boolean started = false;
+
+	// created only if needed, i.e. for content that is not plain text
+	private Marshaller fragmentMarshaller = null;
+	private Transformer fragmentTransformer = null;
+
+	/**
+	 * Creates writer
+	 *
+	 * @param output
+	 *            output of the XACML/XML Response (not closed by this writer)
+	 */
+	public XmlXACMLResponseWriter(final OutputStream output)
+	{
+		assert output != null;
+		this.output = output;
+	}
+
+	private void flushBuffer() throws IOException
+	{
+		if (count > 0)
+		{
+			output.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+
+	private void writeByte(final int b) throws IOException
+	{
+		if (count == buffer.length)
+		{
+			flushBuffer();
+		}
+
+		buffer[count++] = (byte) b;
+	}
+
+	private void writeBytes(final byte[] bytes) throws IOException
+	{
+		if (bytes.length > buffer.length - count)
+		{
+			flushBuffer();
+			if (bytes.length > buffer.length)
+			{
+				output.write(bytes);
+				return;
+			}
+		}
+
+		System.arraycopy(bytes, 0, buffer, count, bytes.length);
+		count += bytes.length;
+	}
+
+	private void writeAscii(final String s) throws IOException
+	{
+		final int length = s.length();
+		for (int i = 0; i < length; i++)
+		{
+			writeByte(s.charAt(i));
+		}
+	}
+
+	/*
+	 * Writes character data in UTF-8, escaped for use as element text, or attribute value (in double quotes) if isAttributeValue
+	 */
+	private void writeEscaped(final String s, final boolean isAttributeValue) throws IOException
+	{
+		final int length = s.length();
+		for (int i = 0; i < length; i++)
+		{
+			final char c = s.charAt(i);
+			if (c < 0x80)
+			{
+				switch (c)
+				{
+					case '&':
+						writeAscii("&amp;");
+						break;
+					case '<':
+						writeAscii("&lt;");
+						break;
+					case '>':
+						writeAscii("&gt;");
+						break;
+					case '"':
+						if (isAttributeValue)
+						{
+							writeAscii("&quot;");
+						}
+						else
+						{
+							writeByte(c);
+						}
+						break;
+					case '\t':
+					case '\n':
+					case '\r':
+						// whitespace in attribute values would be normalized by XML parsers
+						if (isAttributeValue)
+						{
+							writeAscii(c == '\t' ? "&#9;" : c == '\n' ? "&#10;" : "&#13;");
+						}
+						else if (c == '\r')
+						{
+							// line ends are normalized to \n by XML parsers
+							writeAscii("&#13;");
+						}
+						else
+						{
+							writeByte(c);
+						}
+						break;
+					default:
+						if (c < 0x20)
+						{
+							// not allowed in XML 1.0
+							writeBytes(REPLACEMENT_CHARACTER);
+						}
+						else
+						{
+							writeByte(c);
+						}
+				}
+			}
+			else if (c < 0x800)
+			{
+				writeByte(0xC0 | c >> 6);
+				writeByte(0x80 | c & 0x3F);
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1)))
+			{
+				final int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				writeByte(0xF0 | codePoint >> 18);
+				writeByte(0x80 | codePoint >> 12 & 0x3F);
+				writeByte(0x80 | codePoint >> 6 & 0x3F);
+				writeByte(0x80 | codePoint & 0x3F);
+			}
+			else if (Character.isSurrogate(c) || c == 0xFFFE || c == 0xFFFF)
+			{
+				// unpaired surrogate (not encodable in UTF-8) or not allowed in XML 1.0
+				writeBytes(REPLACEMENT_CHARACTER);
+			}
+			else
+			{
+				writeByte(0xE0 | c >> 12);
+				writeByte(0x80 | c >> 6 & 0x3F);
+				writeByte(0x80 | c & 0x3F);
+			}
+		}
+	}
+
+	/*
+	 * DOM nodes are written inside elements of the XACML namespace, declared as default namespace; but the identity transformer does not undeclare it (xmlns="") for elements in no namespace, unless
+	 * the DOM has the declaration as attribute (e.g. DOM parsed from XML). Returns a copy of the element with the declaration if needed, else the node itself.
+	 */
+	private static Node undeclareDefaultNamespace(final Node node)
+	{
+		if (!(node instanceof Element))
+		{
+			return node;
+		}
+
+		final Element element = (Element) node;
+		if (element.getNamespaceURI() != null && element.getPrefix() == null || element.hasAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, XMLConstants.XMLNS_ATTRIBUTE))
+		{
+			// default namespace (re)declared by the element
+			return node;
+		}
+
+		final Element copy = (Element) element.cloneNode(true);
+		copy.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, XMLConstants.XMLNS_ATTRIBUTE, "");
+		return copy;
+	}
+
+	/*
+	 * Writes an XML fragment that is not plain text: DOM node or JAXB element
+	 */
+	private void writeFragment(final Object fragment) throws IOException
+	{
+		flushBuffer();
+		if (fragment instanceof Node)
+		{
+			try
+			{
+				if (fragmentTransformer == null)
+				{
+					fragmentTransformer = TransformerFactory.newInstance().newTransformer();
+					fragmentTransformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+					fragmentTransformer.setOutputProperty(OutputKeys.ENCODING, StandardCharsets.UTF_8.name());
+				}
+
+				fragmentTransformer.transform(new DOMSource(undeclareDefaultNamespace((Node) fragment)), new StreamResult(output));
+			}
+			catch (final TransformerException e)
+			{
+				throw new IOException("Error serializing XML node in XACML Response", e);
+			}
+
+			return;
+		}
+
+		try
+		{
+			if (fragmentMarshaller == null)
+			{
+				fragmentMarshaller = JaxbXACMLUtils.createXacml3Marshaller();
+				fragmentMarshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+				fragmentMarshaller.setProperty(Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name());
+			}
+
+			fragmentMarshaller.marshal(fragment, output);
+		}
+		catch (final JAXBException e)
+		{
+			throw new IOException("Error marshalling " + fragment.getClass().getSimpleName() + " in XACML Response", e);
+		}
+	}
+
+	/*
+	 * Writes attributes from other namespaces than XACML's (e.g. XPathCategory of xpathExpression values), after the closing quote of the last attribute written
+	 */
+	private void writeOtherAttributes(final Map<QName, String> otherAttributes) throws IOException
+	{
+		if (otherAttributes == null || otherAttributes.isEmpty())
+		{
+			return;
+		}
+
+		int prefixIndex = 0;
+		for (final Entry<QName, String> otherAttribute : otherAttributes.entrySet())
+		{
+			final QName name = otherAttribute.getKey();
+			final String namespaceURI = name.getNamespaceURI();
+			if (namespaceURI.isEmpty())
+			{
+				writeByte(' ');
+			}
+			else if (XMLConstants.XML_NS_URI.equals(namespaceURI))
+			{
+				writeAscii(" xml:");
+			}
+			else
+			{
+				writeBytes(XMLNS_PREFIX);
+				writeAscii(Integer.toString(prefixIndex));
+				writeByte('=');
+				writeByte('"');
+				writeEscaped(namespaceURI, true);
+				writeAscii("\" ns");
+				writeAscii(Integer.toString(prefixIndex));
+				writeByte(':');
+				prefixIndex++;
+			}
+
+			writeEscaped(name.getLocalPart(), true);
+			writeByte('=');
+			writeByte('"');
+			writeEscaped(otherAttribute.getValue(), true);
+			writeByte('"');
+		}
+	}
+
+	/*
+	 * Writes mixed content of AttributeValue/AttributeAssignment
+	 */
+	private void writeContent(final List<Serializable> content) throws IOException
+	{
+		if (content == null)
+		{
+			return;
+		}
+
+		for (final Serializable contentItem : content)
+		{
+			if (contentItem instanceof String)
+			{
+				writeEscaped((String) contentItem, false);
+			}
+			else
+			{
+				writeFragment(contentItem);
+			}
+		}
+	}
+
+	private void writeStatus(final Status status) throws IOException
+	{
+		if (status == null)
+		{
+			return;
+		}
+
+		final StatusCode statusCode = status.getStatusCode();
+		final String statusMessage = status.getStatusMessage();
+		if (statusMessage == null && status.getStatusDetail() == null && statusCode != null && statusCode.getStatusCode() == null && StatusHelper.STATUS_OK.equals(statusCode.getValue()))
+		{
+			writeBytes(OK_STATUS);
+			return;
+		}
+
+		writeBytes(STATUS_START);
+		if (statusCode == null)
+		{
+			// status code is mandatory
+			writeBytes(STATUS_CODE_START);
+			writeAscii(StatusHelper.STATUS_PROCESSING_ERROR);
+			writeBytes(ATTRIBUTE_END_EMPTY_ELEMENT);
+		}
+
+		StatusCode nextStatusCode = statusCode;
+		int depth = 0;
+		while (nextStatusCode != null)
+		{
+			writeBytes(STATUS_CODE_START);
+			writeEscaped(nextStatusCode.getValue(), true);
+			nextStatusCode = nextStatusCode.getStatusCode();
+			if (nextStatusCode == null)
+			{
+				writeBytes(ATTRIBUTE_END_EMPTY_ELEMENT);
+			}
+			else
+			{
+				writeBytes(ATTRIBUTE_END_START_TAG);
+				depth++;
+			}
+		}
+
+		for (int i = 0; i < depth; i++)
+		{
+			writeBytes(STATUS_CODE_END);
+		}
+
+		if (statusMessage != null)
+		{
+			writeBytes(STATUS_MESSAGE_START);
+			writeEscaped(statusMessage, false);
+			writeBytes(STATUS_MESSAGE_END);
+		}
+
+		if (status.getStatusDetail() != null)
+		{
+			writeFragment(status.getStatusDetail());
+		}
+
+		writeBytes(STATUS_END);
+	}
+
+	private void writeAttributeAssignments(final List<AttributeAssignment> attributeAssignments) throws IOException
+	{
+		if (attributeAssignments == null)
+		{
+			return;
+		}
+
+		for (final AttributeAssignment attributeAssignment : attributeAssignments)
+		{
+			writeBytes(ATTRIBUTE_ASSIGNMENT_START);
+			writeEscaped(attributeAssignment.getAttributeId(), true);
+			writeBytes(DATATYPE_ATTRIBUTE);
+			writeEscaped(attributeAssignment.getDataType(), true);
+			if (attributeAssignment.getCategory() != null)
+			{
+				writeBytes(CATEGORY_ATTRIBUTE);
+				writeEscaped(attributeAssignment.getCategory(), true);
+			}
+
+			if (attributeAssignment.getIssuer() != null)
+			{
+				writeBytes(ISSUER_ATTRIBUTE);
+				writeEscaped(attributeAssignment.getIssuer(), true);
+			}
+
+			writeByte('"');
+			writeOtherAttributes(attributeAssignment.getOtherAttributes());
+			writeByte('>');
+			writeContent(attributeAssignment.getContent());
+			writeBytes(ATTRIBUTE_ASSIGNMENT_END);
+		}
+	}
+
+	private void writePepActions(final ImmutablePepActions pepActions) throws IOException
+	{
+		if (pepActions == null)
+		{
+			return;
+		}
+
+		final List<Obligation> obligations = pepActions.getObligatory();
+		if (obligations != null && !obligations.isEmpty())
+		{
+			writeBytes(OBLIGATIONS_START);
+			for (final Obligation obligation : obligations)
+			{
+				writeBytes(OBLIGATION_START);
+				writeEscaped(obligation.getObligationId(), true);
+				writeBytes(ATTRIBUTE_END_START_TAG);
+				writeAttributeAssignments(obligation.getAttributeAssignments());
+				writeBytes(OBLIGATION_END);
+			}
+
+			writeBytes(OBLIGATIONS_END);
+		}
+
+		final List<Advice> advices = pepActions.getAdvisory();
+		if (advices != null && !advices.isEmpty())
+		{
+			writeBytes(ASSOCIATED_ADVICE_START);
+			for (final Advice advice : advices)
+			{
+				writeBytes(ADVICE_START);
+				writeEscaped(advice.getAdviceId(), true);
+				writeBytes(ATTRIBUTE_END_START_TAG);
+				writeAttributeAssignments(advice.getAttributeAssignments());
+				writeBytes(ADVICE_END);
+			}
+
+			writeBytes(ASSOCIATED_ADVICE_END);
+		}
+	}
+
+	private void writeCategories(final List<Attributes> attributesList) throws IOException
+	{
+		if (attributesList == null)
+		{
+			return;
+		}
+
+		for (final Attributes attributes : attributesList)
+		{
+			writeBytes(ATTRIBUTES_START);
+			writeEscaped(attributes.getCategory(), true);
+			if (attributes.getId() != null)
+			{
+				writeBytes(XML_ID_ATTRIBUTE);
+				writeEscaped(attributes.getId(), true);
+			}
+
+			writeBytes(ATTRIBUTE_END_START_TAG);
+			if (attributes.getContent() != null)
+			{
+				writeFragment(attributes.getContent());
+			}
+
+			for (final Attribute attribute : attributes.getAttributes())
+			{
+				writeBytes(ATTRIBUTE_START);
+				writeEscaped(attribute.getAttributeId(), true);
+				if (attribute.getIssuer() != null)
+				{
+					writeBytes(ISSUER_ATTRIBUTE);
+					writeEscaped(attribute.getIssuer(), true);
+				}
+
+				writeBytes(INCLUDE_IN_RESULT_ATTRIBUTE);
+				writeBytes(ATTRIBUTE_END_START_TAG);
+				for (final AttributeValueType attributeValue : attribute.getAttributeValues())
+				{
+					writeBytes(ATTRIBUTE_VALUE_START);
+					writeEscaped(attributeValue.getDataType(), true);
+					writeByte('"');
+					writeOtherAttributes(attributeValue.getOtherAttributes());
+					writeByte('>');
+					writeContent(attributeValue.getContent());
+					writeBytes(ATTRIBUTE_VALUE_END);
+				}
+
+				writeBytes(ATTRIBUTE_END);
+			}
+
+			writeBytes(ATTRIBUTES_END);
+		}
+	}
+
+	private void writePolicyIdentifiers(final List<JAXBElement<IdReferenceType>> idReferences) throws IOException
+	{
+		writeBytes(POLICY_ID_LIST_START);
+		for (final JAXBElement<IdReferenceType> idReference : idReferences)
+		{
+			final boolean isPolicyRef = idReference.getName().getLocalPart().equals(POLICY_ID_REFERENCE);
+			writeBytes(isPolicyRef ? POLICY_ID_REF_START : POLICYSET_ID_REF_START);
+			final IdReferenceType idRef = idReference.getValue();
+			if (idRef.getVersion() != null)
+			{
+				writeBytes(VERSION_ATTRIBUTE);
+				writeEscaped(idRef.getVersion(), true);
+				writeByte('"');
+			}
+
+			writeByte('>');
+			writeEscaped(idRef.getValue(), false);
+			writeBytes(isPolicyRef ? POLICY_ID_REF_END : POLICYSET_ID_REF_END);
+		}
+
+		writeBytes(POLICY_ID_LIST_END);
+	}
+
+	private void beginResult() throws IOException
+	{
+		if (!started)
+		{
+			writeBytes(RESPONSE_START);
+			started = true;
+		}
+	}
+
+	private void writeResult(final DecisionType decision, final Status status, final ImmutablePepActions pepActions, final List<JAXBElement<IdReferenceType>> applicablePolicies,
+			final List<Attributes> attributesToIncludeInResult) throws IOException
+	{
+		beginResult();
+		final boolean hasPepActions = pepActions != null && !(isNullOrEmpty(pepActions.getObligatory()) && isNullOrEmpty(pepActions.getAdvisory()));
+		final boolean hasAttributes = attributesToIncludeInResult != null && !attributesToIncludeInResult.isEmpty();
+		final boolean hasPolicyIdentifiers = applicablePolicies != null && !applicablePolicies.isEmpty();
+		if (status == null && !hasPepActions && !hasAttributes && !hasPolicyIdentifiers)
+		{
+			writeBytes(ENCODED_DECISION_ONLY_RESULTS.get(decision));
+			return;
+		}
+
+		writeBytes(ENCODED_RESULT_STARTS.get(decision));
+		writeStatus(status);
+		if (hasPepActions)
+		{
+			writePepActions(pepActions);
+		}
+
+		if (hasAttributes)
+		{
+			writeCategories(attributesToIncludeInResult);
+		}
+
+		if (hasPolicyIdentifiers)
+		{
+			writePolicyIdentifiers(applicablePolicies);
+		}
+
+		writeBytes(RESULT_END);
+	}
+
+	/**
+	 * Writes a Result
+	 *
+	 * @param result
+	 *            decision result
+	 * @param attributesToIncludeInResult
+	 *            attributes with IncludeInResult=true in the corresponding Individual Decision Request (null or empty if none)
+	 * @throws IOException
+	 *             error writing to the output
+	 */
+	public void writeResult(final PdpDecisionResult result, final List<Attributes> attributesToIncludeInResult) throws IOException
+	{
+		assert result != null;
+		writeResult(result.getDecision(), result.getStatus(), result.getPepActions(), result.getApplicablePolicies(), attributesToIncludeInResult);
+	}
+
+	/**
+	 * Writes a JAXB Result, e.g. from a {@link org.ow2.authzforce.core.pdp.api.DecisionResultFilter} (marshalled with JAXB)
+	 *
+	 * @param result
+	 *            XACML Result
+	 * @throws IOException
+	 *             error writing to the output
+	 */
+	public void writeResult(final Result result) throws IOException
+	{
+		assert result != null;
+		beginResult();
+		writeFragment(result);
+	}
+
+	/**
+	 * Writes an Indeterminate Result, e.g. for an invalid Request
+	 *
+	 * @param status
+	 *            status of the Indeterminate Result
+	 * @throws IOException
+	 *             error writing to the output
+	 */
+	public void writeIndeterminate(final Status status) throws IOException
+	{
+		writeResult(DecisionType.INDETERMINATE, status, null, null, null);
+	}
+
+	/**
+	 * Writes the end of the Response (after the last Result) and flushes the output
+	 *
+	 * @throws IOException
+	 *             error writing to the output
+	 */
+	public void writeEnd() throws IOException
+	{
+		beginResult();
+		writeBytes(RESPONSE_END);
+		flushBuffer();
+		output.flush();
+	}
+}
@@ -269,4 +269,17 @@ public enum StandardCombiningAlgorithm
 	{
 		return ID_TO_STD_ALG_MAP.get(algId);
 	}
+
+	/**
+	 * Tells whether a combining algorithm evaluator always returns NotApplicable, which is the case when the evaluator results from an optimization of one of the standard combining algorithms and
+	 * the combined elements, e.g. no element to combine
+	 * 
+	 * @param evaluator
+	 *            combining algorithm evaluator
+	 * @return true iff {@code evaluator} is the evaluator returning constant decision NotApplicable
+	 */
+	public static boolean isNotApplicableConstant(final CombiningAlg.Evaluator evaluator)
+	{
+		return evaluator == CombiningAlgEvaluators.NOT_APPLICABLE_CONSTANT_EVALUATOR;
+	}
 }
@@ -118,6 +118,18 @@ public final class ApplyExpressions
 		return staticEvalResult == null ? new VariableApplyExpression<>(functionCall) : new ConstantApplyExpression<>(functionCall.getReturnType(), staticEvalResult);
 	}
 
+	/**
+	 * Get the function call evaluated by an Apply expression, e.g. to compile it
+	 *
+	 * @param expression
+	 *            expression
+	 * @return the function call if {@code expression} is a non-constant Apply expression created by {@link #newInstance(ApplyType, XPathCompiler, ExpressionFactory, Deque)}; else null
+	 */
+	public static FunctionCall<?> getFunctionCall(final Expression<?> expression)
+	{
+		return expression instanceof VariableApplyExpression ? ((VariableApplyExpression<?>) expression).functionCall : null;
+	}
+
 	/**
 	 * Creates instance of Apply evaluator from XACML Apply element
 	 *
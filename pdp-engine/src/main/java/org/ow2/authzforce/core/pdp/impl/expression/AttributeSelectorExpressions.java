@@ -57,6 +57,7 @@ import org.ow2.authzforce.core.pdp.api.value.Datatype;
 import org.ow2.authzforce.core.pdp.api.value.DatatypeFactory;
 import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
 import org.ow2.authzforce.core.pdp.api.value.XPathValue;
+import org.ow2.authzforce.core.pdp.impl.EvaluationTimingListener;
 
 /**
  * Static utility methods pertaining to {@link AttributeSelectorExpression} instances.
@@ -343,6 +344,9 @@ public final class AttributeSelectorExpressions
 			 */
 			final XPathSelector xpathSelector = xPathEvaluator.load();
 			final XdmValue xpathEvalResult;
+			// null iff evaluation timings disabled
+			final EvaluationTimingListener timingListener = context.getListener(EvaluationTimingListener.class);
+			final long startTime = timingListener == null ? 0 : System.nanoTime();
 			try
 			{
 				xpathSelector.setContextItem(xPathEvaluationContextItem);
@@ -352,6 +356,13 @@ public final class AttributeSelectorExpressions
 			{
 				throw new IndeterminateEvaluationException(this.xPathEvalExceptionMessage, StatusHelper.STATUS_SYNTAX_ERROR, e);
 			}
+			finally
+			{
+				if (timingListener != null)
+				{
+					timingListener.attributeSelectorEvaluated(attributeSelectorId, System.nanoTime() - startTime);
+				}
+			}
 
 			final Datatype<AV> attributeDatatype = returnType.getElementType();
 			/*
@@ -19,10 +19,16 @@ package org.ow2.authzforce.core.pdp.impl.expression;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.sf.saxon.s9api.XPathCompiler;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.ApplyType;
@@ -34,11 +40,14 @@ import oasis.names.tc.xacml._3_0.core.schema.wd_17.FunctionType;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.VariableDefinition;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.VariableReferenceType;
 
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
 import org.ow2.authzforce.core.pdp.api.EnvironmentProperties;
 import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.HashCollections;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
 import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeDesignatorExpression;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeSelectorExpression;
 import org.ow2.authzforce.core.pdp.api.expression.ConstantExpression;
 import org.ow2.authzforce.core.pdp.api.expression.Expression;
 import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
@@ -46,12 +55,15 @@ import org.ow2.authzforce.core.pdp.api.expression.FunctionExpression;
 import org.ow2.authzforce.core.pdp.api.expression.VariableReference;
 import org.ow2.authzforce.core.pdp.api.func.Function;
 import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.BagDatatype;
 import org.ow2.authzforce.core.pdp.api.value.Datatype;
 import org.ow2.authzforce.core.pdp.api.value.DatatypeFactory;
 import org.ow2.authzforce.core.pdp.api.value.DatatypeFactoryRegistry;
 import org.ow2.authzforce.core.pdp.api.value.Value;
 import org.ow2.authzforce.core.pdp.impl.CloseableAttributeProvider;
+import org.ow2.authzforce.core.pdp.impl.SlotIndexedEvaluationContext;
 import org.ow2.authzforce.core.pdp.impl.func.FunctionRegistry;
+import org.ow2.authzforce.core.xmlns.pdp.MatchEvaluationOrder;
 import org.ow2.authzforce.xmlns.pdp.ext.AbstractAttributeProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -183,6 +195,7 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 	private static final class DynamicVariableReference<V extends Value> extends BaseVariableReference<V>
 	{
 		private final transient Expression<V> expression;
+		private final transient int slot;
 		private final transient IndeterminateEvaluationException nullContextException;
 
 		/**
@@ -192,15 +205,18 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 		 *            input VariableReference from XACML model
 		 * @param varExpr
 		 *            Expression of referenced VariableDefinition
+		 * @param varSlot
+		 *            slot of the variable in {@link SlotIndexedEvaluationContext}s
 		 * @param longestVarRefChain
 		 *            longest chain of VariableReference Reference in <code>expr</code> (V1 -> V2 -> ... -> Vn, where "V1 -> V2" means VariableReference V1's expression contains one or more
 		 *            VariableReferences to V2)
 		 */
-		private DynamicVariableReference(final String varId, final Expression<V> varExpr, final Deque<String> longestVarRefChain)
+		private DynamicVariableReference(final String varId, final Expression<V> varExpr, final int varSlot, final Deque<String> longestVarRefChain)
 		{
 			super(varId, longestVarRefChain);
-			assert varExpr != null;
+			assert varExpr != null && varSlot >= 0;
 			this.expression = varExpr;
+			this.slot = varSlot;
 			this.nullContextException = new IndeterminateEvaluationException("VariableReference[VariableId='" + this.variableId
 					+ "']: evaluate(context = null) not allowed because the variable requires context for evaluation (not constant)", StatusHelper.STATUS_PROCESSING_ERROR);
 		}
@@ -242,6 +258,20 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 				throw nullContextException;
 			}
 
+			if (context instanceof SlotIndexedEvaluationContext)
+			{
+				final SlotIndexedEvaluationContext slotIndexedContext = (SlotIndexedEvaluationContext) context;
+				final V ctxVal = slotIndexedContext.getVariableValue(this.slot, this.variableId, expression.getReturnType());
+				if (ctxVal != null)
+				{
+					return ctxVal;
+				}
+
+				final V result = expression.evaluate(context);
+				slotIndexedContext.putVariableIfAbsent(this.slot, this.variableId, result);
+				return result;
+			}
+
 			final V ctxVal = context.getVariableValue(this.variableId, expression.getReturnType());
 			if (ctxVal != null)
 			{
@@ -275,12 +305,40 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 	private final FunctionRegistry functionRegistry;
 	private final CloseableAttributeProvider attributeProvider;
 	private final int maxVariableReferenceDepth;
-	// the map from identifiers to internal data
+	/*
+	 * The map from identifiers to internal data. Variables are scoped to the Policy being parsed, and Policies may be parsed concurrently, so each Policy is parsed with its own variable scope (see
+	 * newPolicyScope()), i.e. a factory that shares everything with this one except this map. Not thread-safe.
+	 */
 	private final Map<String, BaseVariableReference<?>> idToVariableMap = HashCollections.newMutableMap();
+
+	/*
+	 * True iff this factory is a Policy variable scope created by newPolicyScope(); the Attribute Provider is then owned (and closed) by the factory it was created from
+	 */
+	private final boolean isPolicyScope;
 	private final boolean allowAttributeSelectors;
 
 	private final boolean issuerRequiredOnAttributeDesignators;
 
+	private final MatchEvaluationOrder matchEvaluationOrder;
+
+	private final boolean ruleTargetIndexingEnabled;
+
+	private final boolean conditionCompilationEnabled;
+
+	/*
+	 * Attributes referenced by AttributeDesignators and AttributeSelectors (ContextSelectorId) created by this factory, mapped to the last policy load generation (see
+	 * newPolicyLoadGeneration()) in which they were referenced. Policies may be parsed concurrently.
+	 */
+	private final ConcurrentMap<AttributeFQN, Long> referencedAttributes;
+
+	private final AtomicLong policyLoadGeneration;
+
+	/*
+	 * Datatypes of the attributes referenced by AttributeDesignators created by this factory (first datatype found if the same attribute is referenced with different datatypes), for attribute
+	 * prefetch
+	 */
+	private final ConcurrentMap<AttributeFQN, BagDatatype<?>> designatorDatatypes;
+
 	/**
 	 * Maximum VariableReference depth allowed for VariableDefinitions to be managed. Examples:
 	 * <ul>
@@ -321,6 +379,45 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 	public DepthLimitingExpressionFactory(final DatatypeFactoryRegistry attributeFactory, final FunctionRegistry functionRegistry, final List<AbstractAttributeProvider> jaxbAttributeProviderConfs,
 			final int maxVarRefDepth, final boolean allowAttributeSelectors, final boolean strictAttributeIssuerMatch, final EnvironmentProperties environmentProperties)
 			throws IllegalArgumentException, IOException
+	{
+		this(attributeFactory, functionRegistry, jaxbAttributeProviderConfs, maxVarRefDepth, allowAttributeSelectors, strictAttributeIssuerMatch, MatchEvaluationOrder.DOCUMENT, false,
+				false, environmentProperties);
+	}
+
+	/**
+	 * Same as {@link #DepthLimitingExpressionFactory(DatatypeFactoryRegistry, FunctionRegistry, List, int, boolean, boolean, EnvironmentProperties)}, with a specific order of evaluation of the
+	 * Matches in the Targets of the policies parsed by this factory, and optional indexing of their Rule Targets and compilation of their Conditions
+	 *
+	 * @param attributeFactory
+	 *            attribute value factory (not null)
+	 * @param functionRegistry
+	 *            function registry (not null)
+	 * @param jaxbAttributeProviderConfs
+	 *            XML/JAXB configurations of Attribute Providers for AttributeDesignator/AttributeSelector evaluation; may be null for static expression evaluation (out of context), in which case
+	 *            AttributeSelectors/AttributeDesignators are not supported
+	 * @param maxVarRefDepth
+	 *            max depth of VariableReference chaining: VariableDefinition -> VariableDefinition ->... ('->' represents a VariableReference); strictly negative value means unlimited
+	 * @param allowAttributeSelectors
+	 *            allow use of AttributeSelectors (experimental, not for production, use with caution)
+	 * @param strictAttributeIssuerMatch
+	 *            true iff we want strict Attribute Issuer matching and we require that all AttributeDesignators set the Issuer field
+	 * @param matchEvaluationOrder
+	 *            order of evaluation of the Matches of an AllOf, the AllOfs of an AnyOf and the AnyOfs of a Target (see {@link #getMatchEvaluationOrder()}); null means DOCUMENT
+	 * @param indexRuleTargets
+	 *            true iff the Rule Targets of the Policies parsed with this factory must be indexed (see {@link #isRuleTargetIndexingEnabled()})
+	 * @param compileConditions
+	 *            true iff the Conditions of the Rules parsed with this factory must be compiled (see {@link #isConditionCompilationEnabled()})
+	 * @param environmentProperties
+	 *            global PDP configuration environment properties
+	 * @throws java.lang.IllegalArgumentException
+	 *             If any of attribute Provider modules created from {@code jaxbAttributeProviderConfs} does not provide any attribute; or it is in conflict with another one already registered to
+	 *             provide the same or part of the same attributes.
+	 * @throws java.io.IOException
+	 *             error closing the attribute Provider modules created from {@code jaxbAttributeProviderConfs}, when and before an {@link IllegalArgumentException} is raised
+	 */
+	public DepthLimitingExpressionFactory(final DatatypeFactoryRegistry attributeFactory, final FunctionRegistry functionRegistry, final List<AbstractAttributeProvider> jaxbAttributeProviderConfs,
+			final int maxVarRefDepth, final boolean allowAttributeSelectors, final boolean strictAttributeIssuerMatch, final MatchEvaluationOrder matchEvaluationOrder,
+			final boolean indexRuleTargets, final boolean compileConditions, final EnvironmentProperties environmentProperties) throws IllegalArgumentException, IOException
 	{
 		if (attributeFactory == null)
 		{
@@ -340,9 +437,81 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 		this.attributeProvider = CloseableAttributeProvider.getInstance(jaxbAttributeProviderConfs, attributeFactory, strictAttributeIssuerMatch, environmentProperties);
 		this.allowAttributeSelectors = allowAttributeSelectors;
 		this.issuerRequiredOnAttributeDesignators = strictAttributeIssuerMatch;
+		this.matchEvaluationOrder = matchEvaluationOrder == null ? MatchEvaluationOrder.DOCUMENT : matchEvaluationOrder;
+		this.ruleTargetIndexingEnabled = indexRuleTargets;
+		this.conditionCompilationEnabled = compileConditions;
+		this.referencedAttributes = new ConcurrentHashMap<>();
+		this.policyLoadGeneration = new AtomicLong();
+		this.designatorDatatypes = new ConcurrentHashMap<>();
+		this.isPolicyScope = false;
+	}
+
+	/*
+	 * Creates a Policy variable scope of scopeParent (see newPolicyScope())
+	 */
+	private DepthLimitingExpressionFactory(final DepthLimitingExpressionFactory scopeParent)
+	{
+		this.datatypeFactoryRegistry = scopeParent.datatypeFactoryRegistry;
+		this.functionRegistry = scopeParent.functionRegistry;
+		this.maxVariableReferenceDepth = scopeParent.maxVariableReferenceDepth;
+		this.attributeProvider = scopeParent.attributeProvider;
+		this.allowAttributeSelectors = scopeParent.allowAttributeSelectors;
+		this.issuerRequiredOnAttributeDesignators = scopeParent.issuerRequiredOnAttributeDesignators;
+		this.matchEvaluationOrder = scopeParent.matchEvaluationOrder;
+		this.ruleTargetIndexingEnabled = scopeParent.ruleTargetIndexingEnabled;
+		this.conditionCompilationEnabled = scopeParent.conditionCompilationEnabled;
+		this.referencedAttributes = scopeParent.referencedAttributes;
+		this.policyLoadGeneration = scopeParent.policyLoadGeneration;
+		this.designatorDatatypes = scopeParent.designatorDatatypes;
+		this.isPolicyScope = true;
+	}
+
+	/**
+	 * Creates the variable scope of a Policy: an expression factory with the same configuration, Attribute Provider and referenced attributes as this one, but its own (initially empty)
+	 * VariableDefinitions. The Expressions of a Policy must be parsed with the same scope, and Policies parsed concurrently with different scopes. Closing the scope does not close the Attribute
+	 * Provider.
+	 *
+	 * @return new Policy variable scope
+	 */
+	public DepthLimitingExpressionFactory newPolicyScope()
+	{
+		return new DepthLimitingExpressionFactory(this);
+	}
+
+	/**
+	 * Get the order of evaluation of the Matches of an AllOf, the AllOfs of an AnyOf and the AnyOfs of a Target, in the Targets of the policies parsed with this factory
+	 *
+	 * @return Match evaluation order
+	 */
+	public MatchEvaluationOrder getMatchEvaluationOrder()
+	{
+		return matchEvaluationOrder;
+	}
+
+	/**
+	 * Whether the Policies parsed with this factory must index the Targets of their Rules by the values of equality Matches, in order to skip the Rules that cannot match the request context
+	 * without evaluating their Targets
+	 *
+	 * @return true iff Rule Target indexing is enabled
+	 */
+	public boolean isRuleTargetIndexingEnabled()
+	{
+		return ruleTargetIndexingEnabled;
 	}
 
-	private static <V extends Value> BaseVariableReference<?> newVariableReference(final String variableId, final Expression<V> variableExpression, final Deque<String> longestVarRefChainInExpression)
+	/**
+	 * Whether the Conditions of the Rules parsed with this factory must be compiled: the calls to the logical functions 'and', 'or' and 'not' are evaluated on primitive booleans, without creating
+	 * intermediate values and argument arrays
+	 *
+	 * @return true iff Condition compilation is enabled
+	 */
+	public boolean isConditionCompilationEnabled()
+	{
+		return conditionCompilationEnabled;
+	}
+
+	private static <V extends Value> BaseVariableReference<?> newVariableReference(final String variableId, final Expression<V> variableExpression, final int variableSlot,
+			final Deque<String> longestVarRefChainInExpression)
 	{
 		assert variableId != null && variableExpression != null;
 
@@ -360,7 +529,7 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 			return new ConstantVariableReference<>(variableId, constant.get(), variableExpression.getReturnType(), longestVarRefChainInExpression);
 		}
 
-		return new DynamicVariableReference<>(variableId, variableExpression, longestVarRefChainInExpression);
+		return new DynamicVariableReference<>(variableId, variableExpression, variableSlot, longestVarRefChainInExpression);
 	}
 
 	/** {@inheritDoc} */
@@ -414,7 +583,12 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 
 		}
 
-		final BaseVariableReference<?> var = newVariableReference(varId, varExpr, longestVarRefChainInCurrentVarExpression);
+		/*
+		 * Variables are scoped to the enclosing Policy (see newPolicyScope()), so the variable slot is the index of the VariableDefinition among the ones of the
+		 * Policy. Variables of different Policies share the same slots, which is fine since a Policy's variables are removed from the evaluation context after the Policy evaluation.
+		 */
+		final int varSlot = idToVariableMap.size();
+		final BaseVariableReference<?> var = newVariableReference(varId, varExpr, varSlot, longestVarRefChainInCurrentVarExpression);
 		return idToVariableMap.putIfAbsent(varId, var);
 	}
 
@@ -562,7 +736,11 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 				throw new IllegalArgumentException("Unsupported Datatype used in AttributeDesignator: " + jaxbAttrDes.getDataType());
 			}
 
-			expression = new GenericAttributeProviderBasedAttributeDesignatorExpression<>(jaxbAttrDes, attrFactory.getBagDatatype(), attributeProvider);
+			final AttributeDesignatorExpression<?> attrDesignatorExpr = new GenericAttributeProviderBasedAttributeDesignatorExpression<>(jaxbAttrDes, attrFactory.getBagDatatype(),
+					attributeProvider);
+			referencedAttributes.put(attrDesignatorExpr.getAttributeFQN(), policyLoadGeneration.get());
+			designatorDatatypes.putIfAbsent(attrDesignatorExpr.getAttributeFQN(), attrFactory.getBagDatatype());
+			expression = attrDesignatorExpr;
 		}
 		else if (expr instanceof AttributeSelectorType)
 		{
@@ -590,7 +768,14 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 				throw new IllegalArgumentException("AttributeSelector found but missing Policy(Set)Defaults/XPathVersion required for XPath evaluation in AttributeSelector");
 			}
 
-			expression = AttributeSelectorExpressions.newInstance(jaxbAttrSelector, xPathCompiler, attributeProvider, attrFactory);
+			final AttributeSelectorExpression<?> attrSelectorExpr = AttributeSelectorExpressions.newInstance(jaxbAttrSelector, xPathCompiler, attributeProvider, attrFactory);
+			final Optional<AttributeFQN> contextSelectorFQN = attrSelectorExpr.getContextSelectorFQN();
+			if (contextSelectorFQN.isPresent())
+			{
+				referencedAttributes.put(contextSelectorFQN.get(), policyLoadGeneration.get());
+			}
+
+			expression = attrSelectorExpr;
 		}
 		else if (expr instanceof AttributeValueType)
 		{
@@ -631,11 +816,90 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 		return this.datatypeFactoryRegistry.newExpression(jaxbAttrVal, xPathCompiler);
 	}
 
+	/**
+	 * Get the attributes that may be used in evaluating the Expressions created by this factory so far, i.e. attributes referenced by AttributeDesignators, AttributeSelectors' ContextSelectorIds,
+	 * and attributes required by the Attribute Providers to provide (some of) the former (dependencies). In other words, other attributes in the evaluation context cannot have any effect on the
+	 * evaluation of these Expressions. NB: AttributeSelectors also depend on the Content of the request, which is not represented here.
+	 *
+	 * @return attributes possibly used in evaluation (immutable snapshot); null if any Attribute Provider module has unknown dependencies (see {@link CloseableAttributeProvider#getDependencies()}),
+	 *         i.e. any attribute may be used
+	 */
+	public Set<AttributeFQN> getReferencedAttributes()
+	{
+		return getReferencedAttributes(0);
+	}
+
+	/**
+	 * Starts a new policy load generation, e.g. before loading a new root policy to replace the current one. Expressions created from then on are part of this generation (see
+	 * {@link #getReferencedAttributes(long)}). Generations must not overlap, i.e. policy loads must be serialized by the caller (policies of the same load may still be parsed concurrently).
+	 * 
+	 * @return the new generation number (the policies loaded at initialization are part of generation 0)
+	 */
+	public long newPolicyLoadGeneration()
+	{
+		return policyLoadGeneration.incrementAndGet();
+	}
+
+	/**
+	 * Same as {@link #getReferencedAttributes()} but restricted to the Expressions created since the start of the given policy load generation (see {@link #newPolicyLoadGeneration()}), e.g. the
+	 * attributes used by a new root policy - and policies referenced from it - without those used only by the previous one(s)
+	 * 
+	 * @param generation
+	 *            policy load generation returned by {@link #newPolicyLoadGeneration()}, or 0 for all Expressions created by this factory so far
+	 * @return attributes possibly used in evaluation of the Expressions created since the start of {@code generation} (immutable snapshot); null if any Attribute Provider module has unknown
+	 *         dependencies, i.e. any attribute may be used
+	 */
+	public Set<AttributeFQN> getReferencedAttributes(final long generation)
+	{
+		final Set<AttributeFQN> dependencies = attributeProvider == null ? Collections.<AttributeFQN> emptySet() : attributeProvider.getDependencies();
+		if (dependencies == null)
+		{
+			// some Attribute Provider module may use any attribute
+			return null;
+		}
+
+		final Set<AttributeFQN> attributes = HashCollections.newUpdatableSet(referencedAttributes.size());
+		for (final Entry<AttributeFQN, Long> referencedAttribute : referencedAttributes.entrySet())
+		{
+			if (referencedAttribute.getValue().longValue() >= generation)
+			{
+				attributes.add(referencedAttribute.getKey());
+			}
+		}
+
+		return HashCollections.newImmutableSet(attributes, dependencies);
+	}
+
+	/**
+	 * Indicates whether attributes may be prefetched (see {@link #prefetchAttributes(EvaluationContext)})
+	 *
+	 * @return true iff the Attribute Provider has asynchronous modules (see {@link CloseableAttributeProvider#isPrefetchSupported()})
+	 */
+	public boolean isAttributePrefetchSupported()
+	{
+		return attributeProvider != null && attributeProvider.isPrefetchSupported();
+	}
+
+	/**
+	 * Prefetches the attributes referenced by the AttributeDesignators created by this factory so far, from the asynchronous Attribute Provider modules (see
+	 * {@link CloseableAttributeProvider#prefetch(Map, EvaluationContext)})
+	 *
+	 * @param context
+	 *            evaluation context where the prefetched attributes are cached
+	 */
+	public void prefetchAttributes(final EvaluationContext context)
+	{
+		if (attributeProvider != null)
+		{
+			attributeProvider.prefetch(designatorDatatypes, context);
+		}
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void close() throws IOException
 	{
-		if (attributeProvider != null)
+		if (attributeProvider != null && !isPolicyScope)
 		{
 			attributeProvider.close();
 		}
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.func;
+
+import java.util.function.Function;
+
+import org.ow2.authzforce.core.pdp.api.expression.Expression;
+import org.ow2.authzforce.core.pdp.api.func.FunctionCall;
+import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
+import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
+
+/**
+ * Call to a boolean function that can be compiled to a {@link BooleanEvaluator}, i.e. a tree of evaluators operating on primitive booleans - without creating {@link BooleanValue}s or argument
+ * arrays for the intermediate results - given the compiled evaluators of its arguments. Implemented by the calls to the standard logical functions 'and', 'or' and 'not'.
+ *
+ * @version $Id: $
+ */
+public interface CompilableBooleanFunctionCall
+{
+	/**
+	 * Compiles this function call
+	 *
+	 * @param argCompiler
+	 *            compiler of the argument expressions (boolean expressions), e.g. recursively compiling nested calls to 'and'/'or'/'not'
+	 * @return evaluator returning the same result - or throwing the same {@link org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException} - as {@link FunctionCall#evaluate(org.ow2.authzforce.core.pdp.api.EvaluationContext)}
+	 *         in any context; or null if this call cannot be compiled, e.g. it expects remaining arguments from a higher-order function
+	 */
+	BooleanEvaluator compile(Function<Expression<BooleanValue>, BooleanEvaluator> argCompiler);
+}
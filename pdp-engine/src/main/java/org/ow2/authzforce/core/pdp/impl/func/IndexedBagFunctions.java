@@ -0,0 +1,268 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.func;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.Expression;
+import org.ow2.authzforce.core.pdp.api.expression.Expressions;
+import org.ow2.authzforce.core.pdp.api.func.BaseFirstOrderFunctionCall;
+import org.ow2.authzforce.core.pdp.api.func.FirstOrderFunctionCall;
+import org.ow2.authzforce.core.pdp.api.func.Function;
+import org.ow2.authzforce.core.pdp.api.func.MultiParameterTypedFirstOrderFunction;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.BagDatatype;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
+import org.ow2.authzforce.core.pdp.api.value.DatatypeFactory;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.Value;
+import org.ow2.authzforce.core.pdp.impl.BagIndexes;
+
+/**
+ * Standard XACML bag and set functions (A.3.10, A.3.11) checking whether values are in a bag by equality - type-is-in, type-at-least-one-member-of, type-subset, type-set-equals and
+ * type-intersection - that use the hash index of large bags provided by the evaluation context (see {@link BagIndexes}), instead of searching the bag linearly for each value. They replace the
+ * generic implementations of the same functions for the datatypes where the equality function is consistent with {@link AttributeValue#equals(Object)} and {@link AttributeValue#hashCode()}:
+ * string, boolean, integer, anyURI, hexBinary and base64Binary.
+ *
+ * @version $Id: $
+ */
+final class IndexedBagFunctions
+{
+	/**
+	 * Function ID prefixes by datatype of the supported functions (the suffixes are the same for all datatypes)
+	 */
+	private static final List<String> FUNCTION_ID_PREFIXES = Arrays.asList(Function.XACML_NS_1_0 + "string", Function.XACML_NS_1_0 + "boolean", Function.XACML_NS_1_0 + "integer",
+			Function.XACML_NS_1_0 + "anyURI", Function.XACML_NS_1_0 + "hexBinary", Function.XACML_NS_1_0 + "base64Binary");
+
+	private static final List<DatatypeFactory<?>> DATATYPE_FACTORIES = Arrays.<DatatypeFactory<?>> asList(StandardDatatypes.STRING_FACTORY, StandardDatatypes.BOOLEAN_FACTORY,
+			StandardDatatypes.INTEGER_FACTORY, StandardDatatypes.ANYURI_FACTORY, StandardDatatypes.HEXBINARY_FACTORY, StandardDatatypes.BASE64BINARY_FACTORY);
+
+	private IndexedBagFunctions()
+	{
+		// utility class
+	}
+
+	private static <V extends Value> V eval(final Expression<?> arg, final int argIndex, final EvaluationContext context, final Datatype<V> expectedType, final String indeterminateArgMsgPrefix)
+			throws IndeterminateEvaluationException
+	{
+		try
+		{
+			return Expressions.eval(arg, context, expectedType);
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			throw new IndeterminateEvaluationException(indeterminateArgMsgPrefix + argIndex, e.getStatusCode(), e);
+		}
+	}
+
+	private static void checkArgCount(final List<Expression<?>> argExpressions, final String functionId)
+	{
+		if (argExpressions.size() != 2)
+		{
+			throw new IllegalArgumentException("Function " + functionId + ": Invalid number of args: expected: 2; actual: " + argExpressions.size());
+		}
+	}
+
+	/**
+	 * type-is-in(value, bag)
+	 */
+	private static final class IsInFunction<AV extends AttributeValue> extends MultiParameterTypedFirstOrderFunction<BooleanValue>
+	{
+		private final Datatype<AV> paramType;
+		private final BagDatatype<AV> paramBagType;
+		private final String indeterminateArgMsgPrefix;
+
+		private IsInFunction(final String functionId, final Datatype<AV> paramType, final BagDatatype<AV> paramBagType)
+		{
+			super(functionId, StandardDatatypes.BOOLEAN_FACTORY.getDatatype(), false, Arrays.asList(paramType, paramBagType));
+			this.paramType = paramType;
+			this.paramBagType = paramBagType;
+			this.indeterminateArgMsgPrefix = "Function " + functionId + ": Indeterminate arg #";
+		}
+
+		@Override
+		public FirstOrderFunctionCall<BooleanValue> newCall(final List<Expression<?>> argExpressions, final Datatype<?>... remainingArgTypes) throws IllegalArgumentException
+		{
+			checkArgCount(argExpressions, this.getId());
+			final Expression<?> arg0 = argExpressions.get(0);
+			final Expression<?> arg1 = argExpressions.get(1);
+			return new BaseFirstOrderFunctionCall<BooleanValue>(functionSignature, argExpressions, remainingArgTypes)
+			{
+
+				@Override
+				public BooleanValue evaluate(final EvaluationContext context, final AttributeValue... remainingArgs) throws IndeterminateEvaluationException
+				{
+					final AV value = eval(arg0, 0, context, paramType, indeterminateArgMsgPrefix);
+					final Bag<AV> bag = eval(arg1, 1, context, paramBagType, indeterminateArgMsgPrefix);
+					return BagIndexes.contains(bag, value, context) ? BooleanValue.TRUE : BooleanValue.FALSE;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Operation on two bags
+	 */
+	private interface TwoBagOperation<RETURN extends Value>
+	{
+		RETURN evaluate(Bag<?> bag0, Bag<?> bag1, EvaluationContext context);
+	}
+
+	/**
+	 * Function taking two bags of the same datatype
+	 */
+	private static final class TwoBagFunction<RETURN extends Value> extends MultiParameterTypedFirstOrderFunction<RETURN>
+	{
+		private final BagDatatype<?> paramBagType;
+		private final TwoBagOperation<RETURN> operation;
+		private final String indeterminateArgMsgPrefix;
+
+		private TwoBagFunction(final String functionId, final Datatype<RETURN> returnType, final BagDatatype<?> paramBagType, final TwoBagOperation<RETURN> operation)
+		{
+			super(functionId, returnType, false, Arrays.asList(paramBagType, paramBagType));
+			this.paramBagType = paramBagType;
+			this.operation = operation;
+			this.indeterminateArgMsgPrefix = "Function " + functionId + ": Indeterminate arg #";
+		}
+
+		@Override
+		public FirstOrderFunctionCall<RETURN> newCall(final List<Expression<?>> argExpressions, final Datatype<?>... remainingArgTypes) throws IllegalArgumentException
+		{
+			checkArgCount(argExpressions, this.getId());
+			final Expression<?> arg0 = argExpressions.get(0);
+			final Expression<?> arg1 = argExpressions.get(1);
+			return new BaseFirstOrderFunctionCall<RETURN>(functionSignature, argExpressions, remainingArgTypes)
+			{
+
+				@Override
+				public RETURN evaluate(final EvaluationContext context, final AttributeValue... remainingArgs) throws IndeterminateEvaluationException
+				{
+					final Bag<?> bag0 = eval(arg0, 0, context, paramBagType, indeterminateArgMsgPrefix);
+					final Bag<?> bag1 = eval(arg1, 1, context, paramBagType, indeterminateArgMsgPrefix);
+					return operation.evaluate(bag0, bag1, context);
+				}
+			};
+		}
+	}
+
+	/*
+	 * True iff all the values of bag0 are in bag1
+	 */
+	private static boolean isSubset(final Bag<?> bag0, final Bag<?> bag1, final EvaluationContext context)
+	{
+		for (final AttributeValue value : bag0)
+		{
+			if (!BagIndexes.contains(bag1, value, context))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static final TwoBagOperation<BooleanValue> AT_LEAST_ONE_MEMBER_OF_OPERATION = (bag0, bag1, context) -> {
+		/*
+		 * Look up the values of the smaller bag in the larger one (the one more likely to be indexed)
+		 */
+		final Bag<?> smallerBag;
+		final Bag<?> largerBag;
+		if (bag0.size() <= bag1.size())
+		{
+			smallerBag = bag0;
+			largerBag = bag1;
+		}
+		else
+		{
+			smallerBag = bag1;
+			largerBag = bag0;
+		}
+
+		for (final AttributeValue value : smallerBag)
+		{
+			if (BagIndexes.contains(largerBag, value, context))
+			{
+				return BooleanValue.TRUE;
+			}
+		}
+
+		return BooleanValue.FALSE;
+	};
+
+	private static final TwoBagOperation<BooleanValue> SUBSET_OPERATION = (bag0, bag1, context) -> isSubset(bag0, bag1, context) ? BooleanValue.TRUE : BooleanValue.FALSE;
+
+	private static final TwoBagOperation<BooleanValue> SET_EQUALS_OPERATION = (bag0, bag1, context) -> isSubset(bag0, bag1, context) && isSubset(bag1, bag0, context) ? BooleanValue.TRUE
+			: BooleanValue.FALSE;
+
+	private static <AV extends AttributeValue> TwoBagOperation<Bag<AV>> newIntersectionOperation(final Datatype<AV> elementType)
+	{
+		return (bag0, bag1, context) -> {
+			/*
+			 * Values of bag0 (without duplicates, in bag0's order) that are in bag1
+			 */
+			final Set<AV> intersection = new LinkedHashSet<>();
+			for (final AttributeValue value : bag0)
+			{
+				if (BagIndexes.contains(bag1, value, context))
+				{
+					intersection.add(elementType.cast(value));
+				}
+			}
+
+			return Bags.newBag(elementType, intersection);
+		};
+	}
+
+	private static <AV extends AttributeValue> void addFunctions(final String functionIdPrefix, final DatatypeFactory<AV> datatypeFactory, final Set<Function<?>> functions)
+	{
+		final Datatype<AV> datatype = datatypeFactory.getDatatype();
+		final BagDatatype<AV> bagDatatype = datatypeFactory.getBagDatatype();
+		final Datatype<BooleanValue> booleanDatatype = StandardDatatypes.BOOLEAN_FACTORY.getDatatype();
+		functions.add(new IsInFunction<>(functionIdPrefix + "-is-in", datatype, bagDatatype));
+		functions.add(new TwoBagFunction<>(functionIdPrefix + "-at-least-one-member-of", booleanDatatype, bagDatatype, AT_LEAST_ONE_MEMBER_OF_OPERATION));
+		functions.add(new TwoBagFunction<>(functionIdPrefix + "-subset", booleanDatatype, bagDatatype, SUBSET_OPERATION));
+		functions.add(new TwoBagFunction<>(functionIdPrefix + "-set-equals", booleanDatatype, bagDatatype, SET_EQUALS_OPERATION));
+		functions.add(new TwoBagFunction<>(functionIdPrefix + "-intersection", bagDatatype, bagDatatype, newIntersectionOperation(datatype)));
+	}
+
+	/**
+	 * Get the functions
+	 *
+	 * @return type-is-in, type-at-least-one-member-of, type-subset, type-set-equals and type-intersection functions for each of the datatypes string, boolean, integer, anyURI, hexBinary and
+	 *         base64Binary
+	 */
+	static Set<Function<?>> getFunctions()
+	{
+		final Set<Function<?>> functions = HashCollections.newUpdatableSet();
+		for (int i = 0; i < DATATYPE_FACTORIES.size(); i++)
+		{
+			addFunctions(FUNCTION_ID_PREFIXES.get(i), DATATYPE_FACTORIES.get(i), functions);
+		}
+
+		return functions;
+	}
+}
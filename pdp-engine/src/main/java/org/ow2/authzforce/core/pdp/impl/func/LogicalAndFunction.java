@@ -19,6 +19,7 @@ package org.ow2.authzforce.core.pdp.impl.func;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
 
 import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
@@ -34,6 +35,7 @@ import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
 import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
 import org.ow2.authzforce.core.pdp.api.value.Datatype;
 import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
 
 /**
  * A class that implements the logical function "and".
@@ -50,17 +52,23 @@ final class LogicalAndFunction extends SingleParameterTypedFirstOrderFunction<Bo
 	private static final class CallFactory
 	{
 
-		private static final class Call extends BaseFirstOrderFunctionCall<BooleanValue>
+		private static final class Call extends BaseFirstOrderFunctionCall<BooleanValue> implements CompilableBooleanFunctionCall
 		{
 			private final String invalidArgTypeMsgPrefix;
 			private final String indeterminateArgMsgPrefix;
 
 			private final List<Expression<?>> checkedArgExpressions;
 
+			/*
+			 * Whether the call is made with remaining args from a higher-order function, i.e. cannot be compiled
+			 */
+			private final boolean hasRemainingArgs;
+
 			private Call(final FirstOrderFunctionSignature<BooleanValue> functionSig, final List<Expression<?>> argExpressions, final Datatype<?>[] remainingArgTypes) throws IllegalArgumentException
 			{
 				super(functionSig, argExpressions, remainingArgTypes);
 				this.checkedArgExpressions = argExpressions;
+				this.hasRemainingArgs = remainingArgTypes != null && remainingArgTypes.length > 0;
 				invalidArgTypeMsgPrefix = "Function " + functionSig.getName() + ": Invalid type (expected = " + StandardDatatypes.BOOLEAN_FACTORY.getDatatype() + ") of arg#";
 				indeterminateArgMsgPrefix = "Function " + functionSig.getName() + ": Indeterminate arg #";
 			}
@@ -128,6 +136,12 @@ final class LogicalAndFunction extends SingleParameterTypedFirstOrderFunction<Bo
 				return BooleanValue.TRUE;
 			}
 
+			@Override
+			public BooleanEvaluator compile(final Function<Expression<BooleanValue>, BooleanEvaluator> argCompiler)
+			{
+				return hasRemainingArgs ? null : ShortCircuitBooleanEvaluator.newInstance(checkedArgExpressions, argCompiler, false, indeterminateArgMsgPrefix);
+			}
+
 		}
 
 		private final SingleParameterTypedFirstOrderFunctionSignature<BooleanValue, BooleanValue> funcSig;
@@ -20,15 +20,19 @@ package org.ow2.authzforce.core.pdp.impl.func;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
+import java.util.function.Function;
 
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
 import org.ow2.authzforce.core.pdp.api.expression.Expression;
 import org.ow2.authzforce.core.pdp.api.func.BaseFirstOrderFunctionCall;
 import org.ow2.authzforce.core.pdp.api.func.FirstOrderFunctionCall;
+import org.ow2.authzforce.core.pdp.api.func.FirstOrderFunctionSignature;
 import org.ow2.authzforce.core.pdp.api.func.SingleParameterTypedFirstOrderFunction;
 import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
 import org.ow2.authzforce.core.pdp.api.value.Datatype;
 import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
 
 /**
  * Implements the XACML not function
@@ -38,6 +42,71 @@ import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
 final class LogicalNotFunction extends SingleParameterTypedFirstOrderFunction<BooleanValue, BooleanValue>
 {
 
+	/**
+	 * Compiled call, evaluating the argument to a primitive boolean
+	 */
+	private static final class CompiledCall implements BooleanEvaluator
+	{
+		private final BooleanEvaluator compiledArg;
+		private final Call interpretedCall;
+
+		private CompiledCall(final BooleanEvaluator compiledArg, final Call interpretedCall)
+		{
+			this.compiledArg = compiledArg;
+			this.interpretedCall = interpretedCall;
+		}
+
+		@Override
+		public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			try
+			{
+				return !compiledArg.evaluate(context);
+			}
+			catch (final IndeterminateEvaluationException e)
+			{
+				/*
+				 * Indeterminate argument: evaluate the interpreted call to throw the same Indeterminate as without compilation (the argument's attributes are already in the context)
+				 */
+				return interpretedCall.evaluate(context).getUnderlyingValue().booleanValue();
+			}
+		}
+	}
+
+	private static final class Call extends BaseFirstOrderFunctionCall.EagerSinglePrimitiveTypeEval<BooleanValue, BooleanValue> implements CompilableBooleanFunctionCall
+	{
+		/*
+		 * Null if the call is made with remaining args from a higher-order function, i.e. cannot be compiled
+		 */
+		private final Expression<?> argExpression;
+
+		private Call(final FirstOrderFunctionSignature<BooleanValue> functionSig, final List<Expression<?>> argExpressions, final Datatype<?>[] remainingArgTypes) throws IllegalArgumentException
+		{
+			super(functionSig, argExpressions, remainingArgTypes);
+			this.argExpression = argExpressions.size() == 1 ? argExpressions.get(0) : null;
+		}
+
+		@Override
+		protected BooleanValue evaluate(final Deque<BooleanValue> args) throws IndeterminateEvaluationException
+		{
+			return args.getFirst().not();
+		}
+
+		@Override
+		public BooleanEvaluator compile(final Function<Expression<BooleanValue>, BooleanEvaluator> argCompiler)
+		{
+			if (argExpression == null)
+			{
+				return null;
+			}
+
+			// arg datatype checked by the function signature
+			@SuppressWarnings("unchecked")
+			final Expression<BooleanValue> boolArg = (Expression<BooleanValue>) argExpression;
+			return new CompiledCall(argCompiler.apply(boolArg), this);
+		}
+	}
+
 	LogicalNotFunction(final String functionId)
 	{
 		super(functionId, StandardDatatypes.BOOLEAN_FACTORY.getDatatype(), false, Collections.singletonList(StandardDatatypes.BOOLEAN_FACTORY.getDatatype()));
@@ -47,15 +116,7 @@ final class LogicalNotFunction extends SingleParameterTypedFirstOrderFunction<Bo
 	@Override
 	public FirstOrderFunctionCall<BooleanValue> newCall(final List<Expression<?>> argExpressions, final Datatype<?>... remainingArgTypes) throws IllegalArgumentException
 	{
-		return new BaseFirstOrderFunctionCall.EagerSinglePrimitiveTypeEval<BooleanValue, BooleanValue>(functionSignature, argExpressions, remainingArgTypes)
-		{
-			@Override
-			protected BooleanValue evaluate(final Deque<BooleanValue> args) throws IndeterminateEvaluationException
-			{
-				return args.getFirst().not();
-			}
-
-		};
+		return new Call(functionSignature, argExpressions, remainingArgTypes);
 	}
 
 }
@@ -19,6 +19,7 @@ package org.ow2.authzforce.core.pdp.impl.func;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
 
 import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
@@ -33,6 +34,7 @@ import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
 import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
 import org.ow2.authzforce.core.pdp.api.value.Datatype;
 import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
 
 /**
  * A class that implements the logical functions "or"
@@ -47,17 +49,23 @@ import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
 final class LogicalOrFunction extends SingleParameterTypedFirstOrderFunction<BooleanValue, BooleanValue>
 {
 
-	private static final class Call extends BaseFirstOrderFunctionCall<BooleanValue>
+	private static final class Call extends BaseFirstOrderFunctionCall<BooleanValue> implements CompilableBooleanFunctionCall
 	{
 		private final String indeterminateArgMsgPrefix;
 		private final String invalidArgTypeMsgPrefix;
 
 		private final List<Expression<?>> checkedArgExpressions;
 
+		/*
+		 * Whether the call is made with remaining args from a higher-order function, i.e. cannot be compiled
+		 */
+		private final boolean hasRemainingArgs;
+
 		private Call(final FirstOrderFunctionSignature<BooleanValue> functionSig, final List<Expression<?>> argExpressions, final Datatype<?>[] remainingArgTypes) throws IllegalArgumentException
 		{
 			super(functionSig, argExpressions, remainingArgTypes);
 			this.checkedArgExpressions = argExpressions;
+			this.hasRemainingArgs = remainingArgTypes != null && remainingArgTypes.length > 0;
 			indeterminateArgMsgPrefix = "Function " + functionSig.getName() + ": Indeterminate arg #";
 			invalidArgTypeMsgPrefix = "Function " + functionSig.getName() + ": Invalid type (expected = " + StandardDatatypes.BOOLEAN_FACTORY.getDatatype() + ") of arg#";
 		}
@@ -124,6 +132,12 @@ final class LogicalOrFunction extends SingleParameterTypedFirstOrderFunction<Boo
 
 			return BooleanValue.FALSE;
 		}
+
+		@Override
+		public BooleanEvaluator compile(final Function<Expression<BooleanValue>, BooleanEvaluator> argCompiler)
+		{
+			return hasRemainingArgs ? null : ShortCircuitBooleanEvaluator.newInstance(checkedArgExpressions, argCompiler, true, indeterminateArgMsgPrefix);
+		}
 	}
 
 	LogicalOrFunction(final String functionId)
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.func;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.expression.Expression;
+import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
+import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
+
+/**
+ * Compiled call to the logical function 'and' or 'or', evaluating the compiled arguments to primitive booleans in order, until one of them returns the short-circuit value (false for 'and', true for
+ * 'or'). If none does and some argument is Indeterminate, the result is Indeterminate (the last Indeterminate argument is reported), like the interpreted calls.
+ *
+ * @version $Id: $
+ */
+final class ShortCircuitBooleanEvaluator implements BooleanEvaluator
+{
+	private final BooleanEvaluator[] compiledArgs;
+	private final boolean shortCircuitValue;
+	private final String indeterminateArgMsgPrefix;
+
+	private ShortCircuitBooleanEvaluator(final BooleanEvaluator[] compiledArgs, final boolean shortCircuitValue, final String indeterminateArgMsgPrefix)
+	{
+		this.compiledArgs = compiledArgs;
+		this.shortCircuitValue = shortCircuitValue;
+		this.indeterminateArgMsgPrefix = indeterminateArgMsgPrefix;
+	}
+
+	/**
+	 * Compiles a call to 'and' or 'or'
+	 *
+	 * @param argExpressions
+	 *            argument expressions (boolean expressions, checked by the function signature)
+	 * @param argCompiler
+	 *            compiler of the argument expressions
+	 * @param shortCircuitValue
+	 *            value of an argument that stops the evaluation and is returned as result: false for 'and', true for 'or'
+	 * @param indeterminateArgMsgPrefix
+	 *            prefix of the message of the Indeterminate result, followed by the index of the Indeterminate argument
+	 * @return compiled call
+	 */
+	static BooleanEvaluator newInstance(final List<Expression<?>> argExpressions, final Function<Expression<BooleanValue>, BooleanEvaluator> argCompiler, final boolean shortCircuitValue,
+			final String indeterminateArgMsgPrefix)
+	{
+		final BooleanEvaluator[] compiledArgs = new BooleanEvaluator[argExpressions.size()];
+		int argIndex = 0;
+		for (final Expression<?> arg : argExpressions)
+		{
+			// arg datatype checked by the function signature
+			@SuppressWarnings("unchecked")
+			final Expression<BooleanValue> boolArg = (Expression<BooleanValue>) arg;
+			compiledArgs[argIndex] = argCompiler.apply(boolArg);
+			argIndex++;
+		}
+
+		return new ShortCircuitBooleanEvaluator(compiledArgs, shortCircuitValue, indeterminateArgMsgPrefix);
+	}
+
+	@Override
+	public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+	{
+		IndeterminateEvaluationException indeterminateException = null;
+		for (int argIndex = 0; argIndex < compiledArgs.length; argIndex++)
+		{
+			try
+			{
+				if (compiledArgs[argIndex].evaluate(context) == shortCircuitValue)
+				{
+					return shortCircuitValue;
+				}
+			}
+			catch (final IndeterminateEvaluationException e)
+			{
+				// same as the interpreted calls
+				indeterminateException = new IndeterminateEvaluationException(indeterminateArgMsgPrefix + argIndex, StatusHelper.STATUS_PROCESSING_ERROR, e);
+			}
+		}
+
+		if (indeterminateException != null)
+		{
+			throw indeterminateException;
+		}
+
+		return !shortCircuitValue;
+	}
+}
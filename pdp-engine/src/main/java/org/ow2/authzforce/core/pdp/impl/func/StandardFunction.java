@@ -92,6 +92,7 @@ import org.ow2.authzforce.core.pdp.impl.func.TemporalArithmeticOperators.TimeSub
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 
 /**
@@ -858,13 +859,29 @@ public enum StandardFunction
 		nonGenericFunctions.add(new SubstringFunction<>(StandardFunction.ANYURI_SUBSTRING.id, StandardDatatypes.ANYURI_FACTORY.getDatatype()));
 
 		/*
-		 * First-order bag functions (A.3.10, A.3.11)
+		 * First-order bag functions (A.3.10, A.3.11). The functions checking bag membership by equality on datatypes where equality is consistent with the values' hash code are replaced with
+		 * implementations using the bag indexes of the evaluation context
 		 */
+		final Set<Function<?>> indexedBagFunctions = IndexedBagFunctions.getFunctions();
+		final Set<String> indexedBagFunctionIds = HashCollections.newUpdatableSet();
+		for (final Function<?> indexedBagFunction : indexedBagFunctions)
+		{
+			indexedBagFunctionIds.add(indexedBagFunction.getId());
+		}
+
 		for (final DatatypeFactory<?> typeFactory : StandardDatatypes.MANDATORY_DATATYPE_SET)
 		{
-			nonGenericFunctions.addAll(FirstOrderBagFunctions.getFunctions(typeFactory));
+			for (final Function<?> bagFunction : FirstOrderBagFunctions.getFunctions(typeFactory))
+			{
+				if (!indexedBagFunctionIds.contains(bagFunction.getId()))
+				{
+					nonGenericFunctions.add(bagFunction);
+				}
+			}
 		}
 
+		nonGenericFunctions.addAll(indexedBagFunctions);
+
 		/*
 		 * Higher-order bag functions (A.3.12)
 		 */
@@ -912,6 +929,15 @@ public enum StandardFunction
 		}
 	}
 
+	/**
+	 * IDs of the equality functions whose result is consistent with {@link org.ow2.authzforce.core.pdp.api.value.AttributeValue#equals(Object)} and
+	 * {@link org.ow2.authzforce.core.pdp.api.value.AttributeValue#hashCode()}, therefore usable for hash-based lookups of AttributeValues, e.g. to evaluate a Match as a membership check of the
+	 * AttributeValue in the bag, or to index Targets by AttributeValue. Temporal and double equality functions are excluded because their equality is not reliably consistent with the hash code
+	 * (time zones, NaN, -0.0...); x500Name-equal and rfc822Name-equal are excluded because of their case-insensitive parts.
+	 */
+	public static final Set<String> HASH_CONSISTENT_EQUALITY_FUNCTION_IDS = ImmutableSet.of(STRING_EQUAL.getId(), BOOLEAN_EQUAL.getId(), INTEGER_EQUAL.getId(), ANYURI_EQUAL.getId(),
+			HEXBINARY_EQUAL.getId(), BASE64BINARY_EQUAL.getId());
+
 	private static final Map<String, StandardFunction> ID_TO_STD_FUNC_MAP = Maps.uniqueIndex(Arrays.asList(StandardFunction.values()), new com.google.common.base.Function<StandardFunction, String>()
 	{
 
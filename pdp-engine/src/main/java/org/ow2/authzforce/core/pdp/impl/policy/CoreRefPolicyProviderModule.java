@@ -19,6 +19,7 @@ package org.ow2.authzforce.core.pdp.impl.policy;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.Serializable;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.DirectoryIteratorException;
@@ -30,14 +31,26 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.IdReferenceType;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.Policy;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.PolicySet;
 
@@ -57,6 +70,7 @@ import org.ow2.authzforce.core.pdp.api.policy.StaticTopLevelPolicyElementEvaluat
 import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementEvaluator;
 import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
 import org.ow2.authzforce.core.pdp.api.policy.VersionPatterns;
+import org.ow2.authzforce.xacml.identifiers.XACMLNodeName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.ResourceUtils;
@@ -118,7 +132,7 @@ public class CoreRefPolicyProviderModule extends BaseStaticRefPolicyProviderModu
 
 		private final P policy;
 
-		private PolicyWithNamespaces(final P policy, final Map<String, String> nsPrefixUriMap)
+		PolicyWithNamespaces(final P policy, final Map<String, String> nsPrefixUriMap)
 		{
 			this.policy = policy;
 			this.nsPrefixUriMap = nsPrefixUriMap;
@@ -126,6 +140,218 @@ public class CoreRefPolicyProviderModule extends BaseStaticRefPolicyProviderModu
 
 	}
 
+	/*
+	 * Result of parsing a policy document: the Policy or PolicySet with the namespace prefix-URI mappings of the document, and the Policy evaluator if it is a Policy
+	 */
+	private static final class ParsedPolicyDocument
+	{
+		private final Object jaxbPolicyOrPolicySet;
+		private final Map<String, String> nsPrefixUriMap;
+		private final StaticTopLevelPolicyElementEvaluator policyEvaluator;
+
+		private ParsedPolicyDocument(final Object jaxbPolicyOrPolicySet, final Map<String, String> nsPrefixUriMap, final StaticTopLevelPolicyElementEvaluator policyEvaluator)
+		{
+			this.jaxbPolicyOrPolicySet = jaxbPolicyOrPolicySet;
+			this.nsPrefixUriMap = nsPrefixUriMap;
+			this.policyEvaluator = policyEvaluator;
+		}
+	}
+
+	/*
+	 * Factory of the (daemon) threads that load policies
+	 */
+	private static final ThreadFactory POLICY_LOADER_THREAD_FACTORY = new ThreadFactory()
+	{
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable)
+		{
+			final Thread thread = new Thread(runnable, "authzforce-policy-loader-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	/*
+	 * Runs policy loading tasks (parsing/instantiation of independent policies) concurrently with a dedicated thread pool - bounded by the number of tasks and the number of available processors,
+	 * and shut down once the tasks are done, so that no other work competes with policy loading and no thread keeps per-thread state (e.g. policy parsers) afterwards - or in the current thread if
+	 * there is only one. The futures are returned in the same order as the tasks, so that the caller may process the results - and report errors - in the same order as if the tasks were run
+	 * sequentially.
+	 */
+	private static <T> List<Future<T>> invokeAll(final List<Callable<T>> tasks)
+	{
+		if (tasks.size() == 1)
+		{
+			final FutureTask<T> task = new FutureTask<>(tasks.get(0));
+			task.run();
+			return Collections.<Future<T>> singletonList(task);
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()), POLICY_LOADER_THREAD_FACTORY);
+		try
+		{
+			return executor.invokeAll(tasks);
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while loading policies", e);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	 * Get the result of a policy loading task, rethrowing the task's exception if it failed
+	 */
+	private static <T> T getResult(final Future<T> future) throws IllegalArgumentException
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while loading policies", e);
+		}
+		catch (final ExecutionException e)
+		{
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+
+			throw new RuntimeException("Failed to load policy", cause);
+		}
+	}
+
+	private static StaticTopLevelPolicyElementEvaluator getPolicyEvaluator(final Policy jaxbPolicy, final Map<String, String> nsPrefixUriMap, final ExpressionFactory expressionFactory,
+			final CombiningAlgRegistry combiningAlgRegistry) throws IllegalArgumentException
+	{
+		try
+		{
+			return PolicyEvaluators.getInstance(jaxbPolicy, null, nsPrefixUriMap, expressionFactory, combiningAlgRegistry);
+		}
+		catch (final IllegalArgumentException e)
+		{
+			throw new IllegalArgumentException("Invalid Policy with PolicyId=" + jaxbPolicy.getPolicyId() + ", Version=" + jaxbPolicy.getVersion(), e);
+		}
+	}
+
+	/*
+	 * Get the URLs of the policies at given locations, with placeholders replaced and file path patterns ("file://DIRECTORY_PATH/*SUFFIX") expanded
+	 */
+	private static List<URL> getPolicyURLs(final List<String> policyLocations, final EnvironmentProperties environmentProperties)
+	{
+		final List<URL> policyURLs = new ArrayList<>();
+		int policyLocationIndex = 0;
+		for (final String policyLocation : policyLocations)
+		{
+			// Check whether the location is a file path pattern
+			if (policyLocation.startsWith(ResourceUtils.FILE_URL_PREFIX))
+			{
+				// location on the filesystem
+				final int index = policyLocation.indexOf("/*");
+				if (index > 0)
+				{
+					// this is a file path pattern
+					final String directoryLocation = policyLocation.substring(0, index);
+					final String suffix = policyLocation.substring(index + 2);
+					if (LOGGER.isDebugEnabled())
+					{
+						// Beware of autoboxing which causes call to
+						// Integer.valueOf(...) on policyLocationIndex
+						LOGGER.debug("Policy location #{} is a filepath pattern (found '/*') -> expanding to all files in directory '{}' with suffix '{}'", policyLocationIndex, directoryLocation,
+								suffix);
+					}
+
+					final String dirLocation = environmentProperties.replacePlaceholders(directoryLocation);
+					final URL directoryURL;
+					try
+					{
+						directoryURL = ResourceUtils.getURL(dirLocation);
+					}
+					catch (final FileNotFoundException e)
+					{
+						throw new IllegalArgumentException("Invalid directory location: '" + dirLocation + "' extracted from policy location (pattern) '" + policyLocation + "'", e);
+					}
+
+					final Path directoryPath;
+					try
+					{
+						directoryPath = Paths.get(directoryURL.toURI());
+					}
+					catch (final URISyntaxException e)
+					{
+						throw new RuntimeException("Error converting policy directory URL '" + directoryURL + "' - extracted from policy location (pattern) '" + policyLocation
+								+ "' - to a Java Path (via URI)", e);
+					}
+
+					try (DirectoryStream<Path> stream = Files.newDirectoryStream(directoryPath))
+					{
+						for (final Path path : stream)
+						{
+							if (Files.isRegularFile(path))
+							{
+								final Path lastPathElement = path.getFileName();
+								if (lastPathElement != null && lastPathElement.toString().endsWith(suffix))
+								{
+									policyURLs.add(lastPathElement.toUri().toURL());
+								}
+							}
+						}
+					}
+					catch (final DirectoryIteratorException ex)
+					{
+						// I/O error encounted during the iteration, the
+						// cause is an IOException
+						throw new RuntimeException("Error iterating over files in directory '" + dirLocation + "' to get policies at locations matching pattern '" + policyLocation + "'",
+								ex.getCause());
+					}
+					catch (final IOException e)
+					{
+						throw new RuntimeException("Error getting policy files in '" + dirLocation + "' according to policy location pattern '" + policyLocation + "'", e);
+					}
+
+					continue;
+				}
+			}
+
+			// not a file path pattern
+			final String policyLoc = environmentProperties.replacePlaceholders(policyLocation);
+			final URL policyURL;
+			try
+			{
+				// try to load the policy location as a Spring resource
+				policyURL = ResourceUtils.getURL(policyLoc);
+			}
+			catch (final FileNotFoundException e)
+			{
+				throw new IllegalArgumentException("Error loading policy (as Spring resource) from the following URL: " + policyLoc, e);
+			}
+
+			if (policyURL == null)
+			{
+				throw new IllegalArgumentException("No policy file found at the specified location: " + policyLoc);
+			}
+
+			policyURLs.add(policyURL);
+			policyLocationIndex++;
+		}
+
+		return policyURLs;
+	}
+
 	/**
 	 * Module factory
 	 * 
@@ -150,103 +376,64 @@ public class CoreRefPolicyProviderModule extends BaseStaticRefPolicyProviderModu
 				throw NULL_CONF_ARGUMENT_EXCEPTION;
 			}
 
-			final List<URL> policyURLs = new ArrayList<>();
-			int policyLocationIndex = 0;
-			for (final String policyLocation : conf.getPolicyLocations())
-			{
-				// Check whether the location is a file path pattern
-				if (policyLocation.startsWith(ResourceUtils.FILE_URL_PREFIX))
-				{
-					// location on the filesystem
-					final int index = policyLocation.indexOf("/*");
-					if (index > 0)
-					{
-						// this is a file path pattern
-						final String directoryLocation = policyLocation.substring(0, index);
-						final String suffix = policyLocation.substring(index + 2);
-						if (LOGGER.isDebugEnabled())
-						{
-							// Beware of autoboxing which causes call to
-							// Integer.valueOf(...) on policyLocationIndex
-							LOGGER.debug("Policy location #{} is a filepath pattern (found '/*') -> expanding to all files in directory '{}' with suffix '{}'", policyLocationIndex, directoryLocation,
-									suffix);
-						}
+			return CoreRefPolicyProviderModule.getInstance(getPolicyURLs(conf.getPolicyLocations(), environmentProperties), xacmlParserFactory, maxPolicySetRefDepth, expressionFactory,
+					combiningAlgRegistry);
+		}
+	}
 
-						final String dirLocation = environmentProperties.replacePlaceholders(directoryLocation);
-						final URL directoryURL;
-						try
-						{
-							directoryURL = ResourceUtils.getURL(dirLocation);
-						}
-						catch (final FileNotFoundException e)
-						{
-							throw new IllegalArgumentException("Invalid directory location: '" + dirLocation + "' extracted from policy location (pattern) '" + policyLocation + "'", e);
-						}
+	/**
+	 * Module factory loading policies from a binary policy snapshot (see {@link PolicySnapshot})
+	 * 
+	 */
+	public static class SnapshotFactory extends RefPolicyProviderModule.Factory<org.ow2.authzforce.core.xmlns.pdp.SnapshotRefPolicyProvider>
+	{
 
-						final Path directoryPath;
-						try
-						{
-							directoryPath = Paths.get(directoryURL.toURI());
-						}
-						catch (final URISyntaxException e)
-						{
-							throw new RuntimeException("Error converting policy directory URL '" + directoryURL + "' - extracted from policy location (pattern) '" + policyLocation
-									+ "' - to a Java Path (via URI)", e);
-						}
+		private static final IllegalArgumentException NULL_CONF_ARGUMENT_EXCEPTION = new IllegalArgumentException("RefPolicyProvider configuration undefined");
 
-						try (DirectoryStream<Path> stream = Files.newDirectoryStream(directoryPath))
-						{
-							for (final Path path : stream)
-							{
-								if (Files.isRegularFile(path))
-								{
-									final Path lastPathElement = path.getFileName();
-									if (lastPathElement != null && lastPathElement.toString().endsWith(suffix))
-									{
-										policyURLs.add(lastPathElement.toUri().toURL());
-									}
-								}
-							}
-						}
-						catch (final DirectoryIteratorException ex)
-						{
-							// I/O error encounted during the iteration, the
-							// cause is an IOException
-							throw new RuntimeException("Error iterating over files in directory '" + dirLocation + "' to get policies at locations matching pattern '" + policyLocation + "'",
-									ex.getCause());
-						}
-						catch (final IOException e)
-						{
-							throw new RuntimeException("Error getting policy files in '" + dirLocation + "' according to policy location pattern '" + policyLocation + "'", e);
-						}
+		@Override
+		public Class<org.ow2.authzforce.core.xmlns.pdp.SnapshotRefPolicyProvider> getJaxbClass()
+		{
+			return org.ow2.authzforce.core.xmlns.pdp.SnapshotRefPolicyProvider.class;
+		}
 
-						continue;
-					}
-				}
+		@Override
+		public RefPolicyProviderModule getInstance(final org.ow2.authzforce.core.xmlns.pdp.SnapshotRefPolicyProvider conf, final XACMLParserFactory xacmlParserFactory,
+				final int maxPolicySetRefDepth, final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry, final EnvironmentProperties environmentProperties)
+		{
+			if (conf == null)
+			{
+				throw NULL_CONF_ARGUMENT_EXCEPTION;
+			}
 
-				// not a file path pattern
-				final String policyLoc = environmentProperties.replacePlaceholders(policyLocation);
-				final URL policyURL;
-				try
-				{
-					// try to load the policy location as a Spring resource
-					policyURL = ResourceUtils.getURL(policyLoc);
-				}
-				catch (final FileNotFoundException e)
-				{
-					throw new IllegalArgumentException("Error loading policy (as Spring resource) from the following URL: " + policyLoc, e);
-				}
+			final String snapshotLoc = environmentProperties.replacePlaceholders(conf.getSnapshotLocation());
+			final URL snapshotURL;
+			try
+			{
+				// try to load the snapshot location as a Spring resource
+				snapshotURL = ResourceUtils.getURL(snapshotLoc);
+			}
+			catch (final FileNotFoundException e)
+			{
+				throw new IllegalArgumentException("Error loading policy snapshot (as Spring resource) from the following URL: " + snapshotLoc, e);
+			}
 
-				if (policyURL == null)
+			final PolicySnapshot snapshot;
+			try
+			{
+				snapshot = PolicySnapshot.read(snapshotURL);
+				// the source policies are optional, only used to detect a stale snapshot
+				final List<String> policyLocations = conf.getPolicyLocations();
+				if (!policyLocations.isEmpty())
 				{
-					throw new IllegalArgumentException("No policy file found at the specified location: " + policyLoc);
+					snapshot.checkSource(getPolicyURLs(policyLocations, environmentProperties));
 				}
-
-				policyURLs.add(policyURL);
-				policyLocationIndex++;
+			}
+			catch (final IOException e)
+			{
+				throw new RuntimeException("Error reading policy snapshot from the following URL: " + snapshotURL, e);
 			}
 
-			return CoreRefPolicyProviderModule.getInstance(policyURLs, xacmlParserFactory, maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry);
+			return CoreRefPolicyProviderModule.getInstance(snapshot.getPolicies(), snapshot.getPolicySets(), maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry);
 		}
 	}
 
@@ -361,14 +548,48 @@ public class CoreRefPolicyProviderModule extends BaseStaticRefPolicyProviderModu
 		assert policyMap != null && jaxbPolicySetMap != null && expressionFactory != null && combiningAlgRegistry != null;
 
 		this.policyEvaluatorMap = policyMap;
+		/*
+		 * Instantiate independent PolicySets concurrently, in order of reference dependency, if possible; else (or if any PolicySet turns out to be invalid), sequentially in order to report the same
+		 * error regardless of the concurrency
+		 */
+		final List<List<PolicyWithNamespaces<PolicySet>>> policySetDependencyLevels = getPolicySetDependencyLevels(jaxbPolicySetMap);
+		Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> policySetEvaluatorTable = null;
+		if (policySetDependencyLevels != null)
+		{
+			int policySetCount = 0;
+			for (final List<PolicyWithNamespaces<PolicySet>> policySetLevel : policySetDependencyLevels)
+			{
+				policySetCount += policySetLevel.size();
+			}
+
+			// no concurrency if there is a single PolicySet per level
+			if (policySetDependencyLevels.size() < policySetCount)
+			{
+				policySetEvaluatorTable = instantiatePolicySetsConcurrently(policySetDependencyLevels, policyMap, jaxbPolicySetMap, this.maxPolicySetRefDepth, expressionFactory,
+						combiningAlgRegistry);
+			}
+		}
+
+		if (policySetEvaluatorTable == null)
+		{
+			policySetEvaluatorTable = instantiatePolicySetsSequentially(policyMap, jaxbPolicySetMap, this.maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry);
+		}
+
+		this.policySetEvaluatorMap = new PolicyMap<>(policySetEvaluatorTable.rowMap());
+	}
+
+	private static Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> instantiatePolicySetsSequentially(final PolicyMap<StaticTopLevelPolicyElementEvaluator> policyMap,
+			final PolicyMap<PolicyWithNamespaces<PolicySet>> jaxbPolicySetMap, final int maxPolicySetRefDepth, final ExpressionFactory expressionFactory,
+			final CombiningAlgRegistry combiningAlgRegistry) throws IllegalArgumentException
+	{
 		final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> updatablePolicySetEvaluatorTable = HashBasedTable.create();
 		/*
 		 * Ref policy Provider module used only for initialization, more particularly for parsing the PolicySets when they are referred to by others (in PolicySetIdReferences)
 		 */
 		final Set<String> parsedPolicyIds = HashCollections.newUpdatableSet();
 		final Set<String> parsedPolicySetIds = HashCollections.newUpdatableSet();
-		final StaticRefPolicyProvider bootstrapRefPolicyProvider = new InitOnlyRefPolicyProvider(this.policyEvaluatorMap, jaxbPolicySetMap, parsedPolicyIds, parsedPolicySetIds,
-				updatablePolicySetEvaluatorTable, this.maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry);
+		final StaticRefPolicyProvider bootstrapRefPolicyProvider = new InitOnlyRefPolicyProvider(policyMap, jaxbPolicySetMap, parsedPolicyIds, parsedPolicySetIds,
+				updatablePolicySetEvaluatorTable, maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry);
 		for (final Entry<String, PolicyVersions<PolicyWithNamespaces<PolicySet>>> jaxbPolicySetWithNsEntry : jaxbPolicySetMap.entrySet())
 		{
 			final String policySetId = jaxbPolicySetWithNsEntry.getKey();
@@ -404,7 +625,168 @@ public class CoreRefPolicyProviderModule extends BaseStaticRefPolicyProviderModu
 			}
 		}
 
-		this.policySetEvaluatorMap = new PolicyMap<>(updatablePolicySetEvaluatorTable.rowMap());
+		return updatablePolicySetEvaluatorTable;
+	}
+
+	/*
+	 * Instantiates the PolicySets level by level (see getPolicySetDependencyLevels()), the PolicySets of a same level concurrently. Returns null if any PolicySet is invalid (the PolicySets must then be
+	 * instantiated sequentially to report the error).
+	 */
+	private static Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> instantiatePolicySetsConcurrently(
+			final List<List<PolicyWithNamespaces<PolicySet>>> policySetDependencyLevels, final PolicyMap<StaticTopLevelPolicyElementEvaluator> policyMap,
+			final PolicyMap<PolicyWithNamespaces<PolicySet>> jaxbPolicySetMap, final int maxPolicySetRefDepth, final ExpressionFactory expressionFactory,
+			final CombiningAlgRegistry combiningAlgRegistry)
+	{
+		/*
+		 * The table is only updated by this thread between two levels. While a level is being instantiated, the PolicySets it refers to are already in the table, so the bootstrap provider only reads
+		 * it.
+		 */
+		final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> updatablePolicySetEvaluatorTable = HashBasedTable.create();
+		final Set<String> parsedPolicyIds = ConcurrentHashMap.newKeySet();
+		final Set<String> parsedPolicySetIds = ConcurrentHashMap.newKeySet();
+		final StaticRefPolicyProvider bootstrapRefPolicyProvider = new InitOnlyRefPolicyProvider(policyMap, jaxbPolicySetMap, parsedPolicyIds, parsedPolicySetIds,
+				updatablePolicySetEvaluatorTable, maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry);
+		for (final List<PolicyWithNamespaces<PolicySet>> policySetLevel : policySetDependencyLevels)
+		{
+			final List<Callable<StaticTopLevelPolicyElementEvaluator>> policySetInstantiators = new ArrayList<>(policySetLevel.size());
+			for (final PolicyWithNamespaces<PolicySet> jaxbPolicySetWithNs : policySetLevel)
+			{
+				policySetInstantiators.add(new Callable<StaticTopLevelPolicyElementEvaluator>()
+				{
+
+					@Override
+					public StaticTopLevelPolicyElementEvaluator call() throws IllegalArgumentException
+					{
+						return PolicyEvaluators.getInstanceStatic(jaxbPolicySetWithNs.policy, null, jaxbPolicySetWithNs.nsPrefixUriMap, expressionFactory, combiningAlgRegistry, parsedPolicyIds,
+								parsedPolicySetIds, bootstrapRefPolicyProvider, null);
+					}
+
+				});
+			}
+
+			final List<Future<StaticTopLevelPolicyElementEvaluator>> futurePolicySetEvaluators = invokeAll(policySetInstantiators);
+			int policySetIndex = 0;
+			for (final Future<StaticTopLevelPolicyElementEvaluator> futurePolicySetEvaluator : futurePolicySetEvaluators)
+			{
+				final StaticTopLevelPolicyElementEvaluator policySetEvaluator;
+				try
+				{
+					policySetEvaluator = getResult(futurePolicySetEvaluator);
+				}
+				catch (final IllegalArgumentException e)
+				{
+					LOGGER.debug("Invalid PolicySet found while instantiating PolicySets concurrently, falling back to sequential instantiation to report the error", e);
+					return null;
+				}
+
+				final PolicySet jaxbPolicySet = policySetLevel.get(policySetIndex).policy;
+				updatablePolicySetEvaluatorTable.put(jaxbPolicySet.getPolicySetId(), new PolicyVersion(jaxbPolicySet.getVersion()), policySetEvaluator);
+				policySetIndex++;
+			}
+		}
+
+		return updatablePolicySetEvaluatorTable;
+	}
+
+	/*
+	 * Adds the PolicySets referenced by a PolicySet - directly or from nested PolicySets - as resolved by jaxbPolicySetMap, to outReferencedPolicySets. Returns false if a reference cannot be
+	 * resolved.
+	 */
+	private static boolean addReferencedPolicySets(final PolicySet jaxbPolicySet, final PolicyMap<PolicyWithNamespaces<PolicySet>> jaxbPolicySetMap,
+			final Set<PolicyWithNamespaces<PolicySet>> outReferencedPolicySets)
+	{
+		for (final Serializable policySetChildElt : jaxbPolicySet.getPolicySetsAndPoliciesAndPolicySetIdReferences())
+		{
+			if (policySetChildElt instanceof PolicySet)
+			{
+				if (!addReferencedPolicySets((PolicySet) policySetChildElt, jaxbPolicySetMap, outReferencedPolicySets))
+				{
+					return false;
+				}
+			}
+			else if (policySetChildElt instanceof JAXBElement && ((JAXBElement<?>) policySetChildElt).getName().getLocalPart().equals(XACMLNodeName.POLICYSET_ID_REFERENCE.value()))
+			{
+				final IdReferenceType idRef = (IdReferenceType) ((JAXBElement<?>) policySetChildElt).getValue();
+				final VersionPatterns versionConstraints;
+				try
+				{
+					versionConstraints = new VersionPatterns(idRef.getVersion(), idRef.getEarliestVersion(), idRef.getLatestVersion());
+				}
+				catch (final IllegalArgumentException e)
+				{
+					return false;
+				}
+
+				final Entry<PolicyVersion, PolicyWithNamespaces<PolicySet>> refPolicySetEntry = jaxbPolicySetMap.get(idRef.getValue(), Optional.of(versionConstraints));
+				if (refPolicySetEntry == null)
+				{
+					return false;
+				}
+
+				outReferencedPolicySets.add(refPolicySetEntry.getValue());
+			}
+		}
+
+		return true;
+	}
+
+	/*
+	 * Sorts the PolicySets in levels of reference dependency: the PolicySets of a level only refer to PolicySets of previous levels (via PolicySetIdReferences), therefore the PolicySets of a same
+	 * level may be instantiated concurrently. Returns null if the references cannot be resolved this way (unknown or circular reference).
+	 */
+	private static List<List<PolicyWithNamespaces<PolicySet>>> getPolicySetDependencyLevels(final PolicyMap<PolicyWithNamespaces<PolicySet>> jaxbPolicySetMap)
+	{
+		/*
+		 * PolicyWithNamespaces does not override equals(): identity-based maps/sets are explicit about it
+		 */
+		final Map<PolicyWithNamespaces<PolicySet>, Set<PolicyWithNamespaces<PolicySet>>> remainingReferencedPolicySets = new IdentityHashMap<>();
+		for (final Entry<String, PolicyVersions<PolicyWithNamespaces<PolicySet>>> jaxbPolicySetWithNsEntry : jaxbPolicySetMap.entrySet())
+		{
+			for (final Entry<PolicyVersion, PolicyWithNamespaces<PolicySet>> jaxbPolicySetEntry : jaxbPolicySetWithNsEntry.getValue())
+			{
+				final PolicyWithNamespaces<PolicySet> jaxbPolicySetWithNs = jaxbPolicySetEntry.getValue();
+				final Set<PolicyWithNamespaces<PolicySet>> referencedPolicySets = Collections.newSetFromMap(new IdentityHashMap<PolicyWithNamespaces<PolicySet>, Boolean>());
+				if (!addReferencedPolicySets(jaxbPolicySetWithNs.policy, jaxbPolicySetMap, referencedPolicySets))
+				{
+					return null;
+				}
+
+				remainingReferencedPolicySets.put(jaxbPolicySetWithNs, referencedPolicySets);
+			}
+		}
+
+		final List<List<PolicyWithNamespaces<PolicySet>>> levels = new ArrayList<>();
+		while (!remainingReferencedPolicySets.isEmpty())
+		{
+			final List<PolicyWithNamespaces<PolicySet>> level = new ArrayList<>();
+			for (final Entry<PolicyWithNamespaces<PolicySet>, Set<PolicyWithNamespaces<PolicySet>>> entry : remainingReferencedPolicySets.entrySet())
+			{
+				if (entry.getValue().isEmpty())
+				{
+					level.add(entry.getKey());
+				}
+			}
+
+			if (level.isEmpty())
+			{
+				// circular reference
+				return null;
+			}
+
+			for (final PolicyWithNamespaces<PolicySet> jaxbPolicySetWithNs : level)
+			{
+				remainingReferencedPolicySets.remove(jaxbPolicySetWithNs);
+			}
+
+			for (final Set<PolicyWithNamespaces<PolicySet>> referencedPolicySets : remainingReferencedPolicySets.values())
+			{
+				referencedPolicySets.removeAll(level);
+			}
+
+			levels.add(level);
+		}
+
+		return levels;
 	}
 
 	/**
@@ -450,22 +832,34 @@ public class CoreRefPolicyProviderModule extends BaseStaticRefPolicyProviderModu
 		}
 		else
 		{
-			final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> updatablePolicyTable = HashBasedTable.create();
+			/*
+			 * Policies do not refer to other policies, therefore may be instantiated concurrently
+			 */
+			final List<Callable<StaticTopLevelPolicyElementEvaluator>> policyInstantiators = new ArrayList<>(jaxbPolicies.size());
 			for (final PolicyWithNamespaces<Policy> jaxbPolicyWithNs : jaxbPolicies)
 			{
-				final Policy jaxbPolicy = jaxbPolicyWithNs.policy;
-				final String policyId = jaxbPolicy.getPolicyId();
-				final String policyVersion = jaxbPolicy.getVersion();
-				final StaticTopLevelPolicyElementEvaluator policyEvaluator;
-				try
-				{
-					policyEvaluator = PolicyEvaluators.getInstance(jaxbPolicy, null, jaxbPolicyWithNs.nsPrefixUriMap, expressionFactory, combiningAlgRegistry);
-				}
-				catch (final IllegalArgumentException e)
+				policyInstantiators.add(new Callable<StaticTopLevelPolicyElementEvaluator>()
 				{
-					throw new IllegalArgumentException("Invalid Policy with PolicyId=" + policyId + ", Version=" + policyVersion, e);
-				}
 
+					@Override
+					public StaticTopLevelPolicyElementEvaluator call() throws IllegalArgumentException
+					{
+						return getPolicyEvaluator(jaxbPolicyWithNs.policy, jaxbPolicyWithNs.nsPrefixUriMap, expressionFactory, combiningAlgRegistry);
+					}
+
+				});
+			}
+
+			final List<Future<StaticTopLevelPolicyElementEvaluator>> futurePolicyEvaluators = invokeAll(policyInstantiators);
+			final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> updatablePolicyTable = HashBasedTable.create();
+			int policyIndex = 0;
+			for (final Future<StaticTopLevelPolicyElementEvaluator> futurePolicyEvaluator : futurePolicyEvaluators)
+			{
+				final Policy jaxbPolicy = jaxbPolicies.get(policyIndex).policy;
+				final String policyId = jaxbPolicy.getPolicyId();
+				final String policyVersion = jaxbPolicy.getVersion();
+				final StaticTopLevelPolicyElementEvaluator policyEvaluator = getResult(futurePolicyEvaluator);
+				policyIndex++;
 				final StaticTopLevelPolicyElementEvaluator previousValue = updatablePolicyTable.put(policyId, new PolicyVersion(policyVersion), policyEvaluator);
 				if (previousValue != null)
 				{
@@ -508,7 +902,8 @@ public class CoreRefPolicyProviderModule extends BaseStaticRefPolicyProviderModu
 	}
 
 	/**
-	 * Creates an instance from policy locations
+	 * Creates an instance from policy locations. The policy documents are parsed, and the Policies and independent PolicySets instantiated, concurrently with a dedicated thread pool; the
+	 * result and errors are the same as if the documents were processed sequentially.
 	 *
 	 * @param policyURLs
 	 *            location of Policy(Set) elements (JAXB) to be parsed for future reference by Policy(Set)IdReferences
@@ -548,81 +943,105 @@ public class CoreRefPolicyProviderModule extends BaseStaticRefPolicyProviderModu
 			throw ILLEGAL_COMBINING_ALG_REGISTRY_ARGUMENT_EXCEPTION;
 		}
 
-		final NamespaceFilteringParser parser;
-		try
-		{
-			parser = xacmlParserFactory.getInstance();
-		}
-		catch (final JAXBException e)
+		/*
+		 * Policy documents are parsed - and Policies instantiated - concurrently, with one parser per thread. PolicySets cannot be instantiated before we have collected them all, because each PolicySet
+		 * may refer to others via PolicySetIdReferences.
+		 */
+		final ThreadLocal<NamespaceFilteringParser> parsers = new ThreadLocal<NamespaceFilteringParser>()
 		{
-			throw new IllegalArgumentException("Failed to create JAXB unmarshaller for XML Policy(Set)", e);
-		}
 
-		final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> updatablepolicyTable = HashBasedTable.create();
-		final Table<String, PolicyVersion, PolicyWithNamespaces<PolicySet>> updatablePolicySetTable = HashBasedTable.create();
+			@Override
+			protected NamespaceFilteringParser initialValue()
+			{
+				try
+				{
+					return xacmlParserFactory.getInstance();
+				}
+				catch (final JAXBException e)
+				{
+					throw new IllegalArgumentException("Failed to create JAXB unmarshaller for XML Policy(Set)", e);
+				}
+			}
+
+		};
+		final List<Callable<ParsedPolicyDocument>> policyDocumentParsers = new ArrayList<>(policyURLs.size());
 		int policyUrlIndex = 0;
 		for (final URL policyURL : policyURLs)
 		{
-			if (policyURL == null)
+			final int currentPolicyUrlIndex = policyUrlIndex;
+			policyDocumentParsers.add(new Callable<ParsedPolicyDocument>()
 			{
-				throw new IllegalArgumentException("policyURL #" + policyUrlIndex + " undefined");
-			}
 
-			final Object jaxbPolicyOrPolicySetObj;
-			try
-			{
-				jaxbPolicyOrPolicySetObj = parser.parse(policyURL);
-			}
-			catch (final JAXBException e)
-			{
-				throw new IllegalArgumentException("Failed to unmarshall Policy(Set) XML document from policy location: " + policyURL, e);
-			}
+				@Override
+				public ParsedPolicyDocument call() throws IllegalArgumentException
+				{
+					final NamespaceFilteringParser parser = parsers.get();
+					if (policyURL == null)
+					{
+						throw new IllegalArgumentException("policyURL #" + currentPolicyUrlIndex + " undefined");
+					}
+
+					final Object jaxbPolicyOrPolicySetObj;
+					try
+					{
+						jaxbPolicyOrPolicySetObj = parser.parse(policyURL);
+					}
+					catch (final JAXBException e)
+					{
+						throw new IllegalArgumentException("Failed to unmarshall Policy(Set) XML document from policy location: " + policyURL, e);
+					}
+
+					final Map<String, String> nsPrefixUriMap = parser.getNamespacePrefixUriMap();
+					if (jaxbPolicyOrPolicySetObj instanceof Policy)
+					{
+						return new ParsedPolicyDocument(jaxbPolicyOrPolicySetObj, nsPrefixUriMap, getPolicyEvaluator((Policy) jaxbPolicyOrPolicySetObj, nsPrefixUriMap, expressionFactory,
+								combiningAlgRegistry));
+					}
+
+					if (jaxbPolicyOrPolicySetObj instanceof PolicySet)
+					{
+						return new ParsedPolicyDocument(jaxbPolicyOrPolicySetObj, nsPrefixUriMap, null);
+					}
 
-			final Map<String, String> nsPrefixUriMap = parser.getNamespacePrefixUriMap();
-			if (jaxbPolicyOrPolicySetObj instanceof Policy)
+					throw new IllegalArgumentException("Unexpected element found as root of the policy document: " + jaxbPolicyOrPolicySetObj.getClass().getSimpleName());
+				}
+
+			});
+			policyUrlIndex++;
+		}
+
+		/*
+		 * Results (and errors) are processed in the order of the policy URLs, as if the documents were parsed sequentially
+		 */
+		final List<Future<ParsedPolicyDocument>> futureParsedPolicyDocuments = invokeAll(policyDocumentParsers);
+		final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> updatablepolicyTable = HashBasedTable.create();
+		final Table<String, PolicyVersion, PolicyWithNamespaces<PolicySet>> updatablePolicySetTable = HashBasedTable.create();
+		for (final Future<ParsedPolicyDocument> futureParsedPolicyDocument : futureParsedPolicyDocuments)
+		{
+			final ParsedPolicyDocument parsedPolicyDocument = getResult(futureParsedPolicyDocument);
+			if (parsedPolicyDocument.policyEvaluator != null)
 			{
-				final Policy jaxbPolicy = (Policy) jaxbPolicyOrPolicySetObj;
+				final Policy jaxbPolicy = (Policy) parsedPolicyDocument.jaxbPolicyOrPolicySet;
 				final String policyId = jaxbPolicy.getPolicyId();
 				final String policyVersion = jaxbPolicy.getVersion();
-				final StaticTopLevelPolicyElementEvaluator policyEvaluator;
-				try
-				{
-					policyEvaluator = PolicyEvaluators.getInstance(jaxbPolicy, null, nsPrefixUriMap, expressionFactory, combiningAlgRegistry);
-				}
-				catch (final IllegalArgumentException e)
-				{
-					throw new IllegalArgumentException("Invalid Policy with PolicyId=" + policyId + ", Version=" + policyVersion, e);
-				}
-
-				final StaticTopLevelPolicyElementEvaluator previousValue = updatablepolicyTable.put(policyId, new PolicyVersion(policyVersion), policyEvaluator);
+				final StaticTopLevelPolicyElementEvaluator previousValue = updatablepolicyTable.put(policyId, new PolicyVersion(policyVersion), parsedPolicyDocument.policyEvaluator);
 				if (previousValue != null)
 				{
 					throw new IllegalArgumentException("Policy conflict: two policies with same PolicyId=" + policyId + ", Version=" + policyVersion);
 				}
-
 			}
-			else if (jaxbPolicyOrPolicySetObj instanceof PolicySet)
+			else
 			{
-				final PolicySet jaxbPolicySet = (PolicySet) jaxbPolicyOrPolicySetObj;
+				final PolicySet jaxbPolicySet = (PolicySet) parsedPolicyDocument.jaxbPolicyOrPolicySet;
 				final String policyId = jaxbPolicySet.getPolicySetId();
 				final String policyVersion = jaxbPolicySet.getVersion();
-				final PolicyWithNamespaces<PolicySet> previousValue = updatablePolicySetTable
-						.put(policyId, new PolicyVersion(policyVersion), new PolicyWithNamespaces<>(jaxbPolicySet, nsPrefixUriMap));
+				final PolicyWithNamespaces<PolicySet> previousValue = updatablePolicySetTable.put(policyId, new PolicyVersion(policyVersion), new PolicyWithNamespaces<>(jaxbPolicySet,
+						parsedPolicyDocument.nsPrefixUriMap));
 				if (previousValue != null)
 				{
 					throw new IllegalArgumentException("Policy conflict: two PolicySets with same PolicySetId=" + policyId + ", Version=" + policyVersion);
 				}
-
-				/*
-				 * PolicySets cannot be parsed before we have collected them all, because each PolicySet may refer to others via PolicySetIdReferences
-				 */
 			}
-			else
-			{
-				throw new IllegalArgumentException("Unexpected element found as root of the policy document: " + jaxbPolicyOrPolicySetObj.getClass().getSimpleName());
-			}
-
-			policyUrlIndex++;
 		}
 
 		final PolicyMap<StaticTopLevelPolicyElementEvaluator> policyMap = new PolicyMap<>(updatablepolicyTable.rowMap());
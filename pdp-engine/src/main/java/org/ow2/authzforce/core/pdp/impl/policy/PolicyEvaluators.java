@@ -20,9 +20,11 @@ package org.ow2.authzforce.core.pdp.impl.policy;
 import java.io.Serializable;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -89,10 +91,14 @@ import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementEvaluator;
 import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
 import org.ow2.authzforce.core.pdp.api.policy.VersionPatterns;
 import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
+import org.ow2.authzforce.core.pdp.impl.EvaluationTimingListener;
 import org.ow2.authzforce.core.pdp.impl.PepActionExpression;
 import org.ow2.authzforce.core.pdp.impl.PepActionExpressions;
 import org.ow2.authzforce.core.pdp.impl.PepActionFactories;
+import org.ow2.authzforce.core.pdp.impl.RequestScopedMemo;
 import org.ow2.authzforce.core.pdp.impl.TargetEvaluators;
+import org.ow2.authzforce.core.pdp.impl.combining.StandardCombiningAlgorithm;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
 import org.ow2.authzforce.core.pdp.impl.rule.RuleEvaluator;
 import org.ow2.authzforce.xacml.identifiers.XACMLNodeName;
 import org.slf4j.Logger;
@@ -468,6 +474,9 @@ public final class PolicyEvaluators
 		// non-null
 		private final BooleanEvaluator targetEvaluator;
 
+		// non-null
+		private final String combiningAlgId;
+
 		// non-null
 		private final CombiningAlg.Evaluator combiningAlgEvaluator;
 
@@ -481,7 +490,10 @@ public final class PolicyEvaluators
 		private transient final int hashCode;
 		private transient final JAXBElement<IdReferenceType> refToSelf;
 		private transient final TopLevelPolicyElementType policyType;
-		private transient final String requestScopedEvalResultsCacheKey;
+		/*
+		 * For caching the result of #evaluate() in the request context
+		 */
+		private transient final RequestScopedMemo requestScopedEvalResults = new RequestScopedMemo();
 
 		/**
 		 * Instantiates an evaluator
@@ -565,6 +577,7 @@ public final class PolicyEvaluators
 						+ combiningAlgId + "'", e);
 			}
 
+			this.combiningAlgId = combiningAlgId;
 			this.combiningAlgEvaluator = combiningAlg.getInstance(combinerParameters, combinedElements);
 
 			if ((obligationExps == null || obligationExps.getObligationExpressions().isEmpty()) && (adviceExps == null || adviceExps.getAdviceExpressions().isEmpty()))
@@ -589,12 +602,6 @@ public final class PolicyEvaluators
 			}
 
 			this.localVariableIds = localVariableIds == null ? Collections.<String> emptySet() : localVariableIds;
-
-			/*
-			 * Define keys for caching the result of #evaluate() in the request context (see Object#toString())
-			 */
-			this.requestScopedEvalResultsCacheKey = this.getClass().getName() + '@' + Integer.toHexString(hashCode());
-
 		}
 
 		/**
@@ -613,7 +620,7 @@ public final class PolicyEvaluators
 			/*
 			 * check whether the result is already cached in the evaluation context
 			 */
-			final Object cachedValue = context.getOther(this.requestScopedEvalResultsCacheKey);
+			final Object cachedValue = this.requestScopedEvalResults.get(context);
 			final EvalResults cachedResults;
 			if (cachedValue instanceof EvalResults)
 			{
@@ -626,6 +633,8 @@ public final class PolicyEvaluators
 
 			DecisionResult newResult = null;
 			final UpdatablePepActions updatablePepActions;
+			// null iff evaluation timings disabled
+			final EvaluationTimingListener timingListener = context.getListener(EvaluationTimingListener.class);
 
 			/*
 			 * We add the current policy (this.refToSelf) to the applicablePolicyIdList only at the end when we know for sure the result is different from NotApplicable
@@ -648,7 +657,7 @@ public final class PolicyEvaluators
 					updatablePepActions = new UpdatablePepActions();
 					updatableApplicablePolicyIdList = context.isApplicablePolicyIdListRequested() ? UpdatableCollections.<JAXBElement<IdReferenceType>> newUpdatableList() : UpdatableCollections
 							.<JAXBElement<IdReferenceType>> emptyList();
-					algResult = combiningAlgEvaluator.evaluate(context, updatablePepActions, updatableApplicablePolicyIdList);
+					algResult = evaluateCombiningAlg(context, updatablePepActions, updatableApplicablePolicyIdList, timingListener);
 					LOGGER.debug("{}/Algorithm -> {}", this, algResult);
 				}
 				else
@@ -663,7 +672,7 @@ public final class PolicyEvaluators
 					IndeterminateEvaluationException targetMatchIndeterminateException = null;
 					try
 					{
-						if (!isApplicableByTarget(context))
+						if (!isApplicableByTarget(context, timingListener))
 						{
 							LOGGER.debug("{}/Target -> No-match", this);
 							LOGGER.debug("{} -> NotApplicable", this);
@@ -687,7 +696,7 @@ public final class PolicyEvaluators
 					updatablePepActions = new UpdatablePepActions();
 					updatableApplicablePolicyIdList = context.isApplicablePolicyIdListRequested() ? UpdatableCollections.<JAXBElement<IdReferenceType>> newUpdatableList() : UpdatableCollections
 							.<JAXBElement<IdReferenceType>> emptyList();
-					algResult = combiningAlgEvaluator.evaluate(context, updatablePepActions, updatableApplicablePolicyIdList);
+					algResult = evaluateCombiningAlg(context, updatablePepActions, updatableApplicablePolicyIdList, timingListener);
 					LOGGER.debug("{}/Algorithm -> {}", this, algResult);
 
 					if (targetMatchIndeterminateException != null)
@@ -784,7 +793,7 @@ public final class PolicyEvaluators
 					{
 						final EvalResults newCachedResults = new EvalResults(this.policyId);
 						newCachedResults.setResult(skipTarget, newResult);
-						context.putOther(this.requestScopedEvalResultsCacheKey, newCachedResults);
+						this.requestScopedEvalResults.put(context, newCachedResults);
 					}
 					else
 					{
@@ -794,10 +803,47 @@ public final class PolicyEvaluators
 			}
 		}
 
+		private ExtendedDecision evaluateCombiningAlg(final EvaluationContext context, final UpdatablePepActions updatablePepActions,
+				final UpdatableList<JAXBElement<IdReferenceType>> updatableApplicablePolicyIdList, final EvaluationTimingListener timingListener)
+		{
+			if (timingListener == null)
+			{
+				return combiningAlgEvaluator.evaluate(context, updatablePepActions, updatableApplicablePolicyIdList);
+			}
+
+			final long startTime = System.nanoTime();
+			try
+			{
+				return combiningAlgEvaluator.evaluate(context, updatablePepActions, updatableApplicablePolicyIdList);
+			}
+			finally
+			{
+				timingListener.combiningAlgEvaluated(toString, combiningAlgId, System.nanoTime() - startTime);
+			}
+		}
+
+		private boolean isApplicableByTarget(final EvaluationContext context, final EvaluationTimingListener timingListener) throws IndeterminateEvaluationException
+		{
+			if (timingListener == null)
+			{
+				return targetEvaluator.evaluate(context);
+			}
+
+			final long startTime = System.nanoTime();
+			try
+			{
+				return targetEvaluator.evaluate(context);
+			}
+			finally
+			{
+				timingListener.targetEvaluated(toString, System.nanoTime() - startTime);
+			}
+		}
+
 		@Override
 		public final boolean isApplicableByTarget(final EvaluationContext context) throws IndeterminateEvaluationException
 		{
-			return targetEvaluator.evaluate(context);
+			return isApplicableByTarget(context, context.getListener(EvaluationTimingListener.class));
 		}
 
 		@Override
@@ -894,6 +940,116 @@ public final class PolicyEvaluators
 
 	}
 
+	/**
+	 * Evaluator of a child Policy(Set) indexed in the enclosing PolicySet's {@link PolicySetTargetIndex}, that skips the evaluation (NotApplicable) if the index tells that the child's Target does
+	 * not match the request context.
+	 */
+	private static class TargetIndexedPolicyEvaluator<P extends PolicyEvaluator> implements PolicyEvaluator
+	{
+		protected final P indexedPolicy;
+		private final PolicySetTargetIndex targetIndex;
+		private final int childPosition;
+
+		private TargetIndexedPolicyEvaluator(final P indexedPolicy, final PolicySetTargetIndex targetIndex, final int childPosition)
+		{
+			assert indexedPolicy != null && targetIndex != null && targetIndex.isIndexed(childPosition);
+			this.indexedPolicy = indexedPolicy;
+			this.targetIndex = targetIndex;
+			this.childPosition = childPosition;
+		}
+
+		@Override
+		public final DecisionResult evaluate(final EvaluationContext context, final boolean skipTarget)
+		{
+			if (!skipTarget && targetIndex.isExcluded(context, childPosition))
+			{
+				LOGGER.debug("{}/Target -> No-match (from parent PolicySet's Target index)", indexedPolicy);
+				LOGGER.debug("{} -> NotApplicable", indexedPolicy);
+				return PdpDecisionResults.SIMPLE_NOT_APPLICABLE;
+			}
+
+			return indexedPolicy.evaluate(context, skipTarget);
+		}
+
+		@Override
+		public final DecisionResult evaluate(final EvaluationContext context)
+		{
+			return evaluate(context, false);
+		}
+
+		@Override
+		public final boolean isApplicableByTarget(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			if (targetIndex.isExcluded(context, childPosition))
+			{
+				return false;
+			}
+
+			return indexedPolicy.isApplicableByTarget(context);
+		}
+
+		@Override
+		public final TopLevelPolicyElementType getPolicyElementType()
+		{
+			return indexedPolicy.getPolicyElementType();
+		}
+
+		@Override
+		public final String getPolicyId()
+		{
+			return indexedPolicy.getPolicyId();
+		}
+
+		@Override
+		public final ExtraPolicyMetadata getExtraPolicyMetadata(final EvaluationContext evaluationCtx) throws IndeterminateEvaluationException
+		{
+			return indexedPolicy.getExtraPolicyMetadata(evaluationCtx);
+		}
+
+		@Override
+		public final String toString()
+		{
+			return indexedPolicy.toString();
+		}
+	}
+
+	private static final class StaticTargetIndexedPolicyEvaluator extends TargetIndexedPolicyEvaluator<StaticPolicyEvaluator> implements StaticPolicyEvaluator
+	{
+		private StaticTargetIndexedPolicyEvaluator(final StaticPolicyEvaluator indexedPolicy, final PolicySetTargetIndex targetIndex, final int childPosition)
+		{
+			super(indexedPolicy, targetIndex, childPosition);
+		}
+
+		@Override
+		public ExtraPolicyMetadata getExtraPolicyMetadata()
+		{
+			return indexedPolicy.getExtraPolicyMetadata();
+		}
+	}
+
+	/**
+	 * Filter of a Rule's Target indexed in the enclosing Policy's {@link PolicySetTargetIndex}, that evaluates to false if the index tells that the Rule's Target does not match the request
+	 * context
+	 */
+	private static final class RuleTargetIndexFilter implements BooleanEvaluator
+	{
+		private final PolicySetTargetIndex targetIndex;
+		private final int rulePosition;
+
+		private RuleTargetIndexFilter(final PolicySetTargetIndex targetIndex, final int rulePosition)
+		{
+			assert targetIndex != null && targetIndex.isIndexed(rulePosition);
+			this.targetIndex = targetIndex;
+			this.rulePosition = rulePosition;
+		}
+
+		@Override
+		public boolean evaluate(final EvaluationContext context)
+		{
+			return !targetIndex.isExcluded(context, rulePosition);
+		}
+	}
+
 	/**
 	 * This class is responsible for evaluating XACML Policy(Set)IdReferences.
 	 * 
@@ -1174,15 +1330,14 @@ public final class PolicyEvaluators
 
 		private final List<PolicyEvaluator> childPolicySetElementsOrRefs = new ArrayList<>();
 
-		private transient final String requestScopedCacheKey;
+		/*
+		 * For caching the result of #getMetadata() in the request context
+		 */
+		private transient final RequestScopedMemo requestScopedMetadata = new RequestScopedMemo();
 
 		private DynamicExtraPolicySetMetadataProvider(final String policyFriendlyId, final PolicyVersion version)
 		{
 			super(policyFriendlyId, version);
-			/*
-			 * Define a key for caching the result of #getMetadata() in the request context (see Object#toString())
-			 */
-			this.requestScopedCacheKey = this.getClass().getName() + '@' + Integer.toHexString(hashCode());
 		}
 
 		private void addChildPolicySetElementOrRef(final PolicyEvaluator childElement)
@@ -1195,7 +1350,7 @@ public final class PolicyEvaluators
 			/*
 			 * check whether the result is already cached in the evaluation context
 			 */
-			final Object cachedValue = evalCtx.getOther(requestScopedCacheKey);
+			final Object cachedValue = requestScopedMetadata.get(evalCtx);
 			if (cachedValue instanceof GetMetadataResult)
 			{
 				final GetMetadataResult result = (GetMetadataResult) cachedValue;
@@ -1228,7 +1383,7 @@ public final class PolicyEvaluators
 
 			final ExtraPolicyMetadata extraMetadata = new BaseExtraPolicyMetadata(version, refPolicies, refPolicySets, longestPolicyRefChain);
 			final GetMetadataResult newCachedValue = new GetMetadataResult(extraMetadata);
-			evalCtx.putOther(requestScopedCacheKey, newCachedValue);
+			requestScopedMetadata.put(evalCtx, newCachedValue);
 			return extraMetadata;
 		}
 	}
@@ -1356,7 +1511,10 @@ public final class PolicyEvaluators
 		// this policyProvider to use in finding the referenced policy
 		private final RefPolicyProvider refPolicyProvider;
 
-		private final String requestScopedCacheKey;
+		/*
+		 * For caching the resolved policy in the request context
+		 */
+		private final RequestScopedMemo requestScopedRefResolvedResult = new RequestScopedMemo();
 
 		private DynamicTopLevelPolicyElementRefEvaluator(final TopLevelPolicyElementType policyType, final String policyId, final Optional<VersionPatterns> versionConstraints,
 				final RefPolicyProvider refPolicyProvider)
@@ -1364,10 +1522,6 @@ public final class PolicyEvaluators
 			super(policyType, policyId, versionConstraints);
 			assert refPolicyProvider != null;
 			this.refPolicyProvider = refPolicyProvider;
-			/*
-			 * define a key for caching the resolved policy in the request context (see Object#toString())
-			 */
-			this.requestScopedCacheKey = this.getClass().getName() + '@' + Integer.toHexString(hashCode());
 		}
 
 		protected final void checkJoinedPolicySetRefChain(final Deque<String> chain1, final List<String> chain2) throws IllegalArgumentException
@@ -1397,7 +1551,7 @@ public final class PolicyEvaluators
 		private RefResolvedResult resolve(final EvaluationContext evalCtx) throws IndeterminateEvaluationException, IllegalArgumentException
 		{
 			// check whether the policy was already resolved in the same context
-			final Object cachedValue = evalCtx.getOther(requestScopedCacheKey);
+			final Object cachedValue = requestScopedRefResolvedResult.get(evalCtx);
 			if (cachedValue instanceof RefResolvedResult)
 			{
 				final RefResolvedResult result = (RefResolvedResult) cachedValue;
@@ -1417,7 +1571,7 @@ public final class PolicyEvaluators
 			{
 				final TopLevelPolicyElementEvaluator policy = resolvePolicyWithRefDepthCheck(evalCtx);
 				final RefResolvedResult newCacheValue = new RefResolvedResult(policy, evalCtx);
-				evalCtx.putOther(requestScopedCacheKey, newCacheValue);
+				requestScopedRefResolvedResult.put(evalCtx, newCacheValue);
 				return newCacheValue;
 			}
 			catch (final IllegalArgumentException e)
@@ -1425,13 +1579,13 @@ public final class PolicyEvaluators
 				final IndeterminateEvaluationException resolutionException = new IndeterminateEvaluationException("Error resolving " + this + " to the policy to evaluate in the request context",
 						StatusHelper.STATUS_PROCESSING_ERROR, e);
 				final RefResolvedResult newCacheValue = new RefResolvedResult(resolutionException);
-				evalCtx.putOther(requestScopedCacheKey, newCacheValue);
+				requestScopedRefResolvedResult.put(evalCtx, newCacheValue);
 				throw resolutionException;
 			}
 			catch (final IndeterminateEvaluationException e)
 			{
 				final RefResolvedResult newCacheValue = new RefResolvedResult(e);
-				evalCtx.putOther(requestScopedCacheKey, newCacheValue);
+				requestScopedRefResolvedResult.put(evalCtx, newCacheValue);
 				throw e;
 			}
 		}
@@ -1528,6 +1682,37 @@ public final class PolicyEvaluators
 
 	}
 
+	/**
+	 * Indexes the Targets of the Rules of a Policy, if enabled on the expression factory and worth it (see {@link PolicySetTargetIndex})
+	 * 
+	 * @return the index, or null if disabled or not worth it
+	 */
+	private static PolicySetTargetIndex getRuleTargetIndex(final String policyFriendlyId, final List<Serializable> policyChoiceElements, final XPathCompiler defaultXPathCompiler,
+			final ExpressionFactory expressionFactory)
+	{
+		if (!(expressionFactory instanceof DepthLimitingExpressionFactory && ((DepthLimitingExpressionFactory) expressionFactory).isRuleTargetIndexingEnabled())
+				|| policyChoiceElements.size() < PolicySetTargetIndex.MIN_INDEXED_CHILD_COUNT)
+		{
+			return null;
+		}
+
+		final PolicySetTargetIndex.Builder targetIndexBuilder = new PolicySetTargetIndex.Builder(defaultXPathCompiler, expressionFactory);
+		/*
+		 * Position of the Rule in the list of combined elements, i.e. Rule evaluators
+		 */
+		int rulePosition = 0;
+		for (final Serializable policyChildElt : policyChoiceElements)
+		{
+			if (policyChildElt instanceof Rule)
+			{
+				targetIndexBuilder.add(rulePosition, ((Rule) policyChildElt).getTarget());
+				rulePosition++;
+			}
+		}
+
+		return targetIndexBuilder.build(policyFriendlyId);
+	}
+
 	/**
 	 * Creates Policy handler from XACML Policy element
 	 *
@@ -1537,8 +1722,9 @@ public final class PolicyEvaluators
 	 *            XPath compiler corresponding to parent PolicyDefaults/XPathVersion; null if this Policy has no parent Policy (root), or none defined in parent
 	 * @param namespacePrefixesByURI
 	 *            namespace prefix-URI mappings from the original XACML Policy (XML) document, to be used for namespace-aware XPath evaluation; null or empty iff XPath support disabled
-	 * @param expressionFactory
-	 *            Expression factory/parser; may be null iff {@code policyElement} does not contain any XACML {@link ExpressionType}
+	 * @param parentExpressionFactory
+	 *            Expression factory/parser (a variable scope dedicated to the Policy is created from it if it is a {@link DepthLimitingExpressionFactory}); may be null iff {@code policyElement}
+	 *            does not contain any XACML {@link ExpressionType}
 	 * @param combiningAlgRegistry
 	 *            rule/policy combining algorithm registry
 	 * @return instance
@@ -1546,14 +1732,14 @@ public final class PolicyEvaluators
 	 *             if any argument is invalid
 	 */
 	public static StaticTopLevelPolicyElementEvaluator getInstance(final Policy policyElement, final XPathCompiler parentDefaultXPathCompiler, final Map<String, String> namespacePrefixesByURI,
-			final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry) throws IllegalArgumentException
+			final ExpressionFactory parentExpressionFactory, final CombiningAlgRegistry combiningAlgRegistry) throws IllegalArgumentException
 	{
 		if (policyElement == null)
 		{
 			throw NULL_XACML_POLICY_ARG_EXCEPTION;
 		}
 
-		if (expressionFactory == null)
+		if (parentExpressionFactory == null)
 		{
 			throw NULL_EXPRESSION_FACTORY_EXCEPTION;
 		}
@@ -1563,6 +1749,12 @@ public final class PolicyEvaluators
 			throw NULL_XACML_COMBINING_ALG_ARG_EXCEPTION;
 		}
 
+		/*
+		 * VariableDefinitions are scoped to this Policy: parse its Expressions with a dedicated variable scope if the factory supports it, so that Policies may be parsed concurrently with the
+		 * same factory
+		 */
+		final ExpressionFactory expressionFactory = parentExpressionFactory instanceof DepthLimitingExpressionFactory ? ((DepthLimitingExpressionFactory) parentExpressionFactory).newPolicyScope()
+				: parentExpressionFactory;
 		final String policyId = policyElement.getPolicyId();
 		final PolicyVersion policyVersion = new PolicyVersion(policyElement.getVersion());
 		final String policyFriendlyId = "Policy[" + policyId + "#v" + policyVersion + "]";
@@ -1612,119 +1804,139 @@ public final class PolicyEvaluators
 		 * order of declaration, so that ordered-* algorithms have rules in order. There are at most as many Rules as policyChoiceElements.size().
 		 */
 		final Map<String, RuleEvaluator> ruleEvaluatorsByRuleIdInOrderOfDeclaration = new LinkedHashMap<>(policyChoiceElements.size());
-		int childIndex = 0;
-		for (final Serializable policyChildElt : policyChoiceElements)
+		/*
+		 * Index of Rule Targets (null if disabled or not worth it), to skip at evaluation time the Rules that cannot match the request without evaluating each of their Targets
+		 */
+		final PolicySetTargetIndex ruleTargetIndex = getRuleTargetIndex(policyFriendlyId, policyChoiceElements, defaultXPathCompiler, expressionFactory);
+		try
 		{
-			if (policyChildElt instanceof RuleCombinerParameters)
+			int rulePosition = 0;
+			int childIndex = 0;
+			for (final Serializable policyChildElt : policyChoiceElements)
 			{
-				final String combinedRuleId = ((RuleCombinerParameters) policyChildElt).getRuleIdRef();
-				final RuleEvaluator ruleEvaluator = ruleEvaluatorsByRuleIdInOrderOfDeclaration.get(combinedRuleId);
-				if (ruleEvaluator == null)
-				{
-					throw new IllegalArgumentException(policyFriendlyId + ":  invalid RuleCombinerParameters: referencing undefined child Rule #" + combinedRuleId
-							+ " (no such rule defined before this element)");
-				}
-
-				final BaseCombiningAlgParameter<RuleEvaluator> combiningAlgParameter;
-				try
+				if (policyChildElt instanceof RuleCombinerParameters)
 				{
-					combiningAlgParameter = new BaseCombiningAlgParameter<>(ruleEvaluator, ((CombinerParametersType) policyChildElt).getCombinerParameters(), expressionFactory, defaultXPathCompiler);
-				}
-				catch (final IllegalArgumentException e)
-				{
-					throw new IllegalArgumentException(policyFriendlyId + ": invalid child #" + childIndex + " (RuleCombinerParameters)", e);
-				}
+					final String combinedRuleId = ((RuleCombinerParameters) policyChildElt).getRuleIdRef();
+					final RuleEvaluator ruleEvaluator = ruleEvaluatorsByRuleIdInOrderOfDeclaration.get(combinedRuleId);
+					if (ruleEvaluator == null)
+					{
+						throw new IllegalArgumentException(policyFriendlyId + ":  invalid RuleCombinerParameters: referencing undefined child Rule #" + combinedRuleId
+								+ " (no such rule defined before this element)");
+					}
 
-				combiningAlgParameters.add(combiningAlgParameter);
-			}
-			else if (policyChildElt instanceof CombinerParametersType)
-			{
-				/*
-				 * CombinerParameters that is not RuleCombinerParameters already tested before
-				 */
-				final BaseCombiningAlgParameter<RuleEvaluator> combiningAlgParameter;
-				try
-				{
-					combiningAlgParameter = new BaseCombiningAlgParameter<>(null, ((CombinerParametersType) policyChildElt).getCombinerParameters(), expressionFactory, defaultXPathCompiler);
-				}
-				catch (final IllegalArgumentException e)
-				{
-					throw new IllegalArgumentException(policyFriendlyId + ": invalid child #" + childIndex + " (CombinerParameters)", e);
-				}
+					final BaseCombiningAlgParameter<RuleEvaluator> combiningAlgParameter;
+					try
+					{
+						combiningAlgParameter = new BaseCombiningAlgParameter<>(ruleEvaluator, ((CombinerParametersType) policyChildElt).getCombinerParameters(), expressionFactory, defaultXPathCompiler);
+					}
+					catch (final IllegalArgumentException e)
+					{
+						throw new IllegalArgumentException(policyFriendlyId + ": invalid child #" + childIndex + " (RuleCombinerParameters)", e);
+					}
 
-				combiningAlgParameters.add(combiningAlgParameter);
-			}
-			else if (policyChildElt instanceof VariableDefinition)
-			{
-				final VariableDefinition varDef = (VariableDefinition) policyChildElt;
-				final Deque<String> varDefLongestVarRefChain = new ArrayDeque<>();
-				final VariableReference<?> var;
-				try
-				{
-					var = expressionFactory.addVariable(varDef, defaultXPathCompiler, varDefLongestVarRefChain);
-				}
-				catch (final IllegalArgumentException e)
-				{
-					throw new IllegalArgumentException(policyFriendlyId + ": invalid child #" + childIndex + " (VariableDefinition)", e);
+					combiningAlgParameters.add(combiningAlgParameter);
 				}
-
-				if (var != null)
+				else if (policyChildElt instanceof CombinerParametersType)
 				{
 					/*
-					 * Conflicts can occur between variables defined in this policy but also with others already in a wider scope, i.e. defined in parent/ancestor policy
+					 * CombinerParameters that is not RuleCombinerParameters already tested before
 					 */
-					throw new IllegalArgumentException(policyFriendlyId + ": Duplicable VariableDefinition for VariableId = " + var.getVariableId());
-				}
+					final BaseCombiningAlgParameter<RuleEvaluator> combiningAlgParameter;
+					try
+					{
+						combiningAlgParameter = new BaseCombiningAlgParameter<>(null, ((CombinerParametersType) policyChildElt).getCombinerParameters(), expressionFactory, defaultXPathCompiler);
+					}
+					catch (final IllegalArgumentException e)
+					{
+						throw new IllegalArgumentException(policyFriendlyId + ": invalid child #" + childIndex + " (CombinerParameters)", e);
+					}
 
-				localVariableIds.add(varDef.getVariableId());
-				/*
-				 * check whether the longest VariableReference chain in the VariableDefinition is longer than what we've got so far
-				 */
-				final int sizeOfVarDefLongestVarRefChain = varDefLongestVarRefChain.size();
-				if (sizeOfVarDefLongestVarRefChain > sizeOfPolicyLongestVarRefChain)
-				{
-					sizeOfPolicyLongestVarRefChain = sizeOfVarDefLongestVarRefChain;
-				}
-			}
-			else if (policyChildElt instanceof Rule)
-			{
-				final RuleEvaluator ruleEvaluator;
-				try
-				{
-					ruleEvaluator = new RuleEvaluator((Rule) policyChildElt, defaultXPathCompiler, expressionFactory);
+					combiningAlgParameters.add(combiningAlgParameter);
 				}
-				catch (final IllegalArgumentException e)
+				else if (policyChildElt instanceof VariableDefinition)
 				{
-					throw new IllegalArgumentException(policyFriendlyId + ": Error parsing child #" + childIndex + " (Rule)", e);
-				}
+					final VariableDefinition varDef = (VariableDefinition) policyChildElt;
+					final Deque<String> varDefLongestVarRefChain = new ArrayDeque<>();
+					final VariableReference<?> var;
+					try
+					{
+						var = expressionFactory.addVariable(varDef, defaultXPathCompiler, varDefLongestVarRefChain);
+					}
+					catch (final IllegalArgumentException e)
+					{
+						throw new IllegalArgumentException(policyFriendlyId + ": invalid child #" + childIndex + " (VariableDefinition)", e);
+					}
 
-				final RuleEvaluator conflictingRuleEvaluator = ruleEvaluatorsByRuleIdInOrderOfDeclaration.putIfAbsent(ruleEvaluator.getRuleId(), ruleEvaluator);
-				if (conflictingRuleEvaluator != null)
-				{
+					if (var != null)
+					{
+						/*
+						 * Conflicts can occur between variables defined in this policy but also with others already in a wider scope, i.e. defined in parent/ancestor policy
+						 */
+						throw new IllegalArgumentException(policyFriendlyId + ": Duplicable VariableDefinition for VariableId = " + var.getVariableId());
+					}
+
+					localVariableIds.add(varDef.getVariableId());
 					/*
-					 * Conflict: 2 Rule elements with same RuleId -> violates uniqueness of RuleId within a Policy (XACML spec)
+					 * check whether the longest VariableReference chain in the VariableDefinition is longer than what we've got so far
 					 */
-					throw new IllegalArgumentException(policyFriendlyId + ": Duplicate Rule with RuleId = " + conflictingRuleEvaluator.getRuleId());
+					final int sizeOfVarDefLongestVarRefChain = varDefLongestVarRefChain.size();
+					if (sizeOfVarDefLongestVarRefChain > sizeOfPolicyLongestVarRefChain)
+					{
+						sizeOfPolicyLongestVarRefChain = sizeOfVarDefLongestVarRefChain;
+					}
 				}
-			}
+				else if (policyChildElt instanceof Rule)
+				{
+					final RuleEvaluator ruleEvaluator;
+					try
+					{
+						ruleEvaluator = new RuleEvaluator((Rule) policyChildElt, defaultXPathCompiler, expressionFactory, ruleTargetIndex != null && ruleTargetIndex.isIndexed(rulePosition) ? new RuleTargetIndexFilter(
+								ruleTargetIndex, rulePosition) : null);
+					}
+					catch (final IllegalArgumentException e)
+					{
+						throw new IllegalArgumentException(policyFriendlyId + ": Error parsing child #" + childIndex + " (Rule)", e);
+					}
 
-			childIndex++;
-		}
+					final RuleEvaluator conflictingRuleEvaluator = ruleEvaluatorsByRuleIdInOrderOfDeclaration.putIfAbsent(ruleEvaluator.getRuleId(), ruleEvaluator);
+					if (conflictingRuleEvaluator != null)
+					{
+						/*
+						 * Conflict: 2 Rule elements with same RuleId -> violates uniqueness of RuleId within a Policy (XACML spec)
+						 */
+						throw new IllegalArgumentException(policyFriendlyId + ": Duplicate Rule with RuleId = " + conflictingRuleEvaluator.getRuleId());
+					}
 
-		final ExtraPolicyMetadata extraPolicyMetadata = new BaseExtraPolicyMetadata(policyVersion, new HashMap<String, PolicyVersion>(), new HashMap<String, PolicyVersion>(), new ArrayList<String>());
-		final StaticTopLevelPolicyElementEvaluator policyEvaluator = new StaticBaseTopLevelPolicyElementEvaluator<>(RuleEvaluator.class, policyId, extraPolicyMetadata, policyElement.getTarget(),
-				policyElement.getRuleCombiningAlgId(), ruleEvaluatorsByRuleIdInOrderOfDeclaration.values(), combiningAlgParameters, policyElement.getObligationExpressions(),
-				policyElement.getAdviceExpressions(), Collections.<String> unmodifiableSet(localVariableIds), defaultXPathCompiler, expressionFactory, combiningAlgRegistry);
+					rulePosition++;
+				}
 
-		/*
-		 * We are done parsing expressions in this policy, including VariableReferences, it's time to remove variables scoped to this policy from the variable manager
-		 */
-		for (final String varId : localVariableIds)
+				childIndex++;
+			}
+
+			/*
+			 * Dead rule elimination
+			 */
+			final Set<RuleEvaluator> removedRuleEvaluators = Collections.newSetFromMap(new IdentityHashMap<RuleEvaluator, Boolean>());
+			final List<RuleEvaluator> reachableRuleEvaluators = removeUnreachableRules(policyFriendlyId, policyElement.getRuleCombiningAlgId(), ruleEvaluatorsByRuleIdInOrderOfDeclaration.values(),
+					removedRuleEvaluators);
+			final ExtraPolicyMetadata extraPolicyMetadata = new BaseExtraPolicyMetadata(policyVersion, new HashMap<String, PolicyVersion>(), new HashMap<String, PolicyVersion>(), new ArrayList<String>());
+			final StaticTopLevelPolicyElementEvaluator policyEvaluator = new StaticBaseTopLevelPolicyElementEvaluator<>(RuleEvaluator.class, policyId, extraPolicyMetadata, policyElement.getTarget(),
+					policyElement.getRuleCombiningAlgId(), reachableRuleEvaluators, removeCombiningAlgParameters(combiningAlgParameters, removedRuleEvaluators),
+					policyElement.getObligationExpressions(), policyElement.getAdviceExpressions(), Collections.<String> unmodifiableSet(localVariableIds), defaultXPathCompiler, expressionFactory,
+					combiningAlgRegistry);
+			return policyEvaluator;
+		}
+		finally
 		{
-			expressionFactory.removeVariable(varId);
+			/*
+			 * We are done parsing expressions in this policy, including VariableReferences, it's time to remove variables scoped to this policy from the variable manager; also if the parsing
+			 * failed, else they would be left in the variable manager (if it is not a variable scope dedicated to this policy)
+			 */
+			for (final String varId : localVariableIds)
+			{
+				expressionFactory.removeVariable(varId);
+			}
 		}
-
-		return policyEvaluator;
 	}
 
 	private interface PolicyRefEvaluatorFactory<INSTANCE extends PolicyRefEvaluator>
@@ -1911,6 +2123,8 @@ public final class PolicyEvaluators
 
 		protected abstract COMBINED_ELT getChildPolicyRefEvaluator(int childIndex, TopLevelPolicyElementType refPolicyType, IdReferenceType idRef, Deque<String> policySetRefChain);
 
+		protected abstract COMBINED_ELT getTargetIndexedChildEvaluator(COMBINED_ELT childEvaluator, PolicySetTargetIndex targetIndex, int childPosition);
+
 		protected abstract INSTANCE getInstance(String policyId, Target target, String policyCombiningAlgId, Iterable<COMBINED_ELT> combinedElements,
 				Iterable<CombiningAlgParameter<? extends COMBINED_ELT>> policyCombinerParameters, ObligationExpressions obligationExpressions, AdviceExpressions adviceExpressions,
 				Set<String> localVariableIDs);
@@ -1987,6 +2201,12 @@ public final class PolicyEvaluators
 			return childElement;
 		}
 
+		@Override
+		public StaticPolicyEvaluator getTargetIndexedChildEvaluator(final StaticPolicyEvaluator childEvaluator, final PolicySetTargetIndex targetIndex, final int childPosition)
+		{
+			return new StaticTargetIndexedPolicyEvaluator(childEvaluator, targetIndex, childPosition);
+		}
+
 		@Override
 		public StaticTopLevelPolicyElementEvaluator getInstance(final String policyId, final Target policyTarget, final String policyCombiningAlgId,
 				final Iterable<StaticPolicyEvaluator> combinedElements, final Iterable<CombiningAlgParameter<? extends StaticPolicyEvaluator>> policyCombinerParameters,
@@ -2068,6 +2288,12 @@ public final class PolicyEvaluators
 			return childElement;
 		}
 
+		@Override
+		public PolicyEvaluator getTargetIndexedChildEvaluator(final PolicyEvaluator childEvaluator, final PolicySetTargetIndex targetIndex, final int childPosition)
+		{
+			return new TargetIndexedPolicyEvaluator<>(childEvaluator, targetIndex, childPosition);
+		}
+
 		@Override
 		public TopLevelPolicyElementEvaluator getInstance(final String policyId, final Target policyTarget, final String policyCombiningAlgId, final Iterable<PolicyEvaluator> combinedElements,
 				final Iterable<CombiningAlgParameter<? extends PolicyEvaluator>> policyCombinerParameters, final ObligationExpressions obligationExpressions,
@@ -2078,6 +2304,174 @@ public final class PolicyEvaluators
 		}
 	}
 
+	/**
+	 * Indexes the Targets of the child Policy(Set) elements of a PolicySet, if worth it (see {@link PolicySetTargetIndex})
+	 * 
+	 * @return the index, or null if not worth it
+	 */
+	private static PolicySetTargetIndex getChildTargetIndex(final PolicySetElementEvaluatorFactory<?, ?> policyEvaluatorFactory, final List<Serializable> jaxbPolicySetChoiceElements)
+	{
+		if (jaxbPolicySetChoiceElements.size() < PolicySetTargetIndex.MIN_INDEXED_CHILD_COUNT)
+		{
+			return null;
+		}
+
+		final PolicySetTargetIndex.Builder targetIndexBuilder = new PolicySetTargetIndex.Builder(policyEvaluatorFactory.defaultXPathCompiler, policyEvaluatorFactory.expressionFactory);
+		/*
+		 * Position of the child in the list of combined elements, i.e. Policy(Set)/Policy(Set)IdReference evaluators
+		 */
+		int childPosition = 0;
+		for (final Serializable policyChildElt : jaxbPolicySetChoiceElements)
+		{
+			if (policyChildElt instanceof Policy)
+			{
+				targetIndexBuilder.add(childPosition, ((Policy) policyChildElt).getTarget());
+				childPosition++;
+			}
+			else if (policyChildElt instanceof PolicySet)
+			{
+				targetIndexBuilder.add(childPosition, ((PolicySet) policyChildElt).getTarget());
+				childPosition++;
+			}
+			else if (policyChildElt instanceof JAXBElement)
+			{
+				/*
+				 * Policy(Set)IdReferences are combined as well but not indexed (Target not known at this point)
+				 */
+				final String eltNameLocalPart = ((JAXBElement<?>) policyChildElt).getName().getLocalPart();
+				if (eltNameLocalPart.equals(XACMLNodeName.POLICY_ID_REFERENCE.value()) || eltNameLocalPart.equals(XACMLNodeName.POLICYSET_ID_REFERENCE.value()))
+				{
+					childPosition++;
+				}
+			}
+		}
+
+		return targetIndexBuilder.build(policyEvaluatorFactory.policyFriendlyId);
+	}
+
+	/*
+	 * Tells whether a Policy(Set) evaluator always returns NotApplicable, whatever the request, as a result of the optimizations of the combining algorithms at initialization time (e.g. no Rule or
+	 * child Policy(Set) left to combine). Dynamic policy references are never considered as such since the referenced policy is resolved at evaluation time.
+	 */
+	private static boolean isAlwaysNotApplicable(final PolicyEvaluator policyEvaluator)
+	{
+		if (policyEvaluator instanceof TargetIndexedPolicyEvaluator)
+		{
+			return isAlwaysNotApplicable(((TargetIndexedPolicyEvaluator<?>) policyEvaluator).indexedPolicy);
+		}
+
+		if (policyEvaluator instanceof StaticPolicyRefEvaluator)
+		{
+			return isAlwaysNotApplicable(((StaticPolicyRefEvaluator) policyEvaluator).referredPolicy);
+		}
+
+		return policyEvaluator instanceof BaseTopLevelPolicyElementEvaluator
+				&& StandardCombiningAlgorithm.isNotApplicableConstant(((BaseTopLevelPolicyElementEvaluator<?>) policyEvaluator).combiningAlgEvaluator);
+	}
+
+	/*
+	 * Removes the child Policy(Set) evaluators that always return NotApplicable (see isAlwaysNotApplicable()) from the elements combined by a PolicySet's combining algorithm, if the algorithm is a
+	 * standard one where NotApplicable children do not affect the result. This does not apply to only-one-applicable since a child is considered applicable there as soon as its Target matches,
+	 * whatever its decision; nor to custom algorithms. The removed children are added to updatableRemovedEvaluators.
+	 */
+	private static <COMBINED_EVALUATOR extends PolicyEvaluator> List<COMBINED_EVALUATOR> removeAlwaysNotApplicable(final String policyFriendlyId, final String combiningAlgId,
+			final List<COMBINED_EVALUATOR> combinedEvaluators, final Set<COMBINED_EVALUATOR> updatableRemovedEvaluators)
+	{
+		final StandardCombiningAlgorithm stdAlg = StandardCombiningAlgorithm.getInstance(combiningAlgId);
+		if (stdAlg == null || stdAlg == StandardCombiningAlgorithm.XACML_1_0_POLICY_COMBINING_ONLY_ONE_APPLICABLE)
+		{
+			return combinedEvaluators;
+		}
+
+		final List<COMBINED_EVALUATOR> applicableEvaluators = new ArrayList<>(combinedEvaluators.size());
+		for (final COMBINED_EVALUATOR combinedEvaluator : combinedEvaluators)
+		{
+			if (isAlwaysNotApplicable(combinedEvaluator))
+			{
+				LOGGER.debug("{}: Removing child {} from the combined elements because it always returns NotApplicable, therefore does not affect the result of combining algorithm '{}'",
+						policyFriendlyId, combinedEvaluator, combiningAlgId);
+				updatableRemovedEvaluators.add(combinedEvaluator);
+				continue;
+			}
+
+			applicableEvaluators.add(combinedEvaluator);
+		}
+
+		if (!updatableRemovedEvaluators.isEmpty())
+		{
+			LOGGER.info("{}: Removed {} child Policy(Set) element(s) that always return NotApplicable, therefore do not affect the result of combining algorithm '{}'", policyFriendlyId,
+					updatableRemovedEvaluators.size(), combiningAlgId);
+		}
+
+		return applicableEvaluators;
+	}
+
+	/*
+	 * Removes the Rules that the rule-combining algorithm never reaches, i.e. the Rules after the first always-applicable Rule (no Target and no Condition, or Condition equivalent to constant
+	 * True) if the algorithm is first-applicable, since the algorithm always returns the decision of this Rule. The removed Rules are added to updatableRemovedRules.
+	 */
+	private static List<RuleEvaluator> removeUnreachableRules(final String policyFriendlyId, final String ruleCombiningAlgId, final Collection<RuleEvaluator> ruleEvaluators,
+			final Set<RuleEvaluator> updatableRemovedRules)
+	{
+		final List<RuleEvaluator> reachableRules = new ArrayList<>(ruleEvaluators.size());
+		if (StandardCombiningAlgorithm.getInstance(ruleCombiningAlgId) != StandardCombiningAlgorithm.XACML_1_0_RULE_COMBINING_FIRST_APPLICABLE)
+		{
+			reachableRules.addAll(ruleEvaluators);
+			return reachableRules;
+		}
+
+		RuleEvaluator alwaysApplicableRule = null;
+		for (final RuleEvaluator ruleEvaluator : ruleEvaluators)
+		{
+			if (alwaysApplicableRule != null)
+			{
+				LOGGER.debug("{}: Removing {} because it comes after {} which always applies, therefore is never reached by combining algorithm '{}'", policyFriendlyId, ruleEvaluator,
+						alwaysApplicableRule, ruleCombiningAlgId);
+				updatableRemovedRules.add(ruleEvaluator);
+				continue;
+			}
+
+			reachableRules.add(ruleEvaluator);
+			if (ruleEvaluator.isAlwaysApplicable())
+			{
+				alwaysApplicableRule = ruleEvaluator;
+			}
+		}
+
+		if (!updatableRemovedRules.isEmpty())
+		{
+			LOGGER.info("{}: Removed {} Rule(s) after {} which always applies, therefore never reached by combining algorithm '{}'", policyFriendlyId, updatableRemovedRules.size(),
+					alwaysApplicableRule, ruleCombiningAlgId);
+		}
+
+		return reachableRules;
+	}
+
+	/*
+	 * Removes the combining algorithm parameters associated with removed combined elements (Rule/Policy(Set)CombinerParameters), since the combining algorithm may reject parameters associated with
+	 * elements it does not combine. Parameters not associated with any element (CombinerParameters) are kept.
+	 */
+	private static <T extends Decidable> List<CombiningAlgParameter<? extends T>> removeCombiningAlgParameters(final List<CombiningAlgParameter<? extends T>> combiningAlgParameters,
+			final Set<? extends T> removedElements)
+	{
+		if (removedElements.isEmpty())
+		{
+			return combiningAlgParameters;
+		}
+
+		final List<CombiningAlgParameter<? extends T>> remainingParameters = new ArrayList<>(combiningAlgParameters.size());
+		for (final CombiningAlgParameter<? extends T> combiningAlgParameter : combiningAlgParameters)
+		{
+			final T combinedElement = combiningAlgParameter.getCombinedElement();
+			if (combinedElement == null || !removedElements.contains(combinedElement))
+			{
+				remainingParameters.add(combiningAlgParameter);
+			}
+		}
+
+		return remainingParameters;
+	}
+
 	private static <TLPEE extends TopLevelPolicyElementEvaluator, COMBINED_EVALUATOR extends PolicyEvaluator> TLPEE getInstanceGeneric(
 			final PolicySetElementEvaluatorFactory<TLPEE, COMBINED_EVALUATOR> policyEvaluatorFactory, final PolicySet policyElement, final Set<String> updatableParsedPolicyIds,
 			final Set<String> updatableParsedPolicySetIds, final Deque<String> ancestorPolicySetRefChain) throws IllegalArgumentException
@@ -2125,6 +2519,11 @@ public final class PolicyEvaluators
 		 * *CombinerParameters (combining algorithm parameters), size <= jaxbPolicySetChoiceElements.size()
 		 */
 		final List<CombiningAlgParameter<? extends COMBINED_EVALUATOR>> combiningAlgParameters = new ArrayList<>(jaxbPolicySetChoiceElements.size());
+
+		/*
+		 * Index of child Policy(Set) Targets (null if not worth it), to skip at evaluation time the children that cannot match the request without evaluating each of their Targets
+		 */
+		final PolicySetTargetIndex childTargetIndex = getChildTargetIndex(policyEvaluatorFactory, jaxbPolicySetChoiceElements);
 		int childIndex = 0;
 		for (final Serializable policyChildElt : jaxbPolicySetChoiceElements)
 		{
@@ -2234,8 +2633,11 @@ public final class PolicyEvaluators
 				 * updated directly by a child PolicySet instantiation, then it is no longer valid for the other child PolicySets of this same PolicySet. So we need to pass a copy to
 				 * PolicySetEvaluator.getInstance(() to avoid that inconsistency.
 				 */
-				final COMBINED_EVALUATOR childEvaluator = policyEvaluatorFactory.getChildPolicySetEvaluator(childIndex, childPolicy, nonNullParsedPolicyIds, updatableParsedPolicySetIds,
-						ancestorPolicySetRefChain == null ? null : new ArrayDeque<>(ancestorPolicySetRefChain));
+				final COMBINED_EVALUATOR nonIndexedChildEvaluator = policyEvaluatorFactory.getChildPolicySetEvaluator(childIndex, childPolicy, nonNullParsedPolicyIds,
+						updatableParsedPolicySetIds, ancestorPolicySetRefChain == null ? null : new ArrayDeque<>(ancestorPolicySetRefChain));
+				final int childPosition = combinedEvaluators.size();
+				final COMBINED_EVALUATOR childEvaluator = childTargetIndex != null && childTargetIndex.isIndexed(childPosition) ? policyEvaluatorFactory.getTargetIndexedChildEvaluator(
+						nonIndexedChildEvaluator, childTargetIndex, childPosition) : nonIndexedChildEvaluator;
 				combinedEvaluators.add(childEvaluator);
 				final COMBINED_EVALUATOR duplicate = childPolicySetEvaluatorsByPolicySetId.putIfAbsent(childPolicyId, childEvaluator);
 				if (duplicate != null)
@@ -2255,7 +2657,10 @@ public final class PolicyEvaluators
 					throw new IllegalArgumentException(policyEvaluatorFactory.policyFriendlyId + ": invalid child #" + childIndex + ": duplicate PolicyId = " + childPolicyId);
 				}
 
-				final COMBINED_EVALUATOR childEvaluator = policyEvaluatorFactory.getChildPolicyEvaluator(childIndex, childPolicy);
+				final COMBINED_EVALUATOR nonIndexedChildEvaluator = policyEvaluatorFactory.getChildPolicyEvaluator(childIndex, childPolicy);
+				final int childPosition = combinedEvaluators.size();
+				final COMBINED_EVALUATOR childEvaluator = childTargetIndex != null && childTargetIndex.isIndexed(childPosition) ? policyEvaluatorFactory.getTargetIndexedChildEvaluator(
+						nonIndexedChildEvaluator, childTargetIndex, childPosition) : nonIndexedChildEvaluator;
 				combinedEvaluators.add(childEvaluator);
 				final COMBINED_EVALUATOR duplicate = childPolicyEvaluatorsByPolicyId.putIfAbsent(childPolicyId, childEvaluator);
 				if (duplicate != null)
@@ -2321,8 +2726,16 @@ public final class PolicyEvaluators
 		// expFactory.remove(varId);
 		// }
 		final Set<String> localVariableIds = Collections.emptySet();
-		return policyEvaluatorFactory.getInstance(policyElement.getPolicySetId(), policyElement.getTarget(), policyElement.getPolicyCombiningAlgId(), combinedEvaluators, combiningAlgParameters,
-				policyElement.getObligationExpressions(), policyElement.getAdviceExpressions(), localVariableIds);
+		/*
+		 * Dead policy elimination. If all children are removed, the combining algorithm is optimized in turn into a constant evaluator (e.g. NotApplicable for first-applicable or deny-overrides), so
+		 * that this PolicySet may be removed from its parent as well.
+		 */
+		final Set<COMBINED_EVALUATOR> removedCombinedEvaluators = Collections.newSetFromMap(new IdentityHashMap<COMBINED_EVALUATOR, Boolean>());
+		final List<COMBINED_EVALUATOR> applicableCombinedEvaluators = removeAlwaysNotApplicable(policyEvaluatorFactory.policyFriendlyId, policyElement.getPolicyCombiningAlgId(),
+				combinedEvaluators, removedCombinedEvaluators);
+		return policyEvaluatorFactory.getInstance(policyElement.getPolicySetId(), policyElement.getTarget(), policyElement.getPolicyCombiningAlgId(), applicableCombinedEvaluators,
+				removeCombiningAlgParameters(combiningAlgParameters, removedCombinedEvaluators), policyElement.getObligationExpressions(), policyElement.getAdviceExpressions(),
+				localVariableIds);
 	}
 
 	/**
@@ -0,0 +1,486 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import net.sf.saxon.s9api.XPathCompiler;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AllOf;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AnyOf;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeDesignatorType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Match;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Target;
+
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.Expression;
+import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.impl.RequestScopedMemo;
+import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Inverted index of the Targets of the child Policy(Set) elements of a PolicySet, mapping attribute values to the children whose Target may possibly match a request with such value.
+ * <p>
+ * Only Match elements using one of the equality functions in {@link StandardFunction#HASH_CONSISTENT_EQUALITY_FUNCTION_IDS} against an AttributeDesignator are indexed. A child is indexed on
+ * a given AttributeDesignator iff its Target has an AnyOf where every AllOf contains such a Match on this AttributeDesignator. In this case, if none of the indexed values is in the
+ * AttributeDesignator's bag (successfully evaluated) in the request context, every such AllOf has a Match evaluating to False, so the AnyOf and therefore the Target are No-match, whatever
+ * the other Matches (possibly Indeterminate) evaluate to. The index is therefore only used to skip children that the linear scan of Targets would find NotApplicable, and the final decision
+ * is strictly the same. If the AttributeDesignator evaluation is Indeterminate, the children indexed on it are not excluded and their Target is evaluated as usual.
+ * <p>
+ * The same index is used for the Rules of a Policy (the children are then the Rules), if Rule Target indexing is enabled on the PDP, as a NotApplicable Rule has no effect on the Policy's
+ * decision either, whatever the rule-combining algorithm.
+ * <p>
+ * The index is looked up lazily and the result cached in the request context: the AttributeDesignator of an indexed child is evaluated only when {@link #isExcluded(EvaluationContext, int)} is
+ * called for a child indexed on it, i.e. when the combining algorithm reaches such a child, once per request and AttributeDesignator. Therefore no attribute is requested (e.g. from Attribute
+ * Providers) for children that the combining algorithm does not reach. The only difference with the linear scan is that the AttributeDesignator is evaluated even if the child's Target would be
+ * found No-match before evaluating the indexed AnyOf (e.g. because of a previous AnyOf), the result is the same.
+ *
+ * @version $Id: $
+ */
+final class PolicySetTargetIndex
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(PolicySetTargetIndex.class);
+
+	/**
+	 * Minimum number of indexed children in a PolicySet (or Rules in a Policy) to make the index worthwhile, i.e. more efficient than evaluating each child's Target in sequence
+	 */
+	static final int MIN_INDEXED_CHILD_COUNT = 16;
+
+	/**
+	 * Identifies an AttributeDesignator, including MustBePresent since it affects the evaluation result
+	 */
+	private static final class DesignatorKey
+	{
+		private final String category;
+		private final String id;
+		private final String issuer;
+		private final String datatype;
+		private final boolean mustBePresent;
+		private transient final int hashCode;
+
+		private DesignatorKey(final AttributeDesignatorType designator)
+		{
+			this.category = designator.getCategory();
+			this.id = designator.getAttributeId();
+			this.issuer = designator.getIssuer();
+			this.datatype = designator.getDataType();
+			this.mustBePresent = designator.isMustBePresent();
+			this.hashCode = Objects.hash(this.category, this.id, this.issuer, this.datatype, this.mustBePresent);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			// Effective Java - Item 8
+			if (this == obj)
+			{
+				return true;
+			}
+
+			if (!(obj instanceof DesignatorKey))
+			{
+				return false;
+			}
+
+			final DesignatorKey other = (DesignatorKey) obj;
+			return this.mustBePresent == other.mustBePresent && Objects.equals(this.category, other.category) && Objects.equals(this.id, other.id)
+					&& Objects.equals(this.issuer, other.issuer) && Objects.equals(this.datatype, other.datatype);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "AttributeDesignator[Category=" + category + ", AttributeId=" + id + ", Issuer=" + issuer + ", DataType=" + datatype + ", MustBePresent=" + mustBePresent + "]";
+		}
+	}
+
+	/**
+	 * Index of children on a specific AttributeDesignator
+	 */
+	private static final class DesignatorIndex
+	{
+		private final DesignatorKey key;
+
+		// AttributeDesignator evaluator
+		private final Expression<?> bagExpression;
+
+		// positions of the children indexed on this designator
+		private final BitSet indexedChildPositions = new BitSet();
+
+		// positions of the indexed children whose Target may match, by attribute value
+		private final Map<AttributeValue, BitSet> childPositionsByValue = HashCollections.newUpdatableMap();
+
+		private DesignatorIndex(final DesignatorKey key, final Expression<?> bagExpression)
+		{
+			assert key != null && bagExpression != null;
+			this.key = key;
+			this.bagExpression = bagExpression;
+		}
+
+		private void add(final int childPosition, final Iterable<AttributeValue> values)
+		{
+			indexedChildPositions.set(childPosition);
+			for (final AttributeValue value : values)
+			{
+				BitSet childPositions = childPositionsByValue.get(value);
+				if (childPositions == null)
+				{
+					childPositions = new BitSet();
+					childPositionsByValue.put(value, childPositions);
+				}
+
+				childPositions.set(childPosition);
+			}
+		}
+
+		/**
+		 * Adds the positions of the children indexed on this designator that cannot match the request context to {@code excludedChildPositions}
+		 */
+		private void excludeNonMatching(final EvaluationContext context, final BitSet excludedChildPositions)
+		{
+			final Bag<?> bag;
+			try
+			{
+				bag = (Bag<?>) bagExpression.evaluate(context);
+			}
+			catch (final IndeterminateEvaluationException e)
+			{
+				/*
+				 * The indexed Matches would be Indeterminate as well, so we cannot conclude anything: leave the Targets to be evaluated as usual
+				 */
+				LOGGER.debug("{} -> Indeterminate: no child excluded by Target index", key, e);
+				return;
+			}
+
+			final BitSet nonMatchingChildPositions = (BitSet) indexedChildPositions.clone();
+			for (final AttributeValue value : bag)
+			{
+				final BitSet matchingChildPositions = childPositionsByValue.get(value);
+				if (matchingChildPositions != null)
+				{
+					nonMatchingChildPositions.andNot(matchingChildPositions);
+				}
+			}
+
+			excludedChildPositions.or(nonMatchingChildPositions);
+		}
+	}
+
+	/**
+	 * Index builder
+	 */
+	static final class Builder
+	{
+		private final XPathCompiler xPathCompiler;
+		private final ExpressionFactory expressionFactory;
+		private final Map<DesignatorKey, DesignatorIndex> designatorIndexes = HashCollections.newUpdatableMap();
+		private int indexedChildCount = 0;
+
+		/**
+		 * Creates builder
+		 *
+		 * @param xPathCompiler
+		 *            XPath compiler corresponding to the enclosing PolicySet's default XPath version
+		 * @param expressionFactory
+		 *            Expression factory used to compile the AttributeDesignators and AttributeValues
+		 */
+		Builder(final XPathCompiler xPathCompiler, final ExpressionFactory expressionFactory)
+		{
+			assert expressionFactory != null;
+			this.xPathCompiler = xPathCompiler;
+			this.expressionFactory = expressionFactory;
+		}
+
+		/**
+		 * Get the literal value of a Match if it is indexable on its AttributeDesignator
+		 *
+		 * @return the value, or null if the Match is not indexable
+		 */
+		private AttributeValue getIndexableValue(final Match match)
+		{
+			if (!StandardFunction.HASH_CONSISTENT_EQUALITY_FUNCTION_IDS.contains(match.getMatchId()) || match.getAttributeDesignator() == null || match.getAttributeValue() == null)
+			{
+				return null;
+			}
+
+			final Optional<? extends AttributeValue> constant;
+			try
+			{
+				constant = expressionFactory.getInstance(match.getAttributeValue(), xPathCompiler).getValue();
+			}
+			catch (final IllegalArgumentException e)
+			{
+				/*
+				 * Invalid AttributeValue: the error is reported by the child Policy(Set) evaluator instantiation
+				 */
+				return null;
+			}
+
+			return constant.isPresent() ? constant.get() : null;
+		}
+
+		/**
+		 * Get the values of the first AnyOf in {@code anyOfs} such that every AllOf has an indexable Match on the same AttributeDesignator, one value per AllOf.
+		 *
+		 * @return the designator and associated values, or null if there is no such AnyOf
+		 */
+		private Map.Entry<AttributeDesignatorType, List<AttributeValue>> getIndexableAnyOf(final List<AnyOf> anyOfs)
+		{
+			for (final AnyOf anyOf : anyOfs)
+			{
+				final List<AllOf> allOfs = anyOf.getAllOves();
+				if (allOfs.isEmpty())
+				{
+					continue;
+				}
+
+				/*
+				 * Candidate designators are the ones of the indexable Matches in the first AllOf
+				 */
+				for (final Match candidateMatch : allOfs.get(0).getMatches())
+				{
+					final AttributeValue firstValue = getIndexableValue(candidateMatch);
+					if (firstValue == null)
+					{
+						continue;
+					}
+
+					final AttributeDesignatorType designator = candidateMatch.getAttributeDesignator();
+					final DesignatorKey designatorKey = new DesignatorKey(designator);
+					final List<AttributeValue> values = new ArrayList<>(allOfs.size());
+					values.add(firstValue);
+					for (final AllOf allOf : allOfs.subList(1, allOfs.size()))
+					{
+						AttributeValue allOfValue = null;
+						for (final Match match : allOf.getMatches())
+						{
+							final AttributeDesignatorType matchDesignator = match.getAttributeDesignator();
+							if (matchDesignator == null || !designatorKey.equals(new DesignatorKey(matchDesignator)))
+							{
+								continue;
+							}
+
+							allOfValue = getIndexableValue(match);
+							if (allOfValue != null)
+							{
+								break;
+							}
+						}
+
+						if (allOfValue == null)
+						{
+							// this AllOf cannot be indexed on the designator
+							break;
+						}
+
+						values.add(allOfValue);
+					}
+
+					if (values.size() == allOfs.size())
+					{
+						return new AbstractMap.SimpleImmutableEntry<>(designator, values);
+					}
+				}
+			}
+
+			return null;
+		}
+
+		/**
+		 * Indexes child Policy(Set)'s Target if possible
+		 *
+		 * @param childPosition
+		 *            position of the child in the list of elements combined by the PolicySet's combining algorithm
+		 * @param childTarget
+		 *            child's Target
+		 * @return true iff the child is indexed
+		 */
+		boolean add(final int childPosition, final Target childTarget)
+		{
+			if (childTarget == null || childTarget.getAnyOves().isEmpty())
+			{
+				// matches all requests
+				return false;
+			}
+
+			final Map.Entry<AttributeDesignatorType, List<AttributeValue>> indexableAnyOf = getIndexableAnyOf(childTarget.getAnyOves());
+			if (indexableAnyOf == null)
+			{
+				return false;
+			}
+
+			final DesignatorKey designatorKey = new DesignatorKey(indexableAnyOf.getKey());
+			DesignatorIndex designatorIndex = designatorIndexes.get(designatorKey);
+			if (designatorIndex == null)
+			{
+				final Expression<?> bagExpression;
+				try
+				{
+					bagExpression = expressionFactory.getInstance(indexableAnyOf.getKey(), xPathCompiler, null);
+				}
+				catch (final IllegalArgumentException e)
+				{
+					/*
+					 * Invalid AttributeDesignator: the error is reported by the child Policy(Set) evaluator instantiation
+					 */
+					return false;
+				}
+
+				designatorIndex = new DesignatorIndex(designatorKey, bagExpression);
+				designatorIndexes.put(designatorKey, designatorIndex);
+			}
+
+			designatorIndex.add(childPosition, indexableAnyOf.getValue());
+			indexedChildCount++;
+			return true;
+		}
+
+		/**
+		 * Builds the index
+		 *
+		 * @param policyFriendlyId
+		 *            friendly ID of the PolicySet or Policy (for logging)
+		 * @return the index, or null if there are less than {@link PolicySetTargetIndex#MIN_INDEXED_CHILD_COUNT} indexed children
+		 */
+		PolicySetTargetIndex build(final String policyFriendlyId)
+		{
+			if (indexedChildCount < MIN_INDEXED_CHILD_COUNT)
+			{
+				return null;
+			}
+
+			LOGGER.debug("{}: optimization: {} child Target(s) indexed on attribute designator(s): {}", policyFriendlyId, indexedChildCount, designatorIndexes.keySet());
+			return new PolicySetTargetIndex(designatorIndexes.values());
+		}
+	}
+
+	/**
+	 * Result of the index lookups for a given request: children excluded so far, and designator indexes already looked up
+	 */
+	private static final class RequestLookupState
+	{
+		private final BitSet excludedChildPositions = new BitSet();
+		private final BitSet lookedUpDesignatorIndexes = new BitSet();
+	}
+
+	private final DesignatorIndex[] designatorIndexes;
+
+	// positions of all indexed children
+	private final BitSet indexedChildPositions = new BitSet();
+
+	// index (in designatorIndexes) of the designator index of each child (by position), -1 if the child is not indexed
+	private final int[] designatorIndexByChildPosition;
+
+	/*
+	 * For caching the index lookups in the request context
+	 */
+	private transient final RequestScopedMemo requestScopedLookupState = new RequestScopedMemo();
+
+	private PolicySetTargetIndex(final Iterable<DesignatorIndex> designatorIndexes)
+	{
+		final List<DesignatorIndex> designatorIndexList = new ArrayList<>();
+		for (final DesignatorIndex designatorIndex : designatorIndexes)
+		{
+			designatorIndexList.add(designatorIndex);
+			this.indexedChildPositions.or(designatorIndex.indexedChildPositions);
+		}
+
+		this.designatorIndexes = designatorIndexList.toArray(new DesignatorIndex[designatorIndexList.size()]);
+		this.designatorIndexByChildPosition = new int[this.indexedChildPositions.length()];
+		Arrays.fill(this.designatorIndexByChildPosition, -1);
+		for (int i = 0; i < this.designatorIndexes.length; i++)
+		{
+			final BitSet designatorChildPositions = this.designatorIndexes[i].indexedChildPositions;
+			for (int childPosition = designatorChildPositions.nextSetBit(0); childPosition >= 0; childPosition = designatorChildPositions.nextSetBit(childPosition + 1))
+			{
+				// a child is indexed on one designator only
+				this.designatorIndexByChildPosition[childPosition] = i;
+			}
+		}
+	}
+
+	/**
+	 * Is the child Policy(Set) at a given position indexed?
+	 *
+	 * @param childPosition
+	 *            position of the child in the list of elements combined by the PolicySet's combining algorithm
+	 * @return true iff the child's Target is indexed
+	 */
+	boolean isIndexed(final int childPosition)
+	{
+		return indexedChildPositions.get(childPosition);
+	}
+
+	/**
+	 * Is the child Policy(Set) at a given position excluded by the index, i.e. its Target does not match the request context for sure?
+	 *
+	 * @param context
+	 *            request context
+	 * @param childPosition
+	 *            position of the child in the list of elements combined by the PolicySet's combining algorithm
+	 * @return true iff the child's Target would evaluate to No-match (the child is NotApplicable)
+	 */
+	boolean isExcluded(final EvaluationContext context, final int childPosition)
+	{
+		if (childPosition >= designatorIndexByChildPosition.length || designatorIndexByChildPosition[childPosition] == -1)
+		{
+			return false;
+		}
+
+		final int designatorIndexPosition = designatorIndexByChildPosition[childPosition];
+		final Object cachedValue = this.requestScopedLookupState.get(context);
+		final RequestLookupState lookupState;
+		if (cachedValue instanceof RequestLookupState)
+		{
+			lookupState = (RequestLookupState) cachedValue;
+		}
+		else
+		{
+			lookupState = new RequestLookupState();
+			this.requestScopedLookupState.put(context, lookupState);
+		}
+
+		if (!lookupState.lookedUpDesignatorIndexes.get(designatorIndexPosition))
+		{
+			// first child indexed on this designator reached in this request
+			designatorIndexes[designatorIndexPosition].excludeNonMatching(context, lookupState.excludedChildPositions);
+			lookupState.lookedUpDesignatorIndexes.set(designatorIndexPosition);
+		}
+
+		return lookupState.excludedChildPositions.get(childPosition);
+	}
+
+}
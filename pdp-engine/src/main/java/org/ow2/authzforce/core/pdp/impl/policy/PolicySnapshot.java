@@ -0,0 +1,1150 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.namespace.QName;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AdviceExpression;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AdviceExpressions;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AllOf;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AnyOf;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.ApplyType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attribute;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeAssignmentExpression;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeDesignatorType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeSelectorType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeValueType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.CombinerParameter;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.CombinerParametersType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Condition;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DefaultsType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.EffectType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.ExpressionType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.FunctionType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.IdReferenceType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Match;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.ObligationExpression;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.ObligationExpressions;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Policy;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.PolicyCombinerParameters;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.PolicyIssuer;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.PolicySet;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.PolicySetCombinerParameters;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Rule;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.RuleCombinerParameters;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Target;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.VariableDefinition;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.VariableReferenceType;
+
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.JaxbXACMLUtils.XACMLParserFactory;
+import org.ow2.authzforce.core.pdp.api.XMLUtils.NamespaceFilteringParser;
+import org.ow2.authzforce.core.pdp.impl.policy.CoreRefPolicyProviderModule.PolicyWithNamespaces;
+
+/**
+ * Binary snapshot of XACML Policy(Set) documents, already unmarshalled and validated against the XACML schema, with the namespace prefix-URI mappings of each document (for XPath evaluation). Loading
+ * a snapshot skips XML parsing and schema validation, which take most of the PDP initialization time with large policy sets; the policy evaluators are still built from the loaded policies (see
+ * {@link CoreRefPolicyProviderModule#getInstance(List, List, int, org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory, org.ow2.authzforce.core.pdp.api.combining.CombiningAlgRegistry)}),
+ * because they hold functions, compiled regular expressions and XPath expressions that are bound to the PDP configuration (extensions, XPath support) and cannot be persisted.
+ * <p>
+ * The snapshot also contains a checksum (SHA-256) of the source policy documents it was created from, to detect whether it is out of date (see {@link #checkSource(Collection)}).
+ * <p>
+ * Only the parsed XACML model is persisted, in a format specific to policy snapshots (no Java serialization): magic number, format version, source checksum, number of policy documents, then
+ * for each document the Policy or PolicySet and its namespace prefix-URI mappings. Each node of the XACML model (Policy, Target, Match, Apply, etc.) is written as a type tag followed by its fields
+ * in the order of the XACML schema; strings are written as their length in bytes followed by their UTF-8 encoding. When reading a snapshot, only the nodes allowed at each position are accepted and
+ * the nesting depth is limited, so an unknown or unexpected type tag, an invalid length or a truncated snapshot are rejected as invalid. XML elements in mixed content (AttributeValue or
+ * PolicyIssuer/Content) are not supported.
+ *
+ * @version $Id: $
+ */
+public final class PolicySnapshot
+{
+	private static final int MAGIC_NUMBER = 0x415A5053; // "AZPS"
+	private static final int FORMAT_VERSION = 2;
+	private static final String CHECKSUM_ALGORITHM = "SHA-256";
+	private static final int CHECKSUM_LENGTH = 32;
+
+	private static final Comparator<byte[]> CHECKSUM_COMPARATOR = new Comparator<byte[]>()
+	{
+		@Override
+		public int compare(final byte[] checksum1, final byte[] checksum2)
+		{
+			for (int i = 0; i < CHECKSUM_LENGTH; i++)
+			{
+				final int diff = (checksum1[i] & 0xFF) - (checksum2[i] & 0xFF);
+				if (diff != 0)
+				{
+					return diff;
+				}
+			}
+
+			return 0;
+		}
+	};
+
+	/*
+	 * Type tags of the nodes of the XACML model in a snapshot. NULL_TAG stands for an undefined optional node. JAXB_ELEMENT_TAG is followed by the element name and the (tagged) value.
+	 */
+	private static final byte NULL_TAG = 0;
+	private static final byte POLICY_SET_TAG = 1;
+	private static final byte POLICY_TAG = 2;
+	private static final byte POLICY_ISSUER_TAG = 3;
+	private static final byte ATTRIBUTE_TAG = 4;
+	private static final byte DEFAULTS_TAG = 5;
+	private static final byte TARGET_TAG = 6;
+	private static final byte ANY_OF_TAG = 7;
+	private static final byte ALL_OF_TAG = 8;
+	private static final byte MATCH_TAG = 9;
+	private static final byte ATTRIBUTE_VALUE_TAG = 10;
+	private static final byte ATTRIBUTE_DESIGNATOR_TAG = 11;
+	private static final byte ATTRIBUTE_SELECTOR_TAG = 12;
+	private static final byte RULE_TAG = 13;
+	private static final byte CONDITION_TAG = 14;
+	private static final byte APPLY_TAG = 15;
+	private static final byte FUNCTION_TAG = 16;
+	private static final byte VARIABLE_REFERENCE_TAG = 17;
+	private static final byte VARIABLE_DEFINITION_TAG = 18;
+	private static final byte OBLIGATION_EXPRESSIONS_TAG = 19;
+	private static final byte OBLIGATION_EXPRESSION_TAG = 20;
+	private static final byte ADVICE_EXPRESSIONS_TAG = 21;
+	private static final byte ADVICE_EXPRESSION_TAG = 22;
+	private static final byte ATTRIBUTE_ASSIGNMENT_EXPRESSION_TAG = 23;
+	private static final byte COMBINER_PARAMETERS_TAG = 24;
+	private static final byte RULE_COMBINER_PARAMETERS_TAG = 25;
+	private static final byte POLICY_COMBINER_PARAMETERS_TAG = 26;
+	private static final byte POLICY_SET_COMBINER_PARAMETERS_TAG = 27;
+	private static final byte COMBINER_PARAMETER_TAG = 28;
+	private static final byte ID_REFERENCE_TAG = 29;
+	private static final byte JAXB_ELEMENT_TAG = 30;
+
+	/*
+	 * Limits enforced when reading a snapshot: nesting depth of the nodes (below the depth where reading overflows the default thread stack), and length of strings in bytes
+	 */
+	private static final int MAX_DEPTH = 1000;
+	private static final int MAX_STRING_LENGTH = 1 << 24;
+
+	private static void writeString(final DataOutput output, final String value) throws IOException
+	{
+		if (value == null)
+		{
+			output.writeInt(-1);
+			return;
+		}
+
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private static void writeQName(final DataOutput output, final QName name) throws IOException
+	{
+		writeString(output, name.getNamespaceURI());
+		writeString(output, name.getLocalPart());
+		writeString(output, name.getPrefix());
+	}
+
+	private static void writeNodes(final DataOutput output, final List<?> nodes) throws IOException
+	{
+		output.writeInt(nodes.size());
+		for (final Object node : nodes)
+		{
+			writeNode(output, node);
+		}
+	}
+
+	private static void writeAttributeValueContent(final DataOutput output, final AttributeValueType attributeValue) throws IOException
+	{
+		final List<Serializable> content = attributeValue.getContent();
+		output.writeInt(content.size());
+		for (final Serializable contentItem : content)
+		{
+			if (!(contentItem instanceof String))
+			{
+				throw new IllegalArgumentException("Policy document not supported in snapshot (XML element in AttributeValue content): " + contentItem);
+			}
+
+			writeString(output, (String) contentItem);
+		}
+
+		final Map<QName, String> otherAttributes = attributeValue.getOtherAttributes();
+		output.writeInt(otherAttributes.size());
+		for (final Entry<QName, String> otherAttribute : otherAttributes.entrySet())
+		{
+			writeQName(output, otherAttribute.getKey());
+			writeString(output, otherAttribute.getValue());
+		}
+	}
+
+	/*
+	 * Writes a node of the XACML model: type tag, then the fields in the order of the XACML schema
+	 */
+	private static void writeNode(final DataOutput output, final Object node) throws IOException
+	{
+		if (node == null)
+		{
+			output.writeByte(NULL_TAG);
+		}
+		else if (node instanceof PolicySet)
+		{
+			final PolicySet policySet = (PolicySet) node;
+			output.writeByte(POLICY_SET_TAG);
+			writeString(output, policySet.getDescription());
+			writeNode(output, policySet.getPolicyIssuer());
+			writeNode(output, policySet.getPolicySetDefaults());
+			writeNode(output, policySet.getTarget());
+			writeNodes(output, policySet.getPolicySetsAndPoliciesAndPolicySetIdReferences());
+			writeNode(output, policySet.getObligationExpressions());
+			writeNode(output, policySet.getAdviceExpressions());
+			writeString(output, policySet.getPolicySetId());
+			writeString(output, policySet.getVersion());
+			writeString(output, policySet.getPolicyCombiningAlgId());
+			final BigInteger maxDelegationDepth = policySet.getMaxDelegationDepth();
+			writeString(output, maxDelegationDepth == null ? null : maxDelegationDepth.toString());
+		}
+		else if (node instanceof Policy)
+		{
+			final Policy policy = (Policy) node;
+			output.writeByte(POLICY_TAG);
+			writeString(output, policy.getDescription());
+			writeNode(output, policy.getPolicyIssuer());
+			writeNode(output, policy.getPolicyDefaults());
+			writeNode(output, policy.getTarget());
+			writeNodes(output, policy.getCombinerParametersAndRuleCombinerParametersAndVariableDefinitions());
+			writeNode(output, policy.getObligationExpressions());
+			writeNode(output, policy.getAdviceExpressions());
+			writeString(output, policy.getPolicyId());
+			writeString(output, policy.getVersion());
+			writeString(output, policy.getRuleCombiningAlgId());
+			final BigInteger maxDelegationDepth = policy.getMaxDelegationDepth();
+			writeString(output, maxDelegationDepth == null ? null : maxDelegationDepth.toString());
+		}
+		else if (node instanceof PolicyIssuer)
+		{
+			final PolicyIssuer policyIssuer = (PolicyIssuer) node;
+			if (policyIssuer.getContent() != null)
+			{
+				throw new IllegalArgumentException("Policy document not supported in snapshot (PolicyIssuer/Content)");
+			}
+
+			output.writeByte(POLICY_ISSUER_TAG);
+			writeNodes(output, policyIssuer.getAttributes());
+		}
+		else if (node instanceof Attribute)
+		{
+			final Attribute attribute = (Attribute) node;
+			output.writeByte(ATTRIBUTE_TAG);
+			writeNodes(output, attribute.getAttributeValues());
+			writeString(output, attribute.getAttributeId());
+			writeString(output, attribute.getIssuer());
+			output.writeBoolean(attribute.isIncludeInResult());
+		}
+		else if (node instanceof DefaultsType)
+		{
+			output.writeByte(DEFAULTS_TAG);
+			writeString(output, ((DefaultsType) node).getXPathVersion());
+		}
+		else if (node instanceof Target)
+		{
+			output.writeByte(TARGET_TAG);
+			writeNodes(output, ((Target) node).getAnyOves());
+		}
+		else if (node instanceof AnyOf)
+		{
+			output.writeByte(ANY_OF_TAG);
+			writeNodes(output, ((AnyOf) node).getAllOves());
+		}
+		else if (node instanceof AllOf)
+		{
+			output.writeByte(ALL_OF_TAG);
+			writeNodes(output, ((AllOf) node).getMatches());
+		}
+		else if (node instanceof Match)
+		{
+			final Match match = (Match) node;
+			output.writeByte(MATCH_TAG);
+			writeNode(output, match.getAttributeValue());
+			writeNode(output, match.getAttributeDesignator());
+			writeNode(output, match.getAttributeSelector());
+			writeString(output, match.getMatchId());
+		}
+		else if (node instanceof AttributeValueType)
+		{
+			final AttributeValueType attributeValue = (AttributeValueType) node;
+			output.writeByte(ATTRIBUTE_VALUE_TAG);
+			writeAttributeValueContent(output, attributeValue);
+			writeString(output, attributeValue.getDataType());
+		}
+		else if (node instanceof AttributeDesignatorType)
+		{
+			final AttributeDesignatorType attributeDesignator = (AttributeDesignatorType) node;
+			output.writeByte(ATTRIBUTE_DESIGNATOR_TAG);
+			writeString(output, attributeDesignator.getCategory());
+			writeString(output, attributeDesignator.getAttributeId());
+			writeString(output, attributeDesignator.getDataType());
+			writeString(output, attributeDesignator.getIssuer());
+			output.writeBoolean(attributeDesignator.isMustBePresent());
+		}
+		else if (node instanceof AttributeSelectorType)
+		{
+			final AttributeSelectorType attributeSelector = (AttributeSelectorType) node;
+			output.writeByte(ATTRIBUTE_SELECTOR_TAG);
+			writeString(output, attributeSelector.getCategory());
+			writeString(output, attributeSelector.getContextSelectorId());
+			writeString(output, attributeSelector.getPath());
+			writeString(output, attributeSelector.getDataType());
+			output.writeBoolean(attributeSelector.isMustBePresent());
+		}
+		else if (node instanceof Rule)
+		{
+			final Rule rule = (Rule) node;
+			output.writeByte(RULE_TAG);
+			writeString(output, rule.getDescription());
+			writeNode(output, rule.getTarget());
+			writeNode(output, rule.getCondition());
+			writeNode(output, rule.getObligationExpressions());
+			writeNode(output, rule.getAdviceExpressions());
+			writeString(output, rule.getRuleId());
+			writeString(output, rule.getEffect().name());
+		}
+		else if (node instanceof Condition)
+		{
+			output.writeByte(CONDITION_TAG);
+			writeNode(output, ((Condition) node).getExpression());
+		}
+		else if (node instanceof ApplyType)
+		{
+			final ApplyType apply = (ApplyType) node;
+			output.writeByte(APPLY_TAG);
+			writeString(output, apply.getDescription());
+			writeNodes(output, apply.getExpressions());
+			writeString(output, apply.getFunctionId());
+		}
+		else if (node instanceof FunctionType)
+		{
+			output.writeByte(FUNCTION_TAG);
+			writeString(output, ((FunctionType) node).getFunctionId());
+		}
+		else if (node instanceof VariableReferenceType)
+		{
+			output.writeByte(VARIABLE_REFERENCE_TAG);
+			writeString(output, ((VariableReferenceType) node).getVariableId());
+		}
+		else if (node instanceof VariableDefinition)
+		{
+			final VariableDefinition variableDefinition = (VariableDefinition) node;
+			output.writeByte(VARIABLE_DEFINITION_TAG);
+			writeNode(output, variableDefinition.getExpression());
+			writeString(output, variableDefinition.getVariableId());
+		}
+		else if (node instanceof ObligationExpressions)
+		{
+			output.writeByte(OBLIGATION_EXPRESSIONS_TAG);
+			writeNodes(output, ((ObligationExpressions) node).getObligationExpressions());
+		}
+		else if (node instanceof ObligationExpression)
+		{
+			final ObligationExpression obligationExpression = (ObligationExpression) node;
+			output.writeByte(OBLIGATION_EXPRESSION_TAG);
+			writeNodes(output, obligationExpression.getAttributeAssignmentExpressions());
+			writeString(output, obligationExpression.getObligationId());
+			writeString(output, obligationExpression.getFulfillOn().name());
+		}
+		else if (node instanceof AdviceExpressions)
+		{
+			output.writeByte(ADVICE_EXPRESSIONS_TAG);
+			writeNodes(output, ((AdviceExpressions) node).getAdviceExpressions());
+		}
+		else if (node instanceof AdviceExpression)
+		{
+			final AdviceExpression adviceExpression = (AdviceExpression) node;
+			output.writeByte(ADVICE_EXPRESSION_TAG);
+			writeNodes(output, adviceExpression.getAttributeAssignmentExpressions());
+			writeString(output, adviceExpression.getAdviceId());
+			writeString(output, adviceExpression.getAppliesTo().name());
+		}
+		else if (node instanceof AttributeAssignmentExpression)
+		{
+			final AttributeAssignmentExpression attributeAssignmentExpression = (AttributeAssignmentExpression) node;
+			output.writeByte(ATTRIBUTE_ASSIGNMENT_EXPRESSION_TAG);
+			writeNode(output, attributeAssignmentExpression.getExpression());
+			writeString(output, attributeAssignmentExpression.getAttributeId());
+			writeString(output, attributeAssignmentExpression.getCategory());
+			writeString(output, attributeAssignmentExpression.getIssuer());
+		}
+		else if (node instanceof RuleCombinerParameters)
+		{
+			final RuleCombinerParameters ruleCombinerParameters = (RuleCombinerParameters) node;
+			output.writeByte(RULE_COMBINER_PARAMETERS_TAG);
+			writeNodes(output, ruleCombinerParameters.getCombinerParameters());
+			writeString(output, ruleCombinerParameters.getRuleIdRef());
+		}
+		else if (node instanceof PolicyCombinerParameters)
+		{
+			final PolicyCombinerParameters policyCombinerParameters = (PolicyCombinerParameters) node;
+			output.writeByte(POLICY_COMBINER_PARAMETERS_TAG);
+			writeNodes(output, policyCombinerParameters.getCombinerParameters());
+			writeString(output, policyCombinerParameters.getPolicyIdRef());
+		}
+		else if (node instanceof PolicySetCombinerParameters)
+		{
+			final PolicySetCombinerParameters policySetCombinerParameters = (PolicySetCombinerParameters) node;
+			output.writeByte(POLICY_SET_COMBINER_PARAMETERS_TAG);
+			writeNodes(output, policySetCombinerParameters.getCombinerParameters());
+			writeString(output, policySetCombinerParameters.getPolicySetIdRef());
+		}
+		else if (node instanceof CombinerParametersType)
+		{
+			output.writeByte(COMBINER_PARAMETERS_TAG);
+			writeNodes(output, ((CombinerParametersType) node).getCombinerParameters());
+		}
+		else if (node instanceof CombinerParameter)
+		{
+			final CombinerParameter combinerParameter = (CombinerParameter) node;
+			output.writeByte(COMBINER_PARAMETER_TAG);
+			writeNode(output, combinerParameter.getAttributeValue());
+			writeString(output, combinerParameter.getParameterName());
+		}
+		else if (node instanceof IdReferenceType)
+		{
+			final IdReferenceType idReference = (IdReferenceType) node;
+			output.writeByte(ID_REFERENCE_TAG);
+			writeString(output, idReference.getValue());
+			writeString(output, idReference.getVersion());
+			writeString(output, idReference.getEarliestVersion());
+			writeString(output, idReference.getLatestVersion());
+		}
+		else if (node instanceof JAXBElement)
+		{
+			final JAXBElement<?> jaxbElement = (JAXBElement<?>) node;
+			output.writeByte(JAXB_ELEMENT_TAG);
+			writeQName(output, jaxbElement.getName());
+			writeNode(output, jaxbElement.getValue());
+		}
+		else
+		{
+			throw new IllegalArgumentException("Policy document not supported in snapshot (unexpected content: " + node.getClass().getName() + ")");
+		}
+	}
+
+	/*
+	 * Reader of the XACML model in a snapshot (see writeNode())
+	 */
+	private static final class SnapshotReader
+	{
+		private final DataInput input;
+		private final Object source;
+		private int depth = 0;
+
+		private SnapshotReader(final DataInput input, final Object source)
+		{
+			this.input = input;
+			this.source = source;
+		}
+
+		private IllegalArgumentException newInvalidSnapshotException(final String reason)
+		{
+			return new IllegalArgumentException("Invalid policy snapshot (" + reason + "): " + source);
+		}
+
+		private int readLength() throws IOException
+		{
+			final int length = input.readInt();
+			if (length < 0)
+			{
+				throw newInvalidSnapshotException("negative length: " + length);
+			}
+
+			return length;
+		}
+
+		private String readString() throws IOException
+		{
+			final int length = input.readInt();
+			if (length == -1)
+			{
+				return null;
+			}
+
+			if (length < 0 || length > MAX_STRING_LENGTH)
+			{
+				throw newInvalidSnapshotException("invalid string length: " + length);
+			}
+
+			final byte[] bytes = new byte[length];
+			input.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private QName readQName() throws IOException
+		{
+			final String namespaceURI = readString();
+			final String localPart = readString();
+			final String prefix = readString();
+			if (namespaceURI == null || localPart == null || prefix == null)
+			{
+				throw newInvalidSnapshotException("undefined part of XML name");
+			}
+
+			return new QName(namespaceURI, localPart, prefix);
+		}
+
+		private BigInteger readBigInteger() throws IOException
+		{
+			final String value = readString();
+			return value == null ? null : new BigInteger(value);
+		}
+
+		private EffectType readEffect() throws IOException
+		{
+			final String effect = readString();
+			if (effect == null)
+			{
+				throw newInvalidSnapshotException("undefined Effect");
+			}
+
+			return EffectType.valueOf(effect);
+		}
+
+		private Map<String, String> readStringMap() throws IOException
+		{
+			final int size = readLength();
+			final Map<String, String> map = new HashMap<>();
+			for (int i = 0; i < size; i++)
+			{
+				map.put(readString(), readString());
+			}
+
+			return map;
+		}
+
+		/*
+		 * Reads the content and other XML attributes of an AttributeValue (see writeAttributeValueContent()), then the datatype, and creates the AttributeValue
+		 */
+		private AttributeValueType readAttributeValue() throws IOException
+		{
+			final int contentSize = readLength();
+			final List<Serializable> content = new ArrayList<>(Math.min(contentSize, 16));
+			for (int i = 0; i < contentSize; i++)
+			{
+				content.add(readString());
+			}
+
+			final int otherAttributeCount = readLength();
+			final Map<QName, String> otherAttributes = new HashMap<>();
+			for (int i = 0; i < otherAttributeCount; i++)
+			{
+				otherAttributes.put(readQName(), readString());
+			}
+
+			return new AttributeValueType(content, readString(), otherAttributes);
+		}
+
+		/*
+		 * Reads a node that must be an instance of expectedType, or null (NULL_TAG)
+		 */
+		private <T> T readNode(final Class<T> expectedType) throws IOException
+		{
+			final Object node = readNode();
+			if (node != null && !expectedType.isInstance(node))
+			{
+				throw newInvalidSnapshotException(expectedType.getSimpleName() + " expected instead of " + node.getClass().getSimpleName());
+			}
+
+			return expectedType.cast(node);
+		}
+
+		private <T> List<T> readNodes(final Class<T> expectedType) throws IOException
+		{
+			final int size = readLength();
+			final List<T> nodes = new ArrayList<>(Math.min(size, 16));
+			for (int i = 0; i < size; i++)
+			{
+				final T node = readNode(expectedType);
+				if (node == null)
+				{
+					throw newInvalidSnapshotException("undefined " + expectedType.getSimpleName() + " in list");
+				}
+
+				nodes.add(node);
+			}
+
+			return nodes;
+		}
+
+		@SuppressWarnings("unchecked")
+		private JAXBElement<? extends ExpressionType> readExpression() throws IOException
+		{
+			final JAXBElement<?> jaxbElement = readNode(JAXBElement.class);
+			if (jaxbElement == null || !(jaxbElement.getValue() instanceof ExpressionType))
+			{
+				throw newInvalidSnapshotException("Expression expected");
+			}
+
+			return (JAXBElement<? extends ExpressionType>) jaxbElement;
+		}
+
+		private List<JAXBElement<? extends ExpressionType>> readExpressions() throws IOException
+		{
+			final int size = readLength();
+			final List<JAXBElement<? extends ExpressionType>> expressions = new ArrayList<>(Math.min(size, 16));
+			for (int i = 0; i < size; i++)
+			{
+				expressions.add(readExpression());
+			}
+
+			return expressions;
+		}
+
+		private static <T> JAXBElement<T> newJaxbElement(final QName name, final T value)
+		{
+			@SuppressWarnings("unchecked")
+			final Class<T> declaredType = (Class<T>) value.getClass();
+			return new JAXBElement<>(name, declaredType, value);
+		}
+
+		/*
+		 * Reads a node: type tag, then the fields in the order of the XACML schema (constructor arguments are evaluated from left to right)
+		 */
+		private Object readNode() throws IOException
+		{
+			final byte tag = input.readByte();
+			if (tag == NULL_TAG)
+			{
+				return null;
+			}
+
+			if (++depth > MAX_DEPTH)
+			{
+				throw newInvalidSnapshotException("nesting depth greater than " + MAX_DEPTH);
+			}
+
+			final Object node;
+			switch (tag)
+			{
+				case POLICY_SET_TAG:
+					node = new PolicySet(readString(), readNode(PolicyIssuer.class), readNode(DefaultsType.class), readNode(Target.class), readNodes(Serializable.class),
+							readNode(ObligationExpressions.class), readNode(AdviceExpressions.class), readString(), readString(), readString(), readBigInteger());
+					break;
+				case POLICY_TAG:
+					node = new Policy(readString(), readNode(PolicyIssuer.class), readNode(DefaultsType.class), readNode(Target.class), readNodes(Serializable.class),
+							readNode(ObligationExpressions.class), readNode(AdviceExpressions.class), readString(), readString(), readString(), readBigInteger());
+					break;
+				case POLICY_ISSUER_TAG:
+					node = new PolicyIssuer(null, readNodes(Attribute.class));
+					break;
+				case ATTRIBUTE_TAG:
+					node = new Attribute(readNodes(AttributeValueType.class), readString(), readString(), input.readBoolean());
+					break;
+				case DEFAULTS_TAG:
+					node = new DefaultsType(readString());
+					break;
+				case TARGET_TAG:
+					node = new Target(readNodes(AnyOf.class));
+					break;
+				case ANY_OF_TAG:
+					node = new AnyOf(readNodes(AllOf.class));
+					break;
+				case ALL_OF_TAG:
+					node = new AllOf(readNodes(Match.class));
+					break;
+				case MATCH_TAG:
+					node = new Match(readNode(AttributeValueType.class), readNode(AttributeDesignatorType.class), readNode(AttributeSelectorType.class), readString());
+					break;
+				case ATTRIBUTE_VALUE_TAG:
+					node = readAttributeValue();
+					break;
+				case ATTRIBUTE_DESIGNATOR_TAG:
+					node = new AttributeDesignatorType(readString(), readString(), readString(), readString(), input.readBoolean());
+					break;
+				case ATTRIBUTE_SELECTOR_TAG:
+					node = new AttributeSelectorType(readString(), readString(), readString(), readString(), input.readBoolean());
+					break;
+				case RULE_TAG:
+					node = new Rule(readString(), readNode(Target.class), readNode(Condition.class), readNode(ObligationExpressions.class), readNode(AdviceExpressions.class), readString(),
+							readEffect());
+					break;
+				case CONDITION_TAG:
+					node = new Condition(readExpression());
+					break;
+				case APPLY_TAG:
+					node = new ApplyType(readString(), readExpressions(), readString());
+					break;
+				case FUNCTION_TAG:
+					node = new FunctionType(readString());
+					break;
+				case VARIABLE_REFERENCE_TAG:
+					node = new VariableReferenceType(readString());
+					break;
+				case VARIABLE_DEFINITION_TAG:
+					node = new VariableDefinition(readExpression(), readString());
+					break;
+				case OBLIGATION_EXPRESSIONS_TAG:
+					node = new ObligationExpressions(readNodes(ObligationExpression.class));
+					break;
+				case OBLIGATION_EXPRESSION_TAG:
+					node = new ObligationExpression(readNodes(AttributeAssignmentExpression.class), readString(), readEffect());
+					break;
+				case ADVICE_EXPRESSIONS_TAG:
+					node = new AdviceExpressions(readNodes(AdviceExpression.class));
+					break;
+				case ADVICE_EXPRESSION_TAG:
+					node = new AdviceExpression(readNodes(AttributeAssignmentExpression.class), readString(), readEffect());
+					break;
+				case ATTRIBUTE_ASSIGNMENT_EXPRESSION_TAG:
+					node = new AttributeAssignmentExpression(readExpression(), readString(), readString(), readString());
+					break;
+				case COMBINER_PARAMETERS_TAG:
+					node = new CombinerParametersType(readNodes(CombinerParameter.class));
+					break;
+				case RULE_COMBINER_PARAMETERS_TAG:
+					node = new RuleCombinerParameters(readNodes(CombinerParameter.class), readString());
+					break;
+				case POLICY_COMBINER_PARAMETERS_TAG:
+					node = new PolicyCombinerParameters(readNodes(CombinerParameter.class), readString());
+					break;
+				case POLICY_SET_COMBINER_PARAMETERS_TAG:
+					node = new PolicySetCombinerParameters(readNodes(CombinerParameter.class), readString());
+					break;
+				case COMBINER_PARAMETER_TAG:
+					node = new CombinerParameter(readNode(AttributeValueType.class), readString());
+					break;
+				case ID_REFERENCE_TAG:
+					node = new IdReferenceType(readString(), readString(), readString(), readString());
+					break;
+				case JAXB_ELEMENT_TAG:
+					final QName name = readQName();
+					final Object value = readNode();
+					if (value == null)
+					{
+						throw newInvalidSnapshotException("undefined value of XML element " + name);
+					}
+
+					node = newJaxbElement(name, value);
+					break;
+				default:
+					throw newInvalidSnapshotException("unknown type tag: " + tag);
+			}
+
+			depth--;
+			return node;
+		}
+	}
+
+	/*
+	 * InputStream over a (memory-mapped) buffer
+	 */
+	private static final class ByteBufferInputStream extends InputStream
+	{
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(final ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read()
+		{
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int offset, final int length)
+		{
+			if (length == 0)
+			{
+				return 0;
+			}
+
+			if (!buffer.hasRemaining())
+			{
+				return -1;
+			}
+
+			final int readLength = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, readLength);
+			return readLength;
+		}
+
+		@Override
+		public int available()
+		{
+			return buffer.remaining();
+		}
+	}
+
+	private static MessageDigest newMessageDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+		}
+		catch (final NoSuchAlgorithmException e)
+		{
+			// every Java platform implementation is required to support SHA-256
+			throw new RuntimeException(CHECKSUM_ALGORITHM + " not supported by the Java platform", e);
+		}
+	}
+
+	private static byte[] readFully(final URL url) throws IOException
+	{
+		try (InputStream in = url.openStream())
+		{
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] chunk = new byte[8192];
+			int length;
+			while ((length = in.read(chunk)) != -1)
+			{
+				out.write(chunk, 0, length);
+			}
+
+			return out.toByteArray();
+		}
+	}
+
+	/*
+	 * Combines the checksums of the policy documents in a way that does not depend on their order (e.g. order of files listed from a directory)
+	 */
+	private static byte[] combineChecksums(final List<byte[]> policyDocumentChecksums)
+	{
+		final byte[][] sortedChecksums = policyDocumentChecksums.toArray(new byte[policyDocumentChecksums.size()][]);
+		Arrays.sort(sortedChecksums, CHECKSUM_COMPARATOR);
+		final MessageDigest digest = newMessageDigest();
+		for (final byte[] checksum : sortedChecksums)
+		{
+			digest.update(checksum);
+		}
+
+		return digest.digest();
+	}
+
+	/**
+	 * Computes the checksum of source policy documents, as stored in a snapshot created from them. The checksum does not depend on the order of the documents.
+	 *
+	 * @param policyURLs
+	 *            locations of the policy documents
+	 * @return checksum (SHA-256)
+	 * @throws IOException
+	 *             error reading a policy document
+	 */
+	public static byte[] computeChecksum(final Collection<URL> policyURLs) throws IOException
+	{
+		final List<byte[]> policyDocumentChecksums = new ArrayList<>(policyURLs.size());
+		for (final URL policyURL : policyURLs)
+		{
+			policyDocumentChecksums.add(newMessageDigest().digest(readFully(policyURL)));
+		}
+
+		return combineChecksums(policyDocumentChecksums);
+	}
+
+	/**
+	 * Creates a snapshot of policy documents
+	 *
+	 * @param policyURLs
+	 *            locations of the XACML Policy(Set) documents, as in {@link CoreRefPolicyProviderModule#getInstance(Collection, XACMLParserFactory, int, org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory, org.ow2.authzforce.core.pdp.api.combining.CombiningAlgRegistry)}
+	 * @param xacmlParserFactory
+	 *            XACML parser factory, with the same namespace-awareness as the PDP that will load the snapshot (XPath support)
+	 * @param output
+	 *            snapshot output (not closed by this method)
+	 * @throws IllegalArgumentException
+	 *             if {@code policyURLs} is null/empty, or one of them is not a valid XACML Policy(Set), or contains content not supported in snapshots (XML elements in mixed content)
+	 * @throws IOException
+	 *             error reading a policy document or writing the snapshot
+	 */
+	public static void write(final Collection<URL> policyURLs, final XACMLParserFactory xacmlParserFactory, final OutputStream output) throws IllegalArgumentException, IOException
+	{
+		if (policyURLs == null || policyURLs.isEmpty())
+		{
+			throw new IllegalArgumentException("Undefined policy URL(s)");
+		}
+
+		if (xacmlParserFactory == null || output == null)
+		{
+			throw new IllegalArgumentException("Undefined XACML parser factory or output");
+		}
+
+		final NamespaceFilteringParser parser;
+		try
+		{
+			parser = xacmlParserFactory.getInstance();
+		}
+		catch (final JAXBException e)
+		{
+			throw new IllegalArgumentException("Failed to create JAXB unmarshaller for XML Policy(Set)", e);
+		}
+
+		final List<byte[]> policyDocumentChecksums = new ArrayList<>(policyURLs.size());
+		final List<Object> jaxbPolicies = new ArrayList<>(policyURLs.size());
+		final List<Map<String, String>> nsPrefixUriMaps = new ArrayList<>(policyURLs.size());
+		for (final URL policyURL : policyURLs)
+		{
+			if (policyURL == null)
+			{
+				throw new IllegalArgumentException("Undefined policy URL");
+			}
+
+			policyDocumentChecksums.add(newMessageDigest().digest(readFully(policyURL)));
+			final Object jaxbPolicyOrPolicySetObj;
+			try
+			{
+				jaxbPolicyOrPolicySetObj = parser.parse(policyURL);
+			}
+			catch (final JAXBException e)
+			{
+				throw new IllegalArgumentException("Failed to unmarshall Policy(Set) XML document from policy location: " + policyURL, e);
+			}
+
+			if (!(jaxbPolicyOrPolicySetObj instanceof Policy) && !(jaxbPolicyOrPolicySetObj instanceof PolicySet))
+			{
+				throw new IllegalArgumentException("Unexpected element found as root of the policy document: " + jaxbPolicyOrPolicySetObj.getClass().getSimpleName());
+			}
+
+			jaxbPolicies.add(jaxbPolicyOrPolicySetObj);
+			final Map<String, String> nsPrefixUriMap = parser.getNamespacePrefixUriMap();
+			nsPrefixUriMaps.add(nsPrefixUriMap == null ? new HashMap<String, String>() : new HashMap<>(nsPrefixUriMap));
+		}
+
+		/*
+		 * Encode everything before writing, so that nothing is written if a policy is not supported
+		 */
+		final ByteArrayOutputStream encodedPolicies = new ByteArrayOutputStream();
+		final DataOutputStream policiesOutput = new DataOutputStream(encodedPolicies);
+		for (int i = 0; i < jaxbPolicies.size(); i++)
+		{
+			writeNode(policiesOutput, jaxbPolicies.get(i));
+			final Map<String, String> nsPrefixUriMap = nsPrefixUriMaps.get(i);
+			policiesOutput.writeInt(nsPrefixUriMap.size());
+			for (final Entry<String, String> nsPrefixUri : nsPrefixUriMap.entrySet())
+			{
+				writeString(policiesOutput, nsPrefixUri.getKey());
+				writeString(policiesOutput, nsPrefixUri.getValue());
+			}
+		}
+
+		final DataOutputStream dataOutput = new DataOutputStream(output);
+		dataOutput.writeInt(MAGIC_NUMBER);
+		dataOutput.writeInt(FORMAT_VERSION);
+		dataOutput.write(combineChecksums(policyDocumentChecksums));
+		dataOutput.writeInt(jaxbPolicies.size());
+		encodedPolicies.writeTo(dataOutput);
+		dataOutput.flush();
+	}
+
+	/**
+	 * Creates a snapshot file of policy documents (see {@link #write(Collection, XACMLParserFactory, OutputStream)})
+	 *
+	 * @param policyURLs
+	 *            locations of the XACML Policy(Set) documents
+	 * @param xacmlParserFactory
+	 *            XACML parser factory
+	 * @param snapshotFile
+	 *            snapshot file (created or replaced)
+	 * @throws IllegalArgumentException
+	 *             if {@code policyURLs} is null/empty, or one of them is not a valid XACML Policy(Set), or contains content not supported in snapshots
+	 * @throws IOException
+	 *             error reading a policy document or writing the snapshot
+	 */
+	public static void write(final Collection<URL> policyURLs, final XACMLParserFactory xacmlParserFactory, final Path snapshotFile) throws IllegalArgumentException, IOException
+	{
+		try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(snapshotFile)))
+		{
+			write(policyURLs, xacmlParserFactory, output);
+		}
+	}
+
+	private static PolicySnapshot read(final InputStream input, final Object source) throws IllegalArgumentException, IOException
+	{
+		final DataInputStream dataInput = new DataInputStream(input);
+		if (dataInput.readInt() != MAGIC_NUMBER)
+		{
+			throw new IllegalArgumentException("Not a policy snapshot: " + source);
+		}
+
+		final int formatVersion = dataInput.readInt();
+		if (formatVersion != FORMAT_VERSION)
+		{
+			throw new IllegalArgumentException("Unsupported policy snapshot format version: " + formatVersion + " (expected: " + FORMAT_VERSION + "): " + source);
+		}
+
+		final byte[] sourceChecksum = new byte[CHECKSUM_LENGTH];
+		dataInput.readFully(sourceChecksum);
+		final int policyCount = dataInput.readInt();
+		if (policyCount < 0)
+		{
+			throw new IllegalArgumentException("Invalid number of policies (" + policyCount + ") in policy snapshot: " + source);
+		}
+
+		final List<PolicyWithNamespaces<Policy>> policies = new ArrayList<>();
+		final List<PolicyWithNamespaces<PolicySet>> policySets = new ArrayList<>();
+		final SnapshotReader snapshotReader = new SnapshotReader(dataInput, source);
+		try
+		{
+			for (int i = 0; i < policyCount; i++)
+			{
+				final Object jaxbPolicyOrPolicySetObj = snapshotReader.readNode();
+				final Map<String, String> nsPrefixUriMap = HashCollections.newImmutableMap(snapshotReader.readStringMap());
+				if (jaxbPolicyOrPolicySetObj instanceof Policy)
+				{
+					policies.add(new PolicyWithNamespaces<>((Policy) jaxbPolicyOrPolicySetObj, nsPrefixUriMap));
+				}
+				else if (jaxbPolicyOrPolicySetObj instanceof PolicySet)
+				{
+					policySets.add(new PolicyWithNamespaces<>((PolicySet) jaxbPolicyOrPolicySetObj, nsPrefixUriMap));
+				}
+				else
+				{
+					throw new IllegalArgumentException("Invalid policy snapshot (Policy or PolicySet expected at #" + i + "): " + source);
+				}
+			}
+		}
+		catch (final EOFException e)
+		{
+			throw new IllegalArgumentException("Invalid policy snapshot (truncated): " + source, e);
+		}
+
+		return new PolicySnapshot(sourceChecksum, policies, policySets);
+	}
+
+	/**
+	 * Loads a policy snapshot. The snapshot is memory-mapped if it is a file, else read sequentially.
+	 *
+	 * @param snapshotURL
+	 *            snapshot location
+	 * @return snapshot
+	 * @throws IllegalArgumentException
+	 *             if the snapshot is not valid or uses an unsupported format version
+	 * @throws IOException
+	 *             error reading the snapshot
+	 */
+	public static PolicySnapshot read(final URL snapshotURL) throws IllegalArgumentException, IOException
+	{
+		if (snapshotURL == null)
+		{
+			throw new IllegalArgumentException("Undefined policy snapshot location");
+		}
+
+		if ("file".equals(snapshotURL.getProtocol()))
+		{
+			final Path snapshotPath;
+			try
+			{
+				snapshotPath = Paths.get(snapshotURL.toURI());
+			}
+			catch (final URISyntaxException e)
+			{
+				throw new IllegalArgumentException("Invalid policy snapshot location: " + snapshotURL, e);
+			}
+
+			try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ))
+			{
+				return read(new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())), snapshotURL);
+			}
+		}
+
+		try (InputStream input = new BufferedInputStream(snapshotURL.openStream(), 65536))
+		{
+			return read(input, snapshotURL);
+		}
+	}
+
+	private final byte[] sourceChecksum;
+	private final List<PolicyWithNamespaces<Policy>> policies;
+	private final List<PolicyWithNamespaces<PolicySet>> policySets;
+
+	private PolicySnapshot(final byte[] sourceChecksum, final List<PolicyWithNamespaces<Policy>> policies, final List<PolicyWithNamespaces<PolicySet>> policySets)
+	{
+		this.sourceChecksum = sourceChecksum;
+		this.policies = Collections.unmodifiableList(policies);
+		this.policySets = Collections.unmodifiableList(policySets);
+	}
+
+	/**
+	 * Checks that this snapshot was created from given policy documents, in their current state
+	 *
+	 * @param policyURLs
+	 *            locations of the source policy documents (in any order)
+	 * @throws IllegalArgumentException
+	 *             if the checksum of the policy documents differs from the one in the snapshot, i.e. the snapshot is out of date or created from other policies
+	 * @throws IOException
+	 *             error reading a policy document
+	 */
+	public void checkSource(final Collection<URL> policyURLs) throws IllegalArgumentException, IOException
+	{
+		if (!Arrays.equals(sourceChecksum, computeChecksum(policyURLs)))
+		{
+			throw new IllegalArgumentException("Policy snapshot out of date or created from other policies than " + policyURLs + " (checksum mismatch)");
+		}
+	}
+
+	/**
+	 * Get the Policies (with namespace prefix-URI mappings) in the snapshot
+	 *
+	 * @return Policies
+	 */
+	public List<PolicyWithNamespaces<Policy>> getPolicies()
+	{
+		return policies;
+	}
+
+	/**
+	 * Get the PolicySets (with namespace prefix-URI mappings) in the snapshot
+	 *
+	 * @return PolicySets
+	 */
+	public List<PolicyWithNamespaces<PolicySet>> getPolicySets()
+	{
+		return policySets;
+	}
+}
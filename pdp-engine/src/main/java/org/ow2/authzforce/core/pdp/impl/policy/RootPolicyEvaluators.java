@@ -21,7 +21,10 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
 import org.ow2.authzforce.core.pdp.api.DecisionResult;
 import org.ow2.authzforce.core.pdp.api.EnvironmentProperties;
 import org.ow2.authzforce.core.pdp.api.EvaluationContext;
@@ -41,6 +44,7 @@ import org.ow2.authzforce.core.pdp.api.value.DatatypeFactoryRegistry;
 import org.ow2.authzforce.core.pdp.impl.PdpExtensionLoader;
 import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
 import org.ow2.authzforce.core.pdp.impl.func.FunctionRegistry;
+import org.ow2.authzforce.core.xmlns.pdp.MatchEvaluationOrder;
 import org.ow2.authzforce.xmlns.pdp.ext.AbstractAttributeProvider;
 import org.ow2.authzforce.xmlns.pdp.ext.AbstractPolicyProvider;
 import org.slf4j.Logger;
@@ -67,12 +71,25 @@ public final class RootPolicyEvaluators
 
 		private final RootPolicyProviderModule rootPolicyProviderMod;
 
-		private transient final ExpressionFactory expressionFactory;
+		private transient final DepthLimitingExpressionFactory expressionFactory;
 
 		private transient final boolean isRootPolicyProviderStatic;
 
 		private transient volatile StaticView staticView = null;
 
+		/*
+		 * Parameters kept for creating new versions of the root policy in reloadable mode (see toReloadable())
+		 */
+		private transient final boolean enableXPath;
+		private transient final CombiningAlgRegistry combiningAlgRegistry;
+		private transient final AbstractPolicyProvider jaxbRootPolicyProviderConf;
+		private transient final AbstractPolicyProvider jaxbRefPolicyProviderConf;
+		private transient final RefPolicyProviderModule.Factory<AbstractPolicyProvider> refPolicyProviderModFactory;
+		private transient final int maxPolicySetRefDepth;
+		private transient final EnvironmentProperties environmentProperties;
+
+		private transient volatile Reloadable reloadableView = null;
+
 		/**
 		 * Creates a root policy Provider. If you want static resolution, i.e. use the same constant root policy (resolved at initialization time) for all evaluations, use the static root policy
 		 * Provider provided by {@link #toStatic()} after calling this constructor; then {@link #close()} this instance.
@@ -104,6 +121,13 @@ public final class RootPolicyEvaluators
 		 *            all AttributeDesignators have an Issuer (best practice). Reminder: the XACML 3.0 specification for AttributeDesignator evaluation (5.29) says: "If the Issuer is not present in
 		 *            the attribute designator, then the matching of the attribute to the named attribute SHALL be governed by AttributeId and DataType attributes alone." if one of the mandatory
 		 *            arguments is null
+		 * @param matchEvaluationOrder
+		 *            order of evaluation of the Matches of an AllOf, the AllOfs of an AnyOf and the AnyOfs of a Target; null means DOCUMENT (see
+		 *            {@link DepthLimitingExpressionFactory#getMatchEvaluationOrder()})
+		 * @param indexRuleTargets
+		 *            true iff the Rule Targets of the Policies must be indexed (see {@link DepthLimitingExpressionFactory#isRuleTargetIndexingEnabled()})
+		 * @param compileConditions
+		 *            true iff the Rule Conditions must be compiled (see {@link DepthLimitingExpressionFactory#isConditionCompilationEnabled()})
 		 * @param environmentProperties
 		 *            PDP configuration environment properties
 		 * @throws IllegalArgumentException
@@ -115,8 +139,8 @@ public final class RootPolicyEvaluators
 		 */
 		public Base(final DatatypeFactoryRegistry attributeFactory, final FunctionRegistry functionRegistry, final List<AbstractAttributeProvider> jaxbAttributeProviderConfs,
 				final int maxVariableReferenceDepth, final boolean enableXPath, final CombiningAlgRegistry combiningAlgRegistry, final AbstractPolicyProvider jaxbRootPolicyProviderConf,
-				final AbstractPolicyProvider jaxbRefPolicyProviderConf, final int maxPolicySetRefDepth, final boolean strictAttributeIssuerMatch, final EnvironmentProperties environmentProperties)
-				throws IllegalArgumentException, IOException
+				final AbstractPolicyProvider jaxbRefPolicyProviderConf, final int maxPolicySetRefDepth, final boolean strictAttributeIssuerMatch, final MatchEvaluationOrder matchEvaluationOrder,
+				final boolean indexRuleTargets, final boolean compileConditions, final EnvironmentProperties environmentProperties) throws IllegalArgumentException, IOException
 		{
 			if (jaxbRootPolicyProviderConf == null || combiningAlgRegistry == null)
 			{
@@ -125,7 +149,7 @@ public final class RootPolicyEvaluators
 
 			// Initialize ExpressionFactory
 			this.expressionFactory = new DepthLimitingExpressionFactory(attributeFactory, functionRegistry, jaxbAttributeProviderConfs, maxVariableReferenceDepth, enableXPath,
-					strictAttributeIssuerMatch, environmentProperties);
+					strictAttributeIssuerMatch, matchEvaluationOrder, indexRuleTargets, compileConditions, environmentProperties);
 
 			final RefPolicyProviderModule.Factory<AbstractPolicyProvider> refPolicyProviderModFactory = jaxbRefPolicyProviderConf == null ? null : PdpExtensionLoader
 					.getRefPolicyProviderModuleFactory(jaxbRefPolicyProviderConf);
@@ -133,6 +157,13 @@ public final class RootPolicyEvaluators
 					refPolicyProviderModFactory, maxPolicySetRefDepth, environmentProperties);
 			isRootPolicyProviderStatic = rootPolicyProviderMod instanceof StaticRootPolicyProviderModule;
 
+			this.enableXPath = enableXPath;
+			this.combiningAlgRegistry = combiningAlgRegistry;
+			this.jaxbRootPolicyProviderConf = jaxbRootPolicyProviderConf;
+			this.jaxbRefPolicyProviderConf = jaxbRefPolicyProviderConf;
+			this.refPolicyProviderModFactory = refPolicyProviderModFactory;
+			this.maxPolicySetRefDepth = maxPolicySetRefDepth;
+			this.environmentProperties = environmentProperties;
 		}
 
 		@Override
@@ -199,6 +230,253 @@ public final class RootPolicyEvaluators
 			return staticView;
 		}
 
+		/**
+		 * Gets the reloadable version of this policy Provider, i.e. a static policy Provider (see {@link #toStatic()}) of which the root policy may be replaced later with
+		 * {@link Reloadable#reload(AbstractPolicyProvider)}, reusing the same {@link ExpressionFactory} (and therefore the same Attribute Providers) as this Provider.
+		 * 
+		 * @return reloadable view of this policy Provider; or null if none could be created because the Provider depends on the evaluation context to find the root policy (no static resolution is
+		 *         possible). If not null, this Provider's sub-module responsible for finding the policy in {@link #findAndEvaluate(EvaluationContext)} is closed (calling
+		 *         {@link RootPolicyProviderModule#close()} and therefore not useable anymore. The resulting reloadable view must be used instead.
+		 * @throws IOException
+		 *             error closing the Provider's sub-module responsible for finding the policy in {@link #findAndEvaluate(EvaluationContext)}
+		 */
+		public Reloadable toReloadable() throws IOException
+		{
+			if (reloadableView == null && isRootPolicyProviderStatic)
+			{
+				final StaticView initialView = staticView == null ? new StaticView((StaticRootPolicyProviderModule) rootPolicyProviderMod, this.expressionFactory) : staticView;
+				reloadableView = new Reloadable(initialView, this.expressionFactory, enableXPath, combiningAlgRegistry, jaxbRootPolicyProviderConf, jaxbRefPolicyProviderConf,
+						refPolicyProviderModFactory, maxPolicySetRefDepth, environmentProperties);
+			}
+
+			return reloadableView;
+		}
+
+		/**
+		 * Get the attributes that may be used in evaluating the policies loaded by this Provider so far (see {@link DepthLimitingExpressionFactory#getReferencedAttributes()}). This is the complete
+		 * set of attributes that may influence the decision only if all policies are statically resolved (see {@link #getStaticApplicablePolicies()}), since other policies may be loaded later.
+		 * 
+		 * @return attributes referenced by AttributeDesignators (or ContextSelectorIds) in the loaded policies, or required by Attribute Providers to resolve them; null if any Attribute Provider
+		 *         has unknown dependencies (any attribute may be used)
+		 */
+		public Set<AttributeFQN> getReferencedAttributes()
+		{
+			return this.expressionFactory.getReferencedAttributes();
+		}
+
+		/**
+		 * Gets a view of a root policy evaluator - this Provider or one of its static/reloadable views - that prefetches the attributes referenced by AttributeDesignators in the loaded policies from
+		 * the asynchronous Attribute Provider modules (see {@link DepthLimitingExpressionFactory#prefetchAttributes(EvaluationContext)}) before each evaluation
+		 * 
+		 * @param evaluator
+		 *            this Provider, or the result of {@link #toStatic()} or {@link #toReloadable()}
+		 * @return prefetching view of {@code evaluator}; or {@code evaluator} itself if there is no asynchronous Attribute Provider module (nothing to prefetch). The view's {@link #close()} closes
+		 *         {@code evaluator}.
+		 */
+		public RootPolicyEvaluator toAttributePrefetching(final RootPolicyEvaluator evaluator)
+		{
+			if (!this.expressionFactory.isAttributePrefetchSupported())
+			{
+				return evaluator;
+			}
+
+			return new AttributePrefetchingView(evaluator, this.expressionFactory);
+		}
+
+	}
+
+	/**
+	 * 
+	 * View of a root policy evaluator that prefetches the policies' attributes from asynchronous Attribute Provider modules before each evaluation
+	 *
+	 */
+	static final class AttributePrefetchingView implements RootPolicyEvaluator
+	{
+		private final RootPolicyEvaluator evaluator;
+		private final DepthLimitingExpressionFactory expressionFactory;
+
+		private AttributePrefetchingView(final RootPolicyEvaluator evaluator, final DepthLimitingExpressionFactory expressionFactory)
+		{
+			assert evaluator != null && expressionFactory != null;
+			this.evaluator = evaluator;
+			this.expressionFactory = expressionFactory;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			this.evaluator.close();
+		}
+
+		@Override
+		public PdpDecisionResult findAndEvaluate(final EvaluationContext context)
+		{
+			expressionFactory.prefetchAttributes(context);
+			return evaluator.findAndEvaluate(context);
+		}
+
+		@Override
+		public StaticApplicablePolicyView getStaticApplicablePolicies()
+		{
+			return evaluator.getStaticApplicablePolicies();
+		}
+	}
+
+	/**
+	 * 
+	 * Reloadable static view of policy Provider. The root policy is resolved at initialization time like {@link StaticView}, but may be replaced by a new one later, e.g. after a policy update,
+	 * without creating a new PDP engine. The new root policy (and policies referenced from it) is parsed and initialized on the caller thread of {@link #reload(AbstractPolicyProvider)}, then published
+	 * atomically. Evaluations in progress at that time finish with the previous version; later evaluations use the new one. No lock is taken on the evaluation path.
+	 * <p>
+	 * The {@link ExpressionFactory} - and therefore the Attribute Providers - are shared by all versions and closed only when this Provider is closed.
+	 *
+	 */
+	public static final class Reloadable implements RootPolicyEvaluator
+	{
+		private static final Logger LOGGER = LoggerFactory.getLogger(Reloadable.class);
+
+		private static final IllegalArgumentException NULL_ROOT_POLICY_PROVIDER_CONF_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined root policy Provider's XML/JAXB configuration");
+
+		/*
+		 * Immutable (version number, root policy, attributes referenced by root policy and policies referenced from it) tuple published atomically
+		 */
+		private static final class Version
+		{
+			private final long number;
+			private final AbstractPolicyProvider jaxbRootPolicyProviderConf;
+			private final StaticView view;
+			private final Set<AttributeFQN> referencedAttributes;
+
+			private Version(final long number, final AbstractPolicyProvider jaxbRootPolicyProviderConf, final StaticView view, final Set<AttributeFQN> referencedAttributes)
+			{
+				this.number = number;
+				this.jaxbRootPolicyProviderConf = jaxbRootPolicyProviderConf;
+				this.view = view;
+				this.referencedAttributes = referencedAttributes;
+			}
+		}
+
+		private final AtomicReference<Version> currentVersion;
+		private final DepthLimitingExpressionFactory expressionFactory;
+		private final boolean enableXPath;
+		private final CombiningAlgRegistry combiningAlgRegistry;
+		private final AbstractPolicyProvider jaxbRefPolicyProviderConf;
+		private final RefPolicyProviderModule.Factory<AbstractPolicyProvider> refPolicyProviderModFactory;
+		private final int maxPolicySetRefDepth;
+		private final EnvironmentProperties environmentProperties;
+
+		private Reloadable(final StaticView initialView, final DepthLimitingExpressionFactory expressionFactory, final boolean enableXPath, final CombiningAlgRegistry combiningAlgRegistry,
+				final AbstractPolicyProvider jaxbRootPolicyProviderConf, final AbstractPolicyProvider jaxbRefPolicyProviderConf,
+				final RefPolicyProviderModule.Factory<AbstractPolicyProvider> refPolicyProviderModFactory, final int maxPolicySetRefDepth, final EnvironmentProperties environmentProperties)
+		{
+			assert initialView != null && expressionFactory != null && combiningAlgRegistry != null && jaxbRootPolicyProviderConf != null;
+			this.currentVersion = new AtomicReference<>(new Version(0, jaxbRootPolicyProviderConf, initialView, expressionFactory.getReferencedAttributes()));
+			this.expressionFactory = expressionFactory;
+			this.enableXPath = enableXPath;
+			this.combiningAlgRegistry = combiningAlgRegistry;
+			this.jaxbRefPolicyProviderConf = jaxbRefPolicyProviderConf;
+			this.refPolicyProviderModFactory = refPolicyProviderModFactory;
+			this.maxPolicySetRefDepth = maxPolicySetRefDepth;
+			this.environmentProperties = environmentProperties;
+		}
+
+		/**
+		 * Loads a new root policy - and policies referenced from it - using the given root policy Provider configuration, then makes it the root policy used for all new evaluations. Concurrent
+		 * calls to this method are serialized, but evaluations are never blocked. If loading fails, the current root policy remains in use.
+		 * 
+		 * @param jaxbRootPolicyProviderConf
+		 *            (mandatory) new root policy Provider's XML/JAXB configuration. The Provider must support static resolution of the root policy.
+		 * @return version number of the new root policy, incremented by one on each successful reload (the initial root policy has version 0)
+		 * @throws IllegalArgumentException
+		 *             if {@code jaxbRootPolicyProviderConf} is null or invalid, or the resulting Provider does not support static resolution of the root policy
+		 * @throws IOException
+		 *             error closing the root policy Provider module created from {@code jaxbRootPolicyProviderConf}
+		 */
+		public synchronized long reload(final AbstractPolicyProvider jaxbRootPolicyProviderConf) throws IllegalArgumentException, IOException
+		{
+			if (jaxbRootPolicyProviderConf == null)
+			{
+				throw NULL_ROOT_POLICY_PROVIDER_CONF_ARGUMENT_EXCEPTION;
+			}
+
+			// attributes referenced by the previous version(s) only must not be reported as used by the new one
+			final long policyLoadGeneration = this.expressionFactory.newPolicyLoadGeneration();
+			final RootPolicyProviderModule rootPolicyProviderMod = PdpExtensionLoader.getRootPolicyProviderModule(jaxbRootPolicyProviderConf, enableXPath, this.expressionFactory,
+					combiningAlgRegistry, jaxbRefPolicyProviderConf, refPolicyProviderModFactory, maxPolicySetRefDepth, environmentProperties);
+			if (!(rootPolicyProviderMod instanceof StaticRootPolicyProviderModule))
+			{
+				rootPolicyProviderMod.close();
+				throw new IllegalArgumentException("Root policy Provider module " + rootPolicyProviderMod + " does not support static resolution of the root policy, required for root policy reload");
+			}
+
+			final StaticView newView = new StaticView((StaticRootPolicyProviderModule) rootPolicyProviderMod, this.expressionFactory);
+			/*
+			 * Only one writer at a time (synchronized method), so get() then set() is safe here. The previous view is not closed since it does not own anything but the shared expression factory;
+			 * evaluations in progress keep a reference to its policy tree until they complete, then it is garbage-collected.
+			 */
+			final Version newVersion = new Version(currentVersion.get().number + 1, jaxbRootPolicyProviderConf, newView, this.expressionFactory.getReferencedAttributes(policyLoadGeneration));
+			currentVersion.set(newVersion);
+			LOGGER.info("Root policy reloaded: {} (version {})", newView.getStaticApplicablePolicies().rootPolicyId(), newVersion.number);
+			return newVersion.number;
+		}
+
+		/**
+		 * Reloads the root policy with the same root policy Provider configuration as the current one, e.g. to take into account changes in the policy files it refers to.
+		 * 
+		 * @return version number of the new root policy
+		 * @throws IllegalArgumentException
+		 *             if the (updated) policies are invalid
+		 * @throws IOException
+		 *             error closing the root policy Provider module
+		 * @see #reload(AbstractPolicyProvider)
+		 */
+		public synchronized long reload() throws IllegalArgumentException, IOException
+		{
+			return reload(currentVersion.get().jaxbRootPolicyProviderConf);
+		}
+
+		/**
+		 * Get the version number of the root policy currently in use for new evaluations
+		 * 
+		 * @return current version number (0 for the initial root policy)
+		 */
+		public long getVersion()
+		{
+			return currentVersion.get().number;
+		}
+
+		/**
+		 * Get the attributes that may be used in evaluating the root policy currently in use for new evaluations - and policies referenced from it - (see
+		 * {@link DepthLimitingExpressionFactory#getReferencedAttributes(long)}), recomputed on each successful reload
+		 * 
+		 * @return attributes referenced by AttributeDesignators (or ContextSelectorIds) in the current root policy and policies referenced from it, or required by Attribute Providers to resolve
+		 *         them; null if any Attribute Provider has unknown dependencies (any attribute may be used)
+		 */
+		public Set<AttributeFQN> getReferencedAttributes()
+		{
+			return currentVersion.get().referencedAttributes;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			this.expressionFactory.close();
+		}
+
+		@Override
+		public PdpDecisionResult findAndEvaluate(final EvaluationContext context)
+		{
+			/*
+			 * Single volatile read: the whole evaluation uses the same version even if a reload occurs meanwhile
+			 */
+			return currentVersion.get().view.findAndEvaluate(context);
+		}
+
+		@Override
+		public StaticApplicablePolicyView getStaticApplicablePolicies()
+		{
+			return currentVersion.get().view.getStaticApplicablePolicies();
+		}
 	}
 
 	/**
@@ -27,9 +27,13 @@ import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
 import org.ow2.authzforce.core.pdp.api.expression.Expression;
 import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.func.FunctionCall;
 import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
 import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
 import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
+import org.ow2.authzforce.core.pdp.impl.expression.ApplyExpressions;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.func.CompilableBooleanFunctionCall;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -97,6 +101,32 @@ public final class ConditionEvaluators
 
 	}
 
+	/**
+	 * Compiles a boolean expression: the calls to the logical functions 'and', 'or' and 'not' (nested in any depth) are replaced with evaluators of primitive booleans, and the other expressions
+	 * - including the calls to equality and comparison functions - are evaluated as usual
+	 */
+	private static BooleanEvaluator compile(final Expression<BooleanValue> boolExpression)
+	{
+		final FunctionCall<?> functionCall = ApplyExpressions.getFunctionCall(boolExpression);
+		if (functionCall instanceof CompilableBooleanFunctionCall)
+		{
+			final BooleanEvaluator compiledCall = ((CompilableBooleanFunctionCall) functionCall).compile(ConditionEvaluators::compile);
+			if (compiledCall != null)
+			{
+				return compiledCall;
+			}
+		}
+
+		final Optional<BooleanValue> constant = boolExpression.getValue();
+		if (constant.isPresent())
+		{
+			final boolean constantValue = constant.get().getUnderlyingValue().booleanValue();
+			return context -> constantValue;
+		}
+
+		return new BooleanExpressionEvaluator(boolExpression);
+	}
+
 	/**
 	 * Instantiates a Condition evaluator from XACML-Schema-derived <code>Condition</code>
 	 *
@@ -156,6 +186,11 @@ public final class ConditionEvaluators
 
 		// constant == null
 		LOGGER.debug("Condition's Expression is not constant (evaluation without context failed)");
+		if (expressionFactory instanceof DepthLimitingExpressionFactory && ((DepthLimitingExpressionFactory) expressionFactory).isConditionCompilationEnabled())
+		{
+			return compile(evaluatableExpression);
+		}
+
 		return new BooleanExpressionEvaluator(evaluatableExpression);
 	}
 
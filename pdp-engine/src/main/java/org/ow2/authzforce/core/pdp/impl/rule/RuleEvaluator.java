@@ -357,6 +357,26 @@ public final class RuleEvaluator implements Decidable
 	 *             Invalid Target, Condition or Obligation/Advice expressions
 	 */
 	public RuleEvaluator(final Rule ruleElt, final XPathCompiler xPathCompiler, final ExpressionFactory expressionFactory) throws IllegalArgumentException
+	{
+		this(ruleElt, xPathCompiler, expressionFactory, null);
+	}
+
+	/**
+	 * Instantiates rule from XACML RuleType, with a filter evaluated before the Rule's Target, e.g. a lookup in an index of the Rule Targets of the enclosing Policy
+	 *
+	 * @param ruleElt
+	 *            Rule element definition
+	 * @param xPathCompiler
+	 *            XPath compiler corresponding to enclosing policy(set) default XPath version
+	 * @param expressionFactory
+	 *            Expression parser/factory
+	 * @param targetFilter
+	 *            evaluator that returns false only if the Rule's Target would evaluate to No-match in the context, in which case the Target is not evaluated (the Rule is NotApplicable); else the
+	 *            Target is evaluated as usual. Null if none.
+	 * @throws java.lang.IllegalArgumentException
+	 *             Invalid Target, Condition or Obligation/Advice expressions
+	 */
+	public RuleEvaluator(final Rule ruleElt, final XPathCompiler xPathCompiler, final ExpressionFactory expressionFactory, final BooleanEvaluator targetFilter) throws IllegalArgumentException
 	{
 		if (ruleElt == null)
 		{
@@ -368,7 +388,23 @@ public final class RuleEvaluator implements Decidable
 
 		this.toString = "Rule['" + ruleId + "']";
 
-		this.targetEvaluator = TargetEvaluators.getInstance(ruleElt.getTarget(), xPathCompiler, expressionFactory);
+		final BooleanEvaluator ruleTargetEvaluator = TargetEvaluators.getInstance(ruleElt.getTarget(), xPathCompiler, expressionFactory);
+		if (targetFilter == null || ruleTargetEvaluator == TargetEvaluators.MATCH_ALL_TARGET_EVALUATOR)
+		{
+			this.targetEvaluator = ruleTargetEvaluator;
+		}
+		else
+		{
+			this.targetEvaluator = new BooleanEvaluator()
+			{
+
+				@Override
+				public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+				{
+					return targetFilter.evaluate(context) && ruleTargetEvaluator.evaluate(context);
+				}
+			};
+		}
 
 		final Condition condElt = ruleElt.getCondition();
 
@@ -391,7 +427,7 @@ public final class RuleEvaluator implements Decidable
 			}
 		}
 
-		this.isAlwaysApplicable = this.targetEvaluator == TargetEvaluators.MATCH_ALL_TARGET_EVALUATOR && this.conditionEvaluator == ConditionEvaluators.TRUE_CONDITION;
+		this.isAlwaysApplicable = ruleTargetEvaluator == TargetEvaluators.MATCH_ALL_TARGET_EVALUATOR && this.conditionEvaluator == ConditionEvaluators.TRUE_CONDITION;
 
 		/*
 		 * Final decision result depends on rule's effect and Obligation/Advice elements
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+
+/**
+ * Test of the maximum nesting depth of {@link JsonStreamReader} (in the same package since the class is internal to the JSON request parser, and the depth limit is not reachable through the
+ * parser, which rejects nested arrays/objects where not expected before reaching it)
+ *
+ */
+public class JsonStreamReaderTest
+{
+	/*
+	 * Same as JsonStreamReader's (the document itself counts as one level)
+	 */
+	private static final int MAX_DEPTH = 64;
+
+	private static String newNestedArrays(final int nestingLevel)
+	{
+		final StringBuilder json = new StringBuilder();
+		for (int i = 0; i < nestingLevel; i++)
+		{
+			json.append('[');
+		}
+
+		for (int i = 0; i < nestingLevel; i++)
+		{
+			json.append(']');
+		}
+
+		return json.toString();
+	}
+
+	private static void skipDocument(final String json) throws IOException, IndeterminateEvaluationException
+	{
+		final JsonStreamReader reader = new JsonStreamReader(new StringReader(json));
+		reader.skipValue();
+		reader.endDocument();
+	}
+
+	@Test
+	public void testMaxDepth() throws IOException, IndeterminateEvaluationException
+	{
+		skipDocument(newNestedArrays(MAX_DEPTH - 1));
+		skipDocument("{\"a\": " + newNestedArrays(MAX_DEPTH - 2) + "}");
+	}
+
+	@Test
+	public void testMaxDepthExceeded() throws IOException
+	{
+		for (final String json : new String[] { newNestedArrays(MAX_DEPTH), "{\"a\": " + newNestedArrays(MAX_DEPTH - 1) + "}", newNestedArrays(100000) })
+		{
+			try
+			{
+				skipDocument(json);
+			}
+			catch (final IndeterminateEvaluationException e)
+			{
+				assertEquals("Invalid status code", StatusHelper.STATUS_SYNTAX_ERROR, e.getStatusCode());
+				assertTrue("Invalid error message: " + e.getMessage(), e.getMessage().contains("too many nested objects/arrays"));
+				continue;
+			}
+
+			throw new AssertionError("Too deeply nested JSON accepted");
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.xmlns.pdp.MatchEvaluationOrder;
+
+/**
+ * Test of {@link ShortCircuitEvaluationOrder}: order by estimated cost, and reordering from the statistics of the children in ADAPTIVE mode (in the same package since the class is internal to the
+ * Target evaluators)
+ *
+ */
+public class ShortCircuitEvaluationOrderTest
+{
+	/*
+	 * Same as ShortCircuitEvaluationOrder's
+	 */
+	private static final int REORDERING_PERIOD = 1024;
+
+	/*
+	 * Simulates evaluations of the parent element where each child is always or never decisive and takes a constant time
+	 */
+	private static void evaluate(final ShortCircuitEvaluationOrder order, final int parentEvaluationCount, final boolean[] decisiveChildren, final long[] childNanos)
+	{
+		for (int i = 0; i < parentEvaluationCount; i++)
+		{
+			final boolean timed = order.startEvaluation();
+			for (final int childIndex : order.get())
+			{
+				order.childEvaluated(childIndex, decisiveChildren[childIndex], timed ? childNanos[childIndex] : -1);
+				if (decisiveChildren[childIndex])
+				{
+					break;
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDocumentOrder()
+	{
+		final ShortCircuitEvaluationOrder order = new ShortCircuitEvaluationOrder(MatchEvaluationOrder.DOCUMENT, new int[] { 3, 1, 2 });
+		assertArrayEquals("Invalid order", new int[] { 0, 1, 2 }, order.get());
+		assertFalse("Evaluation timed although not adaptive", order.startEvaluation());
+	}
+
+	@Test
+	public void testCostOrder()
+	{
+		final ShortCircuitEvaluationOrder order = new ShortCircuitEvaluationOrder(MatchEvaluationOrder.COST, new int[] { 3, 1, 2, 1 });
+		// document order among children with the same cost
+		assertArrayEquals("Invalid order", new int[] { 1, 3, 2, 0 }, order.get());
+		// statistics ignored
+		evaluate(order, REORDERING_PERIOD, new boolean[] { true, false, false, false }, new long[] { 1, 1000, 1000, 1000 });
+		assertArrayEquals("COST order changed", new int[] { 1, 3, 2, 0 }, order.get());
+	}
+
+	@Test
+	public void testAdaptiveSingleChild()
+	{
+		final ShortCircuitEvaluationOrder order = new ShortCircuitEvaluationOrder(MatchEvaluationOrder.ADAPTIVE, new int[] { 5 });
+		assertFalse("Evaluation of single child timed", order.startEvaluation());
+		assertArrayEquals("Invalid order", new int[] { 0 }, order.get());
+	}
+
+	@Test
+	public void testAdaptiveReorder()
+	{
+		final ShortCircuitEvaluationOrder order = new ShortCircuitEvaluationOrder(MatchEvaluationOrder.ADAPTIVE, new int[] { 1, 1 });
+		assertArrayEquals("Invalid initial order", new int[] { 0, 1 }, order.get());
+
+		// the first child is cheap but never decisive, the second one costly but always decisive
+		final boolean[] decisiveChildren = { false, true };
+		final long[] childNanos = { 100, 1000 };
+		evaluate(order, REORDERING_PERIOD - 1, decisiveChildren, childNanos);
+		assertArrayEquals("Reordered before the reordering period", new int[] { 0, 1 }, order.get());
+		evaluate(order, 1, decisiveChildren, childNanos);
+		assertArrayEquals("Invalid order after the reordering period", new int[] { 1, 0 }, order.get());
+
+		// change of request pattern: the first child becomes always decisive, the second never (older statistics halved at each reordering)
+		evaluate(order, REORDERING_PERIOD, new boolean[] { true, false }, childNanos);
+		assertArrayEquals("Order not following the change of statistics", new int[] { 0, 1 }, order.get());
+	}
+
+	@Test
+	public void testAdaptiveReorderWithUnsampledChild()
+	{
+		final ShortCircuitEvaluationOrder order = new ShortCircuitEvaluationOrder(MatchEvaluationOrder.ADAPTIVE, new int[] { 1, 1, 2 });
+		/*
+		 * The third child is never reached (the second one is always decisive), therefore its time is estimated from its cost and the time per cost unit of the others (550ns per unit), and its
+		 * probability of being decisive is 1/2: 1100 / 0.5 = 2200, between the second child (about 100) and the first one (never decisive)
+		 */
+		evaluate(order, REORDERING_PERIOD, new boolean[] { false, true, false }, new long[] { 1000, 100, 0 });
+		assertArrayEquals("Invalid order", new int[] { 1, 2, 0 }, order.get());
+	}
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Target;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeSelectorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.api.value.XPathValue;
+import org.ow2.authzforce.core.pdp.impl.IndividualDecisionRequestContext;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.ow2.authzforce.core.pdp.impl.value.StandardDatatypeFactoryRegistry;
+
+/**
+ * Test of {@link PolicySetTargetIndex}: exclusion of the children by attribute value, missing or Indeterminate attribute, and lazy lookup of the AttributeDesignators (in the same package since the
+ * class is internal to the PolicySet/Policy evaluators)
+ *
+ */
+public class PolicySetTargetIndexTest
+{
+	private static final String SUBJECT_CATEGORY = "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject";
+
+	private static final String RESOURCE_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:resource";
+
+	private static final AttributeFQN SUBJECT_ID = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:1.0:subject:subject-id");
+
+	private static final AttributeFQN RESOURCE_ID = AttributeFQNs.newInstance(RESOURCE_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:1.0:resource:resource-id");
+
+	/*
+	 * Children 0 to SUBJECT_INDEXED_CHILD_COUNT - 1 are indexed on subject-id (optional attribute), the next one on resource-id (mandatory attribute), the last one has an empty Target (not indexed)
+	 */
+	private static final int SUBJECT_INDEXED_CHILD_COUNT = PolicySetTargetIndex.MIN_INDEXED_CHILD_COUNT;
+
+	private static final int RESOURCE_INDEXED_CHILD_POSITION = SUBJECT_INDEXED_CHILD_COUNT;
+
+	private static final int NOT_INDEXED_CHILD_POSITION = RESOURCE_INDEXED_CHILD_POSITION + 1;
+
+	/**
+	 * Records the attributes consumed from the evaluation context, i.e. the AttributeDesignators evaluated, in order
+	 */
+	private static final class AttributeConsumptionRecorder implements EvaluationContext.Listener
+	{
+		private final List<AttributeFQN> consumedAttributes = new ArrayList<>();
+
+		@Override
+		public <AV extends AttributeValue> void namedAttributeValueConsumed(final AttributeFQN attributeFQN, final AttributeBag<AV> value)
+		{
+			consumedAttributes.add(attributeFQN);
+		}
+
+		@Override
+		public <AV extends AttributeValue> void namedAttributeValueProduced(final AttributeFQN attributeFQN, final AttributeBag<AV> value)
+		{
+			// not recorded
+		}
+
+		@Override
+		public <AV extends AttributeValue> void attributeSelectorResultConsumed(final AttributeSelectorExpression<AV> attributeSelector, final Bag<AV> value)
+		{
+			// not recorded
+		}
+
+		@Override
+		public <AV extends AttributeValue> void attributeSelectorResultProduced(final AttributeSelectorExpression<AV> attributeSelector,
+				final Optional<AttributeBag<XPathValue>> contextSelectorValue, final Bag<AV> value)
+		{
+			// not recorded
+		}
+	}
+
+	private static final PolicySetTargetIndex INDEX;
+	static
+	{
+		try (DepthLimitingExpressionFactory expressionFactory = new DepthLimitingExpressionFactory(StandardDatatypeFactoryRegistry.getRegistry(false), StandardFunction.getRegistry(false), null, 0,
+				false, false, null))
+		{
+			final Unmarshaller unmarshaller = JAXBContext.newInstance(Target.class).createUnmarshaller();
+			final PolicySetTargetIndex.Builder indexBuilder = new PolicySetTargetIndex.Builder(null, expressionFactory);
+			for (int i = 0; i < SUBJECT_INDEXED_CHILD_COUNT; i++)
+			{
+				assertTrue("Child #" + i + " not indexed", indexBuilder.add(i, newTarget(unmarshaller, SUBJECT_CATEGORY, SUBJECT_ID.getId(), "user" + i, false)));
+			}
+
+			assertTrue("Child #" + RESOURCE_INDEXED_CHILD_POSITION + " not indexed",
+					indexBuilder.add(RESOURCE_INDEXED_CHILD_POSITION, newTarget(unmarshaller, RESOURCE_CATEGORY, RESOURCE_ID.getId(), "doc", true)));
+			assertFalse("Child with empty Target indexed", indexBuilder.add(NOT_INDEXED_CHILD_POSITION, new Target()));
+			INDEX = indexBuilder.build("PolicySet[test]");
+		}
+		catch (final JAXBException | IllegalArgumentException | IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Target newTarget(final Unmarshaller unmarshaller, final String category, final String attributeId, final String value, final boolean mustBePresent) throws JAXBException
+	{
+		return (Target) unmarshaller.unmarshal(new StringReader("<Target xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\"><AnyOf><AllOf>"
+				+ "<Match MatchId=\"urn:oasis:names:tc:xacml:1.0:function:string-equal\"><AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">" + value
+				+ "</AttributeValue><AttributeDesignator Category=\"" + category + "\" AttributeId=\"" + attributeId + "\" DataType=\"http://www.w3.org/2001/XMLSchema#string\" MustBePresent=\""
+				+ mustBePresent + "\" /></Match></AllOf></AnyOf></Target>"));
+	}
+
+	private static EvaluationContext newContext(final String subjectId, final String resourceId)
+	{
+		final Map<AttributeFQN, AttributeBag<?>> namedAttributes = new HashMap<>();
+		if (subjectId != null)
+		{
+			namedAttributes.put(SUBJECT_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue(subjectId)));
+		}
+
+		if (resourceId != null)
+		{
+			namedAttributes.put(RESOURCE_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue(resourceId)));
+		}
+
+		return new IndividualDecisionRequestContext(namedAttributes, null, false);
+	}
+
+	@Test
+	public void testIndexed()
+	{
+		assertNotNull("Index not built", INDEX);
+		for (int i = 0; i <= RESOURCE_INDEXED_CHILD_POSITION; i++)
+		{
+			assertTrue("Child #" + i + " not indexed", INDEX.isIndexed(i));
+		}
+
+		assertFalse("Child with empty Target indexed", INDEX.isIndexed(NOT_INDEXED_CHILD_POSITION));
+	}
+
+	@Test
+	public void testMatchingValue()
+	{
+		final EvaluationContext context = newContext("user3", "doc");
+		for (int i = 0; i < SUBJECT_INDEXED_CHILD_COUNT; i++)
+		{
+			assertEquals("Invalid exclusion of child #" + i, i != 3, INDEX.isExcluded(context, i));
+		}
+
+		assertFalse("Matching child excluded", INDEX.isExcluded(context, RESOURCE_INDEXED_CHILD_POSITION));
+		assertFalse("Child not indexed excluded", INDEX.isExcluded(context, NOT_INDEXED_CHILD_POSITION));
+	}
+
+	@Test
+	public void testNonMatchingValue()
+	{
+		final EvaluationContext context = newContext("nobody", "other-doc");
+		for (int i = 0; i <= RESOURCE_INDEXED_CHILD_POSITION; i++)
+		{
+			assertTrue("Non-matching child #" + i + " not excluded", INDEX.isExcluded(context, i));
+		}
+
+		assertFalse("Child not indexed excluded", INDEX.isExcluded(context, NOT_INDEXED_CHILD_POSITION));
+	}
+
+	@Test
+	public void testMissingAttribute()
+	{
+		/*
+		 * subject-id missing (MustBePresent=false): empty bag, therefore all the Targets indexed on it are No-match
+		 */
+		final EvaluationContext context = newContext(null, "doc");
+		for (int i = 0; i < SUBJECT_INDEXED_CHILD_COUNT; i++)
+		{
+			assertTrue("Child #" + i + " not excluded although the attribute is missing", INDEX.isExcluded(context, i));
+		}
+
+		assertFalse("Matching child excluded", INDEX.isExcluded(context, RESOURCE_INDEXED_CHILD_POSITION));
+	}
+
+	@Test
+	public void testIndeterminateAttribute()
+	{
+		/*
+		 * resource-id missing (MustBePresent=true): Indeterminate, therefore the Target indexed on it must be evaluated as usual (Indeterminate), i.e. not excluded
+		 */
+		final EvaluationContext context = newContext("user3", null);
+		assertFalse("Child excluded although the attribute is Indeterminate", INDEX.isExcluded(context, RESOURCE_INDEXED_CHILD_POSITION));
+		// the other designator is not affected
+		assertTrue("Non-matching child not excluded", INDEX.isExcluded(context, 0));
+		assertFalse("Matching child excluded", INDEX.isExcluded(context, 3));
+	}
+
+	@Test
+	public void testLazyLookup()
+	{
+		final EvaluationContext context = newContext("user3", "doc");
+		final AttributeConsumptionRecorder recorder = new AttributeConsumptionRecorder();
+		context.putListener(AttributeConsumptionRecorder.class, recorder);
+
+		assertFalse("Child not indexed excluded", INDEX.isExcluded(context, NOT_INDEXED_CHILD_POSITION));
+		assertEquals("Attribute looked up for a child not indexed", Collections.emptyList(), recorder.consumedAttributes);
+
+		assertTrue("Non-matching child not excluded", INDEX.isExcluded(context, 0));
+		assertFalse("Matching child excluded", INDEX.isExcluded(context, 3));
+		assertEquals("Attribute not looked up only once or other attribute looked up", Collections.singletonList(SUBJECT_ID), recorder.consumedAttributes);
+
+		assertFalse("Matching child excluded", INDEX.isExcluded(context, RESOURCE_INDEXED_CHILD_POSITION));
+		assertEquals("Invalid attribute lookups", Arrays.asList(SUBJECT_ID, RESOURCE_ID), recorder.consumedAttributes);
+	}
+}
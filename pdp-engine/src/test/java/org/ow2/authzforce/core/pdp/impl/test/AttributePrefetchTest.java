@@ -0,0 +1,182 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeDesignatorType;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.AttributeProviderModule;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.BagDatatype;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.BaseAsyncAttributeProviderModule;
+import org.ow2.authzforce.core.pdp.impl.IndividualDecisionRequestContext;
+import org.ow2.authzforce.core.pdp.impl.ModularAttributeProvider;
+
+/**
+ * Test of attribute prefetch from asynchronous Attribute Provider modules ({@link ModularAttributeProvider#prefetch(Map, EvaluationContext)})
+ *
+ */
+public class AttributePrefetchTest
+{
+	private static final String SUBJECT_CATEGORY = "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject";
+
+	private static final AttributeFQN SUBJECT_ROLE = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:2.0:subject:role");
+
+	private static final AttributeFQN SUBJECT_GROUP = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:example:subject:group");
+
+	private static final BagDatatype<StringValue> STRING_BAG_DATATYPE = StandardDatatypes.STRING_FACTORY.getBagDatatype();
+
+	/**
+	 * Module that completes the futures of the requested attributes only once all of them have been requested, i.e. only if they are requested concurrently; or fails all requests if
+	 * {@code failing}.
+	 */
+	private static final class DeferredAttributeProviderModule extends BaseAsyncAttributeProviderModule
+	{
+		private final Map<AttributeFQN, String> values;
+		private final boolean failing;
+		private final List<Runnable> pendingCompletions = new ArrayList<>();
+		private int requestCount = 0;
+
+		private DeferredAttributeProviderModule(final Map<AttributeFQN, String> values, final boolean failing)
+		{
+			super("deferred");
+			this.values = values;
+			this.failing = failing;
+		}
+
+		@Override
+		public Set<AttributeDesignatorType> getProvidedAttributes()
+		{
+			final Set<AttributeDesignatorType> providedAttributes = new HashSet<>();
+			for (final AttributeFQN attributeFQN : values.keySet())
+			{
+				providedAttributes.add(new AttributeDesignatorType(attributeFQN.getCategory(), attributeFQN.getId(), STRING_BAG_DATATYPE.getElementType().getId(), null, false));
+			}
+
+			return providedAttributes;
+		}
+
+		@Override
+		public <AV extends AttributeValue> CompletableFuture<AttributeBag<AV>> getAsync(final AttributeFQN attributeFQN, final BagDatatype<AV> returnDatatype, final EvaluationContext context)
+		{
+			requestCount++;
+			final CompletableFuture<AttributeBag<AV>> futureResult = new CompletableFuture<>();
+			if (failing)
+			{
+				futureResult.completeExceptionally(new IndeterminateEvaluationException("Attribute source unavailable", StatusHelper.STATUS_MISSING_ATTRIBUTE));
+				return futureResult;
+			}
+
+			final AttributeBag<StringValue> result = Bags.newAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), Collections.singleton(new StringValue(values.get(attributeFQN))));
+			pendingCompletions.add(() -> futureResult.complete(returnDatatype.castAttributeBag(result)));
+			if (pendingCompletions.size() == values.size())
+			{
+				for (final Runnable completion : pendingCompletions)
+				{
+					// may be any thread in real life
+					new Thread(completion).start();
+				}
+			}
+
+			return futureResult;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			// nothing to close
+		}
+	}
+
+	private static ModularAttributeProvider newAttributeProvider(final AttributeProviderModule module)
+	{
+		final Map<AttributeFQN, AttributeProviderModule> modulesByAttributeId = new HashMap<>();
+		for (final AttributeDesignatorType providedAttribute : module.getProvidedAttributes())
+		{
+			modulesByAttributeId.put(AttributeFQNs.newInstance(providedAttribute), module);
+		}
+
+		return ModularAttributeProvider.getInstance(modulesByAttributeId, null, true);
+	}
+
+	private static Map<AttributeFQN, BagDatatype<?>> newPrefetchedAttributes()
+	{
+		final Map<AttributeFQN, BagDatatype<?>> prefetchedAttributes = new HashMap<>();
+		prefetchedAttributes.put(SUBJECT_ROLE, STRING_BAG_DATATYPE);
+		prefetchedAttributes.put(SUBJECT_GROUP, STRING_BAG_DATATYPE);
+		return prefetchedAttributes;
+	}
+
+	@Test(timeout = 10000)
+	public void testConcurrentPrefetch() throws IndeterminateEvaluationException
+	{
+		final Map<AttributeFQN, String> values = new HashMap<>();
+		values.put(SUBJECT_ROLE, "manager");
+		values.put(SUBJECT_GROUP, "sales");
+		final DeferredAttributeProviderModule module = new DeferredAttributeProviderModule(values, false);
+		final ModularAttributeProvider attributeProvider = newAttributeProvider(module);
+		assertTrue("Prefetch not supported with asynchronous module", attributeProvider.isPrefetchSupported());
+
+		final EvaluationContext context = new IndividualDecisionRequestContext(null, null, false);
+		// the module blocks if the attributes are not requested concurrently
+		attributeProvider.prefetch(newPrefetchedAttributes(), context);
+		assertEquals("Invalid number of requests to module", 2, module.requestCount);
+		assertEquals("Invalid prefetched attribute", new StringValue("manager"), context.getNamedAttributeValue(SUBJECT_ROLE, STRING_BAG_DATATYPE).getSingleElement());
+
+		// prefetched attribute must be taken from context
+		assertEquals("Invalid attribute value", new StringValue("sales"), attributeProvider.get(SUBJECT_GROUP, STRING_BAG_DATATYPE, context).getSingleElement());
+		assertEquals("Prefetched attribute requested again from module", 2, module.requestCount);
+	}
+
+	@Test
+	public void testFailedPrefetchNotCached() throws IndeterminateEvaluationException
+	{
+		final Map<AttributeFQN, String> values = new HashMap<>();
+		values.put(SUBJECT_ROLE, "manager");
+		final DeferredAttributeProviderModule module = new DeferredAttributeProviderModule(values, true);
+		final ModularAttributeProvider attributeProvider = newAttributeProvider(module);
+		final EvaluationContext context = new IndividualDecisionRequestContext(null, null, false);
+		attributeProvider.prefetch(newPrefetchedAttributes(), context);
+		assertEquals("Invalid number of requests to module", 1, module.requestCount);
+		assertNull("Failed prefetch cached in context", context.getNamedAttributeValue(SUBJECT_ROLE, STRING_BAG_DATATYPE));
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeDesignatorType;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.AttributeProviderModule;
+import org.ow2.authzforce.core.pdp.api.BaseAttributeProviderModule;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.BagDatatype;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.AttributeResolutionBatch;
+import org.ow2.authzforce.core.pdp.impl.IndividualDecisionRequestContext;
+import org.ow2.authzforce.core.pdp.impl.ModularAttributeProvider;
+
+/**
+ * Test of the sharing of attributes resolved by Attribute Provider modules between the evaluation contexts of a same batch ({@link AttributeResolutionBatch}), i.e. the Individual Decision Requests of
+ * a same Multiple Decision Request
+ *
+ */
+public class BatchAttributeResolutionTest
+{
+	private static final String SUBJECT_CATEGORY = "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject";
+
+	private static final AttributeFQN SUBJECT_ID = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:1.0:subject:subject-id");
+
+	private static final AttributeFQN SUBJECT_ROLE = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:2.0:subject:role");
+
+	private static final AttributeFQN SUBJECT_SESSION = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:example:subject:session");
+
+	private static final BagDatatype<StringValue> STRING_BAG_DATATYPE = StandardDatatypes.STRING_FACTORY.getBagDatatype();
+
+	/**
+	 * Module providing the subject role, depending on the subject-id: role = "role-" + subject-id; or failing if {@code failing}
+	 */
+	private static final class CountingRoleProviderModule extends BaseAttributeProviderModule
+	{
+		private final boolean failing;
+		private int requestCount = 0;
+
+		private CountingRoleProviderModule(final boolean failing)
+		{
+			super("counting");
+			this.failing = failing;
+		}
+
+		@Override
+		public Set<AttributeDesignatorType> getProvidedAttributes()
+		{
+			return Collections.singleton(new AttributeDesignatorType(SUBJECT_CATEGORY, SUBJECT_ROLE.getId(), STRING_BAG_DATATYPE.getElementType().getId(), null, false));
+		}
+
+		@Override
+		public <AV extends AttributeValue> AttributeBag<AV> get(final AttributeFQN attributeFQN, final BagDatatype<AV> returnDatatype, final EvaluationContext context)
+				throws IndeterminateEvaluationException
+		{
+			requestCount++;
+			if (failing)
+			{
+				throw new IndeterminateEvaluationException("Attribute source unavailable", StatusHelper.STATUS_MISSING_ATTRIBUTE);
+			}
+
+			final StringValue subjectId = context.getNamedAttributeValue(SUBJECT_ID, STRING_BAG_DATATYPE).getSingleElement();
+			final AttributeBag<StringValue> result = Bags.newAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(),
+					Collections.singleton(new StringValue("role-" + subjectId.getUnderlyingValue())));
+			return returnDatatype.castAttributeBag(result);
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			// nothing to close
+		}
+	}
+
+	/**
+	 * Module providing a new subject session ID on each request, without declaring any dependency
+	 */
+	private static final class SessionProviderModule extends BaseAttributeProviderModule
+	{
+		private int requestCount = 0;
+
+		private SessionProviderModule()
+		{
+			super("session");
+		}
+
+		@Override
+		public Set<AttributeDesignatorType> getProvidedAttributes()
+		{
+			return Collections.singleton(new AttributeDesignatorType(SUBJECT_CATEGORY, SUBJECT_SESSION.getId(), STRING_BAG_DATATYPE.getElementType().getId(), null, false));
+		}
+
+		@Override
+		public <AV extends AttributeValue> AttributeBag<AV> get(final AttributeFQN attributeFQN, final BagDatatype<AV> returnDatatype, final EvaluationContext context)
+				throws IndeterminateEvaluationException
+		{
+			requestCount++;
+			final AttributeBag<StringValue> result = Bags.newAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), Collections.singleton(new StringValue("session-" + requestCount)));
+			return returnDatatype.castAttributeBag(result);
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			// nothing to close
+		}
+	}
+
+	private static ModularAttributeProvider newAttributeProvider(final AttributeProviderModule module, final boolean dependenciesKnown)
+	{
+		final Map<AttributeFQN, AttributeProviderModule> modulesByAttributeId = Collections.singletonMap(SUBJECT_ROLE, module);
+		if (!dependenciesKnown)
+		{
+			return ModularAttributeProvider.getInstance(modulesByAttributeId, null, null, true);
+		}
+
+		final Map<AttributeFQN, BagDatatype<?>> moduleDependencies = Collections.<AttributeFQN, BagDatatype<?>> singletonMap(SUBJECT_ID, STRING_BAG_DATATYPE);
+		return ModularAttributeProvider.getInstance(modulesByAttributeId, Collections.singletonMap(SUBJECT_ROLE, moduleDependencies), null, true);
+	}
+
+	private static EvaluationContext newContext(final String subjectId, final AttributeResolutionBatch batch)
+	{
+		final Map<AttributeFQN, AttributeBag<?>> namedAttributes = new HashMap<>();
+		namedAttributes.put(SUBJECT_ID, Bags.newAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), Collections.singleton(new StringValue(subjectId))));
+		final EvaluationContext context = new IndividualDecisionRequestContext(namedAttributes, null, false);
+		context.putListener(AttributeResolutionBatch.class, batch);
+		return context;
+	}
+
+	private static String getRole(final ModularAttributeProvider attributeProvider, final EvaluationContext context) throws IndeterminateEvaluationException
+	{
+		return attributeProvider.get(SUBJECT_ROLE, STRING_BAG_DATATYPE, context).getSingleElement().getUnderlyingValue();
+	}
+
+	@Test
+	public void testSharedWithSameDependencyValues() throws IndeterminateEvaluationException
+	{
+		final CountingRoleProviderModule module = new CountingRoleProviderModule(false);
+		final ModularAttributeProvider attributeProvider = newAttributeProvider(module, true);
+		final AttributeResolutionBatch batch = new AttributeResolutionBatch();
+		assertEquals("Invalid attribute value", "role-alice", getRole(attributeProvider, newContext("alice", batch)));
+		assertEquals("Invalid attribute value", "role-bob", getRole(attributeProvider, newContext("bob", batch)));
+		// same subject-id as the first context -> shared result
+		assertEquals("Invalid attribute value", "role-alice", getRole(attributeProvider, newContext("alice", batch)));
+		assertEquals("Invalid number of requests to module", 2, module.requestCount);
+		assertEquals("Invalid number of shared attributes", 2, batch.size());
+	}
+
+	@Test
+	public void testNotSharedWithUnknownDependencies() throws IndeterminateEvaluationException
+	{
+		final CountingRoleProviderModule module = new CountingRoleProviderModule(false);
+		final ModularAttributeProvider attributeProvider = newAttributeProvider(module, false);
+		final AttributeResolutionBatch batch = new AttributeResolutionBatch();
+		getRole(attributeProvider, newContext("alice", batch));
+		getRole(attributeProvider, newContext("alice", batch));
+		assertEquals("Attribute shared although the module's dependencies are unknown", 2, module.requestCount);
+	}
+
+	@Test
+	public void testNotSharedWithoutDeclaredDependencies() throws IndeterminateEvaluationException
+	{
+		final CountingRoleProviderModule roleModule = new CountingRoleProviderModule(false);
+		final SessionProviderModule sessionModule = new SessionProviderModule();
+		final Map<AttributeFQN, AttributeProviderModule> modulesByAttributeId = new HashMap<>();
+		modulesByAttributeId.put(SUBJECT_ROLE, roleModule);
+		modulesByAttributeId.put(SUBJECT_SESSION, sessionModule);
+		// like CloseableAttributeProvider: no entry for the module without declared dependencies
+		final Map<AttributeFQN, BagDatatype<?>> roleModuleDependencies = Collections.<AttributeFQN, BagDatatype<?>> singletonMap(SUBJECT_ID, STRING_BAG_DATATYPE);
+		final ModularAttributeProvider attributeProvider = ModularAttributeProvider.getInstance(modulesByAttributeId, Collections.singletonMap(SUBJECT_ROLE, roleModuleDependencies), null, true);
+		final AttributeResolutionBatch batch = new AttributeResolutionBatch();
+		for (int i = 1; i <= 2; i++)
+		{
+			final EvaluationContext context = newContext("alice", batch);
+			assertEquals("Invalid attribute value", "role-alice", getRole(attributeProvider, context));
+			assertEquals("Attribute shared although the module declares no dependency", "session-" + i, attributeProvider.get(SUBJECT_SESSION, STRING_BAG_DATATYPE, context)
+					.getSingleElement().getUnderlyingValue());
+		}
+
+		assertEquals("Invalid number of requests to module with dependencies", 1, roleModule.requestCount);
+		assertEquals("Invalid number of requests to module without dependencies", 2, sessionModule.requestCount);
+		assertEquals("Invalid number of shared attributes", 1, batch.size());
+	}
+
+	@Test
+	public void testErrorNotShared() throws IndeterminateEvaluationException
+	{
+		final CountingRoleProviderModule module = new CountingRoleProviderModule(true);
+		final ModularAttributeProvider attributeProvider = newAttributeProvider(module, true);
+		final AttributeResolutionBatch batch = new AttributeResolutionBatch();
+		for (int i = 0; i < 2; i++)
+		{
+			// error -> empty bag
+			assertTrue("Invalid attribute value", attributeProvider.get(SUBJECT_ROLE, STRING_BAG_DATATYPE, newContext("alice", batch)).isEmpty());
+		}
+
+		assertEquals("Error shared between contexts", 2, module.requestCount);
+		assertEquals("Invalid number of shared attributes", 0, batch.size());
+	}
+}
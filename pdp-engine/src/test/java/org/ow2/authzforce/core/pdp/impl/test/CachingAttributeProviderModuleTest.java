@@ -0,0 +1,262 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeDesignatorType;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.AttributeProvider;
+import org.ow2.authzforce.core.pdp.api.BaseAttributeProviderModule;
+import org.ow2.authzforce.core.pdp.api.CloseableAttributeProviderModule;
+import org.ow2.authzforce.core.pdp.api.CloseableAttributeProviderModule.DependencyAwareFactory;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.BagDatatype;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.DatatypeFactoryRegistry;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.CachingAttributeProviderModule;
+import org.ow2.authzforce.core.pdp.impl.IndividualDecisionRequestContext;
+import org.ow2.authzforce.core.pdp.impl.ModularAttributeProvider;
+import org.ow2.authzforce.core.pdp.impl.value.StandardDatatypeFactoryRegistry;
+
+/**
+ * Test of {@link CachingAttributeProviderModule}: cache hits, keys including the values of the wrapped module's dependencies, time-to-live, concurrent misses and errors
+ *
+ */
+public class CachingAttributeProviderModuleTest
+{
+	private static final String SUBJECT_CATEGORY = "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject";
+
+	private static final AttributeFQN SUBJECT_ID = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:1.0:subject:subject-id");
+
+	private static final AttributeFQN SUBJECT_ROLE = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:2.0:subject:role");
+
+	private static final BagDatatype<StringValue> STRING_BAG_DATATYPE = StandardDatatypes.STRING_FACTORY.getBagDatatype();
+
+	/**
+	 * Module providing the subject role, depending on the subject-id: role = "role-" + subject-id. The first {@code failureCount} requests fail. If {@code release} is not null, requests wait for it
+	 * before returning.
+	 */
+	private static final class RoleProviderModule extends BaseAttributeProviderModule
+	{
+		private final AtomicInteger requestCount = new AtomicInteger(0);
+		private final AtomicInteger remainingFailureCount;
+		private final CountDownLatch release;
+
+		private RoleProviderModule(final int failureCount, final CountDownLatch release)
+		{
+			super("role");
+			this.remainingFailureCount = new AtomicInteger(failureCount);
+			this.release = release;
+		}
+
+		@Override
+		public Set<AttributeDesignatorType> getProvidedAttributes()
+		{
+			return Collections.singleton(new AttributeDesignatorType(SUBJECT_CATEGORY, SUBJECT_ROLE.getId(), STRING_BAG_DATATYPE.getElementType().getId(), null, false));
+		}
+
+		@Override
+		public <AV extends AttributeValue> AttributeBag<AV> get(final AttributeFQN attributeFQN, final BagDatatype<AV> returnDatatype, final EvaluationContext context)
+				throws IndeterminateEvaluationException
+		{
+			requestCount.incrementAndGet();
+			if (release != null)
+			{
+				try
+				{
+					if (!release.await(10, TimeUnit.SECONDS))
+					{
+						throw new IndeterminateEvaluationException("Timeout", StatusHelper.STATUS_PROCESSING_ERROR);
+					}
+				}
+				catch (final InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new IndeterminateEvaluationException("Interrupted", StatusHelper.STATUS_PROCESSING_ERROR, e);
+				}
+			}
+
+			if (remainingFailureCount.getAndDecrement() > 0)
+			{
+				throw new IndeterminateEvaluationException("Attribute source unavailable", StatusHelper.STATUS_MISSING_ATTRIBUTE);
+			}
+
+			final StringValue subjectId = context.getNamedAttributeValue(SUBJECT_ID, STRING_BAG_DATATYPE).getSingleElement();
+			final AttributeBag<StringValue> result = Bags.newAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(),
+					Collections.singleton(new StringValue("role-" + subjectId.getUnderlyingValue())));
+			return returnDatatype.castAttributeBag(result);
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			// nothing to close
+		}
+	}
+
+	private static CachingAttributeProviderModule newCachingModule(final RoleProviderModule wrappedModule, final int timeToLiveSec)
+	{
+		final DependencyAwareFactory wrappedModuleFactory = new DependencyAwareFactory()
+		{
+
+			@Override
+			public Set<AttributeDesignatorType> getDependencies()
+			{
+				return Collections.singleton(new AttributeDesignatorType(SUBJECT_CATEGORY, SUBJECT_ID.getId(), STRING_BAG_DATATYPE.getElementType().getId(), null, false));
+			}
+
+			@Override
+			public CloseableAttributeProviderModule getInstance(final DatatypeFactoryRegistry attrDatatypeFactory, final AttributeProvider depAttrProvider)
+			{
+				return wrappedModule;
+			}
+		};
+
+		// dependencies found in the evaluation context
+		return (CachingAttributeProviderModule) CachingAttributeProviderModule.Factory.newFactory("cache", wrappedModuleFactory, 100, timeToLiveSec).getInstance(
+				StandardDatatypeFactoryRegistry.getRegistry(false), ModularAttributeProvider.EVALUATION_CONTEXT_ONLY_SCOPED_ATTRIBUTE_PROVIDER);
+	}
+
+	private static EvaluationContext newContext(final String subjectId)
+	{
+		final Map<AttributeFQN, AttributeBag<?>> namedAttributes = new HashMap<>();
+		namedAttributes.put(SUBJECT_ID, Bags.newAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), Collections.singleton(new StringValue(subjectId))));
+		return new IndividualDecisionRequestContext(namedAttributes, null, false);
+	}
+
+	private static String getRole(final CachingAttributeProviderModule module, final String subjectId) throws IndeterminateEvaluationException
+	{
+		return module.get(SUBJECT_ROLE, STRING_BAG_DATATYPE, newContext(subjectId)).getSingleElement().getUnderlyingValue();
+	}
+
+	@Test
+	public void testCacheHit() throws IndeterminateEvaluationException, IOException
+	{
+		final RoleProviderModule wrappedModule = new RoleProviderModule(0, null);
+		try (CachingAttributeProviderModule module = newCachingModule(wrappedModule, 60))
+		{
+			for (int i = 0; i < 2; i++)
+			{
+				assertEquals("Invalid attribute value", "role-alice", getRole(module, "alice"));
+			}
+
+			assertEquals("Invalid number of requests to wrapped module", 1, wrappedModule.requestCount.get());
+			assertEquals("Invalid number of cache hits", 1, module.getStats().hitCount());
+			assertEquals("Invalid number of cache misses", 1, module.getStats().missCount());
+		}
+	}
+
+	@Test
+	public void testDependencyValuesInKey() throws IndeterminateEvaluationException, IOException
+	{
+		final RoleProviderModule wrappedModule = new RoleProviderModule(0, null);
+		try (CachingAttributeProviderModule module = newCachingModule(wrappedModule, 60))
+		{
+			assertEquals("Invalid attribute value", "role-alice", getRole(module, "alice"));
+			assertEquals("Invalid attribute value", "role-bob", getRole(module, "bob"));
+			assertEquals("Invalid attribute value", "role-alice", getRole(module, "alice"));
+			assertEquals("Invalid number of requests to wrapped module", 2, wrappedModule.requestCount.get());
+			assertEquals("Invalid number of cache hits", 1, module.getStats().hitCount());
+		}
+	}
+
+	@Test
+	public void testTimeToLive() throws IndeterminateEvaluationException, IOException, InterruptedException
+	{
+		final RoleProviderModule wrappedModule = new RoleProviderModule(0, null);
+		try (CachingAttributeProviderModule module = newCachingModule(wrappedModule, 1))
+		{
+			assertEquals("Invalid attribute value", "role-alice", getRole(module, "alice"));
+			Thread.sleep(1100);
+			assertEquals("Invalid attribute value", "role-alice", getRole(module, "alice"));
+			assertEquals("Expired entry returned from cache", 2, wrappedModule.requestCount.get());
+			assertEquals("Expired entry returned from cache", 0, module.getStats().hitCount());
+		}
+	}
+
+	@Test
+	public void testConcurrentMissesCoalesced() throws InterruptedException, ExecutionException, IOException
+	{
+		final CountDownLatch release = new CountDownLatch(1);
+		final RoleProviderModule wrappedModule = new RoleProviderModule(0, release);
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try (CachingAttributeProviderModule module = newCachingModule(wrappedModule, 60))
+		{
+			final Callable<String> task = () -> getRole(module, "alice");
+			final Future<String> result1 = executor.submit(task);
+			final Future<String> result2 = executor.submit(task);
+			// let both tasks reach the cache before the wrapped module returns
+			Thread.sleep(200);
+			release.countDown();
+			assertEquals("Invalid attribute value", "role-alice", result1.get());
+			assertEquals("Invalid attribute value", "role-alice", result2.get());
+			assertEquals("Concurrent misses for the same key not coalesced", 1, wrappedModule.requestCount.get());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testErrorNotCached() throws IndeterminateEvaluationException, IOException
+	{
+		final RoleProviderModule wrappedModule = new RoleProviderModule(1, null);
+		try (CachingAttributeProviderModule module = newCachingModule(wrappedModule, 60))
+		{
+			try
+			{
+				getRole(module, "alice");
+				fail("Error of wrapped module not propagated");
+			}
+			catch (final IndeterminateEvaluationException e)
+			{
+				assertEquals("Invalid error status", StatusHelper.STATUS_MISSING_ATTRIBUTE, e.getStatusCode());
+			}
+
+			assertEquals("Invalid attribute value after error", "role-alice", getRole(module, "alice"));
+			assertEquals("Error cached", 2, wrappedModule.requestCount.get());
+		}
+	}
+}
@@ -0,0 +1,385 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Result;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.ImmutablePdpDecisionRequest;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.IndividualXACMLRequest;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionRequest;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionResult;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.DateValue;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.api.value.TimeValue;
+import org.ow2.authzforce.core.pdp.impl.IndividualDecisionRequestEvaluator;
+import org.ow2.authzforce.core.pdp.impl.RequestScopedMemo;
+import org.ow2.authzforce.core.pdp.impl.SlotIndexedEvaluationContext;
+import org.ow2.authzforce.core.pdp.impl.StandardEnvironmentAttribute;
+import org.ow2.authzforce.core.pdp.impl.policy.RootPolicyEvaluator;
+import org.ow2.authzforce.core.pdp.impl.policy.StaticApplicablePolicyView;
+import org.ow2.authzforce.core.xmlns.pdp.StandardEnvironmentAttributeSource;
+
+/**
+ * Test of the evaluation context created by the PDP engine for each Individual Decision Request: priority of the request and PDP-issued attributes depending on the standard environment attribute
+ * source, attributes resolved during evaluation, variable slots reused by different Policies, the open-addressing table of {@link RequestScopedMemo} values, and bag indexing
+ *
+ */
+public class CompactEvaluationContextTest
+{
+	private static final AttributeFQN SUBJECT_ID = AttributeFQNs.newInstance("urn:oasis:names:tc:xacml:1.0:subject-category:access-subject", Optional.empty(),
+			"urn:oasis:names:tc:xacml:1.0:subject:subject-id");
+
+	private static final AttributeFQN SUBJECT_ROLE = AttributeFQNs.newInstance("urn:oasis:names:tc:xacml:1.0:subject-category:access-subject", Optional.empty(),
+			"urn:oasis:names:tc:xacml:2.0:subject:role");
+
+	private static final AttributeFQN CURRENT_TIME = StandardEnvironmentAttribute.CURRENT_TIME.getFQN();
+
+	private static final AttributeFQN CURRENT_DATE = StandardEnvironmentAttribute.CURRENT_DATE.getFQN();
+
+	private static final TimeValue PDP_TIME = new TimeValue("08:00:00Z");
+
+	private static final TimeValue REQUEST_TIME = new TimeValue("12:00:00Z");
+
+	private static final DateValue PDP_DATE = new DateValue("2017-01-01");
+
+	private static final RootPolicyEvaluator UNUSED_ROOT_POLICY_EVALUATOR = new RootPolicyEvaluator()
+	{
+
+		@Override
+		public PdpDecisionResult findAndEvaluate(final EvaluationContext context)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public StaticApplicablePolicyView getStaticApplicablePolicies()
+		{
+			return null;
+		}
+
+		@Override
+		public void close()
+		{
+			// nothing to close
+		}
+	};
+
+	/**
+	 * Request evaluator used only to create evaluation contexts like the PDP engine does with the compact evaluation context enabled
+	 */
+	private static final class ContextFactory extends IndividualDecisionRequestEvaluator
+	{
+		private ContextFactory(final StandardEnvironmentAttributeSource stdEnvAttributeSource, final int minIndexedBagSize)
+		{
+			super(UNUSED_ROOT_POLICY_EVALUATOR, stdEnvAttributeSource, null, null, false, minIndexedBagSize, true);
+		}
+
+		private EvaluationContext newContext(final PdpDecisionRequest request, final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes)
+		{
+			return newEvaluationContext(request, pdpIssuedAttributes);
+		}
+
+		@Override
+		protected <INDIVIDUAL_DECISION_REQ_T extends PdpDecisionRequest> Map<INDIVIDUAL_DECISION_REQ_T, ? extends PdpDecisionResult> evaluate(
+				final List<INDIVIDUAL_DECISION_REQ_T> individualDecisionRequests, final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected List<Result> evaluateToJAXB(final List<? extends IndividualXACMLRequest> individualDecisionRequests, final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes)
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Creates an evaluation context like the PDP engine does
+	 *
+	 * @param stdEnvAttributeSource
+	 *            standard environment attribute source
+	 * @param minIndexedBagSize
+	 *            minimum size of indexed bags (0 disables bag indexing)
+	 * @param requestAttributes
+	 *            named attributes of the request
+	 * @return new evaluation context, with the PDP-issued current-time and current-date
+	 */
+	static SlotIndexedEvaluationContext newContext(final StandardEnvironmentAttributeSource stdEnvAttributeSource, final int minIndexedBagSize,
+			final Map<AttributeFQN, AttributeBag<?>> requestAttributes)
+	{
+		final Map<AttributeFQN, AttributeBag<?>> pdpIssuedAttributes = new HashMap<>();
+		pdpIssuedAttributes.put(CURRENT_TIME, Bags.singletonAttributeBag(StandardDatatypes.TIME_FACTORY.getDatatype(), PDP_TIME));
+		pdpIssuedAttributes.put(CURRENT_DATE, Bags.singletonAttributeBag(StandardDatatypes.DATE_FACTORY.getDatatype(), PDP_DATE));
+		final ImmutablePdpDecisionRequest request = ImmutablePdpDecisionRequest.getInstance(requestAttributes, null, false);
+		return (SlotIndexedEvaluationContext) new ContextFactory(stdEnvAttributeSource, minIndexedBagSize).newContext(request, pdpIssuedAttributes);
+	}
+
+	private static Map<AttributeFQN, AttributeBag<?>> newRequestAttributes(final boolean withCurrentTime)
+	{
+		final Map<AttributeFQN, AttributeBag<?>> requestAttributes = new HashMap<>();
+		requestAttributes.put(SUBJECT_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue("alice")));
+		if (withCurrentTime)
+		{
+			requestAttributes.put(CURRENT_TIME, Bags.singletonAttributeBag(StandardDatatypes.TIME_FACTORY.getDatatype(), REQUEST_TIME));
+		}
+
+		return requestAttributes;
+	}
+
+	private static TimeValue getCurrentTime(final EvaluationContext context) throws IndeterminateEvaluationException
+	{
+		return context.getNamedAttributeValue(CURRENT_TIME, StandardDatatypes.TIME_FACTORY.getBagDatatype()).getSingleElement();
+	}
+
+	@Test
+	public void testRequestElsePdpAttributePriority() throws IndeterminateEvaluationException
+	{
+		// layers: request, reset of the standard environment attributes, PDP
+		final EvaluationContext context = newContext(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP, 0, newRequestAttributes(true));
+		assertEquals("Request current-time not used", REQUEST_TIME, getCurrentTime(context));
+		final AttributeBag<DateValue> currentDate = context.getNamedAttributeValue(CURRENT_DATE, StandardDatatypes.DATE_FACTORY.getBagDatatype());
+		assertTrue("PDP current-date used although the request has current-time", currentDate.isEmpty());
+		assertEquals("Invalid reason why current-date is missing", StatusHelper.STATUS_MISSING_ATTRIBUTE, currentDate.getReasonWhyEmpty().getStatusCode());
+		assertEquals("Invalid request attribute", new StringValue("alice"), context.getNamedAttributeValue(SUBJECT_ID, StandardDatatypes.STRING_FACTORY.getBagDatatype()).getSingleElement());
+
+		// no standard environment attribute in the request -> PDP values
+		final EvaluationContext contextWithoutRequestTime = newContext(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP, 0, newRequestAttributes(false));
+		assertEquals("PDP current-time not used", PDP_TIME, getCurrentTime(contextWithoutRequestTime));
+		assertEquals("PDP current-date not used", PDP_DATE, contextWithoutRequestTime.getNamedAttributeValue(CURRENT_DATE, StandardDatatypes.DATE_FACTORY.getBagDatatype())
+				.getSingleElement());
+	}
+
+	@Test
+	public void testPdpOnlyAttributePriority() throws IndeterminateEvaluationException
+	{
+		// layers: PDP, request
+		final EvaluationContext context = newContext(StandardEnvironmentAttributeSource.PDP_ONLY, 0, newRequestAttributes(true));
+		assertEquals("Request current-time not overridden by PDP", PDP_TIME, getCurrentTime(context));
+		assertEquals("PDP current-date not used", PDP_DATE, context.getNamedAttributeValue(CURRENT_DATE, StandardDatatypes.DATE_FACTORY.getBagDatatype()).getSingleElement());
+		assertEquals("Invalid request attribute", new StringValue("alice"), context.getNamedAttributeValue(SUBJECT_ID, StandardDatatypes.STRING_FACTORY.getBagDatatype()).getSingleElement());
+	}
+
+	@Test
+	public void testRequestOnlyAttributePriority() throws IndeterminateEvaluationException
+	{
+		final EvaluationContext context = newContext(StandardEnvironmentAttributeSource.REQUEST_ONLY, 0, newRequestAttributes(true));
+		assertEquals("Request current-time not used", REQUEST_TIME, getCurrentTime(context));
+		assertNull("PDP current-date used", context.getNamedAttributeValue(CURRENT_DATE, StandardDatatypes.DATE_FACTORY.getBagDatatype()));
+	}
+
+	@Test
+	public void testResolvedAttributes() throws IndeterminateEvaluationException
+	{
+		final Map<AttributeFQN, AttributeBag<?>> requestAttributes = newRequestAttributes(false);
+		final EvaluationContext context = newContext(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP, 0, requestAttributes);
+		assertFalse("Request attribute overridden", context.putNamedAttributeValueIfAbsent(SUBJECT_ID,
+				Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue("bob"))));
+		assertFalse("PDP-issued attribute overridden", context.putNamedAttributeValueIfAbsent(CURRENT_TIME, Bags.singletonAttributeBag(StandardDatatypes.TIME_FACTORY.getDatatype(), REQUEST_TIME)));
+		assertEquals("PDP-issued attribute overridden", PDP_TIME, getCurrentTime(context));
+
+		assertNull("Unexpected attribute", context.getNamedAttributeValue(SUBJECT_ROLE, StandardDatatypes.STRING_FACTORY.getBagDatatype()));
+		assertTrue("Resolved attribute not added", context.putNamedAttributeValueIfAbsent(SUBJECT_ROLE,
+				Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue("manager"))));
+		assertEquals("Invalid resolved attribute", new StringValue("manager"), context.getNamedAttributeValue(SUBJECT_ROLE, StandardDatatypes.STRING_FACTORY.getBagDatatype())
+				.getSingleElement());
+		// PDP-issued attributes shared by contexts and request attributes not modified
+		final EvaluationContext otherContext = newContext(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP, 0, requestAttributes);
+		assertNull("Resolved attribute shared with other context", otherContext.getNamedAttributeValue(SUBJECT_ROLE, StandardDatatypes.STRING_FACTORY.getBagDatatype()));
+		assertFalse("Resolved attribute added to the request attributes", requestAttributes.containsKey(SUBJECT_ROLE));
+	}
+
+	@Test
+	public void testVariableSlotReusedByOtherPolicy() throws IndeterminateEvaluationException
+	{
+		final SlotIndexedEvaluationContext context = newContext(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP, 0, Collections.<AttributeFQN, AttributeBag<?>> emptyMap());
+		// variable of a first Policy in slot 0
+		assertTrue("Variable not added", context.putVariableIfAbsent(0, "policy1-var", new StringValue("a")));
+		assertFalse("Variable overridden", context.putVariableIfAbsent(0, "policy1-var", new StringValue("b")));
+		assertEquals("Invalid variable value", new StringValue("a"), context.getVariableValue(0, "policy1-var", StandardDatatypes.STRING_FACTORY.getDatatype()));
+		// String-keyed lookup of the same variable
+		assertEquals("Invalid variable value", new StringValue("a"), context.getVariableValue("policy1-var", StandardDatatypes.STRING_FACTORY.getDatatype()));
+
+		// variable of another Policy in the same slot: the value left in the slot must not be returned
+		assertNull("Value of another Policy's variable returned", context.getVariableValue(0, "policy2-var", StandardDatatypes.STRING_FACTORY.getDatatype()));
+		assertTrue("Variable not added", context.putVariableIfAbsent(0, "policy2-var", new StringValue("c")));
+		assertEquals("Invalid variable value", new StringValue("c"), context.getVariableValue(0, "policy2-var", StandardDatatypes.STRING_FACTORY.getDatatype()));
+		assertNull("Value of replaced variable returned", context.getVariableValue(0, "policy1-var", StandardDatatypes.STRING_FACTORY.getDatatype()));
+
+		// removal at the end of the Policy evaluation, then the first Policy again
+		assertEquals("Invalid removed variable value", new StringValue("c"), context.removeVariable("policy2-var"));
+		assertNull("Variable not removed", context.getVariableValue(0, "policy2-var", StandardDatatypes.STRING_FACTORY.getDatatype()));
+		assertTrue("Variable not added", context.putVariableIfAbsent(0, "policy1-var", new StringValue("d")));
+		assertEquals("Invalid variable value", new StringValue("d"), context.getVariableValue(0, "policy1-var", StandardDatatypes.STRING_FACTORY.getDatatype()));
+
+		// slot beyond the initial capacity
+		assertTrue("Variable not added", context.putVariableIfAbsent(100, "policy3-var", new StringValue("e")));
+		assertEquals("Invalid variable value", new StringValue("e"), context.getVariableValue(100, "policy3-var", StandardDatatypes.STRING_FACTORY.getDatatype()));
+		assertNotNull("Variable lost on slot array growth", context.getVariableValue(0, "policy1-var", StandardDatatypes.STRING_FACTORY.getDatatype()));
+	}
+
+	@Test
+	public void testMemoTableCollisions()
+	{
+		final SlotIndexedEvaluationContext context = newContext(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP, 0, Collections.<AttributeFQN, AttributeBag<?>> emptyMap());
+		assertNull("Unexpected memo value in new context", context.getMemo(1));
+		/*
+		 * These slots have the same (Fibonacci) hash in the initial table of 16 entries, therefore are stored in consecutive entries by linear probing
+		 */
+		final int[] collidingSlots = { 1, 22, 43, 56, 77 };
+		for (final int slot : collidingSlots)
+		{
+			context.putMemo(slot, "value-" + slot);
+		}
+
+		for (final int slot : collidingSlots)
+		{
+			assertEquals("Invalid memo value", "value-" + slot, context.getMemo(slot));
+		}
+
+		// same hash, not in the table: the probe sequence must stop at the first empty entry
+		assertNull("Unexpected memo value", context.getMemo(90));
+
+		// replacing a value in the middle of the probe sequence
+		context.putMemo(43, "new-value-43");
+		assertEquals("Memo value not replaced", "new-value-43", context.getMemo(43));
+		for (final int slot : new int[] { 1, 22, 56, 77 })
+		{
+			assertEquals("Invalid memo value after replacement of another", "value-" + slot, context.getMemo(slot));
+		}
+	}
+
+	@Test
+	public void testMemoTableResize()
+	{
+		final SlotIndexedEvaluationContext context = newContext(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP, 0, Collections.<AttributeFQN, AttributeBag<?>> emptyMap());
+		/*
+		 * The table is resized whenever the load factor would exceed 1/2: 8 entries fit in the initial table of 16 entries, so this resizes the table several times (16 -> 32 -> 64 -> 128 -> 256),
+		 * including the largest slots (high bits of the hash)
+		 */
+		final int memoCount = 100;
+		for (int slot = 1; slot <= memoCount; slot++)
+		{
+			context.putMemo(slot, "value-" + slot);
+			context.putMemo(Integer.MAX_VALUE - slot + 1, "value-max-" + slot);
+		}
+
+		for (int slot = 1; slot <= memoCount; slot++)
+		{
+			assertEquals("Memo value lost on resize", "value-" + slot, context.getMemo(slot));
+			assertEquals("Memo value lost on resize", "value-max-" + slot, context.getMemo(Integer.MAX_VALUE - slot + 1));
+		}
+
+		assertNull("Unexpected memo value", context.getMemo(memoCount + 1));
+		assertNull("Unexpected memo value", context.getMemo(Integer.MAX_VALUE - memoCount));
+
+		// replacement does not add an entry
+		for (int slot = 1; slot <= memoCount; slot++)
+		{
+			context.putMemo(slot, "new-value-" + slot);
+		}
+
+		for (int slot = 1; slot <= memoCount; slot++)
+		{
+			assertEquals("Memo value not replaced", "new-value-" + slot, context.getMemo(slot));
+		}
+	}
+
+	private static AttributeBag<StringValue> newStringBag(final String... values)
+	{
+		final StringValue[] stringValues = new StringValue[values.length];
+		for (int i = 0; i < values.length; i++)
+		{
+			stringValues[i] = new StringValue(values[i]);
+		}
+
+		return Bags.newAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), Arrays.asList(stringValues));
+	}
+
+	@Test
+	public void testBagIndexedOnSecondLookup()
+	{
+		final SlotIndexedEvaluationContext context = newContext(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP, 2, Collections.<AttributeFQN, AttributeBag<?>> emptyMap());
+		final AttributeBag<StringValue> bag = newStringBag("a", "b", "c");
+		assertNull("Bag indexed on first lookup", context.getBagIndex(bag));
+		final Set<? extends AttributeValue> index = context.getBagIndex(bag);
+		assertNotNull("Bag not indexed on second lookup", index);
+		assertEquals("Invalid bag index", new HashSet<>(Arrays.asList(new StringValue("a"), new StringValue("b"), new StringValue("c"))), index);
+		assertSame("Bag indexed again", index, context.getBagIndex(bag));
+
+		// equal bag but different instance
+		assertNull("Bag indexed by equality instead of identity", context.getBagIndex(newStringBag("a", "b", "c")));
+		// too small
+		final AttributeBag<StringValue> singletonBag = newStringBag("a");
+		assertNull("Bag smaller than minimum size indexed", context.getBagIndex(singletonBag));
+		assertNull("Bag smaller than minimum size indexed", context.getBagIndex(singletonBag));
+	}
+
+	@Test
+	public void testBagsLookedUpOnceNotKept()
+	{
+		final SlotIndexedEvaluationContext context = newContext(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP, 2, Collections.<AttributeFQN, AttributeBag<?>> emptyMap());
+		final AttributeBag<StringValue> bag = newStringBag("a", "b");
+		assertNull("Bag indexed on first lookup", context.getBagIndex(bag));
+		// many other bags looked up once (e.g. function results) in between
+		for (int i = 0; i < 100; i++)
+		{
+			assertNull("Bag looked up once indexed", context.getBagIndex(newStringBag("x" + i, "y" + i)));
+		}
+
+		// the first lookup of the bag forgotten
+		assertNull("Bag looked up once kept in context", context.getBagIndex(bag));
+		assertNotNull("Bag not indexed on second lookup", context.getBagIndex(bag));
+	}
+
+	@Test
+	public void testBagIndexingDisabled()
+	{
+		final SlotIndexedEvaluationContext context = newContext(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP, 0, Collections.<AttributeFQN, AttributeBag<?>> emptyMap());
+		final AttributeBag<StringValue> bag = newStringBag("a", "b", "c");
+		for (int i = 0; i < 3; i++)
+		{
+			assertNull("Bag indexed although indexing disabled", context.getBagIndex(bag));
+		}
+	}
+}
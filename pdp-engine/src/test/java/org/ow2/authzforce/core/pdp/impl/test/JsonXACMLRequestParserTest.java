@@ -0,0 +1,395 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import net.sf.saxon.s9api.XdmNode;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attributes;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.ImmutablePdpDecisionRequest;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.IndividualXACMLRequest;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.XMLUtils;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
+import org.ow2.authzforce.core.pdp.api.value.IntegerValue;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.JsonXACMLRequestParser;
+import org.ow2.authzforce.core.pdp.impl.JsonXACMLResponseWriter;
+import org.ow2.authzforce.core.pdp.impl.value.StandardDatatypeFactoryRegistry;
+
+/**
+ * Test of the XACML/JSON request parser ({@link JsonXACMLRequestParser}) and response writer ({@link JsonXACMLResponseWriter})
+ *
+ */
+public class JsonXACMLRequestParserTest
+{
+	private static final String SUBJECT_CATEGORY = "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject";
+
+	private static final String RESOURCE_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:resource";
+
+	private static final String ACTION_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:action";
+
+	private static final AttributeFQN SUBJECT_ID = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:1.0:subject:subject-id");
+
+	private static final AttributeFQN SUBJECT_ROLE = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:2.0:subject:role");
+
+	private static final AttributeFQN RESOURCE_ID = AttributeFQNs.newInstance(RESOURCE_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:1.0:resource:resource-id");
+
+	private static final AttributeFQN RESOURCE_SIZE = AttributeFQNs.newInstance(RESOURCE_CATEGORY, Optional.of("urn:example:issuer"), "urn:example:resource:size");
+
+	private static final AttributeFQN RESOURCE_WEIGHT = AttributeFQNs.newInstance(RESOURCE_CATEGORY, Optional.empty(), "urn:example:resource:weight");
+
+	private static final AttributeFQN RESOURCE_PUBLIC = AttributeFQNs.newInstance(RESOURCE_CATEGORY, Optional.empty(), "urn:example:resource:public");
+
+	private static final AttributeFQN ACTION_ID = AttributeFQNs.newInstance(ACTION_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:1.0:action:action-id");
+
+	private static final JsonXACMLRequestParser PARSER = new JsonXACMLRequestParser(StandardDatatypeFactoryRegistry.getRegistry(false), true, true, XMLUtils.SAXON_PROCESSOR, 10);
+
+	private static final JsonXACMLRequestParser STRICT_PARSER = new JsonXACMLRequestParser(StandardDatatypeFactoryRegistry.getRegistry(false), false, false, null, -1);
+
+	/**
+	 * Request builder without any transformation of the attributes
+	 */
+	private static final class SimpleRequestBuilder implements PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest>
+	{
+		private final Map<AttributeFQN, AttributeBag<?>> namedAttributes = new HashMap<>();
+		private final Map<String, XdmNode> contentsByCategory = new HashMap<>();
+
+		@Override
+		public Bag<?> putNamedAttributeIfAbsent(final AttributeFQN attributeFQN, final AttributeBag<?> attributeValues)
+		{
+			return namedAttributes.putIfAbsent(attributeFQN, attributeValues);
+		}
+
+		@Override
+		public XdmNode putContentIfAbsent(final String category, final XdmNode content)
+		{
+			return contentsByCategory.putIfAbsent(category, content);
+		}
+
+		@Override
+		public ImmutablePdpDecisionRequest build(final boolean returnApplicablePolicies)
+		{
+			return ImmutablePdpDecisionRequest.getInstance(namedAttributes, contentsByCategory, returnApplicablePolicies);
+		}
+
+		@Override
+		public void reset()
+		{
+			namedAttributes.clear();
+			contentsByCategory.clear();
+		}
+	}
+
+	private static List<IndividualXACMLRequest> parse(final JsonXACMLRequestParser parser, final String request) throws IndeterminateEvaluationException
+	{
+		return parser.parse(new ByteArrayInputStream(request.getBytes(StandardCharsets.UTF_8)), new SimpleRequestBuilder());
+	}
+
+	private static final String SUBJECT = "{\"Attribute\": [{\"AttributeId\": \"urn:oasis:names:tc:xacml:1.0:subject:subject-id\", \"Value\": \"alice\", \"IncludeInResult\": true},"
+			+ " {\"AttributeId\": \"urn:oasis:names:tc:xacml:2.0:subject:role\", \"Value\": [\"manager\", \"employee\"]}]}";
+
+	private static final String RESOURCE = "{\"CategoryId\": \"resource\", \"Content\": \"<md:record xmlns:md=\\\"urn:example:med:schemas:record\\\"><md:name>Bart</md:name></md:record>\","
+			+ " \"Attribute\": [{\"AttributeId\": \"urn:example:resource:size\", \"Issuer\": \"urn:example:issuer\", \"Value\": 42},"
+			+ " {\"AttributeId\": \"urn:example:resource:weight\", \"Value\": [1, 2.5e0]},"
+			+ " {\"AttributeId\": \"urn:example:resource:public\", \"DataType\": \"boolean\", \"Value\": \"true\"}]}";
+
+	private static final String NEW_RESOURCE_TEMPLATE = "{\"Id\": \"%s\", \"Attribute\": {\"AttributeId\": \"urn:oasis:names:tc:xacml:1.0:resource:resource-id\", \"Value\": \"%s\"}}";
+
+	private static final String ACTION = "{\"Id\": \"action\", \"Attribute\": {\"AttributeId\": \"urn:oasis:names:tc:xacml:1.0:action:action-id\", \"Value\": \"read\"}}";
+
+	private static String newResource(final String id)
+	{
+		return String.format(NEW_RESOURCE_TEMPLATE, id, id);
+	}
+
+	@Test
+	public void testAttributes() throws IndeterminateEvaluationException
+	{
+		final List<IndividualXACMLRequest> requests = parse(PARSER, "{\"Request\": {\"ReturnPolicyIdList\": true, \"AccessSubject\": " + SUBJECT + ", \"Category\": [" + RESOURCE + "]}}");
+		assertEquals("Invalid number of Individual Decision Requests", 1, requests.size());
+		final IndividualXACMLRequest request = requests.get(0);
+		assertTrue("Invalid ReturnPolicyIdList", request.isApplicablePolicyIdListReturned());
+		assertEquals("Invalid number of attributes", 5, request.getNamedAttributes().size());
+		assertEquals("Invalid attribute value", new StringValue("alice"), StandardDatatypes.STRING_FACTORY.getBagDatatype().castAttributeBag(request.getNamedAttributes().get(SUBJECT_ID))
+				.getSingleElement());
+		final Set<StringValue> roleSet = new HashSet<>();
+		for (final StringValue role : StandardDatatypes.STRING_FACTORY.getBagDatatype().castAttributeBag(request.getNamedAttributes().get(SUBJECT_ROLE)))
+		{
+			roleSet.add(role);
+		}
+
+		assertEquals("Invalid values of multi-valued attribute", new HashSet<>(Arrays.asList(new StringValue("manager"), new StringValue("employee"))), roleSet);
+		// DataType inferred from JSON number without fractional part
+		assertEquals("Invalid attribute value", new IntegerValue("42"), StandardDatatypes.INTEGER_FACTORY.getBagDatatype().castAttributeBag(request.getNamedAttributes().get(RESOURCE_SIZE))
+				.getSingleElement());
+		// DataType inferred from array of integer and double
+		assertEquals("Invalid attribute values", 2, StandardDatatypes.DOUBLE_FACTORY.getBagDatatype().castAttributeBag(request.getNamedAttributes().get(RESOURCE_WEIGHT)).size());
+		// shorthand DataType
+		assertEquals("Invalid attribute value", BooleanValue.TRUE, StandardDatatypes.BOOLEAN_FACTORY.getBagDatatype().castAttributeBag(request.getNamedAttributes().get(RESOURCE_PUBLIC))
+				.getSingleElement());
+		assertTrue("Missing Content", request.getExtraContentsByCategory().containsKey(RESOURCE_CATEGORY));
+
+		final List<Attributes> includedAttributes = request.getAttributesToBeReturned();
+		assertEquals("Invalid attributes to include in Result", 1, includedAttributes.size());
+		assertEquals("Invalid attributes to include in Result", SUBJECT_CATEGORY, includedAttributes.get(0).getCategory());
+		assertEquals("Invalid attributes to include in Result", SUBJECT_ID.getId(), includedAttributes.get(0).getAttributes().get(0).getAttributeId());
+	}
+
+	@Test
+	public void testContentIgnoredWithoutXPath() throws IndeterminateEvaluationException
+	{
+		final List<IndividualXACMLRequest> requests = parse(STRICT_PARSER, "{\"Request\": {\"Category\": " + RESOURCE + "}}");
+		final IndividualXACMLRequest request = requests.get(0);
+		assertFalse("Invalid ReturnPolicyIdList", request.isApplicablePolicyIdListReturned());
+		assertTrue("Content not ignored", request.getExtraContentsByCategory() == null || request.getExtraContentsByCategory().isEmpty());
+		assertEquals("Invalid number of attributes", 3, request.getNamedAttributes().size());
+	}
+
+	private static Set<String> getResourceIds(final List<IndividualXACMLRequest> requests)
+	{
+		final Set<String> resourceIds = new HashSet<>();
+		for (final IndividualXACMLRequest request : requests)
+		{
+			resourceIds.add(StandardDatatypes.STRING_FACTORY.getBagDatatype().castAttributeBag(request.getNamedAttributes().get(RESOURCE_ID)).getSingleElement().getUnderlyingValue());
+			assertTrue("Missing action in Individual Decision Request", request.getNamedAttributes().containsKey(ACTION_ID));
+		}
+
+		return resourceIds;
+	}
+
+	@Test
+	public void testRepeatedCategories() throws IndeterminateEvaluationException
+	{
+		final List<IndividualXACMLRequest> requests = parse(PARSER, "{\"Request\": {\"Resource\": [" + newResource("r1") + ", " + newResource("r2") + ", " + newResource("r3")
+				+ "], \"Action\": " + ACTION + "}}");
+		assertEquals("Invalid number of Individual Decision Requests", 3, requests.size());
+		assertEquals("Invalid Individual Decision Requests", new HashSet<>(Arrays.asList("r1", "r2", "r3")), getResourceIds(requests));
+	}
+
+	@Test
+	public void testMultiRequests() throws IndeterminateEvaluationException
+	{
+		final List<IndividualXACMLRequest> requests = parse(PARSER, "{\"Request\": {\"Resource\": [" + newResource("r1") + ", " + newResource("r2") + "], \"Action\": " + ACTION
+				+ ", \"MultiRequests\": {\"RequestReference\": [{\"ReferenceId\": [\"r2\", \"action\"]}]}}}");
+		assertEquals("Invalid number of Individual Decision Requests", 1, requests.size());
+		assertEquals("Invalid Individual Decision Requests", new HashSet<>(Arrays.asList("r2")), getResourceIds(requests));
+	}
+
+	private static void assertError(final JsonXACMLRequestParser parser, final String request, final String expectedStatusCode)
+	{
+		try
+		{
+			parse(parser, request);
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			assertEquals("Invalid status code", expectedStatusCode, e.getStatusCode());
+			return;
+		}
+
+		throw new AssertionError("Invalid request accepted: " + request);
+	}
+
+	@Test
+	public void testInvalidRequests()
+	{
+		// duplicate Attributes not allowed by strict parser
+		assertError(STRICT_PARSER, "{\"Request\": {\"AccessSubject\": " + SUBJECT.replace("subject:role", "subject:subject-id") + "}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		// invalid integer
+		assertError(PARSER, "{\"Request\": {\"Resource\": {\"Attribute\": {\"AttributeId\": \"a\", \"DataType\": \"integer\", \"Value\": \"forty-two\"}}}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		// unknown datatype
+		assertError(PARSER, "{\"Request\": {\"Resource\": {\"Attribute\": {\"AttributeId\": \"a\", \"DataType\": \"unknown\", \"Value\": \"x\"}}}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		// mixed JSON types without DataType
+		assertError(PARSER, "{\"Request\": {\"Resource\": {\"Attribute\": {\"AttributeId\": \"a\", \"Value\": [\"x\", 1]}}}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		// missing CategoryId
+		assertError(PARSER, "{\"Request\": {\"Category\": {\"Attribute\": {\"AttributeId\": \"a\", \"Value\": \"x\"}}}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		// malformed JSON
+		assertError(PARSER, "{\"Request\": {\"AccessSubject\": " + SUBJECT + "}", StatusHelper.STATUS_SYNTAX_ERROR);
+		assertError(PARSER, "{\"Request\": {\"AccessSubject\": " + SUBJECT + ",}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		// CombinedDecision
+		assertError(PARSER, "{\"Request\": {\"CombinedDecision\": true, \"AccessSubject\": " + SUBJECT + "}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		// invalid ReferenceId
+		assertError(PARSER, "{\"Request\": {\"Action\": " + ACTION + ", \"MultiRequests\": {\"RequestReference\": {\"ReferenceId\": [\"unknown\"]}}}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		// too many Individual Decision Requests (4 x 3 > 10)
+		assertError(PARSER, "{\"Request\": {\"Resource\": [" + newResource("r1") + ", " + newResource("r2") + ", " + newResource("r3") + ", " + newResource("r4") + "], \"Action\": ["
+				+ ACTION + ", " + ACTION + ", " + ACTION + "]}}", StatusHelper.STATUS_PROCESSING_ERROR);
+	}
+
+	private static Set<String> getCategories(final IndividualXACMLRequest request)
+	{
+		final Set<String> categories = new HashSet<>();
+		for (final AttributeFQN attributeFQN : request.getNamedAttributes().keySet())
+		{
+			categories.add(attributeFQN.getCategory());
+		}
+
+		return categories;
+	}
+
+	private static String newCategory(final String categoryId)
+	{
+		return "{" + (categoryId == null ? "" : "\"CategoryId\": \"" + categoryId + "\", ") + "\"Attribute\": {\"AttributeId\": \"urn:example:attribute\", \"Value\": \"x\"}}";
+	}
+
+	@Test
+	public void testShorthandCategories() throws IndeterminateEvaluationException
+	{
+		// shorthand members of the Request object
+		final List<IndividualXACMLRequest> requests = parse(PARSER, "{\"Request\": {\"AccessSubject\": " + newCategory(null) + ", \"Action\": " + newCategory(null) + ", \"Resource\": "
+				+ newCategory(null) + ", \"Environment\": " + newCategory(null) + ", \"RecipientSubject\": " + newCategory(null) + ", \"IntermediarySubject\": " + newCategory(null)
+				+ ", \"Codebase\": " + newCategory(null) + ", \"RequestingMachine\": " + newCategory(null) + "}}");
+		assertEquals("Invalid number of Individual Decision Requests", 1, requests.size());
+		final Set<String> expectedCategories = new HashSet<>(Arrays.asList(SUBJECT_CATEGORY, ACTION_CATEGORY, RESOURCE_CATEGORY, "urn:oasis:names:tc:xacml:3.0:attribute-category:environment",
+				"urn:oasis:names:tc:xacml:1.0:subject-category:recipient-subject", "urn:oasis:names:tc:xacml:1.0:subject-category:intermediary-subject",
+				"urn:oasis:names:tc:xacml:1.0:subject-category:codebase", "urn:oasis:names:tc:xacml:1.0:subject-category:requesting-machine"));
+		assertEquals("Invalid categories of shorthand members", expectedCategories, getCategories(requests.get(0)));
+
+		// shorthand CategoryIds in the Category member
+		final List<IndividualXACMLRequest> categoryRequests = parse(PARSER, "{\"Request\": {\"Category\": [" + newCategory("access-subject") + ", " + newCategory("action") + ", "
+				+ newCategory("resource") + ", " + newCategory("environment") + ", " + newCategory("recipient-subject") + ", " + newCategory("intermediary-subject") + ", "
+				+ newCategory("codebase") + ", " + newCategory("requesting-machine") + "]}}");
+		assertEquals("Invalid categories of shorthand CategoryIds", expectedCategories, getCategories(categoryRequests.get(0)));
+
+		// CategoryId in shorthand member: full or shorthand CategoryId of the same category
+		assertEquals("Invalid category", Collections.singleton(RESOURCE_CATEGORY), getCategories(parse(PARSER, "{\"Request\": {\"Resource\": " + newCategory(RESOURCE_CATEGORY) + "}}").get(0)));
+		assertEquals("Invalid category", Collections.singleton(RESOURCE_CATEGORY), getCategories(parse(PARSER, "{\"Request\": {\"Resource\": " + newCategory("resource") + "}}").get(0)));
+		// custom CategoryId
+		assertEquals("Invalid category", Collections.singleton("urn:example:category"), getCategories(parse(PARSER, "{\"Request\": {\"Category\": " + newCategory("urn:example:category")
+				+ "}}").get(0)));
+	}
+
+	@Test
+	public void testInvalidCategories()
+	{
+		// CategoryId not matching the shorthand member
+		assertError(PARSER, "{\"Request\": {\"Resource\": " + newCategory("action") + "}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		assertError(PARSER, "{\"Request\": {\"Resource\": " + newCategory(ACTION_CATEGORY) + "}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		// unknown shorthand member
+		assertError(PARSER, "{\"Request\": {\"Subject\": " + newCategory(null) + "}}", StatusHelper.STATUS_SYNTAX_ERROR);
+	}
+
+	@Test
+	public void testMultiRequestsReferences() throws IndeterminateEvaluationException
+	{
+		// several RequestReferences, one per Individual Decision Request, in order
+		final List<IndividualXACMLRequest> requests = parse(PARSER, "{\"Request\": {\"Resource\": [" + newResource("r1") + ", " + newResource("r2") + "], \"Action\": " + ACTION
+				+ ", \"MultiRequests\": {\"RequestReference\": [{\"ReferenceId\": [\"r1\", \"action\"]}, {\"ReferenceId\": [\"action\", \"r2\"]}]}}}");
+		assertEquals("Invalid number of Individual Decision Requests", 2, requests.size());
+		assertEquals("Invalid Individual Decision Requests", new HashSet<>(Arrays.asList("r1", "r2")), getResourceIds(requests));
+
+		// duplicate Category Id
+		assertError(PARSER, "{\"Request\": {\"Resource\": [" + newResource("r1") + ", " + newResource("r1") + "], \"Action\": " + ACTION
+				+ ", \"MultiRequests\": {\"RequestReference\": {\"ReferenceId\": [\"r1\", \"action\"]}}}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		// RequestReference to more than one Category object of the same category
+		assertError(PARSER, "{\"Request\": {\"Resource\": [" + newResource("r1") + ", " + newResource("r2") + "], \"Action\": " + ACTION
+				+ ", \"MultiRequests\": {\"RequestReference\": {\"ReferenceId\": [\"r1\", \"r2\", \"action\"]}}}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		// no RequestReference
+		assertError(PARSER, "{\"Request\": {\"Action\": " + ACTION + ", \"MultiRequests\": {\"RequestReference\": []}}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		// unexpected member in RequestReference
+		assertError(PARSER, "{\"Request\": {\"Action\": " + ACTION + ", \"MultiRequests\": {\"RequestReference\": {\"Id\": [\"action\"]}}}}", StatusHelper.STATUS_SYNTAX_ERROR);
+	}
+
+	private static String parseStringValue(final String jsonString) throws IndeterminateEvaluationException
+	{
+		final IndividualXACMLRequest request = parse(PARSER, "{\"Request\": {\"AccessSubject\": {\"Attribute\": {\"AttributeId\": \"" + SUBJECT_ID.getId() + "\", \"Value\": " + jsonString
+				+ "}}}}").get(0);
+		return StandardDatatypes.STRING_FACTORY.getBagDatatype().castAttributeBag(request.getNamedAttributes().get(SUBJECT_ID)).getSingleElement().getUnderlyingValue();
+	}
+
+	@Test
+	public void testEscapes() throws IndeterminateEvaluationException
+	{
+		assertEquals("Invalid unescaped string", "\"q\" \\ / \b\f\n\r\t", parseStringValue("\"\\\"q\\\" \\\\ \\/ \\b\\f\\n\\r\\t\""));
+		assertEquals("Invalid unescaped string", "caf\u00e9 \u20ac", parseStringValue("\"caf\\u00e9 \\u20AC\""));
+		// surrogate pair (U+1F600)
+		assertEquals("Invalid unescaped string", "smile \ud83d\ude00", parseStringValue("\"smile \\ud83d\\ude00\""));
+		// same without escape (UTF-8)
+		assertEquals("Invalid string", "smile \ud83d\ude00", parseStringValue("\"smile \ud83d\ude00\""));
+	}
+
+	@Test
+	public void testInvalidEscapes()
+	{
+		for (final String invalidString : new String[] {
+				// invalid hexadecimal digit
+				"\"\\u00g9\"",
+				// truncated
+				"\"\\u00e\"",
+				// unknown escape
+				"\"\\x41\"",
+				// unpaired high surrogate
+				"\"\\ud83d\"", "\"\\ud83d x\"", "\"\\ud83d\\n\"",
+				// high surrogate followed by non-surrogate
+				"\"\\ud83d\\u0041\"",
+				// unpaired low surrogate
+				"\"\\ude00\"",
+				// unescaped control character
+				"\"a\tb\"" })
+		{
+			assertError(PARSER, "{\"Request\": {\"AccessSubject\": {\"Attribute\": {\"AttributeId\": \"a\", \"Value\": " + invalidString + "}}}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		}
+	}
+
+	@Test
+	public void testByteOrderMark() throws IndeterminateEvaluationException
+	{
+		// UTF-8 byte order mark (EF BB BF) at the beginning
+		final List<IndividualXACMLRequest> requests = parse(PARSER, "\ufeff{\"Request\": {\"AccessSubject\": " + SUBJECT + "}}");
+		assertEquals("Invalid attribute value", new StringValue("alice"), StandardDatatypes.STRING_FACTORY.getBagDatatype().castAttributeBag(requests.get(0).getNamedAttributes().get(SUBJECT_ID))
+				.getSingleElement());
+		// not allowed elsewhere
+		assertError(PARSER, "{\"Request\": \ufeff{\"AccessSubject\": " + SUBJECT + "}}", StatusHelper.STATUS_SYNTAX_ERROR);
+		assertError(PARSER, "\ufeff\ufeff{\"Request\": {\"AccessSubject\": " + SUBJECT + "}}", StatusHelper.STATUS_SYNTAX_ERROR);
+	}
+
+	@Test
+	public void testIndeterminateResponse() throws IOException
+	{
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final JsonXACMLResponseWriter writer = new JsonXACMLResponseWriter(output);
+		writer.writeIndeterminate(new StatusHelper(StatusHelper.STATUS_SYNTAX_ERROR, Optional.of("Invalid \"value\" \u00e9")));
+		writer.writeEnd();
+		assertEquals("Invalid JSON Response", "{\"Response\":[{\"Decision\":\"Indeterminate\",\"Status\":{\"StatusCode\":{\"Value\":\"" + StatusHelper.STATUS_SYNTAX_ERROR
+				+ "\"},\"StatusMessage\":\"Invalid \\\"value\\\" \u00e9\"}}]}", new String(output.toByteArray(), StandardCharsets.UTF_8));
+	}
+}
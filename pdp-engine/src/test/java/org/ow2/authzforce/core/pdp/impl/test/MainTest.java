@@ -22,6 +22,9 @@ import org.junit.BeforeClass;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
+import org.ow2.authzforce.core.pdp.impl.JsonStreamReaderTest;
+import org.ow2.authzforce.core.pdp.impl.ShortCircuitEvaluationOrderTest;
+import org.ow2.authzforce.core.pdp.impl.policy.PolicySetTargetIndexTest;
 import org.ow2.authzforce.core.pdp.impl.test.func.BagFunctionsTest;
 import org.ow2.authzforce.core.pdp.impl.test.func.DateTimeArithmeticFunctionsTest;
 import org.ow2.authzforce.core.pdp.impl.test.func.EqualityFunctionsTest;
@@ -52,7 +55,12 @@ import org.slf4j.LoggerFactory;
 @RunWith(Suite.class)
 @SuiteClasses(value = { EqualityFunctionsTest.class, NumericArithmeticFunctionsTest.class, StringConversionFunctionsTest.class, NumericConversionFunctionsTest.class, LogicalFunctionsTest.class,
 		NumericComparisonFunctionsTest.class, DateTimeArithmeticFunctionsTest.class, NonNumericComparisonFunctionsTest.class, StringFunctionsTest.class, BagFunctionsTest.class,
-		SetFunctionsTest.class, HigherOrderFunctionsTest.class, RegExpBasedFunctionsTest.class, SpecialMatchFunctionsTest.class })
+		SetFunctionsTest.class, HigherOrderFunctionsTest.class, RegExpBasedFunctionsTest.class, SpecialMatchFunctionsTest.class, AttributePrefetchTest.class,
+		BatchAttributeResolutionTest.class, CachingAttributeProviderModuleTest.class, CompactEvaluationContextTest.class,
+		RequestScopedMemoTest.class, ShortCircuitEvaluationOrderTest.class, MatchEvaluationOrderTest.class,
+		MatchEvaluatorTest.class, StaxXACMLRequestParserTest.class,
+		JsonXACMLRequestParserTest.class, JsonStreamReaderTest.class, XmlXACMLResponseWriterTest.class,
+		PolicyVariableScopeTest.class, PolicySetTargetIndexTest.class })
 public class MainTest
 {
 	/**
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Target;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeSelectorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.api.value.XPathValue;
+import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
+import org.ow2.authzforce.core.pdp.impl.IndividualDecisionRequestContext;
+import org.ow2.authzforce.core.pdp.impl.TargetEvaluators;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.ow2.authzforce.core.pdp.impl.value.StandardDatatypeFactoryRegistry;
+import org.ow2.authzforce.core.xmlns.pdp.MatchEvaluationOrder;
+
+/**
+ * Test of the order of evaluation of the Matches of an AllOf (PDP's {@code matchEvaluationOrder}): Indeterminate reported as if the Matches were evaluated in document order, before and after
+ * reordering
+ *
+ */
+public class MatchEvaluationOrderTest
+{
+	private static final String SUBJECT_CATEGORY = "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject";
+
+	private static final AttributeFQN SUBJECT_ID = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:1.0:subject:subject-id");
+
+	private static final AttributeFQN SUBJECT_ROLE = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:2.0:subject:role");
+
+	/*
+	 * Same as ShortCircuitEvaluationOrder's
+	 */
+	private static final int REORDERING_PERIOD = 1024;
+
+	private static final String SUBJECT_ID_MATCH = "<Match MatchId=\"urn:oasis:names:tc:xacml:1.0:function:string-equal\">"
+			+ "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">alice</AttributeValue><AttributeDesignator Category=\"" + SUBJECT_CATEGORY
+			+ "\" AttributeId=\"urn:oasis:names:tc:xacml:1.0:subject:subject-id\" DataType=\"http://www.w3.org/2001/XMLSchema#string\" MustBePresent=\"true\" /></Match>";
+
+	/*
+	 * Costlier than SUBJECT_ID_MATCH (regular expression)
+	 */
+	private static final String SUBJECT_ROLE_MATCH = "<Match MatchId=\"urn:oasis:names:tc:xacml:1.0:function:string-regexp-match\">"
+			+ "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">^man.*</AttributeValue><AttributeDesignator Category=\"" + SUBJECT_CATEGORY
+			+ "\" AttributeId=\"urn:oasis:names:tc:xacml:2.0:subject:role\" DataType=\"http://www.w3.org/2001/XMLSchema#string\" MustBePresent=\"true\" /></Match>";
+
+	/**
+	 * Records the attributes consumed from the evaluation context, i.e. the AttributeDesignators evaluated, in order
+	 */
+	private static final class AttributeConsumptionRecorder implements EvaluationContext.Listener
+	{
+		private final List<AttributeFQN> consumedAttributes = new ArrayList<>();
+
+		@Override
+		public <AV extends AttributeValue> void namedAttributeValueConsumed(final AttributeFQN attributeFQN, final AttributeBag<AV> value)
+		{
+			consumedAttributes.add(attributeFQN);
+		}
+
+		@Override
+		public <AV extends AttributeValue> void namedAttributeValueProduced(final AttributeFQN attributeFQN, final AttributeBag<AV> value)
+		{
+			// not recorded
+		}
+
+		@Override
+		public <AV extends AttributeValue> void attributeSelectorResultConsumed(final AttributeSelectorExpression<AV> attributeSelector, final Bag<AV> value)
+		{
+			// not recorded
+		}
+
+		@Override
+		public <AV extends AttributeValue> void attributeSelectorResultProduced(final AttributeSelectorExpression<AV> attributeSelector,
+				final Optional<AttributeBag<XPathValue>> contextSelectorValue, final Bag<AV> value)
+		{
+			// not recorded
+		}
+	}
+
+	private static BooleanEvaluator newTargetEvaluator(final MatchEvaluationOrder matchEvaluationOrder, final String matches) throws JAXBException, IllegalArgumentException, IOException
+	{
+		final Target target = (Target) JAXBContext.newInstance(Target.class).createUnmarshaller()
+				.unmarshal(new StringReader("<Target xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\"><AnyOf><AllOf>" + matches + "</AllOf></AnyOf></Target>"));
+		try (DepthLimitingExpressionFactory expressionFactory = new DepthLimitingExpressionFactory(StandardDatatypeFactoryRegistry.getRegistry(false), StandardFunction.getRegistry(false), null,
+				0, false, false, matchEvaluationOrder, false, false, null))
+		{
+			return TargetEvaluators.getInstance(target, null, expressionFactory);
+		}
+	}
+
+	private static EvaluationContext newContext(final String subjectId, final String role)
+	{
+		final Map<AttributeFQN, AttributeBag<?>> namedAttributes = new HashMap<>();
+		if (subjectId != null)
+		{
+			namedAttributes.put(SUBJECT_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue(subjectId)));
+		}
+
+		if (role != null)
+		{
+			namedAttributes.put(SUBJECT_ROLE, Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue(role)));
+		}
+
+		return new IndividualDecisionRequestContext(namedAttributes, null, false);
+	}
+
+	/*
+	 * Attributes consumed by the evaluation of the Target, in order
+	 */
+	private static List<AttributeFQN> getConsumedAttributes(final BooleanEvaluator targetEvaluator, final String subjectId, final String role) throws IndeterminateEvaluationException
+	{
+		final EvaluationContext context = newContext(subjectId, role);
+		final AttributeConsumptionRecorder recorder = new AttributeConsumptionRecorder();
+		context.putListener(AttributeConsumptionRecorder.class, recorder);
+		assertFalse("Invalid Target evaluation result", targetEvaluator.evaluate(context));
+		return recorder.consumedAttributes;
+	}
+
+	/*
+	 * Asserts that the Indeterminate of the AllOf (both Matches Indeterminate: attributes missing) is the one of the last Match in document order
+	 */
+	private static void assertLastIndeterminateInDocumentOrder(final BooleanEvaluator targetEvaluator)
+	{
+		try
+		{
+			targetEvaluator.evaluate(newContext(null, null));
+			fail("Target with missing attributes not Indeterminate");
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			for (Throwable cause = e; cause != null; cause = cause.getCause())
+			{
+				if (cause.getMessage() != null && cause.getMessage().startsWith("Error evaluating <AllOf>'s <Match>#"))
+				{
+					assertEquals("Indeterminate reported for the wrong Match", "Error evaluating <AllOf>'s <Match>#1", cause.getMessage());
+					return;
+				}
+			}
+
+			throw new AssertionError("Indeterminate not from the AllOf: " + e, e);
+		}
+	}
+
+	@Test
+	public void testIndeterminateInDocumentOrderWithCostOrder() throws JAXBException, IllegalArgumentException, IOException, IndeterminateEvaluationException
+	{
+		for (final MatchEvaluationOrder mode : MatchEvaluationOrder.values())
+		{
+			/*
+			 * The costlier Match first in document order, therefore evaluated last unless in DOCUMENT mode. In document order, the role Match is false, therefore the subject-id Match is not
+			 * evaluated.
+			 */
+			final BooleanEvaluator targetEvaluator = newTargetEvaluator(mode, SUBJECT_ROLE_MATCH + SUBJECT_ID_MATCH);
+			assertEquals("Invalid order of evaluation (" + mode + ")", mode == MatchEvaluationOrder.DOCUMENT ? Collections.singletonList(SUBJECT_ROLE) : Arrays.asList(SUBJECT_ID, SUBJECT_ROLE),
+					getConsumedAttributes(targetEvaluator, "alice", "employee"));
+			assertLastIndeterminateInDocumentOrder(targetEvaluator);
+		}
+	}
+
+	@Test
+	public void testIndeterminateInDocumentOrderAfterAdaptiveReordering() throws JAXBException, IllegalArgumentException, IOException, IndeterminateEvaluationException
+	{
+		// the cheaper Match first in document order, therefore evaluated first until reordering
+		final BooleanEvaluator targetEvaluator = newTargetEvaluator(MatchEvaluationOrder.ADAPTIVE, SUBJECT_ID_MATCH + SUBJECT_ROLE_MATCH);
+		/*
+		 * The first Match is never decisive (always true), the second one always is (always false)
+		 */
+		for (int i = 0; i < REORDERING_PERIOD - 1; i++)
+		{
+			assertEquals("Invalid order of evaluation before reordering", Arrays.asList(SUBJECT_ID, SUBJECT_ROLE), getConsumedAttributes(targetEvaluator, "alice", "employee"));
+		}
+
+		// reordering at the beginning of this evaluation: the second Match first, then no need to evaluate the first one
+		assertEquals("Invalid order of evaluation after reordering", Collections.singletonList(SUBJECT_ROLE), getConsumedAttributes(targetEvaluator, "alice", "employee"));
+		assertLastIndeterminateInDocumentOrder(targetEvaluator);
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Match;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.expression.Expression;
+import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.func.Function;
+import org.ow2.authzforce.core.pdp.api.func.FunctionCall;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
+import org.ow2.authzforce.core.pdp.api.value.IntegerValue;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.IndividualDecisionRequestContext;
+import org.ow2.authzforce.core.pdp.impl.MatchEvaluator;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.ow2.authzforce.core.pdp.impl.value.StandardDatatypeFactoryRegistry;
+import org.ow2.authzforce.core.xmlns.pdp.StandardEnvironmentAttributeSource;
+
+/**
+ * Test of {@link MatchEvaluator} with equality match functions evaluated as bag membership checks: same result as the generic evaluation with the equivalent any-of function, in particular with an
+ * empty bag, an Indeterminate AttributeDesignator or a datatype mismatch
+ *
+ */
+public class MatchEvaluatorTest
+{
+	private static final String SUBJECT_CATEGORY = "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject";
+
+	private static final String ATTRIBUTE_ID = "urn:example:subject:attribute";
+
+	private static final AttributeFQN ATTRIBUTE_FQN = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), ATTRIBUTE_ID);
+
+	private static final String XSD_STRING = "http://www.w3.org/2001/XMLSchema#string";
+
+	private static final String XSD_INTEGER = "http://www.w3.org/2001/XMLSchema#integer";
+
+	private static final String XSD_BOOLEAN = "http://www.w3.org/2001/XMLSchema#boolean";
+
+	private static final ExpressionFactory EXPRESSION_FACTORY;
+	static
+	{
+		try
+		{
+			EXPRESSION_FACTORY = new DepthLimitingExpressionFactory(StandardDatatypeFactoryRegistry.getRegistry(false), StandardFunction.getRegistry(false), null, 0, false, false, null);
+		}
+		catch (IllegalArgumentException | IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Match newMatch(final String matchId, final String valueDatatype, final String value, final String designatorDatatype, final boolean mustBePresent) throws JAXBException
+	{
+		return (Match) JAXBContext.newInstance(Match.class).createUnmarshaller().unmarshal(
+				new StringReader("<Match xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" MatchId=\"" + matchId + "\"><AttributeValue DataType=\"" + valueDatatype + "\">" + value
+						+ "</AttributeValue><AttributeDesignator Category=\"" + SUBJECT_CATEGORY + "\" AttributeId=\"" + ATTRIBUTE_ID + "\" DataType=\"" + designatorDatatype
+						+ "\" MustBePresent=\"" + mustBePresent + "\" /></Match>"));
+	}
+
+	/*
+	 * Result of the Match as string: true, false or the status code if Indeterminate
+	 */
+	private static String evaluate(final MatchEvaluator matchEvaluator, final EvaluationContext context)
+	{
+		try
+		{
+			return Boolean.toString(matchEvaluator.match(context));
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			return "Indeterminate: " + e.getStatusCode();
+		}
+	}
+
+	/*
+	 * Result of the generic evaluation of the Match: any-of(match function, AttributeValue, AttributeDesignator)
+	 */
+	private static String evaluateWithAnyOf(final Match jaxbMatch, final EvaluationContext context)
+	{
+		final Function<BooleanValue> anyOfFunc = EXPRESSION_FACTORY.getFunction(StandardFunction.ANY_OF.getId()).getValue().get();
+		final Expression<? extends AttributeValue> attrValueExpr = EXPRESSION_FACTORY.getInstance(jaxbMatch.getAttributeValue(), null);
+		final Expression<?> bagExpr = EXPRESSION_FACTORY.getInstance(jaxbMatch.getAttributeDesignator(), null, null);
+		final FunctionCall<BooleanValue> anyOfFuncCall = anyOfFunc.newCall(Arrays.<Expression<?>> asList(EXPRESSION_FACTORY.getFunction(jaxbMatch.getMatchId()), attrValueExpr, bagExpr));
+		try
+		{
+			return Boolean.toString(anyOfFuncCall.evaluate(context).getUnderlyingValue().booleanValue());
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			return "Indeterminate: " + e.getStatusCode();
+		}
+	}
+
+	/*
+	 * Evaluates the Match in a context with the given request attribute (none if null), with and without bag indexing, and asserts that the result is the expected one and the same as the generic
+	 * evaluation
+	 */
+	private static void assertMatchResult(final Match jaxbMatch, final AttributeBag<?> attributeBag, final String expectedResult)
+	{
+		final MatchEvaluator matchEvaluator = new MatchEvaluator(jaxbMatch, null, EXPRESSION_FACTORY);
+		final Map<AttributeFQN, AttributeBag<?>> requestAttributes = attributeBag == null ? Collections.<AttributeFQN, AttributeBag<?>> emptyMap() : Collections
+				.<AttributeFQN, AttributeBag<?>> singletonMap(ATTRIBUTE_FQN, attributeBag);
+		// bags indexed from 2 values
+		final EvaluationContext indexingContext = CompactEvaluationContextTest.newContext(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP, 2, requestAttributes);
+		final EvaluationContext nonIndexingContext = new IndividualDecisionRequestContext(requestAttributes, null, false);
+		for (final EvaluationContext context : new EvaluationContext[] { indexingContext, nonIndexingContext })
+		{
+			assertEquals("Invalid result of generic Match evaluation", expectedResult, evaluateWithAnyOf(jaxbMatch, context));
+			// twice since the bag is indexed on the second lookup only
+			assertEquals("Result of Match evaluation different from generic evaluation", expectedResult, evaluate(matchEvaluator, context));
+			assertEquals("Result of Match evaluation different from generic evaluation", expectedResult, evaluate(matchEvaluator, context));
+		}
+	}
+
+	@SafeVarargs
+	private static <AV extends AttributeValue> AttributeBag<AV> newBag(final Datatype<AV> datatype, final AV... values)
+	{
+		return Bags.newAttributeBag(datatype, Arrays.asList(values));
+	}
+
+	@Test
+	public void testStringMatch() throws JAXBException
+	{
+		final AttributeBag<StringValue> bag = newBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue("a"), new StringValue("b"), new StringValue("c"));
+		assertMatchResult(newMatch(StandardFunction.STRING_EQUAL.getId(), XSD_STRING, "b", XSD_STRING, false), bag, "true");
+		assertMatchResult(newMatch(StandardFunction.STRING_EQUAL.getId(), XSD_STRING, "B", XSD_STRING, false), bag, "false");
+		// single value (not indexed)
+		assertMatchResult(newMatch(StandardFunction.STRING_EQUAL.getId(), XSD_STRING, "a", XSD_STRING, false), newBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue("a")),
+				"true");
+	}
+
+	@Test
+	public void testIntegerAndBooleanMatch() throws JAXBException
+	{
+		final AttributeBag<IntegerValue> integerBag = newBag(StandardDatatypes.INTEGER_FACTORY.getDatatype(), new IntegerValue("41"), new IntegerValue("42"));
+		assertMatchResult(newMatch(StandardFunction.INTEGER_EQUAL.getId(), XSD_INTEGER, "42", XSD_INTEGER, false), integerBag, "true");
+		assertMatchResult(newMatch(StandardFunction.INTEGER_EQUAL.getId(), XSD_INTEGER, "43", XSD_INTEGER, false), integerBag, "false");
+		assertMatchResult(newMatch(StandardFunction.BOOLEAN_EQUAL.getId(), XSD_BOOLEAN, "true", XSD_BOOLEAN, false),
+				newBag(StandardDatatypes.BOOLEAN_FACTORY.getDatatype(), BooleanValue.FALSE), "false");
+	}
+
+	@Test
+	public void testEmptyBag() throws JAXBException
+	{
+		// attribute missing, MustBePresent=false
+		assertMatchResult(newMatch(StandardFunction.STRING_EQUAL.getId(), XSD_STRING, "a", XSD_STRING, false), null, "false");
+		// attribute with empty bag in the request
+		assertMatchResult(newMatch(StandardFunction.STRING_EQUAL.getId(), XSD_STRING, "a", XSD_STRING, false), Bags.emptyAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(),
+				new IndeterminateEvaluationException("No value", StatusHelper.STATUS_MISSING_ATTRIBUTE)), "false");
+	}
+
+	@Test
+	public void testIndeterminateAttributeDesignator() throws JAXBException
+	{
+		// attribute missing, MustBePresent=true
+		assertMatchResult(newMatch(StandardFunction.STRING_EQUAL.getId(), XSD_STRING, "a", XSD_STRING, true), null, "Indeterminate: " + StatusHelper.STATUS_MISSING_ATTRIBUTE);
+	}
+
+	@Test
+	public void testMismatchedDatatypeInContext() throws JAXBException
+	{
+		// the request attribute has a different datatype than the AttributeDesignator
+		assertMatchResult(newMatch(StandardFunction.STRING_EQUAL.getId(), XSD_STRING, "42", XSD_STRING, false), newBag(StandardDatatypes.INTEGER_FACTORY.getDatatype(), new IntegerValue("42")),
+				"Indeterminate: " + StatusHelper.STATUS_SYNTAX_ERROR);
+	}
+
+	@Test
+	public void testMismatchedDatatypeInMatch() throws JAXBException
+	{
+		// AttributeValue datatype different from the match function's (rejected like the equivalent any-of call)
+		try
+		{
+			new MatchEvaluator(newMatch(StandardFunction.STRING_EQUAL.getId(), XSD_INTEGER, "42", XSD_INTEGER, false), null, EXPRESSION_FACTORY);
+			fail("Match with invalid datatypes accepted");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Policy;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.VariableDefinition;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.VariableReferenceType;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.impl.combining.StandardCombiningAlgorithm;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.ow2.authzforce.core.pdp.impl.policy.PolicyEvaluators;
+import org.ow2.authzforce.core.pdp.impl.value.StandardDatatypeFactoryRegistry;
+
+/**
+ * Test of the scope of VariableDefinitions: the variables of a Policy are visible only when parsing the Policy (own variable scope), including when the parsing fails, so that they do not
+ * conflict with the variables of the next Policy parsed with the same expression factory
+ *
+ */
+public class PolicyVariableScopeTest
+{
+	private static Policy newPolicy(final String policyId, final String conditionVariableId) throws JAXBException
+	{
+		return (Policy) JAXBContext.newInstance(Policy.class).createUnmarshaller().unmarshal(
+				new StringReader("<Policy xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" PolicyId=\"" + policyId
+						+ "\" Version=\"1.0\" RuleCombiningAlgId=\"urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-overrides\"><Target/>"
+						+ "<VariableDefinition VariableId=\"var\"><AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#boolean\">true</AttributeValue></VariableDefinition>"
+						+ "<Rule RuleId=\"rule\" Effect=\"Permit\"><Condition><VariableReference VariableId=\"" + conditionVariableId + "\"/></Condition></Rule></Policy>"));
+	}
+
+	@Test
+	public void testVariablesRemovedAfterInvalidPolicy() throws JAXBException, IllegalArgumentException, IOException
+	{
+		try (DepthLimitingExpressionFactory expressionFactory = new DepthLimitingExpressionFactory(StandardDatatypeFactoryRegistry.getRegistry(false), StandardFunction.getRegistry(false), null, 0,
+				false, false, null))
+		{
+			try
+			{
+				// invalid after the VariableDefinition
+				PolicyEvaluators.getInstance(newPolicy("invalid", "undefined"), null, null, expressionFactory, StandardCombiningAlgorithm.REGISTRY);
+				fail("Policy with undefined VariableReference accepted");
+			}
+			catch (final IllegalArgumentException e)
+			{
+				// expected
+			}
+
+			// same VariableId, in the same thread
+			assertNotNull("Valid Policy rejected", PolicyEvaluators.getInstance(newPolicy("valid", "var"), null, null, expressionFactory, StandardCombiningAlgorithm.REGISTRY));
+		}
+	}
+
+	@Test
+	public void testPolicyScopesIndependent() throws JAXBException, IllegalArgumentException, IOException
+	{
+		try (DepthLimitingExpressionFactory expressionFactory = new DepthLimitingExpressionFactory(StandardDatatypeFactoryRegistry.getRegistry(false), StandardFunction.getRegistry(false), null, 0,
+				false, false, null))
+		{
+			final DepthLimitingExpressionFactory policyScope = expressionFactory.newPolicyScope();
+			policyScope.addVariable((VariableDefinition) JAXBContext.newInstance(VariableDefinition.class).createUnmarshaller().unmarshal(
+					new StringReader("<VariableDefinition xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" VariableId=\"var\">"
+							+ "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#boolean\">true</AttributeValue></VariableDefinition>")), null, null);
+			assertNotNull("Variable undefined in its Policy scope", policyScope.getInstance(new VariableReferenceType("var"), null, null));
+			for (final DepthLimitingExpressionFactory otherScope : new DepthLimitingExpressionFactory[] { expressionFactory, expressionFactory.newPolicyScope() })
+			{
+				try
+				{
+					otherScope.getInstance(new VariableReferenceType("var"), null, null);
+					fail("Variable of a Policy scope visible outside the scope");
+				}
+				catch (final IllegalArgumentException e)
+				{
+					// expected
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.impl.IndividualDecisionRequestContext;
+import org.ow2.authzforce.core.pdp.impl.RequestScopedMemo;
+import org.ow2.authzforce.core.xmlns.pdp.StandardEnvironmentAttributeSource;
+
+/**
+ * Test of {@link RequestScopedMemo}: unique slots, storage in slot-indexed and String-keyed evaluation contexts, reuse of the slots of garbage-collected memos and exhaustion of the slots
+ *
+ */
+public class RequestScopedMemoTest
+{
+	private static EvaluationContext newSlotIndexedContext()
+	{
+		return CompactEvaluationContextTest.newContext(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP, 0, Collections.<AttributeFQN, AttributeBag<?>> emptyMap());
+	}
+
+	private static EvaluationContext newStringKeyedContext()
+	{
+		return new IndividualDecisionRequestContext(Collections.<AttributeFQN, AttributeBag<?>> emptyMap(), null, false);
+	}
+
+	private static AtomicInteger getLastSlot() throws ReflectiveOperationException
+	{
+		final Field lastSlotField = RequestScopedMemo.class.getDeclaredField("LAST_SLOT");
+		lastSlotField.setAccessible(true);
+		return (AtomicInteger) lastSlotField.get(null);
+	}
+
+	private static int getSlot(final RequestScopedMemo memo)
+	{
+		final String contextKey = memo.toString();
+		return Integer.parseInt(contextKey.substring(contextKey.lastIndexOf('#') + 1));
+	}
+
+	private static void assertMemosIsolated(final EvaluationContext context)
+	{
+		final RequestScopedMemo memo1 = new RequestScopedMemo();
+		final RequestScopedMemo memo2 = new RequestScopedMemo();
+		assertNull("Unexpected memo value in new context", memo1.get(context));
+		memo1.put(context, "value1");
+		assertNull("Memo value shared with other memo", memo2.get(context));
+		memo2.put(context, "value2");
+		assertEquals("Invalid memo value", "value1", memo1.get(context));
+		assertEquals("Invalid memo value", "value2", memo2.get(context));
+		memo1.put(context, "new-value1");
+		assertEquals("Memo value not replaced", "new-value1", memo1.get(context));
+		assertEquals("Other memo value replaced", "value2", memo2.get(context));
+	}
+
+	@Test
+	public void testUniqueSlots()
+	{
+		final RequestScopedMemo memo1 = new RequestScopedMemo();
+		final RequestScopedMemo memo2 = new RequestScopedMemo();
+		assertNotEquals("Same slot for different memos", getSlot(memo1), getSlot(memo2));
+		assertTrue("Invalid slot", getSlot(memo1) > 0 && getSlot(memo2) > 0);
+	}
+
+	@Test
+	public void testSlotIndexedContext()
+	{
+		assertMemosIsolated(newSlotIndexedContext());
+	}
+
+	@Test
+	public void testStringKeyedContext()
+	{
+		assertMemosIsolated(newStringKeyedContext());
+	}
+
+	@Test
+	public void testMemoValuesNotSharedBetweenContexts()
+	{
+		final RequestScopedMemo memo = new RequestScopedMemo();
+		final EvaluationContext context1 = newSlotIndexedContext();
+		final EvaluationContext context2 = newSlotIndexedContext();
+		memo.put(context1, "value");
+		assertNull("Memo value shared between contexts", memo.get(context2));
+	}
+
+	@Test
+	public void testCollectedMemoSlotReused() throws ReflectiveOperationException, InterruptedException
+	{
+		final int collectedMemoSlot = getSlot(new RequestScopedMemo());
+		final int lastNewSlot = getLastSlot().get();
+		// memos created until the collected memo's slot is reused (kept reachable so that their own slots are not)
+		final List<RequestScopedMemo> memos = new ArrayList<>();
+		for (int i = 0; i < 100; i++)
+		{
+			System.gc();
+			Thread.sleep(10);
+			/*
+			 * Slots of collected memos are reused before new slots (> lastNewSlot)
+			 */
+			RequestScopedMemo memo;
+			do
+			{
+				memo = new RequestScopedMemo();
+				memos.add(memo);
+				if (getSlot(memo) == collectedMemoSlot)
+				{
+					return;
+				}
+			}
+			while (getSlot(memo) <= lastNewSlot);
+		}
+
+		fail("Slot of garbage-collected memo not reused");
+	}
+
+	@Test
+	public void testSlotExhaustion() throws ReflectiveOperationException
+	{
+		final AtomicInteger lastSlot = getLastSlot();
+		final int initialLastSlot = lastSlot.get();
+		try
+		{
+			lastSlot.set(Integer.MAX_VALUE - 1);
+			final RequestScopedMemo lastMemo = new RequestScopedMemo();
+			assertEquals("Invalid last slot", Integer.MAX_VALUE, getSlot(lastMemo));
+			/*
+			 * No new slot left: only the slots of the memos collected so far may be reused, then creation must fail instead of wrapping around to slots of memos still in use
+			 */
+			final List<RequestScopedMemo> memos = new ArrayList<>();
+			final Set<Integer> slots = new HashSet<>();
+			slots.add(getSlot(lastMemo));
+			try
+			{
+				while (true)
+				{
+					final RequestScopedMemo memo = new RequestScopedMemo();
+					memos.add(memo);
+					assertTrue("Slot of a memo in use assigned to a new memo", slots.add(getSlot(memo)));
+				}
+			}
+			catch (final IllegalStateException e)
+			{
+				// expected
+			}
+		}
+		finally
+		{
+			lastSlot.set(initialLastSlot);
+		}
+	}
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import net.sf.saxon.s9api.XdmNode;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attributes;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.ImmutablePdpDecisionRequest;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.IntegerValue;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.api.XMLUtils;
+import org.ow2.authzforce.core.pdp.impl.StaxXACMLRequestParser;
+import org.ow2.authzforce.core.pdp.impl.value.StandardDatatypeFactoryRegistry;
+
+/**
+ * Test of the streaming XACML/XML request parser ({@link StaxXACMLRequestParser})
+ *
+ */
+public class StaxXACMLRequestParserTest
+{
+	private static final String SUBJECT_CATEGORY = "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject";
+
+	private static final String RESOURCE_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:resource";
+
+	private static final AttributeFQN SUBJECT_ID = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:1.0:subject:subject-id");
+
+	private static final AttributeFQN SUBJECT_ROLE = AttributeFQNs.newInstance(SUBJECT_CATEGORY, Optional.empty(), "urn:oasis:names:tc:xacml:2.0:subject:role");
+
+	private static final AttributeFQN RESOURCE_SIZE = AttributeFQNs.newInstance(RESOURCE_CATEGORY, Optional.of("urn:example:issuer"), "urn:example:resource:size");
+
+	private static final StaxXACMLRequestParser PARSER = new StaxXACMLRequestParser(StandardDatatypeFactoryRegistry.getRegistry(false), true, true, XMLUtils.SAXON_PROCESSOR);
+
+	private static final StaxXACMLRequestParser STRICT_PARSER = new StaxXACMLRequestParser(StandardDatatypeFactoryRegistry.getRegistry(false), false, false, null);
+
+	/**
+	 * Request builder without any transformation of the attributes
+	 */
+	private static final class SimpleRequestBuilder implements PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest>
+	{
+		private final Map<AttributeFQN, AttributeBag<?>> namedAttributes = new HashMap<>();
+		private final Map<String, XdmNode> contentsByCategory = new HashMap<>();
+
+		@Override
+		public Bag<?> putNamedAttributeIfAbsent(final AttributeFQN attributeFQN, final AttributeBag<?> attributeValues)
+		{
+			return namedAttributes.putIfAbsent(attributeFQN, attributeValues);
+		}
+
+		@Override
+		public XdmNode putContentIfAbsent(final String category, final XdmNode content)
+		{
+			return contentsByCategory.putIfAbsent(category, content);
+		}
+
+		@Override
+		public ImmutablePdpDecisionRequest build(final boolean returnApplicablePolicies)
+		{
+			return ImmutablePdpDecisionRequest.getInstance(namedAttributes, contentsByCategory, returnApplicablePolicies);
+		}
+
+		@Override
+		public void reset()
+		{
+			namedAttributes.clear();
+			contentsByCategory.clear();
+		}
+	}
+
+	private static StaxXACMLRequestParser.ParsedRequest parse(final StaxXACMLRequestParser parser, final String request) throws IndeterminateEvaluationException
+	{
+		return parser.parse(new ByteArrayInputStream(request.getBytes(StandardCharsets.UTF_8)), new SimpleRequestBuilder());
+	}
+
+	private static String newRequest(final String returnPolicyIdList, final String attributesElements)
+	{
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><Request xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" CombinedDecision=\"false\" ReturnPolicyIdList=\""
+				+ returnPolicyIdList + "\">" + attributesElements + "</Request>";
+	}
+
+	private static final String SUBJECT_ATTRIBUTES = "<Attributes Category=\"" + SUBJECT_CATEGORY + "\">"
+			+ "<Attribute AttributeId=\"urn:oasis:names:tc:xacml:1.0:subject:subject-id\" IncludeInResult=\"true\">"
+			+ "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">alice</AttributeValue></Attribute>"
+			+ "<Attribute AttributeId=\"urn:oasis:names:tc:xacml:2.0:subject:role\" IncludeInResult=\"false\">"
+			+ "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">manager</AttributeValue></Attribute>"
+			+ "<Attribute AttributeId=\"urn:oasis:names:tc:xacml:2.0:subject:role\" IncludeInResult=\"false\">"
+			+ "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">employee</AttributeValue></Attribute></Attributes>";
+
+	private static final String RESOURCE_ATTRIBUTES = "<Attributes Category=\"" + RESOURCE_CATEGORY + "\">"
+			+ "<Content><md:record xmlns:md=\"urn:example:med:schemas:record\"><md:name>Bartholomew Simpson</md:name></md:record></Content>"
+			+ "<Attribute AttributeId=\"urn:example:resource:size\" Issuer=\"urn:example:issuer\" IncludeInResult=\"false\">"
+			+ "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#integer\">42</AttributeValue></Attribute></Attributes>";
+
+	@Test
+	public void testAttributes() throws IndeterminateEvaluationException
+	{
+		final StaxXACMLRequestParser.ParsedRequest parsedRequest = parse(PARSER, newRequest("true", SUBJECT_ATTRIBUTES + RESOURCE_ATTRIBUTES));
+		final ImmutablePdpDecisionRequest request = parsedRequest.getDecisionRequest();
+		assertTrue("Invalid ReturnPolicyIdList", request.isApplicablePolicyIdListReturned());
+		assertEquals("Invalid number of attributes", 3, request.getNamedAttributes().size());
+		assertEquals("Invalid attribute value", new StringValue("alice"), StandardDatatypes.STRING_FACTORY.getBagDatatype().castAttributeBag(request.getNamedAttributes().get(SUBJECT_ID))
+				.getSingleElement());
+		// duplicate Attributes (lax parser) -> values merged
+		final Bag<StringValue> roles = StandardDatatypes.STRING_FACTORY.getBagDatatype().castAttributeBag(request.getNamedAttributes().get(SUBJECT_ROLE));
+		final Set<StringValue> roleSet = new HashSet<>();
+		for (final StringValue role : roles)
+		{
+			roleSet.add(role);
+		}
+
+		assertEquals("Invalid values of duplicate attributes", new HashSet<>(Arrays.asList(new StringValue("manager"), new StringValue("employee"))), roleSet);
+		assertEquals("Invalid attribute value", new IntegerValue("42"), StandardDatatypes.INTEGER_FACTORY.getBagDatatype().castAttributeBag(request.getNamedAttributes().get(RESOURCE_SIZE))
+				.getSingleElement());
+		assertTrue("Missing Content", request.getExtraContentsByCategory().containsKey(RESOURCE_CATEGORY));
+
+		final List<Attributes> includedAttributes = parsedRequest.getAttributesToIncludeInResult();
+		assertEquals("Invalid attributes to include in Result", 1, includedAttributes.size());
+		assertEquals("Invalid attributes to include in Result", SUBJECT_CATEGORY, includedAttributes.get(0).getCategory());
+		assertEquals("Invalid attributes to include in Result", Arrays.asList(SUBJECT_ID.getId()), Arrays.asList(includedAttributes.get(0).getAttributes().get(0).getAttributeId()));
+	}
+
+	@Test
+	public void testContentIgnoredWithoutXPath() throws IndeterminateEvaluationException
+	{
+		final ImmutablePdpDecisionRequest request = parse(STRICT_PARSER, newRequest("false", RESOURCE_ATTRIBUTES)).getDecisionRequest();
+		assertFalse("Invalid ReturnPolicyIdList", request.isApplicablePolicyIdListReturned());
+		assertTrue("Content not ignored", request.getExtraContentsByCategory() == null || request.getExtraContentsByCategory().isEmpty());
+		assertEquals("Invalid number of attributes", 1, request.getNamedAttributes().size());
+	}
+
+	/*
+	 * Asserts that the request is rejected with a syntax error, with the expected message fragment in the error message (any message if null)
+	 */
+	private static void assertSyntaxError(final StaxXACMLRequestParser parser, final String request, final String expectedMessageFragment)
+	{
+		try
+		{
+			parse(parser, request);
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			assertEquals("Invalid status code", StatusHelper.STATUS_SYNTAX_ERROR, e.getStatusCode());
+			if (expectedMessageFragment != null)
+			{
+				assertTrue("Invalid error message: " + e.getMessage(), e.getMessage().contains(expectedMessageFragment));
+			}
+
+			return;
+		}
+
+		throw new AssertionError("Invalid request accepted: " + request);
+	}
+
+	private static void assertSyntaxError(final StaxXACMLRequestParser parser, final String request)
+	{
+		assertSyntaxError(parser, request, null);
+	}
+
+	@Test
+	public void testInvalidRequests()
+	{
+		// duplicate Attributes not allowed by strict parser
+		assertSyntaxError(STRICT_PARSER, newRequest("false", SUBJECT_ATTRIBUTES));
+		// repeated attribute category (Multiple Decision Profile)
+		assertSyntaxError(PARSER, newRequest("false", RESOURCE_ATTRIBUTES + RESOURCE_ATTRIBUTES));
+		// invalid integer
+		assertSyntaxError(PARSER, newRequest("false", RESOURCE_ATTRIBUTES.replace(">42<", ">forty-two<")));
+		// unknown datatype
+		assertSyntaxError(PARSER, newRequest("false", SUBJECT_ATTRIBUTES.replace("XMLSchema#string", "XMLSchema#unknown")));
+		// malformed XML
+		assertSyntaxError(PARSER, newRequest("false", SUBJECT_ATTRIBUTES).substring(0, 200));
+		// CombinedDecision
+		assertSyntaxError(PARSER, newRequest("false", SUBJECT_ATTRIBUTES).replace("CombinedDecision=\"false\"", "CombinedDecision=\"true\""), "CombinedDecision");
+	}
+
+	@Test
+	public void testMultipleDecisionProfileRejected()
+	{
+		// repeated attribute category
+		assertSyntaxError(PARSER, newRequest("false", RESOURCE_ATTRIBUTES + SUBJECT_ATTRIBUTES + RESOURCE_ATTRIBUTES), "repeated-attribute-categories");
+		// MultiRequests
+		assertSyntaxError(PARSER, newRequest("false", SUBJECT_ATTRIBUTES.replace("<Attributes ", "<Attributes xml:id=\"s1\" ")
+				+ "<MultiRequests><RequestReference><AttributesReference ReferenceId=\"s1\" /></RequestReference></MultiRequests>"), "MultiRequests");
+	}
+
+	@Test
+	public void testDtdRejected()
+	{
+		// external entity
+		assertSyntaxError(PARSER, newRequest("false", SUBJECT_ATTRIBUTES.replace(">alice<", ">&xxe;<")).replace("?>",
+				"?><!DOCTYPE Request [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>"));
+		// internal entity
+		assertSyntaxError(PARSER, newRequest("false", SUBJECT_ATTRIBUTES.replace(">alice<", ">&name;<")).replace("?>", "?><!DOCTYPE Request [<!ENTITY name \"bob\">]>"));
+		// DTD without entity
+		assertSyntaxError(PARSER, newRequest("false", SUBJECT_ATTRIBUTES).replace("?>", "?><!DOCTYPE Request>"));
+	}
+
+	@Test
+	public void testAttributeWithoutValueRejected()
+	{
+		final String attributeWithoutValue = "<Attributes Category=\"" + SUBJECT_CATEGORY + "\"><Attribute AttributeId=\"urn:oasis:names:tc:xacml:1.0:subject:subject-id\" IncludeInResult=\"false\" /></Attributes>";
+		assertSyntaxError(PARSER, newRequest("false", attributeWithoutValue), "no AttributeValue");
+		// included in Result
+		assertSyntaxError(PARSER, newRequest("false", attributeWithoutValue.replace("IncludeInResult=\"false\"", "IncludeInResult=\"true\"")), "no AttributeValue");
+	}
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Advice;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attribute;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeValueType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Attributes;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Obligation;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Result;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Status;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.DecisionResults;
+import org.ow2.authzforce.core.pdp.api.ExtendedDecisions;
+import org.ow2.authzforce.core.pdp.api.ImmutablePdpDecisionResult;
+import org.ow2.authzforce.core.pdp.api.ImmutablePepActions;
+import org.ow2.authzforce.core.pdp.api.JaxbXACMLUtils;
+import org.ow2.authzforce.core.pdp.api.StatusHelper;
+import org.ow2.authzforce.core.pdp.impl.XmlXACMLResponseWriter;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests of {@link XmlXACMLResponseWriter}
+ */
+public class XmlXACMLResponseWriterTest
+{
+	private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+	private static final String RESPONSE_START = XML_DECLARATION + "<Response xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\">";
+	private static final String RESOURCE_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:resource";
+	private static final String RESOURCE_ID = "urn:oasis:names:tc:xacml:1.0:resource:resource-id";
+	private static final String XSD_STRING = "http://www.w3.org/2001/XMLSchema#string";
+	private static final String XACML_NS = "urn:oasis:names:tc:xacml:3.0:core:schema:wd-17";
+
+	/*
+	 * XACML fragments without namespace declaration (in the default namespace of the Response)
+	 */
+	private static final String OBLIGATION_WITH_XML_CONTENT = "<Obligation ObligationId=\"urn:example:obligation:log\"><AttributeAssignment AttributeId=\"urn:example:log:entry\" DataType=\"urn:example:datatype:xml\" Category=\""
+			+ RESOURCE_CATEGORY + "\" Issuer=\"urn:example:issuer\">text &amp; <ex:entry xmlns:ex=\"urn:example:ns\" ex:level=\"1\">message<ex:detail/></ex:entry> tail</AttributeAssignment></Obligation>";
+
+	private static final String ADVICE_WITH_XPATH_EXPRESSION = "<Advice AdviceId=\"urn:example:advice:xpath\"><AttributeAssignment AttributeId=\"urn:example:advice:node\" DataType=\"urn:oasis:names:tc:xacml:3.0:data-type:xpathExpression\" Category=\""
+			+ RESOURCE_CATEGORY + "\" Issuer=\"urn:example:issuer\" XPathCategory=\"" + RESOURCE_CATEGORY
+			+ "\" xmlns:ex=\"urn:example:ns\" ex:hint=\"a&lt;b\">/ex:record/ex:field</AttributeAssignment></Advice>";
+
+	private static final String ATTRIBUTES_WITH_XPATH_EXPRESSION = "<Attributes Category=\"" + RESOURCE_CATEGORY
+			+ "\"><Content><ex:record xmlns:ex=\"urn:example:ns\"><ex:field>value</ex:field></ex:record></Content><Attribute AttributeId=\"urn:example:resource:node\" IncludeInResult=\"true\"><AttributeValue DataType=\"urn:oasis:names:tc:xacml:3.0:data-type:xpathExpression\" XPathCategory=\""
+			+ RESOURCE_CATEGORY + "\" xmlns:ex=\"urn:example:ns\" ex:hint=\"x\">/ex:record/ex:field</AttributeValue></Attribute></Attributes>";
+
+	private static final String STATUS_WITH_DETAIL = "<Status><StatusCode Value=\"" + StatusHelper.STATUS_MISSING_ATTRIBUTE
+			+ "\"><StatusCode Value=\"urn:example:status:detail\"/></StatusCode><StatusMessage>Missing &lt;attribute&gt;</StatusMessage><StatusDetail><MissingAttributeDetail Category=\""
+			+ RESOURCE_CATEGORY + "\" AttributeId=\"urn:example:missing\" DataType=\"" + XSD_STRING + "\"><AttributeValue DataType=\"" + XSD_STRING
+			+ "\">expected</AttributeValue></MissingAttributeDetail><ex:info xmlns:ex=\"urn:example:ns\">more</ex:info></StatusDetail></Status>";
+
+	/*
+	 * Attributes with a DOM element in no namespace, created programmatically (without xmlns="" attribute)
+	 */
+	private static final String ATTRIBUTES_WITH_NO_NAMESPACE_ELEMENT = "<Attributes Category=\"" + RESOURCE_CATEGORY + "\"><Attribute AttributeId=\"" + RESOURCE_ID
+			+ "\" IncludeInResult=\"true\"><AttributeValue DataType=\"urn:example:datatype:xml\">text<data xmlns=\"\">no namespace</data></AttributeValue></Attribute></Attributes>";
+
+	private static Response unmarshal(final byte[] xml) throws JAXBException
+	{
+		return (Response) JaxbXACMLUtils.createXacml3Unmarshaller().unmarshal(new ByteArrayInputStream(xml));
+	}
+
+	private static Object unmarshalFragment(final String xml) throws JAXBException
+	{
+		return JaxbXACMLUtils.createXacml3Unmarshaller().unmarshal(new StringReader(xml.replaceFirst("^<(\\w+)", "<$1 xmlns=\"" + XACML_NS + "\"")));
+	}
+
+	private static Document parse(final byte[] xml) throws ParserConfigurationException, SAXException, IOException
+	{
+		final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		final Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+		document.getDocumentElement().normalize();
+		return document;
+	}
+
+	/*
+	 * Asserts that two DOM nodes are equivalent: same namespaces and local names, attributes (except namespace declarations, since prefixes may differ), and same sequence of child elements and text
+	 */
+	private static void assertEquivalent(final String path, final Node expected, final Node actual)
+	{
+		assertEquals("Wrong node type at " + path, expected.getNodeType(), actual.getNodeType());
+		if (expected.getNodeType() == Node.TEXT_NODE || expected.getNodeType() == Node.CDATA_SECTION_NODE)
+		{
+			assertEquals("Wrong text at " + path, expected.getNodeValue(), actual.getNodeValue());
+			return;
+		}
+
+		assertEquals("Wrong namespace at " + path, expected.getNamespaceURI(), actual.getNamespaceURI());
+		assertEquals("Wrong element at " + path, expected.getLocalName(), actual.getLocalName());
+		final String elementPath = path + "/" + expected.getLocalName();
+		if (expected instanceof Element)
+		{
+			assertEquals("Wrong attributes at " + elementPath, getAttributes((Element) expected), getAttributes((Element) actual));
+		}
+
+		final List<Node> expectedChildren = getChildren(expected);
+		final List<Node> actualChildren = getChildren(actual);
+		assertEquals("Wrong number of children at " + elementPath, expectedChildren.size(), actualChildren.size());
+		for (int i = 0; i < expectedChildren.size(); i++)
+		{
+			assertEquivalent(elementPath + "[" + i + "]", expectedChildren.get(i), actualChildren.get(i));
+		}
+	}
+
+	private static TreeMap<String, String> getAttributes(final Element element)
+	{
+		final TreeMap<String, String> attributes = new TreeMap<>();
+		final NamedNodeMap attributeNodes = element.getAttributes();
+		for (int i = 0; i < attributeNodes.getLength(); i++)
+		{
+			final Node attribute = attributeNodes.item(i);
+			if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI()))
+			{
+				attributes.put("{" + (attribute.getNamespaceURI() == null ? "" : attribute.getNamespaceURI()) + "}" + attribute.getLocalName(), attribute.getNodeValue());
+			}
+		}
+
+		return attributes;
+	}
+
+	private static List<Node> getChildren(final Node node)
+	{
+		final List<Node> children = new ArrayList<>();
+		for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+		{
+			if (child.getNodeType() == Node.ELEMENT_NODE || child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE)
+			{
+				children.add(child);
+			}
+		}
+
+		return children;
+	}
+
+	@Test
+	public void testIndeterminate() throws IOException
+	{
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final XmlXACMLResponseWriter writer = new XmlXACMLResponseWriter(output);
+		writer.writeIndeterminate(new StatusHelper(StatusHelper.STATUS_SYNTAX_ERROR, Optional.of("Invalid <value> & \"other\" \u00e9")));
+		writer.writeEnd();
+		assertEquals("Invalid XML Response", RESPONSE_START + "<Result><Decision>Indeterminate</Decision><Status><StatusCode Value=\"" + StatusHelper.STATUS_SYNTAX_ERROR
+				+ "\"/><StatusMessage>Invalid &lt;value&gt; &amp; \"other\" \u00e9</StatusMessage></Status></Result></Response>", new String(output.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testResultsWithAttributes() throws IOException, JAXBException
+	{
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final XmlXACMLResponseWriter writer = new XmlXACMLResponseWriter(output);
+		final List<AttributeValueType> values = Collections.singletonList(new AttributeValueType(Collections.<Serializable> singletonList("a\"b<c>\r\n"), XSD_STRING, Collections
+				.<QName, String> emptyMap()));
+		final Attributes resource = new Attributes(null, Collections.singletonList(new Attribute(values, RESOURCE_ID, "issuer&co", true)), RESOURCE_CATEGORY, null);
+		writer.writeResult(new ImmutablePdpDecisionResult(new StatusHelper(StatusHelper.STATUS_PROCESSING_ERROR, Optional.<String> empty())), Collections.singletonList(resource));
+		writer.writeIndeterminate(new StatusHelper(StatusHelper.STATUS_OK, Optional.<String> empty()));
+		writer.writeEnd();
+
+		final Response response = unmarshal(output.toByteArray());
+		assertEquals("Wrong number of Results", 2, response.getResults().size());
+		final Result result = response.getResults().get(0);
+		assertEquals(DecisionType.INDETERMINATE, result.getDecision());
+		assertEquals(StatusHelper.STATUS_PROCESSING_ERROR, result.getStatus().getStatusCode().getValue());
+		assertEquals("Wrong attributes in Result", 1, result.getAttributes().size());
+		final Attributes returnedResource = result.getAttributes().get(0);
+		assertEquals(RESOURCE_CATEGORY, returnedResource.getCategory());
+		final Attribute returnedAttribute = returnedResource.getAttributes().get(0);
+		assertEquals(RESOURCE_ID, returnedAttribute.getAttributeId());
+		assertEquals("issuer&co", returnedAttribute.getIssuer());
+		assertEquals(XSD_STRING, returnedAttribute.getAttributeValues().get(0).getDataType());
+		assertEquals("Attribute value not preserved", "a\"b<c>\r\n", returnedAttribute.getAttributeValues().get(0).getContent().get(0));
+		assertEquals(StatusHelper.STATUS_OK, response.getResults().get(1).getStatus().getStatusCode().getValue());
+	}
+
+	/**
+	 * Compares the output with the JAXB-marshalled Response for XML content in obligations/advice, xpathExpression values with other attributes, StatusDetail and DOM elements in no namespace
+	 */
+	@Test
+	public void testSameAsJaxbMarshalling() throws Exception
+	{
+		final Obligation obligation = (Obligation) unmarshalFragment(OBLIGATION_WITH_XML_CONTENT);
+		final Advice advice = (Advice) unmarshalFragment(ADVICE_WITH_XPATH_EXPRESSION);
+		final Attributes xpathAttributes = (Attributes) unmarshalFragment(ATTRIBUTES_WITH_XPATH_EXPRESSION);
+		final Status statusWithDetail = (Status) unmarshalFragment(STATUS_WITH_DETAIL);
+		assertNotNull("StatusDetail not unmarshalled", statusWithDetail.getStatusDetail());
+
+		final Element noNamespaceElement = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument().createElementNS(null, "data");
+		noNamespaceElement.setTextContent("no namespace");
+		final List<AttributeValueType> noNamespaceValues = Collections.singletonList(new AttributeValueType(Arrays.<Serializable> asList("text", (Serializable) noNamespaceElement),
+				"urn:example:datatype:xml", Collections.<QName, String> emptyMap()));
+		final Attributes noNamespaceAttributes = new Attributes(null, Collections.singletonList(new Attribute(noNamespaceValues, RESOURCE_ID, null, true)), RESOURCE_CATEGORY, null);
+
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final XmlXACMLResponseWriter writer = new XmlXACMLResponseWriter(output);
+		writer.writeResult(
+				new ImmutablePdpDecisionResult(DecisionResults.getInstance(ExtendedDecisions.SIMPLE_PERMIT, ImmutablePepActions.getInstance(ImmutableList.of(obligation), ImmutableList.of(advice)),
+						ImmutableList.of())), Arrays.asList(xpathAttributes, noNamespaceAttributes));
+		writer.writeIndeterminate(statusWithDetail);
+		writer.writeEnd();
+
+		final Response expectedResponse = (Response) unmarshalFragment("<Response><Result><Decision>Permit</Decision><Obligations>" + OBLIGATION_WITH_XML_CONTENT
+				+ "</Obligations><AssociatedAdvice>" + ADVICE_WITH_XPATH_EXPRESSION + "</AssociatedAdvice>" + ATTRIBUTES_WITH_XPATH_EXPRESSION + ATTRIBUTES_WITH_NO_NAMESPACE_ELEMENT
+				+ "</Result><Result><Decision>Indeterminate</Decision>" + STATUS_WITH_DETAIL + "</Result></Response>");
+		final Marshaller marshaller = JaxbXACMLUtils.createXacml3Marshaller();
+		marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.FALSE);
+		final ByteArrayOutputStream expectedOutput = new ByteArrayOutputStream();
+		marshaller.marshal(expectedResponse, expectedOutput);
+
+		assertEquivalent("", parse(expectedOutput.toByteArray()).getDocumentElement(), parse(output.toByteArray()).getDocumentElement());
+	}
+}
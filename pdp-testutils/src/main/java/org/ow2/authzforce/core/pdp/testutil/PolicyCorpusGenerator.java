@@ -0,0 +1,827 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generator of synthetic XACML policies and matching requests, for load and scaling tests of {@link BasePdpEngine} on policies of arbitrary size. The generated policies are written in the same
+ * directory layout as the PDP test directories (see {@link PdpTest}): root policy file {@value PdpTest#POLICY_FILENAME} and, if there is any PolicySetIdReference, directory
+ * {@value PdpTest#REF_POLICIES_DIR_NAME} of referenced PolicySets.
+ * <p>
+ * Structure of the generated policies:
+ * <ul>
+ * <li>The root PolicySet is a tree of nested PolicySets of depth {@link Builder#depth(int)} and breadth {@link Builder#breadth(int)}, i.e. each PolicySet has {@code breadth} children. The children of
+ * the PolicySets of the last level are Policies ("leaf" Policies); therefore there are {@code breadth^depth} Policies.</li>
+ * <li>The resources are organized hierarchically, like the policies: each leaf Policy applies to a single resource (string-equal Match on the resource-id in the Target), e.g. {@code r/0/2/1}; and
+ * each PolicySet applies to the resources in its subtree (string-starts-with Match on the resource-id in the Target), e.g. {@code r/0/2/}. Therefore exactly one leaf Policy applies to a given
+ * resource.</li>
+ * <li>The first {@link Builder#policySetRefFanOut(int)} child PolicySets of each PolicySet are not defined inline but written in separate files and included via PolicySetIdReference.</li>
+ * <li>Each leaf Policy has {@link Builder#rulesPerPolicy(int)} Rules with random effect, each applicable to a single action (string-equal Match on the action-id in the Target) and with a Condition
+ * made of {@link Builder#conditionComplexity(int)} clauses (AND), alternatively: role required from the subject ({@code any-of} on the subject role bag) and minimum clearance level of the subject (
+ * {@code integer-greater-than-or-equal} on the subject clearance).</li>
+ * <li>The action, role and clearance level values are randomly picked among {@link Builder#attributeCardinality(int)} possible values.</li>
+ * <li>The combining algorithm of each Policy(Set) is randomly picked among {@link Builder#policyCombiningAlgIds(List)} / {@link Builder#ruleCombiningAlgIds(List)}.</li>
+ * </ul>
+ * The generation is deterministic for a given {@link Builder#seed(long)}, so that the same tests can be repeated on the same policies.
+ * <p>
+ * Requests are generated by {@link Corpus#newRequests(int, double, double, long)}, with a given ratio of "hits" (requests matching a Rule of a leaf Policy) and distribution of the requested resources
+ * among the leaf Policies (uniform or Zipf).
+ *
+ * @version $Id: $
+ */
+public final class PolicyCorpusGenerator
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(PolicyCorpusGenerator.class);
+
+	private static final String XACML_NS = "urn:oasis:names:tc:xacml:3.0:core:schema:wd-17";
+
+	private static final String ACCESS_SUBJECT_CATEGORY = "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject";
+	private static final String RESOURCE_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:resource";
+	private static final String ACTION_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:action";
+
+	private static final String SUBJECT_ID = "urn:oasis:names:tc:xacml:1.0:subject:subject-id";
+	private static final String SUBJECT_ROLE = "urn:oasis:names:tc:xacml:2.0:subject:role";
+	private static final String SUBJECT_CLEARANCE = "urn:example:subject:clearance";
+	private static final String RESOURCE_ID = "urn:oasis:names:tc:xacml:1.0:resource:resource-id";
+	private static final String ACTION_ID = "urn:oasis:names:tc:xacml:1.0:action:action-id";
+
+	private static final String STRING_DATATYPE = "http://www.w3.org/2001/XMLSchema#string";
+	private static final String INTEGER_DATATYPE = "http://www.w3.org/2001/XMLSchema#integer";
+
+	private static final String STRING_EQUAL_FUNCTION = "urn:oasis:names:tc:xacml:1.0:function:string-equal";
+	private static final String STRING_STARTS_WITH_FUNCTION = "urn:oasis:names:tc:xacml:3.0:function:string-starts-with";
+	private static final String ANY_OF_FUNCTION = "urn:oasis:names:tc:xacml:3.0:function:any-of";
+	private static final String AND_FUNCTION = "urn:oasis:names:tc:xacml:1.0:function:and";
+	private static final String INTEGER_ONE_AND_ONLY_FUNCTION = "urn:oasis:names:tc:xacml:1.0:function:integer-one-and-only";
+	private static final String INTEGER_GREATER_THAN_OR_EQUAL_FUNCTION = "urn:oasis:names:tc:xacml:1.0:function:integer-greater-than-or-equal";
+
+	private static final String RESOURCE_ID_PREFIX = "r/";
+
+	/**
+	 * Action requested by the requests that are not hits (no Rule applies to it)
+	 */
+	private static final String UNKNOWN_ACTION = "action-none";
+
+	/**
+	 * Default policy combining algorithms. Only algorithms returning NotApplicable when no child applies are used by default, so that the requests that are not hits get a NotApplicable decision.
+	 */
+	public static final List<String> DEFAULT_POLICY_COMBINING_ALG_IDS = Collections.unmodifiableList(Arrays.asList("urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-overrides",
+			"urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:permit-overrides", "urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:first-applicable",
+			"urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:only-one-applicable"));
+
+	/**
+	 * Default rule combining algorithms. Only algorithms returning NotApplicable when no Rule applies are used by default, so that the requests that are not hits get a NotApplicable decision.
+	 */
+	public static final List<String> DEFAULT_RULE_COMBINING_ALG_IDS = Collections.unmodifiableList(Arrays.asList("urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-overrides",
+			"urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:permit-overrides", "urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:first-applicable",
+			"urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:ordered-deny-overrides"));
+
+	private static final JAXBContext XACML_REQUEST_JAXB_CONTEXT;
+	static
+	{
+		try
+		{
+			XACML_REQUEST_JAXB_CONTEXT = JAXBContext.newInstance(Request.class);
+		}
+		catch (final JAXBException e)
+		{
+			throw new RuntimeException("Error instantiating JAXB context for unmarshalling generated XACML Requests", e);
+		}
+	}
+
+	/**
+	 * Builder of {@link PolicyCorpusGenerator}
+	 */
+	public static final class Builder
+	{
+		private int breadth = 10;
+		private int depth = 2;
+		private int policySetRefFanOut = 0;
+		private int rulesPerPolicy = 10;
+		private int conditionComplexity = 1;
+		private int attributeCardinality = 100;
+		private int requestRoleCount = 3;
+		private List<String> policyCombiningAlgIds = DEFAULT_POLICY_COMBINING_ALG_IDS;
+		private List<String> ruleCombiningAlgIds = DEFAULT_RULE_COMBINING_ALG_IDS;
+		private long seed = 0;
+
+		/**
+		 * Sets the number of children of each PolicySet (default: 10)
+		 *
+		 * @param breadth
+		 *            number of child Policy(Set)s, strictly positive
+		 * @return this builder
+		 */
+		public Builder breadth(final int breadth)
+		{
+			this.breadth = breadth;
+			return this;
+		}
+
+		/**
+		 * Sets the number of PolicySet levels, including the root PolicySet (default: 2)
+		 *
+		 * @param depth
+		 *            PolicySet tree depth, strictly positive
+		 * @return this builder
+		 */
+		public Builder depth(final int depth)
+		{
+			this.depth = depth;
+			return this;
+		}
+
+		/**
+		 * Sets the number of child PolicySets of each PolicySet that are included via PolicySetIdReference instead of being defined inline (default: 0). Applies only to PolicySets whose
+		 * children are PolicySets (not to PolicySets of the last level).
+		 *
+		 * @param fanOut
+		 *            number of PolicySetIdReferences in each PolicySet, in [0, breadth]
+		 * @return this builder
+		 */
+		public Builder policySetRefFanOut(final int fanOut)
+		{
+			this.policySetRefFanOut = fanOut;
+			return this;
+		}
+
+		/**
+		 * Sets the number of Rules in each Policy (default: 10)
+		 *
+		 * @param ruleCount
+		 *            number of Rules, strictly positive
+		 * @return this builder
+		 */
+		public Builder rulesPerPolicy(final int ruleCount)
+		{
+			this.rulesPerPolicy = ruleCount;
+			return this;
+		}
+
+		/**
+		 * Sets the number of clauses in each Rule's Condition (default: 1)
+		 *
+		 * @param clauseCount
+		 *            number of clauses; 0 means no Condition
+		 * @return this builder
+		 */
+		public Builder conditionComplexity(final int clauseCount)
+		{
+			this.conditionComplexity = clauseCount;
+			return this;
+		}
+
+		/**
+		 * Sets the number of possible values of the action-id, role and clearance level attributes used in the Rules (default: 100)
+		 *
+		 * @param cardinality
+		 *            number of possible values, strictly positive
+		 * @return this builder
+		 */
+		public Builder attributeCardinality(final int cardinality)
+		{
+			this.attributeCardinality = cardinality;
+			return this;
+		}
+
+		/**
+		 * Sets the minimum number of roles (size of the role bag) of the subject in the generated requests (default: 3). There may be more if the Rule to hit requires more roles.
+		 *
+		 * @param roleCount
+		 *            number of role values, strictly positive
+		 * @return this builder
+		 */
+		public Builder requestRoleCount(final int roleCount)
+		{
+			this.requestRoleCount = roleCount;
+			return this;
+		}
+
+		/**
+		 * Sets the policy combining algorithms to pick from (default: {@link PolicyCorpusGenerator#DEFAULT_POLICY_COMBINING_ALG_IDS})
+		 *
+		 * @param algIds
+		 *            policy combining algorithm IDs, not empty
+		 * @return this builder
+		 */
+		public Builder policyCombiningAlgIds(final List<String> algIds)
+		{
+			this.policyCombiningAlgIds = algIds;
+			return this;
+		}
+
+		/**
+		 * Sets the rule combining algorithms to pick from (default: {@link PolicyCorpusGenerator#DEFAULT_RULE_COMBINING_ALG_IDS})
+		 *
+		 * @param algIds
+		 *            rule combining algorithm IDs, not empty
+		 * @return this builder
+		 */
+		public Builder ruleCombiningAlgIds(final List<String> algIds)
+		{
+			this.ruleCombiningAlgIds = algIds;
+			return this;
+		}
+
+		/**
+		 * Sets the seed of the random generator used for generating the policies (default: 0)
+		 *
+		 * @param seed
+		 *            random seed
+		 * @return this builder
+		 */
+		public Builder seed(final long seed)
+		{
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * Creates the generator
+		 *
+		 * @return policy generator
+		 * @throws IllegalArgumentException
+		 *             invalid parameters
+		 */
+		public PolicyCorpusGenerator build() throws IllegalArgumentException
+		{
+			if (breadth < 1 || depth < 1 || rulesPerPolicy < 1 || attributeCardinality < 1 || requestRoleCount < 1)
+			{
+				throw new IllegalArgumentException("Invalid breadth (" + breadth + "), depth (" + depth + "), rulesPerPolicy (" + rulesPerPolicy + "), attributeCardinality ("
+						+ attributeCardinality + ") or requestRoleCount (" + requestRoleCount + "): must be > 0");
+			}
+
+			if (policySetRefFanOut < 0 || policySetRefFanOut > breadth)
+			{
+				throw new IllegalArgumentException("Invalid policySetRefFanOut (" + policySetRefFanOut + "): must be in [0, breadth]");
+			}
+
+			if (conditionComplexity < 0)
+			{
+				throw new IllegalArgumentException("Invalid conditionComplexity (" + conditionComplexity + "): must be >= 0");
+			}
+
+			if (policyCombiningAlgIds == null || policyCombiningAlgIds.isEmpty() || ruleCombiningAlgIds == null || ruleCombiningAlgIds.isEmpty())
+			{
+				throw new IllegalArgumentException("Undefined policy/rule combining algorithms");
+			}
+
+			int leafPolicyCount = 1;
+			for (int i = 0; i < depth; i++)
+			{
+				try
+				{
+					leafPolicyCount = Math.multiplyExact(leafPolicyCount, breadth);
+				}
+				catch (final ArithmeticException e)
+				{
+					throw new IllegalArgumentException("Too many Policies: breadth^depth = " + breadth + "^" + depth, e);
+				}
+			}
+
+			return new PolicyCorpusGenerator(this, leafPolicyCount);
+		}
+	}
+
+	/**
+	 * Rule of a leaf Policy, i.e. the attribute values required to hit it
+	 */
+	private static final class RuleSpec
+	{
+		private final int action;
+		private final int[] roles;
+		private final int minClearance;
+
+		private RuleSpec(final int action, final int[] roles, final int minClearance)
+		{
+			this.action = action;
+			this.roles = roles;
+			this.minClearance = minClearance;
+		}
+	}
+
+	private static final class LeafPolicy
+	{
+		private final String resourceId;
+		private final RuleSpec[] rules;
+
+		private LeafPolicy(final String resourceId, final RuleSpec[] rules)
+		{
+			this.resourceId = resourceId;
+			this.rules = rules;
+		}
+	}
+
+	/**
+	 * Generated request
+	 */
+	public static final class GeneratedRequest
+	{
+		private final String xml;
+		private final boolean hit;
+		private final String resourceId;
+
+		private GeneratedRequest(final String xml, final boolean hit, final String resourceId)
+		{
+			this.xml = xml;
+			this.hit = hit;
+			this.resourceId = resourceId;
+		}
+
+		/**
+		 * Get XACML Request as XML document
+		 *
+		 * @return XACML Request document
+		 */
+		public String getXml()
+		{
+			return xml;
+		}
+
+		/**
+		 * Returns whether this request matches (the Target and Condition of) a Rule in the Policy applicable to the requested resource. If so, and if the Rules' evaluation cannot be
+		 * Indeterminate, the decision is Permit or Deny. Else the decision is NotApplicable with the default combining algorithms (some combining algorithms such as deny-unless-permit never
+		 * return NotApplicable).
+		 *
+		 * @return true iff the request is a hit
+		 */
+		public boolean isHit()
+		{
+			return hit;
+		}
+
+		/**
+		 * Get the requested resource ID
+		 *
+		 * @return resource-id
+		 */
+		public String getResourceId()
+		{
+			return resourceId;
+		}
+
+		/**
+		 * Get XACML Request as JAXB object (ready to be evaluated by {@link BasePdpEngine#evaluate(Request)})
+		 *
+		 * @return XACML/JAXB Request
+		 * @throws JAXBException
+		 *             error unmarshalling the XACML Request
+		 */
+		public Request toXacmlRequest() throws JAXBException
+		{
+			return (Request) XACML_REQUEST_JAXB_CONTEXT.createUnmarshaller().unmarshal(new StringReader(xml));
+		}
+	}
+
+	/**
+	 * Generated policies
+	 */
+	public static final class Corpus
+	{
+		private final Path rootPolicyFile;
+		private final Path refPoliciesDirectory;
+		private final List<LeafPolicy> leafPolicies;
+		private final int policySetCount;
+		private final int ruleCount;
+		private final int attributeCardinality;
+		private final int requestRoleCount;
+
+		private Corpus(final Path rootPolicyFile, final Path refPoliciesDirectory, final List<LeafPolicy> leafPolicies, final int policySetCount, final int ruleCount,
+				final int attributeCardinality, final int requestRoleCount)
+		{
+			this.rootPolicyFile = rootPolicyFile;
+			this.refPoliciesDirectory = refPoliciesDirectory;
+			this.leafPolicies = leafPolicies;
+			this.policySetCount = policySetCount;
+			this.ruleCount = ruleCount;
+			this.attributeCardinality = attributeCardinality;
+			this.requestRoleCount = requestRoleCount;
+		}
+
+		/**
+		 * Get root policy file
+		 *
+		 * @return root PolicySet file
+		 */
+		public Path getRootPolicyFile()
+		{
+			return rootPolicyFile;
+		}
+
+		/**
+		 * Get directory of PolicySets referenced via PolicySetIdReference
+		 *
+		 * @return referenced PolicySets' directory, null if there is no PolicySetIdReference
+		 */
+		public Path getRefPoliciesDirectory()
+		{
+			return refPoliciesDirectory;
+		}
+
+		/**
+		 * Get the number of (leaf) Policies
+		 *
+		 * @return number of Policies
+		 */
+		public int getPolicyCount()
+		{
+			return leafPolicies.size();
+		}
+
+		/**
+		 * Get the number of PolicySets, including the root and referenced ones
+		 *
+		 * @return number of PolicySets
+		 */
+		public int getPolicySetCount()
+		{
+			return policySetCount;
+		}
+
+		/**
+		 * Get the total number of Rules
+		 *
+		 * @return number of Rules
+		 */
+		public int getRuleCount()
+		{
+			return ruleCount;
+		}
+
+		/**
+		 * Creates PDP from the generated policies
+		 *
+		 * @param requestFilterId
+		 *            RequestFilter ID; null for the default
+		 * @return PDP instance
+		 * @throws IllegalArgumentException
+		 *             invalid generated policies (e.g. invalid combining algorithm ID)
+		 * @throws IOException
+		 *             error reading the generated policy files
+		 * @throws URISyntaxException
+		 * @throws JAXBException
+		 */
+		public BasePdpEngine newPdp(final String requestFilterId) throws IllegalArgumentException, IOException, URISyntaxException, JAXBException
+		{
+			return TestUtils.getPDPNewInstance(rootPolicyFile.toUri().toString(), refPoliciesDirectory == null ? null : refPoliciesDirectory.toUri().toString(), false, null, requestFilterId);
+		}
+
+		/**
+		 * Generates a stream of requests
+		 *
+		 * @param count
+		 *            number of requests
+		 * @param hitRatio
+		 *            ratio of hits (requests matching a Rule, see {@link GeneratedRequest#isHit()}) in [0, 1]. The other requests are on an existing resource but with an action to which no Rule
+		 *            applies, so that they are evaluated down to the Rules' Targets of the applicable leaf Policy.
+		 * @param zipfExponent
+		 *            exponent s of the Zipf distribution of the requested resources (the probability of requesting the resource of the k-th leaf Policy is proportional to 1/k^s); 0 means uniform
+		 *            distribution, higher values concentrate the requests on fewer resources (better cache hit ratio).
+		 * @param seed
+		 *            random seed
+		 * @return requests
+		 * @throws IllegalArgumentException
+		 *             invalid count, hitRatio or zipfExponent
+		 */
+		public List<GeneratedRequest> newRequests(final int count, final double hitRatio, final double zipfExponent, final long seed) throws IllegalArgumentException
+		{
+			if (count < 0 || hitRatio < 0 || hitRatio > 1 || zipfExponent < 0)
+			{
+				throw new IllegalArgumentException("Invalid request count (" + count + "), hitRatio (" + hitRatio + ") or zipfExponent (" + zipfExponent + ")");
+			}
+
+			/*
+			 * Cumulative distribution of the leaf policies
+			 */
+			final double[] cumulativeWeights = new double[leafPolicies.size()];
+			double totalWeight = 0;
+			for (int i = 0; i < cumulativeWeights.length; i++)
+			{
+				totalWeight += 1.0 / Math.pow(i + 1, zipfExponent);
+				cumulativeWeights[i] = totalWeight;
+			}
+
+			final Random random = new Random(seed);
+			final List<GeneratedRequest> requests = new ArrayList<>(count);
+			for (int i = 0; i < count; i++)
+			{
+				final int searchResult = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * totalWeight);
+				final int leafIndex = Math.min(searchResult >= 0 ? searchResult : -searchResult - 1, cumulativeWeights.length - 1);
+				final LeafPolicy leaf = leafPolicies.get(leafIndex);
+				final boolean isHit = random.nextDouble() < hitRatio;
+				final String action;
+				final List<String> roles = new ArrayList<>(requestRoleCount);
+				final int clearance;
+				if (isHit)
+				{
+					final RuleSpec rule = leaf.rules[random.nextInt(leaf.rules.length)];
+					action = "action-" + rule.action;
+					for (final int role : rule.roles)
+					{
+						roles.add("role-" + role);
+					}
+
+					clearance = rule.minClearance + random.nextInt(attributeCardinality - rule.minClearance);
+				}
+				else
+				{
+					action = UNKNOWN_ACTION;
+					clearance = random.nextInt(attributeCardinality);
+				}
+
+				while (roles.size() < requestRoleCount)
+				{
+					roles.add("role-" + random.nextInt(attributeCardinality));
+				}
+
+				final StringBuilder sb = new StringBuilder("<Request xmlns=\"").append(XACML_NS).append("\" ReturnPolicyIdList=\"false\" CombinedDecision=\"false\">");
+				sb.append("<Attributes Category=\"").append(ACCESS_SUBJECT_CATEGORY).append("\">");
+				appendAttribute(sb, SUBJECT_ID, STRING_DATATYPE, Collections.singletonList("user-" + random.nextInt(attributeCardinality)));
+				appendAttribute(sb, SUBJECT_ROLE, STRING_DATATYPE, roles);
+				appendAttribute(sb, SUBJECT_CLEARANCE, INTEGER_DATATYPE, Collections.singletonList(Integer.toString(clearance)));
+				sb.append("</Attributes><Attributes Category=\"").append(RESOURCE_CATEGORY).append("\">");
+				appendAttribute(sb, RESOURCE_ID, STRING_DATATYPE, Collections.singletonList(leaf.resourceId));
+				sb.append("</Attributes><Attributes Category=\"").append(ACTION_CATEGORY).append("\">");
+				appendAttribute(sb, ACTION_ID, STRING_DATATYPE, Collections.singletonList(action));
+				sb.append("</Attributes></Request>");
+				requests.add(new GeneratedRequest(sb.toString(), isHit, leaf.resourceId));
+			}
+
+			return requests;
+		}
+	}
+
+	private static void appendAttribute(final StringBuilder sb, final String attributeId, final String datatype, final List<String> values)
+	{
+		sb.append("<Attribute AttributeId=\"").append(attributeId).append("\" IncludeInResult=\"false\">");
+		for (final String value : values)
+		{
+			appendAttributeValue(sb, datatype, value);
+		}
+
+		sb.append("</Attribute>");
+	}
+
+	private static void appendAttributeValue(final StringBuilder sb, final String datatype, final String value)
+	{
+		sb.append("<AttributeValue DataType=\"").append(datatype).append("\">").append(value).append("</AttributeValue>");
+	}
+
+	private static void appendAttributeDesignator(final StringBuilder sb, final String category, final String attributeId, final String datatype)
+	{
+		sb.append("<AttributeDesignator Category=\"").append(category).append("\" AttributeId=\"").append(attributeId).append("\" DataType=\"").append(datatype)
+				.append("\" MustBePresent=\"false\"/>");
+	}
+
+	/**
+	 * Appends Target with a single Match on a string attribute
+	 */
+	private static void appendTarget(final StringBuilder sb, final String matchFunctionId, final String value, final String category, final String attributeId)
+	{
+		sb.append("<Target><AnyOf><AllOf><Match MatchId=\"").append(matchFunctionId).append("\">");
+		appendAttributeValue(sb, STRING_DATATYPE, value);
+		appendAttributeDesignator(sb, category, attributeId, STRING_DATATYPE);
+		sb.append("</Match></AllOf></AnyOf></Target>");
+	}
+
+	private final int breadth;
+	private final int depth;
+	private final int policySetRefFanOut;
+	private final int rulesPerPolicy;
+	private final int conditionComplexity;
+	private final int attributeCardinality;
+	private final int requestRoleCount;
+	private final List<String> policyCombiningAlgIds;
+	private final List<String> ruleCombiningAlgIds;
+	private final long seed;
+	private final int leafPolicyCount;
+
+	private PolicyCorpusGenerator(final Builder builder, final int leafPolicyCount)
+	{
+		this.breadth = builder.breadth;
+		this.depth = builder.depth;
+		this.policySetRefFanOut = builder.policySetRefFanOut;
+		this.rulesPerPolicy = builder.rulesPerPolicy;
+		this.conditionComplexity = builder.conditionComplexity;
+		this.attributeCardinality = builder.attributeCardinality;
+		this.requestRoleCount = builder.requestRoleCount;
+		this.policyCombiningAlgIds = new ArrayList<>(builder.policyCombiningAlgIds);
+		this.ruleCombiningAlgIds = new ArrayList<>(builder.ruleCombiningAlgIds);
+		this.seed = builder.seed;
+		this.leafPolicyCount = leafPolicyCount;
+	}
+
+	/**
+	 * State of a policy generation
+	 */
+	private static final class GenerationState
+	{
+		private final Random random;
+		private final Path refPoliciesDirectory;
+		private final List<LeafPolicy> leafPolicies;
+		private int policySetCount = 0;
+
+		private GenerationState(final long seed, final Path refPoliciesDirectory, final int leafPolicyCount)
+		{
+			this.random = new Random(seed);
+			this.refPoliciesDirectory = refPoliciesDirectory;
+			this.leafPolicies = new ArrayList<>(leafPolicyCount);
+		}
+	}
+
+	private static void writeFile(final Path file, final CharSequence content) throws IOException
+	{
+		Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Generates the policies in a given directory
+	 *
+	 * @param directory
+	 *            output directory, created if it does not exist. The root policy is written to file {@value PdpTest#POLICY_FILENAME}, and the referenced PolicySets (if any) to the directory
+	 *            {@value PdpTest#REF_POLICIES_DIR_NAME} in this directory.
+	 * @return generated policies
+	 * @throws IOException
+	 *             error writing the policy files
+	 */
+	public Corpus generate(final Path directory) throws IOException
+	{
+		Files.createDirectories(directory);
+		final Path refPoliciesDirectory;
+		if (depth > 1 && policySetRefFanOut > 0)
+		{
+			refPoliciesDirectory = directory.resolve(PdpTest.REF_POLICIES_DIR_NAME);
+			Files.createDirectories(refPoliciesDirectory);
+		}
+		else
+		{
+			refPoliciesDirectory = null;
+		}
+
+		final GenerationState state = new GenerationState(seed, refPoliciesDirectory, leafPolicyCount);
+		final StringBuilder rootPolicySet = new StringBuilder();
+		appendPolicySet(rootPolicySet, state, "", RESOURCE_ID_PREFIX, 0, true);
+		final Path rootPolicyFile = directory.resolve(PdpTest.POLICY_FILENAME);
+		writeFile(rootPolicyFile, rootPolicySet);
+		LOGGER.debug("Generated {} PolicySets and {} Policies in directory '{}'", state.policySetCount, state.leafPolicies.size(), directory);
+		return new Corpus(rootPolicyFile, refPoliciesDirectory, state.leafPolicies, state.policySetCount, state.leafPolicies.size() * rulesPerPolicy, attributeCardinality, requestRoleCount);
+	}
+
+	/**
+	 * Appends PolicySet (and its descendants)
+	 *
+	 * @param pathId
+	 *            position of the PolicySet in the tree, used as PolicySet ID suffix ("" for the root PolicySet)
+	 * @param resourceIdPrefix
+	 *            common prefix of the resource IDs of the leaf Policies in the subtree
+	 * @param level
+	 *            level of the PolicySet in the tree (0 for the root)
+	 * @param isDocumentRoot
+	 *            true iff the PolicySet is the root element of a policy document
+	 */
+	private void appendPolicySet(final StringBuilder sb, final GenerationState state, final String pathId, final String resourceIdPrefix, final int level, final boolean isDocumentRoot)
+			throws IOException
+	{
+		state.policySetCount++;
+		final String policySetId = "policyset" + pathId;
+		sb.append("<PolicySet ");
+		if (isDocumentRoot)
+		{
+			sb.append("xmlns=\"").append(XACML_NS).append("\" ");
+		}
+
+		sb.append("PolicySetId=\"").append(policySetId).append("\" Version=\"1.0\" PolicyCombiningAlgId=\"")
+				.append(policyCombiningAlgIds.get(state.random.nextInt(policyCombiningAlgIds.size()))).append("\">");
+		if (level == 0)
+		{
+			sb.append("<Target/>");
+		}
+		else
+		{
+			appendTarget(sb, STRING_STARTS_WITH_FUNCTION, resourceIdPrefix, RESOURCE_CATEGORY, RESOURCE_ID);
+		}
+
+		final boolean childrenArePolicySets = level + 1 < depth;
+		for (int i = 0; i < breadth; i++)
+		{
+			final String childPathId = pathId + "-" + i;
+			if (!childrenArePolicySets)
+			{
+				appendPolicy(sb, state, childPathId, resourceIdPrefix + i);
+			}
+			else if (i < policySetRefFanOut)
+			{
+				final StringBuilder refPolicySet = new StringBuilder();
+				appendPolicySet(refPolicySet, state, childPathId, resourceIdPrefix + i + "/", level + 1, true);
+				writeFile(state.refPoliciesDirectory.resolve("policyset" + childPathId + ".xml"), refPolicySet);
+				sb.append("<PolicySetIdReference>policyset").append(childPathId).append("</PolicySetIdReference>");
+			}
+			else
+			{
+				appendPolicySet(sb, state, childPathId, resourceIdPrefix + i + "/", level + 1, false);
+			}
+		}
+
+		sb.append("</PolicySet>");
+	}
+
+	private void appendPolicy(final StringBuilder sb, final GenerationState state, final String pathId, final String resourceId)
+	{
+		final Random random = state.random;
+		sb.append("<Policy PolicyId=\"policy").append(pathId).append("\" Version=\"1.0\" RuleCombiningAlgId=\"")
+				.append(ruleCombiningAlgIds.get(random.nextInt(ruleCombiningAlgIds.size()))).append("\">");
+		appendTarget(sb, STRING_EQUAL_FUNCTION, resourceId, RESOURCE_CATEGORY, RESOURCE_ID);
+		final RuleSpec[] rules = new RuleSpec[rulesPerPolicy];
+		for (int i = 0; i < rulesPerPolicy; i++)
+		{
+			final int action = random.nextInt(attributeCardinality);
+			sb.append("<Rule RuleId=\"rule-").append(i).append("\" Effect=\"").append(random.nextBoolean() ? "Permit" : "Deny").append("\">");
+			appendTarget(sb, STRING_EQUAL_FUNCTION, "action-" + action, ACTION_CATEGORY, ACTION_ID);
+
+			/*
+			 * Condition clauses: required role (even index), minimum clearance (odd index)
+			 */
+			final int[] roles = new int[(conditionComplexity + 1) / 2];
+			int minClearance = 0;
+			if (conditionComplexity > 0)
+			{
+				sb.append("<Condition>");
+				if (conditionComplexity > 1)
+				{
+					sb.append("<Apply FunctionId=\"").append(AND_FUNCTION).append("\">");
+				}
+
+				for (int j = 0; j < conditionComplexity; j++)
+				{
+					if (j % 2 == 0)
+					{
+						final int role = random.nextInt(attributeCardinality);
+						roles[j / 2] = role;
+						sb.append("<Apply FunctionId=\"").append(ANY_OF_FUNCTION).append("\"><Function FunctionId=\"").append(STRING_EQUAL_FUNCTION).append("\"/>");
+						appendAttributeValue(sb, STRING_DATATYPE, "role-" + role);
+						appendAttributeDesignator(sb, ACCESS_SUBJECT_CATEGORY, SUBJECT_ROLE, STRING_DATATYPE);
+						sb.append("</Apply>");
+					}
+					else
+					{
+						final int clearance = random.nextInt(attributeCardinality);
+						minClearance = Math.max(minClearance, clearance);
+						sb.append("<Apply FunctionId=\"").append(INTEGER_GREATER_THAN_OR_EQUAL_FUNCTION).append("\"><Apply FunctionId=\"").append(INTEGER_ONE_AND_ONLY_FUNCTION).append("\">");
+						appendAttributeDesignator(sb, ACCESS_SUBJECT_CATEGORY, SUBJECT_CLEARANCE, INTEGER_DATATYPE);
+						sb.append("</Apply>");
+						appendAttributeValue(sb, INTEGER_DATATYPE, Integer.toString(clearance));
+						sb.append("</Apply>");
+					}
+				}
+
+				if (conditionComplexity > 1)
+				{
+					sb.append("</Apply>");
+				}
+
+				sb.append("</Condition>");
+			}
+
+			sb.append("</Rule>");
+			rules[i] = new RuleSpec(action, roles, minClearance);
+		}
+
+		sb.append("</Policy>");
+		state.leafPolicies.add(new LeafPolicy(resourceId, rules));
+	}
+}
@@ -80,8 +80,8 @@ public class TestAttributeProviderModule extends BaseAttributeProviderModule
 				@Override
 				public Set<AttributeDesignatorType> getDependencies()
 				{
-					// no dependency
-					return null;
+					// no dependency unless declared in the configuration
+					return conf.getDependencies().isEmpty() ? null : new HashSet<>(conf.getDependencies());
 				}
 
 				@Override
@@ -36,7 +36,7 @@ import org.slf4j.LoggerFactory;
  * Policy/PolicySet/Request documents, where the XSD 1.0 definition of anyURI still applies.
  */
 @RunWith(Suite.class)
-@SuiteClasses(value = { CustomPdpTest.class, TestPdpGetStaticApplicablePolicies.class, NonRegression.class, EmbeddedPdpBasedAuthzInterceptorTest.class })
+@SuiteClasses(value = { CustomPdpTest.class, TestPdpGetStaticApplicablePolicies.class, TestPdpReloadRootPolicy.class, TestPdpEvaluationTimings.class, TestPdpInMemoryDecisionCache.class, TestPdpPolicyRelevantAttributes.class, TestPdpStreamingRequestParsers.class, TestPolicyCorpusGenerator.class, TestPolicySnapshot.class, TestPdpConcurrentRefPolicyLoading.class, NonRegression.class, EmbeddedPdpBasedAuthzInterceptorTest.class })
 public class MainTest
 {
 	/**
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.authzforce.core.pdp.api.JaxbXACMLUtils;
+import org.ow2.authzforce.core.pdp.api.XMLUtils.NamespaceFilteringParser;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.policy.CoreRefPolicyProviderModule;
+import org.ow2.authzforce.core.pdp.testutil.PdpTest;
+import org.ow2.authzforce.core.pdp.testutil.TestUtils;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Test of the concurrent loading of policies by {@link CoreRefPolicyProviderModule}: same decisions and same errors as with sequential loading
+ *
+ */
+public class TestPdpConcurrentRefPolicyLoading
+{
+	private final static String TEST_RESOURCES_DIRECTORY_LOCATION = "classpath:conformance/others/PolicyReference.Valid/";
+
+	private final static String REF_POLICYSET_ID = "PPS:Employee";
+
+	private final static int INDEPENDENT_POLICYSET_COUNT = 8;
+
+	@Rule
+	public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+	private static String readResource(final String location) throws IOException
+	{
+		return new String(Files.readAllBytes(ResourceUtils.getFile(location).toPath()), StandardCharsets.UTF_8);
+	}
+
+	private static String newPolicySetWithRef(final String policySetId, final String refPolicySetId)
+	{
+		return "<PolicySet xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" PolicySetId=\"" + policySetId
+				+ "\" Version=\"1.0\" PolicyCombiningAlgId=\"urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-unless-permit\"><Target/><PolicySetIdReference>" + refPolicySetId
+				+ "</PolicySetIdReference></PolicySet>";
+	}
+
+	private static void assertPdpInstantiationFails(final Path refPoliciesDirectory, final String expectedErrorMessage) throws IOException, URISyntaxException, JAXBException
+	{
+		try
+		{
+			TestUtils.getPDPNewInstance(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.POLICY_FILENAME, refPoliciesDirectory.toUri().toString(), false, null, null).close();
+			fail("PDP instantiated with invalid ref policies");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			for (Throwable cause = e; cause != null; cause = cause.getCause())
+			{
+				if (cause.getMessage() != null && cause.getMessage().contains(expectedErrorMessage))
+				{
+					return;
+				}
+			}
+
+			throw new AssertionError("Unexpected error: " + e, e);
+		}
+	}
+
+	@Test
+	public void testIndependentPolicySets() throws IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		final Path refPoliciesDirectory = tmpDir.newFolder(PdpTest.REF_POLICIES_DIR_NAME).toPath();
+		final String refPolicySet = readResource(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.REF_POLICIES_DIR_NAME + "/pps-employee.xml");
+		Files.write(refPoliciesDirectory.resolve("pps-employee.xml"), refPolicySet.getBytes(StandardCharsets.UTF_8));
+		// other PolicySets, independent or referring to the same PolicySet, to be instantiated concurrently (Policy(Set)Ids must be unique, including nested Policies)
+		for (int i = 0; i < INDEPENDENT_POLICYSET_COUNT; i++)
+		{
+			Files.write(refPoliciesDirectory.resolve("pps-employee-" + i + ".xml"), refPolicySet.replace("Id=\"PPS:Employee\"", "Id=\"PPS:Employee-" + i + "\"")
+					.replace("Id=\"PP:Employee\"", "Id=\"PP:Employee-" + i + "\"").getBytes(StandardCharsets.UTF_8));
+			Files.write(refPoliciesDirectory.resolve("pps-ref-" + i + ".xml"), newPolicySetWithRef("PPS:Ref-" + i, REF_POLICYSET_ID).getBytes(StandardCharsets.UTF_8));
+		}
+
+		final NamespaceFilteringParser unmarshaller = JaxbXACMLUtils.getXACMLParserFactory(false).getInstance();
+		final Request request = TestUtils.createRequest(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.REQUEST_FILENAME, unmarshaller);
+		final Response expectedResponse = TestUtils.createResponse(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.EXPECTED_RESPONSE_FILENAME, unmarshaller);
+		try (BasePdpEngine pdp = TestUtils.getPDPNewInstance(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.POLICY_FILENAME, refPoliciesDirectory.toUri().toString(), false, null, null))
+		{
+			TestUtils.assertNormalizedEquals("PolicyReference.Valid (concurrent loading)", expectedResponse, pdp.evaluate(request, null));
+		}
+	}
+
+	@Test
+	public void testPolicySetConflict() throws IOException, URISyntaxException, JAXBException
+	{
+		final Path refPoliciesDirectory = tmpDir.newFolder(PdpTest.REF_POLICIES_DIR_NAME).toPath();
+		final byte[] refPolicySet = readResource(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.REF_POLICIES_DIR_NAME + "/pps-employee.xml").getBytes(StandardCharsets.UTF_8);
+		Files.write(refPoliciesDirectory.resolve("pps-employee.xml"), refPolicySet);
+		Files.write(refPoliciesDirectory.resolve("pps-employee-copy.xml"), refPolicySet);
+		assertPdpInstantiationFails(refPoliciesDirectory, "Policy conflict: two PolicySets with same PolicySetId=" + REF_POLICYSET_ID + ", Version=1.0");
+	}
+
+	@Test
+	public void testCircularPolicySetReference() throws IOException, URISyntaxException, JAXBException
+	{
+		final Path refPoliciesDirectory = tmpDir.newFolder(PdpTest.REF_POLICIES_DIR_NAME).toPath();
+		Files.write(refPoliciesDirectory.resolve("pps-employee.xml"), newPolicySetWithRef(REF_POLICYSET_ID, "PPS:Loop").getBytes(StandardCharsets.UTF_8));
+		Files.write(refPoliciesDirectory.resolve("pps-loop.xml"), newPolicySetWithRef("PPS:Loop", REF_POLICYSET_ID).getBytes(StandardCharsets.UTF_8));
+		for (int i = 0; i < INDEPENDENT_POLICYSET_COUNT; i++)
+		{
+			Files.write(refPoliciesDirectory.resolve("pps-ref-" + i + ".xml"), newPolicySetWithRef("PPS:Ref-" + i, REF_POLICYSET_ID).getBytes(StandardCharsets.UTF_8));
+		}
+
+		assertPdpInstantiationFails(refPoliciesDirectory, "Invalid PolicySet with PolicySetId=");
+	}
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.JaxbXACMLUtils;
+import org.ow2.authzforce.core.pdp.api.XMLUtils.NamespaceFilteringParser;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.EvaluationTimingRecorder;
+import org.ow2.authzforce.core.pdp.impl.EvaluationTimingsMXBean;
+import org.ow2.authzforce.core.pdp.impl.EvaluationTimingsMXBean.TimerStatistics;
+import org.ow2.authzforce.core.pdp.testutil.PdpTest;
+import org.ow2.authzforce.core.pdp.testutil.TestUtils;
+
+/**
+ * Test of {@link BasePdpEngine#getEvaluationTimings()}
+ *
+ */
+public class TestPdpEvaluationTimings
+{
+	private final static String TEST_RESOURCES_DIRECTORY_LOCATION = "classpath:custom/EvaluationTimings/";
+
+	private static Map<String, TimerStatistics> getTimerStatisticsByName(final EvaluationTimingsMXBean timings)
+	{
+		final Map<String, TimerStatistics> statsByName = new HashMap<>();
+		long previousTotalNanos = Long.MAX_VALUE;
+		for (final TimerStatistics stats : timings.getTimerStatistics())
+		{
+			assertTrue("Timer statistics not sorted by decreasing total time", stats.getTotalNanos() <= previousTotalNanos);
+			assertTrue("Invalid percentiles: " + stats, stats.getP50Nanos() <= stats.getP90Nanos() && stats.getP90Nanos() <= stats.getP99Nanos() && stats.getP99Nanos() <= stats.getMaxNanos()
+					&& stats.getMaxNanos() <= stats.getTotalNanos());
+			previousTotalNanos = stats.getTotalNanos();
+			statsByName.put(stats.getName(), stats);
+		}
+
+		return statsByName;
+	}
+
+	private static void assertTimerCount(final Map<String, TimerStatistics> statsByName, final String timerName, final long expectedCount)
+	{
+		final TimerStatistics stats = statsByName.get(timerName);
+		assertNotNull("Missing timer: " + timerName, stats);
+		assertEquals("Invalid count of timer " + timerName, expectedCount, stats.getCount());
+	}
+
+	@Test
+	public void test() throws IllegalArgumentException, IOException, URISyntaxException, JAXBException, JMException
+	{
+		final NamespaceFilteringParser unmarshaller = JaxbXACMLUtils.getXACMLParserFactory(false).getInstance();
+		final Request request = TestUtils.createRequest(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.REQUEST_FILENAME, unmarshaller);
+		final Response expectedResponse = TestUtils.createResponse(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.EXPECTED_RESPONSE_FILENAME, unmarshaller);
+		final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		final ObjectName mbeanNamePattern = new ObjectName(EvaluationTimingRecorder.MBEAN_DOMAIN + ":type=EvaluationTimings,*");
+		final Set<ObjectName> initialMBeanNames = mbeanServer.queryNames(mbeanNamePattern, null);
+		try (final BasePdpEngine pdp = BasePdpEngine.getInstance(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.PDP_CONF_FILENAME))
+		{
+			final EvaluationTimingsMXBean timings = pdp.getEvaluationTimings();
+			assertNotNull("Evaluation timings not enabled", timings);
+			final Set<ObjectName> newMBeanNames = new HashSet<>(mbeanServer.queryNames(mbeanNamePattern, null));
+			newMBeanNames.removeAll(initialMBeanNames);
+			assertEquals("Evaluation timings MXBean not registered", 1, newMBeanNames.size());
+			final ObjectName mbeanName = newMBeanNames.iterator().next();
+
+			// Multiple Decision request with 3 Individual Decision Requests, evaluated twice
+			for (int i = 0; i < 2; i++)
+			{
+				TestUtils.assertNormalizedEquals("EvaluationTimings", expectedResponse, pdp.evaluate(request, null));
+			}
+
+			assertEquals("Invalid number of timed decisions", 6, timings.getDecisionCount());
+			assertEquals("Invalid number of timed decisions (JMX)", Long.valueOf(6), mbeanServer.getAttribute(mbeanName, "DecisionCount"));
+			final Map<String, TimerStatistics> statsByName = getTimerStatisticsByName(timings);
+			assertTimerCount(statsByName, "decision", 6);
+			// root PolicySet
+			assertTimerCount(statsByName, "combining-algorithm:urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:first-applicable", 6);
+			// Policy-admin, applicable to one Individual Decision Request out of 3
+			assertTimerCount(statsByName, "combining-algorithm:urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-unless-permit", 2);
+			// Policy-default, applicable to the others
+			assertTimerCount(statsByName, "combining-algorithm:urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:first-applicable", 4);
+			final TimerStatistics decisionStats = statsByName.get("decision");
+			assertTrue("Invalid decision timer statistics: " + decisionStats, decisionStats.getTotalNanos() > 0 && decisionStats.getP50Nanos() > 0);
+
+			timings.reset();
+			assertEquals("Invalid number of timed decisions after reset", 0, timings.getDecisionCount());
+			assertEquals("Invalid number of timed decisions after reset (JMX)", Long.valueOf(0), mbeanServer.getAttribute(mbeanName, "DecisionCount"));
+		}
+
+		assertEquals("Evaluation timings MXBean not unregistered", initialMBeanNames, mbeanServer.queryNames(mbeanNamePattern, null));
+	}
+
+	@Test
+	public void testRecorderStatistics()
+	{
+		final EvaluationTimingRecorder recorder = new EvaluationTimingRecorder();
+		// 1, 2, ..., 100 ns
+		for (long duration = 1; duration <= 100; duration++)
+		{
+			recorder.targetEvaluated("Policy[test]", duration);
+		}
+
+		final List<TimerStatistics> statsList = recorder.getTimerStatistics();
+		// decision timer (always present) + target timer
+		assertEquals("Invalid number of timers", 2, statsList.size());
+		final TimerStatistics stats = statsList.get(0);
+		assertEquals("Invalid timer name", "target:Policy[test]", stats.getName());
+		assertEquals("Invalid count", 100, stats.getCount());
+		assertEquals("Invalid total", 5050, stats.getTotalNanos());
+		assertEquals("Invalid max", 100, stats.getMaxNanos());
+		// percentiles are upper bounds of histogram buckets: [48, 55] for the 50th value, [80, 95] for the 90th, [96, 111] (capped by max) for the 99th
+		assertEquals("Invalid 50th percentile", 55, stats.getP50Nanos());
+		assertEquals("Invalid 90th percentile", 95, stats.getP90Nanos());
+		assertEquals("Invalid 99th percentile", 100, stats.getP99Nanos());
+		assertEquals("Invalid decision timer count", 0, statsList.get(1).getCount());
+
+		recorder.reset();
+		for (final TimerStatistics statsAfterReset : recorder.getTimerStatistics())
+		{
+			assertEquals("Invalid count after reset: " + statsAfterReset, 0, statsAfterReset.getCount());
+		}
+	}
+
+	@Test
+	public void testDisabled() throws IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		try (final BasePdpEngine pdp = TestUtils.getPDPNewInstance(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.POLICY_FILENAME, null, false, null, null))
+		{
+			assertNull("Evaluation timings enabled by default", pdp.getEvaluationTimings());
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Optional;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.DefaultEnvironmentProperties;
+import org.ow2.authzforce.core.pdp.api.ImmutablePdpDecisionRequest;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.api.value.TimeValue;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.CoreInMemoryDecisionCache;
+import org.ow2.authzforce.core.pdp.testutil.PdpTest;
+import org.ow2.authzforce.core.xmlns.pdp.InMemoryDecisionCache;
+import org.ow2.authzforce.core.xmlns.pdp.Pdp;
+import org.ow2.authzforce.core.xmlns.pdp.StandardEnvironmentAttributeSource;
+import org.ow2.authzforce.core.xmlns.pdp.StaticRootPolicyProvider;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Test of {@link CoreInMemoryDecisionCache} used by the PDP: cache hits, and results depending on the time of evaluation (PDP-issued standard environment attributes) not cached
+ *
+ */
+public class TestPdpInMemoryDecisionCache
+{
+	private final static String TEST_RESOURCES_DIRECTORY_LOCATION = "classpath:custom/InMemoryDecisionCache/";
+
+	private static final AttributeFQN RESOURCE_ID = AttributeFQNs.newInstance("urn:oasis:names:tc:xacml:3.0:attribute-category:resource", Optional.empty(),
+			"urn:oasis:names:tc:xacml:1.0:resource:resource-id");
+
+	private static final AttributeFQN CURRENT_TIME = AttributeFQNs.newInstance("urn:oasis:names:tc:xacml:3.0:attribute-category:environment", Optional.empty(),
+			"urn:oasis:names:tc:xacml:1.0:environment:current-time");
+
+	private static BasePdpEngine newPdp(final StandardEnvironmentAttributeSource stdEnvAttributeSource) throws IllegalArgumentException, IOException
+	{
+		final StaticRootPolicyProvider jaxbRootPolicyProvider = new StaticRootPolicyProvider();
+		jaxbRootPolicyProvider.setId("rootPolicyProvider");
+		jaxbRootPolicyProvider.setPolicyLocation(ResourceUtils.getURL(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.POLICY_FILENAME).toString());
+
+		final InMemoryDecisionCache jaxbDecisionCache = new InMemoryDecisionCache();
+		jaxbDecisionCache.setId("decisionCache");
+		jaxbDecisionCache.setMaxEntries(BigInteger.valueOf(100));
+		jaxbDecisionCache.setTimeToLive(BigInteger.valueOf(60));
+
+		final Pdp jaxbPDP = new Pdp();
+		jaxbPDP.setRootPolicyProvider(jaxbRootPolicyProvider);
+		jaxbPDP.setDecisionCache(jaxbDecisionCache);
+		jaxbPDP.setStandardEnvAttributeSource(stdEnvAttributeSource);
+		return BasePdpEngine.getInstance(jaxbPDP, new DefaultEnvironmentProperties());
+	}
+
+	private static ImmutablePdpDecisionRequest newRequest(final BasePdpEngine pdp, final String resourceId, final String currentTime)
+	{
+		final PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest> requestBuilder = pdp.newRequestBuilder(2, 2);
+		requestBuilder.putNamedAttributeIfAbsent(RESOURCE_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue(resourceId)));
+		if (currentTime != null)
+		{
+			requestBuilder.putNamedAttributeIfAbsent(CURRENT_TIME, Bags.singletonAttributeBag(StandardDatatypes.TIME_FACTORY.getDatatype(), new TimeValue(currentTime)));
+		}
+
+		return requestBuilder.build(false);
+	}
+
+	/*
+	 * Evaluates the same request twice
+	 */
+	private static void evaluateTwice(final BasePdpEngine pdp, final String resourceId, final String currentTime)
+	{
+		for (int i = 0; i < 2; i++)
+		{
+			assertEquals("Invalid decision", DecisionType.PERMIT, pdp.evaluate(newRequest(pdp, resourceId, currentTime)).getDecision());
+		}
+	}
+
+	@Test
+	public void testCacheHit() throws IllegalArgumentException, IOException
+	{
+		try (BasePdpEngine pdp = newPdp(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP))
+		{
+			final CoreInMemoryDecisionCache decisionCache = (CoreInMemoryDecisionCache) pdp.getDecisionCache();
+			evaluateTwice(pdp, "public", null);
+			assertEquals("Invalid number of cache hits", 1, decisionCache.getStats().hitCount());
+			assertEquals("Invalid number of cache misses", 1, decisionCache.getStats().missCount());
+			assertEquals("Invalid number of time-dependent results", 0, decisionCache.getTimeDependentResultCount());
+		}
+	}
+
+	@Test
+	public void testPdpIssuedTimeNotCached() throws IllegalArgumentException, IOException
+	{
+		try (BasePdpEngine pdp = newPdp(StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP))
+		{
+			final CoreInMemoryDecisionCache decisionCache = (CoreInMemoryDecisionCache) pdp.getDecisionCache();
+			// current-time not in the request -> issued by the PDP
+			evaluateTwice(pdp, "timed", null);
+			assertEquals("Time-dependent result returned from cache", 0, decisionCache.getStats().hitCount());
+			assertEquals("Invalid number of time-dependent results", 2, decisionCache.getTimeDependentResultCount());
+
+			// current-time in the request -> used by the PDP, not time-dependent
+			evaluateTwice(pdp, "timed", "12:00:00Z");
+			assertEquals("Invalid number of cache hits", 1, decisionCache.getStats().hitCount());
+			assertEquals("Invalid number of time-dependent results", 2, decisionCache.getTimeDependentResultCount());
+		}
+	}
+
+	@Test
+	public void testRequestTimeIgnoredWithPdpOnlyStdEnvAttributeSource() throws IllegalArgumentException, IOException
+	{
+		try (BasePdpEngine pdp = newPdp(StandardEnvironmentAttributeSource.PDP_ONLY))
+		{
+			final CoreInMemoryDecisionCache decisionCache = (CoreInMemoryDecisionCache) pdp.getDecisionCache();
+			// current-time in the request is ignored: the result still depends on the PDP's current-time
+			evaluateTwice(pdp, "timed", "12:00:00Z");
+			assertEquals("Time-dependent result returned from cache", 0, decisionCache.getStats().hitCount());
+			assertEquals("Invalid number of time-dependent results", 2, decisionCache.getTimeDependentResultCount());
+
+			// results not using current-time are still cached, whatever the current-time in the request (not part of the cache key)
+			evaluateTwice(pdp, "public", "12:00:00Z");
+			assertEquals(DecisionType.PERMIT, pdp.evaluate(newRequest(pdp, "public", "13:00:00Z")).getDecision());
+			assertEquals("Invalid number of cache hits", 2, decisionCache.getStats().hitCount());
+		}
+	}
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeDesignatorType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFQN;
+import org.ow2.authzforce.core.pdp.api.AttributeFQNs;
+import org.ow2.authzforce.core.pdp.api.DefaultEnvironmentProperties;
+import org.ow2.authzforce.core.pdp.api.ImmutablePdpDecisionRequest;
+import org.ow2.authzforce.core.pdp.api.PdpDecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.CloseableAttributeProvider;
+import org.ow2.authzforce.core.pdp.impl.CoreInMemoryDecisionCache;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.ow2.authzforce.core.pdp.impl.value.StandardDatatypeFactoryRegistry;
+import org.ow2.authzforce.core.pdp.testutil.PdpTest;
+import org.ow2.authzforce.core.pdp.testutil.TestUtils;
+import org.ow2.authzforce.core.pdp.testutil.ext.xmlns.TestAttributeProvider;
+import org.ow2.authzforce.core.xmlns.pdp.InMemoryDecisionCache;
+import org.ow2.authzforce.core.xmlns.pdp.Pdp;
+import org.ow2.authzforce.core.xmlns.pdp.StaticRootPolicyProvider;
+import org.ow2.authzforce.xmlns.pdp.ext.AbstractAttributeProvider;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Test of the attributes that may influence the decision ({@link BasePdpEngine#getPolicyRelevantAttributes()}), including Attribute Provider dependencies, and their use as decision cache key
+ *
+ */
+public class TestPdpPolicyRelevantAttributes
+{
+	private final static String TEST_RESOURCES_DIRECTORY_LOCATION = "classpath:custom/PolicyRelevantAttributes/";
+
+	private final static String ATTRIBUTE_PROVIDER_CONF_LOCATION = TEST_RESOURCES_DIRECTORY_LOCATION + "attribute-provider.xml";
+
+	private static final String STRING_DATATYPE_ID = StandardDatatypes.STRING_FACTORY.getDatatype().getId();
+
+	private static final AttributeFQN RESOURCE_ID = AttributeFQNs.newInstance("urn:oasis:names:tc:xacml:3.0:attribute-category:resource", Optional.empty(),
+			"urn:oasis:names:tc:xacml:1.0:resource:resource-id");
+
+	private static final AttributeFQN ACTION_ID = AttributeFQNs.newInstance("urn:oasis:names:tc:xacml:3.0:attribute-category:action", Optional.empty(),
+			"urn:oasis:names:tc:xacml:1.0:action:action-id");
+
+	private static final AttributeFQN SUBJECT_ID = AttributeFQNs.newInstance("urn:oasis:names:tc:xacml:1.0:subject-category:access-subject", Optional.empty(),
+			"urn:oasis:names:tc:xacml:1.0:subject:subject-id");
+
+	// provided by the test Attribute Provider, depending on SUBJECT_ID
+	private static final AttributeFQN SUBJECT_ROLE = AttributeFQNs.newInstance("urn:oasis:names:tc:xacml:1.0:subject-category:access-subject", Optional.empty(),
+			"urn:oasis:names:tc:xacml:2.0:subject:role");
+
+	private static TestAttributeProvider newAttributeProviderConf() throws IOException, JAXBException
+	{
+		@SuppressWarnings("unchecked")
+		final JAXBElement<TestAttributeProvider> jaxbElement = (JAXBElement<TestAttributeProvider>) TestUtils.TEST_ATTRIBUTE_PROVIDER_JAXB_CONTEXT.createUnmarshaller().unmarshal(
+				ResourceUtils.getURL(ATTRIBUTE_PROVIDER_CONF_LOCATION));
+		return jaxbElement.getValue();
+	}
+
+	private static StaticRootPolicyProvider newRootPolicyProviderConf(final String policyLocation) throws IOException
+	{
+		final StaticRootPolicyProvider jaxbRootPolicyProvider = new StaticRootPolicyProvider();
+		jaxbRootPolicyProvider.setId("rootPolicyProvider");
+		jaxbRootPolicyProvider.setPolicyLocation(ResourceUtils.getURL(policyLocation).toString());
+		return jaxbRootPolicyProvider;
+	}
+
+	/*
+	 * Same as newAttributeProviderConf() but without declared dependencies, i.e. unknown dependencies: the Attribute Provider may use any attribute
+	 */
+	private static TestAttributeProvider newAttributeProviderConfWithUnknownDependencies() throws IOException, JAXBException
+	{
+		final TestAttributeProvider jaxbAttributeProvider = newAttributeProviderConf();
+		jaxbAttributeProvider.getDependencies().clear();
+		return jaxbAttributeProvider;
+	}
+
+	private static BasePdpEngine newCachingPdp() throws IllegalArgumentException, IOException, JAXBException
+	{
+		return newCachingPdp(newAttributeProviderConf());
+	}
+
+	private static BasePdpEngine newCachingPdp(final TestAttributeProvider jaxbAttributeProvider) throws IllegalArgumentException, IOException
+	{
+		final InMemoryDecisionCache jaxbDecisionCache = new InMemoryDecisionCache();
+		jaxbDecisionCache.setId("decisionCache");
+		jaxbDecisionCache.setMaxEntries(BigInteger.valueOf(100));
+		jaxbDecisionCache.setTimeToLive(BigInteger.valueOf(60));
+
+		final Pdp jaxbPDP = new Pdp();
+		jaxbPDP.setRootPolicyProvider(newRootPolicyProviderConf(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.POLICY_FILENAME));
+		jaxbPDP.getAttributeProviders().add(jaxbAttributeProvider);
+		jaxbPDP.setDecisionCache(jaxbDecisionCache);
+		return BasePdpEngine.getInstance(jaxbPDP, new DefaultEnvironmentProperties());
+	}
+
+	private static ImmutablePdpDecisionRequest newRequest(final BasePdpEngine pdp, final String resourceId, final String subjectId, final String actionId)
+	{
+		final PdpDecisionRequestBuilder<ImmutablePdpDecisionRequest> requestBuilder = pdp.newRequestBuilder(3, 3);
+		requestBuilder.putNamedAttributeIfAbsent(RESOURCE_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue(resourceId)));
+		requestBuilder.putNamedAttributeIfAbsent(SUBJECT_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue(subjectId)));
+		requestBuilder.putNamedAttributeIfAbsent(ACTION_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING_FACTORY.getDatatype(), new StringValue(actionId)));
+		return requestBuilder.build(false);
+	}
+
+	private static AttributeDesignatorType newDesignator(final AttributeFQN attributeFQN)
+	{
+		return new AttributeDesignatorType(attributeFQN.getCategory(), attributeFQN.getId(), STRING_DATATYPE_ID, null, false);
+	}
+
+	private static Set<AttributeFQN> newSet(final AttributeFQN... attributeFQNs)
+	{
+		return new HashSet<>(Arrays.asList(attributeFQNs));
+	}
+
+	@Test
+	public void testAttributeProviderDependencies() throws IllegalArgumentException, IOException, JAXBException
+	{
+		final List<AbstractAttributeProvider> jaxbAttributeProviderConfs = Collections.<AbstractAttributeProvider> singletonList(newAttributeProviderConf());
+		try (CloseableAttributeProvider attributeProvider = CloseableAttributeProvider.getInstance(jaxbAttributeProviderConfs, StandardDatatypeFactoryRegistry.getRegistry(false), true,
+				new DefaultEnvironmentProperties()))
+		{
+			assertEquals("Invalid Attribute Provider dependencies", newSet(SUBJECT_ID), attributeProvider.getDependencies());
+		}
+	}
+
+	@Test
+	public void testAttributeProviderUnknownDependencies() throws IllegalArgumentException, IOException, JAXBException
+	{
+		final List<AbstractAttributeProvider> jaxbAttributeProviderConfs = Collections.<AbstractAttributeProvider> singletonList(newAttributeProviderConfWithUnknownDependencies());
+		try (CloseableAttributeProvider attributeProvider = CloseableAttributeProvider.getInstance(jaxbAttributeProviderConfs, StandardDatatypeFactoryRegistry.getRegistry(false), true,
+				new DefaultEnvironmentProperties()))
+		{
+			assertNull("Attribute Provider dependencies known although a module's are not", attributeProvider.getDependencies());
+		}
+
+		try (DepthLimitingExpressionFactory expressionFactory = new DepthLimitingExpressionFactory(StandardDatatypeFactoryRegistry.getRegistry(false), StandardFunction.getRegistry(false),
+				jaxbAttributeProviderConfs, 0, false, false, new DefaultEnvironmentProperties()))
+		{
+			expressionFactory.getInstance(newDesignator(SUBJECT_ROLE), null, null);
+			assertNull("Referenced attributes known although an Attribute Provider may use any attribute", expressionFactory.getReferencedAttributes());
+		}
+	}
+
+	@Test
+	public void testExpressionFactoryReferencedAttributes() throws IllegalArgumentException, IOException, JAXBException
+	{
+		final List<AbstractAttributeProvider> jaxbAttributeProviderConfs = Collections.<AbstractAttributeProvider> singletonList(newAttributeProviderConf());
+		try (DepthLimitingExpressionFactory expressionFactory = new DepthLimitingExpressionFactory(StandardDatatypeFactoryRegistry.getRegistry(false), StandardFunction.getRegistry(false),
+				jaxbAttributeProviderConfs, 0, false, false, new DefaultEnvironmentProperties()))
+		{
+			// dependencies only
+			assertEquals("Invalid referenced attributes before any AttributeDesignator", newSet(SUBJECT_ID), expressionFactory.getReferencedAttributes());
+
+			expressionFactory.getInstance(newDesignator(SUBJECT_ROLE), null, null);
+			assertEquals("Invalid referenced attributes", newSet(SUBJECT_ROLE, SUBJECT_ID), expressionFactory.getReferencedAttributes());
+
+			// new policy load generation: attributes referenced in previous generations only are excluded
+			final long generation = expressionFactory.newPolicyLoadGeneration();
+			expressionFactory.getInstance(newDesignator(ACTION_ID), null, null);
+			assertEquals("Invalid referenced attributes in new generation", newSet(ACTION_ID, SUBJECT_ID), expressionFactory.getReferencedAttributes(generation));
+			assertEquals("Invalid referenced attributes in all generations", newSet(SUBJECT_ROLE, ACTION_ID, SUBJECT_ID), expressionFactory.getReferencedAttributes());
+		}
+	}
+
+	@Test
+	public void testPolicyRelevantAttributesAfterReload() throws IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		// reload not supported with a decision cache
+		try (BasePdpEngine pdp = TestUtils.getPDPNewInstance(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.POLICY_FILENAME, null, false, ATTRIBUTE_PROVIDER_CONF_LOCATION, null))
+		{
+			assertEquals("Invalid policy-relevant attributes", newSet(RESOURCE_ID, SUBJECT_ROLE, SUBJECT_ID), pdp.getPolicyRelevantAttributes());
+
+			assertEquals(1, pdp.reloadRootPolicy(newRootPolicyProviderConf(TEST_RESOURCES_DIRECTORY_LOCATION + "policy-reloaded.xml")));
+			assertEquals("Invalid policy-relevant attributes after reload", newSet(ACTION_ID, SUBJECT_ID), pdp.getPolicyRelevantAttributes());
+
+			// failed reload: the previous root policy - and its attributes - must remain in use
+			try
+			{
+				pdp.reloadRootPolicy(newRootPolicyProviderConf(TEST_RESOURCES_DIRECTORY_LOCATION + "no-such-policy.xml"));
+				fail("Reload of missing root policy succeeded");
+			}
+			catch (final IllegalArgumentException e)
+			{
+				// expected
+			}
+
+			assertEquals("Invalid policy-relevant attributes after failed reload", newSet(ACTION_ID, SUBJECT_ID), pdp.getPolicyRelevantAttributes());
+		}
+	}
+
+	@Test
+	public void testIrrelevantAttributeNotInCacheKey() throws IllegalArgumentException, IOException, JAXBException
+	{
+		try (BasePdpEngine pdp = newCachingPdp())
+		{
+			final CoreInMemoryDecisionCache decisionCache = (CoreInMemoryDecisionCache) pdp.getDecisionCache();
+			assertEquals(DecisionType.PERMIT, pdp.evaluate(newRequest(pdp, "doc", "alice", "read")).getDecision());
+			// action-id not used by the policy
+			assertEquals(DecisionType.PERMIT, pdp.evaluate(newRequest(pdp, "doc", "alice", "write")).getDecision());
+			assertEquals("Requests differing only in a policy-irrelevant attribute do not share the cache entry", 1, decisionCache.getStats().hitCount());
+		}
+	}
+
+	@Test
+	public void testRelevantAttributeInCacheKey() throws IllegalArgumentException, IOException, JAXBException
+	{
+		try (BasePdpEngine pdp = newCachingPdp())
+		{
+			final CoreInMemoryDecisionCache decisionCache = (CoreInMemoryDecisionCache) pdp.getDecisionCache();
+			assertEquals(DecisionType.PERMIT, pdp.evaluate(newRequest(pdp, "doc", "alice", "read")).getDecision());
+			assertEquals(DecisionType.DENY, pdp.evaluate(newRequest(pdp, "other", "alice", "read")).getDecision());
+			assertEquals("Requests differing in a policy-relevant attribute share the cache entry", 0, decisionCache.getStats().hitCount());
+		}
+	}
+
+	@Test
+	public void testAttributeProviderDependencyInCacheKey() throws IllegalArgumentException, IOException, JAXBException
+	{
+		try (BasePdpEngine pdp = newCachingPdp())
+		{
+			final CoreInMemoryDecisionCache decisionCache = (CoreInMemoryDecisionCache) pdp.getDecisionCache();
+			assertEquals(DecisionType.PERMIT, pdp.evaluate(newRequest(pdp, "doc", "alice", "read")).getDecision());
+			// subject-id not used by the policy but by the Attribute Provider providing the subject role
+			assertEquals(DecisionType.PERMIT, pdp.evaluate(newRequest(pdp, "doc", "bob", "read")).getDecision());
+			assertEquals("Requests differing in an Attribute Provider dependency share the cache entry", 0, decisionCache.getStats().hitCount());
+
+			assertEquals(DecisionType.PERMIT, pdp.evaluate(newRequest(pdp, "doc", "bob", "write")).getDecision());
+			assertEquals("Invalid number of cache hits", 1, decisionCache.getStats().hitCount());
+		}
+	}
+
+	@Test
+	public void testAttributeProviderUnknownDependenciesInCacheKey() throws IllegalArgumentException, IOException, JAXBException
+	{
+		try (BasePdpEngine pdp = newCachingPdp(newAttributeProviderConfWithUnknownDependencies()))
+		{
+			assertNull("Policy-relevant attributes known although an Attribute Provider may use any attribute", pdp.getPolicyRelevantAttributes());
+			final CoreInMemoryDecisionCache decisionCache = (CoreInMemoryDecisionCache) pdp.getDecisionCache();
+			assertEquals(DecisionType.PERMIT, pdp.evaluate(newRequest(pdp, "doc", "alice", "read")).getDecision());
+			// action-id not used by the policy, but possibly by the Attribute Provider
+			assertEquals(DecisionType.PERMIT, pdp.evaluate(newRequest(pdp, "doc", "alice", "write")).getDecision());
+			assertEquals("Requests differing in an attribute possibly used by an Attribute Provider share the cache entry", 0, decisionCache.getStats().hitCount());
+
+			assertEquals(DecisionType.PERMIT, pdp.evaluate(newRequest(pdp, "doc", "alice", "write")).getDecision());
+			assertEquals("Invalid number of cache hits", 1, decisionCache.getStats().hitCount());
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Result;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.JaxbXACMLUtils;
+import org.ow2.authzforce.core.pdp.api.XMLUtils.NamespaceFilteringParser;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.testutil.PdpTest;
+import org.ow2.authzforce.core.pdp.testutil.TestUtils;
+import org.ow2.authzforce.core.xmlns.pdp.StaticRootPolicyProvider;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Test of {@link BasePdpEngine#reloadRootPolicy(org.ow2.authzforce.xmlns.pdp.ext.AbstractPolicyProvider)}
+ *
+ */
+public class TestPdpReloadRootPolicy
+{
+	private final static String INITIAL_TEST_RESOURCES_DIRECTORY_LOCATION = TestPdpGetStaticApplicablePolicies.TEST_RESOURCES_DIRECTORY_LOCATION;
+
+	private final static String NEW_TEST_RESOURCES_DIRECTORY_LOCATION = "classpath:custom/PolicySetTargetIndex";
+
+	private final static String NEW_ROOT_POLICY_LOCATION = NEW_TEST_RESOURCES_DIRECTORY_LOCATION + "/" + PdpTest.POLICY_FILENAME;
+
+	private static List<DecisionType> getDecisions(final Response response)
+	{
+		final List<DecisionType> decisions = new ArrayList<>(response.getResults().size());
+		for (final Result result : response.getResults())
+		{
+			decisions.add(result.getDecision());
+		}
+
+		return decisions;
+	}
+
+	private static StaticRootPolicyProvider newRootPolicyProviderConf(final String policyLocation) throws IOException
+	{
+		final StaticRootPolicyProvider jaxbRootPolicyProvider = new StaticRootPolicyProvider();
+		jaxbRootPolicyProvider.setId("rootPolicyProvider");
+		jaxbRootPolicyProvider.setPolicyLocation(ResourceUtils.getURL(policyLocation).toString());
+		return jaxbRootPolicyProvider;
+	}
+
+	@Test
+	public void test() throws IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		final String testResourceLocationPrefix = INITIAL_TEST_RESOURCES_DIRECTORY_LOCATION + "/";
+		try (BasePdpEngine pdp = TestUtils.getPDPNewInstance(testResourceLocationPrefix + PdpTest.POLICY_FILENAME, testResourceLocationPrefix + PdpTest.REF_POLICIES_DIR_NAME, false, null, null))
+		{
+			assertEquals("Invalid initial root policy version", 0, pdp.getRootPolicyVersion());
+			assertEquals("Invalid initial root policy", "root:policyset-with-refs", pdp.getStaticApplicablePolicies().rootPolicyId());
+
+			// reload with same configuration
+			assertEquals("Invalid root policy version after reload with same configuration", 1, pdp.reloadRootPolicy());
+			assertEquals("Invalid root policy after reload with same configuration", "root:policyset-with-refs", pdp.getStaticApplicablePolicies().rootPolicyId());
+
+			// reload with a different root policy
+			assertEquals("Invalid root policy version after reload with new root policy", 2, pdp.reloadRootPolicy(newRootPolicyProviderConf(NEW_ROOT_POLICY_LOCATION)));
+			assertEquals("Invalid root policy after reload with new root policy", "root", pdp.getStaticApplicablePolicies().rootPolicyId());
+			assertEquals("Invalid current root policy version", 2, pdp.getRootPolicyVersion());
+		}
+	}
+
+	@Test
+	public void testDecisionsAfterReload() throws IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		final NamespaceFilteringParser unmarshaller = JaxbXACMLUtils.getXACMLParserFactory(false).getInstance();
+		final String initialTestResourceLocationPrefix = INITIAL_TEST_RESOURCES_DIRECTORY_LOCATION + "/";
+		final Request initialRequest = TestUtils.createRequest(initialTestResourceLocationPrefix + PdpTest.REQUEST_FILENAME, unmarshaller);
+		final Response initialExpectedResponse = TestUtils.createResponse(initialTestResourceLocationPrefix + PdpTest.EXPECTED_RESPONSE_FILENAME, unmarshaller);
+		final String newTestResourceLocationPrefix = NEW_TEST_RESOURCES_DIRECTORY_LOCATION + "/";
+		final Request newRequest = TestUtils.createRequest(newTestResourceLocationPrefix + PdpTest.REQUEST_FILENAME, unmarshaller);
+		final Response newExpectedResponse = TestUtils.createResponse(newTestResourceLocationPrefix + PdpTest.EXPECTED_RESPONSE_FILENAME, unmarshaller);
+		try (BasePdpEngine pdp = TestUtils.getPDPNewInstance(initialTestResourceLocationPrefix + PdpTest.POLICY_FILENAME, initialTestResourceLocationPrefix + PdpTest.REF_POLICIES_DIR_NAME, false, null,
+				"urn:ow2:authzforce:feature:pdp:request-filter:multiple:repeated-attribute-categories-lax"))
+		{
+			TestUtils.assertNormalizedEquals("Initial root policy", initialExpectedResponse, pdp.evaluate(initialRequest, null));
+			final List<DecisionType> newExpectedDecisions = getDecisions(newExpectedResponse);
+			final List<DecisionType> newDecisionsBeforeReload = getDecisions(pdp.evaluate(newRequest, null));
+			assertEquals("Invalid number of results before reload", newExpectedDecisions.size(), newDecisionsBeforeReload.size());
+			if (newExpectedDecisions.equals(newDecisionsBeforeReload))
+			{
+				fail("Test requests do not tell the initial root policy from the new one");
+			}
+
+			assertEquals(1, pdp.reloadRootPolicy(newRootPolicyProviderConf(NEW_ROOT_POLICY_LOCATION)));
+			TestUtils.assertNormalizedEquals("New root policy", newExpectedResponse, pdp.evaluate(newRequest, null));
+			assertEquals("Invalid decisions from new root policy", newExpectedDecisions, getDecisions(pdp.evaluate(newRequest, null)));
+			if (getDecisions(initialExpectedResponse).equals(getDecisions(pdp.evaluate(initialRequest, null))))
+			{
+				fail("Decision unchanged after reload of a different root policy");
+			}
+
+			// failed reload: the previous root policy must remain in use
+			try
+			{
+				pdp.reloadRootPolicy(newRootPolicyProviderConf(NEW_TEST_RESOURCES_DIRECTORY_LOCATION + "/no-such-policy.xml"));
+				fail("Reload of missing root policy succeeded");
+			}
+			catch (final IllegalArgumentException e)
+			{
+				// expected
+			}
+
+			assertEquals("Invalid root policy version after failed reload", 1, pdp.getRootPolicyVersion());
+			assertEquals("Invalid root policy after failed reload", "root", pdp.getStaticApplicablePolicies().rootPolicyId());
+			TestUtils.assertNormalizedEquals("Root policy after failed reload", newExpectedResponse, pdp.evaluate(newRequest, null));
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.DefaultRequestFilter;
+import org.ow2.authzforce.core.pdp.impl.MultiDecisionRequestFilter;
+import org.ow2.authzforce.core.pdp.testutil.TestUtils;
+
+/**
+ * Test of the handling of duplicate Attributes (with same metadata) by the streaming XML and JSON request parsers of the PDP ({@link BasePdpEngine#parseXMLRequest(java.io.InputStream)},
+ * {@link BasePdpEngine#evaluateJSON(java.io.InputStream, java.io.OutputStream)}), which must be consistent with the request filter configured on the PDP
+ *
+ */
+public class TestPdpStreamingRequestParsers
+{
+	private static final String ROOT_POLICY_LOCATION = "classpath:custom/DeadPolicyElimination/policy.xml";
+
+	private static final String XML_REQUEST_WITH_DUPLICATE_ATTRIBUTES = "<Request xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" CombinedDecision=\"false\" "
+			+ "ReturnPolicyIdList=\"false\">"
+			+ "<Attributes Category=\"urn:oasis:names:tc:xacml:1.0:subject-category:access-subject\">"
+			+ "<Attribute AttributeId=\"urn:oasis:names:tc:xacml:1.0:subject:subject-id\" IncludeInResult=\"false\">"
+			+ "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">alice</AttributeValue></Attribute>"
+			+ "<Attribute AttributeId=\"urn:oasis:names:tc:xacml:1.0:subject:subject-id\" IncludeInResult=\"false\">"
+			+ "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">bob</AttributeValue></Attribute></Attributes></Request>";
+
+	private static final String JSON_REQUEST_WITH_DUPLICATE_ATTRIBUTES = "{\"Request\": {\"AccessSubject\": {\"Attribute\": ["
+			+ "{\"AttributeId\": \"urn:oasis:names:tc:xacml:1.0:subject:subject-id\", \"Value\": \"alice\"},"
+			+ " {\"AttributeId\": \"urn:oasis:names:tc:xacml:1.0:subject:subject-id\", \"Value\": \"bob\"}]}}}";
+
+	private static final String SYNTAX_ERROR_STATUS_CODE = "urn:oasis:names:tc:xacml:1.0:status:syntax-error";
+
+	private static void parseXMLRequest(final String requestFilterId) throws IndeterminateEvaluationException, IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		try (BasePdpEngine pdp = TestUtils.getPDPNewInstance(ROOT_POLICY_LOCATION, null, false, null, requestFilterId))
+		{
+			pdp.parseXMLRequest(new ByteArrayInputStream(XML_REQUEST_WITH_DUPLICATE_ATTRIBUTES.getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+
+	private static String evaluateJSON(final String requestFilterId) throws IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (BasePdpEngine pdp = TestUtils.getPDPNewInstance(ROOT_POLICY_LOCATION, null, false, null, requestFilterId))
+		{
+			pdp.evaluateJSON(new ByteArrayInputStream(JSON_REQUEST_WITH_DUPLICATE_ATTRIBUTES.getBytes(StandardCharsets.UTF_8)), output);
+		}
+
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testXMLDuplicateAttributesWithLaxFilter() throws IndeterminateEvaluationException, IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		parseXMLRequest(null);
+		parseXMLRequest(DefaultRequestFilter.LaxFilterFactory.ID);
+		parseXMLRequest(MultiDecisionRequestFilter.LaxFilterFactory.ID);
+	}
+
+	@Test
+	public void testXMLDuplicateAttributesWithStrictFilter() throws IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		for (final String requestFilterId : new String[] { DefaultRequestFilter.StrictFilterFactory.ID, MultiDecisionRequestFilter.StrictFilterFactory.ID })
+		{
+			try
+			{
+				parseXMLRequest(requestFilterId);
+				fail("Duplicate Attributes accepted by the streaming XML request parser although request filter is strict: " + requestFilterId);
+			}
+			catch (final IndeterminateEvaluationException e)
+			{
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testJSONDuplicateAttributesWithLaxFilter() throws IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		for (final String requestFilterId : new String[] { null, DefaultRequestFilter.LaxFilterFactory.ID, MultiDecisionRequestFilter.LaxFilterFactory.ID })
+		{
+			final String response = evaluateJSON(requestFilterId);
+			assertFalse("Duplicate Attributes rejected by the streaming JSON request parser although request filter is lax: " + requestFilterId, response.contains(SYNTAX_ERROR_STATUS_CODE));
+			assertTrue("Unexpected JSON Response: " + response, response.contains("Permit"));
+		}
+	}
+
+	@Test
+	public void testJSONDuplicateAttributesWithStrictFilter() throws IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		for (final String requestFilterId : new String[] { DefaultRequestFilter.StrictFilterFactory.ID, MultiDecisionRequestFilter.StrictFilterFactory.ID })
+		{
+			final String response = evaluateJSON(requestFilterId);
+			assertTrue("Duplicate Attributes accepted by the streaming JSON request parser although request filter is strict: " + requestFilterId, response.contains(SYNTAX_ERROR_STATUS_CODE));
+		}
+	}
+}
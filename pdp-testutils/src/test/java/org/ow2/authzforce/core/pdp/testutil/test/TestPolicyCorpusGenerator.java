@@ -0,0 +1,91 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.testutil.PolicyCorpusGenerator;
+import org.ow2.authzforce.core.pdp.testutil.PolicyCorpusGenerator.Corpus;
+import org.ow2.authzforce.core.pdp.testutil.PolicyCorpusGenerator.GeneratedRequest;
+
+/**
+ * Test of {@link PolicyCorpusGenerator}: the generated policies are valid and the decisions on the generated requests are consistent with the expected hits
+ *
+ */
+public class TestPolicyCorpusGenerator
+{
+	@Rule
+	public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+	@Test
+	public void test() throws IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		final PolicyCorpusGenerator generator = new PolicyCorpusGenerator.Builder().breadth(3).depth(3).policySetRefFanOut(1).rulesPerPolicy(5).conditionComplexity(3).attributeCardinality(10)
+				.seed(1).build();
+		final Corpus corpus = generator.generate(tmpDir.getRoot().toPath());
+		assertEquals("Invalid number of Policies", 27, corpus.getPolicyCount());
+		assertEquals("Invalid number of PolicySets", 13, corpus.getPolicySetCount());
+		assertEquals("Invalid number of Rules", 135, corpus.getRuleCount());
+		assertNotNull("Missing directory of referenced PolicySets", corpus.getRefPoliciesDirectory());
+		// 1 reference in the root PolicySet + 1 reference in each of the 3 PolicySets of level 1
+		try (final Stream<Path> refPolicyFiles = Files.list(corpus.getRefPoliciesDirectory()))
+		{
+			assertEquals("Invalid number of referenced PolicySets", 4, refPolicyFiles.count());
+		}
+
+		// same seed -> same requests
+		final List<GeneratedRequest> requests = corpus.newRequests(100, 0.5, 1, 2);
+		assertEquals("Generated requests are not repeatable", requests.get(99).getXml(), corpus.newRequests(100, 0.5, 1, 2).get(99).getXml());
+
+		try (final BasePdpEngine pdp = corpus.newPdp(null))
+		{
+			for (final GeneratedRequest request : requests)
+			{
+				final Response response = pdp.evaluate(request.toXacmlRequest());
+				final DecisionType decision = response.getResults().get(0).getDecision();
+				if (request.isHit())
+				{
+					assertNotEquals("Invalid decision on hit: " + request.getXml(), DecisionType.NOT_APPLICABLE, decision);
+					assertNotEquals("Invalid decision on hit: " + request.getXml(), DecisionType.INDETERMINATE, decision);
+				}
+				else
+				{
+					assertEquals("Invalid decision on miss: " + request.getXml(), DecisionType.NOT_APPLICABLE, decision);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright 2012-2017 Thales Services SAS.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.IdReferenceType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.authzforce.core.pdp.api.DefaultEnvironmentProperties;
+import org.ow2.authzforce.core.pdp.api.JaxbXACMLUtils;
+import org.ow2.authzforce.core.pdp.api.XMLUtils.NamespaceFilteringParser;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.policy.PolicySnapshot;
+import org.ow2.authzforce.core.pdp.testutil.PdpTest;
+import org.ow2.authzforce.core.pdp.testutil.TestUtils;
+import org.ow2.authzforce.core.xmlns.pdp.Pdp;
+import org.ow2.authzforce.core.xmlns.pdp.SnapshotRefPolicyProvider;
+import org.ow2.authzforce.core.xmlns.pdp.StaticRefBasedRootPolicyProvider;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Test of {@link PolicySnapshot} and the snapshot-based RefPolicyProvider
+ *
+ */
+public class TestPolicySnapshot
+{
+	private final static String TEST_RESOURCES_DIRECTORY_LOCATION = "classpath:conformance/others/PolicyReference.Valid/";
+
+	/*
+	 * Same as PolicySnapshot's
+	 */
+	private static final int MAGIC_NUMBER = 0x415A5053;
+	private static final int FORMAT_VERSION = 2;
+	private static final int CHECKSUM_LENGTH = 32;
+
+	@Rule
+	public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+	private static List<URL> getSourcePolicyURLs(final Path refPolicyFile, final Path rootPolicyFile) throws IOException
+	{
+		return Arrays.asList(refPolicyFile.toUri().toURL(), rootPolicyFile.toUri().toURL());
+	}
+
+	private static BasePdpEngine newPdp(final Path snapshotFile, final List<URL> sourcePolicyURLs) throws IOException
+	{
+		final SnapshotRefPolicyProvider jaxbRefPolicyProvider = new SnapshotRefPolicyProvider();
+		jaxbRefPolicyProvider.setId("refPolicyProvider");
+		jaxbRefPolicyProvider.setSnapshotLocation(snapshotFile.toUri().toString());
+		for (final URL sourcePolicyURL : sourcePolicyURLs)
+		{
+			jaxbRefPolicyProvider.getPolicyLocations().add(sourcePolicyURL.toString());
+		}
+
+		final StaticRefBasedRootPolicyProvider jaxbRootPolicyProvider = new StaticRefBasedRootPolicyProvider();
+		jaxbRootPolicyProvider.setId("rootPolicyProvider");
+		jaxbRootPolicyProvider.setPolicyRef(new IdReferenceType("root:policyset-with-refs", "1.0", null, null));
+
+		final Pdp jaxbPDP = new Pdp();
+		jaxbPDP.setMaxPolicyRefDepth(BigInteger.valueOf(sourcePolicyURLs.size()));
+		jaxbPDP.setRefPolicyProvider(jaxbRefPolicyProvider);
+		jaxbPDP.setRootPolicyProvider(jaxbRootPolicyProvider);
+		return BasePdpEngine.getInstance(jaxbPDP, new DefaultEnvironmentProperties());
+	}
+
+	/*
+	 * Writes a snapshot file with the given header (and one policy) and the given bytes in place of the policy (and namespace mappings)
+	 */
+	private Path writeSnapshot(final int magicNumber, final int formatVersion, final byte... body) throws IOException
+	{
+		final Path snapshotFile = tmpDir.newFile().toPath();
+		try (OutputStream output = Files.newOutputStream(snapshotFile))
+		{
+			final DataOutputStream dataOutput = new DataOutputStream(output);
+			dataOutput.writeInt(magicNumber);
+			dataOutput.writeInt(formatVersion);
+			dataOutput.write(new byte[CHECKSUM_LENGTH]);
+			dataOutput.writeInt(1);
+			dataOutput.write(body);
+			dataOutput.flush();
+		}
+
+		return snapshotFile;
+	}
+
+	private static IllegalArgumentException assertInvalidSnapshot(final String message, final Path snapshotFile) throws IOException
+	{
+		try
+		{
+			PolicySnapshot.read(snapshotFile.toUri().toURL());
+		}
+		catch (final IllegalArgumentException e)
+		{
+			return e;
+		}
+
+		throw new AssertionError(message);
+	}
+
+	@Test
+	public void testEvaluationFromSnapshot() throws IllegalArgumentException, IOException, JAXBException
+	{
+		// copy the source policies to be able to modify them afterwards
+		final Path refPolicyFile = Files.copy(ResourceUtils.getFile(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.REF_POLICIES_DIR_NAME + "/pps-employee.xml").toPath(), tmpDir.getRoot()
+				.toPath().resolve("pps-employee.xml"));
+		final Path rootPolicyFile = Files.copy(ResourceUtils.getFile(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.POLICY_FILENAME).toPath(), tmpDir.getRoot().toPath()
+				.resolve(PdpTest.POLICY_FILENAME));
+		final List<URL> sourcePolicyURLs = getSourcePolicyURLs(refPolicyFile, rootPolicyFile);
+		final Path snapshotFile = tmpDir.getRoot().toPath().resolve("policies.snapshot");
+		PolicySnapshot.write(sourcePolicyURLs, JaxbXACMLUtils.getXACMLParserFactory(false), snapshotFile);
+
+		final PolicySnapshot snapshot = PolicySnapshot.read(snapshotFile.toUri().toURL());
+		assertEquals("Invalid number of PolicySets in snapshot", 2, snapshot.getPolicySets().size());
+		assertTrue("Unexpected Policies in snapshot", snapshot.getPolicies().isEmpty());
+		// source policies in a different order
+		snapshot.checkSource(Arrays.asList(sourcePolicyURLs.get(1), sourcePolicyURLs.get(0)));
+
+		final NamespaceFilteringParser unmarshaller = JaxbXACMLUtils.getXACMLParserFactory(false).getInstance();
+		final Request request = TestUtils.createRequest(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.REQUEST_FILENAME, unmarshaller);
+		final Response expectedResponse = TestUtils.createResponse(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.EXPECTED_RESPONSE_FILENAME, unmarshaller);
+		try (BasePdpEngine pdp = newPdp(snapshotFile, sourcePolicyURLs))
+		{
+			TestUtils.assertNormalizedEquals("PolicyReference.Valid (snapshot)", expectedResponse, pdp.evaluate(request, null));
+		}
+
+		// modify a source policy: the snapshot is out of date
+		Files.write(rootPolicyFile, "<!-- modified -->".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		try
+		{
+			newPdp(snapshotFile, sourcePolicyURLs).close();
+			fail("PDP loaded from out-of-date policy snapshot");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void testChecksumMismatch() throws IllegalArgumentException, IOException
+	{
+		final Path refPolicyFile = ResourceUtils.getFile(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.REF_POLICIES_DIR_NAME + "/pps-employee.xml").toPath();
+		final Path rootPolicyFile = ResourceUtils.getFile(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.POLICY_FILENAME).toPath();
+		final List<URL> sourcePolicyURLs = getSourcePolicyURLs(refPolicyFile, rootPolicyFile);
+		final Path snapshotFile = tmpDir.getRoot().toPath().resolve("policies.snapshot");
+		PolicySnapshot.write(sourcePolicyURLs, JaxbXACMLUtils.getXACMLParserFactory(false), snapshotFile);
+		final PolicySnapshot snapshot = PolicySnapshot.read(snapshotFile.toUri().toURL());
+		try
+		{
+			// only part of the source policies
+			snapshot.checkSource(Collections.singletonList(sourcePolicyURLs.get(0)));
+			fail("Policy snapshot accepted with other source policies");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void testInvalidHeader() throws IOException
+	{
+		assertInvalidSnapshot("Policy snapshot with invalid magic number accepted", writeSnapshot(0x3C3F786D, FORMAT_VERSION));
+		assertInvalidSnapshot("Policy snapshot with unsupported format version accepted", writeSnapshot(MAGIC_NUMBER, FORMAT_VERSION + 1));
+	}
+
+	@Test
+	public void testUnknownTag() throws IOException
+	{
+		assertInvalidSnapshot("Policy snapshot with unknown type tag accepted", writeSnapshot(MAGIC_NUMBER, FORMAT_VERSION, (byte) 0xFF));
+		// Target (type tag 6) with no AnyOf in place of a Policy(Set)
+		assertInvalidSnapshot("Policy snapshot with unexpected type tag accepted", writeSnapshot(MAGIC_NUMBER, FORMAT_VERSION, (byte) 6, (byte) 0, (byte) 0, (byte) 0, (byte) 0));
+	}
+
+	@Test
+	public void testTruncated() throws IllegalArgumentException, IOException
+	{
+		final Path refPolicyFile = ResourceUtils.getFile(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.REF_POLICIES_DIR_NAME + "/pps-employee.xml").toPath();
+		final Path rootPolicyFile = ResourceUtils.getFile(TEST_RESOURCES_DIRECTORY_LOCATION + PdpTest.POLICY_FILENAME).toPath();
+		final Path snapshotFile = tmpDir.getRoot().toPath().resolve("policies.snapshot");
+		PolicySnapshot.write(getSourcePolicyURLs(refPolicyFile, rootPolicyFile), JaxbXACMLUtils.getXACMLParserFactory(false), snapshotFile);
+		final byte[] snapshot = Files.readAllBytes(snapshotFile);
+		// keep the header, cut in the middle of the policies
+		Files.write(snapshotFile, Arrays.copyOf(snapshot, snapshot.length / 2));
+		assertInvalidSnapshot("Truncated policy snapshot accepted", snapshotFile);
+		// cut in the middle of the length of the PolicySet's Description (header: 4 + 4 + CHECKSUM_LENGTH + 4 bytes, PolicySet type tag: 1 byte)
+		Files.write(snapshotFile, Arrays.copyOf(snapshot, 4 + 4 + CHECKSUM_LENGTH + 4 + 1 + 2));
+		assertInvalidSnapshot("Truncated policy snapshot accepted", snapshotFile);
+	}
+}